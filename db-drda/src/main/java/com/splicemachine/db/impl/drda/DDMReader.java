@@ -244,6 +244,19 @@ class DDMReader
 		return terminateChainOnErr;
 	}
 
+	/**
+	 * Whether bytes already read from the socket are still waiting in the
+	 * buffer. A session can only leave this reader (e.g. to be parked on the
+	 * selector) when nothing is buffered, since the buffer is reset when the
+	 * reader is initialized for another session.
+	 *
+	 * @return true if there are unread bytes in the buffer
+	 */
+	protected boolean hasBufferedData()
+	{
+		return pos < count;
+	}
+
 	/**
 	 * Next DSS has same correlator as current DSS
 	 *
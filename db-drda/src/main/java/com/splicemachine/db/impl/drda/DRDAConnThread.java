@@ -335,6 +335,8 @@ class DRDAConnThread extends Thread {
 				{
 					case Session.INIT:
 						sessionInitialState();
+						if (session != null)
+							parkIfIdle();
 						if (session == null)
 							break;
                         // else fallthrough
@@ -352,6 +354,8 @@ class DRDAConnThread extends Thread {
                                 // DDMReader.fill(), which will happen
                                 // only when timeSlice is set.
                             }
+							if (parkIfIdle())
+								break;
 							currentTimeSlice = getTimeSlice();
 						} while ((currentTimeSlice <= 0)  || 
 							(System.currentTimeMillis() - timeStart < currentTimeSlice));
@@ -398,6 +402,26 @@ class DRDAConnThread extends Thread {
 		server.removeThread(this);
 
 	}
+	/**
+	 * In nio mode, give the current session back to the server's selector
+	 * once its request chain has been answered and nothing more has been
+	 * read from the client, so that idle sessions don't hold a thread.
+	 *
+	 * @return true if the session was parked and this thread no longer
+	 *         owns it
+	 */
+	private boolean parkIfIdle()
+	{
+		if (!server.isNioMode() || reader.hasBufferedData())
+			return false;
+		// decided here, while this thread owns the session, so that the
+		// selector doesn't touch the connection
+		session.parkedInTransaction = session.holdsTransaction();
+		server.parkSession(session);
+		session = null;
+		return true;
+	}
+
 	/**
 	 * Get input stream
 	 *
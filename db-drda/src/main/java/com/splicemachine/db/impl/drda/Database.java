@@ -43,6 +43,7 @@ import com.splicemachine.db.iapi.reference.MessageId;
 import com.splicemachine.db.iapi.reference.SQLState;
 import com.splicemachine.db.iapi.services.i18n.MessageService;
 import com.splicemachine.db.iapi.tools.i18n.LocalizedResource;
+import com.splicemachine.db.impl.jdbc.EmbedConnection;
 import com.splicemachine.db.impl.jdbc.Util;
 
 /**
@@ -400,6 +401,42 @@ class Database
 		}
 	}
 
+	/**
+	 * Whether the connection has a transaction that did some work, or a
+	 * result set still open, so that it may hold locks until the client's
+	 * next request. Errors count as an open transaction.
+	 *
+	 * @return true if the connection may hold locks
+	 */
+	boolean holdsTransaction()
+	{
+		if (conn == null)
+			return false;
+		try {
+			if (conn.isClosed())
+				return false;
+			if (conn.isInGlobalTransaction())
+				return true;
+			if (conn instanceof EmbedConnection) {
+				if (!((EmbedConnection) conn).transactionIsIdle())
+					return true;
+			} else if (!conn.getAutoCommit())
+				return true;
+		} catch (SQLException se) {
+			return true;
+		}
+		if (defaultStatement != null && !defaultStatement.rsIsClosed())
+			return true;
+		if (stmtTable != null) {
+			for (Enumeration e = stmtTable.elements() ; e.hasMoreElements() ;)
+			{
+				if (!((DRDAStatement) e.nextElement()).rsIsClosed())
+					return true;
+			}
+		}
+		return false;
+	}
+
 	final void setDrdaID(String drdaID)
 	{
 		if (conn != null)
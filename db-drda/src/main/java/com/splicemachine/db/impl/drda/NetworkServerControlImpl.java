@@ -62,9 +62,11 @@ import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.*;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.charset.Charset;
 import java.security.*;
 import java.sql.Connection;
@@ -145,6 +147,9 @@ public final class NetworkServerControlImpl {
 	private final static int USE_DEFAULT = -1;
 	private final static int DEFAULT_MAXTHREADS = 0; //for now create whenever needed
 	private final static int DEFAULT_TIMESLICE = 0;	//for now never yield
+	// thread cap in nio mode when maxThreads is not set
+	final static int DEFAULT_NIO_MAX_THREADS =
+		Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
 
 	private final static String DEFAULT_HOST = "localhost";
 	private final static String DRDA_MSG_PREFIX = "DRDA_";
@@ -260,6 +265,8 @@ public final class NetworkServerControlImpl {
 										// and changing timeSlice
 
 	private boolean keepAlive = true;   // keepAlive value for client socket 
+	private boolean nioMode = false;    // park idle sessions on a selector
+	private SessionSelector sessionSelector; // selector for idle sessions in nio mode
 	private int minPoolSize;			//minimum pool size for pooled connections
 	private int maxPoolSize;			//maximum pool size for pooled connections
 	private Object poolSync = new Object();	// object to use for syning reading
@@ -670,6 +677,19 @@ public final class NetworkServerControlImpl {
 		switch (getSSLMode()) {
 		case SSL_OFF:
 		default:
+			if (nioMode) {
+				// Sockets accepted from a channel can be parked on a
+				// selector between requests.
+				ServerSocketChannel channel = ServerSocketChannel.open();
+				try {
+					channel.socket().bind(
+						new InetSocketAddress(hostAddress, portNumber), 0);
+				} catch (IOException ioe) {
+					channel.close();
+					throw ioe;
+				}
+				return channel.socket();
+			}
 			ServerSocketFactory sf =
 				ServerSocketFactory.getDefault();
 			return sf.createServerSocket(portNumber
@@ -788,6 +808,30 @@ public final class NetworkServerControlImpl {
                             NetworkServerMBean.class,
                             "type=NetworkServer");
 
+		if (nioMode) {
+			if (serverSocket.getChannel() == null) {
+				// SSL sockets have no channel, serve them the blocking way
+				consoleMessage("Property " + Property.DRDA_PROP_NIO +
+						" is ignored when SSL is enabled", true);
+				nioMode = false;
+			} else {
+				sessionSelector = new SessionSelector(new SessionSelector.Dispatcher() {
+					public void dispatchSession(Session session) {
+						NetworkServerControlImpl.this.dispatchSession(session);
+					}
+
+					public void removeFromSessionTable(int connNum) {
+						NetworkServerControlImpl.this.removeFromSessionTable(connNum);
+					}
+
+					public void consoleExceptionPrintTrace(Throwable t) {
+						NetworkServerControlImpl.this.consoleExceptionPrintTrace(t);
+					}
+				});
+				sessionSelector.start();
+			}
+		}
+
 		// We accept clients on a separate thread so we don't run into a problem
 		// blocking on the accept when trying to process a shutdown
 		final ClientThread clientThread =	 
@@ -827,6 +871,9 @@ public final class NetworkServerControlImpl {
 	                            //interrupt client thread
 	                            clientThread.interrupt();
 
+	                            if (sessionSelector != null)
+	                                sessionSelector.close();
+
 	                            return null;
 	                       }
 	                    });
@@ -3073,6 +3120,12 @@ public final class NetworkServerControlImpl {
 		if (propval != null && 
 			StringUtil.SQLEqualsIgnoreCase(propval,"false"))
 			keepAlive = false;
+
+		propval = PropertyUtil.getSystemProperty(
+			Property.DRDA_PROP_NIO);
+		if (propval != null &&
+			StringUtil.SQLEqualsIgnoreCase(propval,"true"))
+			nioMode = true;
 		
 		propval = PropertyUtil.getSystemProperty( 
 			Property.DRDA_PROP_HOSTNAME);
@@ -3687,6 +3740,15 @@ public final class NetworkServerControlImpl {
 		return keepAlive;
 	}
 
+	/**
+	 * Whether idle sessions are parked on a selector between requests
+	 * instead of holding a connection thread.
+	 */
+	protected boolean isNioMode()
+	{
+		return nioMode;
+	}
+
 	/**
 	 * Get the current value of minimum number of threads to create at start
 	 *
@@ -3881,6 +3943,7 @@ public final class NetworkServerControlImpl {
 		retval.put(Property.DRDA_PROP_PORTNUMBER, new Integer(portNumber).toString());
 		retval.put(Property.DRDA_PROP_HOSTNAME, hostArg);
 		retval.put(Property.DRDA_PROP_KEEPALIVE, new Boolean(keepAlive).toString());
+		retval.put(Property.DRDA_PROP_NIO, new Boolean(nioMode).toString());
 
 		String tracedir = getTraceDirectory();
 		if (tracedir != null)
@@ -3933,7 +3996,8 @@ public final class NetworkServerControlImpl {
 	 * exceeded.
 	 *
 	 * <p><code>addSession()</code> should only be called from one thread at a
-	 * time.
+	 * time. In nio mode the session is parked on the selector instead, which
+	 * dispatches it once the client sends its first request.
 	 *
 	 * @param clientSocket the socket to read from and write to
 	 */
@@ -3954,6 +4018,29 @@ public final class NetworkServerControlImpl {
 
 		sessionTable.put(new Integer(connectionNumber), session);
 
+		// In nio mode the session waits on the selector until the client
+		// sends its first request.
+		if (nioMode) {
+			sessionSelector.park(session);
+			return;
+		}
+
+		dispatchSession(session);
+	}
+
+	/**
+	 * Hand a session that has a request waiting over to a
+	 * <code>DRDAConnThread</code>. Start a new thread if there are more
+	 * sessions waiting than there are free threads, and the maximum number of
+	 * threads is not exceeded, otherwise add the session to the run queue.
+	 *
+	 * <p><code>dispatchSession()</code> should only be called from one thread
+	 * at a time: the <code>ClientThread</code>, or the selector thread in nio
+	 * mode.
+	 *
+	 * @param session the session to run
+	 */
+	void dispatchSession(Session session) {
 		// Check whether there are enough free threads to service all the
 		// threads in the run queue in addition to the newly added session.
 		boolean enoughThreads;
@@ -3964,7 +4051,7 @@ public final class NetworkServerControlImpl {
 		// this. Since no other threads can make runQueue grow, and no other
 		// threads will reduce the number of free threads without removing
 		// sessions from runQueue, (runQueue.size() < freeThreads) cannot go
-		// from true to false until addSession() returns.
+		// from true to false until dispatchSession() returns.
 
 		DRDAConnThread thread = null;
 
@@ -3976,7 +4063,8 @@ public final class NetworkServerControlImpl {
 			synchronized (threadsSync) {
 				// only start a new thread if we have no maximum number of
 				// threads or the maximum number of threads is not exceeded
-				if ((maxThreads == 0) || (threadList.size() < maxThreads)) {
+				if (mayStartThread(threadList.size(), maxThreads, nioMode,
+								   session.parkedInTransaction)) {
 					thread = new DRDAConnThread(session, this, getTimeSlice(),
 												getLogConnections());
 					threadList.add(thread);
@@ -3991,6 +4079,49 @@ public final class NetworkServerControlImpl {
 		}
 	}
 
+	/**
+	 * Whether a new <code>DRDAConnThread</code> may be started to run a
+	 * session, rather than queueing the session until a thread is free.
+	 *
+	 * <p>In nio mode, idle sessions hold no thread, so when maxThreads is
+	 * not set the pool only needs to cover the active sessions and is capped
+	 * at <code>DEFAULT_NIO_MAX_THREADS</code>. A session that was parked with
+	 * a transaction open is never held back by the cap, whether the default
+	 * or maxThreads: it may hold the locks that the sessions occupying the
+	 * threads are waiting for, and would otherwise wait for them in the run
+	 * queue until their lock timeouts. Blocking sessions keep their thread
+	 * for the whole transaction, so this only restores that guarantee.
+	 *
+	 * @param threadCount the number of connection threads
+	 * @param maxThreads the maxThreads setting, 0 if unlimited
+	 * @param nioMode whether the server runs in nio mode
+	 * @param parkedInTransaction whether the session was parked with a
+	 *        transaction open
+	 * @return true if a new thread may be started
+	 */
+	static boolean mayStartThread(int threadCount, int maxThreads,
+								  boolean nioMode, boolean parkedInTransaction)
+	{
+		if (nioMode && parkedInTransaction)
+			return true;
+		int limit = maxThreads;
+		if (limit == 0 && nioMode)
+			limit = DEFAULT_NIO_MAX_THREADS;
+		return (limit == 0) || (threadCount < limit);
+	}
+
+	/**
+	 * Park a session that has no pending request until its client sends
+	 * the next one. Only used in nio mode; the calling
+	 * <code>DRDAConnThread</code> gives the session up and goes back to the
+	 * pool.
+	 *
+	 * @param session the idle session
+	 */
+	void parkSession(Session session) {
+		sessionSelector.park(session);
+	}
+
 	/**
 	 * Remove a thread from the thread list. Should be called when a
 	 * <code>DRDAConnThread</code> has been closed.
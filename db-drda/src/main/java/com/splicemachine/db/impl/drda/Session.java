@@ -76,6 +76,7 @@ class Session
 	protected DssTrace dssTrace;		// trace object associated with the session
 	protected AppRequester appRequester;	// Application requester for this session
 	protected Database database;		// current database
+	protected boolean parkedInTransaction;	// parked on the selector with a transaction open, nio mode only
 	protected int qryinsid;				// unique identifier for each query
 	protected LocalizedResource langUtil;		// localization information for command session
 										// client
@@ -149,6 +150,24 @@ class Session
 		}
 	}
 
+	/**
+	 * Whether one of the databases of the session may hold locks until the
+	 * client's next request.
+	 *
+	 * @see Database#holdsTransaction()
+	 */
+	protected boolean holdsTransaction()
+	{
+		if (dbtable == null)
+			return false;
+		for (Enumeration e = dbtable.elements() ; e.hasMoreElements() ;)
+		{
+			if (((Database) e.nextElement()).holdsTransaction())
+				return true;
+		}
+		return false;
+	}
+
 	/**
 	 * initialize a server trace for the DRDA protocol
 	 * 
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.db.impl.drda;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Watches idle sessions when the network server runs in NIO mode
+ * (<code>derby.drda.nio=true</code>).
+ *
+ * <p>A session that has no pending request is parked here instead of keeping
+ * a <code>DRDAConnThread</code> blocked in a socket read. Its channel is
+ * switched to non-blocking mode and registered for reads; as soon as the
+ * client sends something, the key is cancelled, the channel is put back into
+ * blocking mode and the session is handed to the server's run queue, so the
+ * protocol code in <code>DRDAConnThread</code> keeps doing plain blocking
+ * reads and writes.
+ *
+ * <p>Only the selector thread touches the selector. Other threads hand
+ * sessions over through {@link #park(Session)}.
+ *
+ * <p>A client that disconnects while its session is parked makes the channel
+ * readable as well, so the session is dispatched like any other and the
+ * connection thread sees the end of the stream and closes it.
+ */
+final class SessionSelector extends Thread {
+
+    /**
+     * What the selector needs from the network server.
+     */
+    interface Dispatcher {
+        /**
+         * Hand a session whose client sent something over to a connection
+         * thread. Only called from the selector thread.
+         */
+        void dispatchSession(Session session);
+
+        void removeFromSessionTable(int connNum);
+
+        void consoleExceptionPrintTrace(Throwable t);
+    }
+
+    private final Dispatcher parent;
+    private final Selector selector;
+    private final Queue<Session> pending = new ConcurrentLinkedQueue<Session>();
+    private volatile boolean closed;
+
+    SessionSelector(Dispatcher parent) throws IOException {
+        NetworkServerControlImpl.setUniqueThreadName(this, "NetworkServerSelector");
+        setDaemon(true);
+        this.parent = parent;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Park a session until its client sends the next request. The caller
+     * must not use the session afterwards.
+     *
+     * @param session session without any buffered, unprocessed input
+     */
+    void park(Session session) {
+        if (closed) {
+            closeSession(session);
+            return;
+        }
+        pending.add(session);
+        selector.wakeup();
+    }
+
+    /**
+     * Stop the selector thread and close the sessions that are still parked.
+     */
+    void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    public void run() {
+        List<Session> ready = new ArrayList<Session>();
+        try {
+            while (!closed) {
+                registerPending();
+                selector.select();
+                if (closed)
+                    break;
+                // Keys have to be deregistered before their channels can go
+                // back to blocking mode, which only happens on the next
+                // selection. Keep selecting until nothing new shows up.
+                while (!selector.selectedKeys().isEmpty()) {
+                    for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        key.cancel();
+                        ready.add((Session) key.attachment());
+                    }
+                    selector.selectNow();
+                }
+                for (Session session : ready) {
+                    dispatch(session);
+                }
+                ready.clear();
+            }
+        } catch (ClosedSelectorException cse) {
+            // shutting down
+        } catch (IOException ioe) {
+            if (!closed)
+                parent.consoleExceptionPrintTrace(ioe);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void registerPending() {
+        Session session;
+        while ((session = pending.poll()) != null) {
+            try {
+                SocketChannel channel = session.clientSocket.getChannel();
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, session);
+            } catch (IOException ioe) {
+                // the client went away while the session was being parked
+                closeSession(session);
+            }
+        }
+    }
+
+    private void dispatch(Session session) {
+        try {
+            session.clientSocket.getChannel().configureBlocking(true);
+            parent.dispatchSession(session);
+        } catch (IOException ioe) {
+            closeSession(session);
+        }
+    }
+
+    private void shutdown() {
+        closed = true;
+        try {
+            for (SelectionKey key : selector.keys()) {
+                closeSession((Session) key.attachment());
+            }
+            selector.close();
+        } catch (ClosedSelectorException | IOException e) {
+            // ignore, we are going away anyway
+        }
+        Session session;
+        while ((session = pending.poll()) != null) {
+            closeSession(session);
+        }
+    }
+
+    private void closeSession(Session session) {
+        parent.removeFromSessionTable(session.connNum);
+        try {
+            session.close();
+        } catch (Exception e) {
+            if (!closed)
+                parent.consoleExceptionPrintTrace(e);
+        }
+    }
+}
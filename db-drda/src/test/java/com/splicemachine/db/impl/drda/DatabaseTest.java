@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.db.impl.drda;
+
+import com.splicemachine.db.iapi.jdbc.EngineConnection;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DatabaseTest {
+
+    @Test
+    public void noConnectionHoldsNothing() {
+        assertFalse(new Database("db").holdsTransaction());
+    }
+
+    @Test
+    public void autoCommitConnectionHoldsNothing() throws Exception {
+        EngineConnection conn = mock(EngineConnection.class);
+        when(conn.getAutoCommit()).thenReturn(true);
+        assertFalse(databaseWith(conn).holdsTransaction());
+    }
+
+    @Test
+    public void openTransactionIsHeld() throws Exception {
+        EngineConnection conn = mock(EngineConnection.class);
+        when(conn.getAutoCommit()).thenReturn(false);
+        assertTrue(databaseWith(conn).holdsTransaction());
+    }
+
+    @Test
+    public void globalTransactionIsHeld() throws Exception {
+        EngineConnection conn = mock(EngineConnection.class);
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.isInGlobalTransaction()).thenReturn(true);
+        assertTrue(databaseWith(conn).holdsTransaction());
+    }
+
+    @Test
+    public void closedConnectionHoldsNothing() throws Exception {
+        EngineConnection conn = mock(EngineConnection.class);
+        when(conn.getAutoCommit()).thenReturn(false);
+        when(conn.isClosed()).thenReturn(true);
+        assertFalse(databaseWith(conn).holdsTransaction());
+    }
+
+    private static Database databaseWith(EngineConnection conn) throws Exception {
+        Database db = new Database("db");
+        db.setConnection(conn);
+        return db;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.db.impl.drda;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkServerControlImplTest {
+    private static final int CAP = NetworkServerControlImpl.DEFAULT_NIO_MAX_THREADS;
+
+    @Test
+    public void nioModeCapsThreadsByDefault() {
+        assertTrue(NetworkServerControlImpl.mayStartThread(CAP - 1, 0, true, false));
+        assertFalse(NetworkServerControlImpl.mayStartThread(CAP, 0, true, false));
+    }
+
+    @Test
+    public void nioModeHonoursMaxThreads() {
+        assertTrue(NetworkServerControlImpl.mayStartThread(3, 4, true, false));
+        assertFalse(NetworkServerControlImpl.mayStartThread(4, 4, true, false));
+    }
+
+    @Test
+    public void sessionParkedInTransactionIsNotStarvedByCap() {
+        // every thread may be waiting for the locks this session holds
+        assertTrue(NetworkServerControlImpl.mayStartThread(CAP, 0, true, true));
+        assertTrue(NetworkServerControlImpl.mayStartThread(4, 4, true, true));
+    }
+
+    @Test
+    public void blockingModeIsUnchanged() {
+        assertTrue(NetworkServerControlImpl.mayStartThread(CAP * 10, 0, false, false));
+        assertTrue(NetworkServerControlImpl.mayStartThread(3, 4, false, false));
+        assertFalse(NetworkServerControlImpl.mayStartThread(4, 4, false, false));
+        assertFalse(NetworkServerControlImpl.mayStartThread(4, 4, false, true));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.db.impl.drda;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SessionSelectorTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final RecordingDispatcher dispatcher = new RecordingDispatcher();
+    private final List<SocketChannel> clients = new ArrayList<>();
+    private ServerSocketChannel listener;
+    private SessionSelector selector;
+
+    @Before
+    public void setUp() throws Exception {
+        listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        selector = new SessionSelector(dispatcher);
+        selector.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        selector.close();
+        selector.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        for (SocketChannel client : clients) {
+            client.close();
+        }
+        listener.close();
+        assertTrue("unexpected errors: " + dispatcher.errors, dispatcher.errors.isEmpty());
+    }
+
+    @Test
+    public void parkedSessionIsDispatchedWhenClientSends() throws Exception {
+        SocketChannel client = connect();
+        Session session = acceptSession(1);
+
+        selector.park(session);
+        assertNull("dispatched without a request",
+                dispatcher.dispatched.poll(200, TimeUnit.MILLISECONDS));
+
+        send(client, 42);
+        assertSame(session, dispatcher.dispatched.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue("channel must be back in blocking mode",
+                session.clientSocket.getChannel().isBlocking());
+        assertEquals(42, session.sessionInput.read());
+
+        // the conn thread parks the session again after its reply
+        selector.park(session);
+        send(client, 43);
+        assertSame(session, dispatcher.dispatched.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(43, session.sessionInput.read());
+        assertTrue(dispatcher.removed.isEmpty());
+    }
+
+    @Test
+    public void clientDisconnectWhileParkedDispatchesSession() throws Exception {
+        SocketChannel client = connect();
+        Session session = acceptSession(1);
+
+        selector.park(session);
+        client.close();
+
+        // the conn thread sees the end of the stream and closes the session
+        assertSame(session, dispatcher.dispatched.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(session.clientSocket.getChannel().isBlocking());
+        assertEquals(-1, session.sessionInput.read());
+        assertTrue(dispatcher.removed.isEmpty());
+    }
+
+    @Test
+    public void closeClosesParkedSessions() throws Exception {
+        connect();
+        Session first = acceptSession(1);
+        connect();
+        Session second = acceptSession(2);
+
+        selector.park(first);
+        selector.park(second);
+        selector.close();
+        selector.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        assertFalse("selector thread did not stop", selector.isAlive());
+        assertTrue(dispatcher.dispatched.isEmpty());
+        assertTrue(dispatcher.removed.contains(1));
+        assertTrue(dispatcher.removed.contains(2));
+        assertTrue(first.clientSocket.isClosed());
+        assertTrue(second.clientSocket.isClosed());
+
+        // sessions parked after shutdown are closed right away
+        connect();
+        Session late = acceptSession(3);
+        selector.park(late);
+        assertTrue(dispatcher.removed.contains(3));
+        assertTrue(late.clientSocket.isClosed());
+    }
+
+    @Test
+    public void parkingClosedSocketRemovesSession() throws Exception {
+        connect();
+        Session session = acceptSession(1);
+        session.clientSocket.close();
+
+        selector.park(session);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!dispatcher.removed.contains(1) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(dispatcher.removed.contains(1));
+        assertTrue(dispatcher.dispatched.isEmpty());
+    }
+
+    private SocketChannel connect() throws IOException {
+        SocketChannel client = SocketChannel.open(listener.getLocalAddress());
+        clients.add(client);
+        return client;
+    }
+
+    private Session acceptSession(int connNum) throws Exception {
+        SocketChannel channel = listener.accept();
+        return new Session(null, connNum, channel.socket(), null, false);
+    }
+
+    private static void send(SocketChannel client, int b) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{(byte) b});
+        while (buffer.hasRemaining()) {
+            client.write(buffer);
+        }
+    }
+
+    private static class RecordingDispatcher implements SessionSelector.Dispatcher {
+        final BlockingQueue<Session> dispatched = new LinkedBlockingQueue<>();
+        final Queue<Integer> removed = new ConcurrentLinkedQueue<>();
+        final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void dispatchSession(Session session) {
+            dispatched.add(session);
+        }
+
+        @Override
+        public void removeFromSessionTable(int connNum) {
+            removed.add(connNum);
+        }
+
+        @Override
+        public void consoleExceptionPrintTrace(Throwable t) {
+            errors.add(t);
+        }
+    }
+}
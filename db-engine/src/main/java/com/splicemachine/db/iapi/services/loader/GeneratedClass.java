@@ -67,6 +67,20 @@ public interface GeneratedClass {
 	GeneratedMethod getMethod(String simpleName)
 		throws StandardException;
 
+	/**
+		Obtain a handle to the method with the given name
+		that takes no arguments, for a method called for
+		every row. The handle may call the method directly
+		rather than through reflection, in which case the
+		exceptions it throws aren't wrapped.
+
+		@exception 	StandardException	Standard Derby error policy
+	*/
+	default GeneratedMethod getInvoker(String simpleName)
+		throws StandardException {
+		return getMethod(simpleName);
+	}
+
 	/**
 		Return the class reload version that this class was built at.
 	*/
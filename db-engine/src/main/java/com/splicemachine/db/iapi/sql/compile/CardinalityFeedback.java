@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.splicemachine.db.iapi.sql.compile;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Row counts observed while executing a statement, fed back to the optimizer when the statement is recompiled.
+ *
+ * The feedback is kept with the cached prepared statement. For each scan of the statement which produced far more
+ * rows than estimated, it keeps the ratio of the observed rows over the estimated rows, which corrects the estimated
+ * output of that scan. Scans are identified by the table number of the table they read in the statement, so that
+ * the other references to the same table, and the other statements reading it, are not corrected; at execution, a
+ * scan is only known by its result set number, which is mapped to its table number when the plan is generated.
+ * <p>
+ * Only underestimates are corrected, since they are the ones leading to broadcast and nested loop joins over large
+ * inputs, and a correction is at most {@link #MAX_CORRECTION}. Recording a correction asks for the statement to be
+ * recompiled on its next execution. Corrections are dropped when the statement is invalidated, by a change to the
+ * tables it reads or to their statistics, since they were measured against the estimates of the old statistics.
+ */
+public class CardinalityFeedback {
+    /* bound of the corrections, so that repeated underestimates of a scan don't compound without limit */
+    public static final double MAX_CORRECTION = 10000.0d;
+
+    private final ConcurrentMap<Integer, Double> corrections = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Integer> generatedScans = new ConcurrentHashMap<>();
+    private volatile Map<Integer, Integer> scans = Collections.emptyMap();
+    private volatile boolean recompileRequested;
+
+    /**
+     * Called when the plan of the statement is generated, for each scan of a table.
+     *
+     * @param resultSetNumber the result set number of the scan
+     * @param tableNumber     the table number of the table scanned
+     */
+    public void scanGenerated(int resultSetNumber, int tableNumber) {
+        generatedScans.put(resultSetNumber, tableNumber);
+    }
+
+    /**
+     * Records the rows a scan produced. When the estimate of the scan already included a correction, the new ratio
+     * compounds it, up to {@link #MAX_CORRECTION}. When the plan being executed was not generated here, as when it
+     * was restored from the plan store, the scan can't be identified: the statement is recompiled so that the next
+     * execution can record it.
+     *
+     * @param resultSetNumber the result set number of the scan
+     * @param estimatedRows   the rows the optimizer estimated for the scan
+     * @param observedRows    the rows the scan produced, possibly before it completed
+     */
+    public void record(int resultSetNumber, double estimatedRows, long observedRows) {
+        double correction = observedRows / Math.max(estimatedRows, 1.0d);
+        if (correction <= 1.0d)
+            return;
+        Integer tableNumber = scans.get(resultSetNumber);
+        if (tableNumber == null) {
+            recompileRequested = true;
+            return;
+        }
+        double previous = getCorrection(tableNumber);
+        double current = corrections.merge(tableNumber, Math.min(correction, MAX_CORRECTION),
+                (p, c) -> Math.min(p * c, MAX_CORRECTION));
+        // a bounded correction doesn't change the plan, which is not recompiled again
+        if (current != previous)
+            recompileRequested = true;
+    }
+
+    /**
+     * @return the factor to apply to the estimated rows of a scan of the table, 1 if there is none
+     */
+    public double getCorrection(int tableNumber) {
+        Double correction = corrections.get(tableNumber);
+        return correction == null ? 1.0d : correction;
+    }
+
+    public boolean isEmpty() {
+        return corrections.isEmpty();
+    }
+
+    /**
+     * @return true if corrections were recorded since the statement was last compiled
+     */
+    public boolean isRecompileRequested() {
+        return recompileRequested;
+    }
+
+    /**
+     * Called when the statement was compiled with the current corrections.
+     */
+    public void compiled() {
+        scans = new HashMap<>(generatedScans);
+        generatedScans.clear();
+        recompileRequested = false;
+    }
+
+    /**
+     * Called when the plan of the statement was restored rather than compiled: its scans are unknown.
+     */
+    public void restored() {
+        scans = Collections.emptyMap();
+        generatedScans.clear();
+        recompileRequested = false;
+    }
+
+    /**
+     * Called when the statement is invalidated: the corrections don't apply to the estimates of its next compilation.
+     */
+    public void clear() {
+        corrections.clear();
+        recompileRequested = false;
+    }
+}
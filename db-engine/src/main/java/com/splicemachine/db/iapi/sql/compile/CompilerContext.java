@@ -655,6 +655,18 @@ public interface CompilerContext extends Context
 
     DataSetProcessorType getDataSetProcessorType();
 
+    /**
+     * Sets the row counts observed while executing the statement, which correct the estimates of its scans.
+     *
+     * @param feedback the feedback, null if there is none
+     */
+    void setCardinalityFeedback(CardinalityFeedback feedback);
+
+    /**
+     * @return the row counts observed while executing the statement, null if there are none
+     */
+    CardinalityFeedback getCardinalityFeedback();
+
     boolean skipStats(int tableNumber);
 
     Vector<Integer> getSkipStatsTableList();
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.db.iapi.sql.compile;
+
+/**
+ * A store of compiled statement plans which outlives the statement cache of a single database instance, and
+ * may be shared by several of them.
+ *
+ * Plans are stored for a version of the data dictionary. Any change to the data dictionary must advance its
+ * version, so that plans compiled against an older dictionary are never read again. Failures of the store are
+ * not errors for the statement being compiled: they are reported as a missing plan.
+ */
+public interface StatementPlanStore{
+
+    /**
+     * @return the current version of the data dictionary, or a negative number if it is not known, in which case
+     * plans should neither be read nor stored.
+     */
+    long dictionaryVersion();
+
+    /**
+     * @return the plan stored under the key for the dictionary version, or null if there is none
+     */
+    byte[] getPlan(long dictionaryVersion,byte[] key);
+
+    void storePlan(long dictionaryVersion,byte[] key,byte[] plan);
+}
@@ -1408,6 +1408,16 @@ public interface LanguageConnectionContext extends Context {
      */
     void setControlExecutionLimiter(ControlExecutionLimiter executionLimiter);
 
+    /**
+     * Gets the memory manager of the query currently running in control mode
+     */
+    QueryMemoryManager getQueryMemoryManager();
+
+    /**
+     * Sets the memory manager of the query currently running in control mode
+     */
+    void setQueryMemoryManager(QueryMemoryManager queryMemoryManager);
+
 
     String getClientIPAddress();
 
@@ -1421,7 +1431,8 @@ public interface LanguageConnectionContext extends Context {
     void logNextBatch(ParameterValueSet pvs);
     void logStartExecuting(String uuid, String engine, String stmt, ExecPreparedStatement ps,
                            ParameterValueSet pvs);
-    void logEndExecuting(String uuid, long modifiedRows, long badRecords, long nanoTimeSpent);
+    void logEndExecuting(String uuid, long modifiedRows, long badRecords, long nanoTimeSpent, long peakMemoryBytes,
+                         long spilledBytes);
 
     void setSessionProperties(Properties newProperties);
     SessionProperties getSessionProperties();
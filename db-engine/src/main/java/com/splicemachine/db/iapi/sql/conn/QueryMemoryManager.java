@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.splicemachine.db.iapi.sql.conn;
+
+/**
+ * Accounts for the memory held by the buffers of the operations of a query running in control mode.
+ *
+ * Operations reserve the estimated size of the rows they buffer before keeping them, and release it when they
+ * spill the rows or are done with them. An operation able to spill asks with {@link #tryReserve(long)} and spills
+ * when denied, the others {@link #reserve(long)} and the query is resubmitted to Spark when denied.
+ */
+public interface QueryMemoryManager {
+    QueryMemoryManager UNLIMITED = new QueryMemoryManager() {
+        @Override
+        public boolean tryReserve(long bytes) {
+            return true;
+        }
+
+        @Override
+        public void reserve(long bytes) {
+        }
+
+        @Override
+        public void release(long bytes) {
+        }
+
+        @Override
+        public long getReservedBytes() {
+            return 0L;
+        }
+
+        @Override
+        public long getPeakReservedBytes() {
+            return 0L;
+        }
+    };
+
+    /**
+     * @return true if the bytes were reserved, false if the query or the server is out of memory
+     */
+    boolean tryReserve(long bytes);
+
+    /**
+     * Reserves the bytes, throwing a {@link ResubmitDistributedException} if the query or the server is out of memory.
+     */
+    void reserve(long bytes);
+
+    void release(long bytes);
+
+    long getReservedBytes();
+
+    long getPeakReservedBytes();
+}
@@ -35,6 +35,7 @@ import com.splicemachine.db.iapi.services.loader.GeneratedClass;
 
 import com.splicemachine.db.iapi.error.StandardException;
 
+import com.splicemachine.db.iapi.sql.compile.CardinalityFeedback;
 import com.splicemachine.db.iapi.sql.compile.DataSetProcessorType;
 import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
 
@@ -207,5 +208,10 @@ public interface ExecPreparedStatement
 	 */
 	void setDatasetProcessorType(DataSetProcessorType type);
 
+	/**
+	 * @return the row counts observed while executing the statement, used when it is recompiled
+	 */
+	CardinalityFeedback getCardinalityFeedback();
+
 }
 
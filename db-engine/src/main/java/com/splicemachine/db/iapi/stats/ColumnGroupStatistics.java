@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.db.iapi.stats;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLBlob;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.theta.Sketch;
+import com.yahoo.sketches.theta.Sketches;
+import com.yahoo.sketches.theta.Union;
+import com.yahoo.sketches.theta.UpdateSketch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+/**
+ *
+ * Statistics of a group of columns of a table collected together, like the key columns of an index.
+ *
+ * A theta sketch counts the distinct combinations of values of the columns, over the rows where none of them is null.
+ * The optimizer uses it for conjunctions of equality predicates on all the columns of the group, which the statistics
+ * of the individual columns would estimate as independent.
+ *
+ * The statistics are stored in SYS.SYSCOLUMNSTATS next to the column statistics, with a negative column id,
+ * see {@link #isColumnGroup(int)}.
+ *
+ */
+public class ColumnGroupStatistics implements ItemStatistics<ExecRow> {
+    private int[] columnIds;
+    private Sketch thetaSketch;
+    private long nullCount;
+    private long notNullCount;
+    private transient long[] hashes;
+
+    public ColumnGroupStatistics() {
+
+    }
+
+    /**
+     * @param columnIds the positions of the columns in the table, indexed from 1, in ascending order
+     */
+    public ColumnGroupStatistics(int[] columnIds) {
+        this(columnIds, UpdateSketch.builder().build(256), 0L, 0L);
+    }
+
+    public ColumnGroupStatistics(int[] columnIds, Sketch thetaSketch, long nullCount, long notNullCount) {
+        this.columnIds = columnIds;
+        this.thetaSketch = thetaSketch;
+        this.nullCount = nullCount;
+        this.notNullCount = notNullCount;
+    }
+
+    /**
+     *
+     * The column id under which the statistics of a group are stored, which doesn't match any column.
+     *
+     * @param groupNumber the number of the group among the groups collected for a table, from 0
+     * @return
+     */
+    public static int columnIdOfGroup(int groupNumber) {
+        return -(groupNumber + 1);
+    }
+
+    /**
+     * @return true if statistics stored with this column id are the statistics of a group of columns
+     */
+    public static boolean isColumnGroup(int columnId) {
+        return columnId < 0;
+    }
+
+    /**
+     * @return the positions of the columns in the table, indexed from 1, in ascending order
+     */
+    public int[] getColumnIds() {
+        return columnIds;
+    }
+
+    public Sketch getThetaSketch() {
+        return thetaSketch;
+    }
+
+    /**
+     *
+     * Update the statistics with a row.
+     *
+     * @param row the values of a row
+     * @param positions the position in the row of each column of the group, indexed from 0
+     */
+    public void update(DataValueDescriptor[] row, int[] positions) {
+        if (hashes == null)
+            hashes = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            DataValueDescriptor dvd = row[positions[i]];
+            if (dvd == null || dvd.isNull()) {
+                nullCount++;
+                return;
+            }
+            hashes[i] = dvd.hashCode();
+        }
+        notNullCount++;
+        ((UpdateSketch) thetaSketch).update(hashes);
+    }
+
+    /**
+     *
+     * Update the statistics with a row holding the values of the columns of the group.
+     *
+     * @param item
+     */
+    @Override
+    public void update(ExecRow item) {
+        int[] positions = new int[columnIds.length];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = i;
+        update(item.getRowArray(), positions);
+    }
+
+    /**
+     *
+     * Merge the statistics of the same group of columns over another set of rows.
+     *
+     * @param other
+     * @return the statistics of the group over the rows of both
+     */
+    public ColumnGroupStatistics merge(ColumnGroupStatistics other) {
+        assert Arrays.equals(columnIds, other.columnIds) : "Merging the statistics of different groups";
+        Union union = Sketches.setOperationBuilder().buildUnion();
+        union.update(thetaSketch);
+        union.update(other.thetaSketch);
+        return new ColumnGroupStatistics(columnIds, union.getResult(),
+                nullCount + other.nullCount, notNullCount + other.notNullCount);
+    }
+
+    /**
+     *
+     * The merged statistics of the group, in the same row as {@link ColumnStatisticsMerge#toExecRow(Integer)}.
+     *
+     * @param columnId
+     * @return
+     */
+    public ExecRow toExecRow(int columnId) {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(baos);
+            oos.writeObject(this);
+            oos.close();
+            ExecRow result = new ValueRow(2);
+            result.setColumn(1, new SQLInteger(columnId));
+            result.setColumn(2, new SQLBlob(baos.toByteArray()));
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Type getType() {
+        return Type.COLUMNGROUP;
+    }
+
+    @Override
+    public ExecRow minValue() {
+        return null;
+    }
+
+    @Override
+    public ExecRow maxValue() {
+        return null;
+    }
+
+    @Override
+    public long totalCount() {
+        return nullCount + notNullCount;
+    }
+
+    /**
+     * @return the number of rows where one of the columns is null
+     */
+    @Override
+    public long nullCount() {
+        return nullCount;
+    }
+
+    @Override
+    public long notNullCount() {
+        return notNullCount;
+    }
+
+    /**
+     * @return the number of distinct combinations of values of the columns
+     */
+    @Override
+    public long cardinality() {
+        return (long) thetaSketch.getEstimate();
+    }
+
+    /**
+     * @return the average number of rows of a combination of values of the columns
+     */
+    @Override
+    public long selectivity(ExecRow element) {
+        long cardinality = cardinality();
+        return cardinality <= 0 ? 0L : notNullCount / cardinality;
+    }
+
+    @Override
+    public long rangeSelectivity(ExecRow start, ExecRow stop, boolean includeStart, boolean includeStop, boolean useExtrapolation) {
+        throw new UnsupportedOperationException("rangeSelectivity");
+    }
+
+    @Override
+    public long rangeSelectivity(ExecRow start, ExecRow stop, boolean includeStart, boolean includeStop) {
+        throw new UnsupportedOperationException("rangeSelectivity");
+    }
+
+    @Override
+    public ItemStatistics<ExecRow> getClone() {
+        return new ColumnGroupStatistics(columnIds, thetaSketch.compact(), nullCount, notNullCount);
+    }
+
+    @Override
+    public long selectivityExcludingValueIfSkewed(ExecRow value) {
+        return selectivity(value);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(columnIds.length);
+        for (int columnId : columnIds)
+            out.writeInt(columnId);
+        out.writeLong(nullCount);
+        out.writeLong(notNullCount);
+        byte[] thetaSketchBytes = thetaSketch.toByteArray();
+        out.writeInt(thetaSketchBytes.length);
+        out.write(thetaSketchBytes);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        columnIds = new int[in.readInt()];
+        for (int i = 0; i < columnIds.length; i++)
+            columnIds[i] = in.readInt();
+        nullCount = in.readLong();
+        notNullCount = in.readLong();
+        byte[] thetaSketchBytes = new byte[in.readInt()];
+        in.readFully(thetaSketchBytes);
+        NativeMemory thetaMem = new NativeMemory(thetaSketchBytes);
+        try {
+            thetaSketch = Sketch.heapify(thetaMem);
+        } finally {
+            thetaMem.freeMemory();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ColumnGroupStatistics{columns=%s, nullCount=%d, notNullCount=%d, theta=%s}",
+                Arrays.toString(columnIds), nullCount, notNullCount, thetaSketch.toString());
+    }
+}
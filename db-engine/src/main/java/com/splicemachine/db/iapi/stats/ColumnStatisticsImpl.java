@@ -63,12 +63,15 @@ import static com.splicemachine.db.iapi.types.Orderable.*;
  */
 public class ColumnStatisticsImpl implements ItemStatistics<DataValueDescriptor>, Externalizable {
     private static Logger LOG=Logger.getLogger(ColumnStatisticsImpl.class);
+    /* number of equi-depth buckets read from the quantiles sketch to estimate densities */
+    private static final int HISTOGRAM_BUCKETS = 64;
     protected com.yahoo.sketches.quantiles.ItemsSketch<DataValueDescriptor> quantilesSketch;
     protected com.yahoo.sketches.frequencies.ItemsSketch<DataValueDescriptor> frequenciesSketch;
     protected Sketch thetaSketch;
     protected long nullCount;
     protected DataValueDescriptor dvd;
     private long rpv=-1; //rows per value excluding skewed values
+    private volatile DataValueDescriptor[] histogramBoundaries; //boundaries of the equi-depth buckets, lazily read
 
     public ColumnStatisticsImpl() {
 
@@ -224,6 +227,8 @@ public class ColumnStatisticsImpl implements ItemStatistics<DataValueDescriptor>
      *  element is null then nullCount
      * elseif
      *  frequent element then frequencies sketch estimate
+     * elseif
+     *  dense bucket of an integral column then rows of the bucket/values the bucket can hold
      * else {
      *     quantilesSketch total count/thetaSketch estimate
      * }
@@ -326,9 +331,136 @@ public class ColumnStatisticsImpl implements ItemStatistics<DataValueDescriptor>
         // Return Cardinality Based Estimate
         if (rpv == -1)
             rpv = getAvgRowsPerValueExcludingSkews();
+        if (isSameType || isSameFamily || isConverted)
+            return Math.max(rpv, getBucketRowsPerValue(lookUpElement));
         return rpv;
     }
 
+    /**
+     *
+     * The average rows per value ignores skew that is not heavy enough to be caught by the frequencies sketch, like
+     * a range of values each repeated much more often than the values outside of it. For integral columns, a bucket
+     * of the histogram cannot hold more distinct values than its width, which bounds the rows per value in the bucket.
+     *
+     * @return the minimum rows per value in the bucket holding the value, 0 if unknown
+     */
+    private long getBucketRowsPerValue(DataValueDescriptor value) {
+        if (!hasIntegralValues())
+            return 0;
+        try {
+            DataValueDescriptor[] boundaries = getHistogramBoundaries();
+            int bucket = findBucket(boundaries, value);
+            if (bucket < 0)
+                return 0;
+            double width = computeRange(boundaries[bucket], boundaries[bucket + 1]);
+            return (long) (getRowsPerBucket(boundaries) / (width + 1));
+        } catch (StandardException e) {
+            // this should not happen, but if it happens, cost estimation error does not need to fail the query
+            LOG.warn("Failure is not expected but we don't want to fail the query because of estimation error", e);
+            return 0;
+        }
+    }
+
+    /**
+     *
+     * A range falling between two boundaries of the histogram is close to the resolution of the quantiles sketch,
+     * and its CDF estimate jumps between 0 and the weight of the few retained items falling in it. Assume the values
+     * are uniformly distributed in the bucket instead. For integral columns, the values of the range and of the bucket
+     * are counted rather than measured, so that the bounds of the range are only counted when they are included.
+     *
+     * @return the rows of a range falling in a single bucket, -1 if the range spans several buckets
+     */
+    private long getBucketRowsInRange(DataValueDescriptor start, DataValueDescriptor stop, boolean includeStart, boolean includeStop) {
+        if (start == null || start.isNull() || stop == null || stop.isNull() || !hasRange())
+            return -1;
+        try {
+            DataValueDescriptor[] boundaries = getHistogramBoundaries();
+            int bucket = findBucket(boundaries, start);
+            if (bucket < 0 || bucket != findBucket(boundaries, stop))
+                return -1;
+            double width = computeRange(boundaries[bucket], boundaries[bucket + 1]);
+            double range = computeRange(start, stop);
+            if (width <= 0 || range < 0)
+                return -1;
+            if (hasIntegralValues()) {
+                // a range [start, stop] holds range + 1 values, one less for each excluded bound
+                range = Math.max(range - 1 + (includeStart ? 1 : 0) + (includeStop ? 1 : 0), 0d);
+                width = width + 1;
+            }
+            return Math.round(getRowsPerBucket(boundaries) * Math.min(range / width, 1.0d));
+        } catch (StandardException e) {
+            // this should not happen, but if it happens, cost estimation error does not need to fail the query
+            LOG.warn("Failure is not expected but we don't want to fail the query because of estimation error", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Statistics are shared by the compilations of concurrent sessions. The boundaries are read into a local array
+     * and published through a volatile field, so a concurrent reader sees either no boundaries or all of them; two
+     * readers may both compute them, which is harmless as they compute the same boundaries.
+     *
+     * @return the boundaries of the equi-depth buckets of the histogram, null if there are no values
+     */
+    private DataValueDescriptor[] getHistogramBoundaries() {
+        DataValueDescriptor[] boundaries = histogramBoundaries;
+        if (boundaries == null && quantilesSketch.getN() > 0) {
+            boundaries = quantilesSketch.getQuantiles(HISTOGRAM_BUCKETS + 1);
+            histogramBoundaries = boundaries;
+        }
+        return boundaries;
+    }
+
+    /**
+     * @return the index of the bucket {@code [low, high)} holding the value, -1 if the value is outside of the histogram
+     */
+    private static int findBucket(DataValueDescriptor[] boundaries, DataValueDescriptor value) throws StandardException {
+        if (boundaries == null)
+            return -1;
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            if (value.compare(ORDER_OP_LESSTHAN, boundaries[i], false, false))
+                return -1;
+            if (value.compare(ORDER_OP_LESSTHAN, boundaries[i + 1], false, false))
+                return i;
+        }
+        return -1;
+    }
+
+    private double getRowsPerBucket(DataValueDescriptor[] boundaries) {
+        return ((double) quantilesSketch.getN()) / (boundaries.length - 1);
+    }
+
+    /**
+     * @return true if {@link #computeRange} measures the distance between two values of the column
+     */
+    private boolean hasRange() {
+        switch (dvd.getTypeFormatId()) {
+            case StoredFormatIds.SQL_REAL_ID:
+            case StoredFormatIds.SQL_DOUBLE_ID:
+            case StoredFormatIds.SQL_DECIMAL_ID:
+            case StoredFormatIds.SQL_TIMESTAMP_ID:
+                return true;
+            default:
+                return hasIntegralValues();
+        }
+    }
+
+    /**
+     * @return true if the column holds at most one value per unit of {@link #computeRange}
+     */
+    private boolean hasIntegralValues() {
+        switch (dvd.getTypeFormatId()) {
+            case StoredFormatIds.SQL_TINYINT_ID:
+            case StoredFormatIds.SQL_SMALLINT_ID:
+            case StoredFormatIds.SQL_INTEGER_ID:
+            case StoredFormatIds.SQL_LONGINT_ID:
+            case StoredFormatIds.SQL_DATE_ID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     private long getAvgRowsPerValueExcludingSkews() {
         long skewCount = 0;
         long skewNum = 0;
@@ -491,26 +623,28 @@ public class ColumnStatisticsImpl implements ItemStatistics<DataValueDescriptor>
     private long computeRangeSelectivity(DataValueDescriptor start, DataValueDescriptor stop, boolean includeStart, boolean includeStop) {
         /** range selectivity path:
          * we want to be a bit conservative to avoid extreme under-estimation. So we compare the following 2 points:
-         * 1. range selectivity returned by CDF
+         * 1. range selectivity returned by CDF, or by the density of the histogram bucket holding a narrow range
          * 2. selectivity of skewed values fall in the current range
          * And take the maximum among 2. Coming out of this function, at the caller function rangeSelectivity(), we need to further bound
          * it with the lower bound of rpv and upper bound of total not-null rows.
          */
 
-        long qualifiedRows = 0;
-        /* 1. range selectivity returned by CDF */
+        /* 1. range selectivity returned by the bucket holding a narrow range, or by CDF */
+        long qualifiedRows = getBucketRowsInRange(start, stop, includeStart, includeStop);
         if (!includeStart && start != null && !start.isNull())
             start = new StatsExcludeStartDVD(start);
-        double startSelectivity = start == null || start.isNull() ? 0.0d : quantilesSketch.getCDF(new DataValueDescriptor[]{start})[0];
         if (includeStop && stop != null && !stop.isNull())
             stop = new StatsIncludeEndDVD(stop);
-        double stopSelectivity = stop == null || stop.isNull() ? 1.0d : quantilesSketch.getCDF(new DataValueDescriptor[]{stop})[0];
-        double totalSelectivity = stopSelectivity - startSelectivity;
-        double count = (double) quantilesSketch.getN();
-        if (totalSelectivity == Double.NaN || count == 0)
-            qualifiedRows = 0;
-        else
-            qualifiedRows = Math.round(totalSelectivity * count);
+        if (qualifiedRows < 0) {
+            double startSelectivity = start == null || start.isNull() ? 0.0d : quantilesSketch.getCDF(new DataValueDescriptor[]{start})[0];
+            double stopSelectivity = stop == null || stop.isNull() ? 1.0d : quantilesSketch.getCDF(new DataValueDescriptor[]{stop})[0];
+            double totalSelectivity = stopSelectivity - startSelectivity;
+            double count = (double) quantilesSketch.getN();
+            if (totalSelectivity == Double.NaN || count == 0)
+                qualifiedRows = 0;
+            else
+                qualifiedRows = Math.round(totalSelectivity * count);
+        }
 
         /* 2. selectivity of skewed values fall in the current range */
         long skewedRowCountInRange = getSkewedRowCountInRange(start, stop, includeStart, includeStop);
@@ -603,6 +737,7 @@ public class ColumnStatisticsImpl implements ItemStatistics<DataValueDescriptor>
             frequenciesSketch.update(dvd);
             quantilesSketch.update(dvd);
             dvd.updateThetaSketch((UpdateSketch) thetaSketch);
+            histogramBoundaries = null;
         }
     }
 
@@ -140,6 +140,11 @@ public class EffectivePartitionStatisticsImpl implements PartitionStatistics {
         throw new UnsupportedOperationException("Use getAllColumnStatistics on the table vs. agains the effective partition.");
     }
 
+    @Override
+    public List<ColumnGroupStatistics> getColumnGroupStatistics() {
+        throw new UnsupportedOperationException("Use getColumnGroupStatistics on the table vs. against the effective partition.");
+    }
+
     /**
      *
      * This is 0 based retrieval of statistics.
@@ -126,6 +126,11 @@ public class FakePartitionStatisticsImpl implements PartitionStatistics {
         return itemStatistics;
     }
 
+    @Override
+    public List<ColumnGroupStatistics> getColumnGroupStatistics() {
+        return Collections.emptyList();
+    }
+
     /**
      *
      * This is 1 based with the 0 entry being the key
@@ -71,6 +71,11 @@ public interface PartitionStatistics {
      */
     List<? extends ItemStatistics> getAllColumnStatistics();
 
+    /**
+     * @return Statistics about groups of columns collected together, see {@link ColumnGroupStatistics}.
+     */
+    List<ColumnGroupStatistics> getColumnGroupStatistics();
+
 
     <T extends Comparator<T>> T minValue(int positionNumber);
 
@@ -44,6 +44,7 @@ import java.util.List;
 public class PartitionStatisticsImpl implements PartitionStatistics {
     PartitionStatisticsDescriptor partitionStatistics;
     private List<ItemStatistics> itemStatistics = new ArrayList<>();
+    private List<ColumnGroupStatistics> columnGroupStatistics = new ArrayList<>();
     double fallbackNullFraction;
     double extraQualifierMultiplier;
 
@@ -59,12 +60,18 @@ public class PartitionStatisticsImpl implements PartitionStatistics {
         // find the max column with stats collected
         int maxColId = 0;
         for (ColumnStatisticsDescriptor columnStatisticsDescriptor : partitionStatistics.getColumnStatsDescriptors()) {
+            if (ColumnGroupStatistics.isColumnGroup(columnStatisticsDescriptor.getColumnId())) {
+                columnGroupStatistics.add((ColumnGroupStatistics) columnStatisticsDescriptor.getStats());
+                continue;
+            }
             if (columnStatisticsDescriptor.getColumnId() > maxColId)
                 maxColId = columnStatisticsDescriptor.getColumnId();
         }
 
         ItemStatistics[] tmpArray = new ItemStatistics[maxColId];
         for (ColumnStatisticsDescriptor columnStatisticsDescriptor : partitionStatistics.getColumnStatsDescriptors()) {
+            if (ColumnGroupStatistics.isColumnGroup(columnStatisticsDescriptor.getColumnId()))
+                continue;
             tmpArray[columnStatisticsDescriptor.getColumnId()-1] = columnStatisticsDescriptor.getStats();
         }
         itemStatistics = Arrays.asList(tmpArray);
@@ -97,6 +104,11 @@ public class PartitionStatisticsImpl implements PartitionStatistics {
         return itemStatistics;
     }
 
+    @Override
+    public List<ColumnGroupStatistics> getColumnGroupStatistics() {
+        return columnGroupStatistics;
+    }
+
     /**
      *
      * This is 1 based with the 0 entry being the key
@@ -154,5 +154,17 @@ public interface TableStatistics {
     <T extends Comparator<T>> double rangeSelectivity(T start,T stop, boolean includeStart,boolean includeStop,int positionNumber,boolean useExtrapolation);
 
     <T extends Comparator<T>> double selectivityExcludingValueIfSkewed(T element, int positionNumber);
+
+    /**
+     *
+     * Statistics of a group of columns over the whole table.
+     *
+     * Tables whose statistics were collected before groups of columns were collected have none until their
+     * statistics are collected again.
+     *
+     * @param columnIds the positions of the columns in the table, indexed from 1, in ascending order
+     * @return the statistics of the group, or null if they weren't collected on every partition
+     */
+    ColumnGroupStatistics columnGroupStatistics(int[] columnIds);
 }
 
@@ -31,8 +31,11 @@
 package com.splicemachine.db.iapi.stats;
 import com.splicemachine.db.impl.sql.catalog.SYSTABLESTATISTICSRowFactory;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of Table Level Statistics.  The partition statistics contained within have each partition we know about.
@@ -50,6 +53,7 @@ public class TableStatisticsImpl implements TableStatistics {
     private double extraQualifierMultiplier;
     private boolean isMergedStats;
     private int totalPartition = 0;
+    private Map<List<Integer>, ColumnGroupStatistics> columnGroupStatistics;
 
     public TableStatisticsImpl() {
 
@@ -320,4 +324,39 @@ public class TableStatisticsImpl implements TableStatistics {
         return (double)(getEffectivePartitionStatistics().selectivityExcludingValueIfSkewed(element,positionNumber))/getEffectivePartitionStatistics().rowCount();
     }
 
+    /**
+     *
+     * Merge the statistics of the group over all the partitions, once per group.
+     *
+     * @param columnIds
+     * @return
+     */
+    @Override
+    public ColumnGroupStatistics columnGroupStatistics(int[] columnIds) {
+        if (columnGroupStatistics == null)
+            columnGroupStatistics = new HashMap<>();
+        List<Integer> key = Arrays.asList(Arrays.stream(columnIds).boxed().toArray(Integer[]::new));
+        if (columnGroupStatistics.containsKey(key))
+            return columnGroupStatistics.get(key);
+        ColumnGroupStatistics merged = null;
+        for (PartitionStatistics partitionStatistic : partitionStatistics) {
+            ColumnGroupStatistics partitionGroup = null;
+            for (ColumnGroupStatistics group : partitionStatistic.getColumnGroupStatistics()) {
+                if (Arrays.equals(group.getColumnIds(), columnIds)) {
+                    partitionGroup = group;
+                    break;
+                }
+            }
+            if (partitionGroup == null) {
+                merged = null;
+                break;
+            }
+            merged = merged == null ? partitionGroup : merged.merge(partitionGroup);
+            if (isMergedStats)
+                break;
+        }
+        columnGroupStatistics.put(key, merged);
+        return merged;
+    }
+
 }
@@ -36,6 +36,7 @@ import com.splicemachine.db.iapi.sql.compile.CostEstimate;
 import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.db.iapi.types.RowLocation;
 import java.util.BitSet;
+import java.util.List;
 
 /**
  * The StoreCostController interface provides methods that an access client
@@ -183,6 +184,25 @@ public interface StoreCostController extends RowCountable{
      */
     long cardinality(int columnNumber);
 
+    /**
+     *
+     * Get the selectivity fraction of a conjunction of equality predicates on all the columns of a group of columns,
+     * from the statistics collected for the group as a whole.
+     *
+     * @param columnNumbers the ids of the columns (indexed from 1), in ascending order
+     * @return an estimate of the percentage of rows in the data set which match one combination of values of the
+     * columns, or -1 if no statistics were collected for the group
+     */
+    double columnGroupSelectivity(int[] columnNumbers);
+
+    /**
+     *
+     * The groups of columns whose statistics were collected together.
+     *
+     * @return the ids of the columns of each group (indexed from 1), in ascending order
+     */
+    List<int[]> getColumnGroups();
+
     /**
      *
      * Get Average Row Width of the Conglomerate
@@ -46,6 +46,7 @@ import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.services.stream.HeaderPrintWriter;
 
 import com.splicemachine.db.iapi.services.compiler.*;
+import com.splicemachine.db.iapi.services.classfile.VMOpcode;
 import java.lang.reflect.Modifier;
 import com.splicemachine.db.iapi.sql.compile.CodeGeneration;
 
@@ -335,6 +336,49 @@ public abstract class DatabaseClasses
 		return cb.getClassBytecode();
 	}
 
+	/**
+		Build a class calling a method of a generated class, which
+		returns an object and takes no arguments. The call is a plain
+		virtual call on the generated class, which the JIT can inline
+		into the invoker, where a ReflectMethod goes through reflection.
+
+		@param className the fully qualified name of the generated class
+		@param methodName the name of the method
+		@param returnType the fully qualified name of the return type of the method
+		@param invokerName the name of the invoker class, in the package of generated classes
+
+		@exception StandardException Standard Derby error policy
+	*/
+	public ByteArray buildMethodInvoker(String className, String methodName, String returnType, String invokerName)
+		throws StandardException {
+
+		ClassBuilder cb = javaFactory.newClassBuilder(this, CodeGeneration.GENERATED_PACKAGE_PREFIX,
+			Modifier.PUBLIC | Modifier.FINAL, invokerName, "com.splicemachine.db.impl.services.reflect.GCMethodInvoker");
+
+		MethodBuilder constructor = cb.newConstructorBuilder(Modifier.PUBLIC);
+
+		constructor.callSuper();
+		constructor.methodReturn();
+		constructor.complete();
+
+		// Java: public Object invoke(Object ref) { return ((#className) ref).#methodName(); }
+		MethodBuilder invoke = cb.newMethodBuilder(Modifier.PUBLIC, "java.lang.Object", "invoke",
+			new String[] {"java.lang.Object"});
+		invoke.addThrownException(ClassName.StandardException);
+		invoke.getParameter(0);
+		invoke.cast(className);
+		invoke.callMethod(VMOpcode.INVOKEVIRTUAL, className, methodName, returnType, 0);
+		invoke.methodReturn();
+		invoke.complete();
+
+		MethodBuilder name = cb.newMethodBuilder(Modifier.PUBLIC, "java.lang.String", "getMethodName");
+		name.push(methodName);
+		name.methodReturn();
+		name.complete();
+
+		return cb.getClassBytecode();
+	}
+
 	/*
 	** Class specific methods
 	*/
@@ -39,18 +39,23 @@ import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.reference.SQLState;
 
 import com.splicemachine.db.iapi.services.context.Context;
+import com.splicemachine.db.iapi.sql.compile.CodeGeneration;
+import com.splicemachine.db.iapi.util.ByteArray;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.concurrent.ConcurrentHashMap;
 
 public final class ReflectGeneratedClass extends LoadedGeneratedClass {
 
 	private final ConcurrentHashMap<String, GeneratedMethod> methodCache;
+	private final ConcurrentHashMap<String, GeneratedMethod> invokerCache;
 	private static final GeneratedMethod[] directs;
 
 
 	private final Class	factoryClass;
 	private GCInstanceFactory factory;
+	private final DatabaseClasses cf;
 
 	static {
 		directs = new GeneratedMethod[10];
@@ -62,7 +67,9 @@ public final class ReflectGeneratedClass extends LoadedGeneratedClass {
 	public ReflectGeneratedClass(ClassFactory cf, Class jvmClass, Class factoryClass) {
 		super(cf, jvmClass);
 		methodCache = new ConcurrentHashMap<>();
+		invokerCache = new ConcurrentHashMap<>();
 		this.factoryClass = factoryClass;
+		this.cf = cf instanceof DatabaseClasses ? (DatabaseClasses) cf : null;
 	}
 
 	public Object newInstance(Context context) throws StandardException	{
@@ -123,6 +130,62 @@ public final class ReflectGeneratedClass extends LoadedGeneratedClass {
 				nsme, getName(), simpleName);
 		}
 	}
+
+	/**
+		Return a handle calling the method through a class generated
+		for it, which is loaded by the loader of this class. Methods
+		which return a primitive or an array, and classes which weren't generated,
+		are called through getMethod().
+	*/
+	public GeneratedMethod getInvoker(String simpleName)
+		throws StandardException {
+
+		GeneratedMethod invoker = invokerCache.get(simpleName);
+		if (invoker != null)
+			return invoker;
+
+		Class jvmClass = getJVMClass();
+		if (cf == null || !(jvmClass.getClassLoader() instanceof ReflectLoaderJava2))
+			return getMethod(simpleName);
+
+		synchronized (this) {
+			invoker = invokerCache.get(simpleName);
+			if (invoker != null)
+				return invoker;
+
+			Method m;
+			try {
+				m = jvmClass.getMethod(simpleName, (Class []) null);
+			} catch (NoSuchMethodException nsme) {
+				throw StandardException.newException(SQLState.GENERATED_CLASS_NO_SUCH_METHOD,
+					nsme, getName(), simpleName);
+			}
+			if (m.getReturnType().isPrimitive() || m.getReturnType().isArray() || Modifier.isStatic(m.getModifiers())
+					|| m.getDeclaringClass() != jvmClass)
+				return getMethod(simpleName);
+
+			String className = jvmClass.getName();
+			String invokerName = className.substring(className.lastIndexOf('.') + 1).concat("_").concat(simpleName);
+
+			ByteArray classData = cf.buildMethodInvoker(className, simpleName, m.getReturnType().getName(), invokerName);
+
+			Throwable t;
+			try {
+				Class invokerClass = ((ReflectLoaderJava2) jvmClass.getClassLoader()).loadInvokerClass(
+					CodeGeneration.GENERATED_PACKAGE_PREFIX.concat(invokerName), classData);
+				invoker = (GeneratedMethod) invokerClass.newInstance();
+				t = null;
+			} catch (InstantiationException | LinkageError | IllegalAccessException ie) {
+				t = ie;
+			}
+
+			if (t != null)
+				throw StandardException.newException(SQLState.GENERATED_CLASS_INSTANCE_ERROR, t, getName());
+
+			invokerCache.put(simpleName, invoker);
+			return invoker;
+		}
+	}
 }
 
 class DirectCall implements GeneratedMethod {
@@ -90,4 +90,17 @@ public final class ReflectLoaderJava2 extends ClassLoader {
 
 		return new ReflectGeneratedClass(cf, jvmClass, factoryClass);
 	}
+
+	/**
+		Load a class generated to call a method of a class loaded
+		by this loader, see DatabaseClasses.buildMethodInvoker().
+	*/
+	Class loadInvokerClass(String name, ByteArray classData) {
+
+		Class invokerClass = defineClass(name, classData.getArray(), classData.getOffset(), classData.getLength());
+
+		resolveClass(invokerClass);
+
+		return invokerClass;
+	}
 }
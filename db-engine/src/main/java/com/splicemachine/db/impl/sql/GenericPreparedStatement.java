@@ -43,6 +43,7 @@ import com.splicemachine.db.iapi.services.monitor.Monitor;
 import com.splicemachine.db.iapi.services.sanity.SanityManager;
 import com.splicemachine.db.iapi.services.uuid.UUIDFactory;
 import com.splicemachine.db.iapi.sql.*;
+import com.splicemachine.db.iapi.sql.compile.CardinalityFeedback;
 import com.splicemachine.db.iapi.sql.compile.DataSetProcessorType;
 import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
 import com.splicemachine.db.iapi.sql.conn.ResubmitDistributedException;
@@ -160,6 +161,9 @@ public class GenericPreparedStatement implements ExecPreparedStatement {
     private boolean hasXPlainTableOrProcedure;
 
     private DataSetProcessorType datasetProcessorType;
+
+    // shared by the clones of the statement
+    private CardinalityFeedback cardinalityFeedback = new CardinalityFeedback();
     //
     // constructors
     //
@@ -205,7 +209,7 @@ public class GenericPreparedStatement implements ExecPreparedStatement {
      * @return {@code true} if this statement is up to date, {@code false} otherwise
      */
     private boolean isUpToDate() {
-        return isValid && (activationClass != null) && !compilingStatement;
+        return isValid && (activationClass != null) && !compilingStatement && !cardinalityFeedback.isRecompileRequested();
     }
 
     @Override
@@ -694,6 +698,9 @@ public class GenericPreparedStatement implements ExecPreparedStatement {
                 return;
         }
 
+        // the rows observed were measured against the estimates of the tables and statistics which changed
+        cardinalityFeedback.clear();
+
         synchronized (this) {
 
             if (compilingStatement) {
@@ -905,6 +912,7 @@ public class GenericPreparedStatement implements ExecPreparedStatement {
                 updateMode = cursorInfo.updateMode;
             }
         }
+        cardinalityFeedback.compiled();
         isValid = true;
     }
 
@@ -1076,6 +1084,7 @@ public class GenericPreparedStatement implements ExecPreparedStatement {
         clone.updateColumns = updateColumns;
         clone.updateMode = updateMode;
         clone.needsSavepoint = needsSavepoint;
+        clone.cardinalityFeedback = cardinalityFeedback;
     }
 
     @Override
@@ -1133,4 +1142,9 @@ public class GenericPreparedStatement implements ExecPreparedStatement {
     public void setDatasetProcessorType(DataSetProcessorType datasetProcessorType) {
         this.datasetProcessorType = datasetProcessorType;
     }
+
+    @Override
+    public CardinalityFeedback getCardinalityFeedback() {
+        return cardinalityFeedback;
+    }
 }
@@ -72,6 +72,7 @@ public class GenericStatement implements Statement{
     protected static AtomicInteger jsonIncrement;
     protected int actualJsonIncrement = -1;
     private static final Logger JSON_TREE_LOG = Logger.getLogger(JsonTreeBuilderVisitor.class);
+    private static final String EXPLAIN_KEYWORD = "explain";
 
     // these fields define the identity of the statement
     private final SchemaDescriptor compilationSchema;
@@ -241,6 +242,17 @@ public class GenericStatement implements Statement{
 
     public int hashCode(){ return statementTextTrimed.hashCode(); }
 
+    /**
+     * @return the identity of the statement in a plan store, made of everything {@link #equals} compares, or null
+     * if the compilation schema does not exist yet
+     */
+    private String getPlanIdentity(){
+        if(compilationSchema.getUUID()==null)
+            return null;
+        return compilationSchema.getUUID()+"/"+prepareIsolationLevel+"/"+isForReadOnly+"/"
+                +sessionPropertyValues.length()+":"+sessionPropertyValues+"/"+statementTextTrimed;
+    }
+
     public String toString() {
         return statementText.trim().toUpperCase() + "[session properties: " + sessionPropertyValues + "]";
     }
@@ -269,6 +281,25 @@ public class GenericStatement implements Statement{
         return s.startsWith("EXPLAIN");
     }
 
+    /**
+     * An explain statement shows the plan the statement it explains would be compiled with, so it estimates the scans
+     * with the rows observed while executing that statement, if it is cached.
+     *
+     * @return the feedback of the statement explained, null if it is not cached
+     */
+    private CardinalityFeedback getExplainedStatementFeedback(LanguageConnectionContext lcc) throws StandardException{
+        String s=statementTextTrimed.trim();
+        if(s.length()<=EXPLAIN_KEYWORD.length()
+                || !s.regionMatches(true,0,EXPLAIN_KEYWORD,0,EXPLAIN_KEYWORD.length())
+                || !Character.isWhitespace(s.charAt(EXPLAIN_KEYWORD.length())))
+            return null;
+        GenericStatement explained=new GenericStatement(compilationSchema,s.substring(EXPLAIN_KEYWORD.length()).trim(),isForReadOnly,lcc);
+        explained.sessionPropertyValues=sessionPropertyValues;
+        explained.prepareIsolationLevel=prepareIsolationLevel;
+        GenericStorablePreparedStatement ps=lcc.getDataDictionary().getDataDictionaryCache().statementCacheFind(explained);
+        return ps==null ? null : ps.getCardinalityFeedback();
+    }
+
     private PreparedStatement prepMinion(LanguageConnectionContext lcc,
                                          boolean cacheMe,
                                          Object[] paramDefaults,
@@ -644,6 +675,22 @@ public class GenericStatement implements Statement{
         lcc.logStartCompiling(getSource());
         long startTime = System.nanoTime();
         try {
+            /*
+             * Statements which can be cached may have been compiled already by another server, or before a
+             * restart. If so, load the plan from the plan store instead of compiling the statement again, unless
+             * the rows observed while executing the statement showed the stored plan was based on wrong estimates,
+             * or the scans of the stored plan need to be known to record them.
+             */
+            DataDictionary dataDictionary = lcc.getDataDictionary();
+            CardinalityFeedback feedback = preparedStmt.getCardinalityFeedback();
+            StatementPlanStore planStore = foundInCache && feedback.isEmpty() && !feedback.isRecompileRequested() ?
+                    dataDictionary.getDataDictionaryCache().getStatementPlanStore() : null;
+            String planIdentity = planStore == null ? null : getPlanIdentity();
+            long dictionaryVersion = planIdentity == null || !dataDictionary.canWriteCache(null) ? -1 : planStore.dictionaryVersion();
+            if (dictionaryVersion >= 0 && PersistedStatementPlan.restore(lcc, planStore, dictionaryVersion, planIdentity, preparedStmt)) {
+                lcc.logEndCompiling(getSource(), System.nanoTime() - startTime);
+                return;
+            }
 
             StatementNode qt = parse(lcc, paramDefaults, timestamps, cc);
 
@@ -653,8 +700,6 @@ public class GenericStatement implements Statement{
              ** each other.
              */
 
-            DataDictionary dataDictionary = lcc.getDataDictionary();
-
             bindAndOptimize(lcc, timestamps, foundInCache, qt, dataDictionary);
 
             /* we need to move the commit of nested sub-transaction
@@ -668,6 +713,9 @@ public class GenericStatement implements Statement{
              */
             Timestamp endTimestamp = generate(lcc, timestamps, cc, qt);
 
+            if (dictionaryVersion >= 0)
+                PersistedStatementPlan.store(lcc, planStore, dictionaryVersion, planIdentity, preparedStmt, qt, cc);
+
             saveTree(qt, CompilationPhase.AFTER_GENERATE);
 
             lcc.logEndCompiling(getSource(), System.nanoTime() - startTime);
@@ -690,6 +738,8 @@ public class GenericStatement implements Statement{
         //Only top level statements go through here, nested statement
         //will invoke this method from other places
         StatementNode qt=(StatementNode)p.parseStatement(statementText,paramDefaults);
+        cc.setCardinalityFeedback(qt instanceof ExplainNode ?
+                getExplainedStatementFeedback(lcc) : preparedStmt.getCardinalityFeedback());
 
         timestamps[1]=getCurrentTimeMillis(lcc);
 
@@ -51,6 +51,7 @@ import com.splicemachine.db.iapi.util.ByteArray;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.List;
 
 /**
  * Prepared statement that can be made persistent.
@@ -132,6 +133,32 @@ public class GenericStorablePreparedStatement extends GenericPreparedStatement
         setActivationClass(gc);
     }
 
+    /**
+     * @return true if the byte code of the activation class was saved, so that the statement can be loaded again
+     * from its external form
+     */
+    boolean hasByteCode() {
+        return className != null && byteCode != null && byteCode.getArray() != null;
+    }
+
+    /**
+     * Makes the statement valid after its plan was read back with {@link #readExternal}, like
+     * {@link #completeCompile} does at the end of a compilation.
+     *
+     * @param requiredPermissionsList the permissions the statement requires, which are not part of its
+     *                                external form
+     */
+    void completeRestore(List requiredPermissionsList) throws StandardException {
+        loadGeneratedClass();
+        setRequiredPermissionsList(requiredPermissionsList);
+        incrementVersionCounter();
+        setExecuteStatementNameAndSchema(null, null);
+        setSPSName(null);
+        clearWarnings();
+        getCardinalityFeedback().restored();
+        isValid = true;
+    }
+
     @Override
     public ExecPreparedStatement getClone() throws StandardException {
         GenericStorablePreparedStatement clone = new GenericStorablePreparedStatement(statement);
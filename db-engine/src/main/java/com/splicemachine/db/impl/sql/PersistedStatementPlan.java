@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.db.impl.sql;
+
+import com.splicemachine.db.catalog.Dependable;
+import com.splicemachine.db.catalog.UUID;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.FormatIdInputStream;
+import com.splicemachine.db.iapi.services.io.FormatIdOutputStream;
+import com.splicemachine.db.iapi.services.io.FormatableBitSet;
+import com.splicemachine.db.iapi.sql.compile.CompilerContext;
+import com.splicemachine.db.iapi.sql.compile.StatementPlanStore;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.depend.Dependency;
+import com.splicemachine.db.iapi.sql.depend.DependencyManager;
+import com.splicemachine.db.iapi.sql.depend.Provider;
+import com.splicemachine.db.iapi.sql.depend.ProviderInfo;
+import com.splicemachine.db.iapi.sql.dictionary.DataDictionary;
+import com.splicemachine.db.iapi.sql.dictionary.StatementColumnPermission;
+import com.splicemachine.db.iapi.sql.dictionary.StatementGenericPermission;
+import com.splicemachine.db.iapi.sql.dictionary.StatementPermission;
+import com.splicemachine.db.iapi.sql.dictionary.StatementRoutinePermission;
+import com.splicemachine.db.iapi.sql.dictionary.StatementSchemaPermission;
+import com.splicemachine.db.iapi.sql.dictionary.StatementTablePermission;
+import com.splicemachine.db.impl.sql.compile.CursorNode;
+import com.splicemachine.db.impl.sql.compile.DMLModStatementNode;
+import com.splicemachine.db.impl.sql.compile.StatementNode;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads and writes compiled statements in a {@link StatementPlanStore}.
+ *
+ * A persisted plan holds the compiled statement as written by
+ * {@link GenericStorablePreparedStatement#writeExternal}, including the byte code of its activation class, the
+ * permissions it requires, and the providers it depends on. When the plan is read back, every provider is looked
+ * up again in the data dictionary and the statement is registered as their dependent, so it is invalidated by
+ * the dependency manager exactly like a statement compiled locally. If any provider is gone, the plan is not used.
+ *
+ * Only queries and INSERT, UPDATE and DELETE statements whose providers and permissions can all be persisted
+ * are stored.
+ */
+final class PersistedStatementPlan{
+    private static final Logger LOG=Logger.getLogger(PersistedStatementPlan.class);
+    // must change whenever the layout of a plan changes, older plans are then ignored
+    private static final int FORMAT_VERSION=1;
+
+    private PersistedStatementPlan(){ }
+
+    /**
+     * Restores the plan of a statement from the store.
+     *
+     * When the plan is restored, a nested transaction is left open, just like a compilation does.
+     *
+     * @return true if the statement was restored, false if it needs to be compiled
+     */
+    static boolean restore(LanguageConnectionContext lcc,
+                           StatementPlanStore store,
+                           long dictionaryVersion,
+                           String identity,
+                           GenericStorablePreparedStatement ps) throws StandardException{
+        byte[] plan=store.getPlan(dictionaryVersion,key(identity));
+        if(plan==null)
+            return false;
+
+        DataDictionary dd=lcc.getDataDictionary();
+        DependencyManager dm=dd.getDependencyManager();
+        lcc.beginNestedTransaction(true);
+        try{
+            FormatIdInputStream in=new FormatIdInputStream(new ByteArrayInputStream(plan));
+            if(in.readInt()!=FORMAT_VERSION || !identity.equals(in.readObject()))
+                return discard(lcc,dm,ps,null);
+            List<StatementPermission> permissions=readPermissions(in);
+            int providerCount=in.readInt();
+            List<Provider> providers=new ArrayList<>(providerCount);
+            for(int i=0;i<providerCount;i++){
+                ProviderInfo info=(ProviderInfo)in.readObject();
+                Dependable provider=info.getDependableFinder().getDependable(dd,info.getObjectId());
+                providers.add((Provider)provider);
+            }
+            ps.readExternal(in);
+            for(Provider provider : providers){
+                dm.addDependency(ps,provider,lcc.getContextManager());
+            }
+            ps.completeRestore(permissions);
+            return true;
+        }catch(IOException|ClassNotFoundException|ClassCastException|IllegalArgumentException|StandardException e){
+            // a provider was dropped, or the plan cannot be read by this version
+            return discard(lcc,dm,ps,e);
+        }
+    }
+
+    /**
+     * Stores the plan of a statement which was just compiled, if it can be restored later. The compilation does
+     * not fail if the plan cannot be stored.
+     */
+    static void store(LanguageConnectionContext lcc,
+                      StatementPlanStore store,
+                      long dictionaryVersion,
+                      String identity,
+                      GenericStorablePreparedStatement ps,
+                      StatementNode qt,
+                      CompilerContext cc){
+        if(!(qt instanceof CursorNode || qt instanceof DMLModStatementNode)
+                || ps.referencesSessionSchema()
+                || qt.executeStatementName()!=null
+                || qt.getSPSName()!=null
+                || cc.getWarnings()!=null
+                || ps.invalidatedWhileCompiling
+                || !ps.hasByteCode())
+            return;
+        List permissions=ps.getRequiredPermissionsList();
+        if(!canPersist(permissions))
+            return;
+
+        byte[] plan;
+        try{
+            DataDictionary dd=lcc.getDataDictionary();
+            DependencyManager dm=dd.getDependencyManager();
+            Collection<Dependency> dependencies=dm.find(ps.getObjectID());
+            ProviderInfo[] providers=dm.getPersistentProviderInfos(ps);
+            if(dependencies==null || dependencies.size()!=providers.length)
+                return; // depends on something which only exists in this database instance
+            // the statement may have been compiled against a dictionary which changed in the meantime
+            if(!dd.canWriteCache(null) || store.dictionaryVersion()!=dictionaryVersion)
+                return;
+
+            ByteArrayOutputStream bytes=new ByteArrayOutputStream();
+            FormatIdOutputStream out=new FormatIdOutputStream(bytes);
+            out.writeInt(FORMAT_VERSION);
+            out.writeObject(identity);
+            writePermissions(out,permissions);
+            out.writeInt(providers.length);
+            for(ProviderInfo provider : providers){
+                out.writeObject(provider);
+            }
+            ps.writeExternal(out);
+            out.flush();
+            plan=bytes.toByteArray();
+        }catch(IOException|StandardException e){
+            if(LOG.isDebugEnabled())
+                LOG.debug("Plan of statement "+ps.getSource()+" cannot be persisted",e);
+            return;
+        }
+        store.storePlan(dictionaryVersion,key(identity),plan);
+    }
+
+    static byte[] key(String identity){
+        try{
+            return MessageDigest.getInstance("SHA-256").digest(identity.getBytes(StandardCharsets.UTF_8));
+        }catch(NoSuchAlgorithmException e){
+            throw new IllegalStateException(e); // every Java platform supports SHA-256
+        }
+    }
+
+    static boolean canPersist(List permissions){
+        if(permissions==null)
+            return true;
+        for(Object permission : permissions){
+            StatementPermission perm=(StatementPermission)permission;
+            switch(perm.getType()){
+                case COLUMN:
+                case TABLE:
+                case ROUTINE:
+                case GENERIC:
+                    break;
+                case SCHEMA:
+                    // only the permissions on a schema looked up by UUID can be rebuilt
+                    if(((StatementSchemaPermission)perm).getSchemaUUID()==null)
+                        return false;
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    static void writePermissions(FormatIdOutputStream out,List permissions) throws IOException{
+        if(permissions==null){
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(permissions.size());
+        for(Object permission : permissions){
+            StatementPermission perm=(StatementPermission)permission;
+            StatementPermission.Type type=perm.getType();
+            out.writeUTF(type.name());
+            switch(type){
+                case COLUMN:
+                    StatementColumnPermission column=(StatementColumnPermission)perm;
+                    out.writeObject(column.getSchemaUUID());
+                    out.writeObject(column.getTableUUID());
+                    out.writeInt(column.getPrivType());
+                    out.writeObject(column.getColumns());
+                    break;
+                case TABLE:
+                    StatementTablePermission table=(StatementTablePermission)perm;
+                    out.writeObject(table.getSchemaUUID());
+                    out.writeObject(table.getTableUUID());
+                    out.writeInt(table.getPrivType());
+                    break;
+                case SCHEMA:
+                    StatementSchemaPermission schema=(StatementSchemaPermission)perm;
+                    out.writeObject(schema.getSchemaUUID());
+                    out.writeInt(schema.getPrivType());
+                    break;
+                case ROUTINE:
+                    out.writeObject(((StatementRoutinePermission)perm).getRoutineUUID());
+                    break;
+                case GENERIC:
+                    StatementGenericPermission generic=(StatementGenericPermission)perm;
+                    out.writeObject(generic.getObjectID());
+                    out.writeObject(generic.getObjectType());
+                    out.writeObject(generic.getPrivilege());
+                    break;
+                default:
+                    throw new IOException("Cannot persist permission "+perm);
+            }
+        }
+    }
+
+    static List<StatementPermission> readPermissions(FormatIdInputStream in) throws IOException, ClassNotFoundException{
+        int size=in.readInt();
+        if(size<0)
+            return null;
+        List<StatementPermission> permissions=new ArrayList<>(size);
+        for(int i=0;i<size;i++){
+            StatementPermission.Type type=StatementPermission.Type.valueOf(in.readUTF());
+            switch(type){
+                case COLUMN:
+                    permissions.add(new StatementColumnPermission((UUID)in.readObject(),(UUID)in.readObject(),
+                            in.readInt(),(FormatableBitSet)in.readObject()));
+                    break;
+                case TABLE:
+                    permissions.add(new StatementTablePermission((UUID)in.readObject(),(UUID)in.readObject(),
+                            in.readInt()));
+                    break;
+                case SCHEMA:
+                    permissions.add(new StatementSchemaPermission((UUID)in.readObject(),in.readInt()));
+                    break;
+                case ROUTINE:
+                    permissions.add(new StatementRoutinePermission((UUID)in.readObject()));
+                    break;
+                case GENERIC:
+                    permissions.add(new StatementGenericPermission((UUID)in.readObject(),
+                            (String)in.readObject(),(String)in.readObject()));
+                    break;
+                default:
+                    throw new IOException("Unexpected permission type "+type);
+            }
+        }
+        return permissions;
+    }
+
+    private static boolean discard(LanguageConnectionContext lcc,
+                                   DependencyManager dm,
+                                   GenericStorablePreparedStatement ps,
+                                   Exception cause) throws StandardException{
+        if(cause!=null && LOG.isDebugEnabled())
+            LOG.debug("Persisted plan of statement "+ps.getSource()+" cannot be used",cause);
+        try{
+            dm.clearDependencies(lcc,ps);
+        }finally{
+            lcc.commitNestedTransaction();
+        }
+        return false;
+    }
+}
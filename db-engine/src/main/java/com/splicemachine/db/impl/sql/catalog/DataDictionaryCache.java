@@ -37,6 +37,7 @@ import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.reference.Property;
 import com.splicemachine.db.iapi.services.context.ContextService;
 import com.splicemachine.db.iapi.services.property.PropertyUtil;
+import com.splicemachine.db.iapi.sql.compile.StatementPlanStore;
 import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
 import com.splicemachine.db.iapi.sql.depend.DependencyManager;
 import com.splicemachine.db.iapi.sql.depend.Dependent;
@@ -85,6 +86,7 @@ public class DataDictionaryCache {
     private ManagedCache<Pair<String, String>, Optional<RoleGrantDescriptor>> roleGrantCache;
     private ManagedCache<ByteSlice,TokenDescriptor> tokenCache;
     private ManagedCache<String, Optional<String>> propertyCache;
+    private volatile StatementPlanStore statementPlanStore;
     private DataDictionary dd;
     public static final String [] cacheNames = new String[] {"oidTdCache", "nameTdCache", "spsNameCache", "sequenceGeneratorCache", "permissionsCache", "partitionStatisticsCache",
             "storedPreparedStatementCache", "conglomerateCache", "statementCache", "schemaCache", "aliasDescriptorCache", "roleCache", "defaultRoleCache", "roleGrantCache",
@@ -519,6 +521,17 @@ public class DataDictionaryCache {
         return gsps;
     }
 
+    /**
+     * @return the store backing the statement cache across restarts and servers, or null if there is none
+     */
+    public StatementPlanStore getStatementPlanStore() {
+        return statementPlanStore;
+    }
+
+    public void setStatementPlanStore(StatementPlanStore statementPlanStore) {
+        this.statementPlanStore = statementPlanStore;
+    }
+
     public void roleCacheAdd(String roleName, Optional<RoleGrantDescriptor> optional) throws StandardException {
         if (!dd.canWriteCache(null))
             return;
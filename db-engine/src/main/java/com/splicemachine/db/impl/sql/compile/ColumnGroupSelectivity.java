@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.db.impl.sql.compile;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.store.access.StoreCostController;
+
+import java.util.List;
+
+/**
+ *
+ * Selectivity of equality predicates on all the columns of a group of columns whose statistics were collected
+ * together, which replaces the selectivities of the individual predicates.
+ *
+ * The statistics of the group give the average selectivity of a combination of values of the columns. The most
+ * selective predicate of the group is kept if it is more selective, since the value it matches may be rarer than
+ * average.
+ *
+ */
+public class ColumnGroupSelectivity extends AbstractSelectivityHolder {
+    private final StoreCostController storeCost;
+    private final int[] columnNumbers;
+    private final List<SelectivityHolder> members;
+
+    public ColumnGroupSelectivity(StoreCostController storeCost, int[] columnNumbers,
+                                  List<SelectivityHolder> members, QualifierPhase phase) {
+        super(columnNumbers[0], phase);
+        this.storeCost = storeCost;
+        this.columnNumbers = columnNumbers;
+        this.members = members;
+    }
+
+    public int[] getColumnNumbers() {
+        return columnNumbers;
+    }
+
+    public List<SelectivityHolder> getMembers() {
+        return members;
+    }
+
+    public double getSelectivity() throws StandardException {
+        if (selectivity == -1.0d) {
+            double mostSelective = 1.0d;
+            for (SelectivityHolder member : members)
+                mostSelective = Math.min(mostSelective, member.getSelectivity());
+            double groupSelectivity = storeCost.columnGroupSelectivity(columnNumbers);
+            if (groupSelectivity < 0) {
+                // no statistics for the group, fall back to the selectivities of the predicates
+                members.sort(null);
+                selectivity = ScanCostFunction.computeSelectivity(1.0d, members);
+            } else
+                selectivity = Math.min(mostSelective, groupSelectivity);
+        }
+        return selectivity;
+    }
+}
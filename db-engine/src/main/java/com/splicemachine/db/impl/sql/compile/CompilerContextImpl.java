@@ -134,6 +134,7 @@ public class CompilerContextImpl extends ContextImpl
         defaultSchemaStack = null;
         referencedSequences = null;
         dataSetProcessorType = DataSetProcessorType.DEFAULT_CONTROL;
+        cardinalityFeedback = null;
         skipStatsTableList.clear();
         selectivityEstimationIncludingSkewedDefault = false;
         projectionPruningEnabled = false;
@@ -1194,6 +1195,7 @@ public class CompilerContextImpl extends ContextImpl
     private HashMap requiredRolePrivileges;
     private HashMap referencedSequences;
     private DataSetProcessorType dataSetProcessorType = DataSetProcessorType.DEFAULT_CONTROL;
+    private CardinalityFeedback cardinalityFeedback;
 
     @Override
     public void setDataSetProcessorType(DataSetProcessorType type) throws StandardException {
@@ -1205,6 +1207,16 @@ public class CompilerContextImpl extends ContextImpl
         return dataSetProcessorType;
     }
 
+    @Override
+    public void setCardinalityFeedback(CardinalityFeedback feedback) {
+        cardinalityFeedback = feedback;
+    }
+
+    @Override
+    public CardinalityFeedback getCardinalityFeedback() {
+        return cardinalityFeedback;
+    }
+
     @Override
     public boolean skipStats(int tableNumber) {
         return skipStatsTableList.contains(tableNumber);
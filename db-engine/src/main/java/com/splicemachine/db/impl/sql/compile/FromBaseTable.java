@@ -45,7 +45,9 @@ import com.splicemachine.db.iapi.services.io.FormatableIntHolder;
 import com.splicemachine.db.iapi.services.sanity.SanityManager;
 import com.splicemachine.db.iapi.sql.compile.*;
 import com.splicemachine.db.iapi.sql.conn.SessionProperties;
+import com.splicemachine.db.iapi.sql.depend.Dependent;
 import com.splicemachine.db.iapi.sql.dictionary.*;
+import com.splicemachine.db.iapi.sql.execute.ExecPreparedStatement;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.db.iapi.sql.execute.ExecutionContext;
 import com.splicemachine.db.iapi.store.access.StaticCompiledOpenConglomInfo;
@@ -2053,6 +2055,11 @@ public class FromBaseTable extends FromTable {
          */
         assignResultSetNumber();
 
+        /* Let the rows observed while executing the scan correct the estimates of this table, see CardinalityFeedback */
+        Dependent dependent=getCompilerContext().getCurrentDependent();
+        if(dependent instanceof ExecPreparedStatement)
+            ((ExecPreparedStatement)dependent).getCardinalityFeedback().scanGenerated(getResultSetNumber(),tableNumber);
+
         /*
         ** If we are doing a special scan to get the last row
         ** of an index, generate it separately.
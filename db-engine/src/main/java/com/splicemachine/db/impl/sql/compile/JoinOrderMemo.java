@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.splicemachine.db.impl.sql.compile;
+
+import com.splicemachine.db.iapi.sql.compile.CostEstimate;
+import com.splicemachine.db.iapi.sql.compile.RowOrdering;
+import com.splicemachine.db.iapi.util.JBitSet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the cheapest plans found for the starts of the join orders considered by an {@link OptimizerImpl}
+ * during a round of optimization, so that it can stop extending a join order which can't lead to a cheaper plan.
+ * <p>
+ * The cost of joining the remaining tables only depends on the tables already joined, and on the rows they
+ * produce: their number, ordering, partitioning, size, and the remote, open and close costs of the last table
+ * joined, which the join strategies charge again for every join above. So a join order starting with the same
+ * tables as a cheaper one, in the same ordering and over as many partitions, is dominated when it is no cheaper on
+ * any of these counts: whatever the remaining tables are joined with, the cheaper start leads to a cheaper plan. This is the pruning of a dynamic programming enumeration, keyed by set
+ * of joined tables and interesting order, applied to the depth-first enumeration of the optimizer.
+ * <p>
+ * When greedy, a join order is also pruned once a complete join order has been found if its start is costlier
+ * than the cheapest start of the same length found so far, whatever its tables. This keeps the search for queries
+ * joining many tables bounded, at the risk of missing the best plan.
+ */
+final class JoinOrderMemo{
+    private final boolean memoize;
+    private final boolean greedy;
+    private final Map<String,double[]> bestByJoinedTables=new HashMap<>();
+    private final double[] bestLocalCostByLength;
+
+    JoinOrderMemo(int numOptimizables,boolean memoize,boolean greedy){
+        this.memoize=memoize;
+        this.greedy=greedy;
+        this.bestLocalCostByLength=new double[numOptimizables];
+        Arrays.fill(bestLocalCostByLength,Double.MAX_VALUE);
+    }
+
+    /**
+     * Considers the start of a join order, and remembers it if it isn't pruned.
+     *
+     * @param joinedTables       the tables joined by the start of the join order
+     * @param joinPosition       the position of the last table joined
+     * @param accumulatedCost    the cost of the start of the join order
+     * @param outerCost          the cost of the last table joined, giving the rows and ordering of the start
+     * @param sortAvoidanceCost  the cost of the start of the join order avoiding a required sort, null if none
+     * @param sortAvoidanceOrder the row ordering of the sort avoidance plan, null if none
+     * @param completePlanFound  whether a complete join order has been found this round
+     * @return true if no plan starting this way can be cheaper than one starting as a plan already considered
+     */
+    boolean prune(JBitSet joinedTables,
+                  int joinPosition,
+                  CostEstimate accumulatedCost,
+                  CostEstimate outerCost,
+                  CostEstimate sortAvoidanceCost,
+                  RowOrdering sortAvoidanceOrder,
+                  boolean completePlanFound){
+        double[] current={
+                accumulatedCost.localCost(),
+                accumulatedCost.remoteCost(),
+                outerCost.rowCount(),
+                outerCost.remoteCost(),
+                outerCost.getOpenCost(),
+                outerCost.getCloseCost(),
+                outerCost.getEstimatedHeapSize(),
+                sortAvoidanceCost==null?0d:sortAvoidanceCost.localCost(),
+                sortAvoidanceCost==null?0d:sortAvoidanceCost.remoteCost()
+        };
+        String key=null;
+        double[] best=null;
+        if(memoize){
+            key=key(joinedTables,outerCost.partitionCount(),outerCost.getRowOrdering(),sortAvoidanceOrder);
+            best=bestByJoinedTables.get(key);
+            if(best!=null && dominates(best,current))
+                return true;
+        }
+        if(greedy && completePlanFound && current[0]>bestLocalCostByLength[joinPosition])
+            return true;
+
+        if(memoize && (best==null || dominates(current,best)))
+            bestByJoinedTables.put(key,current);
+        if(current[0]<bestLocalCostByLength[joinPosition])
+            bestLocalCostByLength[joinPosition]=current[0];
+        return false;
+    }
+
+    void clear(){
+        bestByJoinedTables.clear();
+        Arrays.fill(bestLocalCostByLength,Double.MAX_VALUE);
+    }
+
+    int size(){
+        return bestByJoinedTables.size();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /**
+     * @return true if a is no costlier than b on every count and cheaper on at least one. Equal costs don't
+     * dominate, so that a join order considered again is not pruned by itself.
+     */
+    private static boolean dominates(double[] a,double[] b){
+        boolean cheaper=false;
+        for(int i=0;i<a.length;i++){
+            if(a[i]>b[i])
+                return false;
+            if(a[i]<b[i])
+                cheaper=true;
+        }
+        return cheaper;
+    }
+
+    /**
+     * The partition count is part of the key rather than compared: fewer partitions are not cheaper for every join
+     * strategy above, as they also lower the parallelism of the joins.
+     */
+    private static String key(JBitSet joinedTables,int partitionCount,RowOrdering order,RowOrdering sortAvoidanceOrder){
+        StringBuilder key=new StringBuilder(joinedTables.toString());
+        key.append('|').append(partitionCount);
+        appendOrder(key.append('|'),order);
+        appendOrder(key.append('|'),sortAvoidanceOrder);
+        return key.toString();
+    }
+
+    private static void appendOrder(StringBuilder key,RowOrdering order){
+        if(order==null)
+            return;
+        for(ColumnOrdering columns : order.orderedColumns()){
+            key.append(columns.direction()).append(':');
+            for(int i=0;i<columns.size();i++){
+                int[] tableColumn=columns.get(i);
+                key.append(tableColumn[0]).append('.').append(tableColumn[1]).append(',');
+            }
+            key.append(';');
+        }
+    }
+}
@@ -174,6 +174,10 @@ public class OptimizerImpl implements Optimizer{
     private static final int NANOS_TO_MILLIS = 1000000;
     private boolean forSpark = false;
 
+    // Cheapest starts of the join orders considered this round, null until
+    // first needed or if join orders are neither memoized nor greedy.
+    private JoinOrderMemo joinOrderMemo;
+
     protected OptimizerImpl(OptimizableList optimizableList,
                             OptimizablePredicateList predicateList,
                             DataDictionary dDictionary,
@@ -333,6 +337,10 @@ public class OptimizerImpl implements Optimizer{
 
         currentRowOrdering.removeAllOptimizables();
         bestRowOrdering.removeAllOptimizables();
+
+        /* Costs of the previous round were for another outer cost */
+        if(joinOrderMemo!=null)
+            joinOrderMemo.clear();
     }
 
     @Override
@@ -476,6 +484,20 @@ public class OptimizerImpl implements Optimizer{
                 (currentCost.compareLocal(bestCost)>0) &&
                 ((requiredRowOrdering==null) || (currentSortAvoidanceCost.compareLocal(bestCost)>0));
 
+        /* Before extending the join order, check that no join order starting with the same tables was cheaper */
+        if(!alreadyCostsMore && joinPosition>=0 && joinPosition<numOptimizables-1 && !timeExceeded
+                && bestCostFoundForCurrentPosition() && getJoinOrderMemo()!=null){
+            Optimizable lastJoined=optimizableList.getOptimizable(proposedJoinOrder[joinPosition]);
+            boolean sortAvoidance=requiredRowOrdering!=null && lastJoined.considerSortAvoidancePath();
+            alreadyCostsMore=joinOrderMemo.prune(assignedTableMap,
+                    joinPosition,
+                    currentCost,
+                    lastJoined.getBestAccessPath().getCostEstimate(),
+                    sortAvoidance?currentSortAvoidanceCost:null,
+                    sortAvoidance?bestRowOrdering:null,
+                    !bestCost.isUninitialized());
+        }
+
         if (joinPosition < numOptimizables-1 && !alreadyCostsMore && !timeExceeded) {
             /*
             ** Are we either starting at the first join position (in which
@@ -1572,6 +1594,17 @@ public class OptimizerImpl implements Optimizer{
         return new RowOrderingImpl();
     }
 
+    private JoinOrderMemo getJoinOrderMemo(){
+        if(joinOrderMemo==null && optimizableList.optimizeJoinOrder()){
+            boolean memoize=memoizeJoinOrders();
+            int greedyThreshold=getGreedyJoinOrderThreshold();
+            boolean greedy=greedyThreshold>0 && numOptimizables>greedyThreshold;
+            if(memoize || greedy)
+                joinOrderMemo=new JoinOrderMemo(numOptimizables,memoize,greedy);
+        }
+        return joinOrderMemo;
+    }
+
     private boolean bestCostFoundForCurrentPosition() {
         Optimizable optimizable = optimizableList.getOptimizable(proposedJoinOrder[joinPosition]);
         return optimizable.getBestAccessPath().getCostEstimate() != null;
@@ -2482,6 +2515,22 @@ public class OptimizerImpl implements Optimizer{
         return timeExceeded;
     }
 
+    /**
+     * @return whether to prune join orders whose start is dominated by a cheaper start joining the same tables,
+     * see {@link JoinOrderMemo}
+     */
+    protected boolean memoizeJoinOrders() {
+        return false;
+    }
+
+    /**
+     * @return the number of optimizables above which the join order search is greedy, see {@link JoinOrderMemo},
+     * 0 if it never is
+     */
+    protected int getGreedyJoinOrderThreshold() {
+        return 0;
+    }
+
     /**
      * Returns minimum duration that should be allowed to lapse before
      * the method checkTimeout() returns true. By default, this returns
@@ -32,6 +32,7 @@
 package com.splicemachine.db.impl.sql.compile;
 
 import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.compile.CardinalityFeedback;
 import com.splicemachine.db.iapi.sql.compile.CostEstimate;
 import com.splicemachine.db.iapi.sql.compile.Optimizable;
 import com.splicemachine.db.iapi.sql.dictionary.ColumnDescriptor;
@@ -275,6 +276,7 @@ public class ScanCostFunction{
 
     public void generateCost() throws StandardException {
 
+        combineColumnGroups(selectivityHolder, scc);
         double baseTableSelectivity = computePhaseSelectivity(selectivityHolder,QualifierPhase.BASE);
         double filterBaseTableSelectivity = computePhaseSelectivity(selectivityHolder,QualifierPhase.BASE,QualifierPhase.FILTER_BASE);
         double projectionSelectivity = computePhaseSelectivity(selectivityHolder,QualifierPhase.FILTER_PROJECTION);
@@ -285,8 +287,9 @@ public class ScanCostFunction{
         assert projectionSelectivity >= 0 && projectionSelectivity <= 1.0:"projectionSelectivity Out of Bounds -> " + projectionSelectivity;
         assert totalSelectivity >= 0 && totalSelectivity <= 1.0:"totalSelectivity Out of Bounds -> " + totalSelectivity;
 
-        // Total Row Count from the Base Conglomerate
-        double totalRowCount = scc.baseRowCount();
+        // Total Row Count from the Base Conglomerate, corrected with the rows earlier executions observed, so that
+        // the rows scanned and returned, and the local and remote costs of reading them, all follow the correction
+        double totalRowCount = scc.baseRowCount()*getCardinalityCorrection();
         assert totalRowCount >= 0 : "totalRowCount cannot be negative -> " + totalRowCount;
         // Rows Returned is always the totalSelectivity (Conglomerate Independent)
         scanCost.setEstimatedRowCount(Math.round(totalRowCount*totalSelectivity));
@@ -400,6 +403,26 @@ public class ScanCostFunction{
         }
     }
 
+    /**
+     *
+     * Rows observed by earlier executions of the statement correct the estimated rows of the table. The correction
+     * applies to the rows of the table rather than to the selectivity of the scan: when the statistics of the table
+     * are stale, an unfiltered scan already has a selectivity of 1 and the correction would be lost. The correction
+     * is kept for this table of the statement, whatever conglomerate it was read through, since all conglomerates
+     * need to have the same total selectivity.
+     *
+     * @return the factor to apply to the rows of the base table
+     */
+    private double getCardinalityCorrection() throws StandardException {
+        if (!(baseTable instanceof FromBaseTable))
+            return 1.0d;
+        FromBaseTable fromBaseTable = (FromBaseTable) baseTable;
+        CardinalityFeedback feedback = fromBaseTable.getCompilerContext().getCardinalityFeedback();
+        if (feedback == null || feedback.isEmpty())
+            return 1.0d;
+        return feedback.getCorrection(fromBaseTable.getTableNumber());
+    }
+
     /**
      *
      * Computing the total selectivity.  All conglomerates need to have the same total selectivity.
@@ -446,6 +469,60 @@ public class ScanCostFunction{
         return computeSelectivity(totalSelectivity,holders);
     }
 
+    /**
+     *
+     * Replaces the selectivities of equality predicates on all the columns of a group of columns whose statistics
+     * were collected together with the selectivity of the group, so the predicates aren't estimated as independent.
+     * Larger groups are preferred, and a predicate belongs to one group at most. Predicates of different phases are
+     * not combined.
+     *
+     * @param selectivityHolder the selectivities, by column number
+     * @param scc
+     */
+    public static void combineColumnGroups(List<SelectivityHolder>[] selectivityHolder, StoreCostController scc) {
+        List<int[]> columnGroups = new ArrayList<>(scc.getColumnGroups());
+        if (columnGroups.isEmpty())
+            return;
+        columnGroups.sort((a, b) -> Integer.compare(b.length, a.length));
+        for (QualifierPhase phase : QualifierPhase.values()) {
+            Map<Integer, SelectivityHolder> equalities = new HashMap<>();
+            for (int colNum = 0; colNum < selectivityHolder.length; colNum++) {
+                if (selectivityHolder[colNum] == null)
+                    continue;
+                for (SelectivityHolder holder : selectivityHolder[colNum]) {
+                    if (holder.getPhase() == phase && isEquality(holder)) {
+                        equalities.put(colNum, holder);
+                        break;
+                    }
+                }
+            }
+            if (equalities.size() < 2)
+                continue;
+            GROUPS: for (int[] columnGroup : columnGroups) {
+                if (columnGroup.length < 2)
+                    continue;
+                for (int colNum : columnGroup) {
+                    if (!equalities.containsKey(colNum))
+                        continue GROUPS;
+                }
+                List<SelectivityHolder> members = new ArrayList<>(columnGroup.length);
+                for (int colNum : columnGroup) {
+                    SelectivityHolder member = equalities.remove(colNum);
+                    selectivityHolder[colNum].remove(member);
+                    members.add(member);
+                }
+                selectivityHolder[columnGroup[0]].add(new ColumnGroupSelectivity(scc, columnGroup, members, phase));
+            }
+        }
+    }
+
+    private static boolean isEquality(SelectivityHolder holder) {
+        if (!holder.isRangeSelectivity())
+            return false;
+        RangeSelectivity range = (RangeSelectivity) holder;
+        return range.start != null && range.start == range.stop && range.includeStart && range.includeStop;
+    }
+
     /**
      *
      * Helper method to compute increasing sqrt levels.
@@ -331,6 +331,11 @@ public class GenericLanguageConnectionContext extends ContextImpl implements Lan
      */
     private ControlExecutionLimiter limiter;
 
+    /**
+     * Accounts for the memory held by the operations of the query running in control mode
+     */
+    private QueryMemoryManager queryMemoryManager;
+
     private String lastLogStmt;
     private String lastLogStmtFormat;
     private SessionPropertiesImpl sessionProperties;
@@ -402,6 +407,7 @@ public class GenericLanguageConnectionContext extends ContextImpl implements Lan
         stmtValidators=new ArrayList<>();
         triggerTables=new ArrayList<>();
         limiter=ControlExecutionLimiter.NO_OP;
+        queryMemoryManager=QueryMemoryManager.UNLIMITED;
         sessionProperties = new SessionPropertiesImpl();
         // transfer setting of skipStats and defaultSelectivityFactor from jdbc connnection string to sessionProperties
         if (skipStats)
@@ -3748,6 +3754,16 @@ public class GenericLanguageConnectionContext extends ContextImpl implements Lan
         limiter = executionLimiter;
     }
 
+    @Override
+    public QueryMemoryManager getQueryMemoryManager() {
+        return queryMemoryManager;
+    }
+
+    @Override
+    public void setQueryMemoryManager(QueryMemoryManager queryMemoryManager) {
+        this.queryMemoryManager = queryMemoryManager;
+    }
+
     @Override
     public String getClientIPAddress() {
         return ipAddress;
@@ -3830,11 +3846,12 @@ public class GenericLanguageConnectionContext extends ContextImpl implements Lan
 
     @Override
     public void logEndExecuting(String uuid, long modifiedRows, long badRecords, long
-            nanoTimeSpent) {
+            nanoTimeSpent, long peakMemoryBytes, long spilledBytes) {
         if (stmtLogger.isInfoEnabled()) {
             stmtLogger.info(String.format("End executing query. %s, uuid=%s, timeSpent=%dms, " +
-                            "modifiedRows=%d, badRecords=%d",
-                    getLogHeader(), uuid, nanoTimeSpent / 1000000, modifiedRows, badRecords));
+                            "modifiedRows=%d, badRecords=%d, peakMemory=%dKB, spilled=%dKB",
+                    getLogHeader(), uuid, nanoTimeSpent / 1000000, modifiedRows, badRecords, peakMemoryBytes / 1024,
+                    spilledBytes / 1024));
         }
     }
 
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.splicemachine.db.iapi.sql.compile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CardinalityFeedbackTest {
+
+    @Test
+    public void correctsUnderestimatesOnly() {
+        CardinalityFeedback feedback = generated(10, 1, 11, 2);
+        feedback.record(10, 1000, 10);
+        assertTrue(feedback.isEmpty());
+        assertFalse(feedback.isRecompileRequested());
+        assertEquals(1.0, feedback.getCorrection(1), 0.0);
+
+        feedback.record(10, 1000, 50000);
+        assertEquals(50.0, feedback.getCorrection(1), 0.0);
+        assertEquals(1.0, feedback.getCorrection(2), 0.0);
+        assertTrue(feedback.isRecompileRequested());
+    }
+
+    @Test
+    public void compoundsCorrectedEstimates() {
+        CardinalityFeedback feedback = generated(10, 1);
+        feedback.record(10, 0, 100);
+        assertEquals(100.0, feedback.getCorrection(1), 0.0);
+        feedback.scanGenerated(10, 1);
+        feedback.compiled();
+        assertFalse(feedback.isRecompileRequested());
+
+        // the next compilation estimated 100 rows, which were still 5 times too few
+        feedback.record(10, 100, 500);
+        assertEquals(500.0, feedback.getCorrection(1), 0.0);
+        assertTrue(feedback.isRecompileRequested());
+    }
+
+    @Test
+    public void boundsCorrections() {
+        CardinalityFeedback feedback = generated(10, 1);
+        feedback.record(10, 1, 1000000);
+        assertEquals(CardinalityFeedback.MAX_CORRECTION, feedback.getCorrection(1), 0.0);
+        feedback.scanGenerated(10, 1);
+        feedback.compiled();
+
+        // the plan compiled with the bounded correction still underestimates, but won't change
+        feedback.record(10, CardinalityFeedback.MAX_CORRECTION, 1000000);
+        assertEquals(CardinalityFeedback.MAX_CORRECTION, feedback.getCorrection(1), 0.0);
+        assertFalse(feedback.isRecompileRequested());
+    }
+
+    @Test
+    public void correctsTheTableOfTheScanOfTheCurrentPlan() {
+        CardinalityFeedback feedback = generated(10, 1, 11, 2);
+        // the recompiled plan reads table 2 through result set 10
+        feedback.scanGenerated(10, 2);
+        feedback.compiled();
+        feedback.record(10, 10, 1000);
+        assertEquals(1.0, feedback.getCorrection(1), 0.0);
+        assertEquals(100.0, feedback.getCorrection(2), 0.0);
+    }
+
+    @Test
+    public void recompilesRestoredPlansWithoutCorrecting() {
+        CardinalityFeedback feedback = generated(10, 1);
+        feedback.restored();
+        feedback.record(10, 10, 1000);
+        assertTrue(feedback.isEmpty());
+        assertTrue(feedback.isRecompileRequested());
+    }
+
+    @Test
+    public void clearsCorrections() {
+        CardinalityFeedback feedback = generated(10, 1);
+        feedback.record(10, 10, 1000);
+        feedback.clear();
+        assertTrue(feedback.isEmpty());
+        assertFalse(feedback.isRecompileRequested());
+        assertEquals(1.0, feedback.getCorrection(1), 0.0);
+    }
+
+    /**
+     * @param scans pairs of result set number and table number of the scans of the plan
+     */
+    private static CardinalityFeedback generated(int... scans) {
+        CardinalityFeedback feedback = new CardinalityFeedback();
+        for (int i = 0; i < scans.length; i += 2)
+            feedback.scanGenerated(scans[i], scans[i + 1]);
+        feedback.compiled();
+        return feedback;
+    }
+}
@@ -117,6 +117,38 @@ public class SQLIntegerTest extends SQLDataValueDescriptorTest {
                 Assert.assertEquals(4000.0d,(double) stats.rangeSelectivity(new SQLInteger(5000),new SQLInteger(),true,false),RANGE_SELECTIVITY_ERRROR_BOUNDS);
         }
 
+        @Test
+        public void testColumnStatisticsBucketDensity() throws Exception {
+                /* values 0 to 99 repeated 40 times each, then 100000 distinct values */
+                SQLInteger value1 = new SQLInteger();
+                ItemStatistics stats = new ColumnStatisticsImpl(value1);
+                for (int i = 0; i < 4000; i++)
+                        stats.update(new SQLInteger(i % 100));
+                for (int i = 1000; i < 101000; i++)
+                        stats.update(new SQLInteger(i));
+                stats = serde(stats);
+                long denseValueRows = stats.selectivity(new SQLInteger(50));
+                Assert.assertTrue(denseValueRows + " rows estimated for a value repeated 40 times", denseValueRows >= 20 && denseValueRows <= 80);
+                long narrowRangeRows = stats.rangeSelectivity(new SQLInteger(50000),new SQLInteger(50010),true,false);
+                Assert.assertTrue(narrowRangeRows + " rows estimated for a range of 10 values", narrowRangeRows >= 3 && narrowRangeRows <= 30);
+        }
+
+        @Test
+        public void testColumnStatisticsBucketDensityCountsIncludedBounds() throws Exception {
+                /* one row for every value from 0 to 99999 */
+                SQLInteger value1 = new SQLInteger();
+                ItemStatistics stats = new ColumnStatisticsImpl(value1);
+                for (int i = 0; i < 100000; i++)
+                        stats.update(new SQLInteger(i));
+                stats = serde(stats);
+                long closedRangeRows = stats.rangeSelectivity(new SQLInteger(50000),new SQLInteger(50010),true,true);
+                long halfOpenRangeRows = stats.rangeSelectivity(new SQLInteger(50000),new SQLInteger(50010),true,false);
+                long openRangeRows = stats.rangeSelectivity(new SQLInteger(50000),new SQLInteger(50010),false,false);
+                Assert.assertTrue(halfOpenRangeRows + " rows estimated for a range of 10 values", halfOpenRangeRows >= 8 && halfOpenRangeRows <= 12);
+                Assert.assertTrue(closedRangeRows + " rows estimated for a range of 11 values", closedRangeRows > halfOpenRangeRows);
+                Assert.assertTrue(openRangeRows + " rows estimated for a range of 9 values", openRangeRows < halfOpenRangeRows);
+        }
+
         @Test
         public void testExecRowSparkRowConversion() throws StandardException {
                 ValueRow execRow = new ValueRow(1);
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.splicemachine.db.impl.sql;
+
+import com.splicemachine.db.catalog.UUID;
+import com.splicemachine.db.iapi.services.io.FormatIdInputStream;
+import com.splicemachine.db.iapi.services.io.FormatIdOutputStream;
+import com.splicemachine.db.iapi.services.io.FormatableBitSet;
+import com.splicemachine.db.iapi.services.loader.GeneratedClass;
+import com.splicemachine.db.iapi.services.monitor.ModuleFactory;
+import com.splicemachine.db.iapi.services.monitor.Monitor;
+import com.splicemachine.db.iapi.services.uuid.UUIDFactory;
+import com.splicemachine.db.iapi.sql.compile.CompilerContext;
+import com.splicemachine.db.iapi.sql.compile.StatementPlanStore;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.depend.Dependency;
+import com.splicemachine.db.iapi.sql.depend.DependencyManager;
+import com.splicemachine.db.iapi.sql.depend.ProviderInfo;
+import com.splicemachine.db.iapi.sql.dictionary.DataDictionary;
+import com.splicemachine.db.iapi.sql.dictionary.StatementColumnPermission;
+import com.splicemachine.db.iapi.sql.dictionary.StatementGenericPermission;
+import com.splicemachine.db.iapi.sql.dictionary.StatementPermission;
+import com.splicemachine.db.iapi.sql.dictionary.StatementRoutinePermission;
+import com.splicemachine.db.iapi.sql.dictionary.StatementSchemaPermission;
+import com.splicemachine.db.iapi.sql.dictionary.StatementTablePermission;
+import com.splicemachine.db.iapi.store.access.TransactionController;
+import com.splicemachine.db.impl.services.uuid.BasicUUID;
+import com.splicemachine.db.impl.sql.compile.CursorNode;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PersistedStatementPlanTest {
+    private static final String IDENTITY = "SELECT * FROM T WHERE A = ?";
+    private static final byte[] BYTE_CODE = {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 1, 2, 3};
+
+    @BeforeClass
+    public static void setUpMonitor() throws Exception {
+        // format ids are resolved by a lite monitor, statement ids come from a fixed factory
+        final ModuleFactory lite = Monitor.getMonitorLite();
+        ModuleFactory monitor = mock(ModuleFactory.class);
+        when(monitor.newInstanceFromIdentifier(anyInt())).thenAnswer(invocation ->
+                lite.newInstanceFromIdentifier((Integer) invocation.getArguments()[0]));
+        UUIDFactory uuidFactory = mock(UUIDFactory.class);
+        when(uuidFactory.createUUID()).thenReturn(uuid(99));
+        when(monitor.getUUIDFactory()).thenReturn(uuidFactory);
+        Monitor.setMonitor(monitor);
+    }
+
+    @AfterClass
+    public static void tearDownMonitor() {
+        Monitor.clearMonitor();
+    }
+
+    @Test
+    public void permissionsRoundTrip() throws Exception {
+        FormatableBitSet columns = new FormatableBitSet(8);
+        columns.set(1);
+        columns.set(5);
+        List<StatementPermission> permissions = Arrays.asList(
+                new StatementColumnPermission(uuid(1), uuid(2), 3, columns),
+                new StatementTablePermission(uuid(1), uuid(2), 1),
+                new StatementSchemaPermission(uuid(1), 2),
+                new StatementRoutinePermission(uuid(3)),
+                new StatementGenericPermission(uuid(4), "SEQUENCE", "USAGE"));
+        Assert.assertTrue(PersistedStatementPlan.canPersist(permissions));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FormatIdOutputStream out = new FormatIdOutputStream(bytes);
+        PersistedStatementPlan.writePermissions(out, permissions);
+        PersistedStatementPlan.writePermissions(out, null);
+        out.flush();
+        FormatIdInputStream in = new FormatIdInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        List<StatementPermission> read = PersistedStatementPlan.readPermissions(in);
+
+        Assert.assertEquals(permissions.size(), read.size());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(permissions.get(i), read.get(i));
+        }
+        Assert.assertEquals(uuid(3), ((StatementRoutinePermission) read.get(3)).getRoutineUUID());
+        StatementGenericPermission generic = (StatementGenericPermission) read.get(4);
+        Assert.assertEquals(uuid(4), generic.getObjectID());
+        Assert.assertEquals("SEQUENCE", generic.getObjectType());
+        Assert.assertEquals("USAGE", generic.getPrivilege());
+        Assert.assertNull("no permissions", PersistedStatementPlan.readPermissions(in));
+    }
+
+    @Test
+    public void schemaPermissionsByNameAreNotPersisted() {
+        List<StatementPermission> permissions = Collections.<StatementPermission>singletonList(
+                new StatementSchemaPermission("S", "SPLICE", 1));
+        Assert.assertFalse(PersistedStatementPlan.canPersist(permissions));
+    }
+
+    @Test
+    public void planRoundTrip() throws Exception {
+        MapPlanStore store = new MapPlanStore(5L);
+        DependencyManager dm = mock(DependencyManager.class);
+        LanguageConnectionContext lcc = lcc(dm);
+        List<StatementPermission> permissions = new ArrayList<>();
+        permissions.add(new StatementTablePermission(uuid(1), uuid(2), 1));
+
+        GenericStorablePreparedStatement compiled = compiled(permissions);
+        withoutProviders(dm, compiled);
+        PersistedStatementPlan.store(lcc, store, 5L, IDENTITY, compiled, mock(CursorNode.class),
+                mock(CompilerContext.class));
+        Assert.assertEquals("the plan is stored", 1, store.plans.size());
+
+        GenericStorablePreparedStatement restored = spy(new GenericStorablePreparedStatement());
+        doNothing().when(restored).loadGeneratedClass();
+        Assert.assertTrue(PersistedStatementPlan.restore(lcc, store, 5L, IDENTITY, restored));
+
+        Assert.assertTrue(restored.isValid());
+        Assert.assertTrue(restored.hasByteCode());
+        Assert.assertArrayEquals(BYTE_CODE, restored.getByteCodeSaver().getArray());
+        Assert.assertTrue(restored.needsSavepoint());
+        Assert.assertTrue(restored.isAtomic());
+        Assert.assertEquals(permissions, restored.getRequiredPermissionsList());
+        verify(lcc).beginNestedTransaction(true);
+        verify(lcc, never()).commitNestedTransaction();
+
+        // another version of the dictionary, or another statement, has no plan
+        Assert.assertFalse(PersistedStatementPlan.restore(lcc, store, 6L, IDENTITY, restored));
+        Assert.assertFalse(PersistedStatementPlan.restore(lcc, store, 5L, IDENTITY + " ", restored));
+    }
+
+    @Test
+    public void planOfAChangedDictionaryIsNotStored() throws Exception {
+        MapPlanStore store = new MapPlanStore(6L);
+        DependencyManager dm = mock(DependencyManager.class);
+        GenericStorablePreparedStatement compiled = compiled(null);
+        withoutProviders(dm, compiled);
+
+        PersistedStatementPlan.store(lcc(dm), store, 5L, IDENTITY, compiled, mock(CursorNode.class),
+                mock(CompilerContext.class));
+        Assert.assertTrue(store.plans.isEmpty());
+    }
+
+    @Test
+    public void planOfAnotherStatementIsDiscarded() throws Exception {
+        MapPlanStore store = new MapPlanStore(5L);
+        DependencyManager dm = mock(DependencyManager.class);
+        LanguageConnectionContext lcc = lcc(dm);
+        GenericStorablePreparedStatement compiled = compiled(null);
+        withoutProviders(dm, compiled);
+        PersistedStatementPlan.store(lcc, store, 5L, IDENTITY, compiled, mock(CursorNode.class),
+                mock(CompilerContext.class));
+        // a digest collision: the stored plan is not the one of the statement being compiled
+        String other = "SELECT * FROM U";
+        store.storePlan(5L, PersistedStatementPlan.key(other), store.plans.values().iterator().next());
+
+        GenericStorablePreparedStatement restored = spy(new GenericStorablePreparedStatement());
+        Assert.assertFalse(PersistedStatementPlan.restore(lcc, store, 5L, other, restored));
+        verify(dm).clearDependencies(lcc, restored);
+        verify(lcc).commitNestedTransaction();
+        verify(restored, never()).completeRestore(anyList());
+    }
+
+    private static GenericStorablePreparedStatement compiled(List permissions) {
+        GenericStorablePreparedStatement ps = new GenericStorablePreparedStatement();
+        ps.getByteCodeSaver().setBytes(BYTE_CODE);
+        GeneratedClass activationClass = mock(GeneratedClass.class);
+        when(activationClass.getName()).thenReturn("com.splicemachine.db.exe.ac0");
+        ps.setActivationClass(activationClass);
+        ps.setNeedsSavepoint(true);
+        ps.setIsAtomic(true);
+        ps.setRequiredPermissionsList(permissions);
+        return ps;
+    }
+
+    private static void withoutProviders(DependencyManager dm, GenericStorablePreparedStatement ps) throws Exception {
+        when(dm.find(ps.getObjectID())).thenReturn(Collections.<Dependency>emptyList());
+        when(dm.getPersistentProviderInfos(ps)).thenReturn(new ProviderInfo[0]);
+    }
+
+    private static LanguageConnectionContext lcc(DependencyManager dm) throws Exception {
+        DataDictionary dd = mock(DataDictionary.class);
+        when(dd.getDependencyManager()).thenReturn(dm);
+        when(dd.canWriteCache(any(TransactionController.class))).thenReturn(true);
+        LanguageConnectionContext lcc = mock(LanguageConnectionContext.class);
+        when(lcc.getDataDictionary()).thenReturn(dd);
+        return lcc;
+    }
+
+    private static UUID uuid(int sequence) {
+        return new BasicUUID(1L, 2L, sequence);
+    }
+
+    private static class MapPlanStore implements StatementPlanStore {
+        private final Map<String, byte[]> plans = new HashMap<>();
+        private final long dictionaryVersion;
+
+        MapPlanStore(long dictionaryVersion) {
+            this.dictionaryVersion = dictionaryVersion;
+        }
+
+        @Override
+        public long dictionaryVersion() {
+            return dictionaryVersion;
+        }
+
+        @Override
+        public byte[] getPlan(long dictionaryVersion, byte[] key) {
+            return plans.get(dictionaryVersion + Arrays.toString(key));
+        }
+
+        @Override
+        public void storePlan(long dictionaryVersion, byte[] key, byte[] plan) {
+            plans.put(dictionaryVersion + Arrays.toString(key), plan);
+        }
+    }
+}
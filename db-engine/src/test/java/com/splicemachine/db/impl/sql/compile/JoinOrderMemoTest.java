@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.splicemachine.db.impl.sql.compile;
+
+import com.splicemachine.db.iapi.sql.compile.CostEstimate;
+import com.splicemachine.db.iapi.sql.compile.RowOrdering;
+import com.splicemachine.db.iapi.util.JBitSet;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class JoinOrderMemoTest {
+
+    @Test
+    public void prunesStartsDominatedByACheaperStartOfTheSameTables() {
+        JoinOrderMemo memo = new JoinOrderMemo(4, true, false);
+        JBitSet ab = tables(0, 1);
+
+        Assert.assertFalse(memo.prune(ab, 1, cost(100, 10), cost(0, 10), null, null, false));
+        Assert.assertTrue("costlier, as many rows", memo.prune(ab, 1, cost(200, 10), cost(0, 10), null, null, false));
+        Assert.assertFalse("costlier, fewer rows", memo.prune(ab, 1, cost(200, 5), cost(0, 5), null, null, false));
+        Assert.assertFalse("the same start again", memo.prune(ab, 1, cost(100, 10), cost(0, 10), null, null, false));
+        Assert.assertFalse("other tables", memo.prune(tables(0, 2), 1, cost(200, 10), cost(0, 10), null, null, false));
+    }
+
+    @Test
+    public void keepsStartsProducingAnotherOrdering() {
+        JoinOrderMemo memo = new JoinOrderMemo(4, true, false);
+        JBitSet ab = tables(0, 1);
+        RowOrdering ordered = new RowOrderingImpl();
+        ordered.addOrderedColumn(RowOrdering.ASCENDING, 0, 1);
+
+        Assert.assertFalse(memo.prune(ab, 1, cost(100, 10), cost(0, 10), null, null, false));
+        Assert.assertFalse(memo.prune(ab, 1, cost(200, 10), cost(0, 10, ordered), null, null, false));
+        Assert.assertTrue(memo.prune(ab, 1, cost(300, 10), cost(0, 10, ordered), null, null, false));
+        Assert.assertEquals(2, memo.size());
+    }
+
+    @Test
+    public void comparesSortAvoidanceCosts() {
+        JoinOrderMemo memo = new JoinOrderMemo(4, true, false);
+        JBitSet ab = tables(0, 1);
+        RowOrdering sortAvoidanceOrder = new RowOrderingImpl();
+
+        Assert.assertFalse(memo.prune(ab, 1, cost(100, 10), cost(0, 10), cost(500, 10), sortAvoidanceOrder, false));
+        Assert.assertFalse(memo.prune(ab, 1, cost(200, 10), cost(0, 10), cost(300, 10), sortAvoidanceOrder, false));
+        Assert.assertTrue(memo.prune(ab, 1, cost(300, 10), cost(0, 10), cost(600, 10), sortAvoidanceOrder, false));
+    }
+
+    @Test
+    public void keepsStartsWithCheaperRemoteOpenOrCloseCosts() {
+        JoinOrderMemo memo = new JoinOrderMemo(4, true, false);
+        JBitSet ab = tables(0, 1);
+
+        Assert.assertFalse(memo.prune(ab, 1, cost(100, 10), outer(10, 1, 50, 5, 5), null, null, false));
+        Assert.assertFalse("cheaper remote cost", memo.prune(ab, 1, cost(200, 10), outer(10, 1, 10, 5, 5), null, null, false));
+        Assert.assertFalse("cheaper open cost", memo.prune(ab, 1, cost(200, 10), outer(10, 1, 50, 1, 5), null, null, false));
+        Assert.assertFalse("cheaper close cost", memo.prune(ab, 1, cost(200, 10), outer(10, 1, 50, 5, 1), null, null, false));
+        Assert.assertTrue("costlier on every count", memo.prune(ab, 1, cost(200, 10), outer(10, 1, 50, 5, 5), null, null, false));
+    }
+
+    @Test
+    public void keepsStartsOverAnotherNumberOfPartitions() {
+        JoinOrderMemo memo = new JoinOrderMemo(4, true, false);
+        JBitSet ab = tables(0, 1);
+
+        Assert.assertFalse(memo.prune(ab, 1, cost(100, 10), outer(10, 1, 0, 0, 0), null, null, false));
+        Assert.assertFalse(memo.prune(ab, 1, cost(200, 10), outer(10, 8, 0, 0, 0), null, null, false));
+        Assert.assertTrue(memo.prune(ab, 1, cost(300, 10), outer(10, 8, 0, 0, 0), null, null, false));
+        Assert.assertEquals(2, memo.size());
+    }
+
+    @Test
+    public void greedyPrunesCostlierStartsOfTheSameLengthOnceAPlanIsFound() {
+        JoinOrderMemo memo = new JoinOrderMemo(4, false, true);
+
+        Assert.assertFalse(memo.prune(tables(0, 1), 1, cost(100, 10), cost(0, 10), null, null, false));
+        Assert.assertFalse("no complete plan yet", memo.prune(tables(2, 3), 1, cost(200, 10), cost(0, 10), null, null, false));
+        Assert.assertTrue(memo.prune(tables(2, 3), 1, cost(200, 10), cost(0, 10), null, null, true));
+        Assert.assertFalse(memo.prune(tables(1, 2), 1, cost(50, 100), cost(0, 100), null, null, true));
+        Assert.assertFalse("other length", memo.prune(tables(0, 1, 2), 2, cost(1000, 10), cost(0, 10), null, null, true));
+
+        memo.clear();
+        Assert.assertFalse(memo.prune(tables(2, 3), 1, cost(200, 10), cost(0, 10), null, null, true));
+    }
+
+    private static JBitSet tables(int... tableNumbers) {
+        JBitSet tables = new JBitSet(4);
+        for (int tableNumber : tableNumbers) {
+            tables.set(tableNumber);
+        }
+        return tables;
+    }
+
+    private static CostEstimate cost(double localCost, double rowCount) {
+        return cost(localCost, rowCount, null);
+    }
+
+    private static CostEstimate cost(double localCost, double rowCount, RowOrdering ordering) {
+        CostEstimate cost = Mockito.mock(CostEstimate.class);
+        Mockito.when(cost.localCost()).thenReturn(localCost);
+        Mockito.when(cost.rowCount()).thenReturn(rowCount);
+        Mockito.when(cost.getRowOrdering()).thenReturn(ordering);
+        return cost;
+    }
+
+    private static CostEstimate outer(double rowCount, int partitions, double remoteCost, double openCost, double closeCost) {
+        CostEstimate cost = cost(0, rowCount);
+        Mockito.when(cost.partitionCount()).thenReturn(partitions);
+        Mockito.when(cost.remoteCost()).thenReturn(remoteCost);
+        Mockito.when(cost.getOpenCost()).thenReturn(openCost);
+        Mockito.when(cost.getCloseCost()).thenReturn(closeCost);
+        return cost;
+    }
+}
@@ -1143,6 +1143,18 @@ public interface Property {
     String DRDA_PROP_MAXTHREADS = "derby.drda.maxThreads";
     String DRDA_PROP_TIMESLICE = "derby.drda.timeSlice";
 
+    /**
+     * derby.drda.nio
+     *
+     *<BR>
+     * If true, idle client sessions are parked on a selector instead of
+     * holding a connection thread, and are handed back to the
+     * (maxThreads bounded) thread pool when the client sends a request.
+     * Only applies when SSL is off. If maxThreads is not set, the pool is
+     * capped at four threads per processor (at least 16). Default is false.
+     */
+    String DRDA_PROP_NIO = "derby.drda.nio";
+
 
     /**
      * db.drda.sslMode
@@ -25,6 +25,9 @@ public class ColumnarBatch {
 
     private int numRows;
     private final WritableColumnVector[] columns;
+    // rows returned by rowIterator(), all of them when null
+    private int[] selectedRows;
+    private int numSelectedRows;
 
     public static ColumnarBatch allocate(StructType schema, MemoryMode memMode, int maxRows) {
         return new ColumnarBatch(schema, maxRows, memMode);
@@ -34,7 +37,8 @@ public class ColumnarBatch {
      * Returns an iterator over the rows in this batch.
      */
     public Iterator<InternalRow> rowIterator() {
-        final int maxRows = numRows;
+        final int[] rowIds = selectedRows;
+        final int maxRows = rowIds == null ? numRows : numSelectedRows;
         final MutableColumnarRow row = new MutableColumnarRow(columns);
         return new Iterator<InternalRow>() {
             int rowId = 0;
@@ -49,7 +53,8 @@ public class ColumnarBatch {
                 if (rowId >= maxRows) {
                     throw new NoSuchElementException();
                 }
-                row.rowId = rowId++;
+                row.rowId = rowIds == null ? rowId : rowIds[rowId];
+                rowId++;
                 return row;
             }
 
@@ -65,6 +70,23 @@ public class ColumnarBatch {
      */
     public void setNumRows(int numRows) {
         this.numRows = numRows;
+        this.selectedRows = null;
+    }
+
+    /**
+     * Restricts the rows returned by rowIterator() to the first `count` ids of `rowIds`, which must
+     * be in increasing order. Columns only need to be populated for the selected rows.
+     */
+    public void setSelectedRows(int[] rowIds, int count) {
+        this.selectedRows = rowIds;
+        this.numSelectedRows = count;
+    }
+
+    /**
+     * Returns the number of rows returned by rowIterator().
+     */
+    public int numRows() {
+        return selectedRows == null ? numRows : numSelectedRows;
     }
 
     /**
@@ -33,6 +33,7 @@ import com.splicemachine.db.iapi.sql.dictionary.SchemaDescriptor;
 import com.splicemachine.db.iapi.sql.dictionary.TriggerDescriptor;
 import com.splicemachine.db.iapi.sql.dictionary.TriggerDescriptorV2;
 import com.splicemachine.db.iapi.sql.dictionary.TriggerDescriptorV3;
+import com.splicemachine.db.iapi.stats.ColumnGroupStatistics;
 import com.splicemachine.db.iapi.stats.ColumnStatisticsImpl;
 import com.splicemachine.db.iapi.stats.ColumnStatisticsMerge;
 import com.splicemachine.db.iapi.stats.FakeColumnStatisticsImpl;
@@ -72,6 +73,7 @@ import com.splicemachine.derby.utils.kryo.ListDataTypeSerializer;
 import com.splicemachine.derby.utils.kryo.SimpleObjectSerializer;
 import com.splicemachine.kvpair.KVPair;
 import com.splicemachine.pipeline.client.BulkWrite;
+import com.splicemachine.stream.ColumnarBatch;
 import com.splicemachine.stream.ResultStreamer;
 import com.splicemachine.stream.StreamProtocol;
 import com.splicemachine.utils.ByteSlice;
@@ -945,5 +947,7 @@ public class SpliceSparkKryoRegistrator implements KryoRegistrator, KryoPool.Kry
         instance.register(TriggerDescriptorV3.class,EXTERNALIZABLE_SERIALIZER);
         instance.register(StringAggregator.class,EXTERNALIZABLE_SERIALIZER);
         instance.register(StringBuilder.class);
+        instance.register(ColumnarBatch.class,EXTERNALIZABLE_SERIALIZER);
+        instance.register(ColumnGroupStatistics.class,EXTERNALIZABLE_SERIALIZER);
     }
 }
@@ -226,6 +226,26 @@ public class SparkLeanOperationContext<Op extends SpliceOperation> implements Op
         return 0;
     }
 
+    @Override
+    public void recordSpill(long bytes) {
+
+    }
+
+    @Override
+    public void recordMemoryUsage(long bytes) {
+
+    }
+
+    @Override
+    public long getSpilledBytes() {
+        return 0;
+    }
+
+    @Override
+    public long getPeakMemoryUsage() {
+        return 0;
+    }
+
     @Override
     public void pushScope(String displayName){
         SpliceSpark.pushScope(displayName);
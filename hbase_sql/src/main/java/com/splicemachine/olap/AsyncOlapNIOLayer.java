@@ -177,6 +177,8 @@ public class AsyncOlapNIOLayer implements JobExecutor{
                 throw Exceptions.rawIOException((Throwable)OlapSerializationUtils.decode(fr.getErrorBytes()));
             case IN_PROGRESS:
                 OlapMessage.ProgressResponse pr=response.getExtension(OlapMessage.ProgressResponse.response);
+                if(pr.hasQueuedJobs())
+                    return new SubmittedResult(pr.getTickTimeMillis(),pr.getQueuedJobs(),pr.getQueueWaitTimeMillis());
                 return new SubmittedResult(pr.getTickTimeMillis());
             case CANCELLED:
                 return new CancelledResult();
@@ -521,8 +523,12 @@ public class AsyncOlapNIOLayer implements JobExecutor{
             }
             //TODO -sf- deal with a OlapServer failover here (i.e. a move to NOT_SUBMITTED from any other state
             if(or instanceof SubmittedResult) {
-                future.tickTimeNanos = TimeUnit.MILLISECONDS.toNanos(((SubmittedResult) or).getTickTime());
+                SubmittedResult sr = (SubmittedResult) or;
+                future.tickTimeNanos = TimeUnit.MILLISECONDS.toNanos(sr.getTickTime());
                 future.lastStatus = System.currentTimeMillis();
+                if (sr.getQueuedJobs() >= 0 && LOG.isDebugEnabled())
+                    LOG.debug("Job " + future.job.getUniqueName() + " waiting to run for " + sr.getQueueWaitTime() +
+                            " ms, with " + sr.getQueuedJobs() + " jobs waiting");
             } else if(future.submitted && !future.isDone() && or instanceof NotSubmittedResult) {
                 // Server says the job is no longer submitted, give it a couple of tries in case messages are out of order
                 long millisSinceLastStatus = System.currentTimeMillis() - future.lastStatus;
@@ -90,6 +90,11 @@ public class DistributedCompaction extends DistributedJob{
         return jobGroup;
     }
 
+    @Override
+    public boolean isBackground(){
+        return true;
+    }
+
     @Override
     public int hashCode(){
         return jobGroup.hashCode();
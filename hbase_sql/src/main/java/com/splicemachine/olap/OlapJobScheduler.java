@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.olap;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.concurrent.Clock;
+import com.splicemachine.derby.iapi.sql.olap.DistributedJob;
+import com.splicemachine.derby.iapi.sql.olap.OlapStatus;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decides when the jobs submitted to the Olap server run.
+ *
+ * Jobs wait in a queue per class (queries or maintenance jobs, see {@link DistributedJob#isBackground()}) and
+ * {@link DistributedJob#getSchedulingGroup() group}, and the queues share the server by weighted fair queueing: each
+ * queue advances a virtual time by the inverse of its weight when one of its jobs starts, and the queue with the
+ * lowest virtual time starts the next job. Queries weigh {@code splice.olap_server.interactiveWeight} times more than
+ * maintenance jobs.
+ *
+ * A job starts only if fewer than {@code splice.olap_server.threads} jobs are running and the total estimated cost of
+ * the running jobs stays within {@code splice.olap_server.maxRunningCost}, or if nothing is running. The job next in
+ * line waits for running jobs to complete rather than being overtaken, so expensive jobs aren't starved; in particular
+ * maintenance jobs never overtake a waiting query. {@code splice.olap_server.maxBackgroundJobs}, if set, limits the
+ * number of maintenance jobs running at a time.
+ *
+ * Jobs which aren't {@link DistributedJob#isAdmissionControlled() admission controlled}, such as the ones which only
+ * read or change metadata, are neither queued nor counted: they start as soon as they're submitted, so they can't be
+ * stuck behind long running queries.
+ *
+ * Running jobs are never preempted: a Spark job can't be paused safely, so they are only deferred.
+ */
+class OlapJobScheduler implements OlapSchedulerManagement{
+    private static final Logger LOG=Logger.getLogger(OlapJobScheduler.class);
+
+    private final Executor executor;
+    private final Clock clock;
+    private final int maxRunningJobs;
+    private final double maxRunningCost;
+    private final int interactiveWeight;
+    private final int maxBackgroundJobs;
+
+    private final Map<String,JobQueue> queues=new HashMap<>();
+    private double virtualTime;
+    private int runningJobs;
+    private int runningBackgroundJobs;
+    private double runningCost;
+    private int queuedJobs;
+    private int queuedBackgroundJobs;
+    private long totalStartedJobs;
+    private long totalQueueWaitTime;
+
+    OlapJobScheduler(SConfiguration config,Clock clock){
+        this(newExecutor(),clock,config.getOlapServerThreads(),config.getOlapServerMaxRunningCost(),
+                config.getOlapServerInteractiveWeight(),config.getOlapServerMaxBackgroundJobs());
+    }
+
+    /**
+     * @param maxRunningJobs the maximum number of jobs running concurrently, 0 for no limit
+     * @param maxRunningCost the maximum total estimated cost of the jobs running concurrently, 0 for no limit
+     * @param interactiveWeight the weight of the queues of queries, the one of maintenance jobs being 1
+     * @param maxBackgroundJobs the maximum number of maintenance jobs running concurrently, 0 for no limit
+     */
+    OlapJobScheduler(Executor executor,Clock clock,int maxRunningJobs,double maxRunningCost,
+                     int interactiveWeight,int maxBackgroundJobs){
+        this.executor=executor;
+        this.clock=clock;
+        this.maxRunningJobs=maxRunningJobs;
+        this.maxRunningCost=maxRunningCost;
+        this.interactiveWeight=interactiveWeight;
+        this.maxBackgroundJobs=maxBackgroundJobs;
+    }
+
+    /**
+     * Queues a job, which runs as soon as the scheduling policy allows it.
+     *
+     * @param status the status of the job, which must have been marked submitted
+     */
+    void submit(DistributedJob job,Callable<Void> callable,OlapJobStatus status){
+        if(!job.isAdmissionControlled()){
+            if(LOG.isTraceEnabled())
+                LOG.trace("Starting job "+job.getUniqueName()+" without admission control");
+            execute(new QueuedJob(callable,status,false,0d),false);
+            return;
+        }
+        QueuedJob queuedJob=new QueuedJob(callable,status,job.isBackground(),Math.max(job.getEstimatedCost(),0d));
+        synchronized(this){
+            String group=job.getSchedulingGroup();
+            String key=(queuedJob.background?"background:":"interactive:")+(group==null?"":group);
+            JobQueue queue=queues.get(key);
+            if(queue==null){
+                queue=new JobQueue(queuedJob.background,queuedJob.background?1:interactiveWeight);
+                queues.put(key,queue);
+            }
+            if(queue.jobs.isEmpty()){
+                // an idle queue doesn't accumulate credit over the queues which were busy
+                queue.virtualTime=Math.max(queue.virtualTime,virtualTime);
+            }
+            queuedJob.queuedTime=clock.currentTimeMillis();
+            status.markQueued(this,queuedJob.queuedTime);
+            queue.jobs.add(queuedJob);
+            queuedJobs++;
+            if(queuedJob.background)
+                queuedBackgroundJobs++;
+            if(LOG.isTraceEnabled())
+                LOG.trace("Queued job "+job.getUniqueName()+" in "+key+", "+queuedJobs+" jobs queued, "+runningJobs+" running");
+            schedule();
+        }
+    }
+
+    long currentTimeMillis(){
+        return clock.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized int getRunningJobs(){
+        return runningJobs;
+    }
+
+    @Override
+    public synchronized int getRunningBackgroundJobs(){
+        return runningBackgroundJobs;
+    }
+
+    @Override
+    public synchronized double getRunningCost(){
+        return runningCost;
+    }
+
+    @Override
+    public synchronized int getQueuedJobs(){
+        return queuedJobs;
+    }
+
+    @Override
+    public synchronized int getQueuedBackgroundJobs(){
+        return queuedBackgroundJobs;
+    }
+
+    @Override
+    public synchronized long getOldestQueuedJobWaitTime(){
+        long oldest=Long.MAX_VALUE;
+        for(JobQueue queue : queues.values()){
+            QueuedJob first=queue.jobs.peek();
+            if(first!=null)
+                oldest=Math.min(oldest,first.queuedTime);
+        }
+        return oldest==Long.MAX_VALUE?0L:clock.currentTimeMillis()-oldest;
+    }
+
+    @Override
+    public synchronized long getTotalStartedJobs(){
+        return totalStartedJobs;
+    }
+
+    @Override
+    public synchronized double getAverageQueueWaitTime(){
+        return totalStartedJobs==0?0d:((double)totalQueueWaitTime)/totalStartedJobs;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private static Executor newExecutor(){
+        ThreadFactory tf=new ThreadFactoryBuilder().setDaemon(true).setNameFormat("olap-worker-%d").build();
+        return Executors.newCachedThreadPool(tf);
+    }
+
+    /**
+     * Starts the jobs the scheduling policy allows to start. Must be called holding the lock of this scheduler.
+     */
+    private void schedule(){
+        while(true){
+            JobQueue interactive=null;
+            JobQueue background=null;
+            Iterator<JobQueue> it=queues.values().iterator();
+            while(it.hasNext()){
+                JobQueue queue=it.next();
+                removeCancelled(queue);
+                if(queue.jobs.isEmpty()){
+                    if(queue.virtualTime<=virtualTime)
+                        it.remove(); // it wouldn't have any credit left if it got a job again
+                    continue;
+                }
+                if(queue.background){
+                    if(maxBackgroundJobs>0 && runningBackgroundJobs>=maxBackgroundJobs)
+                        continue;
+                    if(background==null || queue.virtualTime<background.virtualTime)
+                        background=queue;
+                }else if(interactive==null || queue.virtualTime<interactive.virtualTime)
+                    interactive=queue;
+            }
+            JobQueue next;
+            if(interactive!=null && (background==null
+                    || interactive.virtualTime<=background.virtualTime
+                    || !canStart(interactive.jobs.peek()))){
+                // maintenance jobs are deferred while a query waits
+                next=interactive;
+            }else
+                next=background;
+            if(next==null || !canStart(next.jobs.peek()))
+                return;
+
+            QueuedJob job=next.jobs.poll();
+            virtualTime=next.virtualTime;
+            next.virtualTime+=1d/next.weight;
+            start(job);
+        }
+    }
+
+    private boolean canStart(QueuedJob job){
+        if(runningJobs==0)
+            return true;
+        if(maxRunningJobs>0 && runningJobs>=maxRunningJobs)
+            return false;
+        return maxRunningCost<=0d || runningCost+job.cost<=maxRunningCost;
+    }
+
+    private void removeCancelled(JobQueue queue){
+        Iterator<QueuedJob> it=queue.jobs.iterator();
+        while(it.hasNext()){
+            QueuedJob job=it.next();
+            if(job.status.currentState()!=OlapStatus.State.SUBMITTED){
+                // cancelled, or its client went away
+                it.remove();
+                dequeued(job);
+            }
+        }
+    }
+
+    private void dequeued(QueuedJob job){
+        queuedJobs--;
+        if(job.background)
+            queuedBackgroundJobs--;
+        job.status.markDequeued();
+    }
+
+    private void start(final QueuedJob job){
+        dequeued(job);
+        runningJobs++;
+        runningCost+=job.cost;
+        if(job.background)
+            runningBackgroundJobs++;
+        totalStartedJobs++;
+        totalQueueWaitTime+=clock.currentTimeMillis()-job.queuedTime;
+        execute(job,true);
+    }
+
+    /**
+     * @param scheduled whether the job was started by {@link #schedule()}, and is counted as running
+     */
+    private void execute(final QueuedJob job,final boolean scheduled){
+        try{
+            executor.execute(new Runnable(){
+                @Override
+                public void run(){
+                    try{
+                        job.callable.call();
+                    }catch(Throwable t){
+                        LOG.error("Uncaught exception",t);
+                        if(job.status.isRunning()){
+                            job.status.markCompleted(new FailedOlapResult(t));
+                        }
+                    }finally{
+                        if(scheduled)
+                            completed(job);
+                    }
+                }
+            });
+        }catch(RuntimeException e){
+            LOG.error("Could not start job",e);
+            job.status.markCompleted(new FailedOlapResult(e));
+            if(scheduled)
+                finished(job);
+        }
+    }
+
+    private synchronized void completed(QueuedJob job){
+        finished(job);
+        schedule();
+    }
+
+    private void finished(QueuedJob job){
+        runningJobs--;
+        runningCost=runningJobs==0?0d:runningCost-job.cost;
+        if(job.background)
+            runningBackgroundJobs--;
+    }
+
+    private static class JobQueue{
+        private final boolean background;
+        private final int weight;
+        private final ArrayDeque<QueuedJob> jobs=new ArrayDeque<>();
+        private double virtualTime;
+
+        JobQueue(boolean background,int weight){
+            this.background=background;
+            this.weight=weight;
+        }
+    }
+
+    private static class QueuedJob{
+        private final Callable<Void> callable;
+        private final OlapJobStatus status;
+        private final boolean background;
+        private final double cost;
+        private long queuedTime;
+
+        QueuedJob(Callable<Void> callable,OlapJobStatus status,boolean background,double cost){
+            this.callable=callable;
+            this.status=status;
+            this.background=background;
+            this.cost=cost;
+        }
+    }
+}
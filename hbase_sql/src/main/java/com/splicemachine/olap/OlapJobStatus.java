@@ -40,6 +40,8 @@ public class OlapJobStatus implements OlapStatus{
     private volatile AtomicReference<OlapStatus.State> currentState = new AtomicReference<>(State.NOT_SUBMITTED);
     private ArrayBlockingQueue<OlapResult> results;
     private volatile OlapResult cachedResult;
+    private volatile OlapJobScheduler scheduler; // the scheduler this job is waiting in, if any
+    private volatile long queuedTime;
 
     public OlapJobStatus(long tickTime,int numTicks){
         //TODO -sf- remove the constants
@@ -171,6 +173,31 @@ public class OlapJobStatus implements OlapStatus{
 
     /*package-private methods*/
     /* ****************************************************************************************************************/
+    void markQueued(OlapJobScheduler scheduler,long time){
+        this.queuedTime=time;
+        this.scheduler=scheduler;
+    }
+
+    void markDequeued(){
+        this.scheduler=null;
+    }
+
+    /**
+     * @return the number of jobs waiting to run on the server if this job is one of them, -1 otherwise
+     */
+    int queuedJobs(){
+        OlapJobScheduler s=scheduler;
+        return s==null?-1:s.getQueuedJobs();
+    }
+
+    /**
+     * @return the number of milliseconds this job has been waiting to run, 0 if it's not waiting
+     */
+    long queueWaitTime(){
+        OlapJobScheduler s=scheduler;
+        return s==null?0L:s.currentTimeMillis()-queuedTime;
+    }
+
     State currentState(){
         /*
          * Get the current state of the job. If the job has timed out because the waiting client has died (or
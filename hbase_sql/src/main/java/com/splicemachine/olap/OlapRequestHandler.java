@@ -14,17 +14,12 @@
 
 package com.splicemachine.olap;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.concurrent.Clock;
 import com.splicemachine.derby.iapi.sql.olap.DistributedJob;
 import io.netty.channel.ChannelHandlerContext;
 import org.apache.log4j.Logger;
 
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 
 /**
  * @author Scott Fines
@@ -33,16 +28,16 @@ import java.util.concurrent.ThreadFactory;
 class OlapRequestHandler extends AbstractOlapHandler{
     private static final Logger LOG =Logger.getLogger(OlapRequestHandler.class);
 
-    private final ExecutorService executionPool;
+    private final OlapJobScheduler scheduler;
     private final Clock clock;
     private final long clientCheckTimeMs;
 
-    OlapRequestHandler(SConfiguration config,
+    OlapRequestHandler(OlapJobScheduler scheduler,
                        OlapJobRegistry jobRegistry,
                        Clock clock,
                        long clientCheckTimeMs){
         super(jobRegistry);
-        this.executionPool=configureThreadPool(config);
+        this.scheduler=scheduler;
         this.clock=clock;
         this.clientCheckTimeMs=clientCheckTimeMs;
     }
@@ -94,33 +89,6 @@ class OlapRequestHandler extends AbstractOlapHandler{
             LOG.trace("Job "+ jobRequest.getUniqueName()+" successfully submitted");
         writeResponse(ctx.channel(),jr.getUniqueName(),jobStatus);
 
-        executionPool.submit(new Callable<Void>() {
-            @Override
-            public Void call() throws Exception {
-                try {
-                    return job.call();
-                } catch (Throwable t) {
-                    LOG.error("Uncaught exception", t);
-                    if (jobStatus.isRunning()) {
-                        jobStatus.markCompleted(new FailedOlapResult(t));
-                    }
-                }
-                return null;
-            }
-        });
+        scheduler.submit(jr,job,jobStatus);
     }
-
-
-
-    /* ****************************************************************************************************************/
-    /*private helper methods*/
-
-
-    private ExecutorService configureThreadPool(SConfiguration config){
-        //TODO -sf- bound this by the number of possible Spark tasks which can run in YARN
-        ThreadFactory tf =new ThreadFactoryBuilder().setDaemon(true).setNameFormat("olap-worker-%d").build();
-        return Executors.newCachedThreadPool(tf);
-    }
-
-
 }
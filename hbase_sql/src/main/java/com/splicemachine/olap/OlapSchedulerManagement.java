@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.olap;
+
+import javax.management.MXBean;
+
+/**
+ * Exposes the state of the job scheduler of the Olap server via JMX.
+ */
+@MXBean
+public interface OlapSchedulerManagement{
+
+    int getRunningJobs();
+
+    int getRunningBackgroundJobs();
+
+    double getRunningCost();
+
+    int getQueuedJobs();
+
+    int getQueuedBackgroundJobs();
+
+    /**
+     * @return the number of milliseconds the job waiting to run for the longest time has been waiting, 0 if none is
+     */
+    long getOldestQueuedJobWaitTime();
+
+    long getTotalStartedJobs();
+
+    /**
+     * @return the average number of milliseconds the jobs started waited to run
+     */
+    double getAverageQueueWaitTime();
+}
@@ -71,8 +71,14 @@ class OlapSerializationUtils{
                 case SUBMITTED:
                 case RUNNING:
                     response.setType(OlapMessage.Response.Type.IN_PROGRESS);
-                    OlapMessage.ProgressResponse build=OlapMessage.ProgressResponse.newBuilder().setTickTimeMillis(tickTime).build();
-                    response.setExtension(OlapMessage.ProgressResponse.response,build);
+                    OlapMessage.ProgressResponse.Builder progress=OlapMessage.ProgressResponse.newBuilder().setTickTimeMillis(tickTime);
+                    if(status instanceof OlapJobStatus){
+                        OlapJobStatus jobStatus=(OlapJobStatus)status;
+                        int queuedJobs=jobStatus.queuedJobs();
+                        if(queuedJobs>=0)
+                            progress.setQueuedJobs(queuedJobs).setQueueWaitTimeMillis(jobStatus.queueWaitTime());
+                    }
+                    response.setExtension(OlapMessage.ProgressResponse.response,progress.build());
                     break;
                 case CANCELED:
                     shouldRemoveAfterWriting[0]=true;
@@ -29,7 +29,10 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.apache.log4j.Logger;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.BindException;
 import java.net.InetSocketAddress;
 import java.util.concurrent.Executors;
@@ -62,7 +65,9 @@ public class OlapServer {
         OlapJobRegistry registry = new MappedJobRegistry(config.getOlapClientTickTime(),
                 config.getOlapServerTickLimit(),
                 TimeUnit.MILLISECONDS);
-        ChannelInboundHandler submitHandler = new OlapRequestHandler(config,
+        OlapJobScheduler scheduler = new OlapJobScheduler(config,clock);
+        registerJMX(scheduler);
+        ChannelInboundHandler submitHandler = new OlapRequestHandler(scheduler,
                 registry,clock,config.getOlapClientTickTime());
         ChannelInboundHandler statusHandler = new OlapStatusHandler(registry);
         ChannelInboundHandler cancelHandler = new OlapCancelHandler(registry);
@@ -101,6 +106,20 @@ public class OlapServer {
 
     }
 
+    private void registerJMX(OlapSchedulerManagement scheduler) {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.splicemachine.olap:type=OlapSchedulerManagement");
+            if (mbs.isRegistered(name)) {
+                // a previous server in this JVM
+                mbs.unregisterMBean(name);
+            }
+            mbs.registerMBean(scheduler, name);
+        } catch (Exception e) {
+            LOG.warn("Could not register the Olap scheduler with JMX", e);
+        }
+    }
+
     private int getPortNumber() {
         return port;
     }
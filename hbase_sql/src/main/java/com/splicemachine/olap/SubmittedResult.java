@@ -23,6 +23,8 @@ import com.splicemachine.derby.iapi.sql.olap.OlapResult;
 public class SubmittedResult implements OlapResult{
     private static final long serialVersionUID = 1l;
     private long tickTime;
+    private int queuedJobs = -1;
+    private long queueWaitTime;
 
     public SubmittedResult(){
     }
@@ -31,10 +33,30 @@ public class SubmittedResult implements OlapResult{
         this.tickTime=tickTime;
     }
 
+    public SubmittedResult(long tickTime,int queuedJobs,long queueWaitTime){
+        this.tickTime=tickTime;
+        this.queuedJobs=queuedJobs;
+        this.queueWaitTime=queueWaitTime;
+    }
+
     public long getTickTime(){
         return tickTime;
     }
 
+    /**
+     * @return the number of jobs waiting to run on the server if this job is one of them, -1 if it's running
+     */
+    public int getQueuedJobs(){
+        return queuedJobs;
+    }
+
+    /**
+     * @return the number of milliseconds this job has been waiting to run
+     */
+    public long getQueueWaitTime(){
+        return queueWaitTime;
+    }
+
     @Override public boolean isSuccess(){ return false; }
 
     @Override
@@ -15,22 +15,28 @@ package com.splicemachine.orc;
 
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.orc.block.*;
+import com.splicemachine.orc.input.ColumnarBatchRow;
 import com.splicemachine.orc.memory.AbstractAggregatedMemoryContext;
 import com.splicemachine.orc.memory.AggregatedMemoryContext;
+import com.splicemachine.orc.memory.LocalMemoryContext;
 import com.splicemachine.orc.metadata.*;
 import com.splicemachine.orc.metadata.OrcType.OrcTypeKind;
 import com.splicemachine.orc.metadata.PostScript.HiveWriterVersion;
+import com.splicemachine.orc.predicate.SpliceORCPredicate;
 import com.splicemachine.orc.reader.StreamReader;
 import com.splicemachine.orc.reader.StreamReaders;
 import com.splicemachine.orc.stream.StreamSources;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
 import io.airlift.units.DataSize;
 import org.apache.spark.memory.MemoryMode;
+import org.apache.spark.sql.catalyst.InternalRow;
 import org.apache.spark.sql.execution.vectorized.ColumnVector;
 import org.apache.spark.sql.execution.vectorized.ColumnarBatch;
 import org.apache.spark.sql.types.DataType;
@@ -38,7 +44,14 @@ import org.apache.spark.sql.types.StructField;
 import org.apache.spark.sql.types.StructType;
 import org.joda.time.DateTimeZone;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import static com.splicemachine.orc.OrcDataSourceUtils.mergeAdjacentDiskRanges;
 import static com.splicemachine.orc.OrcReader.MAX_BATCH_SIZE;
@@ -51,6 +64,8 @@ import static java.lang.Math.min;
 
 public class OrcRecordReader
 {
+    private static ThreadPoolExecutor stripeReadAheadPool;
+
     private final OrcDataSource orcDataSource;
 
     private final StreamReader[] streamReaders;
@@ -80,6 +95,12 @@ public class OrcRecordReader
     protected List<String> partitionValues;
     protected List<Integer> partitionIds;
 
+    private SpliceORCPredicate rowFilter;
+    private int[] selectedRows;
+    private int stripeReadAhead;
+    private final Map<Integer, ReadAheadStripe> readAheadStripes = new HashMap<>();
+    private ReadAheadMemoryContext currentReadAheadMemory;
+
     public OrcRecordReader(
             Map<Integer, DataType> includedColumns,
             OrcPredicate predicate,
@@ -290,9 +311,63 @@ public class OrcRecordReader
     public void close()
             throws IOException
     {
+        for (ReadAheadStripe stripe : readAheadStripes.values()) {
+            stripe.stripe.cancel(true);
+            stripe.memory.close();
+        }
+        readAheadStripes.clear();
         orcDataSource.close();
     }
 
+    /**
+     * Evaluate the qualifiers of the predicate on each batch before the other columns are decoded. Batches where
+     * no row qualifies are returned empty, without decoding the other columns. Otherwise the other columns are
+     * decoded only for the qualifying rows, which are selected; the rows in between are skipped by the stream
+     * readers. Nested columns are still decoded for the whole batch.
+     */
+    public void setRowFilter(SpliceORCPredicate rowFilter)
+    {
+        this.rowFilter = rowFilter != null && rowFilter.hasRowFilter() ? rowFilter : null;
+    }
+
+    /**
+     * Read up to {@code stripes} stripes ahead of the one being decoded, on a shared pool of
+     * {@code threads} threads, resized to the latest value asked for. The read ahead stripes are buffered
+     * in memory, and accounted in the system memory of this reader.
+     */
+    public void setStripeReadAhead(int stripes, int threads)
+    {
+        // the caching data source assumes its ranges are read in order
+        if (stripes <= 0 || orcDataSource instanceof CachingOrcDataSource) {
+            return;
+        }
+        this.stripeReadAhead = stripes;
+        resizeReadAheadPool(threads);
+    }
+
+    private static synchronized void resizeReadAheadPool(int threads)
+    {
+        threads = Math.max(1, threads);
+        if (stripeReadAheadPool == null) {
+            stripeReadAheadPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("orc-stripe-reader-%d").build());
+        }
+        else if (stripeReadAheadPool.getMaximumPoolSize() < threads) {
+            stripeReadAheadPool.setMaximumPoolSize(threads);
+            stripeReadAheadPool.setCorePoolSize(threads);
+        }
+        else if (stripeReadAheadPool.getMaximumPoolSize() > threads) {
+            stripeReadAheadPool.setCorePoolSize(threads);
+            stripeReadAheadPool.setMaximumPoolSize(threads);
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor readAheadPool()
+    {
+        return stripeReadAheadPool;
+    }
+
     public boolean isColumnPresent(int hiveColumnIndex)
     {
         return presentColumns.contains(hiveColumnIndex);
@@ -301,6 +376,9 @@ public class OrcRecordReader
     public int nextBatch()
             throws IOException
     {
+        if (currentReadAheadMemory != null) {
+            currentReadAheadMemory.publish();
+        }
         // update position for current row group (advancing resets them)
         filePosition += currentBatchSize;
         currentPosition += currentBatchSize;
@@ -335,9 +413,6 @@ public class OrcRecordReader
     public ColumnarBatch getColumnarBatch(StructType schema) throws IOException {
         ColumnarBatch columnarBatch = ColumnarBatch.allocate(schema, MemoryMode.ON_HEAP,currentBatchSize);
 
-        // This is the place for predicate evaluation on the column level
-        // ouch !!!
-
         // Count(*) optimization
         if (schema.fields().length == 0) {
             columnarBatch.setNumRows(currentBatchSize);
@@ -345,6 +420,7 @@ public class OrcRecordReader
         }
         StructField[] fields = schema.fields();
         ColumnBlock[] columnBlocks = new ColumnBlock[fields.length];
+        StreamReader[] fieldReaders = new StreamReader[fields.length];
 
         // information about partitioned column and non-partitioned columns are kept separate,
         // so we must put all columns back in the correct order in columnBlocks
@@ -360,21 +436,67 @@ public class OrcRecordReader
                 j++;
             }
             if (streamReaders[index] != null){
+                fieldReaders[fieldIndex] = streamReaders[index];
                 columnBlocks[fieldIndex] = new LazyColumnBlock(new LazyIncludedColumnBlockLoaderImpl(streamReaders[index],fields[fieldIndex].dataType()));
                 fieldIndex++;
             }
         }
 
-        // Populate Columnar Batch
-        int l = 0;
-        for (ColumnBlock columnBlock: columnBlocks) {
-            columnarBatch.setColumn(l,columnBlock.getColumnVector());
-            l++;
-        }
         columnarBatch.setNumRows(currentBatchSize);
+        boolean[] populated = new boolean[columnBlocks.length];
+        int selected = currentBatchSize;
+        if (rowFilter != null) {
+            // decode the columns the qualifiers need first, the others are only decoded for the rows that qualify
+            for (int l = 0; l < columnBlocks.length; l++) {
+                if (rowFilter.isRowFilterField(l)) {
+                    columnarBatch.setColumn(l, columnBlocks[l].getColumnVector());
+                    populated[l] = true;
+                }
+            }
+            selected = selectRows(columnarBatch, schema);
+            if (selected < currentBatchSize) {
+                columnarBatch.setSelectedRows(selectedRows, selected);
+            }
+            if (selected == 0) {
+                // the stream readers skip the rows of the columns that were not read on the next batch
+                return columnarBatch;
+            }
+        }
+
+        // Populate Columnar Batch, decoding only the rows that qualify
+        for (int l = 0; l < columnBlocks.length; l++) {
+            if (populated[l]) {
+                continue;
+            }
+            if (selected < currentBatchSize && fieldReaders[l] != null) {
+                columnarBatch.setColumn(l, fieldReaders[l].readBlock(fields[l].dataType(), selectedRows, selected));
+            }
+            else {
+                columnarBatch.setColumn(l, columnBlocks[l].getColumnVector());
+            }
+        }
         return columnarBatch;
     }
 
+    private int selectRows(ColumnarBatch columnarBatch, StructType schema) throws IOException {
+        if (selectedRows == null || selectedRows.length < currentBatchSize) {
+            selectedRows = new int[MAX_BATCH_SIZE];
+        }
+        int selected = 0;
+        Iterator<InternalRow> rows = columnarBatch.rowIterator();
+        try {
+            for (int i = 0; i < currentBatchSize; i++) {
+                if (rowFilter.qualifies(new ColumnarBatchRow(rows.next(), schema))) {
+                    selectedRows[selected++] = i;
+                }
+            }
+        }
+        catch (StandardException e) {
+            throw new IOException(e);
+        }
+        return selected;
+    }
+
     public StreamReader getStreamReader(int index)
     {
         checkArgument(index < streamReaders.length, "index does not exist");
@@ -422,6 +544,7 @@ public class OrcRecordReader
     {
         currentStripeSystemMemoryContext.close();
         currentStripeSystemMemoryContext = systemMemoryUsage.newAggregatedMemoryContext();
+        currentReadAheadMemory = null;
         rowGroups = ImmutableList.<RowGroup>of().iterator();
 
         currentStripe++;
@@ -433,9 +556,7 @@ public class OrcRecordReader
             currentStripePosition += stripes.get(currentStripe - 1).getNumberOfRows();
         }
 
-        StripeInformation stripeInformation = stripes.get(currentStripe);
-
-        Stripe stripe = stripeReader.readStripe(stripeInformation, currentStripeSystemMemoryContext);
+        Stripe stripe = readStripe(currentStripe);
         if (stripe != null) {
             // Give readers access to dictionary streams
             StreamSources dictionaryStreamSources = stripe.getDictionaryStreamSources();
@@ -450,6 +571,90 @@ public class OrcRecordReader
         }
     }
 
+    private Stripe readStripe(int stripe)
+            throws IOException
+    {
+        for (int next = stripe + 1; next <= min(stripe + stripeReadAhead, stripes.size() - 1); next++) {
+            if (!readAheadStripes.containsKey(next)) {
+                StripeInformation stripeInformation = stripes.get(next);
+                ReadAheadMemoryContext memory = new ReadAheadMemoryContext(systemMemoryUsage);
+                readAheadStripes.put(next, new ReadAheadStripe(readAheadPool().submit(
+                        () -> stripeReader.readStripe(stripeInformation, memory.newAggregatedMemoryContext())), memory));
+            }
+        }
+        // account what the stripes read ahead so far hold
+        for (ReadAheadStripe pending : readAheadStripes.values()) {
+            pending.memory.publish();
+        }
+        ReadAheadStripe readAhead = readAheadStripes.remove(stripe);
+        if (readAhead == null) {
+            return stripeReader.readStripe(stripes.get(stripe), currentStripeSystemMemoryContext);
+        }
+        try {
+            Stripe read = readAhead.stripe.get();
+            // the stripe's memory is released with the stripe
+            currentStripeSystemMemoryContext.close();
+            currentStripeSystemMemoryContext = readAhead.memory.publish();
+            currentReadAheadMemory = readAhead.memory;
+            return read;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading stripe " + stripe);
+        }
+        catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static final class ReadAheadStripe
+    {
+        private final Future<Stripe> stripe;
+        private final ReadAheadMemoryContext memory;
+
+        ReadAheadStripe(Future<Stripe> stripe, ReadAheadMemoryContext memory)
+        {
+            this.stripe = stripe;
+            this.memory = memory;
+        }
+    }
+
+    /**
+     * Memory of a stripe read on another thread. Memory contexts are not thread safe, so the bytes are counted
+     * atomically and published to the system memory context of the reader by the reader thread.
+     */
+    private static final class ReadAheadMemoryContext
+            extends AbstractAggregatedMemoryContext
+    {
+        private final AtomicLong bytes = new AtomicLong();
+        private final AggregatedMemoryContext stripeMemory;
+        private final LocalMemoryContext publishedBytes;
+
+        ReadAheadMemoryContext(AbstractAggregatedMemoryContext readerMemory)
+        {
+            this.stripeMemory = readerMemory.newAggregatedMemoryContext();
+            this.publishedBytes = stripeMemory.newLocalMemoryContext();
+        }
+
+        @Override
+        protected void updateBytes(long bytes)
+        {
+            this.bytes.addAndGet(bytes);
+        }
+
+        AggregatedMemoryContext publish()
+        {
+            publishedBytes.setBytes(bytes.get());
+            return stripeMemory;
+        }
+
+        void close()
+        {
+            stripeMemory.close();
+        }
+    }
+
     private static StreamReader[] createStreamReaders(OrcDataSource orcDataSource,
             List<OrcType> types,
             DateTimeZone hiveStorageTimeZone,
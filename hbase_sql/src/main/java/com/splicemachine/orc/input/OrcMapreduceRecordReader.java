@@ -88,7 +88,10 @@ public class OrcMapreduceRecordReader extends RecordReader<NullWritable,Row> {
                                          predicate, orcNewSplit.getStart(), orcNewSplit.getLength(),
                                          HIVE_STORAGE_TIME_ZONE, new AggregatedMemoryContext(),
                                          partitions, values);
-    
+        if (configuration.getBoolean(LATE_MATERIALIZATION, LATE_MATERIALIZATION_DEFAULT))
+            orcRecordReader.setRowFilter(predicate);
+        orcRecordReader.setStripeReadAhead(configuration.getInt(STRIPE_READ_AHEAD, STRIPE_READ_AHEAD_DEFAULT),
+                configuration.getInt(STRIPE_READ_AHEAD_THREADS, STRIPE_READ_AHEAD_THREADS_DEFAULT));
     }
 
     @Override
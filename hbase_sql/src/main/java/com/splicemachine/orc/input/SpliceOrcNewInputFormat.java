@@ -51,6 +51,12 @@ public class SpliceOrcNewInputFormat extends InputFormat<NullWritable,Row>
     public static final double MAX_MERGE_DISTANCE_DEFAULT = 1;
     public static final double MAX_READ_SIZE_DEFAULT = 8;
     public static final double STREAM_BUFFER_SIZE_DEFAULT = 8;
+    public static final String LATE_MATERIALIZATION ="com.splicemachine.orc.lateMaterialization";
+    public static final String STRIPE_READ_AHEAD ="com.splicemachine.orc.stripeReadAhead";
+    public static final String STRIPE_READ_AHEAD_THREADS ="com.splicemachine.orc.stripeReadAheadThreads";
+    public static final boolean LATE_MATERIALIZATION_DEFAULT = true;
+    public static final int STRIPE_READ_AHEAD_DEFAULT = 0;
+    public static final int STRIPE_READ_AHEAD_THREADS_DEFAULT = 8;
     public static final long DEFAULT_PARTITION_SIZE = 10000;
     public static final String SPLICE_COLLECTSTATS ="com.splicemachine.collectstats";
 
@@ -17,11 +17,13 @@ import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.services.io.ArrayUtil;
 import com.splicemachine.db.iapi.store.access.Qualifier;
 import com.splicemachine.db.iapi.types.*;
+import com.splicemachine.derby.utils.Scans;
 import com.splicemachine.orc.OrcPredicate;
 import com.splicemachine.orc.metadata.*;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.SerializationUtils;
 import org.apache.hadoop.hive.serde2.io.DateWritable;
+import org.apache.spark.sql.Row;
 import org.apache.spark.sql.types.*;
 import org.apache.spark.sql.types.DataType;
 
@@ -30,6 +32,7 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.sql.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +49,10 @@ public class SpliceORCPredicate implements OrcPredicate, Externalizable {
     private Qualifier[][] qualifiers;
     int[] baseColumnMap;
     StructType structType;
+    // row level filter, derived from the qualifiers when first needed
+    private transient boolean rowFilterInitialized;
+    private transient Qualifier[][] rowQualifiers;
+    private transient DataValueDescriptor[] rowValues;
 
     public SpliceORCPredicate() {
 
@@ -239,6 +246,101 @@ public class SpliceORCPredicate implements OrcPredicate, Externalizable {
         */
     }
 
+    /**
+     * Returns true if some of the qualifiers can be evaluated against the decoded rows of a batch.
+     */
+    public boolean hasRowFilter() {
+        initRowFilter();
+        return rowQualifiers != null;
+    }
+
+    /**
+     * Returns true if the row filter reads the given field of the row struct.
+     */
+    public boolean isRowFilterField(int fieldIndex) {
+        initRowFilter();
+        return rowValues != null && rowValues[fieldIndex] != null;
+    }
+
+    /**
+     * Evaluates the qualifiers that do not depend on the rest of the query against a row read from the file.
+     * Only the fields for which {@link #isRowFilterField(int)} is true are read. Qualifiers that cannot be
+     * evaluated here are ignored, so a row that qualifies may still be filtered later on, but a row that does
+     * not qualify is never needed.
+     */
+    public boolean qualifies(Row row) throws StandardException {
+        for (int i = 0; i < rowValues.length; i++) {
+            if (rowValues[i] != null)
+                rowValues[i].read(row, i);
+        }
+        return Scans.qualifyRecordFromRow(rowValues, rowQualifiers, baseColumnMap, null);
+    }
+
+    private void initRowFilter() {
+        if (rowFilterInitialized)
+            return;
+        rowFilterInitialized = true;
+        if (qualifiers == null)
+            return;
+        List<Qualifier> ands = new ArrayList<>();
+        for (Qualifier q : qualifiers[0]) {
+            if (canFilterRows(q))
+                ands.add(q);
+        }
+        List<Qualifier[]> filter = new ArrayList<>();
+        filter.add(ands.toArray(new Qualifier[ands.size()]));
+        for (int and_idx = 1; and_idx < qualifiers.length; and_idx++) {
+            // an OR clause can only be evaluated if all of its terms can
+            boolean pushable = true;
+            for (Qualifier q : qualifiers[and_idx]) {
+                pushable &= canFilterRows(q);
+            }
+            if (pushable)
+                filter.add(qualifiers[and_idx]);
+        }
+        if (ands.isEmpty() && filter.size() == 1)
+            return;
+        rowQualifiers = filter.toArray(new Qualifier[filter.size()][]);
+        rowValues = new DataValueDescriptor[structType.fields().length];
+        for (Qualifier[] clause : rowQualifiers) {
+            for (Qualifier q : clause) {
+                int fieldIndex = baseColumnMap[q.getStoragePosition()];
+                if (rowValues[fieldIndex] == null)
+                    rowValues[fieldIndex] = newRowValue(structType.fields()[fieldIndex].dataType());
+            }
+        }
+    }
+
+    private boolean canFilterRows(Qualifier q) {
+        if (q.getVariantType() == Qualifier.VARIANT)
+            return false;
+        if (q.getStoragePosition() >= baseColumnMap.length || baseColumnMap[q.getStoragePosition()] == -1)
+            return false;
+        return newRowValue(structType.fields()[baseColumnMap[q.getStoragePosition()]].dataType()) != null;
+    }
+
+    private static DataValueDescriptor newRowValue(DataType dataType) {
+        if (dataType instanceof BooleanType)
+            return new SQLBoolean();
+        else if (dataType instanceof DecimalType)
+            return new SQLDecimal();
+        else if (dataType instanceof StringType)
+            return new SQLVarchar();
+        else if (dataType instanceof DateType)
+            return new SQLDate();
+        else if (dataType instanceof IntegerType)
+            return new SQLInteger();
+        else if (dataType instanceof LongType)
+            return new SQLLongint();
+        else if (dataType instanceof ShortType)
+            return new SQLSmallint();
+        else if (dataType instanceof DoubleType)
+            return new SQLDouble();
+        else if (dataType instanceof FloatType)
+            return new SQLReal();
+        return null;
+    }
+
     public String serialize() throws IOException {
         return Base64.encodeBase64String(SerializationUtils.serialize(this));
     }
@@ -15,7 +15,7 @@ package com.splicemachine.orc.reader;
 
 import org.apache.spark.memory.MemoryMode;
 import org.apache.spark.sql.execution.vectorized.ColumnVector;
-import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.*;
 
 import java.io.IOException;
 
@@ -31,6 +31,90 @@ public abstract class AbstractStreamReader implements StreamReader {
         return readBlock(type,ColumnVector.allocate(nextBatchSize,type, MemoryMode.ON_HEAP));
     }
 
+    /**
+     * Reads each run of consecutive rows on its own, and skips the rows in between like the rows of a batch
+     * that was never read. Nested types are read for the whole batch.
+     */
+    @Override
+    public ColumnVector readBlock(DataType type, int[] positions, int positionCount)
+            throws IOException {
+        int batchSize = nextBatchSize;
+        if (positionCount == batchSize || !isPrimitive(type)) {
+            return readBlock(type);
+        }
+        ColumnVector vector = ColumnVector.allocate(batchSize, type, MemoryMode.ON_HEAP);
+        ColumnVector run = null;
+        int position = 0; // first row of the batch which is neither read nor skipped yet
+        for (int i = 0; i < positionCount; ) {
+            int start = positions[i];
+            int end = start + 1;
+            for (i++; i < positionCount && positions[i] == end; i++) {
+                end++;
+            }
+            if (run == null) {
+                run = ColumnVector.allocate(batchSize, type, MemoryMode.ON_HEAP);
+            }
+            else {
+                run.reset();
+            }
+            vector.putNulls(position, start - position);
+            readOffset += start - position;
+            nextBatchSize = end - start;
+            readBlock(type, run);
+            for (int row = start; row < end; row++) {
+                copy(type, run, row - start, vector, row);
+            }
+            position = end;
+        }
+        vector.putNulls(position, batchSize - position);
+        readOffset += batchSize - position;
+        nextBatchSize = 0;
+        return vector;
+    }
+
+    private static boolean isPrimitive(DataType type) {
+        return type instanceof BooleanType || type instanceof ByteType || type instanceof ShortType ||
+                type instanceof IntegerType || type instanceof DateType || type instanceof LongType ||
+                type instanceof TimestampType || type instanceof FloatType || type instanceof DoubleType ||
+                type instanceof DecimalType || type instanceof StringType || type instanceof BinaryType;
+    }
+
+    private static void copy(DataType type, ColumnVector from, int fromRow, ColumnVector to, int toRow) {
+        if (from.isNullAt(fromRow)) {
+            to.putNull(toRow);
+        }
+        else if (type instanceof BooleanType) {
+            to.putBoolean(toRow, from.getBoolean(fromRow));
+        }
+        else if (type instanceof ByteType) {
+            to.putByte(toRow, from.getByte(fromRow));
+        }
+        else if (type instanceof ShortType) {
+            to.putShort(toRow, from.getShort(fromRow));
+        }
+        else if (type instanceof IntegerType || type instanceof DateType) {
+            to.putInt(toRow, from.getInt(fromRow));
+        }
+        else if (type instanceof LongType || type instanceof TimestampType) {
+            to.putLong(toRow, from.getLong(fromRow));
+        }
+        else if (type instanceof FloatType) {
+            to.putFloat(toRow, from.getFloat(fromRow));
+        }
+        else if (type instanceof DoubleType) {
+            to.putDouble(toRow, from.getDouble(fromRow));
+        }
+        else if (type instanceof DecimalType) {
+            DecimalType decimalType = (DecimalType) type;
+            to.putDecimal(toRow, from.getDecimal(fromRow, decimalType.precision(), decimalType.scale()),
+                    decimalType.precision());
+        }
+        else {
+            byte[] bytes = from.getBinary(fromRow);
+            to.putByteArray(toRow, bytes, 0, bytes.length);
+        }
+    }
+
     @Override
     public int getBatchSize() {
         return nextBatchSize;
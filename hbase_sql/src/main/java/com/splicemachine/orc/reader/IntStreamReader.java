@@ -59,6 +59,13 @@ public class IntStreamReader
         return currentReader.readBlock(type,vector);
     }
 
+    @Override
+    public ColumnVector readBlock(DataType type, int[] positions, int positionCount)
+            throws IOException
+    {
+        return currentReader.readBlock(type, positions, positionCount);
+    }
+
     @Override
     public void startStripe(StreamSources dictionaryStreamSources, List<ColumnEncoding> encoding)
             throws IOException
@@ -64,6 +64,13 @@ public class ShortStreamReader
         return currentReader.readBlock(type,vector);
     }
 
+    @Override
+    public ColumnVector readBlock(DataType type, int[] positions, int positionCount)
+            throws IOException
+    {
+        return currentReader.readBlock(type, positions, positionCount);
+    }
+
     @Override
     public void startStripe(StreamSources dictionaryStreamSources, List<ColumnEncoding> encoding)
             throws IOException
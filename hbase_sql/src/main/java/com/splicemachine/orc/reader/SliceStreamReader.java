@@ -54,6 +54,13 @@ public class SliceStreamReader
         return currentReader.readBlock(type, vector);
     }
 
+    @Override
+    public ColumnVector readBlock(DataType type, int[] positions, int positionCount)
+            throws IOException
+    {
+        return currentReader.readBlock(type, positions, positionCount);
+    }
+
     @Override
     public void prepareNextRead(int batchSize)
     {
@@ -28,6 +28,17 @@ public interface StreamReader {
     ColumnVector readBlock(DataType type, ColumnVector columnVector)
             throws IOException;
 
+    /**
+     * Read only the given rows of the next batch. Rows in between are skipped without being decoded where the
+     * type allows it; the vector still has a slot for every row of the batch, and the rows that were not asked
+     * for are null.
+     *
+     * @param positions the rows to read, in increasing order
+     * @param positionCount the number of rows in positions
+     */
+    ColumnVector readBlock(DataType type, int[] positions, int positionCount)
+            throws IOException;
+
     void prepareNextRead(int batchSize);
 
     void startStripe(StreamSources dictionaryStreamSources, List<ColumnEncoding> encoding)
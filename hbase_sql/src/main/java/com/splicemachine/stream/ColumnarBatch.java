@@ -0,0 +1,521 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.stream;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.context.ContextService;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.DataValueFactoryImpl;
+import com.splicemachine.db.iapi.types.SQLDecimal;
+import com.splicemachine.db.iapi.types.StringDataValue;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.utils.EngineUtils;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import org.apache.spark.SparkConf;
+import org.apache.spark.io.CompressionCodec;
+import org.apache.spark.io.LZ4CompressionCodec;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A batch of rows streamed from a Spark task to the query client, stored column by column.
+ *
+ * The integral, floating point and boolean columns are sent as vectors of primitive values, the other ones as vectors
+ * of values in the encoding rows use in storage. Each column has a bitmap of its null values, which aren't sent. The
+ * types of the columns, and the collation of the character ones, are sent once per batch, rather than once per row as
+ * when rows are sent one by one, and the whole batch may be compressed.
+ *
+ * On the client, a batch is an iterator over its rows, which are only built when they are read, so the rows skipped
+ * because of an offset are never built.
+ */
+public class ColumnarBatch implements Externalizable, Iterator<ExecRow> {
+    private static final CompressionCodec CODEC = new LZ4CompressionCodec(new SparkConf(false));
+
+    private static final byte INT = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte FLOAT = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte ENCODED = 5;
+
+    private int rowCount;
+    private int[] formatIds;
+    private int[] collationTypes;
+    private BitSet[] nulls;
+    private Object[] values;
+    private boolean compressed;
+
+    // client side state
+    private transient ExecRow template;
+    private transient DescriptorSerializer[] serializers;
+    private transient int[] valuePositions;
+    private transient int position;
+
+    public ColumnarBatch() {}
+
+    private ColumnarBatch(int rowCount, int[] formatIds, int[] collationTypes, BitSet[] nulls, Object[] values,
+                          boolean compressed) {
+        this.rowCount = rowCount;
+        this.formatIds = formatIds;
+        this.collationTypes = collationTypes;
+        this.nulls = nulls;
+        this.values = values;
+        this.compressed = compressed;
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < rowCount;
+    }
+
+    @Override
+    public ExecRow next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        try {
+            if (template == null)
+                initialize();
+            ExecRow row = template.getNewNullRow();
+            for (int i = 0; i < formatIds.length; i++) {
+                if (nulls[i].get(position))
+                    continue;
+                DataValueDescriptor dvd = row.getColumn(i + 1);
+                int index = valuePositions[i]++;
+                switch (kind(formatIds[i])) {
+                    case INT:
+                        dvd.setValue(((int[]) values[i])[index]);
+                        break;
+                    case LONG:
+                        dvd.setValue(((long[]) values[i])[index]);
+                        break;
+                    case DOUBLE:
+                        dvd.setValue(((double[]) values[i])[index]);
+                        break;
+                    case FLOAT:
+                        dvd.setValue(((float[]) values[i])[index]);
+                        break;
+                    case BOOLEAN:
+                        dvd.setValue(((boolean[]) values[i])[index]);
+                        break;
+                    default:
+                        byte[] value = ((byte[][]) values[i])[index];
+                        serializers[i].decodeDirect(dvd, value, 0, value.length, false);
+                }
+            }
+            position++;
+            return row;
+        } catch (StandardException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Skips rows without building them.
+     *
+     * @return the number of rows skipped, which is less than requested if there aren't enough rows left
+     */
+    public int skip(long count) {
+        int skipped = (int) Math.min(count, rowCount - position);
+        if (valuePositions == null)
+            valuePositions = new int[formatIds.length];
+        for (int i = 0; i < formatIds.length; i++) {
+            // the values of the null columns aren't in the vectors
+            int nullCount = nulls[i].get(position, position + skipped).cardinality();
+            valuePositions[i] += skipped - nullCount;
+        }
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeBoolean(compressed);
+        if (!compressed) {
+            writeColumns(out);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream compressedOut = new DataOutputStream(CODEC.compressedOutputStream(bytes))) {
+            writeColumns(compressedOut);
+        }
+        out.writeInt(bytes.size());
+        out.write(bytes.toByteArray());
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        compressed = in.readBoolean();
+        if (!compressed) {
+            readColumns(in);
+            return;
+        }
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        try (DataInputStream compressedIn = new DataInputStream(CODEC.compressedInputStream(new ByteArrayInputStream(bytes)))) {
+            readColumns(compressedIn);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarBatch{" +
+                "rowCount=" + rowCount +
+                ", formatIds=" + Arrays.toString(formatIds) +
+                ", collationTypes=" + Arrays.toString(collationTypes) +
+                ", compressed=" + compressed +
+                ", position=" + position +
+                '}';
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void initialize() throws StandardException {
+        DataValueDescriptor[] dvds = new DataValueDescriptor[formatIds.length];
+        for (int i = 0; i < formatIds.length; i++) {
+            dvds[i] = getDVD(formatIds[i], collationTypes[i]);
+        }
+        template = new ValueRow(dvds.length);
+        template.setRowArray(dvds);
+        serializers = VersionedSerializers.latestVersion(false).getSerializers(dvds);
+        if (valuePositions == null)
+            valuePositions = new int[formatIds.length];
+    }
+
+    private void writeColumns(DataOutput out) throws IOException {
+        out.writeInt(rowCount);
+        out.writeInt(formatIds.length);
+        for (int i = 0; i < formatIds.length; i++) {
+            out.writeInt(formatIds[i]);
+            out.writeInt(collationTypes[i]);
+            long[] words = nulls[i].toLongArray();
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+            switch (kind(formatIds[i])) {
+                case INT:
+                    int[] ints = (int[]) values[i];
+                    out.writeInt(ints.length);
+                    for (int v : ints) out.writeInt(v);
+                    break;
+                case LONG:
+                    long[] longs = (long[]) values[i];
+                    out.writeInt(longs.length);
+                    for (long v : longs) out.writeLong(v);
+                    break;
+                case DOUBLE:
+                    double[] doubles = (double[]) values[i];
+                    out.writeInt(doubles.length);
+                    for (double v : doubles) out.writeDouble(v);
+                    break;
+                case FLOAT:
+                    float[] floats = (float[]) values[i];
+                    out.writeInt(floats.length);
+                    for (float v : floats) out.writeFloat(v);
+                    break;
+                case BOOLEAN:
+                    boolean[] booleans = (boolean[]) values[i];
+                    out.writeInt(booleans.length);
+                    for (boolean v : booleans) out.writeBoolean(v);
+                    break;
+                default:
+                    byte[][] encoded = (byte[][]) values[i];
+                    out.writeInt(encoded.length);
+                    for (byte[] v : encoded) {
+                        out.writeInt(v.length);
+                        out.write(v);
+                    }
+            }
+        }
+    }
+
+    private void readColumns(DataInput in) throws IOException {
+        rowCount = in.readInt();
+        int columns = in.readInt();
+        formatIds = new int[columns];
+        collationTypes = new int[columns];
+        nulls = new BitSet[columns];
+        values = new Object[columns];
+        for (int i = 0; i < columns; i++) {
+            formatIds[i] = in.readInt();
+            collationTypes[i] = in.readInt();
+            long[] words = new long[in.readInt()];
+            for (int w = 0; w < words.length; w++) {
+                words[w] = in.readLong();
+            }
+            nulls[i] = BitSet.valueOf(words);
+            int count = in.readInt();
+            switch (kind(formatIds[i])) {
+                case INT:
+                    int[] ints = new int[count];
+                    for (int v = 0; v < count; v++) ints[v] = in.readInt();
+                    values[i] = ints;
+                    break;
+                case LONG:
+                    long[] longs = new long[count];
+                    for (int v = 0; v < count; v++) longs[v] = in.readLong();
+                    values[i] = longs;
+                    break;
+                case DOUBLE:
+                    double[] doubles = new double[count];
+                    for (int v = 0; v < count; v++) doubles[v] = in.readDouble();
+                    values[i] = doubles;
+                    break;
+                case FLOAT:
+                    float[] floats = new float[count];
+                    for (int v = 0; v < count; v++) floats[v] = in.readFloat();
+                    values[i] = floats;
+                    break;
+                case BOOLEAN:
+                    boolean[] booleans = new boolean[count];
+                    for (int v = 0; v < count; v++) booleans[v] = in.readBoolean();
+                    values[i] = booleans;
+                    break;
+                default:
+                    byte[][] encoded = new byte[count][];
+                    for (int v = 0; v < count; v++) {
+                        encoded[v] = new byte[in.readInt()];
+                        in.readFully(encoded[v]);
+                    }
+                    values[i] = encoded;
+            }
+        }
+    }
+
+    private static byte kind(int formatId) {
+        switch (formatId) {
+            case StoredFormatIds.SQL_INTEGER_ID:
+            case StoredFormatIds.SQL_SMALLINT_ID:
+            case StoredFormatIds.SQL_TINYINT_ID:
+                return INT;
+            case StoredFormatIds.SQL_LONGINT_ID:
+                return LONG;
+            case StoredFormatIds.SQL_DOUBLE_ID:
+                return DOUBLE;
+            case StoredFormatIds.SQL_REAL_ID:
+                return FLOAT;
+            case StoredFormatIds.SQL_BOOLEAN_ID:
+                return BOOLEAN;
+            default:
+                return ENCODED;
+        }
+    }
+
+    private static DataValueDescriptor getDVD(int formatId, int collationType) throws StandardException {
+        if (formatId == StoredFormatIds.SQL_DECIMAL_ID)
+            return new SQLDecimal();
+        DataValueDescriptor dvd = DataValueFactoryImpl.getNullDVDWithUCS_BASICcollation(formatId);
+        if (collationType == StringDataValue.COLLATION_TYPE_UCS_BASIC || !(dvd instanceof StringDataValue))
+            return dvd;
+        // the rows are read by the statement, whose database has the collator
+        LanguageConnectionContext lcc = (LanguageConnectionContext) ContextService.getContextOrNull(LanguageConnectionContext.CONTEXT_ID);
+        if (lcc == null)
+            return dvd;
+        return ((StringDataValue) dvd).getValue(lcc.getDataValueFactory().getCharacterCollator(collationType));
+    }
+
+    /**
+     * @return the collation of a column, which is territory based if its values aren't of the type the format id
+     * stands for
+     */
+    private static int collationType(int formatId, DataValueDescriptor dvd) {
+        if (!(dvd instanceof StringDataValue)
+                || dvd.getClass() == DataValueFactoryImpl.getNullDVDWithUCS_BASICcollation(formatId).getClass())
+            return StringDataValue.COLLATION_TYPE_UCS_BASIC;
+        return StringDataValue.COLLATION_TYPE_TERRITORY_BASED;
+    }
+
+    /**
+     * Accumulates the rows a Spark task streams into a batch. Only {@link ValueRow}s whose columns all have the types of
+     * the first row added, and no user defined types, are accepted, the other rows are streamed one by one.
+     */
+    public static class Builder {
+        private final int capacity;
+        private final boolean compress;
+        private int rowCount;
+        private int[] formatIds;
+        private int[] collationTypes;
+        private DescriptorSerializer[] serializers;
+        private BitSet[] nulls;
+        private Object[] values;
+        private int[] valueCounts;
+
+        /**
+         * @param capacity the maximum number of rows in a batch
+         * @param compress whether the batches built are compressed
+         */
+        public Builder(int capacity, boolean compress) {
+            this.capacity = capacity;
+            this.compress = compress;
+        }
+
+        /**
+         * @return false if the row can't be added to this batch
+         */
+        public boolean add(Object o) throws StandardException {
+            if (rowCount >= capacity || o == null || o.getClass() != ValueRow.class)
+                return false;
+            DataValueDescriptor[] dvds = ((ExecRow) o).getRowArray();
+            if (rowCount == 0) {
+                if (!initialize(dvds))
+                    return false;
+            } else if (!Arrays.equals(formatIds, EngineUtils.getFormatIds(dvds))) {
+                return false;
+            }
+            for (int i = 0; i < dvds.length; i++) {
+                DataValueDescriptor dvd = dvds[i];
+                if (dvd.isNull()) {
+                    nulls[i].set(rowCount);
+                    continue;
+                }
+                int index = valueCounts[i]++;
+                switch (kind(formatIds[i])) {
+                    case INT:
+                        int[] ints = (int[]) values[i];
+                        if (index == ints.length)
+                            values[i] = ints = Arrays.copyOf(ints, 2 * ints.length);
+                        ints[index] = dvd.getInt();
+                        break;
+                    case LONG:
+                        long[] longs = (long[]) values[i];
+                        if (index == longs.length)
+                            values[i] = longs = Arrays.copyOf(longs, 2 * longs.length);
+                        longs[index] = dvd.getLong();
+                        break;
+                    case DOUBLE:
+                        double[] doubles = (double[]) values[i];
+                        if (index == doubles.length)
+                            values[i] = doubles = Arrays.copyOf(doubles, 2 * doubles.length);
+                        doubles[index] = dvd.getDouble();
+                        break;
+                    case FLOAT:
+                        float[] floats = (float[]) values[i];
+                        if (index == floats.length)
+                            values[i] = floats = Arrays.copyOf(floats, 2 * floats.length);
+                        floats[index] = dvd.getFloat();
+                        break;
+                    case BOOLEAN:
+                        boolean[] booleans = (boolean[]) values[i];
+                        if (index == booleans.length)
+                            values[i] = booleans = Arrays.copyOf(booleans, 2 * booleans.length);
+                        booleans[index] = dvd.getBoolean();
+                        break;
+                    default:
+                        byte[][] encoded = (byte[][]) values[i];
+                        if (index == encoded.length)
+                            values[i] = encoded = Arrays.copyOf(encoded, 2 * encoded.length);
+                        encoded[index] = serializers[i].encodeDirect(dvd, false);
+                }
+            }
+            rowCount++;
+            return true;
+        }
+
+        public boolean isEmpty() {
+            return rowCount == 0;
+        }
+
+        /**
+         * Builds a batch with the rows added so far, and empties this builder.
+         */
+        public ColumnarBatch build() {
+            Object[] vectors = new Object[values.length];
+            for (int i = 0; i < values.length; i++) {
+                vectors[i] = trim(values[i], valueCounts[i]);
+            }
+            ColumnarBatch batch = new ColumnarBatch(rowCount, formatIds, collationTypes, nulls, vectors, compress);
+            rowCount = 0;
+            formatIds = null;
+            collationTypes = null;
+            serializers = null;
+            nulls = null;
+            values = null;
+            valueCounts = null;
+            return batch;
+        }
+
+        private boolean initialize(DataValueDescriptor[] dvds) {
+            int[] ids = EngineUtils.getFormatIds(dvds);
+            for (int id : ids) {
+                if (id == StoredFormatIds.SQL_USERTYPE_ID_V3)
+                    return false; // user defined types need the class loader of the database, send them as rows
+            }
+            formatIds = ids;
+            collationTypes = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                collationTypes[i] = collationType(ids[i], dvds[i]);
+            }
+            serializers = VersionedSerializers.latestVersion(false).getSerializers(dvds);
+            nulls = new BitSet[ids.length];
+            values = new Object[ids.length];
+            valueCounts = new int[ids.length];
+            int initialSize = Math.max(1, Math.min(capacity, 64));
+            for (int i = 0; i < ids.length; i++) {
+                nulls[i] = new BitSet();
+                switch (kind(ids[i])) {
+                    case INT:
+                        values[i] = new int[initialSize];
+                        break;
+                    case LONG:
+                        values[i] = new long[initialSize];
+                        break;
+                    case DOUBLE:
+                        values[i] = new double[initialSize];
+                        break;
+                    case FLOAT:
+                        values[i] = new float[initialSize];
+                        break;
+                    case BOOLEAN:
+                        values[i] = new boolean[initialSize];
+                        break;
+                    default:
+                        values[i] = new byte[initialSize][];
+                }
+            }
+            return true;
+        }
+
+        private static Object trim(Object vector, int length) {
+            if (vector instanceof int[])
+                return Arrays.copyOf((int[]) vector, length);
+            if (vector instanceof long[])
+                return Arrays.copyOf((long[]) vector, length);
+            if (vector instanceof double[])
+                return Arrays.copyOf((double[]) vector, length);
+            if (vector instanceof float[])
+                return Arrays.copyOf((float[]) vector, length);
+            if (vector instanceof boolean[])
+                return Arrays.copyOf((boolean[]) vector, length);
+            return Arrays.copyOf((byte[][]) vector, length);
+        }
+    }
+}
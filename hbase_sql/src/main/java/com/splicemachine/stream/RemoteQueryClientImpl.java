@@ -29,6 +29,7 @@ import com.splicemachine.derby.iapi.sql.olap.OlapResult;
 import com.splicemachine.derby.impl.sql.execute.operations.*;
 import com.splicemachine.derby.stream.ActivationHolder;
 import com.splicemachine.derby.stream.iapi.RemoteQueryClient;
+import com.splicemachine.derby.utils.StatisticsOperation;
 import com.splicemachine.si.constants.SIConstants;
 import io.netty.channel.ChannelHandler;
 import org.apache.log4j.Logger;
@@ -118,11 +119,15 @@ public class RemoteQueryClientImpl implements RemoteQueryClient {
             String opUuid = root.getUuid() != null ? "," + root.getUuid().toString() : "";
             String session = hostname + ":" + localPort + "," + sessionId + opUuid;
 
-            RemoteQueryJob jobRequest = new RemoteQueryJob(ah, root.getResultSetNumber(), uuid, host, port, session, userId, sql,
-                    streamingBatches, streamingBatchSize, parallelPartitions, shufflePartitionsProperty);
-
             String requestedQueue = (String) activation.getLanguageConnectionContext().getSessionProperties().getProperty(SessionProperties.PROPERTYNAME.OLAPQUEUE);
             List<String> roles = activation.getLanguageConnectionContext().getCurrentRoles(activation);
+            // queries share the olap server by role, or by user if they have none
+            String schedulingGroup = roles == null || roles.isEmpty() ? userId : String.join(",", roles);
+
+            RemoteQueryJob jobRequest = new RemoteQueryJob(ah, root.getResultSetNumber(), uuid, host, port, session, userId, sql,
+                    streamingBatches, streamingBatchSize, parallelPartitions, shufflePartitionsProperty,
+                    config.isSparkResultStreamingColumnar(), config.isSparkResultStreamingCompression(),
+                    root instanceof StatisticsOperation, schedulingGroup, root.getEstimatedCost());
 
             String queue = chooseQueue(requestedQueue, roles, config.getOlapServerIsolatedRoles());
             
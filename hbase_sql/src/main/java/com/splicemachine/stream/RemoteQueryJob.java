@@ -38,11 +38,18 @@ public class RemoteQueryJob extends DistributedJob {
     int streamingBatchSize;
     int parallelPartitions;
     Integer shufflePartitions;
+    boolean streamingColumnar;
+    boolean streamingCompression;
+    boolean background;
+    String schedulingGroup;
+    double estimatedCost;
 
 
     public RemoteQueryJob(ActivationHolder ah, int rootResultSetNumber, UUID uuid, String host, int port,
                           String session, String userId, String sql,
-                          int streamingBatches, int streamingBatchSize, int parallelPartitions, Integer shufflePartitionsProperty) {
+                          int streamingBatches, int streamingBatchSize, int parallelPartitions, Integer shufflePartitionsProperty,
+                          boolean streamingColumnar, boolean streamingCompression,
+                          boolean background, String schedulingGroup, double estimatedCost) {
         this.ah = ah;
         this.rootResultSetNumber = rootResultSetNumber;
         this.uuid = uuid;
@@ -55,6 +62,11 @@ public class RemoteQueryJob extends DistributedJob {
         this.streamingBatchSize = streamingBatchSize;
         this.parallelPartitions = parallelPartitions;
         this.shufflePartitions = shufflePartitionsProperty;
+        this.streamingColumnar = streamingColumnar;
+        this.streamingCompression = streamingCompression;
+        this.background = background;
+        this.schedulingGroup = schedulingGroup;
+        this.estimatedCost = estimatedCost;
     }
 
     @Override
@@ -66,4 +78,19 @@ public class RemoteQueryJob extends DistributedJob {
     public String getName() {
         return "query-"+uuid;
     }
+
+    @Override
+    public boolean isBackground() {
+        return background;
+    }
+
+    @Override
+    public String getSchedulingGroup() {
+        return schedulingGroup;
+    }
+
+    @Override
+    public double getEstimatedCost() {
+        return estimatedCost;
+    }
 }
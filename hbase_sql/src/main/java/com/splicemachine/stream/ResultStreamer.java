@@ -16,6 +16,7 @@ package com.splicemachine.stream;
 
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.derby.stream.ActivationHolder;
 import com.splicemachine.derby.stream.iapi.OperationContext;
 import com.splicemachine.derby.stream.spark.SparkOperationContext;
@@ -61,6 +62,8 @@ public class ResultStreamer<T> extends ChannelInboundHandlerAdapter implements F
     private transient NioEventLoopGroup workerGroup;
     private transient CountDownLatch active;
     private int batches;
+    private boolean columnar;
+    private boolean compress;
     private volatile TaskContext taskContext;
 
     // Serialization
@@ -68,6 +71,15 @@ public class ResultStreamer<T> extends ChannelInboundHandlerAdapter implements F
     }
 
     public ResultStreamer(OperationContext<?> context, UUID uuid, String host, int port, int numPartitions, int batches, int batchSize) {
+        this(context, uuid, host, port, numPartitions, batches, batchSize, false, false);
+    }
+
+    /**
+     * @param columnar whether to send the rows in {@link ColumnarBatch}es of batchSize rows, one per permit
+     * @param compress whether to compress the columnar batches
+     */
+    public ResultStreamer(OperationContext<?> context, UUID uuid, String host, int port, int numPartitions, int batches, int batchSize,
+                          boolean columnar, boolean compress) {
         this.context = context;
         this.uuid = uuid;
         this.host = host;
@@ -76,6 +88,8 @@ public class ResultStreamer<T> extends ChannelInboundHandlerAdapter implements F
         this.batches = batches;
         this.batchSize = batchSize;
         this.permits = new Semaphore(batches - 1); // we start with one permit taken
+        this.columnar = columnar;
+        this.compress = compress;
     }
 
     @Override
@@ -88,6 +102,7 @@ public class ResultStreamer<T> extends ChannelInboundHandlerAdapter implements F
             private long consumed;
             private long sent;
             private int currentBatch;
+            private final ColumnarBatch.Builder batch = columnar ? new ColumnarBatch.Builder(batchSize, compress) : null;
 
             @Override
             public Long call() throws InterruptedException {
@@ -104,8 +119,11 @@ public class ResultStreamer<T> extends ChannelInboundHandlerAdapter implements F
                         T lr = locatedRowIterator.next();
                         consumed++;
 
-
-                        ctx.write(lr, ctx.voidPromise());
+                        if (batch == null || !batch.add(lr)) {
+                            // keep the order of the rows
+                            writeBatch();
+                            ctx.write(lr, ctx.voidPromise());
+                        }
                         currentBatch++;
                         sent++;
 
@@ -117,22 +135,34 @@ public class ResultStreamer<T> extends ChannelInboundHandlerAdapter implements F
 
                         consumeOffset();
                     }
+                    writeBatch();
                     // Data has been written, request close
                     ctx.writeAndFlush(new StreamProtocol.RequestClose());
 
                     return consumed;
+                } catch (StandardException e) {
+                    throw new RuntimeException(e);
                 } finally {
                     if (prepared)
                         ah.close();
                 }
             }
 
+            /**
+             * Write the rows accumulated in the columnar batch, if any
+             */
+            private void writeBatch() {
+                if (batch != null && !batch.isEmpty())
+                    ctx.write(batch.build(), ctx.voidPromise());
+            }
+
             /**
              * If the current batch exceeds the batch size, flush the connection and take a new permit, blocking if the client
              * hasn't had time yet to process previous messages
              */
             private void flushAndGetPermit() throws InterruptedException {
                 if (currentBatch >= batchSize) {
+                    writeBatch();
                     ctx.flush();
                     currentBatch = 0;
                     permits.acquire();
@@ -147,6 +177,7 @@ public class ResultStreamer<T> extends ChannelInboundHandlerAdapter implements F
              */
             private void consumeOffset() {
                 if (consumed < offset) {
+                    writeBatch();
                     long count = 0;
                     while (locatedRowIterator.hasNext() && consumed < offset) {
                         locatedRowIterator.next();
@@ -163,6 +194,7 @@ public class ResultStreamer<T> extends ChannelInboundHandlerAdapter implements F
              */
             private boolean checkLimit() {
                 if (consumed > limit) {
+                    writeBatch();
                     ctx.flush();
                     if (LOG.isTraceEnabled())
                         LOG.trace("Reached limit, stopping. consumed " + consumed + " sent " + sent + " limit " + limit);
@@ -259,6 +291,7 @@ public class ResultStreamer<T> extends ChannelInboundHandlerAdapter implements F
                 ", limit=" + limit +
                 ", partition=" + partition +
                 ", batches=" + batches +
+                ", columnar=" + columnar +
                 '}';
     }
 
@@ -273,6 +306,8 @@ public class ResultStreamer<T> extends ChannelInboundHandlerAdapter implements F
         out.writeInt(numPartitions);
         out.writeInt(batches);
         out.writeInt(batchSize);
+        out.writeBoolean(columnar);
+        out.writeBoolean(compress);
         out.writeObject(permits); // WTF is this?
     }
 
@@ -285,6 +320,8 @@ public class ResultStreamer<T> extends ChannelInboundHandlerAdapter implements F
         numPartitions = in.readInt();
         batches = in.readInt();
         batchSize = in.readInt();
+        columnar = in.readBoolean();
+        compress = in.readBoolean();
         permits = (Semaphore) in.readObject();
     }
 }
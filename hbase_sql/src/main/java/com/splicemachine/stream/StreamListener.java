@@ -150,6 +150,11 @@ public class StreamListener<T> extends ChannelInboundHandlerAdapter implements I
         try {
             while (next == null) {
                 PartitionState state = partitionStateMap.get(currentQueue);
+                if (state.batch != null) {
+                    // Return the rows of the current columnar batch before taking more messages
+                    next = nextFromBatch(state);
+                    continue;
+                }
                 // We take a message first to make sure we have a connection
                 Object msg = canBlock ? state.messages.take() : state.messages.remove();
                 if (msg == FAILURE) {
@@ -209,6 +214,9 @@ public class StreamListener<T> extends ChannelInboundHandlerAdapter implements I
                         StreamProtocol.Skipped skipped = (StreamProtocol.Skipped) msg;
                         offset -= skipped.skipped;
                         state.readTotal += skipped.skipped;
+                    } else if (msg instanceof ColumnarBatch) {
+                        // Its rows are read at the start of the next iterations
+                        state.batch = (ColumnarBatch) msg;
                     } else if (offset > 0) {
                         // We still have to ignore 'offset' messages
                         offset--;
@@ -219,21 +227,10 @@ public class StreamListener<T> extends ChannelInboundHandlerAdapter implements I
                         next = (T) msg;
                         state.consumed++;
                         state.readTotal++;
-                        // Check the limit
-                        if (limit > 0) {
-                            limit--;
-                            if (limit == 0) {
-                                stopAllStreams();
-                            }
-                        }
+                        checkLimit();
                     }
 
-                    if (state.consumed > batchSize) {
-                        if (LOG.isTraceEnabled())
-                            LOG.trace("Writing CONT");
-                        state.channel.writeAndFlush(new StreamProtocol.Continue());
-                        state.consumed -= batchSize;
-                    }
+                    checkContinue(state);
                 }
             }
             currentResult = next;
@@ -242,6 +239,59 @@ public class StreamListener<T> extends ChannelInboundHandlerAdapter implements I
         }
     }
 
+    /**
+     * Returns the next row of the current columnar batch of the partition, skipping the rows covered by the offset
+     * without building them.
+     *
+     * @return the next row, or null if the batch had no more rows to return
+     */
+    private T nextFromBatch(PartitionState state) {
+        ColumnarBatch batch = state.batch;
+        T next = null;
+        if (offset > 0) {
+            // We still have to ignore 'offset' rows
+            int skipped = batch.skip(offset);
+            offset -= skipped;
+            state.consumed += skipped;
+            state.readTotal += skipped;
+        }
+        if (batch.hasNext()) {
+            next = (T) batch.next();
+            state.consumed++;
+            state.readTotal++;
+        }
+        if (!batch.hasNext())
+            state.batch = null;
+        if (next != null)
+            checkLimit();
+        checkContinue(state);
+        return next;
+    }
+
+    /**
+     * A row is being returned, stop all streams if it's the last one we need
+     */
+    private void checkLimit() {
+        if (limit > 0) {
+            limit--;
+            if (limit == 0) {
+                stopAllStreams();
+            }
+        }
+    }
+
+    /**
+     * Let the server know it can send another batch for each batch of rows we've consumed
+     */
+    private void checkContinue(PartitionState state) {
+        while (state.consumed > batchSize) {
+            if (LOG.isTraceEnabled())
+                LOG.trace("Writing CONT");
+            state.channel.writeAndFlush(new StreamProtocol.Continue());
+            state.consumed -= batchSize;
+        }
+    }
+
     private void clearCurrentQueue() {
         PartitionState ps = partitionStateMap.remove(currentQueue);
         if (ps != null && ps.channel != null)
@@ -404,6 +454,7 @@ class PartitionState {
     long consumed;
     long readTotal;
     boolean initialized;
+    ColumnarBatch batch; // the columnar batch rows are being read from, if any
     volatile PartitionState next = null; // used when a task is retried after a failure
 
     PartitionState(int partition, int queueSize) {
@@ -57,6 +57,8 @@ public class StreamableRDD<T> {
     private final UUID uuid;
     private final OperationContext<?> context;
     private final int parallelPartitions;
+    private final boolean columnar;
+    private final boolean compress;
     private OlapStatus jobStatus;
 
 
@@ -70,6 +72,11 @@ public class StreamableRDD<T> {
 
     public StreamableRDD(JavaRDD<T> rdd, OperationContext<?> context, UUID uuid, String clientHost, int clientPort,
                          int batches, int batchSize, int parallelPartitions) {
+        this(rdd, context, uuid, clientHost, clientPort, batches, batchSize, parallelPartitions, false, false);
+    }
+
+    public StreamableRDD(JavaRDD<T> rdd, OperationContext<?> context, UUID uuid, String clientHost, int clientPort,
+                         int batches, int batchSize, int parallelPartitions, boolean columnar, boolean compress) {
         this.rdd = rdd;
         this.context = context;
         this.uuid = uuid;
@@ -80,12 +87,14 @@ public class StreamableRDD<T> {
         completionService = new ExecutorCompletionService<>(executor);
         this.clientBatchSize = batchSize;
         this.clientBatches = batches;
+        this.columnar = columnar;
+        this.compress = compress;
     }
 
     public void submit() throws Exception {
         Exception error = null;
         try {
-            final JavaRDD<String> streamed = rdd.mapPartitionsWithIndex(new ResultStreamer(context, uuid, host, port, rdd.getNumPartitions(), clientBatches, clientBatchSize), true);
+            final JavaRDD<String> streamed = rdd.mapPartitionsWithIndex(new ResultStreamer(context, uuid, host, port, rdd.getNumPartitions(), clientBatches, clientBatchSize, columnar, compress), true);
             int numPartitions = streamed.getNumPartitions();
             int partitionsBatchSize = parallelPartitions / 2;
             int partitionBatches = numPartitions / partitionsBatchSize;
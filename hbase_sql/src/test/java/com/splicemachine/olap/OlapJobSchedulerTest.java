@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.olap;
+
+import com.splicemachine.concurrent.Clock;
+import com.splicemachine.concurrent.IncrementingClock;
+import com.splicemachine.derby.iapi.sql.olap.DistributedJob;
+import com.splicemachine.derby.iapi.sql.olap.OlapStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+public class OlapJobSchedulerTest{
+    private final List<Runnable> tasks=new ArrayList<>();
+    private final List<String> ran=new ArrayList<>();
+    private final Executor executor=new Executor(){
+        @Override
+        public void execute(Runnable command){
+            tasks.add(command);
+        }
+    };
+
+    @Test
+    public void limitsRunningJobs() throws Exception{
+        OlapJobScheduler scheduler=new OlapJobScheduler(executor,new IncrementingClock(),2,0d,4,4);
+        for(int i=0;i<3;i++){
+            submit(scheduler,new TestJob("q"+i,false,"g",0d));
+        }
+        Assert.assertEquals(2,tasks.size());
+        Assert.assertEquals(2,scheduler.getRunningJobs());
+        Assert.assertEquals(1,scheduler.getQueuedJobs());
+
+        runNext();
+        Assert.assertEquals(2,tasks.size());
+        Assert.assertEquals(0,scheduler.getQueuedJobs());
+        Assert.assertEquals(3,scheduler.getTotalStartedJobs());
+        runAll();
+        Assert.assertEquals(Arrays.asList("q0","q1","q2"),ran);
+    }
+
+    @Test
+    public void limitsRunningCost() throws Exception{
+        OlapJobScheduler scheduler=new OlapJobScheduler(executor,new IncrementingClock(),10,100d,4,4);
+        submit(scheduler,new TestJob("big",false,"g",80d));
+        submit(scheduler,new TestJob("medium",false,"g",40d));
+        submit(scheduler,new TestJob("small",false,"g",10d));
+        // the small job doesn't overtake the medium one
+        Assert.assertEquals(1,tasks.size());
+        Assert.assertEquals(80d,scheduler.getRunningCost(),0d);
+
+        runNext();
+        Assert.assertEquals(2,tasks.size());
+        Assert.assertEquals(50d,scheduler.getRunningCost(),0d);
+        runAll();
+        Assert.assertEquals(Arrays.asList("big","medium","small"),ran);
+        Assert.assertEquals(0d,scheduler.getRunningCost(),0d);
+    }
+
+    @Test
+    public void sharesByWeight() throws Exception{
+        OlapJobScheduler scheduler=new OlapJobScheduler(executor,new IncrementingClock(),1,0d,4,4);
+        submit(scheduler,new TestJob("first",false,"g",0d));
+        for(int i=0;i<2;i++){
+            submit(scheduler,new TestJob("b"+i,true,"m",0d));
+        }
+        for(int i=0;i<6;i++){
+            submit(scheduler,new TestJob("q"+i,false,"g",0d));
+        }
+        Assert.assertEquals(8,scheduler.getQueuedJobs());
+        Assert.assertEquals(2,scheduler.getQueuedBackgroundJobs());
+        // only one job runs at a time, so the jobs run in the order they start
+        runAll();
+        Assert.assertEquals(Arrays.asList("first","b0","q0","q1","q2","q3","b1","q4","q5"),ran);
+        Assert.assertEquals(0,scheduler.getRunningJobs());
+    }
+
+    @Test
+    public void limitsBackgroundJobs() throws Exception{
+        OlapJobScheduler scheduler=new OlapJobScheduler(executor,new IncrementingClock(),4,0d,4,1);
+        submit(scheduler,new TestJob("b0",true,"m",0d));
+        submit(scheduler,new TestJob("b1",true,"m",0d));
+        submit(scheduler,new TestJob("q0",false,"g",0d));
+        Assert.assertEquals(2,tasks.size());
+        Assert.assertEquals(1,scheduler.getRunningBackgroundJobs());
+        Assert.assertEquals(1,scheduler.getQueuedBackgroundJobs());
+
+        runNext();
+        Assert.assertEquals(2,tasks.size());
+        Assert.assertEquals(0,scheduler.getQueuedBackgroundJobs());
+        runAll();
+        Assert.assertEquals(Arrays.asList("b0","q0","b1"),ran);
+    }
+
+    @Test
+    public void dropsCancelledJobs() throws Exception{
+        OlapJobScheduler scheduler=new OlapJobScheduler(executor,new IncrementingClock(),1,0d,4,4);
+        submit(scheduler,new TestJob("q0",false,"g",0d));
+        OlapJobStatus cancelled=submit(scheduler,new TestJob("q1",false,"g",0d));
+        OlapJobStatus queued=submit(scheduler,new TestJob("q2",false,"g",0d));
+        Assert.assertEquals(2,queued.queuedJobs());
+        cancelled.cancel();
+
+        runNext();
+        Assert.assertEquals(-1,queued.queuedJobs());
+        Assert.assertEquals(0,scheduler.getQueuedJobs());
+        runAll();
+        Assert.assertEquals(Arrays.asList("q0","q2"),ran);
+    }
+
+    @Test
+    public void metadataJobsAreNotQueued() throws Exception{
+        OlapJobScheduler scheduler=new OlapJobScheduler(executor,new IncrementingClock(),1,0d,4,4);
+        submit(scheduler,new TestJob("q0",false,"g",0d));
+        submit(scheduler,new TestJob("q1",false,"g",0d));
+        Assert.assertEquals(1,tasks.size());
+        Assert.assertEquals(1,scheduler.getQueuedJobs());
+
+        // the metadata job doesn't wait for the running query, nor behind the queued one
+        submit(scheduler,new TestJob("ddl",false,"g",0d,false));
+        Assert.assertEquals(2,tasks.size());
+        Assert.assertEquals(1,scheduler.getRunningJobs());
+        Assert.assertEquals(1,scheduler.getQueuedJobs());
+
+        tasks.remove(1).run();
+        Assert.assertEquals(Arrays.asList("ddl"),ran);
+        Assert.assertEquals(1,scheduler.getRunningJobs());
+        Assert.assertEquals(1,scheduler.getQueuedJobs());
+        Assert.assertEquals(1,scheduler.getTotalStartedJobs());
+        runAll();
+        Assert.assertEquals(Arrays.asList("ddl","q0","q1"),ran);
+        Assert.assertEquals(0,scheduler.getRunningJobs());
+    }
+
+    private OlapJobStatus submit(OlapJobScheduler scheduler,DistributedJob job){
+        OlapJobStatus status=new OlapJobStatus(10000L,10);
+        Assert.assertTrue(status.markSubmitted());
+        scheduler.submit(job,job.toCallable(status,null,0L),status);
+        return status;
+    }
+
+    private void runNext(){
+        tasks.remove(0).run();
+    }
+
+    private void runAll(){
+        while(!tasks.isEmpty()){
+            runNext();
+        }
+    }
+
+    private class TestJob extends DistributedJob{
+        private final String name;
+        private final boolean background;
+        private final String group;
+        private final double cost;
+        private final boolean admissionControlled;
+
+        TestJob(String name,boolean background,String group,double cost){
+            this(name,background,group,cost,true);
+        }
+
+        TestJob(String name,boolean background,String group,double cost,boolean admissionControlled){
+            this.name=name;
+            this.background=background;
+            this.group=group;
+            this.cost=cost;
+            this.admissionControlled=admissionControlled;
+        }
+
+        @Override
+        public Callable<Void> toCallable(final OlapStatus jobStatus,Clock clock,long clientTimeoutCheckIntervalMs){
+            return new Callable<Void>(){
+                @Override
+                public Void call() throws Exception{
+                    jobStatus.markRunning();
+                    ran.add(name);
+                    jobStatus.markCompleted(new SubmittedResult(0L));
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public String getName(){
+            return name;
+        }
+
+        @Override
+        public boolean isBackground(){
+            return background;
+        }
+
+        @Override
+        public boolean isAdmissionControlled(){
+            return admissionControlled;
+        }
+
+        @Override
+        public String getSchedulingGroup(){
+            return group;
+        }
+
+        @Override
+        public double getEstimatedCost(){
+            return cost;
+        }
+    }
+}
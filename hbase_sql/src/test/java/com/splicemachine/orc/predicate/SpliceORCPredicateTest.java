@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.orc.predicate;
+
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.GenericScanQualifier;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ *
+ */
+public class SpliceORCPredicateTest {
+    private static final StructType STRUCT = DataTypes.createStructType(new StructField[]{
+            DataTypes.createStructField("a", DataTypes.IntegerType, true),
+            DataTypes.createStructField("b", DataTypes.StringType, true),
+            DataTypes.createStructField("c", DataTypes.IntegerType, true)});
+    private static final int[] BASE_COLUMN_MAP = new int[]{0, 1, 2};
+
+    @Test
+    public void filtersOnAndClauses() throws Exception {
+        SpliceORCPredicate predicate = new SpliceORCPredicate(new Qualifier[][]{
+                {qualifier(0, new SQLInteger(5), DataValueDescriptor.ORDER_OP_GREATERTHAN)}},
+                BASE_COLUMN_MAP, STRUCT);
+        Assert.assertTrue(predicate.hasRowFilter());
+        Assert.assertTrue(predicate.isRowFilterField(0));
+        Assert.assertFalse(predicate.isRowFilterField(1));
+        Assert.assertTrue(predicate.qualifies(RowFactory.create(6, "x", 1)));
+        Assert.assertFalse(predicate.qualifies(RowFactory.create(5, "x", 1)));
+        Assert.assertFalse(predicate.qualifies(RowFactory.create(null, "x", 1)));
+    }
+
+    @Test
+    public void filtersOnOrClauses() throws Exception {
+        SpliceORCPredicate predicate = new SpliceORCPredicate(new Qualifier[][]{
+                {},
+                {qualifier(1, new SQLVarchar("x"), DataValueDescriptor.ORDER_OP_EQUALS),
+                        qualifier(2, new SQLInteger(3), DataValueDescriptor.ORDER_OP_EQUALS)}},
+                BASE_COLUMN_MAP, STRUCT);
+        Assert.assertTrue(predicate.hasRowFilter());
+        Assert.assertFalse(predicate.isRowFilterField(0));
+        Assert.assertTrue(predicate.qualifies(RowFactory.create(1, "x", 1)));
+        Assert.assertTrue(predicate.qualifies(RowFactory.create(1, "y", 3)));
+        Assert.assertFalse(predicate.qualifies(RowFactory.create(1, "y", 1)));
+    }
+
+    @Test
+    public void ignoresColumnsNotRead() throws Exception {
+        // the qualified column is not part of the columns read from the file
+        SpliceORCPredicate predicate = new SpliceORCPredicate(new Qualifier[][]{
+                {qualifier(3, new SQLInteger(5), DataValueDescriptor.ORDER_OP_EQUALS)}},
+                BASE_COLUMN_MAP, STRUCT);
+        Assert.assertFalse(predicate.hasRowFilter());
+        Assert.assertFalse(new SpliceORCPredicate(null, BASE_COLUMN_MAP, STRUCT).hasRowFilter());
+    }
+
+    private static Qualifier qualifier(int column, DataValueDescriptor orderable, int operator) {
+        GenericScanQualifier qualifier = new GenericScanQualifier();
+        qualifier.setQualifier(column, orderable, operator, false, false, false);
+        return qualifier;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.orc.reader;
+
+import com.splicemachine.orc.metadata.ColumnEncoding;
+import com.splicemachine.orc.stream.StreamSources;
+import org.apache.spark.sql.execution.vectorized.ColumnVector;
+import org.apache.spark.sql.types.ArrayType;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DataTypes;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractStreamReaderTest {
+
+    @Test
+    public void readsOnlySelectedPositions() throws Exception {
+        RowNumberReader reader = new RowNumberReader();
+        reader.prepareNextRead(10);
+        ColumnVector vector = reader.readBlock(DataTypes.LongType, new int[]{1, 2, 3, 6}, 4);
+
+        assertEquals(4, reader.decoded);
+        for (int row = 0; row < 10; row++) {
+            boolean selected = row == 1 || row == 2 || row == 3 || row == 6;
+            assertEquals("row " + row, !selected, vector.isNullAt(row));
+            if (selected) {
+                assertEquals(row, vector.getLong(row));
+            }
+        }
+
+        // the unselected tail of the batch is skipped on the next read, like a batch that is not read
+        reader.prepareNextRead(4);
+        reader.prepareNextRead(3);
+        vector = reader.readBlock(DataTypes.LongType);
+        assertEquals(7, reader.decoded);
+        assertEquals(17, vector.getLong(0));
+        assertEquals(19, vector.getLong(2));
+    }
+
+    @Test
+    public void keepsNullsOfSelectedPositions() throws Exception {
+        RowNumberReader reader = new RowNumberReader();
+        reader.prepareNextRead(10);
+        reader.readBlock(DataTypes.LongType);
+        reader.prepareNextRead(10);
+        ColumnVector vector = reader.readBlock(DataTypes.LongType, new int[]{0, 4, 5}, 3);
+
+        assertEquals(13, reader.decoded);
+        assertFalse(vector.isNullAt(0));
+        assertEquals(10, vector.getLong(0));
+        assertTrue("row 14 is null", vector.isNullAt(4));
+        assertEquals(15, vector.getLong(5));
+    }
+
+    @Test
+    public void readsWholeBatchWhenEveryRowIsSelected() throws Exception {
+        RowNumberReader reader = new RowNumberReader();
+        reader.prepareNextRead(3);
+        ColumnVector vector = reader.readBlock(DataTypes.LongType, new int[]{0, 1, 2}, 3);
+
+        assertEquals(3, reader.decoded);
+        assertEquals(1, reader.reads);
+        assertEquals(2, vector.getLong(2));
+    }
+
+    @Test
+    public void readsWholeBatchOfNestedType() throws Exception {
+        RowNumberReader reader = new RowNumberReader();
+        reader.prepareNextRead(10);
+        reader.readBlock(new ArrayType(DataTypes.LongType, true), new int[]{4}, 1);
+
+        assertEquals(10, reader.decoded);
+    }
+
+    /**
+     * Decodes the row number of each row, rows whose number ends with 4 are null.
+     */
+    private static class RowNumberReader extends AbstractStreamReader {
+        private long row;
+        private int decoded;
+        private int reads;
+
+        @Override
+        public void prepareNextRead(int batchSize) {
+            readOffset += nextBatchSize;
+            nextBatchSize = batchSize;
+        }
+
+        @Override
+        public ColumnVector readBlock(DataType type, ColumnVector vector) {
+            reads++;
+            row += readOffset;
+            for (int i = 0; i < nextBatchSize; i++, row++) {
+                if (row % 10 == 4) {
+                    vector.appendNull();
+                }
+                else if (type instanceof ArrayType) {
+                    vector.appendNotNull();
+                }
+                else {
+                    vector.appendLong(row);
+                }
+            }
+            decoded += nextBatchSize;
+            readOffset = 0;
+            nextBatchSize = 0;
+            return vector;
+        }
+
+        @Override
+        public void startStripe(StreamSources dictionaryStreamSources, List<ColumnEncoding> encoding) {
+        }
+
+        @Override
+        public void startRowGroup(StreamSources dataStreamSources) {
+        }
+    }
+}
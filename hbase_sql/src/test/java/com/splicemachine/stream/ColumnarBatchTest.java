@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.stream;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.IndexValueRow;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import org.junit.Test;
+
+import java.io.*;
+import java.text.Collator;
+import java.text.RuleBasedCollator;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarBatchTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        testRoundTrip(false);
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws Exception {
+        testRoundTrip(true);
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+        ColumnarBatch batch = roundTrip(batch(100, false));
+        assertEquals(25, batch.skip(25));
+        assertEquals(row(25), batch.next());
+        assertEquals(74, batch.skip(1000));
+        assertFalse(batch.hasNext());
+    }
+
+    @Test
+    public void testRejectsDifferentRows() throws Exception {
+        ColumnarBatch.Builder builder = new ColumnarBatch.Builder(10, false);
+        assertTrue(builder.add(row(0)));
+        ExecRow other = new ValueRow(1);
+        other.setColumn(1, new SQLInteger(1));
+        assertFalse(builder.add(other));
+        assertFalse(builder.add(new IndexValueRow(row(1))));
+        for (int i = 1; i < 10; i++) {
+            assertTrue(builder.add(row(i)));
+        }
+        assertFalse(builder.add(row(10)));
+        assertEquals(10, builder.build().size());
+        assertTrue(builder.isEmpty());
+    }
+
+    @Test
+    public void testCollationIsSent() throws Exception {
+        RuleBasedCollator collator = (RuleBasedCollator) Collator.getInstance(Locale.US);
+        ColumnarBatch.Builder builder = new ColumnarBatch.Builder(10, false);
+        for (int i = 0; i < 10; i++) {
+            ExecRow row = new ValueRow(2);
+            row.setColumn(1, new SQLVarchar("basic " + i));
+            row.setColumn(2, new SQLVarchar("territory " + i).getValue(collator));
+            assertTrue(builder.add(row));
+        }
+        ColumnarBatch batch = roundTrip(builder.build());
+        assertTrue(batch.toString(), batch.toString().contains("collationTypes=[0, 1]"));
+        for (int i = 0; i < 10; i++) {
+            ExecRow row = batch.next();
+            assertEquals("basic " + i, row.getColumn(1).getString());
+            assertEquals("territory " + i, row.getColumn(2).getString());
+        }
+        assertFalse(batch.hasNext());
+    }
+
+    private void testRoundTrip(boolean compress) throws Exception {
+        ColumnarBatch batch = roundTrip(batch(1000, compress));
+        assertEquals(1000, batch.size());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(batch.hasNext());
+            assertEquals(row(i), batch.next());
+        }
+        assertFalse(batch.hasNext());
+    }
+
+    private static ColumnarBatch batch(int rows, boolean compress) throws Exception {
+        ColumnarBatch.Builder builder = new ColumnarBatch.Builder(rows, compress);
+        for (int i = 0; i < rows; i++) {
+            assertTrue(builder.add(row(i)));
+        }
+        return builder.build();
+    }
+
+    private static ExecRow row(int i) throws Exception {
+        ExecRow row = new ValueRow(4);
+        row.setColumn(1, new SQLInteger(i));
+        row.setColumn(2, i % 3 == 0 ? new SQLLongint() : new SQLLongint(i * 1000L));
+        row.setColumn(3, new SQLDouble(i / 4.0));
+        row.setColumn(4, i % 7 == 0 ? new SQLVarchar() : new SQLVarchar("value " + (i / 10)));
+        return row;
+    }
+
+    private static ColumnarBatch roundTrip(ColumnarBatch batch) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            batch.writeExternal(out);
+        }
+        ColumnarBatch read = new ColumnarBatch();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read.readExternal(in);
+        }
+        return read;
+    }
+}
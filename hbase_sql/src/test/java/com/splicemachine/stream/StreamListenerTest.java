@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.stream;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Streams columnar batches to a {@link StreamListener} through an embedded channel, standing for a Spark task.
+ */
+public class StreamListenerTest {
+    private static final int BATCH_SIZE = 10;
+
+    @Test
+    public void testReadsBatches() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        StreamListener<ExecRow> listener = listener(-1, 0, channel);
+        channel.writeInbound(batch(0, 10));
+        channel.writeInbound(batch(10, 10));
+        channel.writeInbound(batch(20, 5));
+        channel.writeInbound(new StreamProtocol.RequestClose());
+
+        assertEquals(range(0, 25), read(listener.getIterator(), -1));
+    }
+
+    @Test
+    public void testOffsetSkipsRowsOfBatches() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        StreamListener<ExecRow> listener = listener(-1, 15, channel);
+        // the server had sent a batch before it got the offset, it skips the rest of it
+        channel.writeInbound(batch(0, 10));
+        channel.writeInbound(new StreamProtocol.Skipped(5));
+        channel.writeInbound(batch(15, 10));
+
+        Iterator<ExecRow> rows = listener.getIterator();
+        StreamProtocol.Skip skip = (StreamProtocol.Skip) outbound(channel).get(0);
+        assertEquals(15, skip.offset);
+        assertEquals(-1, skip.limit);
+        assertEquals(range(15, 9), read(rows, 9));
+
+        channel.writeInbound(new StreamProtocol.RequestClose());
+        assertEquals(range(24, 1), read(rows, -1));
+    }
+
+    @Test
+    public void testOffsetWithinBatch() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        StreamListener<ExecRow> listener = listener(-1, 3, channel);
+        channel.writeInbound(batch(0, 10));
+        channel.writeInbound(batch(10, 10));
+        channel.writeInbound(new StreamProtocol.RequestClose());
+
+        assertEquals(range(3, 17), read(listener.getIterator(), -1));
+    }
+
+    @Test
+    public void testLimitStopsWithinBatch() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        StreamListener<ExecRow> listener = listener(5, 2, channel);
+        channel.writeInbound(batch(0, 10));
+
+        Iterator<ExecRow> rows = listener.getIterator();
+        assertEquals(range(2, 5), read(rows, -1));
+        assertFalse(rows.hasNext());
+
+        List<Object> sent = outbound(channel);
+        StreamProtocol.Skip skip = (StreamProtocol.Skip) sent.get(0);
+        assertEquals(2, skip.offset);
+        // the server counts its limit from its first row
+        assertEquals(7, skip.limit);
+        assertTrue(sent.toString(), sent.get(sent.size() - 1) instanceof StreamProtocol.RequestClose);
+    }
+
+    @Test
+    public void testPermitsAreReturnedPerBatchOfRows() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        StreamListener<ExecRow> listener = listener(-1, 0, channel);
+        channel.writeInbound(batch(0, 10));
+        channel.writeInbound(batch(10, 10));
+        channel.writeInbound(batch(20, 10));
+
+        // the iterator reads one row ahead, so 22 rows are consumed
+        Iterator<ExecRow> rows = listener.getIterator();
+        assertEquals(range(0, 21), read(rows, 21));
+        assertEquals(2, count(outbound(channel), StreamProtocol.Continue.class));
+
+        channel.writeInbound(new StreamProtocol.RequestClose());
+        assertEquals(range(21, 9), read(rows, -1));
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private static StreamListener<ExecRow> listener(long limit, long offset, EmbeddedChannel channel) {
+        StreamListener<ExecRow> listener = new StreamListener<>(limit, offset, 2, BATCH_SIZE);
+        listener.accept(channel.pipeline().firstContext(), 1, 0);
+        return listener;
+    }
+
+    /**
+     * @return a columnar batch of rows, as received from the server
+     */
+    private static ColumnarBatch batch(int first, int rows) throws Exception {
+        ColumnarBatch.Builder builder = new ColumnarBatch.Builder(BATCH_SIZE, false);
+        for (int i = first; i < first + rows; i++) {
+            ExecRow row = new ValueRow(1);
+            row.setColumn(1, new SQLInteger(i));
+            assertTrue(builder.add(row));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            builder.build().writeExternal(out);
+        }
+        ColumnarBatch batch = new ColumnarBatch();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            batch.readExternal(in);
+        }
+        return batch;
+    }
+
+    private static List<Integer> range(int first, int count) {
+        List<Integer> values = new ArrayList<>();
+        for (int i = first; i < first + count; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    /**
+     * @param max the maximum number of rows to read, -1 to read all of them
+     */
+    private static List<Integer> read(Iterator<ExecRow> rows, int max) throws Exception {
+        List<Integer> values = new ArrayList<>();
+        while ((max < 0 || values.size() < max) && rows.hasNext()) {
+            values.add(rows.next().getColumn(1).getInt());
+        }
+        return values;
+    }
+
+    private static List<Object> outbound(EmbeddedChannel channel) {
+        List<Object> messages = new ArrayList<>();
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            messages.add(msg);
+        }
+        return messages;
+    }
+
+    private static int count(List<Object> messages, Class<?> type) {
+        int count = 0;
+        for (Object msg : messages) {
+            if (type.isInstance(msg))
+                count++;
+        }
+        return count;
+    }
+}
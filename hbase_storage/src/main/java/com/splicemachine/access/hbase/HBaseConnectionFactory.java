@@ -250,6 +250,16 @@ public class HBaseConnectionFactory{
                         HConfiguration.REPLICA_REPLICATION_PROGRESS_TABLE_NAME + " created");
             }
 
+            if(!admin.tableExists(TableName.valueOf(namespace, HConfiguration.STATEMENT_PLANS_TABLE_NAME))){
+                HTableDescriptor td=generateNonSITable(HConfiguration.STATEMENT_PLANS_TABLE_NAME);
+                HColumnDescriptor plans=td.getFamily(DEFAULT_FAMILY_BYTES);
+                plans.setMaxVersions(1);
+                plans.setTimeToLive(HConfiguration.STATEMENT_PLANS_TTL);
+                admin.createTable(td);
+                SpliceLogUtils.info(LOG,
+                        HConfiguration.STATEMENT_PLANS_TABLE_NAME + " created");
+            }
+
             return true;
         }catch(Exception e){
             SpliceLogUtils.error(LOG,"Unable to set up HBase Tables",e);
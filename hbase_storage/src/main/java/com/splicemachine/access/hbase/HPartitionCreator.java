@@ -43,6 +43,7 @@ public class HPartitionCreator implements PartitionCreator{
     private final HBaseTableInfoFactory tableInfoFactory;
     private final PartitionInfoCache partitionInfoCache;
     private byte[][] splitKeys;
+    private int timeToLive=-1;
 
     public HPartitionCreator(HBaseTableInfoFactory tableInfoFactory,Connection connection,Clock clock,HColumnDescriptor userDataFamilyDescriptor,PartitionInfoCache partitionInfoCache){
         this.connection = connection;
@@ -97,7 +98,12 @@ public class HPartitionCreator implements PartitionCreator{
     @Override
     public Partition create() throws IOException{
         assert descriptorBuilder!=null: "No table to create!";
-        descriptorBuilder.setColumnFamily(userDataFamilyDescriptor);
+        if(timeToLive>0){
+            HColumnDescriptor family=new HColumnDescriptor(userDataFamilyDescriptor);
+            family.setTimeToLive(timeToLive);
+            descriptorBuilder.setColumnFamily(family);
+        }else
+            descriptorBuilder.setColumnFamily(userDataFamilyDescriptor);
         TableDescriptor descriptor = descriptorBuilder.build();
         try(Admin admin = connection.getAdmin()){
             if (splitKeys == null) {
@@ -111,6 +117,12 @@ public class HPartitionCreator implements PartitionCreator{
         return new ClientPartition(connection,tableName,connection.getTable(tableName),clock,partitionInfoCache);
     }
 
+    @Override
+    public PartitionCreator withTimeToLive(int seconds){
+        this.timeToLive=seconds;
+        return this;
+    }
+
     @Override
     @SuppressFBWarnings(value="EI_EXPOSE_REP2", justification="DB-9371")
     public PartitionCreator withSplitKeys(byte[][] splitKeys) {
@@ -93,7 +93,9 @@ public class TxnLifecycleEndpoint extends TxnMessage.TxnLifecycleService impleme
                 TimestampSource timestampSource=driver.getTimestampSource();
                 int txnLockStrips = configuration.getTransactionLockStripes();
                 lifecycleStore = new StripedTxnLifecycleStore(txnLockStrips,regionStore,
-                        new RegionServerControl(region, (RegionServerServices)rce.getOnlineRegions()),timestampSource);
+                        new RegionServerControl(region, (RegionServerServices)rce.getOnlineRegions()),timestampSource,
+                        configuration.getTransactionGroupCommitMaxSize(),
+                        configuration.getTransactionGroupCommitWindowMicros());
                 isTxnTable=true;
             }
         } catch (Throwable t) {
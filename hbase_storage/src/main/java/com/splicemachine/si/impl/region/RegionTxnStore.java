@@ -31,14 +31,17 @@ import com.splicemachine.utils.Source;
 import com.splicemachine.utils.SpliceLogUtils;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.regionserver.HRegion;
+import org.apache.hadoop.hbase.regionserver.OperationStatus;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.log4j.Logger;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -235,6 +238,26 @@ public class RegionTxnStore implements TxnPartition{
         region.put(put);
     }
 
+    @Override
+    public void recordCommits(long[] txnIds,long[] commitTs) throws IOException{
+        if(LOG.isTraceEnabled())
+            SpliceLogUtils.trace(LOG,"recordCommits txnIds=%s, commitTs=%s",Arrays.toString(txnIds),Arrays.toString(commitTs));
+        Put[] puts=new Put[txnIds.length];
+        for(int i=0;i<txnIds.length;i++){
+            Put put=new Put(getRowKey(txnIds[i]));
+            put.addColumn(FAMILY,V2TxnDecoder.COMMIT_QUALIFIER_BYTES,Encoding.encode(commitTs[i]));
+            put.addColumn(FAMILY,V2TxnDecoder.STATE_QUALIFIER_BYTES,Txn.State.COMMITTED.encode());
+            puts[i]=put;
+        }
+        //a single batch, and a single WAL sync, for all the commits. Each row is written atomically, the batch
+        //is not: if a commit fails, or the region throws halfway, the others may still have been applied
+        OperationStatus[] statuses=region.batchMutate(puts);
+        for(OperationStatus status : statuses){
+            if(status.getOperationStatusCode()!=HConstants.OperationStatusCode.SUCCESS)
+                throw new IOException("Unable to record commits: "+status.getExceptionMsg());
+        }
+    }
+
     @Override
     public void recordGlobalCommit(long txnId,long globalCommitTs) throws IOException{
         Put put=new Put(getRowKey(txnId));
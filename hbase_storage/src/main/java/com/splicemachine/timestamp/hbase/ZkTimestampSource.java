@@ -22,6 +22,7 @@ import org.apache.log4j.Logger;
 import com.splicemachine.access.HConfiguration;
 import com.splicemachine.access.api.SConfiguration;
 import com.splicemachine.access.hbase.HBaseConnectionFactory;
+import com.splicemachine.pipeline.utils.PipelineUtils;
 import com.splicemachine.timestamp.api.TimestampSource;
 import com.splicemachine.timestamp.impl.TimestampClient;
 import com.splicemachine.timestamp.impl.TimestampServer;
@@ -39,13 +40,16 @@ import com.splicemachine.utils.SpliceLogUtils;
 public class ZkTimestampSource implements TimestampSource {
 
     private static final Logger LOG = Logger.getLogger(ZkTimestampSource.class);
+    private static final long RETRY_PAUSE = 10; // millis, scaled by the retry backoff
 
     private RecoverableZooKeeper _rzk;
     private volatile TimestampClient _tc = null;
     private String rootZkPath;
+    private final int maxRetries;
 
     public ZkTimestampSource(SConfiguration config,RecoverableZooKeeper rzk) {
         _rzk = rzk;
+        maxRetries = Math.max(1, config.getMaxRetries());
         initialize(config);
     }
     
@@ -58,10 +62,12 @@ public class ZkTimestampSource implements TimestampSource {
                 rootZkPath = config.getSpliceRootPath();
                 int timeout = config.getTimestampClientWaitTime();
                 int timestampPort = config.getTimestampServerBindPort();
+                int batchSize = config.getTimestampClientBatchSize();
 		    	LOG.info("Creating the TimestampClient...");
                 HBaseConnectionFactory hbcf = HBaseConnectionFactory.getInstance(config);
                 _tc = new TimestampClient(timeout,
-                        new HBaseTimestampHostProvider(hbcf,timestampPort));
+                        new HBaseTimestampHostProvider(hbcf,timestampPort),
+                        batchSize);
     		}
     	}
     }
@@ -76,56 +82,54 @@ public class ZkTimestampSource implements TimestampSource {
 
     @Override
     public long currentTimestamp() {
-        TimestampClient client = getTimestampClient();
-
-        long nextTimestamp;
-        try {
-            nextTimestamp = client.getCurrentTimestamp();
-        } catch (Exception e) {
-            LOG.warn("Unable to fetch new timestamp, will retry", e);
-
-            // In case of error we are going to reconnect, so we can retry once more and see if we are lucky...
-            try {
-                Thread.sleep(100);
-
-                nextTimestamp = client.getCurrentTimestamp();
-            } catch (Exception e2) {
-                LOG.error("Unable to get current timestamp", e2);
-                throw new RuntimeException("Unable to get current timestamp", e2);
-            }
-        }
-
-        SpliceLogUtils.debug(LOG, "Current timestamp: %s", nextTimestamp);
+        long currentTimestamp = retry("current timestamp", TimestampClient::getCurrentTimestamp);
+        SpliceLogUtils.debug(LOG, "Current timestamp: %s", currentTimestamp);
+        return currentTimestamp;
+    }
 
+    @Override
+    public long nextTimestamp() {
+        long nextTimestamp = retry("new timestamp", TimestampClient::getNextTimestamp);
+        SpliceLogUtils.debug(LOG, "Next timestamp: %s", nextTimestamp);
         return nextTimestamp;
     }
 
     @Override
-    public long nextTimestamp() {
+    public long[] nextTimestamps(int count) {
+        // timestamps already handed out by a failed call are simply skipped
+        return retry("new timestamps", client -> client.getNextTimestamps(count));
+    }
 
-		TimestampClient client = getTimestampClient();
-				
-		long nextTimestamp;
-		try {
-			nextTimestamp = client.getNextTimestamp();
-		} catch (Exception e) {
-            LOG.warn("Unable to fetch new timestamp, will retry", e);
-            
-		    // In case of error we are going to reconnect, so we can retry once more and see if we are lucky...
+    /**
+     * Runs the request, retrying with the usual backoff when it fails. In case of error the client reconnects,
+     * so a later attempt may succeed.
+     */
+    private <T> T retry(String what, TimestampRequest<T> request) {
+        int tries = 0;
+        while (true) {
+            tries++;
+            TimestampClient client = getTimestampClient();
             try {
-                Thread.sleep(100);
-                
-                nextTimestamp = client.getNextTimestamp();
-            } catch (Exception e2) {
-                LOG.error("Unable to fetch new timestamp", e2);
-                throw new RuntimeException("Unable to fetch new timestamp", e2);
+                return request.run(client);
+            } catch (Exception e) {
+                if (tries >= maxRetries) {
+                    LOG.error("Unable to fetch " + what, e);
+                    throw new RuntimeException("Unable to fetch " + what, e);
+                }
+                LOG.warn("Unable to fetch " + what + ", will retry", e);
             }
-		}
+            try {
+                Thread.sleep(PipelineUtils.getPauseTime(tries, RETRY_PAUSE));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while fetching " + what, ie);
+            }
+        }
+    }
 
-		SpliceLogUtils.debug(LOG, "Next timestamp: %s", nextTimestamp);
-		
-		return nextTimestamp;
-	}
+    private interface TimestampRequest<T> {
+        T run(TimestampClient client) throws Exception;
+    }
 
 	// The following two are same as ZooKeeperStatTimestampSource,
 	// and can probably stay this way.
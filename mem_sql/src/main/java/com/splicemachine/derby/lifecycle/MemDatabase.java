@@ -73,6 +73,7 @@ public class MemDatabase{
                 admin.newPartition().withName("TENTATIVE_DDL").create();
                 admin.newPartition().withName("SPLICE_CONGLOMERATE").create();
                 admin.newPartition().withName("SPLICE_SEQUENCES").create();
+                admin.newPartition().withName("SPLICE_STATEMENT_PLANS").create();
             }
 
             @Override
@@ -16,8 +16,6 @@ package com.splicemachine.storage;
 
 import com.splicemachine.access.util.ByteComparisons;
 import org.spark_project.guava.base.Predicate;
-import org.spark_project.guava.collect.BiMap;
-import org.spark_project.guava.collect.HashBiMap;
 import org.spark_project.guava.collect.Sets;
 import com.splicemachine.collections.EmptyNavigableSet;
 import com.splicemachine.kvpair.KVPair;
@@ -27,17 +25,12 @@ import com.splicemachine.primitives.Bytes;
 import com.splicemachine.si.constants.SIConstants;
 import com.splicemachine.storage.util.MappedDataResultScanner;
 import com.splicemachine.utils.Pair;
-import javax.annotation.Nonnull;
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * @author Scott Fines
@@ -50,7 +43,7 @@ public class MPartition implements Partition{
     private final PartitionServer owner;
 
     private final ConcurrentSkipListSet<DataCell> memstore=new ConcurrentSkipListSet<>();
-    private final BiMap<ByteBuffer, Lock> lockMap=HashBiMap.create();
+    private final MRowLocks rowLocks=new MRowLocks();
     private AtomicLong writes=new AtomicLong(0l);
     private AtomicLong reads=new AtomicLong(0l);
     private AtomicLong sequenceGen = new AtomicLong(0l);
@@ -195,15 +188,17 @@ public class MPartition implements Partition{
 
     @Override
     public Iterator<MutationStatus> writeBatch(DataPut[] toWrite) throws IOException{
-        List<MutationStatus> status=new ArrayList<>(toWrite.length);
+        //the whole batch is applied with a single sequence number, like a single region batch mutation
+        long seq=sequenceGen.incrementAndGet();
+        MutationStatus[] status=new MutationStatus[toWrite.length];
         //noinspection ForLoopReplaceableByForEach
         for(int i=0;i<toWrite.length;i++){
             DataPut dp=toWrite[i];
             assert dp instanceof MPut:"Incorrect put type";
-            put((MPut)dp);
-            status.add(MOperationStatus.success());
+            put((MPut)dp,seq);
+            status[i]=MOperationStatus.success();
         }
-        return status.iterator();
+        return Arrays.asList(status).iterator();
     }
 
     @Override
@@ -292,16 +287,7 @@ public class MPartition implements Partition{
 
     @Override
     public Lock getRowLock(byte[] key,int keyOff,int keyLen) throws IOException{
-        final ByteBuffer wrap=ByteBuffer.wrap(key,keyOff,keyLen);
-        Lock lock;
-        synchronized(lockMap){
-            lock=lockMap.get(wrap);
-            if(lock==null){
-                lock=new MemLock(wrap);
-                lockMap.put(wrap,lock);
-            }
-        }
-        return lock;
+        return rowLocks.getRowLock(key,keyOff,keyLen);
     }
 
     @Override
@@ -348,8 +334,13 @@ public class MPartition implements Partition{
 
     @Override
     public void batchMutate(List<DataMutation> mutations) throws IOException {
+        long seq=sequenceGen.incrementAndGet();
         for (DataMutation dm : mutations) {
-            mutate(dm);
+            if(dm instanceof DataPut){
+                assert dm instanceof MPut:"Incorrect put type";
+                put((MPut)dm,seq);
+            }else
+                delete((DataDelete)dm);
         }
     }
 
@@ -426,72 +417,17 @@ public class MPartition implements Partition{
 
     /* ****************************************************************************************************************/
     /*private helper methods*/
-    private class MemLock implements Lock{
-        private ByteBuffer key;
-        private final Lock lock;
-        private int lockCount=0;
-
-        public MemLock(ByteBuffer key){
-            this.key=key;
-            this.lock=new ReentrantLock();
-        }
-
-        @Override
-        public void lock(){
-            lock.lock();
-            lockCount++;
-        }
-
-        @Override
-        public void lockInterruptibly() throws InterruptedException{
-            lock.lockInterruptibly();
-            lockCount++;
-        }
-
-        @Override
-        public boolean tryLock(){
-            if(lock.tryLock()){
-                lockCount++;
-                return true;
-            }else return false;
-        }
-
-        @Override
-        public boolean tryLock(long time,@Nonnull TimeUnit unit) throws InterruptedException{
-            if(lock.tryLock(time,unit)){
-                lockCount++;
-                return true;
-            }else return false;
-        }
-
-        @Override
-        public void unlock(){
-            lockCount--;
-            if(lockCount==0){
-                synchronized(lockMap){
-                    lockMap.remove(key);
-                }
-            }
-            lock.unlock();
-        }
-
-        @Override
-        @Nonnull
-        public Condition newCondition(){
-            return lock.newCondition();
-        }
+    private void put(MPut mPut) throws IOException{
+        put(mPut,sequenceGen.incrementAndGet());
     }
 
-    private void put(MPut mPut) throws IOException{
-        long seq = sequenceGen.incrementAndGet();
+    private void put(MPut mPut,long seq) throws IOException{
         Lock lock=getRowLock(mPut.key(),0,mPut.key().length);
         lock.lock();
         try{
             Iterable<DataCell> cells=mPut.cells();
             for(DataCell dc : cells){
-                if(memstore.contains(dc)){
-                    memstore.remove(dc);
-                }
+                memstore.remove(dc); //replace any existing version of the cell
                 DataCell clone=dc.getClone();
                 ((MCell)clone).sequence(seq);
                 memstore.add(clone);
@@ -101,6 +101,12 @@ public class MPartitionFactory implements PartitionFactory<Object>{
             return this;
         }
 
+        @Override
+        public PartitionCreator withTimeToLive(int seconds){
+            //no-op
+            return this;
+        }
+
         @Override
         public Partition create() throws IOException{
             assert name!=null:"No name specified!";
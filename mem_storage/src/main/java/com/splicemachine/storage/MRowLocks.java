@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.storage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Row locks for the in-memory partition.
+ *
+ * Each row that is locked, or waited on, has an entry in a concurrent map which holds the row's lock and the number
+ * of handles that are using it. Entries are created and released through atomic map operations, which only contend
+ * with operations on the same hash bin, so locking different rows does not serialize on a shared monitor. The entry
+ * goes away once the last handle releases it, so the map only holds the rows that are currently in use.
+ */
+@ThreadSafe
+class MRowLocks{
+    private final ConcurrentHashMap<ByteBuffer, RowLock> locks=new ConcurrentHashMap<>();
+
+    /**
+     * @return a handle on the lock for the row. The handle itself holds no resources until it is locked.
+     */
+    Lock getRowLock(byte[] key,int keyOff,int keyLen){
+        return new RowLockHandle(ByteBuffer.wrap(Arrays.copyOfRange(key,keyOff,keyOff+keyLen)));
+    }
+
+    /**
+     * @return the number of rows which are currently locked or waited on.
+     */
+    int size(){
+        return locks.size();
+    }
+
+    private RowLock acquire(ByteBuffer key){
+        return locks.compute(key,(k,rowLock)->{
+            if(rowLock==null)
+                rowLock=new RowLock();
+            rowLock.users++;
+            return rowLock;
+        });
+    }
+
+    private void release(ByteBuffer key){
+        locks.computeIfPresent(key,(k,rowLock)-> --rowLock.users==0?null:rowLock);
+    }
+
+    private static class RowLock{
+        private final ReentrantLock lock=new ReentrantLock();
+        // guarded by the map entry
+        private int users;
+    }
+
+    private class RowLockHandle implements Lock{
+        private final ByteBuffer key;
+
+        RowLockHandle(ByteBuffer key){
+            this.key=key;
+        }
+
+        @Override
+        public void lock(){
+            acquire(key).lock.lock();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException{
+            RowLock rowLock=acquire(key);
+            try{
+                rowLock.lock.lockInterruptibly();
+            }catch(InterruptedException ie){
+                release(key);
+                throw ie;
+            }
+        }
+
+        @Override
+        public boolean tryLock(){
+            if(acquire(key).lock.tryLock())
+                return true;
+            release(key);
+            return false;
+        }
+
+        @Override
+        public boolean tryLock(long time,@Nonnull TimeUnit unit) throws InterruptedException{
+            RowLock rowLock=acquire(key);
+            boolean locked=false;
+            try{
+                locked=rowLock.lock.tryLock(time,unit);
+                return locked;
+            }finally{
+                if(!locked)
+                    release(key);
+            }
+        }
+
+        @Override
+        public void unlock(){
+            RowLock rowLock=locks.get(key);
+            if(rowLock==null)
+                throw new IllegalMonitorStateException("Row is not locked");
+            rowLock.lock.unlock();
+            release(key);
+        }
+
+        @Override
+        @Nonnull
+        public Condition newCondition(){
+            RowLock rowLock=locks.get(key);
+            if(rowLock==null || !rowLock.lock.isHeldByCurrentThread())
+                throw new IllegalMonitorStateException("Row is not locked by the current thread");
+            return rowLock.lock.newCondition();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.storage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+public class MRowLocksTest{
+    private static final int THREADS=8;
+
+    @Test
+    public void sameRowIsMutuallyExclusive() throws Exception{
+        MRowLocks locks=new MRowLocks();
+        int[] counter=new int[1];
+        int perThread=10000;
+        runConcurrently(thread->{
+            for(int i=0;i<perThread;i++){
+                // every handle is on its own copy of the key, at a different offset
+                byte[] key=new byte[]{(byte)thread,'r','o','w'};
+                Lock lock=locks.getRowLock(key,1,3);
+                lock.lock();
+                try{
+                    counter[0]++;
+                }finally{
+                    lock.unlock();
+                }
+            }
+        });
+        Assert.assertEquals(THREADS*perThread,counter[0]);
+        Assert.assertEquals("Row locks were leaked",0,locks.size());
+    }
+
+    @Test
+    public void noLockIsLostAcrossRows() throws Exception{
+        MRowLocks locks=new MRowLocks();
+        int rows=64;
+        int perThread=20000;
+        int[] counters=new int[rows];
+        AtomicBoolean overlap=new AtomicBoolean();
+        boolean[] held=new boolean[rows];
+        runConcurrently(thread->{
+            Random random=new Random(thread);
+            for(int i=0;i<perThread;i++){
+                int row=random.nextInt(rows);
+                Lock lock=locks.getRowLock(new byte[]{(byte)row},0,1);
+                lock.lock();
+                try{
+                    if(held[row])
+                        overlap.set(true);
+                    held[row]=true;
+                    counters[row]++;
+                    held[row]=false;
+                }finally{
+                    lock.unlock();
+                }
+            }
+        });
+        int total=0;
+        for(int c : counters){
+            total+=c;
+        }
+        Assert.assertFalse("Two threads held the same row lock",overlap.get());
+        Assert.assertEquals(THREADS*perThread,total);
+        Assert.assertEquals("Row locks were leaked",0,locks.size());
+    }
+
+    @Test
+    public void lockIsReleasedWhenTheGuardedCodeThrows() throws Exception{
+        MRowLocks locks=new MRowLocks();
+        byte[] key={1,2,3};
+        try{
+            Lock lock=locks.getRowLock(key,0,key.length);
+            lock.lock();
+            try{
+                throw new IllegalStateException("write failed");
+            }finally{
+                lock.unlock();
+            }
+        }catch(IllegalStateException expected){
+            // the lock must be free for the next writer
+        }
+        Assert.assertEquals(0,locks.size());
+
+        ExecutorService executor=Executors.newSingleThreadExecutor();
+        try{
+            Future<Boolean> other=executor.submit(()->{
+                Lock lock=locks.getRowLock(key,0,key.length);
+                boolean locked=lock.tryLock(10,TimeUnit.SECONDS);
+                if(locked)
+                    lock.unlock();
+                return locked;
+            });
+            Assert.assertTrue(other.get());
+        }finally{
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(0,locks.size());
+    }
+
+    @Test
+    public void failedAttemptsDoNotKeepTheRow() throws Exception{
+        MRowLocks locks=new MRowLocks();
+        byte[] key={4,5,6};
+        Lock owner=locks.getRowLock(key,0,key.length);
+        owner.lock();
+        try{
+            ExecutorService executor=Executors.newSingleThreadExecutor();
+            try{
+                Assert.assertFalse(executor.submit(()->locks.getRowLock(key,0,key.length).tryLock()).get());
+                Assert.assertFalse(executor.submit(()->locks.getRowLock(key,0,key.length).tryLock(10,TimeUnit.MILLISECONDS)).get());
+            }finally{
+                executor.shutdownNow();
+            }
+
+            AtomicBoolean interrupted=new AtomicBoolean();
+            Thread waiter=new Thread(()->{
+                try{
+                    locks.getRowLock(key,0,key.length).lockInterruptibly();
+                }catch(InterruptedException e){
+                    interrupted.set(true);
+                }
+            });
+            waiter.start();
+            while(waiter.getState()!=Thread.State.WAITING){
+                Thread.sleep(1);
+            }
+            waiter.interrupt();
+            waiter.join(10000);
+            Assert.assertTrue(interrupted.get());
+        }finally{
+            owner.unlock();
+        }
+        // none of the failed attempts still holds on to the row
+        Assert.assertEquals(0,locks.size());
+    }
+
+    @Test(expected=IllegalMonitorStateException.class)
+    public void unlockWithoutLockFails(){
+        new MRowLocks().getRowLock(new byte[]{7},0,1).unlock();
+    }
+
+    private interface Work{
+        void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(Work work) throws Exception{
+        ExecutorService executor=Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start=new CountDownLatch(1);
+        try{
+            List<Future<Void>> futures=new ArrayList<>();
+            for(int t=0;t<THREADS;t++){
+                final int thread=t;
+                futures.add(executor.submit(()->{
+                    start.await();
+                    work.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for(Future<Void> f : futures){
+                f.get();
+            }
+        }finally{
+            executor.shutdownNow();
+        }
+    }
+}
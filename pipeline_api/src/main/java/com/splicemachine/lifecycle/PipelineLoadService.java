@@ -73,7 +73,8 @@ public abstract class PipelineLoadService<TableNameInfo> implements DatabaseLife
                 basePartition,
                 factory,
                 txnRegion,
-                pipelineDriver.meter(),pipelineDriver.exceptionFactory());
+                pipelineDriver.meter(),pipelineDriver.exceptionFactory(),
+                pipelineDriver.modificationTracker());
         pipelineDriver.registerPipeline(basePartition.getName(),writePipeline);
     }
 
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.pipeline;
+
+import com.splicemachine.access.api.PartitionFactory;
+import com.splicemachine.access.configuration.OperationConfiguration;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.storage.Partition;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the rows written to the partitions of this server, so statistics can be recollected only for the
+ * partitions which changed.
+ *
+ * The counts are kept in memory, and periodically added to a counter per partition in the SPLICE_SEQUENCES table,
+ * where every server can read them, and which survives restarts. The same row holds the value the counter had
+ * when the statistics of the partition were last collected. A count which was not added yet when the server dies
+ * is lost; this only delays the recollection of the statistics of the partition.
+ */
+public class PartitionModificationTracker{
+    private static final Logger LOG=Logger.getLogger(PartitionModificationTracker.class);
+    private static final String ROW_PREFIX="__SPLICE_STATISTICS_MODIFICATIONS/";
+    private static final byte[] MODIFIED_QUALIFIER=Bytes.toBytes("m");
+    private static final byte[] COLLECTED_QUALIFIER=Bytes.toBytes("c");
+
+    private final PartitionFactory partitionFactory;
+    private final ConcurrentMap<String, LongAdder> pending=new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public PartitionModificationTracker(PartitionFactory partitionFactory,long flushIntervalMs){
+        this.partitionFactory=partitionFactory;
+        this.flusher=Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("partition-modification-flusher").setDaemon(true).build());
+        flusher.scheduleWithFixedDelay(new Runnable(){
+            @Override
+            public void run(){
+                flush();
+            }
+        },flushIntervalMs,flushIntervalMs,TimeUnit.MILLISECONDS);
+    }
+
+    public void record(String partitionName,long rows){
+        if(rows<=0)
+            return;
+        LongAdder count=pending.get(partitionName);
+        if(count==null){
+            LongAdder newCount=new LongAdder();
+            count=pending.putIfAbsent(partitionName,newCount);
+            if(count==null)
+                count=newCount;
+        }
+        count.add(rows);
+    }
+
+    void flush(){
+        if(pending.isEmpty())
+            return;
+        try(Partition sequences=partitionFactory.getTable(OperationConfiguration.SEQUENCE_TABLE_NAME_BYTES)){
+            /*
+             * Entries are never removed, so a write can't add its rows to a counter which is no longer flushed.
+             * There is one entry per partition ever written on this server.
+             */
+            for(Map.Entry<String, LongAdder> entry : pending.entrySet()){
+                long rows=entry.getValue().sumThenReset();
+                if(rows==0)
+                    continue;
+                try{
+                    sequences.increment(rowKey(entry.getKey()),SIConstants.DEFAULT_FAMILY_BYTES,MODIFIED_QUALIFIER,rows);
+                }catch(IOException e){
+                    entry.getValue().add(rows); // try again with the next flush
+                    throw e;
+                }
+            }
+        }catch(Exception e){
+            LOG.warn("Unable to record the number of rows written to partitions",e);
+        }
+    }
+
+    /**
+     * @return the number of rows written to the partition since its statistics were last collected
+     */
+    public static long modificationsSinceCollection(Partition sequences,String partitionName) throws IOException{
+        byte[] row=rowKey(partitionName);
+        long modified=sequences.increment(row,SIConstants.DEFAULT_FAMILY_BYTES,MODIFIED_QUALIFIER,0L);
+        long collected=sequences.increment(row,SIConstants.DEFAULT_FAMILY_BYTES,COLLECTED_QUALIFIER,0L);
+        return Math.max(0L,modified-collected);
+    }
+
+    /**
+     * @return the number of rows ever written to the partition. Taken before collecting the statistics of the
+     * partition, and passed to {@link #markCollected} once they are committed.
+     */
+    public static long modifications(Partition sequences,String partitionName) throws IOException{
+        return sequences.increment(rowKey(partitionName),SIConstants.DEFAULT_FAMILY_BYTES,MODIFIED_QUALIFIER,0L);
+    }
+
+    /**
+     * Records that the statistics of the partition were collected when it had the given number of
+     * {@link #modifications}. Rows written since then make them stale again. Collections of the same partition
+     * conflict on its statistics, so only one of them commits and marks the partition.
+     */
+    public static void markCollected(Partition sequences,String partitionName,long modifications) throws IOException{
+        byte[] row=rowKey(partitionName);
+        long collected=sequences.increment(row,SIConstants.DEFAULT_FAMILY_BYTES,COLLECTED_QUALIFIER,0L);
+        if(modifications>collected)
+            sequences.increment(row,SIConstants.DEFAULT_FAMILY_BYTES,COLLECTED_QUALIFIER,modifications-collected);
+    }
+
+    private static byte[] rowKey(String partitionName){
+        return Bytes.toBytes(ROW_PREFIX+partitionName);
+    }
+}
@@ -55,6 +55,7 @@ public class PartitionWritePipeline{
     private final PipelineMeter pipelineMeters;
     private final ServerControl rce;
     private final PipelineExceptionFactory exceptionFactory;
+    private final PartitionModificationTracker modificationTracker;
 
     public PartitionWritePipeline(ServerControl rce,
                                   Partition region,
@@ -62,12 +63,23 @@ public class PartitionWritePipeline{
                                   TransactionalRegion txnRegion,
                                   PipelineMeter pipelineMeters,
                                   PipelineExceptionFactory exceptionFactory){
+        this(rce,region,ctxFactory,txnRegion,pipelineMeters,exceptionFactory,null);
+    }
+
+    public PartitionWritePipeline(ServerControl rce,
+                                  Partition region,
+                                  WriteContextFactory<TransactionalRegion> ctxFactory,
+                                  TransactionalRegion txnRegion,
+                                  PipelineMeter pipelineMeters,
+                                  PipelineExceptionFactory exceptionFactory,
+                                  PartitionModificationTracker modificationTracker){
         this.rce=rce;
         this.region=region;
         this.ctxFactory=ctxFactory;
         this.txnRegion=txnRegion;
         this.pipelineMeters=pipelineMeters;
         this.exceptionFactory=exceptionFactory;
+        this.modificationTracker=modificationTracker;
     }
 
     public ServerControl getRegionCoprocessorEnvironment(){
@@ -160,6 +172,8 @@ public class PartitionWritePipeline{
                 response.setGlobalStatus(WriteResult.success());
 
             pipelineMeters.mark(size-failed,failed);
+            if(modificationTracker!=null)
+                modificationTracker.record(region.getName(),size-failed);
             return response;
         }catch(IOException nsre){
             Throwable throwable=exceptionFactory.processPipelineException(nsre);
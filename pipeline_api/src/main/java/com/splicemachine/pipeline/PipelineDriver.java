@@ -57,6 +57,7 @@ public class PipelineDriver{
     private final WriteCoordinator writeCoordinator;
     private final PipelineExceptionFactory pef;
     private final ContextFactoryDriver ctxFactoryDriver;
+    private final PartitionModificationTracker modificationTracker;
     private final AtomicBoolean jmxRegistered = new AtomicBoolean(false);
 
     public static void loadDriver(PipelineEnvironment env){
@@ -89,6 +90,7 @@ public class PipelineDriver{
         this.compressor = compressor;
         this.pipelineMeter= meter;
         this.writePipelineFactory = writePipelineFactory;
+        this.modificationTracker = new PartitionModificationTracker(partitionFactory,config.getModificationFlushInterval());
         this.writeControl= new AtomicSpliceWriteControl(
                 config.getMaxDependentWriteThreads(),
                 config.getMaxIndependentWriteThreads(),
@@ -125,6 +127,10 @@ public class PipelineDriver{
         return pef;
     }
 
+    public PartitionModificationTracker modificationTracker(){
+        return modificationTracker;
+    }
+
     public ContextFactoryLoader getContextFactoryLoader(long conglomId){
         return ctxFactoryDriver.getLoader(conglomId);
     }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.pipeline;
+
+import com.splicemachine.access.api.PartitionFactory;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.storage.Partition;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Category(ArchitectureIndependent.class)
+public class PartitionModificationTrackerTest{
+
+    @Test
+    public void countsModificationsSinceCollection() throws Exception{
+        Counters counters=new Counters();
+        Partition sequences=counters.partition();
+        PartitionModificationTracker tracker=new PartitionModificationTracker(factory(sequences),Long.MAX_VALUE);
+
+        tracker.record("region1",10);
+        tracker.record("region1",5);
+        tracker.record("region2",3);
+        tracker.record("region2",0);
+        tracker.flush();
+        Assert.assertEquals(15L,PartitionModificationTracker.modificationsSinceCollection(sequences,"region1"));
+        Assert.assertEquals(3L,PartitionModificationTracker.modificationsSinceCollection(sequences,"region2"));
+        Assert.assertEquals(0L,PartitionModificationTracker.modificationsSinceCollection(sequences,"region3"));
+
+        long beforeCollection=PartitionModificationTracker.modifications(sequences,"region1");
+        Assert.assertEquals(15L,beforeCollection);
+        // rows written while the statistics are collected are not part of them
+        tracker.record("region1",4);
+        tracker.flush();
+        PartitionModificationTracker.markCollected(sequences,"region1",beforeCollection);
+        Assert.assertEquals(4L,PartitionModificationTracker.modificationsSinceCollection(sequences,"region1"));
+        tracker.record("region1",7);
+        tracker.flush();
+        Assert.assertEquals(11L,PartitionModificationTracker.modificationsSinceCollection(sequences,"region1"));
+        Assert.assertEquals(3L,PartitionModificationTracker.modificationsSinceCollection(sequences,"region2"));
+
+        // an older collection does not move the mark back
+        PartitionModificationTracker.markCollected(sequences,"region1",beforeCollection-5);
+        Assert.assertEquals(11L,PartitionModificationTracker.modificationsSinceCollection(sequences,"region1"));
+    }
+
+    @Test
+    public void keepsTheCountsWhichCouldNotBeFlushed() throws Exception{
+        Counters counters=new Counters();
+        Partition sequences=counters.partition();
+        PartitionModificationTracker tracker=new PartitionModificationTracker(factory(sequences),Long.MAX_VALUE);
+
+        tracker.record("region1",10);
+        counters.failing=true;
+        tracker.flush();
+        counters.failing=false;
+        Assert.assertEquals(0L,PartitionModificationTracker.modificationsSinceCollection(sequences,"region1"));
+        tracker.record("region1",2);
+        tracker.flush();
+        Assert.assertEquals(12L,PartitionModificationTracker.modificationsSinceCollection(sequences,"region1"));
+    }
+
+    private static PartitionFactory factory(Partition partition) throws IOException{
+        PartitionFactory factory=mock(PartitionFactory.class);
+        when(factory.getTable(any(byte[].class))).thenReturn(partition);
+        return factory;
+    }
+
+    private static class Counters{
+        private final Map<String, Long> values=new HashMap<>();
+        private volatile boolean failing;
+
+        Partition partition() throws IOException{
+            Partition partition=mock(Partition.class);
+            when(partition.increment(any(byte[].class),any(byte[].class),any(byte[].class),anyLong())).thenAnswer(new Answer<Long>(){
+                @Override
+                public Long answer(InvocationOnMock invocation) throws Throwable{
+                    if(failing)
+                        throw new IOException("region is closing");
+                    Object[] args=invocation.getArguments();
+                    String key=Bytes.toString((byte[])args[0])+"/"+Bytes.toString((byte[])args[2]);
+                    Long value=values.get(key);
+                    long newValue=(value==null?0L:value)+(Long)args[3];
+                    values.put(key,newValue);
+                    return newValue;
+                }
+            });
+            return partition;
+        }
+    }
+}
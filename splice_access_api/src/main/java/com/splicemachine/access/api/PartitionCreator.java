@@ -46,6 +46,15 @@ public interface PartitionCreator{
 
     PartitionCreator withSplitKeys(byte[][] splitKeys);
 
+    /**
+     * Expire the data of this partition after the given time, if the underlying architecture
+     * supports it. Otherwise this is a no-op.
+     *
+     * @param seconds the time to live of the data, in seconds
+     * @return a creator
+     */
+    PartitionCreator withTimeToLive(int seconds);
+
     Partition create() throws IOException;
 
 }
@@ -218,6 +218,8 @@ public interface SConfiguration {
 
     int getTimestampServerBindPort();
 
+    int getTimestampClientBatchSize();
+
     int getTransactionKeepAliveThreads();
 
     int getTransactionLockStripes();
@@ -405,4 +407,66 @@ public interface SConfiguration {
     String getOlapServerMode();
 
     boolean getSparkAccumulatorsEnabled();
+
+    long getControlExecutionSortBufferSize();
+
+    String getControlExecutionSpillDirectory();
+
+    long getControlExecutionAggregationBufferSize();
+
+    long getBroadcastJoinCacheMbSize();
+
+    int getTransactionGroupCommitMaxSize();
+
+    long getTransactionGroupCommitWindowMicros();
+
+    boolean isStatementPlanStoreEnabled();
+
+    double getStalePartitionFraction();
+
+    long getModificationFlushInterval();
+
+    boolean isAutoCollectionEnabled();
+
+    long getAutoCollectionInterval();
+
+    int getAutoCollectionMaxPartitions();
+
+    long getImportControlSplitSize();
+
+    int getImportControlParallelism();
+
+    int getNestedLoopJoinLookupBatchSize();
+
+    int getNestedLoopJoinLookupBlocks();
+
+    long getPinControlCacheSize();
+
+    long getPinControlRefreshInterval();
+
+    boolean isSparkResultStreamingColumnar();
+
+    boolean isSparkResultStreamingCompression();
+
+    double getOlapServerMaxRunningCost();
+
+    int getOlapServerInteractiveWeight();
+
+    int getOlapServerMaxBackgroundJobs();
+
+    long getExecutionMemoryPoolMbSize();
+
+    long getExecutionQueryMemoryLimitMbSize();
+
+    boolean isControlExecutionSinglePassProjectRestrict();
+
+    boolean isControlExecutionBatchScalarAggregation();
+
+    boolean isOptimizerMemoizeJoinOrders();
+
+    int getOptimizerGreedyJoinOrderThreshold();
+
+    boolean isControlExecutionAdaptiveJoins();
+
+    long getControlExecutionAdaptiveJoinOuterRowThreshold();
 }
@@ -36,6 +36,9 @@ public class ConfigurationBuilder {
     public int readResolverThreads;
     public int timestampClientWaitTime;
     public int timestampServerBindPort;
+    public int timestampClientBatchSize;
+    public int transactionGroupCommitMaxSize;
+    public long transactionGroupCommitWindowMicros;
     public int transactionKeepAliveThreads;
     public int transactionLockStripes;
     public long transactionKeepAliveInterval;
@@ -95,6 +98,11 @@ public class ConfigurationBuilder {
     public long fallbackRemoteLatencyRatio;
     public long partitionCacheExpiration;
     public int collectSchemaStatisticsMaximumConcurrent;
+    public double stalePartitionFraction;
+    public long modificationFlushInterval;
+    public boolean autoCollectionEnabled;
+    public long autoCollectionInterval;
+    public int autoCollectionMaxPartitions;
 
     // StorageConfiguration
     public int splitBlockSize;
@@ -136,6 +144,8 @@ public class ConfigurationBuilder {
     public boolean ignoreSavePoints;
     public boolean upgradeForced;
     public int importMaxQuotedColumnLines;
+    public long importControlSplitSize;
+    public int importControlParallelism;
     public int indexBatchSize;
     public int indexLookupBlocks;
     public int kryoPoolSize;
@@ -147,6 +157,9 @@ public class ConfigurationBuilder {
     public boolean olapServerExternal;
     public int olapServerMaxRetries;
     public int olapServerThreads;
+    public double olapServerMaxRunningCost;
+    public int olapServerInteractiveWeight;
+    public int olapServerMaxBackgroundJobs;
     public int olapServerTickLimit;
     public int olapServerSubmitAttempts;
     public int olapServerMemory;
@@ -158,16 +171,26 @@ public class ConfigurationBuilder {
     public String partitionserverJmxPassword;
     public int partitionserverPort;
     public long broadcastRegionMbThreshold;
+    public long broadcastJoinCacheMbSize;
+    public long executionMemoryPoolMbSize;
+    public long executionQueryMemoryLimitMbSize;
     public long broadcastRegionRowThreshold;
     public long broadcastDatasetCostThreshold;
     public int recursiveQueryIterationLimit;
+    public boolean statementPlanStoreEnabled;
     public long optimizerPlanMaximumTimeout;
+    public boolean optimizerMemoizeJoinOrders;
+    public int optimizerGreedyJoinOrderThreshold;
     public long optimizerPlanMinimumTimeout;
     public long determineSparkRowThreshold;
     public String networkBindAddress;
     public String upgradeForcedFrom;
     public String storageFactoryHome;
     public int nestedLoopJoinBatchSize;
+    public int nestedLoopJoinLookupBatchSize;
+    public int nestedLoopJoinLookupBlocks;
+    public long pinControlCacheSize;
+    public long pinControlRefreshInterval;
     public int maxCheckTableErrors;
     public int rollForwardQueueSize;
     public int rollForwardFirstWait;
@@ -196,6 +219,8 @@ public class ConfigurationBuilder {
     public int sparkResultStreamingBatchSize;
     public int sparkResultStreamingBatches;
     public int sparkSlowResultStreamingBatchSize;
+    public boolean sparkResultStreamingColumnar;
+    public boolean sparkResultStreamingCompression;
     public int sparkSlowResultStreamingBatches;
     public int olapCompactionMaximumWait;
     public int olapCompactionMaximumConcurrent;
@@ -210,6 +235,13 @@ public class ConfigurationBuilder {
     public int bulkImportTasksPerRegion;
     public int regionToLoadPerTask;
     public long controlExecutionRowLimit;
+    public long controlExecutionSortBufferSize;
+    public long controlExecutionAggregationBufferSize;
+    public String controlExecutionSpillDirectory;
+    public boolean controlExecutionSinglePassProjectRestrict;
+    public boolean controlExecutionBatchScalarAggregation;
+    public boolean controlExecutionAdaptiveJoins;
+    public long controlExecutionAdaptiveJoinOuterRowThreshold;
     public int olapShufflePartitions;
     public boolean sparkAccumulatorsEnabled;
     public String olapLog4jConfig;
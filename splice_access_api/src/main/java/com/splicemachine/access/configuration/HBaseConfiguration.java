@@ -245,6 +245,9 @@ public class HBaseConfiguration implements ConfigurationDefault {
     public static final String DROPPED_CONGLOMERATES_TABLE_NAME = "DROPPED_CONGLOMERATES";
     public static final String MASTER_SNAPSHOTS_TABLE_NAME = "SPLICE_MASTER_SNAPSHOTS";
     public static final String REPLICA_REPLICATION_PROGRESS_TABLE_NAME = "SPLICE_REPLICATION_PROGRESS";
+    public static final String STATEMENT_PLANS_TABLE_NAME = "SPLICE_STATEMENT_PLANS";
+    // plans stored for an older version of the data dictionary are never read again, they expire after a week
+    public static final int STATEMENT_PLANS_TTL = 7*24*60*60;
     public static final String REPLICATION_PROGRESS_ROWKEY = "ReplicationProgress";
     public static final byte[] REPLICATION_PROGRESS_ROWKEY_BYTES = Bytes.toBytes("ReplicationProgress");
     public static final byte[] REPLICATION_PROGRESS_TSCOL_BYTES = Bytes.toBytes("Timestamp");
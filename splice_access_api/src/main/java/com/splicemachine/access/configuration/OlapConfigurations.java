@@ -54,13 +54,40 @@ public class OlapConfigurations implements ConfigurationDefault {
 
     /**
      * Number of threads used by the Olap server, determines the maximum number of concurrent
-     * Olap jobs
+     * Olap jobs. Jobs which only read or change metadata aren't counted. 0 disables this limit
      *
      * Defaults to 16
      */
     public static final String OLAP_SERVER_THREADS = "splice.olap_server.threads";
     private static final int DEFAULT_OLAP_SERVER_THREADS = 16;
 
+    /**
+     * The maximum total estimated cost of the queries the Olap server runs concurrently. A query which would
+     * exceed it waits for running jobs to complete, unless nothing is running. 0 disables this limit
+     *
+     * Defaults to 0
+     */
+    public static final String OLAP_SERVER_MAX_RUNNING_COST = "splice.olap_server.maxRunningCost";
+    private static final double DEFAULT_OLAP_SERVER_MAX_RUNNING_COST = 0d;
+
+    /**
+     * The number of queries the Olap server starts for each maintenance job (compactions, index population,
+     * statistics collection...) when both are waiting to run
+     *
+     * Defaults to 4
+     */
+    public static final String OLAP_SERVER_INTERACTIVE_WEIGHT = "splice.olap_server.interactiveWeight";
+    private static final int DEFAULT_OLAP_SERVER_INTERACTIVE_WEIGHT = 4;
+
+    /**
+     * The maximum number of maintenance jobs the Olap server runs concurrently. Maintenance jobs are also
+     * deferred while a query waits to run. 0 disables this limit
+     *
+     * Defaults to 0
+     */
+    public static final String OLAP_SERVER_MAX_BACKGROUND_JOBS = "splice.olap_server.maxBackgroundJobs";
+    private static final int DEFAULT_OLAP_SERVER_MAX_BACKGROUND_JOBS = 0;
+
     public static final String OLAP_SERVER_TICK_LIMIT = "splice.olap_server.tickLimit";
     private static final int DEFAULT_OLAP_SERVER_TICK_LIMIT = 120;
 
@@ -190,6 +217,21 @@ public class OlapConfigurations implements ConfigurationDefault {
     public static final String SPARK_SLOW_RESULT_STREAMING_BATCH_SIZE = "spark.slow.result.streaming.batch.size";
     public static final int DEFAULT_SPARK_SLOW_RESULT_STREAMING_BATCH_SIZE = 20;
 
+    /**
+     * Whether Spark tasks stream results to the query client in columnar batches of
+     * spark.result.streaming.batch.size rows rather than row by row.
+     * Defaults to true
+     */
+    public static final String SPARK_RESULT_STREAMING_COLUMNAR = "spark.result.streaming.columnar";
+    public static final boolean DEFAULT_SPARK_RESULT_STREAMING_COLUMNAR = true;
+
+    /**
+     * Whether the columnar batches streamed to the query client are compressed with LZ4.
+     * Defaults to false
+     */
+    public static final String SPARK_RESULT_STREAMING_COMPRESSION = "spark.result.streaming.compression";
+    public static final boolean DEFAULT_SPARK_RESULT_STREAMING_COMPRESSION = false;
+
     @Override
     public void setDefaults(ConfigurationBuilder builder, ConfigurationSource configurationSource) {
         builder.olapServerBindPort  = configurationSource.getInt(OLAP_SERVER_BIND_PORT, DEFAULT_OLAP_SERVER_BIND_PORT);
@@ -199,6 +241,9 @@ public class OlapConfigurations implements ConfigurationDefault {
         builder.olapClientWaitTime  = configurationSource.getInt(OLAP_CLIENT_WAIT_TIME, DEFAULT_OLAP_CLIENT_WAIT_TIME);
         builder.olapClientTickTime  = configurationSource.getInt(OLAP_CLIENT_TICK_TIME, DEFAULT_OLAP_CLIENT_TICK_TIME);
         builder.olapServerThreads = configurationSource.getInt(OLAP_SERVER_THREADS, DEFAULT_OLAP_SERVER_THREADS);
+        builder.olapServerMaxRunningCost = configurationSource.getDouble(OLAP_SERVER_MAX_RUNNING_COST, DEFAULT_OLAP_SERVER_MAX_RUNNING_COST);
+        builder.olapServerInteractiveWeight = configurationSource.getInt(OLAP_SERVER_INTERACTIVE_WEIGHT, DEFAULT_OLAP_SERVER_INTERACTIVE_WEIGHT, 1, Integer.MAX_VALUE);
+        builder.olapServerMaxBackgroundJobs = configurationSource.getInt(OLAP_SERVER_MAX_BACKGROUND_JOBS, DEFAULT_OLAP_SERVER_MAX_BACKGROUND_JOBS);
         builder.olapServerTickLimit = configurationSource.getInt(OLAP_SERVER_TICK_LIMIT,DEFAULT_OLAP_SERVER_TICK_LIMIT);
         builder.olapClientRetries = configurationSource.getInt(OLAP_CLIENT_RETRIES,DEFAULT_OLAP_CLIENT_RETRIES);
         builder.olapServerSubmitAttempts = configurationSource.getInt(OLAP_SERVER_SUBMIT_ATTEMPTS, DEFAULT_OLAP_SERVER_SUBMIT_ATTEMPTS);
@@ -238,6 +283,8 @@ public class OlapConfigurations implements ConfigurationDefault {
         builder.sparkResultStreamingBatchSize = configurationSource.getInt(SPARK_RESULT_STREAMING_BATCH_SIZE, DEFAULT_SPARK_RESULT_STREAMING_BATCH_SIZE);
         builder.sparkSlowResultStreamingBatches = configurationSource.getInt(SPARK_SLOW_RESULT_STREAMING_BATCHES, DEFAULT_SPARK_SLOW_RESULT_STREAMING_BATCHES);
         builder.sparkSlowResultStreamingBatchSize = configurationSource.getInt(SPARK_SLOW_RESULT_STREAMING_BATCH_SIZE, DEFAULT_SPARK_SLOW_RESULT_STREAMING_BATCH_SIZE);
+        builder.sparkResultStreamingColumnar = configurationSource.getBoolean(SPARK_RESULT_STREAMING_COLUMNAR, DEFAULT_SPARK_RESULT_STREAMING_COLUMNAR);
+        builder.sparkResultStreamingCompression = configurationSource.getBoolean(SPARK_RESULT_STREAMING_COMPRESSION, DEFAULT_SPARK_RESULT_STREAMING_COMPRESSION);
 
         builder.olapServerKeepAliveTimeout = configurationSource.getLong(OLAP_SERVER_KEEPALIVE_TIMEOUT, DEFAULT_OLAP_SERVER_KEEPALIVE_TIMEOUT);
         builder.olapServerMode = configurationSource.getString(OLAP_SERVER_MODE, DEFAULT_OLAP_SERVER_MODE);
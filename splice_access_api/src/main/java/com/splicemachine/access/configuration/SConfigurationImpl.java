@@ -132,6 +132,8 @@ public final class SConfigurationImpl implements SConfiguration {
     private final int sparkResultStreamingBatchSize;
     private final int sparkSlowResultStreamingBatches;
     private final int sparkSlowResultStreamingBatchSize;
+    private final boolean sparkResultStreamingColumnar;
+    private final boolean sparkResultStreamingCompression;
     private final int olapCompactionMaximumWait;
     private final int olapCompactionMaximumConcurrent;
     private final double olapCompactionResolutionShare;
@@ -157,6 +159,9 @@ public final class SConfigurationImpl implements SConfiguration {
     private final boolean olapServerExternal;
     private final int olapServerMaxRetries;
     private final int olapServerThreads;
+    private final double olapServerMaxRunningCost;
+    private final int olapServerInteractiveWeight;
+    private final int olapServerMaxBackgroundJobs;
     private final int olapServerTickLimit;
     private final int olapClientRetries;
     private final int olapShufflePartitions;
@@ -184,6 +189,9 @@ public final class SConfigurationImpl implements SConfiguration {
     private final  int readResolverThreads;
     private final  int timestampClientWaitTime;
     private final  int timestampServerBindPort;
+    private final  int timestampClientBatchSize;
+    private final  int transactionGroupCommitMaxSize;
+    private final  long transactionGroupCommitWindowMicros;
     private final  int transactionKeepAliveThreads;
     private final  int transactionLockStripes;
     private final  long transactionKeepAliveInterval;
@@ -198,6 +206,8 @@ public final class SConfigurationImpl implements SConfiguration {
     private final  boolean ignoreSavePoints;
     private final  boolean upgradeForced;
     private final  int importMaxQuotedColumnLines;
+    private final long importControlSplitSize;
+    private final int importControlParallelism;
     private final  int indexBatchSize;
     private final  int indexLookupBlocks;
     private final  int kryoPoolSize;
@@ -207,18 +217,35 @@ public final class SConfigurationImpl implements SConfiguration {
     private final  String partitionserverJmxPassword;
     private final  int partitionserverPort;
     private final  long broadcastRegionMbThreshold;
+    private final long broadcastJoinCacheMbSize;
+    private final long executionMemoryPoolMbSize;
+    private final long executionQueryMemoryLimitMbSize;
     private final  long broadcastRegionRowThreshold;
     private final  long broadcastDatasetCostThreshold;
     private final  long optimizerPlanMaximumTimeout;
+    private final boolean optimizerMemoizeJoinOrders;
+    private final int optimizerGreedyJoinOrderThreshold;
     private final  long optimizerPlanMinimumTimeout;
     private final  long determineSparkRowThreshold;
     private final  String networkBindAddress;
     private final  String upgradeForcedFrom;
     private final String storageFactoryHome;
     private final int nestedLoopJoinBatchSize;
+    private final int nestedLoopJoinLookupBatchSize;
+    private final int nestedLoopJoinLookupBlocks;
+    private final long pinControlCacheSize;
+    private final long pinControlRefreshInterval;
     private final long controlExecutionRowLimit;
+    private final long controlExecutionSortBufferSize;
+    private final long controlExecutionAggregationBufferSize;
+    private final String controlExecutionSpillDirectory;
+    private final boolean controlExecutionSinglePassProjectRestrict;
+    private final boolean controlExecutionBatchScalarAggregation;
+    private final boolean controlExecutionAdaptiveJoins;
+    private final long controlExecutionAdaptiveJoinOuterRowThreshold;
     private final int maxCheckTableErrors;
     private final int recursiveQueryIterationLimit;
+    private final boolean statementPlanStoreEnabled;
     private String metadataRestrictionEnabled;
     private CompilerContext.NativeSparkModeType nativeSparkAggregationMode;
 
@@ -236,6 +263,11 @@ public final class SConfigurationImpl implements SConfiguration {
     private final  long fallbackRemoteLatencyRatio;
     private final  long partitionCacheExpiration;
     private final  int collectSchemaStatisticsMaximumConcurrent;
+    private final double stalePartitionFraction;
+    private final long modificationFlushInterval;
+    private final boolean autoCollectionEnabled;
+    private final long autoCollectionInterval;
+    private final int autoCollectionMaxPartitions;
 
     // StorageConfiguration
     private final  int splitBlockSize;
@@ -732,6 +764,10 @@ public final class SConfigurationImpl implements SConfiguration {
         return timestampServerBindPort;
     }
     @Override
+    public int getTimestampClientBatchSize() {
+        return timestampClientBatchSize;
+    }
+    @Override
     public int getTransactionKeepAliveThreads() {
         return transactionKeepAliveThreads;
     }
@@ -949,6 +985,9 @@ public final class SConfigurationImpl implements SConfiguration {
         readResolverThreads = builder.readResolverThreads;
         timestampClientWaitTime = builder.timestampClientWaitTime;
         timestampServerBindPort = builder.timestampServerBindPort;
+        timestampClientBatchSize = builder.timestampClientBatchSize;
+        transactionGroupCommitMaxSize = builder.transactionGroupCommitMaxSize;
+        transactionGroupCommitWindowMicros = builder.transactionGroupCommitWindowMicros;
         transactionKeepAliveThreads = builder.transactionKeepAliveThreads;
         transactionLockStripes = builder.transactionLockStripes;
         transactionKeepAliveInterval = builder.transactionKeepAliveInterval;
@@ -1030,6 +1069,8 @@ public final class SConfigurationImpl implements SConfiguration {
         ignoreSavePoints = builder.ignoreSavePoints;
         upgradeForced = builder.upgradeForced;
         importMaxQuotedColumnLines = builder.importMaxQuotedColumnLines;
+        importControlSplitSize = builder.importControlSplitSize;
+        importControlParallelism = builder.importControlParallelism;
         indexBatchSize = builder.indexBatchSize;
         indexLookupBlocks = builder.indexLookupBlocks;
         kryoPoolSize = builder.kryoPoolSize;
@@ -1039,15 +1080,26 @@ public final class SConfigurationImpl implements SConfiguration {
         partitionserverJmxPassword = builder.partitionserverJmxPassword;
         partitionserverPort = builder.partitionserverPort;
         broadcastRegionMbThreshold = builder.broadcastRegionMbThreshold;
+        broadcastJoinCacheMbSize = builder.broadcastJoinCacheMbSize;
+        executionMemoryPoolMbSize = builder.executionMemoryPoolMbSize;
+        executionQueryMemoryLimitMbSize = builder.executionQueryMemoryLimitMbSize;
         broadcastRegionRowThreshold = builder.broadcastRegionRowThreshold;
         broadcastDatasetCostThreshold = builder.broadcastDatasetCostThreshold;
         recursiveQueryIterationLimit = builder.recursiveQueryIterationLimit;
+        statementPlanStoreEnabled = builder.statementPlanStoreEnabled;
         optimizerPlanMaximumTimeout = builder.optimizerPlanMaximumTimeout;
+        optimizerMemoizeJoinOrders = builder.optimizerMemoizeJoinOrders;
+        optimizerGreedyJoinOrderThreshold = builder.optimizerGreedyJoinOrderThreshold;
         optimizerPlanMinimumTimeout = builder.optimizerPlanMinimumTimeout;
         determineSparkRowThreshold = builder.determineSparkRowThreshold;
         networkBindAddress = builder.networkBindAddress;
         upgradeForcedFrom = builder.upgradeForcedFrom;
         collectSchemaStatisticsMaximumConcurrent = builder.collectSchemaStatisticsMaximumConcurrent;
+        stalePartitionFraction = builder.stalePartitionFraction;
+        modificationFlushInterval = builder.modificationFlushInterval;
+        autoCollectionEnabled = builder.autoCollectionEnabled;
+        autoCollectionInterval = builder.autoCollectionInterval;
+        autoCollectionMaxPartitions = builder.autoCollectionMaxPartitions;
         coreWriterThreads = builder.coreWriterThreads;
         maxDependentWriteThreads = builder.maxDependentWriteThreads;
         maxIndependentWriteThreads = builder.maxIndependentWriteThreads;
@@ -1071,6 +1123,9 @@ public final class SConfigurationImpl implements SConfiguration {
         olapServerExternal = builder.olapServerExternal;
         olapServerMaxRetries = builder.olapServerMaxRetries;
         olapServerThreads = builder.olapServerThreads;
+        olapServerMaxRunningCost = builder.olapServerMaxRunningCost;
+        olapServerInteractiveWeight = builder.olapServerInteractiveWeight;
+        olapServerMaxBackgroundJobs = builder.olapServerMaxBackgroundJobs;
         olapServerTickLimit = builder.olapServerTickLimit;
         olapServerSubmitAttempts = builder.olapServerSubmitAttempts;
         olapServerMemory = builder.olapServerMemory;
@@ -1085,6 +1140,8 @@ public final class SConfigurationImpl implements SConfiguration {
         sparkResultStreamingBatchSize = builder.sparkResultStreamingBatchSize;
         sparkSlowResultStreamingBatches = builder.sparkSlowResultStreamingBatches;
         sparkSlowResultStreamingBatchSize = builder.sparkSlowResultStreamingBatchSize;
+        sparkResultStreamingColumnar = builder.sparkResultStreamingColumnar;
+        sparkResultStreamingCompression = builder.sparkResultStreamingCompression;
         olapCompactionMaximumWait = builder.olapCompactionMaximumWait;
         olapCompactionMaximumConcurrent = builder.olapCompactionMaximumConcurrent;
         olapCompactionResolutionShare = builder.olapCompactionResolutionShare;
@@ -1102,7 +1159,18 @@ public final class SConfigurationImpl implements SConfiguration {
         resolutionOnFlushes = builder.resolutionOnFlushes;
         storageFactoryHome = builder.storageFactoryHome;
         nestedLoopJoinBatchSize = builder.nestedLoopJoinBatchSize;
+        nestedLoopJoinLookupBatchSize = builder.nestedLoopJoinLookupBatchSize;
+        nestedLoopJoinLookupBlocks = builder.nestedLoopJoinLookupBlocks;
+        pinControlCacheSize = builder.pinControlCacheSize;
+        pinControlRefreshInterval = builder.pinControlRefreshInterval;
         controlExecutionRowLimit = builder.controlExecutionRowLimit;
+        controlExecutionSortBufferSize = builder.controlExecutionSortBufferSize;
+        controlExecutionAggregationBufferSize = builder.controlExecutionAggregationBufferSize;
+        controlExecutionSpillDirectory = builder.controlExecutionSpillDirectory;
+        controlExecutionSinglePassProjectRestrict = builder.controlExecutionSinglePassProjectRestrict;
+        controlExecutionBatchScalarAggregation = builder.controlExecutionBatchScalarAggregation;
+        controlExecutionAdaptiveJoins = builder.controlExecutionAdaptiveJoins;
+        controlExecutionAdaptiveJoinOuterRowThreshold = builder.controlExecutionAdaptiveJoinOuterRowThreshold;
         bulkImportSampleFraction = builder.bulkImportSampleFraction;
         bulkImportTasksPerRegion = builder.bulkImportTasksPerRegion;
         regionToLoadPerTask = builder.regionToLoadPerTask;
@@ -1237,4 +1305,159 @@ public final class SConfigurationImpl implements SConfiguration {
     public CompilerContext.NativeSparkModeType getNativeSparkAggregationMode() {
         return nativeSparkAggregationMode;
     }
+
+    @Override
+    public long getControlExecutionSortBufferSize() {
+        return controlExecutionSortBufferSize;
+    }
+
+    @Override
+    public String getControlExecutionSpillDirectory() {
+        return controlExecutionSpillDirectory;
+    }
+
+    @Override
+    public long getControlExecutionAggregationBufferSize() {
+        return controlExecutionAggregationBufferSize;
+    }
+
+    @Override
+    public long getBroadcastJoinCacheMbSize() {
+        return broadcastJoinCacheMbSize;
+    }
+
+    @Override
+    public int getTransactionGroupCommitMaxSize() {
+        return transactionGroupCommitMaxSize;
+    }
+
+    @Override
+    public long getTransactionGroupCommitWindowMicros() {
+        return transactionGroupCommitWindowMicros;
+    }
+
+    @Override
+    public boolean isStatementPlanStoreEnabled() {
+        return statementPlanStoreEnabled;
+    }
+
+    @Override
+    public double getStalePartitionFraction() {
+        return stalePartitionFraction;
+    }
+
+    @Override
+    public long getModificationFlushInterval() {
+        return modificationFlushInterval;
+    }
+
+    @Override
+    public boolean isAutoCollectionEnabled() {
+        return autoCollectionEnabled;
+    }
+
+    @Override
+    public long getAutoCollectionInterval() {
+        return autoCollectionInterval;
+    }
+
+    @Override
+    public int getAutoCollectionMaxPartitions() {
+        return autoCollectionMaxPartitions;
+    }
+
+    @Override
+    public long getImportControlSplitSize() {
+        return importControlSplitSize;
+    }
+
+    @Override
+    public int getImportControlParallelism() {
+        return importControlParallelism;
+    }
+
+    @Override
+    public int getNestedLoopJoinLookupBatchSize() {
+        return nestedLoopJoinLookupBatchSize;
+    }
+
+    @Override
+    public int getNestedLoopJoinLookupBlocks() {
+        return nestedLoopJoinLookupBlocks;
+    }
+
+    @Override
+    public long getPinControlCacheSize() {
+        return pinControlCacheSize;
+    }
+
+    @Override
+    public long getPinControlRefreshInterval() {
+        return pinControlRefreshInterval;
+    }
+
+    @Override
+    public boolean isSparkResultStreamingColumnar() {
+        return sparkResultStreamingColumnar;
+    }
+
+    @Override
+    public boolean isSparkResultStreamingCompression() {
+        return sparkResultStreamingCompression;
+    }
+
+    @Override
+    public double getOlapServerMaxRunningCost() {
+        return olapServerMaxRunningCost;
+    }
+
+    @Override
+    public int getOlapServerInteractiveWeight() {
+        return olapServerInteractiveWeight;
+    }
+
+    @Override
+    public int getOlapServerMaxBackgroundJobs() {
+        return olapServerMaxBackgroundJobs;
+    }
+
+    @Override
+    public long getExecutionMemoryPoolMbSize() {
+        return executionMemoryPoolMbSize;
+    }
+
+    @Override
+    public long getExecutionQueryMemoryLimitMbSize() {
+        return executionQueryMemoryLimitMbSize;
+    }
+
+    @Override
+    public boolean isControlExecutionSinglePassProjectRestrict() {
+        return controlExecutionSinglePassProjectRestrict;
+    }
+
+    @Override
+    public boolean isControlExecutionBatchScalarAggregation() {
+        return controlExecutionBatchScalarAggregation;
+    }
+
+    @Override
+    public boolean isOptimizerMemoizeJoinOrders() {
+        return optimizerMemoizeJoinOrders;
+    }
+
+    @Override
+    public int getOptimizerGreedyJoinOrderThreshold() {
+        return optimizerGreedyJoinOrderThreshold;
+    }
+
+    @Override
+    public boolean isControlExecutionAdaptiveJoins() {
+        return controlExecutionAdaptiveJoins;
+    }
+
+    @Override
+    public long getControlExecutionAdaptiveJoinOuterRowThreshold() {
+        return controlExecutionAdaptiveJoinOuterRowThreshold;
+    }
 }
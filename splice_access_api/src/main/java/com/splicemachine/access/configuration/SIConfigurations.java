@@ -114,6 +114,41 @@ public class SIConfigurations implements ConfigurationDefault {
     public static final String TIMESTAMP_SERVER_BIND_PORT = "splice.timestamp_server.port";
     private static final int DEFAULT_TIMESTAMP_SERVER_BIND_PORT = 60012;
 
+    /**
+     * The maximum number of concurrent "next timestamp" callers the timestamp client coalesces
+     * into a single range request to the Timestamp Server. Callers that arrive while a request is
+     * in flight wait for it to complete and are then served together by one round trip, each one
+     * receiving a distinct timestamp from a contiguous range.
+     *
+     * Values lower than 2 disable coalescing (one round trip per timestamp). All servers in the cluster
+     * must understand range requests before this is enabled.
+     * Defaults to 1 (disabled)
+     */
+    public static final String TIMESTAMP_CLIENT_BATCH_SIZE = "splice.timestamp_server.clientBatchSize";
+    private static final int DEFAULT_TIMESTAMP_CLIENT_BATCH_SIZE = 1;
+
+    /**
+     * The maximum number of transaction commits that a transaction table region groups together. Commits in a
+     * group get their commit timestamps from a single timestamp request and are recorded with a single batched
+     * write to the region, then acknowledged together. Commits arriving while a group is being written form
+     * the next group.
+     *
+     * Values lower than 2 disable group commit. Grouping is most effective together with
+     * splice.timestamp_server.clientBatchSize, which lets a group's timestamps be fetched in one round trip.
+     * Defaults to 1 (disabled)
+     */
+    public static final String TRANSACTION_GROUP_COMMIT_MAX_SIZE = "splice.txn.groupCommit.maxSize";
+    private static final int DEFAULT_TRANSACTION_GROUP_COMMIT_MAX_SIZE = 1;
+
+    /**
+     * The number of microseconds a group commit waits for more commits to join before it is written, unless
+     * it is already full. With 0, a group only holds the commits which arrived while the previous group was
+     * being written, so an isolated commit is never delayed.
+     * Defaults to 0
+     */
+    public static final String TRANSACTION_GROUP_COMMIT_WINDOW_MICROS = "splice.txn.groupCommit.windowMicros";
+    private static final long DEFAULT_TRANSACTION_GROUP_COMMIT_WINDOW_MICROS = 0L;
+
     public static final String ACTIVE_TRANSACTION_MAX_CACHE_SIZE="splice.txn.activeMaxCacheSize";
     public static final int DEFAULT_ACTIVE_TRANSACTION_MAX_CACHE_SIZE = 1<<12;
 
@@ -163,6 +198,9 @@ public class SIConfigurations implements ConfigurationDefault {
 //        builder.readResolverQueueSize  = configurationSource.getInt(READ_RESOLVER_QUEUE_SIZE, DEFAULT_READ_RESOLVER_QUEUE_SIZE);
         builder.timestampClientWaitTime  = configurationSource.getInt(TIMESTAMP_CLIENT_WAIT_TIME, DEFAULT_TIMESTAMP_CLIENT_WAIT_TIME);
         builder.timestampServerBindPort  = configurationSource.getInt(TIMESTAMP_SERVER_BIND_PORT, DEFAULT_TIMESTAMP_SERVER_BIND_PORT);
+        builder.timestampClientBatchSize  = configurationSource.getInt(TIMESTAMP_CLIENT_BATCH_SIZE, DEFAULT_TIMESTAMP_CLIENT_BATCH_SIZE);
+        builder.transactionGroupCommitMaxSize = configurationSource.getInt(TRANSACTION_GROUP_COMMIT_MAX_SIZE, DEFAULT_TRANSACTION_GROUP_COMMIT_MAX_SIZE);
+        builder.transactionGroupCommitWindowMicros = configurationSource.getLong(TRANSACTION_GROUP_COMMIT_WINDOW_MICROS, DEFAULT_TRANSACTION_GROUP_COMMIT_WINDOW_MICROS);
         builder.activeTransactionMaxCacheSize = configurationSource.getInt(ACTIVE_TRANSACTION_MAX_CACHE_SIZE, DEFAULT_ACTIVE_TRANSACTION_MAX_CACHE_SIZE);
         builder.activeTransactionInitialCacheSize = configurationSource.getInt(ACTIVE_TRANSACTION_INITIAL_CACHE_SIZE, DEFAULT_ACTIVE_TRANSACTION_INITIAL_CACHE_SIZE);
 
@@ -64,6 +64,21 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String IMPORT_MAX_QUOTED_COLUMN_LINES="splice.import.maxQuotedColumnLines";
     private static final int DEFAULT_IMPORT_MAX_QUOTED_COLUMN_LINES = 50000;
 
+    /**
+     * Uncompressed files larger than this are split into ranges of about this many bytes, which the control
+     * side imports in parallel.
+     * Defaults to 64 MB
+     */
+    public static final String IMPORT_CONTROL_SPLIT_SIZE="splice.import.control.splitSize";
+    private static final long DEFAULT_IMPORT_CONTROL_SPLIT_SIZE = 64*1024*1024L;
+
+    /**
+     * The maximum number of ranges of a file the control side imports at the same time.
+     * Defaults to the number of processors
+     */
+    public static final String IMPORT_CONTROL_PARALLELISM="splice.import.control.parallelism";
+    private static final int DEFAULT_IMPORT_CONTROL_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
     public static final String CONTROL_SIDE_COST_THRESHOLD = "splice.dataset.control.costThreshold";
     private static final double DEFAULT_CONTROL_SIDE_COST_THRESHOLD = 1000000D;
 
@@ -108,6 +123,31 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String BROADCAST_REGION_ROW_THRESHOLD = "splice.optimizer.broadcastRegionRowThreshold";
     private static final int DEFAULT_BROADCAST_REGION_ROW_THRESHOLD = 50000;
 
+    /**
+     * Maximum amount of memory (in megabytes) held by the broadcast join tables cached on a server.
+     * Tables built by concurrent executions of the same broadcast join are shared while they fit in this budget.
+     * Defaults to 1024 MB
+     */
+    public static final String BROADCAST_JOIN_CACHE_MB_SIZE = "splice.execution.broadcastJoinCacheMBSize";
+    private static final long DEFAULT_BROADCAST_JOIN_CACHE_MB_SIZE = 1024;
+
+    /**
+     * Maximum amount of memory (in megabytes) the operation buffers of all the queries running on a server may
+     * reserve, including the broadcast join tables cached. A query denied memory spills its buffers to local disk,
+     * or is resubmitted to Spark.
+     * Defaults to a quarter of the maximum heap size
+     */
+    public static final String EXECUTION_MEMORY_POOL_MB_SIZE = "splice.execution.memoryPoolMBSize";
+    private static final long DEFAULT_EXECUTION_MEMORY_POOL_MB_SIZE = Runtime.getRuntime().maxMemory() / 4 / (1024 * 1024);
+
+    /**
+     * Maximum amount of memory (in megabytes) the operation buffers of a single query may reserve. 0 means no limit
+     * other than the memory pool of the server.
+     * Defaults to 512 MB
+     */
+    public static final String EXECUTION_QUERY_MEMORY_LIMIT_MB_SIZE = "splice.execution.queryMemoryLimitMBSize";
+    private static final long DEFAULT_EXECUTION_QUERY_MEMORY_LIMIT_MB_SIZE = 512;
+
     /**
      * Threshold in cost for the broadcast Dataset implementation.  Default is 10000 (~ 10s, more than that and the subtree
      * is executed in parallel in Spark)
@@ -144,6 +184,24 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String OPTIMIZER_PLAN_MAXIMUM_TIMEOUT = "splice.optimizer.maxPlanTimeout";
     private static final long DEFAULT_OPTIMIZER_PLAN_MAXIMUM_TIMEOUT = Long.MAX_VALUE;
 
+    /**
+     * Whether the optimizer remembers the cheapest plan found for each set of tables joined at the start of a join
+     * order, with the row ordering and the partitioning it produces, and stops extending a join order whose start is
+     * no cheaper than that plan on any count: local and remote costs, rows, open and close costs and size.
+     * Defaults to true
+     */
+    public static final String OPTIMIZER_MEMOIZE_JOIN_ORDERS = "splice.optimizer.memoizeJoinOrders";
+    private static final boolean DEFAULT_OPTIMIZER_MEMOIZE_JOIN_ORDERS = true;
+
+    /**
+     * Number of tables in a query block above which, once a complete join order has been found, the optimizer only
+     * extends a join order whose start is cheaper than any other join order of the same length found so far. This
+     * bounds the search for queries joining many tables instead of relying on the plan timeout. 0 disables it.
+     * Defaults to 12
+     */
+    public static final String OPTIMIZER_GREEDY_JOIN_ORDER_THRESHOLD = "splice.optimizer.greedyJoinOrderThreshold";
+    private static final int DEFAULT_OPTIMIZER_GREEDY_JOIN_ORDER_THRESHOLD = 12;
+
     /**
      * Threshold in rows for using spark.  Default is 20000
      */
@@ -219,9 +277,96 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String NESTEDLOOPJOIN_BATCH_SIZE = "splice.nestedLoopJoin.batchSize";
     private static final int DEFAULT_NESTEDLOOPJOIN_BATCH_SIZE = 25;
 
+    /**
+     * The number of outer rows of a nested loop join whose inner rows are looked up together, when the inner side
+     * looks up a single row by its primary key. 1 or less turns batched lookups off.
+     * Defaults to 500
+     */
+    public static final String NESTEDLOOPJOIN_LOOKUP_BATCH_SIZE = "splice.nestedLoopJoin.lookupBatchSize";
+    private static final int DEFAULT_NESTEDLOOPJOIN_LOOKUP_BATCH_SIZE = 500;
+
+    /**
+     * The number of batches of lookups of a nested loop join which are in flight at the same time.
+     * Defaults to 3
+     */
+    public static final String NESTEDLOOPJOIN_LOOKUP_BLOCKS = "splice.nestedLoopJoin.numConcurrentLookups";
+    private static final int DEFAULT_NESTEDLOOPJOIN_LOOKUP_BLOCKS = 3;
+
+    /**
+     * The maximum number of bytes of pinned tables each server keeps off-heap, in columnar blocks, for the queries
+     * executed in control. Tables which don't fit are read from storage. 0 turns the control side pin cache off.
+     * Defaults to 1 GB
+     */
+    public static final String PIN_CONTROL_CACHE_SIZE = "splice.pin.control.cacheSize";
+    private static final long DEFAULT_PIN_CONTROL_CACHE_SIZE = 1024*1024*1024L;
+
+    /**
+     * The minimum time, in milliseconds, between two refreshes of a pinned table kept by the control side pin cache.
+     * A refresh only reads the rows written since the previous one.
+     * Defaults to 60000 (1 minute)
+     */
+    public static final String PIN_CONTROL_REFRESH_INTERVAL = "splice.pin.control.refreshInterval";
+    private static final long DEFAULT_PIN_CONTROL_REFRESH_INTERVAL = 60000L;
+
     public static final String CONTROL_EXECUTION_ROWS_LIMIT = "splice.controlExecution.rowsLimit";
     private static final int DEFAULT_CONTROL_EXECUTION_ROWS_LIMIT = 1000000;
 
+    /**
+     * The maximum amount of memory (in bytes) a control-side sort keeps on the heap. When the rows
+     * being sorted exceed it, sorted runs are spilled to local disk and merged back.
+     * Defaults to 64 MB
+     */
+    public static final String CONTROL_EXECUTION_SORT_BUFFER_SIZE = "splice.controlExecution.sortBufferSize";
+    private static final long DEFAULT_CONTROL_EXECUTION_SORT_BUFFER_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The maximum amount of memory (in bytes) a control-side hash aggregation (group by, distinct) keeps
+     * on the heap. When exceeded, hash partitions are spilled to local disk and re-aggregated separately.
+     * Defaults to 64 MB
+     */
+    public static final String CONTROL_EXECUTION_AGGREGATION_BUFFER_SIZE = "splice.controlExecution.aggregationBufferSize";
+    private static final long DEFAULT_CONTROL_EXECUTION_AGGREGATION_BUFFER_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Local directory where control-side operations spill their temporary files.
+     * Defaults to the JVM temporary directory
+     */
+    public static final String CONTROL_EXECUTION_SPILL_DIRECTORY = "splice.controlExecution.spillDirectory";
+    private static final String DEFAULT_CONTROL_EXECUTION_SPILL_DIRECTORY = System.getProperty("java.io.tmpdir");
+
+    /**
+     * Whether control-side restrictions and projections are evaluated in a single pass over the rows of their
+     * source, rather than as separate filter and map steps.
+     * Defaults to true
+     */
+    public static final String CONTROL_EXECUTION_SINGLE_PASS_PROJECT_RESTRICT = "splice.controlExecution.singlePassProjectRestrict";
+    private static final boolean DEFAULT_CONTROL_EXECUTION_SINGLE_PASS_PROJECT_RESTRICT = true;
+
+    /**
+     * Whether control-side scalar aggregations over a table scan read the primitive columns of the scan in
+     * batches, filtering them with a selection vector, rather than one row at a time.
+     * Defaults to true
+     */
+    public static final String CONTROL_EXECUTION_BATCH_SCALAR_AGGREGATION = "splice.controlExecution.batchScalarAggregation";
+    private static final boolean DEFAULT_CONTROL_EXECUTION_BATCH_SCALAR_AGGREGATION = true;
+
+    /**
+     * Whether control-side joins react when their inputs are far larger than estimated: the query is resubmitted
+     * to Spark and the rows observed are fed back to the optimizer, which picks another join strategy when the
+     * statement is recompiled.
+     * Defaults to true
+     */
+    public static final String CONTROL_EXECUTION_ADAPTIVE_JOINS = "splice.controlExecution.adaptiveJoins";
+    private static final boolean DEFAULT_CONTROL_EXECUTION_ADAPTIVE_JOINS = true;
+
+    /**
+     * The number of outer rows above which a control-side nested loop join whose outer rows were underestimated
+     * adapts. Broadcast joins adapt when their build side goes over splice.optimizer.broadcastRegionRowThreshold.
+     * Defaults to 100000
+     */
+    public static final String CONTROL_EXECUTION_ADAPTIVE_JOIN_OUTER_ROW_THRESHOLD = "splice.controlExecution.adaptiveJoinOuterRowThreshold";
+    private static final long DEFAULT_CONTROL_EXECUTION_ADAPTIVE_JOIN_OUTER_ROW_THRESHOLD = 100000L;
+
     public static final String MAX_CHECK_TABLE_ERRORS="splice.max.checktable.error";
     private static final int DEFAULT_MAX_CHECK_TABLE_ERRORS = 1000;
 
@@ -231,6 +376,16 @@ public class SQLConfiguration implements ConfigurationDefault {
     public static final String RECURSIVE_QUERY_ITERATION_LIMIT = "splice.execution.recursiveQueryIterationLimit";
     public static final int DEFAULT_RECURSIVE_QUERY_ITERATION_LIMIT = 20;
 
+    /**
+     * Persist compiled statements in a plan store shared by all servers, so that a statement compiled on one
+     * server (or before a restart) does not have to be compiled again. The plans are keyed by a version of the
+     * data dictionary which is advanced by every DDL operation.
+     *
+     * Defaults to false
+     */
+    public static final String STATEMENT_PLAN_STORE_ENABLED = "splice.sql.statementPlanStore.enabled";
+    public static final boolean DEFAULT_STATEMENT_PLAN_STORE_ENABLED = false;
+
     public static final String METADATA_RESTRICTION_ENABLED = "splice.metadataRestrictionEnabled";
     public static final String METADATA_RESTRICTION_DISABLED = "DISABLED";
     public static final String METADATA_RESTRICTION_NATIVE = "NATIVE";
@@ -269,12 +424,25 @@ public class SQLConfiguration implements ConfigurationDefault {
         builder.indexBatchSize = configurationSource.getInt(INDEX_BATCH_SIZE, DEFAULT_INDEX_BATCH_SIZE);
         builder.indexLookupBlocks = configurationSource.getInt(INDEX_LOOKUP_BLOCKS, DEFAULT_INDEX_LOOKUP_BLOCKS);
         builder.importMaxQuotedColumnLines = configurationSource.getInt(IMPORT_MAX_QUOTED_COLUMN_LINES, DEFAULT_IMPORT_MAX_QUOTED_COLUMN_LINES);
+        builder.importControlSplitSize = configurationSource.getLong(IMPORT_CONTROL_SPLIT_SIZE, DEFAULT_IMPORT_CONTROL_SPLIT_SIZE);
+        builder.importControlParallelism = configurationSource.getInt(IMPORT_CONTROL_PARALLELISM, DEFAULT_IMPORT_CONTROL_PARALLELISM);
         builder.partitionserverJmxPort = configurationSource.getInt(PARTITIONSERVER_JMX_PORT, DEFAULT_PARTITIONSERVER_JMX_PORT);
         builder.partitionserverJmxUser = configurationSource.getString(PARTITIONSERVER_JMX_USER, DEFAULT_PARTITIONSERVER_JMX_USER);
         builder.partitionserverJmxPassword = configurationSource.getString(PARTITIONSERVER_JMX_PASSWORD, DEFAULT_PARTITIONSERVER_JMX_PASSWORD);
         builder.partitionserverPort = configurationSource.getInt(PARTITIONSERVER_PORT, DEFAULT_PARTITIONSERVER_PORT);
         builder.nestedLoopJoinBatchSize = configurationSource.getInt(NESTEDLOOPJOIN_BATCH_SIZE, DEFAULT_NESTEDLOOPJOIN_BATCH_SIZE);
+        builder.nestedLoopJoinLookupBatchSize = configurationSource.getInt(NESTEDLOOPJOIN_LOOKUP_BATCH_SIZE, DEFAULT_NESTEDLOOPJOIN_LOOKUP_BATCH_SIZE);
+        builder.nestedLoopJoinLookupBlocks = configurationSource.getInt(NESTEDLOOPJOIN_LOOKUP_BLOCKS, DEFAULT_NESTEDLOOPJOIN_LOOKUP_BLOCKS);
+        builder.pinControlCacheSize = configurationSource.getLong(PIN_CONTROL_CACHE_SIZE, DEFAULT_PIN_CONTROL_CACHE_SIZE);
+        builder.pinControlRefreshInterval = configurationSource.getLong(PIN_CONTROL_REFRESH_INTERVAL, DEFAULT_PIN_CONTROL_REFRESH_INTERVAL);
         builder.controlExecutionRowLimit = configurationSource.getLong(CONTROL_EXECUTION_ROWS_LIMIT, DEFAULT_CONTROL_EXECUTION_ROWS_LIMIT);
+        builder.controlExecutionSortBufferSize = configurationSource.getLong(CONTROL_EXECUTION_SORT_BUFFER_SIZE, DEFAULT_CONTROL_EXECUTION_SORT_BUFFER_SIZE);
+        builder.controlExecutionAggregationBufferSize = configurationSource.getLong(CONTROL_EXECUTION_AGGREGATION_BUFFER_SIZE, DEFAULT_CONTROL_EXECUTION_AGGREGATION_BUFFER_SIZE);
+        builder.controlExecutionSpillDirectory = configurationSource.getString(CONTROL_EXECUTION_SPILL_DIRECTORY, DEFAULT_CONTROL_EXECUTION_SPILL_DIRECTORY);
+        builder.controlExecutionSinglePassProjectRestrict = configurationSource.getBoolean(CONTROL_EXECUTION_SINGLE_PASS_PROJECT_RESTRICT, DEFAULT_CONTROL_EXECUTION_SINGLE_PASS_PROJECT_RESTRICT);
+        builder.controlExecutionBatchScalarAggregation = configurationSource.getBoolean(CONTROL_EXECUTION_BATCH_SCALAR_AGGREGATION, DEFAULT_CONTROL_EXECUTION_BATCH_SCALAR_AGGREGATION);
+        builder.controlExecutionAdaptiveJoins = configurationSource.getBoolean(CONTROL_EXECUTION_ADAPTIVE_JOINS, DEFAULT_CONTROL_EXECUTION_ADAPTIVE_JOINS);
+        builder.controlExecutionAdaptiveJoinOuterRowThreshold = configurationSource.getLong(CONTROL_EXECUTION_ADAPTIVE_JOIN_OUTER_ROW_THRESHOLD, DEFAULT_CONTROL_EXECUTION_ADAPTIVE_JOIN_OUTER_ROW_THRESHOLD);
 
         // Where to place jar files...
         String defaultStorageFactoryHome;
@@ -284,12 +452,18 @@ public class SQLConfiguration implements ConfigurationDefault {
             defaultStorageFactoryHome = configurationSource.getString("hbase.rootdir",System.getProperty("hbase.rootdir"));
         builder.storageFactoryHome = configurationSource.getString(STORAGE_FACTORY_HOME,defaultStorageFactoryHome);
         builder.optimizerPlanMaximumTimeout = configurationSource.getLong(OPTIMIZER_PLAN_MAXIMUM_TIMEOUT, DEFAULT_OPTIMIZER_PLAN_MAXIMUM_TIMEOUT);
+        builder.optimizerMemoizeJoinOrders = configurationSource.getBoolean(OPTIMIZER_MEMOIZE_JOIN_ORDERS, DEFAULT_OPTIMIZER_MEMOIZE_JOIN_ORDERS);
+        builder.optimizerGreedyJoinOrderThreshold = configurationSource.getInt(OPTIMIZER_GREEDY_JOIN_ORDER_THRESHOLD, DEFAULT_OPTIMIZER_GREEDY_JOIN_ORDER_THRESHOLD);
         builder.optimizerPlanMinimumTimeout = configurationSource.getLong(OPTIMIZER_PLAN_MINIMUM_TIMEOUT, DEFAULT_OPTIMIZER_PLAN_MINIMUM_TIMEOUT);
         builder.determineSparkRowThreshold = configurationSource.getLong(DETERMINE_SPARK_ROW_THRESHOLD, DEFAULT_DETERMINE_SPARK_ROW_THRESHOLD);
         builder.broadcastRegionMbThreshold = configurationSource.getLong(BROADCAST_REGION_MB_THRESHOLD, DEFAULT_BROADCAST_REGION_MB_THRESHOLD);
+        builder.broadcastJoinCacheMbSize = configurationSource.getLong(BROADCAST_JOIN_CACHE_MB_SIZE, DEFAULT_BROADCAST_JOIN_CACHE_MB_SIZE);
+        builder.executionMemoryPoolMbSize = configurationSource.getLong(EXECUTION_MEMORY_POOL_MB_SIZE, DEFAULT_EXECUTION_MEMORY_POOL_MB_SIZE);
+        builder.executionQueryMemoryLimitMbSize = configurationSource.getLong(EXECUTION_QUERY_MEMORY_LIMIT_MB_SIZE, DEFAULT_EXECUTION_QUERY_MEMORY_LIMIT_MB_SIZE);
         builder.broadcastRegionRowThreshold = configurationSource.getLong(BROADCAST_REGION_ROW_THRESHOLD, DEFAULT_BROADCAST_REGION_ROW_THRESHOLD);
         builder.broadcastDatasetCostThreshold = configurationSource.getLong(BROADCAST_DATASET_COST_THRESHOLD, DEFAULT_BROADCAST_DATASET_COST_THRESHOLD);
         builder.recursiveQueryIterationLimit = configurationSource.getInt(RECURSIVE_QUERY_ITERATION_LIMIT, DEFAULT_RECURSIVE_QUERY_ITERATION_LIMIT);
+        builder.statementPlanStoreEnabled = configurationSource.getBoolean(STATEMENT_PLAN_STORE_ENABLED, DEFAULT_STATEMENT_PLAN_STORE_ENABLED);
         builder.metadataRestrictionEnabled = configurationSource.getString(METADATA_RESTRICTION_ENABLED, DEFAULT_METADATA_RESTRICTION_ENABLED);
         builder.rangerUserSyncCaseConversion = configurationSource.getString(RANGER_USERSYNC_CASECONVERSION, RANGER_USERSYNC_CASECONVERSION_NONE);
 
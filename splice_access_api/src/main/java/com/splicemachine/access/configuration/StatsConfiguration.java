@@ -128,6 +128,44 @@ public class StatsConfiguration implements ConfigurationDefault {
     public static final String COLLECT_SCHEMA_STATISTICS_MAXIMUM_CONCURRENT = "splice.statistics.collectSchemaStatisticsMaximumConcurrent";
     public static final int DEFAULT_COLLECT_SCHEMA_STATISTICS_MAXIMUM_CONCURRENT = 100;
 
+    /**
+     * Collecting only stale statistics recollects the regions in which the number of rows written since their
+     * statistics were collected exceeds this fraction of their row count.
+     * Defaults to 0.1
+     */
+    public static final String STALE_PARTITION_FRACTION = "splice.statistics.incremental.staleFraction";
+    public static final double DEFAULT_STALE_PARTITION_FRACTION = .1d;
+
+    /**
+     * The interval, in milliseconds, at which each server adds the number of rows written to its regions to the
+     * shared counters used to find stale statistics.
+     * Defaults to 10 seconds
+     */
+    public static final String MODIFICATION_FLUSH_INTERVAL = "splice.statistics.modificationFlushInterval";
+    public static final long DEFAULT_MODIFICATION_FLUSH_INTERVAL = 10*1000L;
+
+    /**
+     * Whether the master recollects stale statistics in the background.
+     * Defaults to false
+     */
+    public static final String AUTO_COLLECTION_ENABLED = "splice.statistics.autoCollection.enabled";
+    public static final boolean DEFAULT_AUTO_COLLECTION_ENABLED = false;
+
+    /**
+     * The interval, in milliseconds, between two rounds of background statistics collection.
+     * Defaults to 15 minutes
+     */
+    public static final String AUTO_COLLECTION_INTERVAL = "splice.statistics.autoCollection.interval";
+    public static final long DEFAULT_AUTO_COLLECTION_INTERVAL = 15*60*1000L;
+
+    /**
+     * The number of regions a round of background statistics collection recollects before it waits for the
+     * next round. The round always finishes the table it is collecting.
+     * Defaults to 32
+     */
+    public static final String AUTO_COLLECTION_MAX_PARTITIONS = "splice.statistics.autoCollection.maxPartitions";
+    public static final int DEFAULT_AUTO_COLLECTION_MAX_PARTITIONS = 32;
+
 
     @Override
     public void setDefaults(ConfigurationBuilder builder, ConfigurationSource configurationSource) {
@@ -152,5 +190,10 @@ public class StatsConfiguration implements ConfigurationDefault {
 //        builder.fallbackIndexSelectivityFraction = configurationSource.getDouble(FALLBACK_INDEX_SELECTIVITY_FRACTION, DEFAULT_FALLBACK_INDEX_SELECTIVITY_FRACTION);
         builder.optimizerExtraQualifierMultiplier = configurationSource.getDouble(OPTIMIZER_EXTRA_QUALIFIER_MULTIPLIER, DEFAULT_OPTIMIZER_EXTRA_QUALIFIER_MULTIPLIER);
         builder.collectSchemaStatisticsMaximumConcurrent = configurationSource.getInt(COLLECT_SCHEMA_STATISTICS_MAXIMUM_CONCURRENT, DEFAULT_COLLECT_SCHEMA_STATISTICS_MAXIMUM_CONCURRENT);
+        builder.stalePartitionFraction = configurationSource.getDouble(STALE_PARTITION_FRACTION, DEFAULT_STALE_PARTITION_FRACTION, 0d, 1d);
+        builder.modificationFlushInterval = configurationSource.getLong(MODIFICATION_FLUSH_INTERVAL, DEFAULT_MODIFICATION_FLUSH_INTERVAL, 100L, Long.MAX_VALUE);
+        builder.autoCollectionEnabled = configurationSource.getBoolean(AUTO_COLLECTION_ENABLED, DEFAULT_AUTO_COLLECTION_ENABLED);
+        builder.autoCollectionInterval = configurationSource.getLong(AUTO_COLLECTION_INTERVAL, DEFAULT_AUTO_COLLECTION_INTERVAL, 1000L, Long.MAX_VALUE);
+        builder.autoCollectionMaxPartitions = configurationSource.getInt(AUTO_COLLECTION_MAX_PARTITIONS, DEFAULT_AUTO_COLLECTION_MAX_PARTITIONS, 1, Integer.MAX_VALUE);
     }
 }
@@ -29,6 +29,7 @@ import com.splicemachine.db.iapi.sql.dictionary.TriggerDescriptor;
 import com.splicemachine.db.iapi.sql.dictionary.TriggerDescriptorV2;
 import com.splicemachine.db.iapi.sql.dictionary.TriggerDescriptorV3;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.stats.ColumnGroupStatistics;
 import com.splicemachine.db.iapi.stats.ColumnStatisticsImpl;
 import com.splicemachine.db.iapi.stats.ColumnStatisticsMerge;
 import com.splicemachine.db.iapi.stats.FakeColumnStatisticsImpl;
@@ -966,5 +967,6 @@ public class SpliceKryoRegistry implements KryoPool.KryoRegistry{
         instance.register(StringAggregator.class,EXTERNALIZABLE_SERIALIZER,333);
         instance.register(StringBuilder.class,334);
         instance.register(TriggerDescriptorV3.class,EXTERNALIZABLE_SERIALIZER,335);
+        instance.register(ColumnGroupStatistics.class,EXTERNALIZABLE_SERIALIZER,336);
     }
 }
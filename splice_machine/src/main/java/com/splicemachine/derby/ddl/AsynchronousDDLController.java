@@ -30,6 +30,7 @@ import com.splicemachine.concurrent.Clock;
 import com.splicemachine.concurrent.LockFactory;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.ddl.DDLMessage.DDLChange;
+import com.splicemachine.derby.impl.sql.catalog.SpliceStatementPlanStore;
 import com.splicemachine.pipeline.ErrorState;
 import com.splicemachine.pipeline.Exceptions;
 
@@ -79,6 +80,8 @@ public class AsynchronousDDLController implements DDLController, CommunicationLi
 
     @Override
     public String notifyMetadataChange(DDLChange change) throws StandardException {
+        // persisted statement plans must not be read while the dictionary changes
+        SpliceStatementPlanStore.advanceDictionaryVersion();
         String changeId = communicator.createChangeNode(change);
 
         long availableTime =maximumWaitTime;
@@ -123,6 +126,7 @@ public class AsynchronousDDLController implements DDLController, CommunicationLi
     @Override
     public void finishMetadataChange(String changeId) throws StandardException {
         LOG.debug("Finishing metadata change with id " + changeId);
+        SpliceStatementPlanStore.advanceDictionaryVersion();
         communicator.deleteChangeNode(changeId);
     }
 
@@ -41,6 +41,36 @@ public abstract class DistributedJob implements Serializable{
 
     public abstract String getName();
 
+    /**
+     * @return whether this is a maintenance job, which the OLAP server defers in favor of queries
+     */
+    public boolean isBackground() {
+        return false;
+    }
+
+    /**
+     * @return whether the OLAP server makes this job wait for running jobs when it's busy. Jobs which only read or
+     * change metadata, and which complete quickly, return false so they start right away
+     */
+    public boolean isAdmissionControlled() {
+        return true;
+    }
+
+    /**
+     * @return the group this job shares the OLAP server with the other jobs of its group, such as the roles of the
+     * user who submitted it
+     */
+    public String getSchedulingGroup() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * @return the estimated cost of this job, 0 if unknown
+     */
+    public double getEstimatedCost() {
+        return 0d;
+    }
+
     public final String getUniqueName() {
         return getName() + "-" + uuid.toString();
     }
@@ -14,19 +14,49 @@
 
 package com.splicemachine.derby.impl;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.loader.GeneratedByteCode;
+import com.splicemachine.db.iapi.services.loader.GeneratedClass;
+import com.splicemachine.db.iapi.services.loader.GeneratedMethod;
 import com.splicemachine.db.iapi.sql.Activation;
+import com.splicemachine.db.impl.services.reflect.ReflectLoaderJava2;
 import org.apache.log4j.Logger;
 
 import com.splicemachine.pipeline.Exceptions;
 
+/**
+ * A method generated in an activation class, like the restriction or the projection of an operation, which is
+ * invoked for every row.
+ *
+ * The method of a generated activation is called through an invoker class generated for it when it is first called,
+ * see {@link com.splicemachine.db.iapi.services.loader.GeneratedClass#getInvoker(String)}. The invoker makes a plain
+ * virtual call on the activation class, which has a single implementation, so the JIT inlines the method into the
+ * invoker like a hand written call. Invokers are shared by all the activations of a generated class, and released
+ * with the class.
+ *
+ * Activations which weren't generated, like the ones of tests, are called through a {@link MethodHandle} bound on the
+ * first call, which saves the access checks and the boxing of the arguments of {@code Method.invoke}.
+ */
 public class SpliceMethod<T> {
     private static Logger LOG = Logger.getLogger(SpliceMethod.class);
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Activation.class);
+    private static final ClassValue<ConcurrentMap<String, MethodHandle>> HANDLES = new ClassValue<ConcurrentMap<String, MethodHandle>>() {
+        @Override
+        protected ConcurrentMap<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
     protected String methodName;
     protected Activation activation;
-    protected Method method;
+    protected GeneratedMethod invoker;
+    protected MethodHandle method;
 
     public SpliceMethod() {
 
@@ -40,10 +70,21 @@ public class SpliceMethod<T> {
     @SuppressWarnings("unchecked")
     public T invoke() throws StandardException {
         try {
-        	if (method == null) {
-        	    method =  activation.getClass().getMethod(methodName);
+            if (invoker != null) {
+                return (T) invoker.invoke(activation);
+            }
+            if (method == null) {
+                GeneratedClass gc = generatedClass(activation);
+                if (gc != null) {
+                    invoker = gc.getInvoker(methodName);
+                    return (T) invoker.invoke(activation);
+                }
+                method = bind(activation.getClass(), methodName);
             }
-            return (T) method.invoke(activation);
+            Object result = method.invokeExact(activation);
+            return (T) result;
+        } catch (StandardException se) {
+            throw se;
         } catch (Throwable t) {
             throw Exceptions.parseException(t);
         }
@@ -52,5 +93,33 @@ public class SpliceMethod<T> {
 	public Activation getActivation() {
 		return activation;
 	}
-	
+
+    /**
+     * @return the generated class of the activation, or null if the activation class wasn't generated
+     */
+    private static GeneratedClass generatedClass(Activation activation) {
+        if (!(activation.getClass().getClassLoader() instanceof ReflectLoaderJava2))
+            return null;
+        // generated activations are created by their generated class, which sets itself on them
+        return ((GeneratedByteCode) activation).getGC();
+    }
+
+    /**
+     * @return a handle taking the activation and returning the result of the method as an Object
+     */
+    private static MethodHandle bind(Class<?> activationClass, String methodName) throws ReflectiveOperationException {
+        ConcurrentMap<String, MethodHandle> handles = HANDLES.get(activationClass);
+        MethodHandle handle = handles.get(methodName);
+        if (handle == null) {
+            handle = MethodHandles.lookup()
+                    .unreflect(activationClass.getMethod(methodName))
+                    .asType(INVOKER_TYPE);
+            if (LOG.isTraceEnabled())
+                LOG.trace("Bound " + activationClass.getName() + "." + methodName);
+            MethodHandle existing = handles.putIfAbsent(methodName, handle);
+            if (existing != null)
+                handle = existing;
+        }
+        return handle;
+    }
 }
@@ -48,6 +48,8 @@ import com.splicemachine.db.shared.common.sanity.SanityManager;
 import com.splicemachine.ddl.DDLMessage;
 import com.splicemachine.ddl.DDLMessage.DDLChange;
 import com.splicemachine.derby.ddl.*;
+import com.splicemachine.derby.impl.sql.catalog.SpliceStatementPlanStore;
+import com.splicemachine.derby.impl.sql.execute.pin.PinnedTableCache;
 import com.splicemachine.derby.impl.store.access.SpliceAccessManager;
 import com.splicemachine.derby.impl.store.access.SpliceTransaction;
 import com.splicemachine.derby.impl.store.access.SpliceTransactionManager;
@@ -311,17 +313,37 @@ public class SpliceDatabase extends BasicDatabase{
         pf=(PropertyFactory)Monitor.bootServiceModule(create,this,com.splicemachine.db.iapi.reference.Module.PropertyFactory,startParams);
     }
 
+    /*
+     * The dictionary version of the persisted plans is advanced by every DDL operation, even when the plans are
+     * not used, so they are still valid if the store is enabled later on.
+     */
+    private SpliceStatementPlanStore registerStatementPlanStore(){
+        SIDriver driver=SIDriver.driver();
+        boolean enabled=driver.getConfiguration().isStatementPlanStoreEnabled();
+        SpliceStatementPlanStore planStore=new SpliceStatementPlanStore(driver.getTableFactory(),
+                driver.getOperationFactory(),EngineDriver.driver().getVersion().getImplementationVersion(),enabled);
+        SpliceStatementPlanStore.register(planStore);
+        if(enabled){
+            getDataDictionary().getDataDictionaryCache().setStatementPlanStore(planStore);
+            SpliceLogUtils.info(LOG,"Persisted statement plans are enabled");
+        }
+        return planStore;
+    }
+
     public void registerDDL(){
         if(!registered.compareAndSet(false,true)) return; //only allow one registration
+        final SpliceStatementPlanStore planStore=registerStatementPlanStore();
         DDLDriver.driver().ddlWatcher().registerDDLListener(new DDLWatcher.DDLListener(){
             @Override
             public void startGlobalChange(){
                 System.out.println("Boot Store startGlobalChange -> ");
+                planStore.invalidateDictionaryVersion();
             }
 
             @Override
             public void finishGlobalChange(){
                 System.out.println("Boot Store finishGlobalChange -> ");
+                planStore.invalidateDictionaryVersion();
             }
 
             @Override
@@ -434,6 +456,10 @@ public class SpliceDatabase extends BasicDatabase{
                         break;
                     case UPDATE_SYSTEM_PROCEDURES:
                         DDLUtils.preUpdateSystemProcedures(change, dataDictionary);
+                        break;
+                    case DROP_PIN:
+                        PinnedTableCache.cache().drop(change.getDropPin().getConglomerateId());
+                        break;
                 }
                 final List<DDLAction> ddlActions = new ArrayList<>();
                 ddlActions.add(new AddIndexToPipeline());
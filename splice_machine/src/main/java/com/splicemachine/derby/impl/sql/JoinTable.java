@@ -28,6 +28,11 @@ public interface JoinTable extends AutoCloseable{
 
     interface Factory{
         JoinTable newTable();
+
+        /**
+         * @return the estimated number of bytes held by the tables of this factory
+         */
+        long getMemoryUsage();
     }
 
     Iterator<ExecRow> fetchInner(ExecRow outer) throws IOException, StandardException;
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.catalog;
+
+import com.splicemachine.access.api.PartitionFactory;
+import com.splicemachine.access.configuration.HBaseConfiguration;
+import com.splicemachine.access.configuration.OperationConfiguration;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.compile.StatementPlanStore;
+import com.splicemachine.pipeline.Exceptions;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.data.TxnOperationFactory;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.storage.DataCell;
+import com.splicemachine.storage.DataGet;
+import com.splicemachine.storage.DataPut;
+import com.splicemachine.storage.DataResult;
+import com.splicemachine.storage.Partition;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+
+/**
+ * Stores compiled statement plans in the SPLICE_STATEMENT_PLANS table, so they are shared by all the servers of
+ * the cluster and survive restarts.
+ *
+ * The version of the data dictionary is a counter kept in the SPLICE_SEQUENCES table. The server initiating a DDL
+ * operation advances it before the other servers are told about the change, and again before they are told it is
+ * over. Every server caches the counter, and forgets it whenever DDL operations start or finish. Plans are keyed
+ * by the dictionary version and the release of the software, so plans compiled before a DDL operation or by
+ * another release are never read; they expire with the TTL of the table.
+ */
+public class SpliceStatementPlanStore implements StatementPlanStore{
+    private static final Logger LOG=Logger.getLogger(SpliceStatementPlanStore.class);
+    private static final byte[] VERSION_ROW=Bytes.toBytes("__SPLICE_STATEMENT_PLANS_VERSION");
+    private static final byte[] VERSION_QUALIFIER=Bytes.toBytes("v");
+    private static final byte[] PLAN_QUALIFIER=Bytes.toBytes("p");
+    private static final byte[] PLANS_TABLE_BYTES=Bytes.toBytes(HBaseConfiguration.STATEMENT_PLANS_TABLE_NAME);
+
+    private static volatile SpliceStatementPlanStore INSTANCE;
+
+    private final PartitionFactory partitionFactory;
+    private final TxnOperationFactory opFactory;
+    private final byte[] release;
+    private final boolean enabled;
+    private volatile long dictionaryVersion=-1L;
+
+    public SpliceStatementPlanStore(PartitionFactory partitionFactory,
+                                    TxnOperationFactory opFactory,
+                                    String release,
+                                    boolean enabled){
+        this.partitionFactory=partitionFactory;
+        this.opFactory=opFactory;
+        this.release=Bytes.toBytes(release==null?"":release+"/");
+        this.enabled=enabled;
+    }
+
+    public static void register(SpliceStatementPlanStore store){
+        INSTANCE=store;
+    }
+
+    /**
+     * Advances the version of the data dictionary, so no server reads the plans compiled against the current one
+     * anymore. Called by the server initiating a DDL operation.
+     */
+    public static void advanceDictionaryVersion() throws StandardException{
+        SpliceStatementPlanStore store=INSTANCE;
+        if(store==null)
+            return;
+        try{
+            store.incrementDictionaryVersion(1L);
+            store.invalidateDictionaryVersion();
+        }catch(IOException e){
+            if(store.enabled)
+                throw Exceptions.parseException(e);
+            // the plans are not read, but they should be invalidated if they ever are, log it
+            LOG.warn("Unable to advance the version of the statement plans",e);
+        }
+    }
+
+    public void invalidateDictionaryVersion(){
+        dictionaryVersion=-1L;
+    }
+
+    @Override
+    public long dictionaryVersion(){
+        long version=dictionaryVersion;
+        if(version<0){
+            try{
+                version=incrementDictionaryVersion(0L);
+                dictionaryVersion=version;
+            }catch(IOException e){
+                LOG.warn("Unable to read the version of the statement plans",e);
+                return -1L;
+            }
+        }
+        return version;
+    }
+
+    @Override
+    public byte[] getPlan(long dictionaryVersion,byte[] key){
+        try(Partition plans=partitionFactory.getTable(PLANS_TABLE_BYTES)){
+            DataGet get=opFactory.newDataGet(null,rowKey(dictionaryVersion,key),null);
+            get.addColumn(SIConstants.DEFAULT_FAMILY_BYTES,PLAN_QUALIFIER);
+            get.returnLatestVersion();
+            get.setTimeRange(0L,Long.MAX_VALUE);
+            DataResult result=plans.get(get,null);
+            if(result==null || result.size()<=0)
+                return null;
+            DataCell cell=result.latestCell(SIConstants.DEFAULT_FAMILY_BYTES,PLAN_QUALIFIER);
+            return cell==null?null:cell.value();
+        }catch(IOException e){
+            LOG.warn("Unable to read a statement plan",e);
+            return null;
+        }
+    }
+
+    @Override
+    public void storePlan(long dictionaryVersion,byte[] key,byte[] plan){
+        try(Partition plans=partitionFactory.getTable(PLANS_TABLE_BYTES)){
+            byte[] row=rowKey(dictionaryVersion,key);
+            DataPut put=opFactory.newDataPut(null,row);
+            put.addCell(SIConstants.DEFAULT_FAMILY_BYTES,PLAN_QUALIFIER,plan);
+            plans.put(put);
+        }catch(IOException e){
+            LOG.warn("Unable to store a statement plan",e);
+        }
+    }
+
+    private long incrementDictionaryVersion(long amount) throws IOException{
+        try(Partition sequences=partitionFactory.getTable(OperationConfiguration.SEQUENCE_TABLE_NAME_BYTES)){
+            return sequences.increment(VERSION_ROW,SIConstants.DEFAULT_FAMILY_BYTES,VERSION_QUALIFIER,amount);
+        }
+    }
+
+    private byte[] rowKey(long dictionaryVersion,byte[] key){
+        byte[] row=new byte[release.length+Bytes.SIZEOF_LONG+key.length];
+        System.arraycopy(release,0,row,0,release.length);
+        Bytes.toBytes(dictionaryVersion,row,release.length);
+        System.arraycopy(key,0,row,release.length+Bytes.SIZEOF_LONG,key.length);
+        return row;
+    }
+}
@@ -155,6 +155,8 @@ public class SpliceLevel2OptimizerImpl extends Level2OptimizerImpl{
 
     private final long minTimeout;
     private final long maxTimeout;
+    private final boolean memoizeJoinOrders;
+    private final int greedyJoinOrderThreshold;
     public SpliceLevel2OptimizerImpl(OptimizableList optimizableList,
                                      OptimizablePredicateList predicateList,
                                      DataDictionary dDictionary,
@@ -182,6 +184,8 @@ public class SpliceLevel2OptimizerImpl extends Level2OptimizerImpl{
         SConfiguration configuration=EngineDriver.driver().getConfiguration();
         this.minTimeout=configuration.getOptimizerPlanMinimumTimeout();
         this.maxTimeout=configuration.getOptimizerPlanMaximumTimeout();
+        this.memoizeJoinOrders=configuration.isOptimizerMemoizeJoinOrders();
+        this.greedyJoinOrderThreshold=configuration.getOptimizerGreedyJoinOrderThreshold();
         tracer().trace(OptimizerFlag.STARTED,0,0,0.0,null);
     }
 
@@ -238,4 +242,18 @@ public class SpliceLevel2OptimizerImpl extends Level2OptimizerImpl{
     protected long getMaxTimeout() {
         return maxTimeout;
     }
+
+    /**
+     * Overridden to check splice configuration.
+     */
+    protected boolean memoizeJoinOrders() {
+        return memoizeJoinOrders;
+    }
+
+    /**
+     * Overridden to check splice configuration.
+     */
+    protected int getGreedyJoinOrderThreshold() {
+        return greedyJoinOrderThreshold;
+    }
 }
@@ -23,9 +23,14 @@ import com.splicemachine.db.iapi.sql.Activation;
 import com.splicemachine.db.iapi.sql.StatementType;
 import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
 import com.splicemachine.db.iapi.sql.dictionary.*;
+import com.splicemachine.db.iapi.store.access.TransactionController;
+import com.splicemachine.derby.ddl.DDLUtils;
 import com.splicemachine.derby.impl.sql.execute.pin.DistributedIsCachedJob;
 import com.splicemachine.derby.impl.sql.execute.pin.GetIsCachedResult;
 import com.splicemachine.derby.impl.sql.execute.pin.RemoteDropPinJob;
+import com.splicemachine.derby.impl.store.access.SpliceTransactionManager;
+import com.splicemachine.protobuf.ProtoUtil;
+import com.splicemachine.si.api.txn.TxnView;
 
 
 /**
@@ -84,6 +89,12 @@ public class DropPinConstantOperation extends DDLSingleTableConstantOperation {
             }
 
             EngineDriver.driver().getOlapClient().execute(new RemoteDropPinJob(td.getHeapConglomerateId()));
+
+            // drop the snapshots the servers keep for control queries
+            TransactionController tc = lcc.getTransactionExecute();
+            TxnView activeTransaction = ((SpliceTransactionManager) tc).getActiveStateTxn();
+            tc.prepareDataDictionaryChange(DDLUtils.notifyMetadataChange(
+                    ProtoUtil.createDropPin(activeTransaction.getTxnId(), td.getHeapConglomerateId())));
         } catch (Exception e) {
             throw StandardException.plainWrapException(e);
         }
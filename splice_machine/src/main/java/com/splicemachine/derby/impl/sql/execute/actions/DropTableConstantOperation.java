@@ -184,6 +184,9 @@ public class DropTableConstantOperation extends DDLSingleTableConstantOperation
                 GetIsCachedResult isCachedResult = EngineDriver.driver().getOlapClient().execute(new DistributedIsCachedJob(heapId));
                 if(isCachedResult.isCached()) {
                     EngineDriver.driver().getOlapClient().execute(new RemoteDropPinJob(heapId));
+                    // drop the snapshots the servers keep for control queries
+                    tc.prepareDataDictionaryChange(DDLUtils.notifyMetadataChange(
+                            ProtoUtil.createDropPin(activeTransaction.getTxnId(), heapId)));
                 }
             } catch (Exception e) {
                 throw StandardException.plainWrapException(e);
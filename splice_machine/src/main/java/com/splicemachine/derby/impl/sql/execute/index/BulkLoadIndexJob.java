@@ -86,6 +86,11 @@ public class BulkLoadIndexJob extends DistributedJob implements Externalizable {
         return null;
     }
 
+    @Override
+    public boolean isBackground() {
+        return true;
+    }
+
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeObject(ah);
@@ -63,6 +63,11 @@ public class DistributedPopulateIndexJob extends DistributedJob implements Exter
         return null;
     }
 
+    @Override
+    public boolean isBackground() {
+        return true;
+    }
+
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeObject(scanSetBuilder);
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.db.iapi.sql.Activation;
+import com.splicemachine.db.iapi.sql.conn.ControlExecutionLimiter;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.conn.ResubmitDistributedException;
+import com.splicemachine.db.iapi.sql.execute.ExecPreparedStatement;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.pipeline.Exceptions;
+import org.apache.log4j.Logger;
+
+import java.util.Iterator;
+
+/**
+ * Watches the rows flowing into one side of a control-side join, and adapts the join when they are far more than
+ * the optimizer estimated: the build side of a broadcast join going over the rows the optimizer would broadcast, or
+ * the outer side of a nested loop join going over {@code splice.controlExecution.adaptiveJoinOuterRowThreshold}.
+ * <p>
+ * The rows observed are fed back to the cached prepared statement, which is recompiled on its next execution with
+ * corrected estimates, leading the optimizer to a merge sort or broadcast join instead. The running execution is
+ * resubmitted to Spark, unless the engine was hinted or forced.
+ */
+public class AdaptiveJoinMonitor {
+    private static final Logger LOG = Logger.getLogger(AdaptiveJoinMonitor.class);
+    /* how far above its estimate a side has to go before the join adapts */
+    private static final double ESTIMATE_ERROR_FACTOR = 10.0d;
+
+    private final SpliceOperation join;
+    private final SpliceOperation side;
+    private final long threshold;
+    private long rows;
+    private boolean adapted;
+
+    AdaptiveJoinMonitor(SpliceOperation join, SpliceOperation side, long threshold) {
+        this.join = join;
+        this.side = side;
+        this.threshold = Math.max(threshold, (long) Math.min(side.getEstimatedRowCount() * ESTIMATE_ERROR_FACTOR, Long.MAX_VALUE));
+    }
+
+    /**
+     * @return a monitor for the build side of a broadcast join, or null if joins do not adapt
+     */
+    public static AdaptiveJoinMonitor forBuildSide(SpliceOperation join, SpliceOperation buildSide) {
+        SConfiguration config = getConfiguration();
+        if (config == null || !config.isControlExecutionAdaptiveJoins())
+            return null;
+        return new AdaptiveJoinMonitor(join, buildSide, config.getBroadcastRegionRowThreshold());
+    }
+
+    /**
+     * @return a monitor for the outer side of a nested loop join, or null if joins do not adapt
+     */
+    public static AdaptiveJoinMonitor forOuterSide(SpliceOperation join, SpliceOperation outerSide) {
+        SConfiguration config = getConfiguration();
+        if (config == null || !config.isControlExecutionAdaptiveJoins())
+            return null;
+        return new AdaptiveJoinMonitor(join, outerSide, config.getControlExecutionAdaptiveJoinOuterRowThreshold());
+    }
+
+    public void addRows(long n) {
+        rows += n;
+        if (!adapted && rows > threshold) {
+            adapted = true;
+            adapt();
+        }
+    }
+
+    /**
+     * @return the rows of the source, counted as they are read
+     */
+    public <E> Iterator<E> monitor(Iterator<E> source) {
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public E next() {
+                E next = source.next();
+                addRows(1);
+                return next;
+            }
+        };
+    }
+
+    private void adapt() {
+        Activation activation = join.getActivation();
+        int scan = getScanResultSetNumber(side);
+        ExecPreparedStatement ps = activation.getPreparedStatement();
+        if (scan >= 0 && ps != null)
+            ps.getCardinalityFeedback().record(scan, side.getEstimatedRowCount(), rows);
+        LOG.warn(String.format("%s read %d rows from %s, estimated %.0f rows, the statement will be recompiled",
+                join.getName(), rows, side.getName(), side.getEstimatedRowCount()));
+        LanguageConnectionContext lcc = activation.getLanguageConnectionContext();
+        if (lcc != null && lcc.getControlExecutionLimiter() != ControlExecutionLimiter.NO_OP)
+            throw Exceptions.throwAsRuntime(new ResubmitDistributedException());
+    }
+
+    /**
+     * @return the result set number of the scan below the restrictions and index lookups of the operation, or -1 if
+     * the operation does not read a single table
+     */
+    static int getScanResultSetNumber(SpliceOperation operation) {
+        while (true) {
+            if (operation instanceof ProjectRestrictOperation)
+                operation = ((ProjectRestrictOperation) operation).getSource();
+            else if (operation instanceof IndexRowToBaseRowOperation)
+                operation = ((IndexRowToBaseRowOperation) operation).getSource();
+            else if (operation instanceof ScanOperation)
+                return operation.resultSetNumber();
+            else
+                return -1;
+        }
+    }
+
+    private static SConfiguration getConfiguration() {
+        EngineDriver driver = EngineDriver.driver();
+        return driver == null ? null : driver.getConfiguration();
+    }
+}
@@ -14,7 +14,17 @@
 
 package com.splicemachine.derby.impl.sql.execute.operations;
 
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.db.iapi.sql.Activation;
+import com.splicemachine.db.iapi.sql.ParameterValueSet;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
 import com.splicemachine.db.iapi.sql.conn.ResubmitDistributedException;
+import com.splicemachine.db.iapi.sql.execute.ExecPreparedStatement;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnView;
 import org.spark_project.guava.cache.Cache;
 import org.spark_project.guava.cache.CacheBuilder;
 import com.splicemachine.db.iapi.error.StandardException;
@@ -22,22 +32,40 @@ import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.derby.impl.sql.JoinTable;
 import com.splicemachine.pipeline.Exceptions;
 import com.splicemachine.stream.Stream;
+import org.spark_project.guava.cache.RemovalListener;
+import org.spark_project.guava.cache.Weigher;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a Cache of records for use in a Broadcast Join.
+ * <p>
+ * Tables are keyed by the identity of their build side (see {@link Key}), so that concurrent executions of the
+ * same broadcast join share a single table, and are kept while in use. The cache is bounded by the memory held
+ * by the tables rather than by their number; when it's full the least recently used tables are evicted, their
+ * current users keep working with them but new users will rebuild them.
+ * <p>
+ * Tables are shared across queries, so their memory is reserved directly against the {@link ExecutionMemoryPool}
+ * of the server while they are cached. The cache is bounded by the share of the pool such buffers may reserve, and
+ * a table which doesn't fit in what is left of it resubmits its query to Spark, as a denied query reservation does.
  *
  * @author Scott Fines
  *         Date: 10/27/15
  */
-public class BroadcastJoinCache{
-    private final Cache<Long,ReferenceCountingFactory> cache;
+public class BroadcastJoinCache implements BroadcastJoinCacheMBean{
+    private static final long DEFAULT_MAX_BYTES = 1024L*1024*1024;
+    private static volatile BroadcastJoinCache INSTANCE;
+
+    private final Cache<Key,ReferenceCountingFactory> cache;
     private final JoinTableLoader tableLoader;
+    private final long maxBytes;
+    private final ExecutionMemoryPool memoryPool;
+    private final AtomicLong bytesHeld = new AtomicLong(0L);
 
     interface JoinTableLoader{
         JoinTable.Factory load(Callable<Stream<ExecRow>> streamLoader,
@@ -46,27 +74,64 @@ public class BroadcastJoinCache{
                                ExecRow outerTemplateRow) throws Exception;
     }
 
-    public BroadcastJoinCache(){
-       this(ValueRowMapTableLoader.INSTANCE);
+    /**
+     * @return the broadcast join cache shared by all the broadcast joins running on this server
+     */
+    public static BroadcastJoinCache getInstance(){
+        BroadcastJoinCache instance = INSTANCE;
+        if(instance==null){
+            synchronized(BroadcastJoinCache.class){
+                instance = INSTANCE;
+                if(instance==null){
+                    ExecutionMemoryPool memoryPool = ExecutionMemoryPool.getInstance();
+                    instance = INSTANCE = new BroadcastJoinCache(EncodedJoinTableLoader.INSTANCE,
+                            Math.min(configuredMaxBytes(),memoryPool.getMaxSharedBytes()),memoryPool);
+                }
+            }
+        }
+        return instance;
     }
 
-    public BroadcastJoinCache(JoinTableLoader tableLoader){
+    public BroadcastJoinCache(JoinTableLoader tableLoader,long maxBytes){
+        this(tableLoader,maxBytes,null);
+    }
+
+    /**
+     * @param memoryPool the pool the memory of the cached tables is reserved against, or null
+     */
+    public BroadcastJoinCache(JoinTableLoader tableLoader,long maxBytes,ExecutionMemoryPool memoryPool){
         this.tableLoader = tableLoader;
+        this.maxBytes = maxBytes;
+        this.memoryPool = memoryPool;
         this.cache =CacheBuilder.newBuilder()
-                .maximumSize(1000)
-                .expireAfterAccess(2,TimeUnit.SECONDS)
-                .softValues()
+                // weights are in kilobytes to fit large tables in an int
+                .maximumWeight(Math.max(1L,maxBytes/1024))
+                .weigher(new Weigher<Key, ReferenceCountingFactory>(){
+                    @Override
+                    public int weigh(Key key,ReferenceCountingFactory value){
+                        return (int)Math.min(Integer.MAX_VALUE,Math.max(1L,value.memoryUsage/1024));
+                    }
+                })
+                .removalListener((RemovalListener<Key, ReferenceCountingFactory>)notification -> {
+                    ReferenceCountingFactory value = notification.getValue();
+                    if(value!=null){
+                        bytesHeld.addAndGet(-value.memoryUsage);
+                        if(memoryPool!=null)
+                            memoryPool.releaseShared(value.memoryUsage);
+                    }
+                })
+                .recordStats()
                 .build();
     }
 
-    public JoinTable.Factory get(Long operationId,
+    public JoinTable.Factory get(Key key,
                          Callable<Stream<ExecRow>> loader,
                          int[] rightHashKeys,
                          int[] leftHashKeys,
                          ExecRow leftTemplateRow) throws IOException, StandardException{
         try{
-            Loader callable=new Loader(operationId,tableLoader,rightHashKeys,leftHashKeys,leftTemplateRow,loader);
-            ReferenceCountingFactory joinTable=cache.get(operationId,callable);
+            Loader callable=new Loader(key,tableLoader,rightHashKeys,leftHashKeys,leftTemplateRow,loader);
+            ReferenceCountingFactory joinTable=cache.get(key,callable);
             joinTable.refCount.incrementAndGet();
             return joinTable;
         }catch(Exception e){
@@ -81,6 +146,159 @@ public class BroadcastJoinCache{
         }
     }
 
+    @Override public long getSize(){ return cache.size(); }
+    @Override public long getHitCount(){ return cache.stats().hitCount(); }
+    @Override public long getMissCount(){ return cache.stats().missCount(); }
+    @Override public double getHitRate(){ return cache.stats().hitRate(); }
+    @Override public long getEvictionCount(){ return cache.stats().evictionCount(); }
+    @Override public long getBytesHeld(){ return bytesHeld.get(); }
+    @Override public long getMaxBytes(){ return maxBytes; }
+    @Override public void invalidateAll(){ cache.invalidateAll(); }
+
+    /**
+     * Identity of the build side of a broadcast join.
+     * <p>
+     * Two executions share a table if they run the same compilation of the same statement text, with the same
+     * session properties, current schema and parameter values, build the same operation of the plan on the same
+     * keys, and read the same data. The compilation is identified by its generated activation class, since another
+     * compilation of the text, after a change of statistics for instance, may number its operations differently. Parameters are compared by type and value, so a NULL never matches a string spelling it.
+     * <p>
+     * The data read is identified by the snapshot of the transaction: when no transaction of its lineage can
+     * write, a snapshot isolation transaction sees exactly the rows committed before its effective begin
+     * timestamp, so every execution reading at that timestamp (the statements of a read-only transaction and
+     * their child transactions) shares the table. Otherwise the uncommitted writes of the lineage may be
+     * visible, and the table is only shared within the same transaction. When the statement can't be
+     * identified the key is unique to the operation instance, as the operation's sequence id is.
+     */
+    public static final class Key{
+        private final long sequenceId;
+        private final String statement;
+        private final int[] buildSide;
+        private final int[] parameterTypes;
+        private final Object[] parameterValues;
+        private final long snapshot;
+        private final long txnId;
+
+        private Key(long sequenceId,String statement,int[] buildSide,int[] parameterTypes,Object[] parameterValues,
+                    long snapshot,long txnId){
+            this.sequenceId=sequenceId;
+            this.statement=statement;
+            this.buildSide=buildSide;
+            this.parameterTypes=parameterTypes;
+            this.parameterValues=parameterValues;
+            this.snapshot=snapshot;
+            this.txnId=txnId;
+        }
+
+        public static Key forOperation(long sequenceId){
+            return new Key(sequenceId,null,null,null,null,-1L,-1L);
+        }
+
+        public static Key forBuildSide(long sequenceId,
+                                       Activation activation,
+                                       SpliceOperation buildOperation,
+                                       int[] buildHashKeys,
+                                       int[] probeHashKeys,
+                                       TxnView txn) throws StandardException{
+            ExecPreparedStatement ps = activation==null?null:activation.getPreparedStatement();
+            if(ps==null || ps.getSource()==null || txn==null)
+                return forOperation(sequenceId);
+            LanguageConnectionContext lcc=activation.getLanguageConnectionContext();
+            // each part is prefixed with its length, so that no part can run into the next one
+            StringBuilder statement=new StringBuilder();
+            appendPart(statement,ps.getSource());
+            appendPart(statement,activation.getClass().getName());
+            appendPart(statement,String.valueOf(ps.getSessionPropertyValues()));
+            appendPart(statement,lcc==null?null:lcc.getCurrentSchemaName());
+
+            int[] buildSide=new int[2+buildHashKeys.length+probeHashKeys.length];
+            buildSide[0]=buildOperation.resultSetNumber();
+            buildSide[1]=buildHashKeys.length;
+            System.arraycopy(buildHashKeys,0,buildSide,2,buildHashKeys.length);
+            System.arraycopy(probeHashKeys,0,buildSide,2+buildHashKeys.length,probeHashKeys.length);
+
+            ParameterValueSet parameters=activation.getParameterValueSet();
+            int parameterCount=parameters==null?0:parameters.getParameterCount();
+            int[] parameterTypes=new int[parameterCount];
+            Object[] parameterValues=new Object[parameterCount];
+            for(int i=0;i<parameterCount;i++){
+                DataValueDescriptor parameter=parameters.getParameter(i);
+                if(parameter.hasStream())
+                    return forOperation(sequenceId); // reading the value would consume the stream
+                parameterTypes[i]=parameter.getTypeFormatId();
+                parameterValues[i]=parameter.isNull()?null:parameter.getObject();
+            }
+
+            long snapshot=readOnlySnapshot(txn);
+            return new Key(0L,statement.toString(),buildSide,parameterTypes,parameterValues,snapshot,
+                    snapshot<0?txn.getTxnId():-1L);
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(this==o) return true;
+            if(!(o instanceof Key)) return false;
+            Key key=(Key)o;
+            if(statement==null)
+                return key.statement==null && sequenceId==key.sequenceId;
+            return snapshot==key.snapshot
+                    && txnId==key.txnId
+                    && statement.equals(key.statement)
+                    && Arrays.equals(buildSide,key.buildSide)
+                    && Arrays.equals(parameterTypes,key.parameterTypes)
+                    && Arrays.deepEquals(parameterValues,key.parameterValues);
+        }
+
+        @Override
+        public int hashCode(){
+            if(statement==null)
+                return Long.hashCode(sequenceId);
+            int result=statement.hashCode();
+            result=31*result+Arrays.hashCode(buildSide);
+            result=31*result+Arrays.hashCode(parameterTypes);
+            result=31*result+Arrays.deepHashCode(parameterValues);
+            result=31*result+Long.hashCode(snapshot);
+            return 31*result+Long.hashCode(txnId);
+        }
+
+        @Override
+        public String toString(){
+            if(statement==null)
+                return "Key{sequenceId="+sequenceId+"}";
+            return snapshot<0?"Key{txnId="+txnId+"}":"Key{snapshot="+snapshot+"}";
+        }
+
+        private static void appendPart(StringBuilder sb,String part){
+            if(part==null)
+                sb.append(-1).append(':');
+            else
+                sb.append(part.length()).append(':').append(part);
+        }
+
+        /**
+         * @return the timestamp the transaction reads committed rows at, or -1 if it may also see uncommitted rows
+         */
+        static long readOnlySnapshot(TxnView txn){
+            if(txn.getIsolationLevel()!=Txn.IsolationLevel.SNAPSHOT_ISOLATION)
+                return -1L;
+            for(TxnView t=txn;t!=null && !Txn.ROOT_TRANSACTION.equals(t);t=t.getParentTxnView()){
+                if(t.allowsWrites())
+                    return -1L;
+            }
+            return txn.getEffectiveBeginTimestamp();
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static long configuredMaxBytes(){
+        EngineDriver driver = EngineDriver.driver();
+        if(driver==null)
+            return DEFAULT_MAX_BYTES;
+        SConfiguration configuration = driver.getConfiguration();
+        return configuration.getBroadcastJoinCacheMbSize()*1024*1024;
+    }
+
     private class Loader implements Callable<ReferenceCountingFactory>{
         private final JoinTableLoader loader;
         private final int[] innerHashKeys;
@@ -88,16 +306,16 @@ public class BroadcastJoinCache{
         private final ExecRow outerTemplateRow;
         private final Callable<Stream<ExecRow>> streamLoader;
 
-        private final Long operationId;
+        private final Key key;
 
-        public Loader(Long operationId,
+        public Loader(Key key,
                       JoinTableLoader loader,
                       int[] innerHashKeys,
                       int[] outerHashKeys,
                       ExecRow outerTemplateRow,
                       Callable<Stream<ExecRow>> streamLoader){
             this.loader=loader;
-            this.operationId=operationId;
+            this.key=key;
             this.innerHashKeys=innerHashKeys;
             this.outerHashKeys=outerHashKeys;
             this.outerTemplateRow=outerTemplateRow;
@@ -107,7 +325,11 @@ public class BroadcastJoinCache{
         @Override
         public ReferenceCountingFactory call() throws Exception {
             JoinTable.Factory load=loader.load(streamLoader,innerHashKeys,outerHashKeys,outerTemplateRow);
-            return new ReferenceCountingFactory(load,operationId);
+            ReferenceCountingFactory factory=new ReferenceCountingFactory(load,key);
+            if(memoryPool!=null && !memoryPool.tryReserveShared(factory.memoryUsage))
+                throw new ResubmitDistributedException();
+            bytesHeld.addAndGet(factory.memoryUsage);
+            return factory;
         }
     }
 
@@ -139,12 +361,14 @@ public class BroadcastJoinCache{
 
     private class ReferenceCountingFactory implements JoinTable.Factory{
         private final JoinTable.Factory delegate;
-        private final Long id;
+        private final Key key;
+        private final long memoryUsage;
         private AtomicInteger refCount = new AtomicInteger(0);
 
-        public ReferenceCountingFactory(JoinTable.Factory delegate,Long id){
+        public ReferenceCountingFactory(JoinTable.Factory delegate,Key key){
             this.delegate=delegate;
-            this.id=id;
+            this.key=key;
+            this.memoryUsage=delegate.getMemoryUsage();
         }
 
         @Override
@@ -152,10 +376,15 @@ public class BroadcastJoinCache{
             return new ReferenceCountedJoinTable(delegate.newTable(),this);
         }
 
+        @Override
+        public long getMemoryUsage(){
+            return memoryUsage;
+        }
+
         public void markClosed(){
             int refC=refCount.decrementAndGet();
             if(refC<=0)
-                cache.invalidate(id);
+                cache.asMap().remove(key,this); // only if it hasn't been replaced by a newer table
         }
     }
 }
@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.derby.utils.marshall.EntryDataHash;
+import com.splicemachine.derby.utils.marshall.KeyDecoder;
+import com.splicemachine.derby.utils.marshall.KeyEncoder;
+import com.splicemachine.derby.utils.marshall.NoOpPostfix;
+import com.splicemachine.derby.utils.marshall.NoOpPrefix;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.utils.IntArrays;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Broadcast join table holding the inner rows as encoded bytes.
+ * <p>
+ * Each inner row is stored as {@code [key length][key bytes][row length][row bytes]} in large shared pages,
+ * so the heap cost of a row is roughly its encoded size plus a few array slots, instead of a {@link ValueRow}
+ * key, a DVD object graph and a list node per row. Rows with the same key are chained together, and chain
+ * heads are found through an open-addressing hash table over the key hash codes.
+ * <p>
+ * Probing doesn't build a key row: the outer key columns are hashed in place and compared against the
+ * decoded inner key with {@link DataValueDescriptor#equals(Object)}, which is what the {@link ValueRow}
+ * based table does. The key bytes are never compared to an encoded outer key because the inner and outer
+ * key columns may be of different (comparable) types. Matching rows are decoded lazily, one at a time.
+ */
+class EncodedJoinTable implements JoinTable{
+    private static final int EMPTY=-1;
+
+    private final Data data;
+    private final int[] outerHashKeys;
+    private final ExecRow rowTemplate;
+    private final ExecRow keyRow;
+    private final KeyDecoder keyDecoder;
+    private final KeyDecoder rowDecoder;
+
+    private EncodedJoinTable(Data data,int[] outerHashKeys){
+        this.data=data;
+        this.outerHashKeys=outerHashKeys;
+        this.rowTemplate=data.rowTemplate;
+        this.keyRow=data.keyTemplate.getNewNullRow();
+        this.keyDecoder=encoder(data.keyTemplate).getDecoder();
+        this.rowDecoder=encoder(data.rowTemplate).getDecoder();
+    }
+
+    @Override
+    public Iterator<ExecRow> fetchInner(ExecRow outer) throws IOException, StandardException{
+        int hash=1;
+        for(int outerHashKey : outerHashKeys){
+            hash=31*hash+outer.getColumn(outerHashKey+1).hashCode();
+        }
+        return new MatchIterator(outer,mix(hash));
+    }
+
+    //nothing to close
+    @Override public void close(){}
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static int mix(int hash){
+        hash*=0x9E3779B9;
+        return hash^(hash>>>16);
+    }
+
+    private static KeyEncoder encoder(ExecRow template){
+        DescriptorSerializer[] serializers=VersionedSerializers.latestVersion(false).getSerializers(template);
+        return new KeyEncoder(NoOpPrefix.INSTANCE,
+                new EntryDataHash(IntArrays.count(template.nColumns()),null,serializers),
+                NoOpPostfix.INSTANCE);
+    }
+
+    private boolean keyMatches(ExecRow outer,int row) throws StandardException{
+        if(outerHashKeys.length==0)
+            return true;
+        byte[] page=data.pages[(int)(data.addresses[row]>>>32)];
+        int offset=(int)data.addresses[row];
+        keyDecoder.decode(page,offset+4,Bytes.toInt(page,offset),keyRow);
+        for(int i=0;i<outerHashKeys.length;i++){
+            if(!outer.getColumn(outerHashKeys[i]+1).equals(keyRow.getColumn(i+1)))
+                return false;
+        }
+        return true;
+    }
+
+    private ExecRow decodeRow(int row) throws StandardException{
+        byte[] page=data.pages[(int)(data.addresses[row]>>>32)];
+        int offset=(int)data.addresses[row];
+        offset+=4+Bytes.toInt(page,offset);
+        ExecRow decoded=rowTemplate.getNewNullRow();
+        rowDecoder.decode(page,offset+4,Bytes.toInt(page,offset),decoded);
+        return decoded;
+    }
+
+    /**
+     * Walks the probe sequence of a hash; more than one chain may match a key when equal keys were encoded
+     * differently (e.g. decimals with different scales), so probing continues until an empty slot.
+     */
+    private class MatchIterator implements Iterator<ExecRow>{
+        private final ExecRow outer;
+        private final int hash;
+        private int slot;
+        private int current=EMPTY;
+        private boolean exhausted;
+
+        MatchIterator(ExecRow outer,int hash){
+            this.outer=outer;
+            this.hash=hash;
+            this.slot=(hash&(data.slots.length-1))-1;
+        }
+
+        @Override
+        public boolean hasNext(){
+            if(current!=EMPTY)
+                return true;
+            if(exhausted)
+                return false;
+            int mask=data.slots.length-1;
+            try{
+                while(true){
+                    slot=(slot+1)&mask;
+                    int head=data.slots[slot];
+                    if(head==EMPTY){
+                        exhausted=true;
+                        return false;
+                    }
+                    if(data.hashes[head]==hash && keyMatches(outer,head)){
+                        current=head;
+                        return true;
+                    }
+                }
+            }catch(StandardException e){
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public ExecRow next(){
+            if(!hasNext())
+                throw new NoSuchElementException();
+            try{
+                ExecRow row=decodeRow(current);
+                current=data.next[current];
+                return row;
+            }catch(StandardException e){
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Immutable, shareable content of the table.
+     */
+    private static class Data{
+        private final ExecRow rowTemplate;
+        private final ExecRow keyTemplate;
+        private final byte[][] pages;
+        private final long[] addresses;
+        private final int[] hashes;
+        private final int[] next;
+        private final int[] slots;
+
+        Data(Builder builder){
+            this.rowTemplate=builder.rowTemplate;
+            this.keyTemplate=builder.keyTemplate;
+            this.pages=builder.pages.toArray(new byte[builder.pages.size()][]);
+            this.addresses=builder.addresses;
+            this.hashes=builder.hashes;
+            this.next=builder.next;
+            this.slots=builder.slots;
+        }
+
+        long getMemoryUsage(){
+            long size=0L;
+            for(byte[] page : pages){
+                size+=page.length;
+            }
+            return size+8L*addresses.length+4L*(hashes.length+next.length+slots.length);
+        }
+    }
+
+    /**
+     * Accumulates the inner rows. Not thread safe.
+     */
+    static class Builder{
+        private static final int PAGE_SIZE=1<<20;
+        private static final int INITIAL_ROWS=1024;
+
+        private final int[] innerHashKeys;
+        private final ExecRow rowTemplate;
+        private final ExecRow keyTemplate;
+        private final ExecRow keyRow;
+        private final KeyEncoder keyEncoder;
+        private final KeyEncoder rowEncoder;
+
+        private final List<byte[]> pages=new ArrayList<>();
+        private byte[] page;
+        private int pagePosition;
+        private long[] addresses=new long[INITIAL_ROWS];
+        private int[] hashes=new int[INITIAL_ROWS];
+        private int[] next=new int[INITIAL_ROWS];
+        private int[] tails=new int[INITIAL_ROWS];
+        private int[] slots;
+        private int numRows;
+        private int numChains;
+
+        /**
+         * @param template      a row with the same layout as the inner rows
+         * @param innerHashKeys the (0-based) positions of the key columns in the inner rows
+         */
+        Builder(ExecRow template,int[] innerHashKeys) throws StandardException{
+            this.innerHashKeys=innerHashKeys;
+            this.rowTemplate=template.getNewNullRow();
+            DataValueDescriptor[] keys=new DataValueDescriptor[innerHashKeys.length];
+            for(int i=0;i<innerHashKeys.length;i++){
+                keys[i]=template.getColumn(innerHashKeys[i]+1).getNewNull();
+            }
+            this.keyTemplate=new ValueRow(keys);
+            this.keyRow=new ValueRow(innerHashKeys.length);
+            this.keyEncoder=encoder(keyTemplate);
+            this.rowEncoder=encoder(rowTemplate);
+            this.slots=new int[INITIAL_ROWS*2];
+            Arrays.fill(slots,EMPTY);
+        }
+
+        void add(ExecRow row) throws StandardException, IOException{
+            int hash=1;
+            for(int i=0;i<innerHashKeys.length;i++){
+                DataValueDescriptor dvd=row.getColumn(innerHashKeys[i]+1);
+                keyRow.setColumn(i+1,dvd);
+                hash=31*hash+dvd.hashCode();
+            }
+            hash=mix(hash);
+            byte[] key=innerHashKeys.length==0?new byte[0]:keyEncoder.getKey(keyRow);
+            byte[] value=rowEncoder.getKey(row);
+
+            if(numRows==addresses.length)
+                growRows();
+            int index=numRows++;
+            addresses[index]=append(key,value);
+            hashes[index]=hash;
+            next[index]=EMPTY;
+
+            int mask=slots.length-1;
+            int slot=hash&mask;
+            while(true){
+                int head=slots[slot];
+                if(head==EMPTY){
+                    slots[slot]=index;
+                    tails[index]=index;
+                    if(++numChains*2>slots.length)
+                        growSlots();
+                    return;
+                }
+                if(hashes[head]==hash && keyEquals(head,key)){
+                    next[tails[head]]=index;
+                    tails[head]=index;
+                    return;
+                }
+                slot=(slot+1)&mask;
+            }
+        }
+
+        JoinTable.Factory build(int[] outerHashKeys){
+            // release the unused tail of the last page
+            if(page!=null && pagePosition<page.length)
+                pages.set(pages.size()-1,Arrays.copyOf(page,pagePosition));
+            page=null;
+            return new Factory(new Data(this),outerHashKeys);
+        }
+
+        private long append(byte[] key,byte[] value){
+            int size=8+key.length+value.length;
+            if(page==null || pagePosition+size>page.length){
+                page=new byte[Math.max(PAGE_SIZE,size)];
+                pagePosition=0;
+                pages.add(page);
+            }
+            long address=((long)(pages.size()-1)<<32)|pagePosition;
+            pagePosition=putBytes(key,pagePosition);
+            pagePosition=putBytes(value,pagePosition);
+            return address;
+        }
+
+        private int putBytes(byte[] bytes,int position){
+            Bytes.intToBytes(bytes.length,page,position);
+            System.arraycopy(bytes,0,page,position+4,bytes.length);
+            return position+4+bytes.length;
+        }
+
+        private boolean keyEquals(int row,byte[] key){
+            byte[] rowPage=pages.get((int)(addresses[row]>>>32));
+            int offset=(int)addresses[row];
+            int length=Bytes.toInt(rowPage,offset);
+            return Bytes.equals(rowPage,offset+4,length,key,0,key.length);
+        }
+
+        private void growRows(){
+            int size=addresses.length*2;
+            addresses=Arrays.copyOf(addresses,size);
+            hashes=Arrays.copyOf(hashes,size);
+            next=Arrays.copyOf(next,size);
+            tails=Arrays.copyOf(tails,size);
+        }
+
+        private void growSlots(){
+            int[] newSlots=new int[slots.length*2];
+            Arrays.fill(newSlots,EMPTY);
+            int mask=newSlots.length-1;
+            for(int head : slots){
+                if(head==EMPTY)
+                    continue;
+                int slot=hashes[head]&mask;
+                while(newSlots[slot]!=EMPTY){
+                    slot=(slot+1)&mask;
+                }
+                newSlots[slot]=head;
+            }
+            slots=newSlots;
+        }
+    }
+
+    static class Factory implements JoinTable.Factory{
+        private final Data data;
+        private final int[] outerHashKeys;
+
+        private Factory(Data data,int[] outerHashKeys){
+            this.data=data;
+            this.outerHashKeys=outerHashKeys;
+        }
+
+        @Override
+        public JoinTable newTable(){
+            return new EncodedJoinTable(data,outerHashKeys);
+        }
+
+        @Override
+        public long getMemoryUsage(){
+            return data.getMemoryUsage();
+        }
+    }
+}
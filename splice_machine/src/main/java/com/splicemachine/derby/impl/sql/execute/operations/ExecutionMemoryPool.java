@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.db.iapi.sql.conn.QueryMemoryManager;
+import com.splicemachine.db.iapi.sql.conn.ResubmitDistributedException;
+import com.splicemachine.pipeline.Exceptions;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The memory the operation buffers of the queries running on a server may reserve.
+ * <p>
+ * Each query running in control mode gets its own {@link Query} manager, bounded by
+ * {@code splice.execution.queryMemoryLimitMBSize}, and all of them draw from this pool, bounded by
+ * {@code splice.execution.memoryPoolMBSize}. Buffers shared across queries, like the cached broadcast join
+ * tables, are reserved directly against the pool and reduce what is left for queries, up to half of the pool so
+ * that they never leave queries without memory. Buffered rows stay on
+ * the heap: the pool only accounts for their estimated size, so that a large query spills or moves to Spark
+ * before the server runs out of heap.
+ */
+public class ExecutionMemoryPool implements ExecutionMemoryPoolMBean{
+    private static final long DEFAULT_MAX_BYTES = Runtime.getRuntime().maxMemory()/4;
+    /* the fraction of the pool buffers shared across queries may reserve */
+    private static final double MAX_SHARED_FRACTION = 0.5d;
+    private static volatile ExecutionMemoryPool INSTANCE;
+
+    private final long maxBytes;
+    private final long queryMaxBytes;
+    private final long maxSharedBytes;
+    private final AtomicLong reservedBytes = new AtomicLong(0L);
+    private final AtomicLong peakReservedBytes = new AtomicLong(0L);
+    private final AtomicLong sharedBytes = new AtomicLong(0L);
+    private final AtomicLong deniedReservations = new AtomicLong(0L);
+    private final Set<Query> activeQueries = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @return the memory pool shared by all the queries running on this server
+     */
+    public static ExecutionMemoryPool getInstance(){
+        ExecutionMemoryPool instance = INSTANCE;
+        if(instance==null){
+            synchronized(ExecutionMemoryPool.class){
+                instance = INSTANCE;
+                if(instance==null){
+                    EngineDriver driver = EngineDriver.driver();
+                    if(driver==null)
+                        instance = INSTANCE = new ExecutionMemoryPool(DEFAULT_MAX_BYTES,0L);
+                    else{
+                        SConfiguration configuration = driver.getConfiguration();
+                        instance = INSTANCE = new ExecutionMemoryPool(
+                                configuration.getExecutionMemoryPoolMbSize()*1024*1024,
+                                configuration.getExecutionQueryMemoryLimitMbSize()*1024*1024);
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param maxBytes      the bytes all queries may reserve
+     * @param queryMaxBytes the bytes a single query may reserve, 0 for no limit other than the pool's
+     */
+    public ExecutionMemoryPool(long maxBytes,long queryMaxBytes){
+        this.maxBytes = maxBytes;
+        this.queryMaxBytes = queryMaxBytes;
+        this.maxSharedBytes = (long)(maxBytes*MAX_SHARED_FRACTION);
+    }
+
+    /**
+     * @return the memory manager of a new query, which must be closed when the query completes
+     */
+    public Query newQuery(){
+        Query query = new Query();
+        activeQueries.add(query);
+        return query;
+    }
+
+    /**
+     * Reserves memory for a buffer shared across queries, which reduces the memory available to queries.
+     *
+     * @return false if the buffers shared across queries would go over their share of the pool, in which case
+     * nothing is reserved
+     */
+    public boolean tryReserveShared(long bytes){
+        while(true){
+            long current = sharedBytes.get();
+            if(current+bytes>maxSharedBytes){
+                deniedReservations.incrementAndGet();
+                return false;
+            }
+            if(sharedBytes.compareAndSet(current,current+bytes))
+                break;
+        }
+        updatePeak(reservedBytes.addAndGet(bytes));
+        return true;
+    }
+
+    public void releaseShared(long bytes){
+        sharedBytes.addAndGet(-bytes);
+        reservedBytes.addAndGet(-bytes);
+    }
+
+    @Override public long getMaxBytes(){ return maxBytes; }
+    @Override public long getQueryMaxBytes(){ return queryMaxBytes; }
+    @Override public long getReservedBytes(){ return reservedBytes.get(); }
+    @Override public long getPeakReservedBytes(){ return peakReservedBytes.get(); }
+    @Override public long getSharedBytes(){ return sharedBytes.get(); }
+    @Override public long getMaxSharedBytes(){ return maxSharedBytes; }
+    @Override public int getActiveQueries(){ return activeQueries.size(); }
+    @Override public long getDeniedReservations(){ return deniedReservations.get(); }
+
+    @Override
+    public long getLargestQueryReservedBytes(){
+        long largest = 0L;
+        for(Query query : activeQueries){
+            largest = Math.max(largest,query.getReservedBytes());
+        }
+        return largest;
+    }
+
+    /**
+     * The memory reserved by the operations of a single query.
+     */
+    public final class Query implements QueryMemoryManager, AutoCloseable{
+        private long reserved;
+        private long peakReserved;
+        private boolean closed;
+
+        private Query(){ }
+
+        @Override
+        public synchronized boolean tryReserve(long bytes){
+            if(bytes<=0 || closed)
+                return true;
+            if((queryMaxBytes>0 && reserved+bytes>queryMaxBytes) || !reservePooled(bytes)){
+                deniedReservations.incrementAndGet();
+                return false;
+            }
+            reserved += bytes;
+            if(reserved>peakReserved)
+                peakReserved = reserved;
+            return true;
+        }
+
+        @Override
+        public void reserve(long bytes){
+            if(!tryReserve(bytes))
+                throw Exceptions.throwAsRuntime(new ResubmitDistributedException());
+        }
+
+        @Override
+        public synchronized void release(long bytes){
+            if(bytes<=0 || closed)
+                return;
+            bytes = Math.min(bytes,reserved);
+            reserved -= bytes;
+            reservedBytes.addAndGet(-bytes);
+        }
+
+        @Override
+        public synchronized long getReservedBytes(){
+            return reserved;
+        }
+
+        @Override
+        public synchronized long getPeakReservedBytes(){
+            return peakReserved;
+        }
+
+        /**
+         * Returns all the memory still reserved by the query to the pool. Buffers outliving the query are not
+         * accounted for anymore.
+         */
+        @Override
+        public synchronized void close(){
+            if(closed)
+                return;
+            closed = true;
+            reservedBytes.addAndGet(-reserved);
+            reserved = 0L;
+            activeQueries.remove(this);
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private boolean reservePooled(long bytes){
+        while(true){
+            long current = reservedBytes.get();
+            if(current+bytes>maxBytes)
+                return false;
+            if(reservedBytes.compareAndSet(current,current+bytes)){
+                updatePeak(current+bytes);
+                return true;
+            }
+        }
+    }
+
+    private void updatePeak(long reserved){
+        long peak;
+        while(reserved>(peak = peakReservedBytes.get())){
+            if(peakReservedBytes.compareAndSet(peak,reserved))
+                return;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import javax.management.MXBean;
+
+/**
+ * JMX view of the memory reserved by the operation buffers of the queries running on a server.
+ */
+@MXBean
+public interface ExecutionMemoryPoolMBean{
+
+    long getMaxBytes();
+
+    long getQueryMaxBytes();
+
+    long getReservedBytes();
+
+    long getPeakReservedBytes();
+
+    /**
+     * @return the bytes reserved by buffers shared across queries, like cached broadcast join tables
+     */
+    long getSharedBytes();
+
+    /**
+     * @return the bytes buffers shared across queries may reserve
+     */
+    long getMaxSharedBytes();
+
+    int getActiveQueries();
+
+    /**
+     * @return the bytes reserved by the running query holding the most memory
+     */
+    long getLargestQueryReservedBytes();
+
+    /**
+     * @return the number of reservations denied, each one causing a spill or the resubmission of a query to Spark
+     */
+    long getDeniedReservations();
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.PartitionFactory;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.FormatableBitSet;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.HBaseRowLocation;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.derby.utils.marshall.EntryDataDecoder;
+import com.splicemachine.derby.utils.marshall.KeyDecoder;
+import com.splicemachine.derby.utils.marshall.KeyHashDecoder;
+import com.splicemachine.derby.utils.marshall.NoOpKeyHashDecoder;
+import com.splicemachine.derby.utils.marshall.SkippingKeyDecoder;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.pipeline.Exceptions;
+import com.splicemachine.si.api.data.TxnOperationFactory;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.storage.Attributable;
+import com.splicemachine.storage.DataCell;
+import com.splicemachine.storage.DataResult;
+import com.splicemachine.storage.EntryPredicateFilter;
+import com.splicemachine.storage.Partition;
+import com.splicemachine.storage.util.MapAttributes;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the inner rows of a nested loop join whose inner side looks up at most one row by its primary key, for
+ * batches of outer rows at once, instead of opening a scan for each outer row.
+ *
+ * The keys of a batch of outer rows are evaluated on the calling thread, and fetched with one multi-get on a
+ * background thread, while the previous batches are joined, as {@link IndexRowReader} does for index lookups. The
+ * transactional resolution of the rows is done by the region servers, so only the visible version of each row is
+ * returned. The fetched rows are decoded, restricted and projected on the calling thread, in the order of the outer
+ * rows, since the activation the restrictions are evaluated with isn't thread safe.
+ *
+ * The inner side is opened once, through its usual open path, so the rows read and filtered are recorded in the
+ * contexts of its operations as they are when it is scanned.
+ */
+public class NestedLoopJoinLookupReader implements AutoCloseable{
+    private final SpliceOperation leftOperation;
+    private final TableScanOperation scan;
+    private final ProjectRestrictOperation projectRestrict;
+    private final OperationContext scanContext;
+    private final OperationContext restrictContext;
+    private final ExecRow template;
+    private final TxnView txn;
+    private final long conglomId;
+    private final byte[] predicateFilterBytes;
+    private final KeyDecoder keyDecoder;
+    private final KeyHashDecoder rowDecoder;
+    private final int batchSize;
+    private final int numBlocks;
+    private final TxnOperationFactory operationFactory;
+    private final PartitionFactory tableFactory;
+    private final Deque<Batch> batches=new ArrayDeque<>();
+
+    private Iterator<ExecRow> leftRows;
+    private Batch currentBatch;
+    private int position;
+    private ExecRow leftRow;
+    private ExecRow rightRow;
+
+    private NestedLoopJoinLookupReader(JoinOperation join,
+                                       TableScanOperation scan,
+                                       ProjectRestrictOperation projectRestrict,
+                                       int batchSize,
+                                       int numBlocks) throws StandardException{
+        this.leftOperation=join.getLeftOperation();
+        this.scan=scan;
+        this.projectRestrict=projectRestrict;
+        this.scanContext=scan.getOperationContext();
+        this.restrictContext=projectRestrict==null?null:projectRestrict.getOperationContext();
+        this.template=scan.getExecRowDefinition();
+        this.txn=scan.getCurrentTransaction();
+        this.conglomId=scan.getScanInformation().getConglomerateId();
+        this.batchSize=batchSize;
+        this.numBlocks=Math.max(numBlocks,1);
+
+        FormatableBitSet accessedRowColumns=scan.getScanInformation().getAccessedNonPkColumns();
+        BitSet rowFieldsToReturn=new BitSet();
+        if(accessedRowColumns!=null){
+            for(int i=accessedRowColumns.anySetBit();i>=0;i=accessedRowColumns.anySetBit(i)){
+                rowFieldsToReturn.set(i);
+            }
+        }
+        this.predicateFilterBytes=new EntryPredicateFilter(rowFieldsToReturn).toBytes();
+
+        DescriptorSerializer[] templateSerializers=VersionedSerializers.forVersion(scan.tableVersion,false).getSerializers(template);
+        FormatableBitSet accessedKeyColumns=scan.getScanInformation().getAccessedPkColumns();
+        KeyHashDecoder keyHashDecoder;
+        if(accessedKeyColumns==null || accessedKeyColumns.getNumBitsSet()<=0)
+            keyHashDecoder=NoOpKeyHashDecoder.INSTANCE;
+        else{
+            keyHashDecoder=SkippingKeyDecoder.decoder(VersionedSerializers.typesForVersion(scan.tableVersion),
+                    templateSerializers,
+                    scan.getScanInformation().getColumnOrdering(),
+                    scan.getKeyFormatIds(),
+                    scan.getScanInformation().getConglomerate().getAscDescInfo(),
+                    scan.getKeyDecodingMap(),
+                    accessedKeyColumns);
+        }
+        this.keyDecoder=new KeyDecoder(keyHashDecoder,0);
+        this.rowDecoder=new EntryDataDecoder(scan.getRowDecodingMap(),null,templateSerializers);
+
+        SIDriver driver=SIDriver.driver();
+        this.operationFactory=driver.getOperationFactory();
+        this.tableFactory=driver.getTableFactory();
+    }
+
+    /**
+     * @param join the nested loop join
+     * @param firstLeftRow the first outer row, with which the inner side is checked
+     * @param batchSize the number of outer rows whose inner rows are fetched at once
+     * @param numBlocks the number of batches fetched concurrently
+     * @return a reader for the inner side of the join, or null if its rows aren't a primary key lookup, and must
+     * be read with a scan for each outer row
+     */
+    public static NestedLoopJoinLookupReader create(JoinOperation join,
+                                                    ExecRow firstLeftRow,
+                                                    int batchSize,
+                                                    int numBlocks) throws StandardException{
+        SpliceOperation right=join.getRightOperation();
+        ProjectRestrictOperation projectRestrict=null;
+        if(right instanceof ProjectRestrictOperation){
+            projectRestrict=(ProjectRestrictOperation)right;
+            if(projectRestrict.isAlwaysFalse())
+                return null;
+            right=projectRestrict.getSource();
+        }
+        if(!(right instanceof TableScanOperation))
+            return null;
+        TableScanOperation scan=(TableScanOperation)right;
+        join.getLeftOperation().setCurrentRow(firstLeftRow);
+        if(!scan.isPrimaryKeyLookup())
+            return null;
+        // sets up the operations of the inner side and their contexts, its rows are never iterated
+        join.getRightOperation().openCore(EngineDriver.driver().processorFactory().localProcessor(join.getActivation(),join));
+        return new NestedLoopJoinLookupReader(join,scan,projectRestrict,batchSize,numBlocks);
+    }
+
+    /**
+     * @param leftRows the outer rows of the join
+     */
+    public void open(Iterator<ExecRow> leftRows){
+        this.leftRows=leftRows;
+    }
+
+    /**
+     * Moves to the next outer row, setting it as the current row of the outer side, and the row it joins with, if
+     * any, as the current row of the inner side.
+     *
+     * @return false when there are no more outer rows
+     */
+    public boolean next() throws StandardException, IOException{
+        while(currentBatch==null || position>=currentBatch.leftRows.size()){
+            currentBatch=null;
+            submitBatches();
+            if(batches.isEmpty())
+                return false;
+            currentBatch=batches.removeFirst();
+            currentBatch.await();
+            position=0;
+            submitBatches();
+        }
+        leftRow=currentBatch.leftRows.get(position);
+        DataResult result=currentBatch.results.get(position);
+        position++;
+        leftOperation.setCurrentRow(leftRow);
+        rightRow=result==null || result.size()<=0?null:joinedRow(result);
+        return true;
+    }
+
+    /**
+     * @return the current outer row
+     */
+    public ExecRow getLeftRow(){
+        return leftRow;
+    }
+
+    /**
+     * @return the inner row the current outer row joins with, or null if there is none
+     */
+    public ExecRow getRightRow(){
+        return rightRow;
+    }
+
+    @Override
+    public void close() throws IOException{
+        for(Batch batch : batches){
+            batch.future.cancel(true);
+        }
+        batches.clear();
+        rowDecoder.close();
+        keyDecoder.close();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void submitBatches() throws StandardException{
+        while(batches.size()<numBlocks && leftRows.hasNext()){
+            List<ExecRow> batchRows=new ArrayList<>(batchSize);
+            List<byte[]> keys=new ArrayList<>(batchSize);
+            while(batchRows.size()<batchSize && leftRows.hasNext()){
+                ExecRow next=leftRows.next().getClone();
+                leftOperation.setCurrentRow(next);
+                batchRows.add(next);
+                keys.add(scan.getLookupKey());
+            }
+            Lookup lookup=new Lookup(keys);
+            batches.add(new Batch(batchRows,SIDriver.driver().getExecutorService().submit(lookup)));
+        }
+    }
+
+    private ExecRow joinedRow(DataResult result) throws StandardException{
+        ExecRow row=template.getClone();
+        for(DataCell kv : result){
+            keyDecoder.decode(kv.keyArray(),kv.keyOffset(),kv.keyLength(),row);
+            rowDecoder.set(kv.valueArray(),kv.valueOffset(),kv.valueLength());
+            rowDecoder.decode(row);
+        }
+        row.setKey(result.key());
+        if(scanContext!=null)
+            scanContext.recordRead();
+        scan.setCurrentRow(row);
+        scan.setCurrentRowLocation(new HBaseRowLocation(row.getKey()));
+        if(projectRestrict==null)
+            return row;
+
+        projectRestrict.setCurrentRow(row);
+        if(!projectRestrict.getRestriction().apply(row)){
+            if(restrictContext!=null)
+                restrictContext.recordFilter();
+            return null;
+        }
+        ExecRow projected=projectRestrict.doProjection(row).getClone();
+        projected.setKey(row.getKey());
+        projectRestrict.setCurrentRow(projected);
+        return projected;
+    }
+
+    private static class Batch{
+        private final List<ExecRow> leftRows;
+        private final Future<List<DataResult>> future;
+        private List<DataResult> results;
+
+        Batch(List<ExecRow> leftRows,Future<List<DataResult>> future){
+            this.leftRows=leftRows;
+            this.future=future;
+        }
+
+        void await() throws StandardException, IOException{
+            try{
+                results=future.get();
+            }catch(InterruptedException e){
+                throw new InterruptedIOException(e.getMessage());
+            }catch(ExecutionException e){
+                Throwable t=e.getCause();
+                if(t instanceof IOException) throw (IOException)t;
+                else throw Exceptions.parseException(t);
+            }
+        }
+    }
+
+    private class Lookup implements Callable<List<DataResult>>{
+        private final List<byte[]> keys;
+
+        Lookup(List<byte[]> keys){
+            this.keys=keys;
+        }
+
+        @Override
+        public List<DataResult> call() throws Exception{
+            List<byte[]> rowKeys=new ArrayList<>(keys.size());
+            for(byte[] key : keys){
+                if(key!=null && key.length>0)
+                    rowKeys.add(key);
+            }
+            List<DataResult> results=new ArrayList<>(keys.size());
+            if(rowKeys.isEmpty()){
+                for(int i=0;i<keys.size();i++){
+                    results.add(null);
+                }
+                return results;
+            }
+
+            Attributable attributable=new MapAttributes();
+            attributable.addAttribute(SIConstants.ENTRY_PREDICATE_LABEL,predicateFilterBytes);
+            operationFactory.encodeForReads(attributable,txn,false);
+            try(Partition table=tableFactory.getTable(Long.toString(conglomId))){
+                Iterator<DataResult> fetched=table.batchGet(attributable,rowKeys);
+                for(byte[] key : keys){
+                    if(key==null || key.length==0){
+                        // a key which can't be looked up matches no row
+                        results.add(null);
+                        continue;
+                    }
+                    if(!fetched.hasNext())
+                        throw new IllegalStateException("Programmer error: incompatible iterator sizes!");
+                    DataResult next=fetched.next();
+                    results.add(next==null?null:next.getClone());
+                }
+                return results;
+            }
+        }
+    }
+}
@@ -32,6 +32,8 @@ import com.splicemachine.derby.iapi.sql.execute.SpliceOperationContext;
 import com.splicemachine.derby.impl.SpliceMethod;
 import com.splicemachine.derby.impl.sql.execute.operations.iapi.Restriction;
 import com.splicemachine.derby.impl.sql.execute.operations.iapi.ScanInformation;
+import com.splicemachine.derby.stream.control.ControlUtils;
+import com.splicemachine.derby.stream.function.ProjectRestrictFlatMapFunction;
 import com.splicemachine.derby.stream.function.ProjectRestrictMapFunction;
 import com.splicemachine.derby.stream.function.ProjectRestrictPredicateFunction;
 import com.splicemachine.derby.stream.iapi.DataSet;
@@ -147,6 +149,10 @@ public class ProjectRestrictOperation extends SpliceBaseOperation {
 				return doesProjection;
 		}
 
+		public boolean isAlwaysFalse() {
+				return alwaysFalse;
+		}
+
 		@Override
 		public void readExternal(ObjectInput in) throws IOException,ClassNotFoundException {
 				super.readExternal(in);
@@ -383,9 +389,14 @@ public class ProjectRestrictOperation extends SpliceBaseOperation {
         dsp.decrementOpDepth();
         try {
             operationContext.pushScope();
-            if (restrictionMethodName != null)
-                sourceSet = sourceSet.filter(new ProjectRestrictPredicateFunction<>(operationContext));
-            DataSet<ExecRow> projection = sourceSet.map(new ProjectRestrictMapFunction<>(operationContext, expressions));
+            DataSet<ExecRow> projection;
+            if (dsp.getType() == DataSetProcessor.Type.CONTROL && ControlUtils.isSinglePassProjectRestrict()) {
+                projection = sourceSet.mapPartitions(new ProjectRestrictFlatMapFunction<>(operationContext));
+            } else {
+                if (restrictionMethodName != null)
+                    sourceSet = sourceSet.filter(new ProjectRestrictPredicateFunction<>(operationContext));
+                projection = sourceSet.map(new ProjectRestrictMapFunction<>(operationContext, expressions));
+            }
 
             handleSparkExplain(projection, originalSourceDataset, dsp);
             if (sparkExplainWithSubquery) {
@@ -17,6 +17,9 @@ package com.splicemachine.derby.impl.sql.execute.operations;
 import com.splicemachine.db.iapi.sql.compile.CompilerContext;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperationContext;
+import com.splicemachine.derby.stream.control.BatchScalarAggregation;
+import com.splicemachine.derby.stream.control.ControlUtils;
+import com.splicemachine.derby.stream.function.BatchScalarAggregateFunction;
 import com.splicemachine.derby.stream.function.ScalarAggregateFlatMapFunction;
 import com.splicemachine.derby.stream.iapi.DataSet;
 import com.splicemachine.derby.stream.iapi.DataSetProcessor;
@@ -124,9 +127,17 @@ public class ScalarAggregateOperation extends GenericAggregateOperation {
             throw new IllegalStateException("Operation is not open");
 
         OperationContext<ScalarAggregateOperation> operationContext = dsp.createOperationContext(this);
+        BatchScalarAggregation batchAggregation = null;
+        if (dsp.getType() == DataSetProcessor.Type.CONTROL && ControlUtils.isBatchScalarAggregation())
+            batchAggregation = BatchScalarAggregation.create(this);
         dsp.incrementOpDepth();
-        DataSet<ExecRow> dsSource = source.getDataSet(dsp);
+        DataSet<ExecRow> dsSource = batchAggregation == null ? source.getDataSet(dsp) : batchAggregation.getScanDataSet(dsp);
         dsp.decrementOpDepth();
+        if (batchAggregation != null) {
+            DataSet<ExecRow> ds = dsSource.mapPartitions(new BatchScalarAggregateFunction(operationContext, batchAggregation), false, /*pushScope=*/true, "First Aggregation");
+            DataSet<ExecRow> ds2 = ds.coalesce(1, /*shuffle=*/true, /*isLast=*/false, operationContext, /*pushScope=*/true, "Coalesce");
+            return ds2.mapPartitions(new ScalarAggregateFlatMapFunction(operationContext, true), /*isLast=*/true, /*pushScope=*/true, "Final Aggregation");
+        }
         DataSet<ExecRow> dataSetWithNativeSparkAggregation = null;
 
         if (nativeSparkForced())
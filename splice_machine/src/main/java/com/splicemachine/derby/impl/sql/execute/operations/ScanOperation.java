@@ -69,6 +69,7 @@ public abstract class ScanOperation extends SpliceBaseOperation{
     int partitionRefItem;
     protected int[] partitionColumnMap;
     protected ExecRow defaultRow;
+    protected transient boolean qualifiersDeferred;
     public static final int SCAN_CACHE_SIZE = 1000;
 
     public ScanOperation(){
@@ -430,6 +431,20 @@ public abstract class ScanOperation extends SpliceBaseOperation{
         return rowIdKey;
     }
 
+    /**
+     * Leaves the evaluation of the scan qualifiers on decoded rows to the consumer of the scan, which evaluates
+     * them over batches of rows instead.
+     *
+     * @param qualifiersDeferred true if the scan returns rows without checking them against its qualifiers
+     */
+    public void setQualifiersDeferred(boolean qualifiersDeferred) {
+        this.qualifiersDeferred = qualifiersDeferred;
+    }
+
+    public boolean areQualifiersDeferred() {
+        return qualifiersDeferred;
+    }
+
     public int[] getPartitionColumnMap() {
         return partitionColumnMap;
     }
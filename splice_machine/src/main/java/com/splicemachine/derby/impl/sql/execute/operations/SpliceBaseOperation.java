@@ -26,6 +26,7 @@ import com.splicemachine.db.iapi.sql.ResultDescription;
 import com.splicemachine.db.iapi.sql.ResultSet;
 import com.splicemachine.db.iapi.sql.compile.DataSetProcessorType;
 import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.conn.QueryMemoryManager;
 import com.splicemachine.db.iapi.sql.conn.ResubmitDistributedException;
 import com.splicemachine.db.iapi.sql.conn.StatementContext;
 import com.splicemachine.db.iapi.sql.execute.*;
@@ -79,6 +80,8 @@ public abstract class SpliceBaseOperation implements SpliceOperation, ScopeNamed
     protected ExecRow locatedRow;
     protected StatementContext statementContext;
     protected List<AutoCloseable> closeables;
+    /* the memory reserved by the query, when this is the top operation of a query running in control mode */
+    private ExecutionMemoryPool.Query queryMemory;
     protected NoPutResultSet[] subqueryTrackingArray;
     protected List<SpliceOperation> leftOperationStack;
     protected String jobName;
@@ -224,6 +227,7 @@ public abstract class SpliceBaseOperation implements SpliceOperation, ScopeNamed
                 logExecutionEnd();
             }
         }
+        closeQueryMemory();
         try{
             if(LOG_CLOSE.isTraceEnabled() && isOpen)
                 LOG_CLOSE.trace(String.format("closing operation %s",this));
@@ -455,6 +459,7 @@ public abstract class SpliceBaseOperation implements SpliceOperation, ScopeNamed
             String userId=activation.getLanguageConnectionContext().getCurrentUserId(activation);
 
             activation.getLanguageConnectionContext().setControlExecutionLimiter(EngineDriver.driver().processorFactory().getControlExecutionLimiter(activation));
+            openQueryMemory(dsp);
             returnedRows = false;
             if (dsp.getType() == DataSetProcessor.Type.SPARK) { // Only do this for spark jobs
                 this.jobName = userId + " <" + txnId + ">";
@@ -473,6 +478,34 @@ public abstract class SpliceBaseOperation implements SpliceOperation, ScopeNamed
         }
     }
 
+    /**
+     * Gives the query its own memory manager if this is its top operation, nested statements share the memory of
+     * the statement they run in.
+     */
+    private void openQueryMemory(DataSetProcessor dsp) {
+        if (uuid == null || activation.isSubStatement())
+            return;
+        closeQueryMemory();
+        LanguageConnectionContext lcc = activation.getLanguageConnectionContext();
+        if (dsp.getType() == DataSetProcessor.Type.CONTROL) {
+            queryMemory = ExecutionMemoryPool.getInstance().newQuery();
+            lcc.setQueryMemoryManager(queryMemory);
+        } else {
+            // Spark manages the memory of its executors
+            lcc.setQueryMemoryManager(QueryMemoryManager.UNLIMITED);
+        }
+    }
+
+    private void closeQueryMemory() {
+        if (queryMemory == null)
+            return;
+        queryMemory.close();
+        LanguageConnectionContext lcc = activation.getLanguageConnectionContext();
+        if (lcc.getQueryMemoryManager() == queryMemory)
+            lcc.setQueryMemoryManager(QueryMemoryManager.UNLIMITED);
+        queryMemory = null;
+    }
+
     protected void resubmitDistributed(ResubmitDistributedException e) throws StandardException {
         // Rethrow the exception if we're not the top-level statement because we need
         // to roll back results at each level, and submitting a partial operation tree
@@ -551,7 +584,20 @@ public abstract class SpliceBaseOperation implements SpliceOperation, ScopeNamed
 
     private void logExecutionEnd() {
         activation.getLanguageConnectionContext().logEndExecuting(uuid.toString(),
-                modifiedRowCount[0], badRecords, System.nanoTime() - startTime);
+                modifiedRowCount[0], badRecords, System.nanoTime() - startTime,
+                queryMemory == null ? 0L : queryMemory.getPeakReservedBytes(), getSpilledBytes(this));
+    }
+
+    /**
+     * @return the bytes spilled to disk by the operations of the tree, as recorded in their contexts
+     */
+    private static long getSpilledBytes(SpliceOperation operation) {
+        OperationContext context = operation.getOperationContext();
+        long spilledBytes = context == null ? 0L : context.getSpilledBytes();
+        for (SpliceOperation subOperation : operation.getSubOperations()) {
+            spilledBytes += getSpilledBytes(subOperation);
+        }
+        return spilledBytes;
     }
 
     protected void computeModifiedRows() throws StandardException {
@@ -21,13 +21,16 @@ import com.splicemachine.db.iapi.services.context.ContextService;
 import com.splicemachine.db.iapi.services.io.FormatableBitSet;
 import com.splicemachine.db.iapi.services.loader.GeneratedMethod;
 import com.splicemachine.db.iapi.sql.Activation;
+import com.splicemachine.db.iapi.sql.execute.ExecIndexRow;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
 import com.splicemachine.db.iapi.store.access.StaticCompiledOpenConglomInfo;
 import com.splicemachine.db.iapi.store.access.TransactionController;
 import com.splicemachine.db.iapi.store.access.conglomerate.TransactionManager;
 import com.splicemachine.db.iapi.store.raw.Transaction;
 import com.splicemachine.db.impl.sql.compile.ActivationClassBuilder;
 import com.splicemachine.db.impl.sql.compile.FromTable;
+import com.splicemachine.db.impl.sql.execute.BaseActivation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperationContext;
 import com.splicemachine.derby.impl.store.access.BaseSpliceTransaction;
@@ -374,6 +377,56 @@ public class TableScanOperation extends ScanOperation{
         return getTransaction();
     }
 
+    /**
+     * Whether this scan reads at most one row, by the value of its whole primary key, so it can be looked up
+     * with {@link #getLookupKey()} instead. The start key of the scan is evaluated, so the rows it depends on,
+     * like the outer row of a nested loop join, must be set.
+     *
+     * @return true if the scan is a primary key lookup without qualifiers
+     */
+    public boolean isPrimaryKeyLookup() throws StandardException{
+        if(getClass()!=TableScanOperation.class || pin || forUpdate || rowIdKey || indexName!=null
+                || (storedAs!=null && !storedAs.isEmpty()) || !scanInformation.getSameStartStopPosition())
+            return false;
+        BaseActivation ba=(BaseActivation)activation;
+        if(ba.getScanStartOverride()!=null || ba.getScanStopOverride()!=null)
+            return false;
+        Qualifier[][] qualifiers=scanInformation.getScanQualifiers();
+        if(qualifiers!=null){
+            for(Qualifier[] qualifierGroup : qualifiers){
+                if(qualifierGroup!=null && qualifierGroup.length>0)
+                    return false;
+            }
+        }
+        FormatableBitSet defaultValueMap=scanInformation.getDefaultValueMap();
+        if(defaultValueMap!=null && defaultValueMap.getNumBitsSet()>0)
+            return false;
+        int[] columnOrdering=scanInformation.getColumnOrdering();
+        ExecIndexRow startPosition=scanInformation.getStartPosition();
+        return columnOrdering!=null && columnOrdering.length>0
+                && startPosition!=null && startPosition.nColumns()==columnOrdering.length;
+    }
+
+    /**
+     * Whether the consumer of this scan may evaluate its qualifiers itself, see
+     * {@link #setQualifiersDeferred(boolean)}. Only scans of native tables returning their rows through
+     * {@link com.splicemachine.derby.stream.iterator.TableScannerIterator} qualify.
+     *
+     * @return true if the qualifiers of this scan can be deferred
+     */
+    public boolean canDeferQualifiers(){
+        return getClass()==TableScanOperation.class && !pin && !forUpdate && !rowIdKey
+                && (storedAs==null || storedAs.isEmpty());
+    }
+
+    /**
+     * @return the row key looked up by this scan, for the current values of its start position
+     * @see #isPrimaryKeyLookup()
+     */
+    public byte[] getLookupKey() throws StandardException{
+        return getScan().getStartKey();
+    }
+
     /**
      * @return the Table Scan Builder for creating the actual data set from a scan.
      * @throws StandardException
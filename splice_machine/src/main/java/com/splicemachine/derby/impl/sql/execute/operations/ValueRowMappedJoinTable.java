@@ -19,6 +19,7 @@ import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.db.impl.sql.execute.ValueRow;
 import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.derby.stream.control.ControlUtils;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -75,5 +76,17 @@ class ValueRowMappedJoinTable implements JoinTable{
         public JoinTable newTable(){
             return new ValueRowMappedJoinTable(table, outerHashKeys);
         }
+
+        @Override
+        public long getMemoryUsage(){
+            long size=0L;
+            for(Map.Entry<ValueRow,List<ExecRow>> entry : table.entrySet()){
+                size+=ControlUtils.estimateMemoryUsage(entry.getKey());
+                for(ExecRow row : entry.getValue()){
+                    size+=ControlUtils.estimateMemoryUsage(row);
+                }
+            }
+            return size;
+        }
     }
 }
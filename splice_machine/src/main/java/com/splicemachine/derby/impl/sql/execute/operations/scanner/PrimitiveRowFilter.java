@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations.scanner;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.Orderable;
+import com.splicemachine.derby.utils.marshall.dvd.TypeProvider;
+import com.splicemachine.encoding.Encoding;
+import com.splicemachine.storage.ByteEntryAccumulator;
+import com.splicemachine.utils.ByteSlice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates the qualifiers of a scan which compare a numeric column with a constant directly on the encoded fields
+ * of a row, before the row is decoded into its {@link DataValueDescriptor}s, so that the rows they reject are never
+ * materialized.
+ *
+ * Only the AND-ed qualifiers on integer, real and double columns stored in the row value are evaluated here, and a
+ * row whose field is missing (null, or to be filled with its default) is never rejected; the scan still evaluates
+ * all its qualifiers on the rows accepted.
+ *
+ * @see com.splicemachine.derby.utils.Scans#qualifyRecordFromRow
+ */
+class PrimitiveRowFilter{
+    private final ColumnPredicate[] predicates;
+
+    private PrimitiveRowFilter(ColumnPredicate[] predicates){
+        this.predicates=predicates;
+    }
+
+    /**
+     * @param qualifiers the qualifiers of the scan
+     * @param baseColumnMap the map from storage positions to positions in the row, or null if they match
+     * @param probeValue the value replacing the orderable of the first qualifier, or null
+     * @param template the row the scan decodes into
+     * @param rowDecodingMap the map from positions of fields in the row value to positions in the row
+     * @return a filter evaluating the qualifiers which can be evaluated on encoded fields, or null if none can be
+     */
+    static PrimitiveRowFilter create(Qualifier[][] qualifiers,
+                                     int[] baseColumnMap,
+                                     DataValueDescriptor probeValue,
+                                     ExecRow template,
+                                     int[] rowDecodingMap,
+                                     TypeProvider typeProvider) throws StandardException{
+        if(qualifiers==null || qualifiers.length==0 || rowDecodingMap==null)
+            return null;
+        List<ColumnPredicate> predicates=new ArrayList<>(qualifiers[0].length);
+        for(int i=probeValue==null?0:1;i<qualifiers[0].length;i++){
+            ColumnPredicate predicate=predicate(qualifiers[0][i],baseColumnMap,template,rowDecodingMap,typeProvider);
+            if(predicate!=null)
+                predicates.add(predicate);
+        }
+        if(predicates.isEmpty())
+            return null;
+        return new PrimitiveRowFilter(predicates.toArray(new ColumnPredicate[predicates.size()]));
+    }
+
+    /**
+     * @return false if the fields accumulated for the current row fail one of the qualifiers
+     */
+    boolean matches(ByteEntryAccumulator accumulator){
+        for(ColumnPredicate predicate : predicates){
+            if(!accumulator.hasField(predicate.field))
+                continue;
+            ByteSlice slice=accumulator.getField(predicate.field,false);
+            if(slice==null || slice.array()==null || slice.length()<=0)
+                continue;
+            if(!predicate.matches(slice.array(),slice.offset()))
+                return false;
+        }
+        return true;
+    }
+
+    int size(){
+        return predicates.length;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private static ColumnPredicate predicate(Qualifier qualifier,
+                                             int[] baseColumnMap,
+                                             ExecRow template,
+                                             int[] rowDecodingMap,
+                                             TypeProvider typeProvider) throws StandardException{
+        // the orderable of a variant qualifier may change within the scan
+        if(qualifier.getVariantType()<Qualifier.SCAN_INVARIANT)
+            return null;
+        int operator=qualifier.getOperator();
+        if(operator<Orderable.ORDER_OP_LESSTHAN || operator>Orderable.ORDER_OP_GREATEROREQUALS)
+            return null;
+        int storagePosition=qualifier.getStoragePosition();
+        int column=baseColumnMap!=null?baseColumnMap[storagePosition]:storagePosition;
+        if(column<0 || column>=template.nColumns())
+            return null;
+        int field=-1;
+        for(int i=0;i<rowDecodingMap.length;i++){
+            if(rowDecodingMap[i]==column){
+                field=i;
+                break;
+            }
+        }
+        if(field<0)
+            return null; // a key column, or not stored in the row value
+
+        DataValueDescriptor dvd=template.getColumn(column+1);
+        if(dvd==null)
+            return null;
+        qualifier.clearOrderableCache();
+        DataValueDescriptor orderable=qualifier.getOrderable();
+        if(orderable==null || orderable.isNull())
+            return null;
+        int typeFormatId=dvd.getTypeFormatId();
+        boolean negate=qualifier.negateCompareResult();
+        if(typeProvider.isScalar(typeFormatId)){
+            if(!isIntegral(orderable.getTypeFormatId()))
+                return null;
+            return new ScalarPredicate(field,operator,negate,typeFormatId,orderable.getLong());
+        }else if(typeFormatId==StoredFormatIds.SQL_DOUBLE_ID && typeProvider.isDouble(typeFormatId)){
+            if(!isNumeric(orderable.getTypeFormatId()))
+                return null;
+            return new DoublePredicate(field,operator,negate,false,orderable.getDouble());
+        }else if(typeFormatId==StoredFormatIds.SQL_REAL_ID && typeProvider.isFloat(typeFormatId)){
+            // SQLReal compares as floats, unless compared with a double
+            int orderableType=orderable.getTypeFormatId();
+            if(orderableType==StoredFormatIds.SQL_REAL_ID)
+                return new DoublePredicate(field,operator,negate,true,orderable.getFloat());
+            else if(orderableType==StoredFormatIds.SQL_DOUBLE_ID)
+                return new DoublePredicate(field,operator,negate,true,orderable.getDouble());
+            return null;
+        }
+        return null;
+    }
+
+    private static boolean isIntegral(int typeFormatId){
+        switch(typeFormatId){
+            case StoredFormatIds.SQL_TINYINT_ID:
+            case StoredFormatIds.SQL_SMALLINT_ID:
+            case StoredFormatIds.SQL_INTEGER_ID:
+            case StoredFormatIds.SQL_LONGINT_ID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isNumeric(int typeFormatId){
+        return isIntegral(typeFormatId)
+                || typeFormatId==StoredFormatIds.SQL_REAL_ID
+                || typeFormatId==StoredFormatIds.SQL_DOUBLE_ID;
+    }
+
+    private static boolean compare(int operator,int comparison){
+        switch(operator){
+            case Orderable.ORDER_OP_LESSTHAN:
+                return comparison<0;
+            case Orderable.ORDER_OP_EQUALS:
+                return comparison==0;
+            case Orderable.ORDER_OP_LESSOREQUALS:
+                return comparison<=0;
+            case Orderable.ORDER_OP_GREATERTHAN:
+                return comparison>0;
+            case Orderable.ORDER_OP_GREATEROREQUALS:
+                return comparison>=0;
+            default:
+                throw new IllegalArgumentException("Unexpected operator "+operator);
+        }
+    }
+
+    private static abstract class ColumnPredicate{
+        final int field;
+        final int operator;
+        final boolean negate;
+
+        ColumnPredicate(int field,int operator,boolean negate){
+            this.field=field;
+            this.operator=operator;
+            this.negate=negate;
+        }
+
+        boolean matches(byte[] data,int offset){
+            return compare(operator,compareTo(data,offset))!=negate;
+        }
+
+        abstract int compareTo(byte[] data,int offset);
+    }
+
+    private static class ScalarPredicate extends ColumnPredicate{
+        private final int typeFormatId;
+        private final long value;
+
+        ScalarPredicate(int field,int operator,boolean negate,int typeFormatId,long value){
+            super(field,operator,negate);
+            this.typeFormatId=typeFormatId;
+            this.value=value;
+        }
+
+        @Override
+        int compareTo(byte[] data,int offset){
+            long columnValue;
+            switch(typeFormatId){
+                case StoredFormatIds.SQL_TINYINT_ID:
+                    columnValue=Encoding.decodeByte(data,offset,false);
+                    break;
+                case StoredFormatIds.SQL_SMALLINT_ID:
+                    columnValue=Encoding.decodeShort(data,offset,false);
+                    break;
+                case StoredFormatIds.SQL_INTEGER_ID:
+                    columnValue=Encoding.decodeInt(data,offset,false);
+                    break;
+                default:
+                    columnValue=Encoding.decodeLong(data,offset,false);
+            }
+            return Long.compare(columnValue,value);
+        }
+    }
+
+    private static class DoublePredicate extends ColumnPredicate{
+        private final boolean isFloat;
+        private final double value;
+
+        DoublePredicate(int field,int operator,boolean negate,boolean isFloat,double value){
+            super(field,operator,negate);
+            this.isFloat=isFloat;
+            this.value=value;
+        }
+
+        @Override
+        int compareTo(byte[] data,int offset){
+            double columnValue=isFloat?Encoding.decodeFloat(data,offset,false):Encoding.decodeDouble(data,offset,false);
+            // the same comparison as SQLDouble and SQLReal, which don't order -0.0 before 0.0
+            return columnValue<value?-1:(columnValue>value?1:0);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.services.io.FormatableBitSet;
 import com.splicemachine.db.iapi.services.io.StoredFormatIds;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
 import com.splicemachine.db.iapi.types.RowLocation;
 import com.splicemachine.derby.impl.store.ExecRowAccumulator;
 import com.splicemachine.db.iapi.types.HBaseRowLocation;
@@ -90,6 +91,9 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
     private DataValueDescriptor optionalProbeValue;
     private ExecRow defaultRow;
     private FormatableBitSet defaultValueMap;
+    private Qualifier[][] qualifiers;
+    private int[] baseColumnMap;
+    private PrimitiveRowFilter rowFilter;
 
     protected SITableScanner(DataScanner scanner,
                              final TransactionalRegion region,
@@ -190,6 +194,15 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
         this.optionalProbeValue = optionalProbeValue;
     }
 
+    /**
+     * Lets this scanner reject the rows which fail the qualifiers of the scan which can be evaluated on their encoded
+     * fields before decoding them. The caller still has to evaluate the qualifiers on the rows returned.
+     */
+    public void setQualifiers(Qualifier[][] qualifiers,int[] baseColumnMap){
+        this.qualifiers=qualifiers;
+        this.baseColumnMap=baseColumnMap;
+    }
+
     @Override
     public void open() throws StandardException, IOException {
 
@@ -384,6 +397,16 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
             boolean isCountStar = scan.getAttribute(SIConstants.SI_COUNT_STAR)!=null;
             predicateFilter= buildInitialPredicateFilter();
             accumulator = ExecRowAccumulator.newAccumulator(predicateFilter, false, template, rowDecodingMap, tableVersion);
+            if(qualifiers!=null && !isCountStar){
+                try{
+                    rowFilter=PrimitiveRowFilter.create(qualifiers,baseColumnMap,optionalProbeValue,template,
+                            rowDecodingMap,VersionedSerializers.typesForVersion(tableVersion));
+                }catch(StandardException e){
+                    throw new IOException(e);
+                }
+                if(rowFilter!=null && !accumulator.deferDecoding())
+                    rowFilter=null;
+            }
             siFilter = filterFactory.newFilter(predicateFilter,getRowEntryDecoder(),accumulator,isCountStar);
         }
         return siFilter;
@@ -460,7 +483,14 @@ public class SITableScanner<Data> implements StandardIterator<ExecRow>,AutoClose
                     //these are okay--they mean the encoding is good
             }
         }
-        return numCells > 0 && filter.getAccumulator().result() != null;
+        if(numCells<=0)
+            return false;
+        if(rowFilter!=null){
+            if(!rowFilter.matches(accumulator))
+                return false;
+            accumulator.decodeFields();
+        }
+        return filter.getAccumulator().result() != null;
     }
 
     private boolean filterRowKey(DataCell data) throws IOException {
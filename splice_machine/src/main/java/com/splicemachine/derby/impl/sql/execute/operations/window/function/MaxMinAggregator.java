@@ -17,6 +17,7 @@ package com.splicemachine.derby.impl.sql.execute.operations.window.function;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayList;
 
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.services.io.FormatableHashtable;
@@ -32,6 +33,18 @@ import com.splicemachine.db.iapi.types.DataValueDescriptor;
 public class MaxMinAggregator extends SpliceGenericWindowFunction {
     private boolean isMax;
 
+    /*
+     * Values leave the frame in the order they came in, so the frame is kept as a queue made of two stacks. Each
+     * value of the front stack is paired with the max/min of itself and of the values which came in after it.
+     * Adding or removing a value and reading the max/min of the frame are amortized constant time, where
+     * recomputing the max/min of the frame after a removal is linear in its size.
+     * The fields have no initializers since reset() is called from the super constructor.
+     */
+    private ArrayList<DataValueDescriptor[]> front;
+    private ArrayList<DataValueDescriptor> frontResults;
+    private ArrayList<DataValueDescriptor[]> back;
+    private DataValueDescriptor backResult;
+
     @Override
     public WindowFunction setup( ClassFactory cf, String aggregateName, DataTypeDescriptor returnType,
                                  FormatableHashtable functionSpecificArgs) {
@@ -42,67 +55,67 @@ public class MaxMinAggregator extends SpliceGenericWindowFunction {
 
     @Override
     public void accumulate(DataValueDescriptor[] valueDescriptors) throws StandardException {
-        this.add(valueDescriptors);
+        back.add(valueDescriptors);
+        backResult = best(backResult, valueDescriptors[0]);
     }
 
     @Override
-    protected void calculateOnAdd(WindowChunk chunk, DataValueDescriptor[] dvd) throws StandardException{
-        DataValueDescriptor result = chunk.getResult();
-        if (result == null || result.isNull()) {
-            chunk.setResult(dvd[0]);
-        } else if (dvd[0] == null || dvd[0].isNull()) {
-            return;
-        } else if(isMax && dvd[0].compare(result) > 0) {
-            chunk.setResult(dvd[0]);
-        }
-        else if (!isMax && dvd[0].compare(result) < 0) {
-            chunk.setResult(dvd[0]);
+    public DataValueDescriptor[] remove() throws StandardException {
+        if (front.isEmpty()) {
+            // reverse the back stack onto the front one, computing the running max/min from the newest value
+            for (int i = back.size() - 1; i >= 0; --i) {
+                DataValueDescriptor[] dvds = back.get(i);
+                front.add(dvds);
+                frontResults.add(best(frontResults.isEmpty() ? null : frontResults.get(frontResults.size() - 1), dvds[0]));
+            }
+            back.clear();
+            backResult = null;
+            if (front.isEmpty()) {
+                return null;
+            }
         }
+        frontResults.remove(frontResults.size() - 1);
+        return front.remove(front.size() - 1);
     }
 
     @Override
-    protected void calculateOnRemove(WindowChunk chunk, DataValueDescriptor[] dvds) throws StandardException {
-        DataValueDescriptor result = chunk.getResult();
-        if (dvds[0].compare(result) == 0) {
-            recalculate(chunk);
-        }
+    public void reset() {
+        super.reset();
+        front = new ArrayList<>();
+        frontResults = new ArrayList<>();
+        back = new ArrayList<>();
+        backResult = null;
     }
 
-    private void recalculate(WindowChunk chunk) throws StandardException{
-        DataValueDescriptor result = chunk.get(chunk.first)[0];
+    @Override
+    protected void calculateOnAdd(WindowChunk chunk, DataValueDescriptor[] dvd) throws StandardException{
+        // the frame is not kept in chunks, see accumulate()
+    }
 
-        for (int i = chunk.first+1; i < chunk.last; ++i) {
-            DataValueDescriptor dvd = chunk.get(i)[0];
-            if (isMax) {
-                if (dvd.compare(result) > 0) {
-                    result = dvd;
-                }
-            }
-            else {
-                if (dvd.compare(result) < 0) {
-                    result = dvd;
-                }
-            }
+    @Override
+    protected void calculateOnRemove(WindowChunk chunk, DataValueDescriptor[] dvds) throws StandardException {
+        // the frame is not kept in chunks, see remove()
+    }
+
+    /**
+     * @return the larger (or smaller) of the two values, ignoring null values
+     */
+    private DataValueDescriptor best(DataValueDescriptor current, DataValueDescriptor dvd) throws StandardException {
+        if (current == null || current.isNull()) {
+            return dvd == null ? current : dvd;
+        }
+        if (dvd == null || dvd.isNull()) {
+            return current;
         }
-        chunk.setResult(result);
+        int comparison = dvd.compare(current);
+        return (isMax ? comparison > 0 : comparison < 0) ? dvd : current;
     }
 
     public DataValueDescriptor getResult() throws StandardException {
-        // Iterate through each chunk, compute the max/min of each chunk
-        WindowChunk first = chunks.get(0);
-        DataValueDescriptor result = first.getResult();
-        for (int i = 1; i < chunks.size(); ++i) {
-            DataValueDescriptor dvd = chunks.get(i).getResult();
-            if (isMax) {
-                if (dvd.compare(result) > 0) {
-                    result = dvd;
-                }
-            }
-            else {
-                if (dvd.compare(result) < 0) {
-                    result = dvd;
-                }
-            }
+        DataValueDescriptor result = best(frontResults.isEmpty() ? null : frontResults.get(frontResults.size() - 1), backResult);
+        if (result == null && resultType != null) {
+            // empty frame
+            return resultType.getNewNull();
         }
         return result;
     }
@@ -249,6 +249,15 @@ public abstract class SpliceGenericWindowFunction implements WindowFunction {
         return null;
     }
 
+    /**
+     * @return true if the function only knows its results once it has seen the entire frame, which it returns
+     * from {@link #finishFrame()}. The rows of a partition are held until the end of the partition if any of
+     * its functions does.
+     */
+    public boolean needsWholeFrame() {
+        return false;
+    }
+
     @Override
     public boolean isUserDefinedAggregator() {
         return false;
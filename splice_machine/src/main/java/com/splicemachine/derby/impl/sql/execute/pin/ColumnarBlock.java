@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.pin;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.Orderable;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.utils.UnsafeUtil;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable block of consecutive rows of a pinned table, stored off-heap, column by column.
+ *
+ * Each column is a sequence of runs of equal values, written as the length of the run, the length of the value,
+ * -1 for null, and the value itself, in the encoding rows use in storage. The row keys are stored the same way. The
+ * minimum and maximum values of each column, and the first and last row keys, are kept on-heap, so a scan skips
+ * the blocks which can't have rows in its key range or matching its qualifiers without decoding them.
+ */
+class ColumnarBlock{
+    private static final Method INVOKE_CLEANER=invokeCleaner();
+
+    private final int rowCount;
+    private final ByteBuffer keys;
+    private final ByteBuffer[] columns;
+    private final DataValueDescriptor[] min;
+    private final DataValueDescriptor[] max;
+    private final byte[] firstKey;
+    private final byte[] lastKey;
+    private final long sizeInBytes;
+    private final AtomicInteger snapshots=new AtomicInteger();
+
+    private ColumnarBlock(int rowCount,ByteBuffer keys,ByteBuffer[] columns,
+                          DataValueDescriptor[] min,DataValueDescriptor[] max,byte[] firstKey,byte[] lastKey){
+        this.rowCount=rowCount;
+        this.keys=keys;
+        this.columns=columns;
+        this.min=min;
+        this.max=max;
+        this.firstKey=firstKey;
+        this.lastKey=lastKey;
+        long size=keys.capacity();
+        for(ByteBuffer column : columns){
+            size+=column.capacity();
+        }
+        this.sizeInBytes=size;
+    }
+
+    int rowCount(){
+        return rowCount;
+    }
+
+    long sizeInBytes(){
+        return sizeInBytes;
+    }
+
+    /**
+     * Counts a snapshot which has this block.
+     */
+    void retain(){
+        snapshots.incrementAndGet();
+    }
+
+    /**
+     * Frees the memory of this block once no snapshot has it anymore.
+     */
+    void release(){
+        if(snapshots.decrementAndGet()==0){
+            free(keys);
+            for(ByteBuffer column : columns){
+                free(column);
+            }
+        }
+    }
+
+    byte[] firstKey(){
+        return firstKey;
+    }
+
+    byte[] lastKey(){
+        return lastKey;
+    }
+
+    /**
+     * @param startKey the first key of the range, empty for no lower bound
+     * @param stopKey the key after the range, empty for no upper bound
+     * @return whether some rows of this block may be in the range
+     */
+    boolean overlaps(byte[] startKey,byte[] stopKey){
+        if(startKey!=null && startKey.length>0 && Bytes.BASE_COMPARATOR.compare(lastKey,startKey)<0)
+            return false;
+        return stopKey==null || stopKey.length==0 || Bytes.BASE_COMPARATOR.compare(firstKey,stopKey)<0;
+    }
+
+    /**
+     * Tells whether some rows of this block may match the conjunctive qualifiers of a scan, from the minimum and
+     * maximum values of their columns. The disjunctive qualifiers aren't used.
+     *
+     * @param qualifiers the qualifiers, whose storage positions are the positions of the columns in the table
+     */
+    boolean mayMatch(Qualifier[][] qualifiers) throws StandardException{
+        if(qualifiers==null || qualifiers.length==0)
+            return true;
+        for(Qualifier q : qualifiers[0]){
+            int column=q.getStoragePosition();
+            if(column<0 || column>=columns.length || q.getOrderedNulls())
+                continue;
+            if(min[column]==null)
+                return false; // only nulls, which compare to nothing
+            q.clearOrderableCache();
+            DataValueDescriptor value=q.getOrderable();
+            if(value==null || value.isNull())
+                continue;
+            if(!rangeMayMatch(q.getOperator(),q.negateCompareResult(),min[column],max[column],value))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the rows of this block which are in a key range.
+     *
+     * @param template the row to decode into, which is cloned for each row
+     * @param baseColumnMap the position in the template of each column of the table, -1 for the ones not read
+     * @param serializers the serializers of the columns of the table
+     */
+    List<ExecRow> decode(ExecRow template,int[] baseColumnMap,DescriptorSerializer[] serializers,
+                         byte[] startKey,byte[] stopKey) throws StandardException{
+        List<ExecRow> rows=new ArrayList<>(rowCount);
+        ColumnReader keyReader=new ColumnReader(keys);
+        ColumnReader[] readers=new ColumnReader[columns.length];
+        for(int i=0;i<baseColumnMap.length && i<columns.length;i++){
+            if(baseColumnMap[i]>=0)
+                readers[i]=new ColumnReader(columns[i]);
+        }
+        for(int r=0;r<rowCount;r++){
+            keyReader.next();
+            byte[] key=keyReader.copyValue();
+            boolean inRange=(startKey==null || startKey.length==0 || Bytes.BASE_COMPARATOR.compare(key,startKey)>=0)
+                    && (stopKey==null || stopKey.length==0 || Bytes.BASE_COMPARATOR.compare(key,stopKey)<0);
+            ExecRow row=inRange?template.getNewNullRow():null;
+            for(int i=0;i<readers.length;i++){
+                ColumnReader reader=readers[i];
+                if(reader==null)
+                    continue;
+                reader.next();
+                if(row==null)
+                    continue;
+                DataValueDescriptor dvd=row.getColumn(baseColumnMap[i]+1);
+                if(reader.length<0)
+                    dvd.restoreToNull();
+                else
+                    serializers[i].decodeDirect(dvd,reader.value,0,reader.length,false);
+            }
+            if(row!=null){
+                row.setKey(key);
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    /**
+     * Frees a direct buffer now, rather than when it's collected, which may be long after its snapshot was replaced.
+     */
+    private static void free(ByteBuffer buffer){
+        if(!buffer.isDirect())
+            return;
+        try{
+            if(INVOKE_CLEANER!=null){
+                INVOKE_CLEANER.invoke(UnsafeUtil.unsafe(),buffer);
+                return;
+            }
+            Method cleanerMethod=buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner=cleanerMethod.invoke(buffer);
+            if(cleaner!=null)
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }catch(ReflectiveOperationException | RuntimeException e){
+            // the buffer is freed when it's collected
+        }
+    }
+
+    /**
+     * @return Unsafe.invokeCleaner, which frees direct buffers since Java 9, or null before
+     */
+    private static Method invokeCleaner(){
+        try{
+            return UnsafeUtil.unsafe().getClass().getMethod("invokeCleaner",ByteBuffer.class);
+        }catch(NoSuchMethodException e){
+            return null;
+        }
+    }
+
+    private static boolean rangeMayMatch(int operator,boolean negate,DataValueDescriptor min,DataValueDescriptor max,
+                                         DataValueDescriptor value) throws StandardException{
+        switch(operator){
+            case Orderable.ORDER_OP_EQUALS:
+                if(negate) // col <> value
+                    return !(min.compare(value)==0 && max.compare(value)==0);
+                return min.compare(value)<=0 && max.compare(value)>=0;
+            case Orderable.ORDER_OP_LESSTHAN:
+                return negate?max.compare(value)>=0:min.compare(value)<0;
+            case Orderable.ORDER_OP_LESSOREQUALS:
+                return negate?max.compare(value)>0:min.compare(value)<=0;
+            case Orderable.ORDER_OP_GREATERTHAN:
+                return negate?min.compare(value)<=0:max.compare(value)>0;
+            case Orderable.ORDER_OP_GREATEROREQUALS:
+                return negate?min.compare(value)<0:max.compare(value)>=0;
+            default:
+                return true;
+        }
+    }
+
+    private static final class ColumnReader{
+        private final ByteBuffer buffer;
+        private int remaining;
+        private int length;
+        private byte[] value=new byte[32];
+
+        ColumnReader(ByteBuffer buffer){
+            // each reader has its own position, so blocks can be read concurrently
+            this.buffer=buffer.duplicate();
+            this.buffer.rewind();
+        }
+
+        void next(){
+            if(remaining==0){
+                remaining=buffer.getInt();
+                length=buffer.getInt();
+                if(length>0){
+                    if(value.length<length)
+                        value=new byte[Math.max(length,2*value.length)];
+                    buffer.get(value,0,length);
+                }
+            }
+            remaining--;
+        }
+
+        byte[] copyValue(){
+            return Arrays.copyOf(value,Math.max(length,0));
+        }
+    }
+
+    private static final class ColumnWriter{
+        private byte[] data=new byte[1024];
+        private int position;
+        private int runPosition=-1;
+        private byte[] previous;
+
+        void add(byte[] value){
+            if(runPosition>=0 && Arrays.equals(previous,value)){
+                writeInt(runPosition,readInt(runPosition)+1);
+                return;
+            }
+            int length=value==null?-1:value.length;
+            ensureCapacity(8+Math.max(length,0));
+            runPosition=position;
+            writeInt(position,1);
+            writeInt(position+4,length);
+            position+=8;
+            if(length>0){
+                System.arraycopy(value,0,data,position,length);
+                position+=length;
+            }
+            previous=value;
+        }
+
+        ByteBuffer build(){
+            ByteBuffer buffer=ByteBuffer.allocateDirect(position);
+            buffer.put(data,0,position);
+            buffer.flip();
+            return buffer;
+        }
+
+        private void ensureCapacity(int bytes){
+            if(position+bytes>data.length)
+                data=Arrays.copyOf(data,Math.max(position+bytes,2*data.length));
+        }
+
+        private int readInt(int offset){
+            return ((data[offset]&0xff)<<24) | ((data[offset+1]&0xff)<<16) | ((data[offset+2]&0xff)<<8) | (data[offset+3]&0xff);
+        }
+
+        private void writeInt(int offset,int value){
+            data[offset]=(byte)(value>>>24);
+            data[offset+1]=(byte)(value>>>16);
+            data[offset+2]=(byte)(value>>>8);
+            data[offset+3]=(byte)value;
+        }
+    }
+
+    /**
+     * Encodes rows, which must be added in the order of their keys.
+     */
+    static class Builder{
+        private final DescriptorSerializer[] serializers;
+        private final ColumnWriter keys=new ColumnWriter();
+        private final ColumnWriter[] columns;
+        private final DataValueDescriptor[] min;
+        private final DataValueDescriptor[] max;
+        private byte[] firstKey;
+        private byte[] lastKey;
+        private int rowCount;
+
+        /**
+         * @param serializers the serializers of the columns of the table
+         */
+        Builder(DescriptorSerializer[] serializers){
+            this.serializers=serializers;
+            this.columns=new ColumnWriter[serializers.length];
+            for(int i=0;i<columns.length;i++){
+                columns[i]=new ColumnWriter();
+            }
+            this.min=new DataValueDescriptor[serializers.length];
+            this.max=new DataValueDescriptor[serializers.length];
+        }
+
+        /**
+         * @param row a row of the table, with all of its columns
+         */
+        void add(byte[] key,ExecRow row) throws StandardException{
+            // the keys may be reused by the caller
+            if(firstKey==null)
+                firstKey=Arrays.copyOf(key,key.length);
+            lastKey=Arrays.copyOf(key,key.length);
+            keys.add(key);
+            for(int i=0;i<columns.length;i++){
+                DataValueDescriptor dvd=row.getColumn(i+1);
+                if(dvd==null || dvd.isNull()){
+                    columns[i].add(null);
+                    continue;
+                }
+                columns[i].add(serializers[i].encodeDirect(dvd,false));
+                if(min[i]==null || dvd.compare(min[i])<0)
+                    min[i]=dvd.cloneValue(true);
+                if(max[i]==null || dvd.compare(max[i])>0)
+                    max[i]=dvd.cloneValue(true);
+            }
+            rowCount++;
+        }
+
+        int rowCount(){
+            return rowCount;
+        }
+
+        ColumnarBlock build(){
+            assert rowCount>0:"Empty block";
+            ByteBuffer[] buffers=new ByteBuffer[columns.length];
+            for(int i=0;i<columns.length;i++){
+                buffers[i]=columns[i].build();
+            }
+            return new ColumnarBlock(rowCount,keys.build(),buffers,min,max,firstKey,lastKey);
+        }
+    }
+}
@@ -46,6 +46,11 @@ public class DistributedIsCachedJob extends DistributedJob implements Externaliz
         return null;
     }
 
+    @Override
+    public boolean isAdmissionControlled() {
+        return false;
+    }
+
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeLong(conglomID);
@@ -56,6 +56,11 @@ public class DistributedPopulatePinJob extends DistributedJob implements Externa
         return null;
     }
 
+    @Override
+    public boolean isBackground() {
+        return true;
+    }
+
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeObject(scanSetBuilder);
@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.pin;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.FormatableBitSet;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataValueFactory;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.ddl.DDLUtils;
+import com.splicemachine.derby.impl.sql.execute.operations.ScanOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.TableScanOperation;
+import com.splicemachine.derby.impl.store.access.base.SpliceConglomerate;
+import com.splicemachine.derby.stream.iapi.DataSetProcessor;
+import com.splicemachine.derby.stream.iapi.ScanSetBuilder;
+import com.splicemachine.derby.utils.marshall.EntryDataDecoder;
+import com.splicemachine.derby.utils.marshall.KeyDecoder;
+import com.splicemachine.derby.utils.marshall.KeyHashDecoder;
+import com.splicemachine.derby.utils.marshall.NoOpKeyHashDecoder;
+import com.splicemachine.derby.utils.marshall.SkippingKeyDecoder;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.pipeline.Exceptions;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.api.data.TxnOperationFactory;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.constants.SIConstants;
+import com.splicemachine.si.impl.driver.SIDriver;
+import com.splicemachine.storage.Attributable;
+import com.splicemachine.storage.DataCell;
+import com.splicemachine.storage.DataResult;
+import com.splicemachine.storage.DataScan;
+import com.splicemachine.storage.DataScanner;
+import com.splicemachine.storage.EntryPredicateFilter;
+import com.splicemachine.storage.Partition;
+import com.splicemachine.storage.util.MapAttributes;
+import com.splicemachine.utils.IntArrays;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps snapshots of pinned tables in the memory of this server, off-heap, for the queries executed in control.
+ *
+ * A pinned table is read into the cache the first time a control side scan of it is asked to use its pin, with a
+ * read-only transaction of the cache, which sees the rows committed before it began. The scans of tables which
+ * aren't pinned read them from storage, and a table pinned after such a scan is cached once the refresh interval
+ * has elapsed. Dropping a pin, or its table, drops the snapshots of all the servers. Later scans read the snapshot,
+ * skipping the blocks which can't have rows matching their key range and qualifiers. When a snapshot is older than
+ * the refresh interval, the next scan refreshes it, with a new transaction: the keys of the rows written since the
+ * oldest transaction which could have been active when it was read are found with a scan of the table limited to
+ * those timestamps, and only those rows are read again, so only the blocks they fall into are rewritten. The
+ * off-heap memory of the blocks a refresh replaces is freed once the scans reading them are done.
+ *
+ * A snapshot only serves the scans whose transactions began after the one it was read with, so a scan never sees a
+ * row committed after it began; the older scans read the table from storage. Like the pins kept by Spark, the
+ * snapshots aren't transactional otherwise: a scan may not see the rows written since the last refresh, nor the
+ * uncommitted rows of its own transaction. The least recently used tables are evicted when the cache grows beyond
+ * its configured size, and the tables which don't fit at all are read from storage.
+ */
+public class PinnedTableCache{
+    private static final Logger LOG=Logger.getLogger(PinnedTableCache.class);
+    private static final int LOOKUP_BATCH_SIZE=1024;
+    private static final PinnedTableCache INSTANCE=new PinnedTableCache();
+
+    private final ConcurrentMap<Long,Entry> tables=new ConcurrentHashMap<>();
+
+    private PinnedTableCache(){}
+
+    public static PinnedTableCache cache(){
+        return INSTANCE;
+    }
+
+    /**
+     * @param op the scan of the pinned table
+     * @param dsp the control processor, with which the table is read
+     * @param txn the transaction of the scan
+     * @param scan the scan, whose start and stop keys are used
+     * @param template the row to return the columns read in
+     * @param baseColumnMap the position in the template of each column of the table, -1 for the ones not read
+     * @return the rows of the table read by the scan, which must still be qualified, or null if the table can't
+     * be cached and must be read from storage
+     */
+    public Iterator<ExecRow> read(ScanOperation op,DataSetProcessor dsp,TxnView txn,DataScan scan,
+                                  ExecRow template,int[] baseColumnMap) throws StandardException{
+        SConfiguration config=EngineDriver.driver().getConfiguration();
+        long maxSize=config.getPinControlCacheSize();
+        if(maxSize<=0 || !isCacheable(op))
+            return null;
+
+        long conglomId=op.getScanInformation().getConglomerateId();
+        Entry entry=tables.get(conglomId);
+        if(entry==null){
+            Entry newEntry=new Entry(conglomId);
+            entry=tables.putIfAbsent(conglomId,newEntry);
+            if(entry==null)
+                entry=newEntry;
+        }
+        PinnedTableSnapshot snapshot=entry.snapshot(op,dsp,txn,maxSize,config.getPinControlRefreshInterval());
+        if(snapshot==null)
+            return null;
+        // the snapshot was acquired for this scan, which releases it once it's read
+        evict(entry,maxSize);
+
+        // the qualifiers of a multi-probe scan are compared with each probe value, not with their orderable
+        Qualifier[][] qualifiers=op.getClass()==TableScanOperation.class && !op.getRowIdKey()
+                ?op.getScanInformation().getScanQualifiers():null;
+        return snapshot.scan(scan.getStartKey(),scan.getStopKey(),qualifiers,template,baseColumnMap);
+    }
+
+    /**
+     * Removes a table from the cache of this server, when its pin is dropped.
+     */
+    public void drop(long conglomId){
+        Entry entry=tables.remove(conglomId);
+        if(entry!=null)
+            entry.clear();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static boolean isCacheable(ScanOperation op) throws StandardException{
+        if(op.getStoredAs()!=null && !op.getStoredAs().isEmpty())
+            return false;
+        // columns added with a default aren't in the rows written before, and aren't filled from the snapshot
+        FormatableBitSet defaultValueMap=op.getScanInformation().getDefaultValueMap();
+        return defaultValueMap==null || defaultValueMap.getNumBitsSet()==0;
+    }
+
+    private void evict(Entry current,long maxSize){
+        long size=0L;
+        for(Entry entry : tables.values()){
+            size+=entry.sizeInBytes();
+        }
+        while(size>maxSize){
+            Entry oldest=null;
+            for(Entry entry : tables.values()){
+                if(entry!=current && entry.sizeInBytes()>0 && (oldest==null || entry.lastAccess<oldest.lastAccess))
+                    oldest=entry;
+            }
+            if(oldest==null)
+                return;
+            if(LOG.isDebugEnabled())
+                LOG.debug("Evicting pinned table "+oldest.conglomId+" from the control side cache");
+            size-=oldest.sizeInBytes();
+            oldest.clear();
+        }
+    }
+
+    private static class Entry{
+        private final long conglomId;
+        private volatile PinnedTableSnapshot snapshot;
+        private volatile long lastAccess;
+        private long uncacheableUntil;
+
+        Entry(long conglomId){
+            this.conglomId=conglomId;
+        }
+
+        long sizeInBytes(){
+            PinnedTableSnapshot s=snapshot;
+            return s==null?0L:s.sizeInBytes();
+        }
+
+        synchronized void clear(){
+            replace(null);
+        }
+
+        /**
+         * @return the snapshot of the table, acquired for the scan, or null if the scan must read the table from
+         * storage
+         */
+        synchronized PinnedTableSnapshot snapshot(ScanOperation op,DataSetProcessor dsp,TxnView txn,
+                                                  long maxSize,long refreshInterval) throws StandardException{
+            long now=System.currentTimeMillis();
+            lastAccess=now;
+            if(now<uncacheableUntil)
+                return null;
+            TableReader reader=new TableReader(op,conglomId);
+            PinnedTableSnapshot current=snapshot;
+            if(current!=null && (!Objects.equals(current.tableVersion(),reader.tableVersion)
+                    || current.template().nColumns()!=reader.template.nColumns()))
+                current=null; // the table was altered
+            if(current==null && !isPinned(conglomId)){
+                // like Spark, only serve the tables which were pinned
+                uncacheableUntil=now+refreshInterval;
+                return null;
+            }
+            if(current==null || now-current.refreshTime()>=refreshInterval){
+                Txn readTxn=beginReadTransaction();
+                try{
+                    current=current==null?reader.load(dsp,readTxn,now):reader.refresh(current,dsp,readTxn,now);
+                }finally{
+                    commit(readTxn);
+                }
+                if(current.sizeInBytes()>maxSize){
+                    LOG.info("Pinned table "+conglomId+" needs "+current.sizeInBytes()+" bytes, more than the "
+                            +maxSize+" bytes of the control side cache, it is read from storage");
+                    current.release();
+                    replace(null);
+                    uncacheableUntil=now+refreshInterval;
+                    return null;
+                }
+                replace(current);
+            }
+            // the snapshot could have rows committed after the scan began
+            if(txn.getEffectiveBeginTimestamp()<current.readTimestamp())
+                return null;
+            current.acquire();
+            return current;
+        }
+
+        private void replace(PinnedTableSnapshot next){
+            PinnedTableSnapshot previous=snapshot;
+            snapshot=next;
+            if(previous!=null && previous!=next)
+                previous.release();
+        }
+
+        private static boolean isPinned(long conglomId) throws StandardException{
+            try{
+                GetIsCachedResult result=EngineDriver.driver().getOlapClient().execute(new DistributedIsCachedJob(conglomId));
+                return result.isCached();
+            }catch(Exception e){
+                throw Exceptions.parseException(e);
+            }
+        }
+
+        private static Txn beginReadTransaction() throws StandardException{
+            try{
+                return SIDriver.driver().lifecycleManager().beginTransaction();
+            }catch(IOException e){
+                throw Exceptions.parseException(e);
+            }
+        }
+
+        private static void commit(Txn txn) throws StandardException{
+            try{
+                txn.commit();
+            }catch(IOException e){
+                throw Exceptions.parseException(e);
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of a pinned table from storage, with all of their columns.
+     */
+    private static class TableReader{
+        private final long conglomId;
+        private final String tableVersion;
+        private final SpliceConglomerate conglomerate;
+        private final int[] columnOrdering;
+        private final int[] baseColumnMap;
+        private final FormatableBitSet accessedKeyColumns;
+        private final ExecRow template;
+
+        TableReader(ScanOperation op,long conglomId) throws StandardException{
+            this.conglomId=conglomId;
+            this.tableVersion=op.getTableVersion();
+            this.conglomerate=op.getScanInformation().getConglomerate();
+            int[] ordering=conglomerate.getColumnOrdering();
+            this.columnOrdering=ordering==null?new int[0]:ordering;
+            int[] formatIds=conglomerate.getFormat_ids();
+            int[] collationIds=conglomerate.getCollation_ids();
+            this.baseColumnMap=IntArrays.count(formatIds.length);
+            this.accessedKeyColumns=new FormatableBitSet(columnOrdering.length);
+            for(int i=0;i<columnOrdering.length;i++){
+                accessedKeyColumns.set(i);
+            }
+            DataValueFactory dvf=op.getActivation().getLanguageConnectionContext().getDataValueFactory();
+            this.template=new ValueRow(formatIds.length);
+            for(int i=0;i<formatIds.length;i++){
+                template.setColumn(i+1,dvf.getNull(formatIds[i],collationIds==null?-1:collationIds[i]));
+            }
+        }
+
+        PinnedTableSnapshot load(DataSetProcessor dsp,TxnView txn,long now) throws StandardException{
+            long changesSince=changesSince(txn);
+            ScanSetBuilder<ExecRow> builder=dsp.newScanSet(null,Long.toString(conglomId));
+            builder.transaction(txn)
+                    .tableVersion(tableVersion)
+                    .scan(DDLUtils.createFullScan())
+                    .keyColumnEncodingOrder(columnOrdering)
+                    .reuseRowLocation(true)
+                    .keyColumnSortOrder(conglomerate.getAscDescInfo())
+                    .baseColumnMap(baseColumnMap)
+                    .keyColumnTypes(ScanOperation.getKeyFormatIds(columnOrdering,conglomerate.getFormat_ids()))
+                    .keyDecodingMap(ScanOperation.getKeyDecodingMap(accessedKeyColumns,columnOrdering,baseColumnMap))
+                    .rowDecodingMap(ScanOperation.getRowDecodingMap(accessedKeyColumns,columnOrdering,baseColumnMap))
+                    .accessedKeyColumns(accessedKeyColumns)
+                    .template(template.getClone());
+            PinnedTableSnapshot snapshot=PinnedTableSnapshot.create(builder.buildDataSet().toLocalIterator(),
+                    template.getClone(),tableVersion,txn.getBeginTimestamp(),changesSince,now);
+            if(LOG.isDebugEnabled())
+                LOG.debug("Loaded pinned table "+conglomId+": "+snapshot.rowCount()+" rows in "+snapshot.sizeInBytes()+" bytes");
+            return snapshot;
+        }
+
+        PinnedTableSnapshot refresh(PinnedTableSnapshot snapshot,DataSetProcessor dsp,TxnView txn,long now) throws StandardException{
+            long changesSince=changesSince(txn);
+            NavigableSet<byte[]> keys=changedKeys(snapshot.changesSince());
+            if(keys.size()>snapshot.rowCount()/4+PinnedTableSnapshot.BLOCK_ROWS)
+                return load(dsp,txn,now); // most blocks would be rewritten anyway
+            NavigableMap<byte[],ExecRow> changes=readRows(keys,txn);
+            if(LOG.isDebugEnabled())
+                LOG.debug("Refreshing pinned table "+conglomId+" with "+changes.size()+" written rows");
+            return snapshot.merge(changes,txn.getBeginTimestamp(),changesSince,now);
+        }
+
+        /**
+         * @return the oldest timestamp the rows which aren't visible to the transaction may have been written at
+         */
+        private long changesSince(TxnView txn) throws StandardException{
+            long since=txn.getBeginTimestamp();
+            try{
+                long[] active=SIDriver.driver().getTxnStore().getActiveTransactionIds(0L,since,
+                        Bytes.toBytes(Long.toString(conglomId)));
+                for(long txnId : active){
+                    since=Math.min(since,txnId);
+                }
+            }catch(Exception e){
+                throw Exceptions.parseException(e);
+            }
+            return since;
+        }
+
+        private NavigableSet<byte[]> changedKeys(long since) throws StandardException{
+            DataScan scan=DDLUtils.createFullScan();
+            ScanOperation.deSiify(scan);
+            scan.setTimeRange(since,Long.MAX_VALUE);
+            NavigableSet<byte[]> keys=new TreeSet<>(Bytes.BASE_COMPARATOR);
+            try(Partition table=SIDriver.driver().getTableFactory().getTable(Long.toString(conglomId));
+                DataScanner scanner=table.openScanner(scan)){
+                List<DataCell> cells;
+                while(!(cells=scanner.next(-1)).isEmpty()){
+                    keys.add(cells.get(0).key());
+                }
+            }catch(Exception e){
+                throw Exceptions.parseException(e);
+            }
+            return keys;
+        }
+
+        /**
+         * @return the rows visible to the transaction, by key, with null for the keys of rows which aren't
+         */
+        private NavigableMap<byte[],ExecRow> readRows(NavigableSet<byte[]> keys,TxnView txn) throws StandardException{
+            BitSet fields=new BitSet(baseColumnMap.length);
+            for(int i=0;i<baseColumnMap.length;i++){
+                fields.set(i);
+            }
+            Attributable attributes=new MapAttributes();
+            attributes.addAttribute(SIConstants.ENTRY_PREDICATE_LABEL,new EntryPredicateFilter(fields).toBytes());
+            TxnOperationFactory operationFactory=SIDriver.driver().getOperationFactory();
+            operationFactory.encodeForReads(attributes,txn,false);
+
+            DescriptorSerializer[] serializers=VersionedSerializers.forVersion(tableVersion,false).getSerializers(template);
+            KeyHashDecoder keyHashDecoder=columnOrdering.length==0?NoOpKeyHashDecoder.INSTANCE
+                    :SkippingKeyDecoder.decoder(VersionedSerializers.typesForVersion(tableVersion),
+                    serializers,
+                    columnOrdering,
+                    ScanOperation.getKeyFormatIds(columnOrdering,conglomerate.getFormat_ids()),
+                    conglomerate.getAscDescInfo(),
+                    ScanOperation.getKeyDecodingMap(accessedKeyColumns,columnOrdering,baseColumnMap),
+                    accessedKeyColumns);
+            NavigableMap<byte[],ExecRow> rows=new TreeMap<>(Bytes.BASE_COMPARATOR);
+            try(Partition table=SIDriver.driver().getTableFactory().getTable(Long.toString(conglomId));
+                KeyDecoder keyDecoder=new KeyDecoder(keyHashDecoder,0);
+                KeyHashDecoder rowDecoder=new EntryDataDecoder(
+                        ScanOperation.getRowDecodingMap(accessedKeyColumns,columnOrdering,baseColumnMap),null,serializers)){
+                List<byte[]> batch=new ArrayList<>(LOOKUP_BATCH_SIZE);
+                Iterator<byte[]> keyIterator=keys.iterator();
+                while(keyIterator.hasNext()){
+                    batch.add(keyIterator.next());
+                    if(batch.size()<LOOKUP_BATCH_SIZE && keyIterator.hasNext())
+                        continue;
+                    Iterator<DataResult> results=table.batchGet(attributes,batch);
+                    for(byte[] key : batch){
+                        DataResult result=results.hasNext()?results.next():null;
+                        if(result==null || result.size()<=0){
+                            rows.put(key,null);
+                            continue;
+                        }
+                        ExecRow row=template.getNewNullRow();
+                        for(DataCell kv : result){
+                            keyDecoder.decode(kv.keyArray(),kv.keyOffset(),kv.keyLength(),row);
+                            rowDecoder.set(kv.valueArray(),kv.valueOffset(),kv.valueLength());
+                            rowDecoder.decode(row);
+                        }
+                        row.setKey(key);
+                        rows.put(key,row);
+                    }
+                    batch.clear();
+                }
+            }catch(Exception e){
+                throw Exceptions.parseException(e);
+            }
+            return rows;
+        }
+    }
+}
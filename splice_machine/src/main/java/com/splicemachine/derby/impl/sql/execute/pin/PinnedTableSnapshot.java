@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.pin;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.utils.IntArrays;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A snapshot of a pinned table, as a list of {@link ColumnarBlock}s in the order of the row keys.
+ *
+ * A snapshot is immutable. Refreshing it creates a new snapshot, which shares the blocks that no written row
+ * falls into with the previous one. A snapshot is referenced by the cache until it's replaced, and by each scan
+ * until it has read all of its rows, and its blocks are freed when neither references them anymore. The blocks of a
+ * scan which isn't read to its end are freed when they are collected.
+ */
+class PinnedTableSnapshot{
+    static final int BLOCK_ROWS=4096;
+
+    private final List<ColumnarBlock> blocks;
+    private final ExecRow template;
+    private final String tableVersion;
+    private final long readTimestamp;
+    private final long changesSince;
+    private final long refreshTime;
+    private final long sizeInBytes;
+    private final long rowCount;
+    // held by the cache, which must release it when the snapshot is replaced
+    private final AtomicInteger references=new AtomicInteger(1);
+
+    /**
+     * @param template a row with all the columns of the table
+     * @param readTimestamp the begin timestamp of the transaction the snapshot was read with
+     * @param changesSince the timestamp from which rows may have been written without being in the snapshot
+     * @param refreshTime the time the snapshot was read at, in milliseconds
+     */
+    PinnedTableSnapshot(List<ColumnarBlock> blocks,ExecRow template,String tableVersion,long readTimestamp,
+                        long changesSince,long refreshTime){
+        this.blocks=blocks;
+        this.template=template;
+        this.tableVersion=tableVersion;
+        this.readTimestamp=readTimestamp;
+        this.changesSince=changesSince;
+        this.refreshTime=refreshTime;
+        long size=0L;
+        long rows=0L;
+        for(ColumnarBlock block : blocks){
+            block.retain();
+            size+=block.sizeInBytes();
+            rows+=block.rowCount();
+        }
+        this.sizeInBytes=size;
+        this.rowCount=rows;
+    }
+
+    long readTimestamp(){
+        return readTimestamp;
+    }
+
+    long changesSince(){
+        return changesSince;
+    }
+
+    long refreshTime(){
+        return refreshTime;
+    }
+
+    long sizeInBytes(){
+        return sizeInBytes;
+    }
+
+    long rowCount(){
+        return rowCount;
+    }
+
+    ExecRow template(){
+        return template;
+    }
+
+    String tableVersion(){
+        return tableVersion;
+    }
+
+    /**
+     * References this snapshot for a scan, which releases it once it has read all of its rows. Must be called
+     * while the cache still references it.
+     */
+    void acquire(){
+        references.incrementAndGet();
+    }
+
+    /**
+     * Releases a reference to this snapshot, freeing the blocks no other snapshot has once it was the last one.
+     */
+    void release(){
+        if(references.decrementAndGet()==0){
+            for(ColumnarBlock block : blocks){
+                block.release();
+            }
+        }
+    }
+
+    /**
+     * Scans the snapshot, which must have been acquired for the scan.
+     *
+     * @param startKey the first key to return, empty for the start of the table
+     * @param stopKey the key after the last one to return, empty for the end of the table
+     * @param qualifiers the qualifiers used to skip blocks; the rows returned must still be qualified
+     * @param outputTemplate the row to return the columns read in
+     * @param baseColumnMap the position in the output row of each column of the table, -1 for the ones not read
+     */
+    Iterator<ExecRow> scan(final byte[] startKey,final byte[] stopKey,final Qualifier[][] qualifiers,
+                           final ExecRow outputTemplate,final int[] baseColumnMap){
+        final DescriptorSerializer[] serializers=serializers();
+        final Iterator<ColumnarBlock> blockIterator=blocks.iterator();
+        return new Iterator<ExecRow>(){
+            private Iterator<ExecRow> rows=Collections.emptyIterator();
+            private boolean released;
+
+            @Override
+            public boolean hasNext(){
+                try{
+                    while(!rows.hasNext()){
+                        if(!blockIterator.hasNext()){
+                            if(!released){
+                                released=true;
+                                release();
+                            }
+                            return false;
+                        }
+                        ColumnarBlock block=blockIterator.next();
+                        if(block.overlaps(startKey,stopKey) && block.mayMatch(qualifiers))
+                            rows=block.decode(outputTemplate,baseColumnMap,serializers,startKey,stopKey).iterator();
+                    }
+                    return true;
+                }catch(StandardException e){
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public ExecRow next(){
+                if(!hasNext()) throw new NoSuchElementException();
+                return rows.next();
+            }
+
+            @Override
+            public void remove(){
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * @param changes the rows written since {@link #changesSince()}, by key, with a null row for the deleted ones
+     * @return a snapshot with the changes applied, in which only the blocks with changed rows are rewritten
+     */
+    PinnedTableSnapshot merge(NavigableMap<byte[],ExecRow> changes,long newReadTimestamp,long newChangesSince,
+                              long newRefreshTime) throws StandardException{
+        DescriptorSerializer[] serializers=serializers();
+        int[] allColumns=IntArrays.count(template.nColumns());
+        List<ColumnarBlock> merged=new ArrayList<>(blocks.size());
+        for(int i=0;i<blocks.size();i++){
+            ColumnarBlock block=blocks.get(i);
+            // the changes between the first key of this block and the first key of the next one belong to it
+            byte[] from=i==0?null:block.firstKey();
+            byte[] to=i==blocks.size()-1?null:blocks.get(i+1).firstKey();
+            NavigableMap<byte[],ExecRow> blockChanges=from==null?(to==null?changes:changes.headMap(to,false))
+                    :(to==null?changes.tailMap(from,true):changes.subMap(from,true,to,false));
+            if(blockChanges.isEmpty()){
+                merged.add(block);
+                continue;
+            }
+            List<ExecRow> rows=block.decode(template,allColumns,serializers,null,null);
+            write(mergeRows(rows,blockChanges),serializers,merged);
+        }
+        if(blocks.isEmpty())
+            write(mergeRows(Collections.<ExecRow>emptyList(),changes),serializers,merged);
+        return new PinnedTableSnapshot(merged,template,tableVersion,newReadTimestamp,newChangesSince,newRefreshTime);
+    }
+
+    /**
+     * @param rows the rows of the table, with their keys, in the order of the keys
+     */
+    static PinnedTableSnapshot create(Iterator<ExecRow> rows,ExecRow template,String tableVersion,long readTimestamp,
+                                      long changesSince,long refreshTime) throws StandardException{
+        List<ColumnarBlock> blocks=new ArrayList<>();
+        write(rows,serializers(template,tableVersion),blocks);
+        return new PinnedTableSnapshot(blocks,template,tableVersion,readTimestamp,changesSince,refreshTime);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private DescriptorSerializer[] serializers(){
+        return serializers(template,tableVersion);
+    }
+
+    private static DescriptorSerializer[] serializers(ExecRow template,String tableVersion){
+        return VersionedSerializers.forVersion(tableVersion,false).getSerializers(template);
+    }
+
+    private static void write(Iterator<ExecRow> rows,DescriptorSerializer[] serializers,List<ColumnarBlock> blocks) throws StandardException{
+        ColumnarBlock.Builder builder=new ColumnarBlock.Builder(serializers);
+        while(rows.hasNext()){
+            ExecRow row=rows.next();
+            builder.add(row.getKey(),row);
+            if(builder.rowCount()>=BLOCK_ROWS){
+                blocks.add(builder.build());
+                builder=new ColumnarBlock.Builder(serializers);
+            }
+        }
+        if(builder.rowCount()>0)
+            blocks.add(builder.build());
+    }
+
+    private static Iterator<ExecRow> mergeRows(List<ExecRow> rows,NavigableMap<byte[],ExecRow> changes){
+        List<ExecRow> merged=new ArrayList<>(rows.size()+changes.size());
+        Iterator<Map.Entry<byte[],ExecRow>> changeIterator=changes.entrySet().iterator();
+        Map.Entry<byte[],ExecRow> change=changeIterator.hasNext()?changeIterator.next():null;
+        for(ExecRow row : rows){
+            while(change!=null && Bytes.BASE_COMPARATOR.compare(change.getKey(),row.getKey())<0){
+                if(change.getValue()!=null)
+                    merged.add(change.getValue());
+                change=changeIterator.hasNext()?changeIterator.next():null;
+            }
+            if(change!=null && Bytes.BASE_COMPARATOR.compare(change.getKey(),row.getKey())==0){
+                // the row was updated or deleted
+                if(change.getValue()!=null)
+                    merged.add(change.getValue());
+                change=changeIterator.hasNext()?changeIterator.next():null;
+            }else
+                merged.add(row);
+        }
+        while(change!=null){
+            if(change.getValue()!=null)
+                merged.add(change.getValue());
+            change=changeIterator.hasNext()?changeIterator.next():null;
+        }
+        return merged.iterator();
+    }
+}
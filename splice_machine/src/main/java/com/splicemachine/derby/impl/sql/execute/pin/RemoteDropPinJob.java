@@ -46,6 +46,11 @@ public class RemoteDropPinJob extends DistributedJob implements Externalizable {
         return null;
     }
 
+    @Override
+    public boolean isAdmissionControlled() {
+        return false;
+    }
+
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeLong(conglomID);
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.stats;
+
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.db.iapi.util.IdUtil;
+import com.splicemachine.tools.EmbedConnectionMaker;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recollects stale statistics in the background.
+ *
+ * Runs on the master only. Every round goes through the user tables, starting where the previous round stopped,
+ * and collects the statistics of their stale regions, until it has collected the configured number of regions.
+ * The stale regions of a table are collected together, so a round may collect more regions than configured; the
+ * excess is taken from the following rounds, which keeps the collection rate at the configured number of regions
+ * per interval. Collections run in the admin pool of the OLAP server, like the ones requested by users.
+ */
+public class StatisticsAutoCollector{
+    private static final Logger LOG=Logger.getLogger(StatisticsAutoCollector.class);
+    private static final String USER_TABLES="select s.schemaname, t.tablename from sys.systables t, sys.sysschemas s "+
+            "where t.schemaid = s.schemaid and t.tabletype = 'T' order by s.schemaname, t.tablename";
+    private static final String COLLECT_STALE_STATISTICS="call SYSCS_UTIL.COLLECT_TABLE_STATISTICS(?, ?, true)";
+
+    private final Properties connectionProperties;
+    private final long interval;
+    private final int maxPartitions;
+    private final ScheduledExecutorService executor;
+    private int nextTable;
+    // regions collected beyond the budget of the previous rounds
+    private long overspent;
+
+    public StatisticsAutoCollector(SConfiguration configuration,Properties connectionProperties){
+        this.connectionProperties=connectionProperties;
+        this.interval=configuration.getAutoCollectionInterval();
+        this.maxPartitions=configuration.getAutoCollectionMaxPartitions();
+        this.executor=Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("statistics-auto-collector").setDaemon(true).build());
+    }
+
+    public void start(){
+        executor.scheduleWithFixedDelay(new Runnable(){
+            @Override
+            public void run(){
+                try{
+                    collect();
+                }catch(Throwable t){
+                    LOG.warn("Background statistics collection failed",t);
+                }
+            }
+        },interval,interval,TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    private void collect() throws SQLException{
+        try(Connection conn=new EmbedConnectionMaker().createNew(connectionProperties)){
+            long budget=maxPartitions-overspent;
+            if(budget<=0){
+                overspent-=maxPartitions;
+                return;
+            }
+            List<String[]> tables=userTables(conn);
+            long collected=0;
+            for(int i=0;i<tables.size() && collected<budget;i++){
+                if(nextTable>=tables.size())
+                    nextTable=0;
+                String[] table=tables.get(nextTable++);
+                try{
+                    collected+=collectStaleStatistics(conn,table[0],table[1]);
+                }catch(SQLException e){
+                    // the table may have been dropped since it was listed
+                    LOG.warn("Unable to collect the statistics of "+table[0]+"."+table[1],e);
+                }
+            }
+            overspent=Math.max(0L,collected-budget);
+            if(collected>0)
+                LOG.info("Collected the statistics of "+collected+" stale regions");
+        }
+    }
+
+    private static List<String[]> userTables(Connection conn) throws SQLException{
+        List<String[]> tables=new ArrayList<>();
+        try(Statement s=conn.createStatement();ResultSet rs=s.executeQuery(USER_TABLES)){
+            while(rs.next()){
+                tables.add(new String[]{rs.getString(1),rs.getString(2)});
+            }
+        }
+        return tables;
+    }
+
+    private static int collectStaleStatistics(Connection conn,String schema,String table) throws SQLException{
+        try(CallableStatement cs=conn.prepareCall(COLLECT_STALE_STATISTICS)){
+            cs.setString(1,IdUtil.normalToDelimited(schema));
+            cs.setString(2,IdUtil.normalToDelimited(table));
+            int regions=0;
+            if(cs.execute()){
+                try(ResultSet rs=cs.getResultSet()){
+                    while(rs.next()){
+                        regions++; // one row per collected region
+                    }
+                }
+            }
+            return regions;
+        }
+    }
+}
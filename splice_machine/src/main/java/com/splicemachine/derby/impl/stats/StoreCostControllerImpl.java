@@ -282,6 +282,29 @@ public class StoreCostControllerImpl implements StoreCostController {
         return tableStatistics.cardinality(columnNumber-1);
     }
 
+    @Override
+    public double columnGroupSelectivity(int[] columnNumbers) {
+        ColumnGroupStatistics groupStatistics = tableStatistics.columnGroupStatistics(columnNumbers);
+        if (groupStatistics == null || groupStatistics.totalCount() == 0)
+            return -1.0d;
+        /* the counts of the group are used rather than the row count of the table, so that sampled statistics
+         * give a fraction of the sample
+         */
+        long cardinality = Math.max(1L, Math.min(groupStatistics.cardinality(), groupStatistics.notNullCount()));
+        return (double) groupStatistics.notNullCount() / cardinality / groupStatistics.totalCount();
+    }
+
+    @Override
+    public List<int[]> getColumnGroups() {
+        List<? extends PartitionStatistics> partitionStatistics = tableStatistics.getPartitionStatistics();
+        if (partitionStatistics == null || partitionStatistics.isEmpty())
+            return Collections.emptyList();
+        List<int[]> columnGroups = new ArrayList<>();
+        for (ColumnGroupStatistics groupStatistics : partitionStatistics.get(0).getColumnGroupStatistics())
+            columnGroups.add(groupStatistics.getColumnIds());
+        return columnGroups;
+    }
+
     @Override
     public long getConglomerateAvgRowWidth() {
         assert baseTableRow.nColumns() > 0: "Number of base table columns cannot be 0";
@@ -110,4 +110,9 @@ public class DistributedCheckTableJob extends DistributedJob implements External
     public String getName() {
         return "Check_Table";
     }
+
+    @Override
+    public boolean isBackground() {
+        return true;
+    }
 }
@@ -23,6 +23,7 @@ import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
 import com.splicemachine.si.constants.SIConstants;
 import com.splicemachine.storage.ByteEntryAccumulator;
 import com.splicemachine.storage.EntryPredicateFilter;
+import com.splicemachine.utils.ByteSlice;
 import com.carrotsearch.hppc.BitSet;
 import java.io.IOException;
 
@@ -35,6 +36,7 @@ public class ExecRowAccumulator extends ByteEntryAccumulator {
     protected final DescriptorSerializer[] serializers;
     protected final int[] columnMap;
     protected final int[] columnLengths;
+    private boolean deferDecoding;
 
     private ExecRowAccumulator(){
         super(null,false,null);
@@ -116,25 +118,29 @@ public class ExecRowAccumulator extends ByteEntryAccumulator {
 
     @Override
     protected void occupy(int position, byte[] data, int offset, int length) {
-        decode(position, data, offset, length);
+        if(!deferDecoding)
+            decode(position, data, offset, length);
         super.occupy(position,data,offset,length);
     }
 
     @Override
     protected void occupyDouble(int position, byte[] data, int offset, int length) {
-        decode(position, data, offset, length);
+        if(!deferDecoding)
+            decode(position, data, offset, length);
         super.occupyDouble(position, data, offset, length);
     }
 
     @Override
     protected void occupyFloat(int position, byte[] data, int offset, int length) {
-        decode(position, data, offset, length);
+        if(!deferDecoding)
+            decode(position, data, offset, length);
         super.occupyFloat(position, data, offset, length);
     }
 
     @Override
     protected void occupyScalar(int position, byte[] data, int offset, int length) {
-        decode(position,data,offset,length);
+        if(!deferDecoding)
+            decode(position,data,offset,length);
         super.occupyScalar(position, data, offset, length);
     }
 
@@ -149,6 +155,32 @@ public class ExecRowAccumulator extends ByteEntryAccumulator {
         return columnLengths[colPos];
     }
 
+    /**
+     * Keeps the fields accumulated undecoded until {@link #decodeFields()} is called, so that a row can be
+     * rejected from its encoded fields without materializing it.
+     *
+     * Accumulators built by {@link #newAccumulator} always defer and return true; only the no-op accumulator,
+     * used when the row has no columns to collect, leaves decoding alone and returns false.
+     *
+     * @return true if decoding is now deferred, false if this accumulator doesn't collect any field
+     */
+    public boolean deferDecoding(){
+        deferDecoding=true;
+        return true;
+    }
+
+    /**
+     * Decodes the fields accumulated for the current row into the row, when decoding is deferred.
+     */
+    public void decodeFields(){
+        if(!deferDecoding || fields==null) return;
+        for(int n=0;n<fields.length;n++){
+            ByteSlice field=fields[n];
+            if(field!=null && field.array()!=null && hasField(n))
+                decode(n,field.array(),field.offset(),field.length());
+        }
+    }
+
     protected void decode(int position, byte[] data, int offset, int length) {
         int colPos=columnMap[position];
         DataValueDescriptor dvd = dvds[colPos];
@@ -203,6 +235,8 @@ public class ExecRowAccumulator extends ByteEntryAccumulator {
         @Override protected void occupyFloat(int position, byte[] data, int offset, int length) { }
         @Override protected void occupyScalar(int position, byte[] data, int offset, int length) { }
         @Override public void reset() { }
+        @Override public boolean deferDecoding() { return false; }
+        @Override public void decodeFields() { }
 
         @Override public boolean isFinished() { return true; }
     };
@@ -15,6 +15,8 @@
 package com.splicemachine.derby.impl.store.access;
 
 import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.context.ContextService;
+import com.splicemachine.db.iapi.services.daemon.Serviceable;
 import com.splicemachine.db.iapi.services.locks.CompatibilitySpace;
 import com.splicemachine.db.iapi.types.DataValueFactory;
 import com.splicemachine.pipeline.Exceptions;
@@ -26,9 +28,12 @@ import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.utils.SpliceLogUtils;
 import org.apache.log4j.Logger;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SpliceTransaction extends BaseSpliceTransaction<TransactionImpl> {
     private static Logger LOG=Logger.getLogger(SpliceTransaction.class);
+    private List<Serviceable> postCommitWork;
 
     public SpliceTransaction(CompatibilitySpace compatibilitySpace,
                              SpliceTransactionFactory spliceTransactionFactory,
@@ -68,11 +73,37 @@ public class SpliceTransaction extends BaseSpliceTransaction<TransactionImpl> {
         } catch (IOException e) {
             throw Exceptions.parseException(e);
         }
+        performPostCommitWork();
     }
 
+    /**
+     * Runs the work once the transaction commits. The work is dropped if the transaction aborts.
+     */
+    @Override
+    public void addPostCommitWork(Serviceable work){
+        if(postCommitWork==null)
+            postCommitWork=new ArrayList<>();
+        postCommitWork.add(work);
+    }
+
+    private void performPostCommitWork(){
+        List<Serviceable> work=postCommitWork;
+        if(work==null)
+            return;
+        postCommitWork=null;
+        for(Serviceable serviceable : work){
+            try{
+                serviceable.performWork(ContextService.getCurrentContextManager());
+            }catch(Exception e){
+                // the transaction is committed already, the work is best effort
+                LOG.warn("Post commit work failed",e);
+            }
+        }
+    }
 
     public void abort() throws StandardException{
         SpliceLogUtils.debug(LOG,"abort");
+        postCommitWork=null;
         try{
             transaction.abort();
         }catch(Exception e){
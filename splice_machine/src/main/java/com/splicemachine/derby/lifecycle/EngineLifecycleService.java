@@ -33,7 +33,11 @@ import com.splicemachine.db.impl.jdbc.EmbedConnection;
 import com.splicemachine.derby.ddl.DDLDriver;
 import com.splicemachine.derby.ddl.DDLEnvironmentLoader;
 import com.splicemachine.derby.impl.db.SpliceDatabase;
+import com.splicemachine.derby.impl.sql.execute.operations.BroadcastJoinCache;
+import com.splicemachine.derby.impl.sql.execute.operations.ExecutionMemoryPool;
+import com.splicemachine.derby.impl.stats.StatisticsAutoCollector;
 import com.splicemachine.derby.impl.store.access.SpliceAccessManager;
+import com.splicemachine.hbase.jmx.JMXUtils;
 import com.splicemachine.lifecycle.DatabaseLifecycleService;
 import com.splicemachine.pipeline.ContextFactoryDriverService;
 import com.splicemachine.pipeline.DerbyContextFactoryLoader;
@@ -41,6 +45,8 @@ import com.splicemachine.pipeline.PipelineDriver;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryDriver;
 import com.splicemachine.pipeline.contextfactory.ContextFactoryLoader;
 import com.splicemachine.pipeline.contextfactory.ReferenceCountingFactoryDriver;
+import com.splicemachine.si.api.txn.TransactionCacheManagement;
+import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.tools.EmbedConnectionMaker;
 import com.splicemachine.tools.version.ManifestReader;
@@ -70,6 +76,7 @@ public class EngineLifecycleService implements DatabaseLifecycleService{
     private ManifestReader manifestReader;
     private Logging logging;
     private SpliceDatabase db;
+    private StatisticsAutoCollector statisticsCollector;
     private boolean isRegionServer;
 
     public EngineLifecycleService(DistributedDerbyStartup startup,SConfiguration configuration,boolean isMaster, boolean isRegionServer){
@@ -129,6 +136,11 @@ public class EngineLifecycleService implements DatabaseLifecycleService{
         db = (SpliceDatabase)((EmbedConnection)internalConnection).getLanguageConnection().getDatabase();
         db.registerDDL();
 
+        if(isMaster && configuration.isAutoCollectionEnabled()){
+            statisticsCollector = new StatisticsAutoCollector(configuration,dbProperties);
+            statisticsCollector.start();
+        }
+
         logging = new LogManager();
     }
 
@@ -143,6 +155,18 @@ public class EngineLifecycleService implements DatabaseLifecycleService{
 
             ObjectName rollforward = new ObjectName("com.splicemachine.si.api.rollforward:type=RollForward");
             mbs.registerMBean(SIDriver.driver().getRollForward(),rollforward);
+
+            ObjectName broadcastJoinCache = new ObjectName(JMXUtils.BROADCAST_JOIN_CACHE);
+            mbs.registerMBean(BroadcastJoinCache.getInstance(),broadcastJoinCache);
+
+            ObjectName executionMemoryPool = new ObjectName(JMXUtils.EXECUTION_MEMORY_POOL);
+            mbs.registerMBean(ExecutionMemoryPool.getInstance(),executionMemoryPool);
+
+            TxnSupplier txnSupplier = SIDriver.driver().getTxnSupplier();
+            if(txnSupplier instanceof TransactionCacheManagement){
+                ObjectName completedTxnCache = new ObjectName(JMXUtils.COMPLETED_TXN_CACHE);
+                mbs.registerMBean(txnSupplier,completedTxnCache);
+            }
             db.getDataDictionary().getDataDictionaryCache().registerJMX(mbs);
 
 
@@ -158,7 +182,9 @@ public class EngineLifecycleService implements DatabaseLifecycleService{
 
     @Override
     public void shutdown() throws Exception{
-        
+        if(statisticsCollector!=null)
+            statisticsCollector.shutdown();
+
         EngineDriver.shutdownDriver();
 
         try{
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.ProjectRestrictOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.ScalarAggregateOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.TableScanOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.framework.SpliceGenericAggregator;
+import com.splicemachine.derby.stream.iapi.DataSet;
+import com.splicemachine.derby.stream.iapi.DataSetProcessor;
+import org.apache.commons.collections.iterators.SingletonIterator;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * A control-side scalar aggregation over a projection of a table scan, computed over batches of columns.
+ *
+ * The scan hands its rows over without checking its qualifiers, see
+ * {@link TableScanOperation#setQualifiersDeferred(boolean)}. The columns the qualifiers and the aggregates read are
+ * copied from the reused scan row into a {@link ColumnBatch}, the qualifiers narrow the selection vector of the batch
+ * in one pass per qualifier, and the aggregates consume the selected rows. The projection is never evaluated: the
+ * aggregates read the scan columns it maps directly. Rows are neither cloned nor projected, and no generated method
+ * is called per row.
+ *
+ * Only non distinct COUNT, SUM, AVG, MIN and MAX over integral and floating point columns, and qualifiers comparing
+ * such columns with a constant, are supported. {@link #create} returns null for other aggregations, which go through
+ * the rows one at a time.
+ */
+public final class BatchScalarAggregation{
+    private final ScalarAggregateOperation operation;
+    private final TableScanOperation scan;
+    private final ExecRow scanRow;
+    private final int[] columns;
+    private final ColumnBatchFilter filter;
+    private final ColumnBatchAggregator[] aggregators;
+    private final int capacity;
+
+    BatchScalarAggregation(ScalarAggregateOperation operation,
+                           TableScanOperation scan,
+                           ExecRow scanRow,
+                           int[] columns,
+                           ColumnBatchFilter filter,
+                           ColumnBatchAggregator[] aggregators,
+                           int capacity){
+        this.operation=operation;
+        this.scan=scan;
+        this.scanRow=scanRow;
+        this.columns=columns;
+        this.filter=filter;
+        this.aggregators=aggregators;
+        this.capacity=capacity;
+    }
+
+    /**
+     * @return the batch aggregation of the operation, or null if it can't be computed over batches
+     */
+    public static BatchScalarAggregation create(ScalarAggregateOperation operation) throws StandardException{
+        SpliceOperation source=operation.getSource();
+        if(operation.aggregates==null || operation.aggregates.length==0 || !(source instanceof ProjectRestrictOperation))
+            return null;
+        ProjectRestrictOperation projection=(ProjectRestrictOperation)source;
+        // the projection must not restrict the rows of the scan
+        if(projection.isAlwaysFalse() || projection.getRestrictionMethodName()!=null || projection.projectMapping==null
+                || !(projection.getSource() instanceof TableScanOperation))
+            return null;
+        TableScanOperation scan=(TableScanOperation)projection.getSource();
+        if(!scan.canDeferQualifiers())
+            return null;
+        ExecRow scanRow=scan.getExecRowDefinition();
+        if(scanRow==null)
+            return null;
+
+        BitSet columns=new BitSet();
+        ColumnBatchFilter filter=ColumnBatchFilter.create(scan.getScanInformation().getScanQualifiers(),
+                scan.getOperationInformation().getBaseColumnMap(),scanRow,columns);
+        if(filter==null)
+            return null;
+        ColumnBatchAggregator[] aggregators=new ColumnBatchAggregator[operation.aggregates.length];
+        for(int i=0;i<aggregators.length;i++){
+            SpliceGenericAggregator aggregator=operation.aggregates[i];
+            int column=sourceColumn(projection,aggregator,scanRow);
+            DataValueDescriptor type=column<0?null:scanRow.getColumn(column+1);
+            aggregators[i]=ColumnBatchAggregator.create(aggregator,column,type);
+            if(aggregators[i]==null)
+                return null;
+            if(column>=0)
+                columns.set(column);
+        }
+        return new BatchScalarAggregation(operation,scan,scanRow,columns.stream().toArray(),filter,aggregators,
+                ColumnBatch.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @return the rows of the scan, which are not checked against its qualifiers
+     */
+    public DataSet<ExecRow> getScanDataSet(DataSetProcessor dsp) throws StandardException{
+        // the scanner reads the flag when the data set is built, so it doesn't outlive this data set
+        scan.setQualifiersDeferred(true);
+        try{
+            return scan.getDataSet(dsp);
+        }finally{
+            scan.setQualifiersDeferred(false);
+        }
+    }
+
+    /**
+     * Aggregates the rows of the scan, like the first step of a scalar aggregation.
+     *
+     * @return a row holding the accumulated aggregators, or no row if no row qualifies
+     */
+    @SuppressWarnings("unchecked")
+    public Iterator<ExecRow> aggregate(Iterator<ExecRow> scanRows) throws StandardException{
+        ColumnBatch batch=new ColumnBatch(scanRow,columns,capacity);
+        ExecRow aggregate=null;
+        while(scanRows.hasNext()){
+            if(batch.add(scanRows.next()))
+                aggregate=accumulate(batch,aggregate);
+        }
+        if(batch.size()>0)
+            aggregate=accumulate(batch,aggregate);
+        if(aggregate==null)
+            return Collections.emptyIterator();
+        return new SingletonIterator(aggregate);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private ExecRow accumulate(ColumnBatch batch,ExecRow aggregate) throws StandardException{
+        batch.selectAll();
+        filter.filter(batch);
+        if(batch.selected()>0){
+            if(aggregate==null){
+                aggregate=operation.getSourceExecIndexRow().getClone();
+                for(SpliceGenericAggregator aggregator : operation.aggregates)
+                    aggregator.initialize(aggregate);
+            }
+            for(ColumnBatchAggregator aggregator : aggregators)
+                aggregator.accumulate(batch,aggregate);
+        }
+        batch.clear();
+        return aggregate;
+    }
+
+    /**
+     * @return the position in the scan row of the column aggregated, -1 for COUNT(*), or -2 if the aggregated
+     *         column isn't a column of the scan
+     */
+    private static int sourceColumn(ProjectRestrictOperation projection,
+                                    SpliceGenericAggregator aggregator,
+                                    ExecRow scanRow){
+        if("COUNT(*)".equals(aggregator.getAggregatorInfo().getAggregateName()))
+            return -1;
+        int inputColumn=aggregator.getInputColumnId()-1;
+        if(inputColumn<0 || inputColumn>=projection.projectMapping.length)
+            return -2;
+        int mapped=projection.projectMapping[inputColumn];
+        if(mapped<=0 || mapped>scanRow.nColumns())
+            return -2;
+        return mapped-1;
+    }
+}
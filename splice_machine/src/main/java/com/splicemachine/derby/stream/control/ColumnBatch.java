@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+
+/**
+ * A batch of rows of a scan, stored column by column in primitive arrays, with a selection vector holding the
+ * positions of the rows which passed the filters applied to the batch so far.
+ *
+ * Only the columns a batch is created for are copied, and only integral and floating point columns are supported,
+ * so the rows the scan decodes into can be reused.
+ */
+public final class ColumnBatch{
+    public static final int DEFAULT_CAPACITY=1024;
+
+    private final ColumnVector[] vectors;
+    private final int[] columns;
+    private final int[] selection;
+    private int size;
+    private int selected;
+
+    /**
+     * @param row the row definition of the scan
+     * @param columns the positions in the row, starting at 0, of the columns to copy
+     * @param capacity the number of rows of the batch
+     */
+    ColumnBatch(ExecRow row,int[] columns,int capacity) throws StandardException{
+        this.vectors=new ColumnVector[row.nColumns()];
+        this.columns=columns;
+        for(int column : columns){
+            boolean floatingPoint=isFloatingPoint(row.getColumn(column+1).getTypeFormatId());
+            vectors[column]=new ColumnVector(floatingPoint,capacity);
+        }
+        this.selection=new int[capacity];
+    }
+
+    /**
+     * @return true if a column of this type can be stored in a batch
+     */
+    static boolean isSupported(int typeFormatId){
+        return isIntegral(typeFormatId) || isFloatingPoint(typeFormatId);
+    }
+
+    static boolean isIntegral(int typeFormatId){
+        switch(typeFormatId){
+            case StoredFormatIds.SQL_TINYINT_ID:
+            case StoredFormatIds.SQL_SMALLINT_ID:
+            case StoredFormatIds.SQL_INTEGER_ID:
+            case StoredFormatIds.SQL_LONGINT_ID:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static boolean isFloatingPoint(int typeFormatId){
+        return typeFormatId==StoredFormatIds.SQL_REAL_ID || typeFormatId==StoredFormatIds.SQL_DOUBLE_ID;
+    }
+
+    /**
+     * Copies the columns of a row to the end of the batch.
+     *
+     * @return true if the batch is full
+     */
+    boolean add(ExecRow row) throws StandardException{
+        DataValueDescriptor[] rowArray=row.getRowArray();
+        for(int column : columns)
+            vectors[column].set(size,rowArray[column]);
+        size++;
+        return size==selection.length;
+    }
+
+    /**
+     * Selects all the rows of the batch.
+     */
+    void selectAll(){
+        for(int i=0;i<size;i++)
+            selection[i]=i;
+        selected=size;
+    }
+
+    /**
+     * Empties the batch, so it can be filled again.
+     */
+    void clear(){
+        size=0;
+        selected=0;
+    }
+
+    int size(){
+        return size;
+    }
+
+    /**
+     * @return the positions of the selected rows, of which the first {@link #selected()} are valid
+     */
+    int[] selection(){
+        return selection;
+    }
+
+    int selected(){
+        return selected;
+    }
+
+    void setSelected(int selected){
+        this.selected=selected;
+    }
+
+    ColumnVector vector(int column){
+        return vectors[column];
+    }
+
+    static final class ColumnVector{
+        final boolean floatingPoint;
+        final long[] longs;
+        final double[] doubles;
+        final boolean[] nulls;
+
+        ColumnVector(boolean floatingPoint,int capacity){
+            this.floatingPoint=floatingPoint;
+            this.longs=floatingPoint?null:new long[capacity];
+            this.doubles=floatingPoint?new double[capacity]:null;
+            this.nulls=new boolean[capacity];
+        }
+
+        void set(int position,DataValueDescriptor dvd) throws StandardException{
+            if(dvd==null || dvd.isNull()){
+                nulls[position]=true;
+                return;
+            }
+            nulls[position]=false;
+            if(floatingPoint)
+                doubles[position]=dvd.getDouble();
+            else
+                longs[position]=dvd.getLong();
+        }
+
+        /**
+         * Sets a value of the column to an instance of its type.
+         */
+        void get(int position,DataValueDescriptor dvd) throws StandardException{
+            if(nulls[position])
+                dvd.setToNull();
+            else if(floatingPoint)
+                dvd.setValue(doubles[position]);
+            else
+                dvd.setValue(longs[position]);
+        }
+    }
+}
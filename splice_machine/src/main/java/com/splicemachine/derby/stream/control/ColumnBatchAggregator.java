@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecAggregator;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.impl.sql.execute.CountAggregator;
+import com.splicemachine.db.impl.sql.execute.LongBufferedSumAggregator;
+import com.splicemachine.derby.impl.sql.execute.operations.framework.SpliceGenericAggregator;
+
+/**
+ * Accumulates the selected rows of a {@link ColumnBatch} into the aggregator of a scalar aggregation.
+ *
+ * COUNT, MIN, MAX and integral SUM reduce the batch to a single value before handing it to the aggregator; other
+ * aggregates receive the selected values one by one. Values are always handed over through
+ * {@link SpliceGenericAggregator#accumulate(DataValueDescriptor, DataValueDescriptor)}, so aggregators are upgraded
+ * on overflow and eliminated nulls are reported as they are for rows.
+ */
+abstract class ColumnBatchAggregator{
+    final SpliceGenericAggregator aggregator;
+    final int column;
+    final DataValueDescriptor value;
+
+    ColumnBatchAggregator(SpliceGenericAggregator aggregator,int column,DataValueDescriptor type){
+        this.aggregator=aggregator;
+        this.column=column;
+        this.value=type==null?null:type.cloneValue(false);
+    }
+
+    /**
+     * @param aggregator the aggregator of the scalar aggregation
+     * @param column the position in the scan row of the column aggregated, or -1 for COUNT(*)
+     * @param type the column aggregated, as defined by the scan, or null for COUNT(*)
+     * @return an aggregator of batches, or null if the aggregate can't be computed over batches
+     */
+    static ColumnBatchAggregator create(SpliceGenericAggregator aggregator,int column,DataValueDescriptor type){
+        if(aggregator.isDistinct())
+            return null;
+        String name=aggregator.getAggregatorInfo().getAggregateName();
+        if("COUNT(*)".equals(name))
+            return new CountStar(aggregator);
+        if(type==null || !ColumnBatch.isSupported(type.getTypeFormatId()))
+            return null;
+        switch(name){
+            case "COUNT":
+                return new Count(aggregator,column,type);
+            case "MAX":
+                return new MinMax(aggregator,column,type,true);
+            case "MIN":
+                return new MinMax(aggregator,column,type,false);
+            case "SUM":
+                if(ColumnBatch.isIntegral(type.getTypeFormatId()))
+                    return new LongSum(aggregator,column,type);
+                return new Values(aggregator,column,type);
+            case "AVG":
+                return new Values(aggregator,column,type);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Accumulates the selected rows of the batch.
+     *
+     * @param aggregate the row holding the initialized aggregators
+     */
+    abstract void accumulate(ColumnBatch batch,ExecRow aggregate) throws StandardException;
+
+    /**
+     * Hands the selected values over one by one.
+     */
+    void accumulateValues(ColumnBatch batch,DataValueDescriptor aggregatorColumn) throws StandardException{
+        ColumnBatch.ColumnVector vector=batch.vector(column);
+        int[] selection=batch.selection();
+        for(int i=0;i<batch.selected();i++){
+            vector.get(selection[i],value);
+            aggregator.accumulate(value,aggregatorColumn);
+        }
+    }
+
+    /**
+     * Lets the aggregator know that nulls were skipped.
+     */
+    void accumulateNull(DataValueDescriptor aggregatorColumn) throws StandardException{
+        value.setToNull();
+        aggregator.accumulate(value,aggregatorColumn);
+    }
+
+    private static final class CountStar extends ColumnBatchAggregator{
+        private final SQLLongint count=new SQLLongint();
+
+        CountStar(SpliceGenericAggregator aggregator){
+            super(aggregator,-1,null);
+        }
+
+        @Override
+        void accumulate(ColumnBatch batch,ExecRow aggregate) throws StandardException{
+            ExecAggregator ua=(ExecAggregator)aggregate.getColumn(aggregator.getAggregatorColumnId()).getObject();
+            count.setValue(batch.selected());
+            ua.add(count);
+        }
+    }
+
+    private static final class Count extends ColumnBatchAggregator{
+        private final SQLLongint count=new SQLLongint();
+
+        Count(SpliceGenericAggregator aggregator,int column,DataValueDescriptor type){
+            super(aggregator,column,type);
+        }
+
+        @Override
+        void accumulate(ColumnBatch batch,ExecRow aggregate) throws StandardException{
+            DataValueDescriptor aggregatorColumn=aggregate.getColumn(aggregator.getAggregatorColumnId());
+            if(!(aggregatorColumn.getObject() instanceof CountAggregator)){
+                accumulateValues(batch,aggregatorColumn);
+                return;
+            }
+            boolean[] nulls=batch.vector(column).nulls;
+            int[] selection=batch.selection();
+            int selected=batch.selected();
+            long nonNulls=0;
+            for(int i=0;i<selected;i++){
+                if(!nulls[selection[i]])
+                    nonNulls++;
+            }
+            count.setValue(nonNulls);
+            ((ExecAggregator)aggregatorColumn.getObject()).add(count);
+            if(nonNulls<selected)
+                accumulateNull(aggregatorColumn);
+        }
+    }
+
+    private static final class MinMax extends ColumnBatchAggregator{
+        private final boolean max;
+
+        MinMax(SpliceGenericAggregator aggregator,int column,DataValueDescriptor type,boolean max){
+            super(aggregator,column,type);
+            this.max=max;
+        }
+
+        @Override
+        void accumulate(ColumnBatch batch,ExecRow aggregate) throws StandardException{
+            DataValueDescriptor aggregatorColumn=aggregate.getColumn(aggregator.getAggregatorColumnId());
+            ColumnBatch.ColumnVector vector=batch.vector(column);
+            int[] selection=batch.selection();
+            int selected=batch.selected();
+            int best=-1;
+            boolean sawNull=false;
+            for(int i=0;i<selected;i++){
+                int position=selection[i];
+                if(vector.nulls[position])
+                    sawNull=true;
+                else if(best<0 || isBetter(vector,position,best))
+                    best=position;
+            }
+            if(best>=0){
+                vector.get(best,value);
+                aggregator.accumulate(value,aggregatorColumn);
+            }
+            if(sawNull)
+                accumulateNull(aggregatorColumn);
+        }
+
+        private boolean isBetter(ColumnBatch.ColumnVector vector,int position,int best){
+            if(vector.floatingPoint)
+                return max?vector.doubles[position]>vector.doubles[best]:vector.doubles[position]<vector.doubles[best];
+            return max?vector.longs[position]>vector.longs[best]:vector.longs[position]<vector.longs[best];
+        }
+    }
+
+    private static final class LongSum extends ColumnBatchAggregator{
+        private final SQLLongint sum=new SQLLongint();
+
+        LongSum(SpliceGenericAggregator aggregator,int column,DataValueDescriptor type){
+            super(aggregator,column,type);
+        }
+
+        @Override
+        void accumulate(ColumnBatch batch,ExecRow aggregate) throws StandardException{
+            DataValueDescriptor aggregatorColumn=aggregate.getColumn(aggregator.getAggregatorColumnId());
+            if(!(aggregatorColumn.getObject() instanceof LongBufferedSumAggregator)){
+                // the sum was upgraded to a decimal, or isn't buffered as longs
+                accumulateValues(batch,aggregatorColumn);
+                return;
+            }
+            ColumnBatch.ColumnVector vector=batch.vector(column);
+            int[] selection=batch.selection();
+            int selected=batch.selected();
+            long partialSum=0;
+            int nonNulls=0;
+            try{
+                for(int i=0;i<selected;i++){
+                    int position=selection[i];
+                    if(!vector.nulls[position]){
+                        partialSum=Math.addExact(partialSum,vector.longs[position]);
+                        nonNulls++;
+                    }
+                }
+            }catch(ArithmeticException overflow){
+                accumulateValues(batch,aggregatorColumn);
+                return;
+            }
+            if(nonNulls>0){
+                sum.setValue(partialSum);
+                aggregator.accumulate(sum,aggregatorColumn);
+            }
+            if(nonNulls<selected)
+                accumulateNull(aggregatorColumn);
+        }
+    }
+
+    private static final class Values extends ColumnBatchAggregator{
+
+        Values(SpliceGenericAggregator aggregator,int column,DataValueDescriptor type){
+            super(aggregator,column,type);
+        }
+
+        @Override
+        void accumulate(ColumnBatch batch,ExecRow aggregate) throws StandardException{
+            accumulateValues(batch,aggregate.getColumn(aggregator.getAggregatorColumnId()));
+        }
+    }
+}
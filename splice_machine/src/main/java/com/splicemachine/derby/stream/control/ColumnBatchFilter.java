@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.services.io.StoredFormatIds;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.Orderable;
+
+import java.util.BitSet;
+
+/**
+ * The qualifiers of a scan, evaluated over the columns of a {@link ColumnBatch} by narrowing its selection vector.
+ *
+ * It follows {@link com.splicemachine.derby.utils.Scans#qualifyRecordFromRow}: the first list of qualifiers is
+ * a conjunction, and each of the other lists is a disjunction which must hold as well.
+ */
+final class ColumnBatchFilter{
+    private final ColumnPredicate[] conjunction;
+    private final ColumnPredicate[][] disjunctions;
+
+    private ColumnBatchFilter(ColumnPredicate[] conjunction,ColumnPredicate[][] disjunctions){
+        this.conjunction=conjunction;
+        this.disjunctions=disjunctions;
+    }
+
+    /**
+     * @param qualifiers the qualifiers of the scan, or null
+     * @param baseColumnMap the map from storage positions to positions in the row, or null if they match
+     * @param row the row definition of the scan
+     * @param columns set with the positions of the columns the filter reads
+     * @return a filter evaluating all the qualifiers, or null if one of them can't be evaluated over a batch
+     */
+    static ColumnBatchFilter create(Qualifier[][] qualifiers,
+                                    int[] baseColumnMap,
+                                    ExecRow row,
+                                    BitSet columns) throws StandardException{
+        if(qualifiers==null || qualifiers.length==0)
+            return new ColumnBatchFilter(new ColumnPredicate[0],new ColumnPredicate[0][]);
+        ColumnPredicate[] conjunction=predicates(qualifiers[0],baseColumnMap,row,columns);
+        if(conjunction==null)
+            return null;
+        ColumnPredicate[][] disjunctions=new ColumnPredicate[qualifiers.length-1][];
+        for(int i=1;i<qualifiers.length;i++){
+            disjunctions[i-1]=predicates(qualifiers[i],baseColumnMap,row,columns);
+            if(disjunctions[i-1]==null)
+                return null;
+        }
+        return new ColumnBatchFilter(conjunction,disjunctions);
+    }
+
+    /**
+     * Removes the rows which don't qualify from the selection of the batch.
+     */
+    void filter(ColumnBatch batch){
+        int[] selection=batch.selection();
+        int selected=batch.selected();
+        for(ColumnPredicate predicate : conjunction)
+            selected=predicate.filter(batch.vector(predicate.column),selection,selected);
+        for(ColumnPredicate[] disjunction : disjunctions){
+            int kept=0;
+            for(int i=0;i<selected;i++){
+                int position=selection[i];
+                for(ColumnPredicate predicate : disjunction){
+                    if(predicate.matches(batch.vector(predicate.column),position)){
+                        selection[kept++]=position;
+                        break;
+                    }
+                }
+            }
+            selected=kept;
+        }
+        batch.setSelected(selected);
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    private static ColumnPredicate[] predicates(Qualifier[] qualifiers,
+                                                int[] baseColumnMap,
+                                                ExecRow row,
+                                                BitSet columns) throws StandardException{
+        ColumnPredicate[] predicates=new ColumnPredicate[qualifiers==null?0:qualifiers.length];
+        for(int i=0;i<predicates.length;i++){
+            predicates[i]=predicate(qualifiers[i],baseColumnMap,row);
+            if(predicates[i]==null)
+                return null;
+            columns.set(predicates[i].column);
+        }
+        return predicates;
+    }
+
+    private static ColumnPredicate predicate(Qualifier qualifier,int[] baseColumnMap,ExecRow row) throws StandardException{
+        // the orderable of a variant qualifier may change within the scan
+        if(qualifier.getVariantType()<Qualifier.SCAN_INVARIANT || qualifier.getOrderedNulls())
+            return null;
+        int operator=qualifier.getOperator();
+        if(operator<Orderable.ORDER_OP_LESSTHAN || operator>Orderable.ORDER_OP_GREATEROREQUALS)
+            return null;
+        int storagePosition=qualifier.getStoragePosition();
+        int column=baseColumnMap!=null?baseColumnMap[storagePosition]:storagePosition;
+        if(column<0 || column>=row.nColumns())
+            return null;
+        DataValueDescriptor dvd=row.getColumn(column+1);
+        if(dvd==null)
+            return null;
+        qualifier.clearOrderableCache();
+        DataValueDescriptor orderable=qualifier.getOrderable();
+        if(orderable==null || orderable.isNull())
+            return null;
+        int typeFormatId=dvd.getTypeFormatId();
+        int orderableType=orderable.getTypeFormatId();
+        boolean negate=qualifier.negateCompareResult();
+        boolean unknownRV=qualifier.getUnknownRV();
+        if(ColumnBatch.isIntegral(typeFormatId)){
+            if(!ColumnBatch.isIntegral(orderableType))
+                return null;
+            return new LongPredicate(column,operator,negate,unknownRV,orderable.getLong());
+        }else if(typeFormatId==StoredFormatIds.SQL_DOUBLE_ID){
+            if(!ColumnBatch.isSupported(orderableType))
+                return null;
+            return new DoublePredicate(column,operator,negate,unknownRV,orderable.getDouble());
+        }else if(typeFormatId==StoredFormatIds.SQL_REAL_ID){
+            // SQLReal compares as floats, unless compared with a double
+            if(orderableType==StoredFormatIds.SQL_REAL_ID)
+                return new DoublePredicate(column,operator,negate,unknownRV,orderable.getFloat());
+            else if(orderableType==StoredFormatIds.SQL_DOUBLE_ID)
+                return new DoublePredicate(column,operator,negate,unknownRV,orderable.getDouble());
+        }
+        return null;
+    }
+
+    private static boolean compare(int operator,int comparison){
+        switch(operator){
+            case Orderable.ORDER_OP_LESSTHAN:
+                return comparison<0;
+            case Orderable.ORDER_OP_EQUALS:
+                return comparison==0;
+            case Orderable.ORDER_OP_LESSOREQUALS:
+                return comparison<=0;
+            case Orderable.ORDER_OP_GREATERTHAN:
+                return comparison>0;
+            case Orderable.ORDER_OP_GREATEROREQUALS:
+                return comparison>=0;
+            default:
+                throw new IllegalArgumentException("Unexpected operator "+operator);
+        }
+    }
+
+    private static abstract class ColumnPredicate{
+        final int column;
+        final int operator;
+        final boolean negate;
+        final boolean unknownRV;
+
+        ColumnPredicate(int column,int operator,boolean negate,boolean unknownRV){
+            this.column=column;
+            this.operator=operator;
+            this.negate=negate;
+            this.unknownRV=unknownRV;
+        }
+
+        boolean matches(ColumnBatch.ColumnVector vector,int position){
+            // a null doesn't compare with the orderable, like DataValueDescriptor.compare() without ordered nulls
+            if(vector.nulls[position])
+                return unknownRV!=negate;
+            return compare(operator,compareTo(vector,position))!=negate;
+        }
+
+        /**
+         * Keeps the selected positions which match the predicate at the start of the selection.
+         *
+         * @return the number of positions kept
+         */
+        int filter(ColumnBatch.ColumnVector vector,int[] selection,int selected){
+            int kept=0;
+            for(int i=0;i<selected;i++){
+                int position=selection[i];
+                if(matches(vector,position))
+                    selection[kept++]=position;
+            }
+            return kept;
+        }
+
+        abstract int compareTo(ColumnBatch.ColumnVector vector,int position);
+    }
+
+    private static final class LongPredicate extends ColumnPredicate{
+        private final long value;
+
+        LongPredicate(int column,int operator,boolean negate,boolean unknownRV,long value){
+            super(column,operator,negate,unknownRV);
+            this.value=value;
+        }
+
+        @Override
+        int compareTo(ColumnBatch.ColumnVector vector,int position){
+            return Long.compare(vector.longs[position],value);
+        }
+    }
+
+    private static final class DoublePredicate extends ColumnPredicate{
+        private final double value;
+
+        DoublePredicate(int column,int operator,boolean negate,boolean unknownRV,double value){
+            super(column,operator,negate,unknownRV);
+            this.value=value;
+        }
+
+        @Override
+        int compareTo(ColumnBatch.ColumnVector vector,int position){
+            double columnValue=vector.doubles[position];
+            // the same comparison as SQLDouble and SQLReal, which don't order -0.0 before 0.0
+            return columnValue<value?-1:(columnValue>value?1:0);
+        }
+    }
+}
@@ -192,7 +192,25 @@ public class ControlDataSet<V> implements DataSet<V> {
 
     @Override
     public DataSet<V> distinct(OperationContext context) {
-        return new ControlDataSet<>(newHashSet(ControlUtils.checkCancellation(iterator, context), context).iterator());
+        // Only the distinct rows are counted against the control execution limit, as they are first hashed
+        Iterator<Tuple2<V, V>> pairs = Iterators.transform(ControlUtils.checkCancellation(iterator, context), new Function<V, Tuple2<V, V>>() {
+            @Nullable
+            @Override
+            public Tuple2<V, V> apply(@Nullable V v) {
+                return new Tuple2<>(v, v);
+            }
+        });
+        SpillableHashAggregator<V, V, V> distinct = new SpillableHashAggregator<>(pairs, SpillableHashAggregator.<V>first(), false,
+                ControlUtils.getAggregationBufferSize(), ControlUtils.getSpillDirectory(), context, true);
+        ControlUtils.closeOnClose(context, distinct);
+        return new ControlDataSet<>(Iterators.transform(distinct, new Function<Tuple2<V, V>, V>() {
+            @Nullable
+            @Override
+            public V apply(@Nullable Tuple2<V, V> t) {
+                assert t!=null: "Tuple cannot be null";
+                return t._1();
+            }
+        }));
     }
 
     @Override
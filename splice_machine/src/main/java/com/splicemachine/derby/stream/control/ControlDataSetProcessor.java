@@ -24,8 +24,10 @@ import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.db.impl.sql.compile.ExplainNode;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.impl.sql.execute.operations.ScanOperation;
+import com.splicemachine.derby.impl.sql.execute.pin.PinnedTableCache;
 import com.splicemachine.derby.impl.sql.execute.operations.scanner.TableScannerBuilder;
 import com.splicemachine.derby.stream.function.Partitioner;
+import com.splicemachine.derby.stream.function.TableScanPredicateFunction;
 import com.splicemachine.derby.stream.iapi.*;
 import com.splicemachine.derby.stream.iterator.TableScannerIterator;
 import com.splicemachine.derby.utils.marshall.KeyHashDecoder;
@@ -125,6 +127,13 @@ public class ControlDataSetProcessor implements DataSetProcessor{
         return new TableScannerBuilder<V>(){
             @Override
             public DataSet<V> buildDataSet() throws StandardException{
+                if(pin && spliceOperation instanceof ScanOperation){
+                    Iterator<ExecRow> pinnedRows=PinnedTableCache.cache().read((ScanOperation)spliceOperation,
+                            ControlDataSetProcessor.this,txn,scan,template,baseColumnMap);
+                    if(pinnedRows!=null)
+                        return new ControlDataSet(pinnedRows)
+                                .filter(new TableScanPredicateFunction(createOperationContext(spliceOperation)));
+                }
                 Partition p;
                 try{
                     p =SIDriver.driver().getTableFactory().getTable(tableName);
@@ -252,7 +261,7 @@ public class ControlDataSetProcessor implements DataSetProcessor{
         // no op
     }
 
-    private static class TextFileIterator implements Iterator<String>{
+    static class TextFileIterator implements Iterator<String>{
 
         Scanner scanner;
 
@@ -370,6 +379,7 @@ public class ControlDataSetProcessor implements DataSetProcessor{
 
     @Override
     public void dropPinnedTable(long conglomerateId) throws StandardException {
+        PinnedTableCache.cache().drop(conglomerateId);
         DistributedDataSetProcessor proc = EngineDriver.driver().processorFactory().distributedProcessor();
         proc.dropPinnedTable(conglomerateId);
     }
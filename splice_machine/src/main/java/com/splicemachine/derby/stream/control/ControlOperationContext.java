@@ -33,6 +33,7 @@ import java.io.*;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Created by jleach on 4/17/15.
@@ -41,14 +42,17 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
     private static final String LINE_SEP = System.lineSeparator();
     private static Logger LOG = Logger.getLogger(ControlOperationContext.class);
 
-    long rowsRead;
-        long rowsFiltered;
-        long rowsWritten;
+    // recorded concurrently when a file is imported in parallel ranges
+    final LongAdder rowsRead=new LongAdder();
+        final LongAdder rowsFiltered=new LongAdder();
+        final LongAdder rowsWritten=new LongAdder();
         long rowsRetried;
         long tooBusy;
         long rowsJoinedLeft;
         long rowsJoinedRight;
         long rowsProduced;
+        long spilledBytes;
+        long peakMemoryUsage;
         List<String> badRecords;
         public ActivationHolder activationHolder;
         public SpliceTransactionResourceImpl impl;
@@ -59,7 +63,7 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
         private int failBadRecordCount = -1;
         private boolean permissive;
         private BadRecordsRecorder badRecordsRecorder;
-        private boolean failed;
+        private volatile boolean failed;
         private int numberBadRecords = 0;
 
     public ControlOperationContext() {
@@ -75,9 +79,6 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
                 throw new RuntimeException(se);
             }
         }
-        rowsRead = 0;
-        rowsFiltered=0;
-        rowsWritten = 0;
         badRecords =new ArrayList<>();
     }
     protected ControlOperationContext(Activation activation) {
@@ -140,22 +141,22 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
 
     @Override
     public void recordRead() {
-        rowsRead++;
+        rowsRead.increment();
     }
 
     @Override
     public void recordFilter() {
-        rowsFiltered++;
+        rowsFiltered.increment();
     }
 
     @Override
     public void recordRead(long w) {
-        rowsRead+=w;
+        rowsRead.add(w);
     }
 
     @Override
     public void recordFilter(long w) {
-        rowsFiltered+=w;
+        rowsFiltered.add(w);
     }
 
 
@@ -171,12 +172,12 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
 
     @Override
     public void recordWrite() {
-        rowsWritten++;
+        rowsWritten.increment();
     }
 
     @Override
     public void recordPipelineWrites(long w) {
-        rowsWritten+=w;
+        rowsWritten.add(w);
     }
 
     @Override
@@ -246,17 +247,17 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
 
     @Override
     public long getRecordsRead() {
-        return rowsRead;
+        return rowsRead.sum();
     }
 
     @Override
     public long getRecordsFiltered() {
-        return rowsFiltered;
+        return rowsFiltered.sum();
     }
 
     @Override
     public long getRecordsWritten() {
-        return rowsWritten;
+        return rowsWritten.sum();
     }
 
     @Override
@@ -269,6 +270,27 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
         return tooBusy;
     }
 
+    @Override
+    public void recordSpill(long bytes) {
+        spilledBytes+=bytes;
+    }
+
+    @Override
+    public void recordMemoryUsage(long bytes) {
+        if (bytes > peakMemoryUsage)
+            peakMemoryUsage = bytes;
+    }
+
+    @Override
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    @Override
+    public long getPeakMemoryUsage() {
+        return peakMemoryUsage;
+    }
+
     @Override
     public void pushScope(String displayName) {
         // no op
@@ -300,7 +322,7 @@ public class ControlOperationContext<Op extends SpliceOperation> implements Oper
     }
 
     @Override
-    public void recordBadRecord(String badRecord, Exception e) {
+    public synchronized void recordBadRecord(String badRecord, Exception e) {
         if (! failed) {
             String errorState = "";
             if (e != null) {
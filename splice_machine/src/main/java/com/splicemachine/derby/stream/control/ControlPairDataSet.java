@@ -35,7 +35,6 @@ import org.spark_project.guava.collect.*;
 import scala.Tuple2;
 import javax.annotation.Nullable;
 import java.util.*;
-import java.util.function.Consumer;
 
 import static com.splicemachine.derby.stream.control.ControlUtils.limit;
 import static com.splicemachine.derby.stream.control.ControlUtils.checkCancellation;
@@ -90,46 +89,13 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public <Op extends SpliceOperation> PairDataSet<K, V> reduceByKey(final SpliceFunction2<Op,V, V, V> function2) {
-        final Iterator<Tuple2<K,V>> limitIterator = limit(checkCancellation(source,function2), function2.operationContext);
-        return new ControlPairDataSet(new Iterator<Tuple2<K,V>>(){
-            private Iterator<Map.Entry<K,V>> set;
-            @Override
-            public boolean hasNext() {
-                if (set == null) {
-                    try {
-                        HashMap<K, V> map = Maps.newHashMap();
-                        while (limitIterator.hasNext()) {
-                            Tuple2<K, V> t = limitIterator.next();
-                            if (map.containsKey(t._1())) {
-                                function2.call( map.get(t._1()),t._2());
-                            } else {
-                                map.put((K)((ExecRow)t._1).getClone(), function2.call(null,t._2()));
-                            }
-                        }
-                        set = map.entrySet().iterator();
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-                return set.hasNext();
-            }
-
-            @Override
-            public Tuple2<K,V> next() {
-                Map.Entry<K,V> entry = set.next();
-                return Tuple2.apply(entry.getKey(),entry.getValue());
-            }
-
-            @Override
-            public void remove() {
-                throw new UnsupportedOperationException("Not Implemented");
-            }
-
-            @Override
-            public void forEachRemaining(Consumer action) {
-                throw new UnsupportedOperationException("Not Implemented");
-            }
-        });
+        // Aggregates in memory unless the aggregates exceed the aggregation buffer, in which case partitions are spilled to disk
+        SpillableHashAggregator<K, V, V> aggregates = new SpillableHashAggregator<>(
+                limit(checkCancellation(source,function2), function2.operationContext),
+                SpillableHashAggregator.reducing(function2), true,
+                ControlUtils.getAggregationBufferSize(), ControlUtils.getSpillDirectory(), function2.operationContext);
+        ControlUtils.closeOnClose(function2.operationContext, aggregates);
+        return new ControlPairDataSet<>(aggregates);
     }
 
     @Override
@@ -144,18 +110,14 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public PairDataSet<K, V> sortByKey(final Comparator<K> comparator, OperationContext operationContext) {
-        /*
-         * -sf- this is done a bit goofily, so that we can support multiple versions of guava.
-         *
-         * This is essentially copying out FluentIterable.from(source).toSortedList(comparator) logic
-         * directly into the method, so that we can support the same code line from 12.0.1 on.
-         */
-        return new ControlPairDataSet<>(Ordering.from(new Comparator<Tuple2<K, V>>() {
-            @Override
-            public int compare(Tuple2<K, V> o1, Tuple2<K, V> o2) {
-                return comparator.compare(o1._1(), o2._1());
-            }
-        }).immutableSortedCopy(() -> limit(ControlUtils.checkCancellation(source,operationContext), operationContext)).iterator());
+        // Sorts in memory unless the rows exceed the sort buffer, in which case sorted runs are spilled to disk
+        ExternalSortIterator<K, V> sorted = new ExternalSortIterator<>(
+                limit(ControlUtils.checkCancellation(source,operationContext), operationContext),
+                comparator, ControlUtils.getSortBufferSize(), ControlUtils.getSpillDirectory(),
+                ControlUtils.getQueryMemoryManager(operationContext));
+        // the operation may close before the sort is consumed (limit, cancellation, error)
+        ControlUtils.closeOnClose(operationContext, sorted);
+        return new ControlPairDataSet<>(sorted);
     }
 
     @Override
@@ -172,15 +134,19 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
 
     @Override
     public PairDataSet<K, Iterable<V>> groupByKey(OperationContext context) {
-        Multimap<K,V> newMap = multimapFromIterator(limit(ControlUtils.checkCancellation(source,context), context));
-        return new ControlPairDataSet<>(FluentIterable.from(newMap.asMap().entrySet()).transform(new Function<Map.Entry<K, Collection<V>>, Tuple2<K, Iterable<V>>>() {
+        SpillableHashAggregator<K, V, List<V>> groups = new SpillableHashAggregator<>(
+                limit(ControlUtils.checkCancellation(source,context), context),
+                SpillableHashAggregator.<V>grouping(), false,
+                ControlUtils.getAggregationBufferSize(), ControlUtils.getSpillDirectory(), context);
+        ControlUtils.closeOnClose(context, groups);
+        return new ControlPairDataSet<>(Iterators.transform(groups, new Function<Tuple2<K, List<V>>, Tuple2<K, Iterable<V>>>() {
             @Nullable
             @Override
-            public Tuple2<K, Iterable<V>> apply(@Nullable Map.Entry<K, Collection<V>> e) {
-                assert e!=null: "E cannot be null";
-                return new Tuple2<K, Iterable<V>>(e.getKey(), e.getValue());
+            public Tuple2<K, Iterable<V>> apply(@Nullable Tuple2<K, List<V>> t) {
+                assert t!=null: "Tuple cannot be null";
+                return new Tuple2<K, Iterable<V>>(t._1(), t._2());
             }
-        }).iterator());
+        }));
     }
 
     @Override
@@ -191,7 +157,7 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     @Override
     public <W> PairDataSet< K, Tuple2<V, W>> hashJoin(PairDataSet<K, W> rightDataSet, OperationContext operationContext) {
         // Materializes the right side
-        final Multimap<K,W> rightSide = multimapFromIterator(limit(ControlUtils.checkCancellation(((ControlPairDataSet<K,W>) rightDataSet).source,operationContext), operationContext));
+        final Multimap<K,W> rightSide = multimapFromIterator(limit(ControlUtils.checkCancellation(((ControlPairDataSet<K,W>) rightDataSet).source,operationContext), operationContext), operationContext);
         return new ControlPairDataSet(Iterators.concat(Iterators.transform(ControlUtils.checkCancellation(source,operationContext),new Function<Tuple2<K, V>, Iterator<Tuple2<K, Tuple2<V, W>>>>() {
             @Nullable
             @Override
@@ -217,7 +183,7 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     @Override
     public <W> PairDataSet< K, V> subtractByKey(PairDataSet<K, W> rightDataSet, OperationContext operationContext) {
         // Materializes the right side
-        final Multimap<K,W> rightSide = multimapFromIterator(limit(ControlUtils.checkCancellation(((ControlPairDataSet<K,W>) rightDataSet).source,operationContext), operationContext));
+        final Multimap<K,W> rightSide = multimapFromIterator(limit(ControlUtils.checkCancellation(((ControlPairDataSet<K,W>) rightDataSet).source,operationContext), operationContext), operationContext);
         return new ControlPairDataSet<>(Iterators.filter(ControlUtils.checkCancellation(source,operationContext), new Predicate<Tuple2<K, V>>() {
             @Override
             public boolean apply(@Nullable Tuple2<K, V> t) {
@@ -278,8 +244,8 @@ public class ControlPairDataSet<K,V> implements PairDataSet<K,V> {
     
     @Override
     public <W> PairDataSet<K, Tuple2<Iterable<V>, Iterable<W>>> cogroup(PairDataSet<K, W> rightDataSet, OperationContext operationContext) {
-        Multimap<K, V> left = multimapFromIterator(limit(ControlUtils.checkCancellation(source,operationContext), operationContext));
-        Multimap<K, W> right = multimapFromIterator(limit(ControlUtils.checkCancellation(((ControlPairDataSet<K, W>) rightDataSet).source, operationContext), operationContext));
+        Multimap<K, V> left = multimapFromIterator(limit(ControlUtils.checkCancellation(source,operationContext), operationContext), operationContext);
+        Multimap<K, W> right = multimapFromIterator(limit(ControlUtils.checkCancellation(((ControlPairDataSet<K, W>) rightDataSet).source, operationContext), operationContext), operationContext);
 
         List<Tuple2<K, Tuple2<Iterable<V>, Iterable<W>>>> result = new ArrayList<>();
         for (K key: Sets.union(left.keySet(),right.keySet())){
@@ -14,14 +14,24 @@
 
 package com.splicemachine.derby.stream.control;
 
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.db.iapi.services.cache.ClassSize;
+import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.sql.conn.ControlExecutionLimiter;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.conn.QueryMemoryManager;
 import com.splicemachine.db.iapi.sql.conn.StatementContext;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.stream.function.AbstractSpliceFunction;
 import com.splicemachine.derby.stream.iapi.OperationContext;
 import org.spark_project.guava.base.Function;
 import org.spark_project.guava.collect.*;
 import scala.Tuple2;
 import javax.annotation.Nullable;
+import java.io.File;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -53,6 +63,80 @@ public class ControlUtils {
         return newMap;
     }
 
+    /**
+     * Materializes the pairs, reserving their memory against the query until the operation closes. The query is
+     * resubmitted to Spark if the memory is denied.
+     */
+    public static <K, V> Multimap<K,V> multimapFromIterator(Iterator<Tuple2<K, V>> iterator, OperationContext context) {
+        QueryMemoryManager memory = getQueryMemoryManager(context);
+        Multimap<K,V> newMap = ArrayListMultimap.create();
+        long reserved = 0L;
+        while (iterator.hasNext()) {
+            Tuple2<K, V> t = iterator.next();
+            long size = estimateMemoryUsage(t._1()) + estimateMemoryUsage(t._2());
+            memory.reserve(size);
+            reserved += size;
+            newMap.put(t._1(), t._2());
+        }
+        releaseOnClose(context, memory, reserved);
+        return newMap;
+    }
+
+    /**
+     * @return the memory manager of the query the operation belongs to
+     */
+    public static QueryMemoryManager getQueryMemoryManager(OperationContext context) {
+        if (context == null || context.getActivation() == null)
+            return QueryMemoryManager.UNLIMITED;
+        LanguageConnectionContext lcc = context.getActivation().getLanguageConnectionContext();
+        QueryMemoryManager memory = lcc == null ? null : lcc.getQueryMemoryManager();
+        return memory == null ? QueryMemoryManager.UNLIMITED : memory;
+    }
+
+    /**
+     * @return the control execution limiter of the query the operation belongs to
+     */
+    public static ControlExecutionLimiter getControlExecutionLimiter(OperationContext context) {
+        if (context == null || context.getActivation() == null)
+            return ControlExecutionLimiter.NO_OP;
+        LanguageConnectionContext lcc = context.getActivation().getLanguageConnectionContext();
+        ControlExecutionLimiter limiter = lcc == null ? null : lcc.getControlExecutionLimiter();
+        return limiter == null ? ControlExecutionLimiter.NO_OP : limiter;
+    }
+
+    /**
+     * Releases the memory reserved by an operation when it closes.
+     */
+    public static void releaseOnClose(OperationContext context, final QueryMemoryManager memory, final long bytes) {
+        if (context == null || bytes <= 0)
+            return;
+        SpliceOperation operation = context.getOperation();
+        if (operation == null)
+            return;
+        try {
+            operation.registerCloseable(() -> memory.release(bytes));
+        } catch (StandardException e) {
+            memory.release(bytes);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Closes a resource, such as a spilling iterator, when the operation closes.
+     */
+    public static void closeOnClose(OperationContext context, AutoCloseable closeable) {
+        if (context == null)
+            return;
+        SpliceOperation operation = context.getOperation();
+        if (operation == null)
+            return;
+        try {
+            operation.registerCloseable(closeable);
+        } catch (StandardException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static <E> Iterator<E> limit(Iterator<E> delegate, OperationContext context) {
         if (context == null) {
             // no context, iterator is unlimited
@@ -103,4 +187,66 @@ public class ControlUtils {
         });
     }
 
+    /**
+     * Estimates the heap footprint of a row buffered by a control-side operation. Objects other than
+     * {@link ExecRow}s are not accounted for.
+     */
+    public static long estimateMemoryUsage(Object o) {
+        if (!(o instanceof ExecRow))
+            return 0L;
+        long size = ClassSize.refSize;
+        for (DataValueDescriptor dvd : ((ExecRow) o).getRowArray()) {
+            size += ClassSize.refSize;
+            if (dvd != null)
+                size += dvd.estimateMemoryUsage();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of bytes a control-side sort may keep on the heap before spilling
+     */
+    public static long getSortBufferSize() {
+        SConfiguration config = getConfiguration();
+        return config == null ? Long.MAX_VALUE : config.getControlExecutionSortBufferSize();
+    }
+
+    /**
+     * @return the number of bytes a control-side hash aggregation may keep on the heap before spilling
+     */
+    public static long getAggregationBufferSize() {
+        SConfiguration config = getConfiguration();
+        return config == null ? Long.MAX_VALUE : config.getControlExecutionAggregationBufferSize();
+    }
+
+    /**
+     * @return the local directory used for control-side spill files, or null if spilling is not possible
+     */
+    public static File getSpillDirectory() {
+        SConfiguration config = getConfiguration();
+        if (config == null || config.getControlExecutionSpillDirectory() == null)
+            return null;
+        return new File(config.getControlExecutionSpillDirectory());
+    }
+
+    /**
+     * @return true if control-side restrictions and projections are evaluated in a single pass over their source
+     */
+    public static boolean isSinglePassProjectRestrict() {
+        SConfiguration config = getConfiguration();
+        return config == null || config.isControlExecutionSinglePassProjectRestrict();
+    }
+
+    /**
+     * @return true if control-side scalar aggregations over a table scan may read the scan in column batches
+     */
+    public static boolean isBatchScalarAggregation() {
+        SConfiguration config = getConfiguration();
+        return config == null || config.isControlExecutionBatchScalarAggregation();
+    }
+
+    private static SConfiguration getConfiguration() {
+        EngineDriver driver = EngineDriver.driver();
+        return driver == null ? null : driver.getConfiguration();
+    }
 }
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.conn.QueryMemoryManager;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import org.apache.log4j.Logger;
+import scala.Tuple2;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Control-side external merge sort of (key, value) pairs.
+ * <p>
+ * Pairs are buffered on the heap until their estimated size reaches the configured buffer size. The
+ * buffer is then sorted and spilled to a {@link RowPairSpillFile} as a sorted run. Once the source is
+ * exhausted, the spilled runs and the last in-memory run are k-way merged. If everything fits in the
+ * buffer nothing is spilled and the behavior matches a plain in-memory sort.
+ * <p>
+ * The buffered pairs are reserved against the memory of the query, and the buffer is spilled early when the
+ * reservation is denied, once it holds a minimum run; below it the pairs are buffered without a reservation, so
+ * that an exhausted memory pool doesn't spill a run, and open a file to merge, for every pair. Pairs which can't be
+ * spilled are reserved with {@link QueryMemoryManager#reserve(long)},
+ * which resubmits the query to Spark when denied. The memory is released once the sorted pairs are consumed.
+ * <p>
+ * The sort is stable: pairs with equal keys are returned in input order.
+ * Only pairs of {@link ExecRow}s can be spilled, other pairs are always sorted in memory.
+ * <p>
+ * The sort is lazy, it happens on the first call to {@link #hasNext()}.
+ */
+public class ExternalSortIterator<K,V> implements Iterator<Tuple2<K,V>>, AutoCloseable{
+    private static final Logger LOG=Logger.getLogger(ExternalSortIterator.class);
+    /* the bytes a run holds at least before a denied reservation spills it */
+    static final long DEFAULT_MIN_RUN_BYTES=1024L*1024;
+
+    private final Iterator<Tuple2<K,V>> source;
+    private final Comparator<K> comparator;
+    private final long bufferSize;
+    private final long minRunBytes;
+    private final File spillDirectory;
+    private final QueryMemoryManager memory;
+
+    private final List<RowPairSpillFile> runs=new ArrayList<>();
+    private Iterator<Tuple2<K,V>> sorted;
+    private long spilledBytes;
+    private long reservedBytes;
+
+    /**
+     * @param source         the pairs to sort
+     * @param comparator     the key ordering
+     * @param bufferSize     the maximum estimated number of bytes kept on the heap before spilling
+     * @param spillDirectory where to spill sorted runs, no spilling happens if {@code null}
+     */
+    public ExternalSortIterator(Iterator<Tuple2<K,V>> source,Comparator<K> comparator,long bufferSize,File spillDirectory){
+        this(source,comparator,bufferSize,spillDirectory,QueryMemoryManager.UNLIMITED);
+    }
+
+    /**
+     * @param memory the memory manager of the query the buffered pairs are reserved against
+     */
+    public ExternalSortIterator(Iterator<Tuple2<K,V>> source,Comparator<K> comparator,long bufferSize,File spillDirectory,
+                                QueryMemoryManager memory){
+        this(source,comparator,bufferSize,spillDirectory,memory,Math.min(bufferSize,DEFAULT_MIN_RUN_BYTES));
+    }
+
+    /**
+     * @param minRunBytes the estimated number of bytes the buffer holds at least before a denied reservation spills it
+     */
+    ExternalSortIterator(Iterator<Tuple2<K,V>> source,Comparator<K> comparator,long bufferSize,File spillDirectory,
+                         QueryMemoryManager memory,long minRunBytes){
+        this.source=source;
+        this.comparator=comparator;
+        this.bufferSize=bufferSize;
+        this.minRunBytes=minRunBytes;
+        this.spillDirectory=spillDirectory;
+        this.memory=memory;
+    }
+
+    @Override
+    public boolean hasNext(){
+        if(sorted==null){
+            try{
+                sorted=sort();
+            }catch(StandardException|IOException e){
+                close();
+                throw new RuntimeException(e);
+            }
+        }
+        if(!sorted.hasNext()){
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Tuple2<K,V> next(){
+        if(!hasNext())
+            throw new NoSuchElementException();
+        return sorted.next();
+    }
+
+    /**
+     * @return the number of sorted runs spilled to disk
+     */
+    public int getSpilledRuns(){
+        return runs.size();
+    }
+
+    /**
+     * @return the number of bytes spilled to disk
+     */
+    public long getSpilledBytes(){
+        return spilledBytes;
+    }
+
+    /**
+     * Releases the reserved memory and deletes the spilled runs, it is safe to call more than once.
+     */
+    @Override
+    public void close(){
+        releaseMemory();
+        for(RowPairSpillFile run : runs){
+            try{
+                run.close();
+            }catch(IOException e){
+                LOG.warn("Unable to clean up spill file",e);
+            }
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private Iterator<Tuple2<K,V>> sort() throws StandardException, IOException{
+        Comparator<Tuple2<K,V>> tupleComparator=(o1,o2) -> comparator.compare(o1._1(),o2._1());
+        List<Tuple2<K,V>> buffer=new ArrayList<>();
+        long bufferedBytes=0L;
+        while(source.hasNext()){
+            Tuple2<K,V> t=source.next();
+            long size=ControlUtils.estimateMemoryUsage(t._1())+ControlUtils.estimateMemoryUsage(t._2());
+            boolean reserved=memory.tryReserve(size);
+            if(!reserved && !canSpill(t)){
+                memory.reserve(size);
+                reserved=true;
+            }
+            if(reserved)
+                reservedBytes+=size;
+            buffer.add(t);
+            bufferedBytes+=size;
+            if((bufferedBytes>=bufferSize || (!reserved && bufferedBytes>=minRunBytes)) && canSpill(t)){
+                buffer.sort(tupleComparator);
+                spill(buffer);
+                buffer.clear();
+                bufferedBytes=0L;
+                releaseMemory();
+            }
+        }
+        buffer.sort(tupleComparator);
+        if(runs.isEmpty())
+            return buffer.iterator();
+
+        if(LOG.isDebugEnabled())
+            LOG.debug(String.format("Merging %d spilled runs (%d bytes) and %d in-memory rows",runs.size(),spilledBytes,buffer.size()));
+        return merge(buffer);
+    }
+
+    private void releaseMemory(){
+        memory.release(reservedBytes);
+        reservedBytes=0L;
+    }
+
+    private boolean canSpill(Tuple2<K,V> t){
+        return spillDirectory!=null && t._1() instanceof ExecRow && t._2() instanceof ExecRow;
+    }
+
+    private void spill(List<Tuple2<K,V>> buffer) throws StandardException, IOException{
+        Tuple2<K,V> first=buffer.get(0);
+        RowPairSpillFile run=RowPairSpillFile.create(spillDirectory,(ExecRow)first._1(),(ExecRow)first._2());
+        runs.add(run);
+        for(Tuple2<K,V> t : buffer){
+            run.write((ExecRow)t._1(),(ExecRow)t._2());
+        }
+        spilledBytes+=run.getBytesWritten();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Iterator<Tuple2<K,V>> merge(List<Tuple2<K,V>> lastRun) throws IOException{
+        final PriorityQueue<RunCursor> queue=new PriorityQueue<>(runs.size()+1);
+        int order=0;
+        for(RowPairSpillFile run : runs){
+            RunCursor cursor=new RunCursor((Iterator)run.read(),order++);
+            if(cursor.advance())
+                queue.add(cursor);
+        }
+        RunCursor memoryCursor=new RunCursor(lastRun.iterator(),order);
+        if(memoryCursor.advance())
+            queue.add(memoryCursor);
+
+        return new Iterator<Tuple2<K,V>>(){
+            @Override
+            public boolean hasNext(){
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Tuple2<K,V> next(){
+                RunCursor cursor=queue.poll();
+                if(cursor==null)
+                    throw new NoSuchElementException();
+                Tuple2<K,V> next=cursor.current;
+                if(cursor.advance())
+                    queue.add(cursor);
+                return next;
+            }
+        };
+    }
+
+    /**
+     * Position in one of the sorted runs. Ties are broken by run order, runs being
+     * created in input order, which keeps the merge stable.
+     */
+    private class RunCursor implements Comparable<RunCursor>{
+        private final Iterator<Tuple2<K,V>> run;
+        private final int order;
+        private Tuple2<K,V> current;
+
+        RunCursor(Iterator<Tuple2<K,V>> run,int order){
+            this.run=run;
+            this.order=order;
+        }
+
+        boolean advance(){
+            if(!run.hasNext()){
+                current=null;
+                return false;
+            }
+            current=run.next();
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunCursor o){
+            int c=comparator.compare(current._1(),o.current._1());
+            return c!=0?c:Integer.compare(order,o.order);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.EngineDriver;
+import com.splicemachine.access.api.DistributedFileSystem;
+import com.splicemachine.access.api.FileInfo;
+import com.splicemachine.access.api.SConfiguration;
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.stream.iapi.DataSet;
+import com.splicemachine.si.impl.driver.SIDriver;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.base.Throwables;
+import org.spark_project.guava.io.ByteStreams;
+import org.spark_project.guava.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a large text file on the control side by splitting it into ranges, which are parsed in parallel.
+ *
+ * Each import parses its ranges with its own pool of threads, whose size is the configured import parallelism,
+ * and which is shut down once all the ranges are read or the rows are closed. The parsed rows are handed to the reading thread in batches, through a bounded
+ * queue, so they are not all kept in memory when they are produced faster than they are written. Rows are not
+ * returned in the order of the file.
+ *
+ * @see TextFileSplitter
+ */
+public abstract class ParallelTextFileReader<T>{
+    private static final Logger LOG=Logger.getLogger(ParallelTextFileReader.class);
+    private static final int BATCH_SIZE=1024;
+    private static final Object END_OF_RANGE=new Object();
+
+    private final boolean quotedNewLines;
+    private final String characterDelimiter;
+    private final String charset;
+
+    /**
+     * @param quotedNewLines whether quoted columns may contain line feeds
+     * @param characterDelimiter the quote character, or null for the default one
+     * @param charset the encoding of the file, or null for UTF-8
+     */
+    protected ParallelTextFileReader(boolean quotedNewLines,String characterDelimiter,String charset){
+        this.quotedNewLines=quotedNewLines;
+        this.characterDelimiter=characterDelimiter;
+        this.charset=charset;
+    }
+
+    /**
+     * Parses a range of the file. Called concurrently for different ranges.
+     *
+     * @param range the bytes of the range, which start at the beginning of a record
+     */
+    protected abstract Iterator<T> readRange(InputStream range) throws Exception;
+
+    protected static Iterator<String> lines(InputStream range){
+        return new ControlDataSetProcessor.TextFileIterator(range);
+    }
+
+    /**
+     * @return the rows of the file, or null if the file should be read sequentially, because it's compressed, too
+     * small, a directory, or in an encoding it can't be split in
+     */
+    public DataSet<T> read(String fileName,SpliceOperation op) throws IOException, StandardException{
+        SConfiguration config=EngineDriver.driver().getConfiguration();
+        int parallelism=config.getImportControlParallelism();
+        long splitSize=config.getImportControlSplitSize();
+        if(parallelism<=1 || splitSize<=0 || quoteByte()<0 || !isSplittableEncoding() || fileName.endsWith("gz"))
+            return null;
+
+        RangeIterator rows=read(fileSystem(fileName),fileName,parallelism,splitSize);
+        if(rows==null)
+            return null;
+        if(op!=null)
+            op.registerCloseable(rows);
+        return new ControlDataSet<>(rows);
+    }
+
+    /**
+     * @return the rows of the file, which must be closed if they are not all read, or null if the file is a
+     * directory or not larger than {@code splitSize}
+     */
+    RangeIterator read(DistributedFileSystem dfs,String fileName,int parallelism,long splitSize) throws IOException{
+        FileInfo info=dfs.getInfo(fileName);
+        if(info.isDirectory() || info.size()<=splitSize)
+            return null;
+        long[] offsets;
+        try(InputStream in=dfs.newInputStream(fileName,StandardOpenOption.READ)){
+            offsets=TextFileSplitter.split(in,info.size(),splitSize,quotedNewLines,(byte)quoteByte());
+        }
+        if(offsets.length<2)
+            return null;
+        if(LOG.isDebugEnabled())
+            LOG.debug("Reading "+fileName+" in "+offsets.length+" ranges");
+
+        RangeIterator rows=new RangeIterator(offsets.length,Math.min(parallelism,offsets.length));
+        for(int i=0;i<offsets.length;i++){
+            long end=i+1<offsets.length?offsets[i+1]:info.size();
+            rows.submit(new RangeReader(rows,dfs,fileName,offsets[i],end));
+        }
+        return rows;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private int quoteByte(){
+        char quote=characterDelimiter!=null && !characterDelimiter.isEmpty()?characterDelimiter.charAt(0):'"';
+        return quote<0x80?quote:-1;
+    }
+
+    private boolean isSplittableEncoding(){
+        if(charset==null)
+            return true;
+        Charset cs=Charset.forName(charset);
+        return cs.equals(StandardCharsets.UTF_8) || cs.equals(StandardCharsets.US_ASCII) || cs.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    private static DistributedFileSystem fileSystem(String fileName) throws IOException{
+        try{
+            return SIDriver.driver().getSIEnvironment().fileSystem(fileName);
+        }catch(URISyntaxException e){
+            throw new IOException(e);
+        }
+    }
+
+    private class RangeReader implements Runnable{
+        private final RangeIterator rows;
+        private final DistributedFileSystem dfs;
+        private final String fileName;
+        private final long start;
+        private final long end;
+
+        RangeReader(RangeIterator rows,DistributedFileSystem dfs,String fileName,long start,long end){
+            this.rows=rows;
+            this.dfs=dfs;
+            this.fileName=fileName;
+            this.start=start;
+            this.end=end;
+        }
+
+        @Override
+        public void run(){
+            try(InputStream in=dfs.newInputStream(fileName,StandardOpenOption.READ)){
+                if(!TextFileSplitter.skip(in,start))
+                    throw new IOException("File "+fileName+" is shorter than "+start+" bytes");
+                Iterator<T> range=readRange(ByteStreams.limit(in,end-start));
+                List<T> batch=new ArrayList<>(BATCH_SIZE);
+                while(!rows.closed && range.hasNext()){
+                    batch.add(range.next());
+                    if(batch.size()==BATCH_SIZE){
+                        rows.put(batch);
+                        batch=new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                if(!batch.isEmpty())
+                    rows.put(batch);
+                rows.put(END_OF_RANGE);
+            }catch(Throwable t){
+                rows.put(t);
+            }
+        }
+    }
+
+    class RangeIterator implements Iterator<T>, AutoCloseable{
+        private final BlockingQueue<Object> queue;
+        private final ExecutorService executor;
+        private final List<Future<?>> futures;
+        private volatile boolean closed;
+        private int remainingRanges;
+        private Iterator<T> batch=Collections.emptyIterator();
+
+        RangeIterator(int ranges,int parallelism){
+            this.queue=new ArrayBlockingQueue<>(2*parallelism);
+            this.executor=Executors.newFixedThreadPool(parallelism,new ThreadFactoryBuilder()
+                    .setNameFormat("control-import-%d").setDaemon(true).build());
+            this.futures=new ArrayList<>(ranges);
+            this.remainingRanges=ranges;
+        }
+
+        void submit(RangeReader reader){
+            futures.add(executor.submit(reader));
+        }
+
+        void put(Object element){
+            try{
+                while(!closed){
+                    if(queue.offer(element,100,TimeUnit.MILLISECONDS))
+                        return;
+                }
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext(){
+            if(closed)
+                return false;
+            while(!batch.hasNext()){
+                if(remainingRanges==0){
+                    executor.shutdown();
+                    return false;
+                }
+                Object element;
+                try{
+                    element=queue.take();
+                }catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new RuntimeException(e);
+                }
+                if(element==END_OF_RANGE)
+                    remainingRanges--;
+                else if(element instanceof Throwable){
+                    close();
+                    throw Throwables.propagate((Throwable)element);
+                }else
+                    batch=((List<T>)element).iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public T next(){
+            if(!hasNext()) throw new NoSuchElementException();
+            return batch.next();
+        }
+
+        @Override
+        public void remove(){
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close(){
+            if(closed)
+                return;
+            closed=true;
+            for(Future<?> future : futures){
+                future.cancel(true);
+            }
+            executor.shutdownNow();
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.utils.marshall.EntryDataHash;
+import com.splicemachine.derby.utils.marshall.KeyDecoder;
+import com.splicemachine.derby.utils.marshall.KeyEncoder;
+import com.splicemachine.derby.utils.marshall.NoOpPostfix;
+import com.splicemachine.derby.utils.marshall.NoOpPrefix;
+import com.splicemachine.derby.utils.marshall.dvd.DescriptorSerializer;
+import com.splicemachine.derby.utils.marshall.dvd.VersionedSerializers;
+import com.splicemachine.utils.IntArrays;
+import scala.Tuple2;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Local temporary file holding (key, value) row pairs spilled by control-side operations.
+ * <p>
+ * Rows are encoded with a {@link KeyEncoder} over an {@link EntryDataHash}, the same encoding
+ * used for stored rows, so nulls and every column type round trip. Each record is written as
+ * {@code [key length][key bytes][value length][value bytes]}.
+ * <p>
+ * The file is written once and then read once through {@link #read()}; it's unlinked as soon as
+ * it has been opened for reading, so it doesn't outlive the reader even if the reader is abandoned.
+ */
+public class RowPairSpillFile implements Closeable{
+    private static final String PREFIX = "splice-spill-";
+
+    private final File file;
+    private final ExecRow keyTemplate;
+    private final ExecRow valueTemplate;
+    private final KeyEncoder keyEncoder;
+    private final KeyEncoder valueEncoder;
+
+    private DataOutputStream out;
+    private DataInputStream in;
+    private long bytesWritten;
+    private long rowsWritten;
+
+    private RowPairSpillFile(File file,ExecRow keyTemplate,ExecRow valueTemplate,DataOutputStream out){
+        this.file=file;
+        this.keyTemplate=keyTemplate.getNewNullRow();
+        this.valueTemplate=valueTemplate.getNewNullRow();
+        this.keyEncoder=encoder(keyTemplate);
+        this.valueEncoder=encoder(valueTemplate);
+        this.out=out;
+    }
+
+    /**
+     * Creates a new, empty spill file.
+     *
+     * @param directory     where to create the file
+     * @param keyTemplate   a row with the same layout as the keys which will be written
+     * @param valueTemplate a row with the same layout as the values which will be written
+     */
+    public static RowPairSpillFile create(File directory,ExecRow keyTemplate,ExecRow valueTemplate) throws IOException{
+        File file=File.createTempFile(PREFIX,".tmp",directory);
+        DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        return new RowPairSpillFile(file,keyTemplate,valueTemplate,out);
+    }
+
+    public void write(ExecRow key,ExecRow value) throws StandardException, IOException{
+        assert out!=null: "Spill file is no longer writable";
+        bytesWritten+=writeBytes(keyEncoder.getKey(key));
+        bytesWritten+=writeBytes(valueEncoder.getKey(value));
+        rowsWritten++;
+    }
+
+    public long getBytesWritten(){
+        return bytesWritten;
+    }
+
+    public long getRowsWritten(){
+        return rowsWritten;
+    }
+
+    /**
+     * Finishes writing and returns the spilled pairs, in the order they were written. The returned rows
+     * are freshly allocated and can be retained by the caller.
+     */
+    public Iterator<Tuple2<ExecRow, ExecRow>> read() throws IOException{
+        out.close();
+        out=null;
+        in=new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        deleteFile();
+        return new Iterator<Tuple2<ExecRow, ExecRow>>(){
+            private final KeyDecoder keyDecoder=keyEncoder.getDecoder();
+            private final KeyDecoder valueDecoder=valueEncoder.getDecoder();
+            private long remaining=rowsWritten;
+
+            @Override
+            public boolean hasNext(){
+                if(remaining<=0){
+                    closeQuietly();
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public Tuple2<ExecRow, ExecRow> next(){
+                if(!hasNext())
+                    throw new NoSuchElementException();
+                try{
+                    ExecRow key=keyTemplate.getNewNullRow();
+                    byte[] data=readBytes();
+                    keyDecoder.decode(data,0,data.length,key);
+                    ExecRow value=valueTemplate.getNewNullRow();
+                    data=readBytes();
+                    valueDecoder.decode(data,0,data.length,value);
+                    remaining--;
+                    return new Tuple2<>(key,value);
+                }catch(StandardException|IOException e){
+                    closeQuietly();
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException{
+        try{
+            if(out!=null){
+                out.close();
+                out=null;
+            }
+            if(in!=null){
+                in.close();
+                in=null;
+            }
+        }finally{
+            deleteFile();
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static KeyEncoder encoder(ExecRow template){
+        DescriptorSerializer[] serializers=VersionedSerializers.latestVersion(false).getSerializers(template);
+        return new KeyEncoder(NoOpPrefix.INSTANCE,
+                new EntryDataHash(IntArrays.count(template.nColumns()),null,serializers),
+                NoOpPostfix.INSTANCE);
+    }
+
+    private int writeBytes(byte[] data) throws IOException{
+        out.writeInt(data.length);
+        out.write(data);
+        return data.length+4;
+    }
+
+    private byte[] readBytes() throws IOException{
+        byte[] data=new byte[in.readInt()];
+        in.readFully(data);
+        return data;
+    }
+
+    private void closeQuietly(){
+        try{
+            close();
+        }catch(IOException ignored){
+            // the file is already unlinked, nothing else to clean up
+        }
+    }
+
+    private void deleteFile(){
+        if(file.exists() && !file.delete())
+            file.deleteOnExit();
+    }
+}
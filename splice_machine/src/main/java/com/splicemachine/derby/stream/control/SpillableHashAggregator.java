@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.sql.conn.ControlExecutionLimiter;
+import com.splicemachine.db.iapi.sql.conn.QueryMemoryManager;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.stream.function.ZipperFunction;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import org.apache.log4j.Logger;
+import org.spark_project.guava.collect.Iterators;
+import scala.Tuple2;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Control-side hash aggregation of (key, value) pairs with a bounded memory footprint.
+ * <p>
+ * Keys are hashed into a fixed number of partitions, each one backed by its own hash table. While the
+ * estimated size of the tables stays within the buffer size this is a plain in-memory hash aggregation.
+ * Once the buffer is exceeded, the largest in-memory partition is spilled to a {@link RowPairSpillFile}
+ * (for a reduction its partial aggregates, for a grouping its values) and every later pair hashing to that
+ * partition is appended to a second file. When the source is exhausted the in-memory partitions are
+ * emitted, then every spilled partition is aggregated again, recursively, with a different hash seed.
+ * Partial aggregates are replayed first and the rows they fold in are not counted as read again.
+ * <p>
+ * The peak estimated heap usage and the bytes spilled by every level are recorded in the context of the aggregating
+ * operation, and reported when the statement completes.
+ * <p>
+ * The in-memory partitions are also reserved against the memory of the query, and a partition is spilled
+ * whenever the reservation is denied. Pairs which can't be spilled are reserved with
+ * {@link QueryMemoryManager#reserve(long)}, which resubmits the query to Spark when denied. The memory is
+ * released once the aggregates are consumed.
+ * <p>
+ * The aggregation may also count the distinct keys against the control execution limit, each one once, when it is
+ * first inserted, the way a hash set counts its elements.
+ * <p>
+ * Only pairs of {@link ExecRow}s can be spilled, other pairs are always aggregated in memory. Past
+ * {@link #MAX_DEPTH} levels of recursion (i.e. a partition made of a handful of huge keys) nothing is
+ * spilled anymore.
+ * <p>
+ * The aggregation is lazy, it happens on the first call to {@link #hasNext()}.
+ */
+public class SpillableHashAggregator<K,V,A> implements Iterator<Tuple2<K,A>>, AutoCloseable{
+    private static final Logger LOG=Logger.getLogger(SpillableHashAggregator.class);
+    private static final int PARTITION_BITS=4;
+    private static final int NUM_PARTITIONS=1<<PARTITION_BITS;
+    static final int MAX_DEPTH=8;
+
+    /**
+     * How values are folded into the per-key state.
+     */
+    public interface Aggregation<V,A>{
+        A initialize(V value) throws Exception;
+
+        A merge(A aggregate,V value) throws Exception;
+
+        /**
+         * @return the values which have to be written to disk so that aggregating them again produces
+         * the same state
+         */
+        Iterator<V> spill(A aggregate);
+
+        /**
+         * @return true if every value is retained in the state, false if the state has a fixed size
+         */
+        boolean retainsValues();
+    }
+
+    private final Iterator<Tuple2<K,V>> source;
+    private final Aggregation<V,A> aggregation;
+    private final boolean cloneKeys;
+    private final long bufferSize;
+    private final File spillDirectory;
+    private final OperationContext context;
+    private final QueryMemoryManager memory;
+    private final ControlExecutionLimiter limiter;
+    private final int depth;
+    private final long replayedAggregates;
+
+    private final List<Map<K,A>> partitions=new ArrayList<>(NUM_PARTITIONS);
+    private final long[] partitionSizes=new long[NUM_PARTITIONS];
+    private final long[] partitionReservations=new long[NUM_PARTITIONS];
+    private final boolean[] spilled=new boolean[NUM_PARTITIONS];
+    private final RowPairSpillFile[] spilledAggregates=new RowPairSpillFile[NUM_PARTITIONS];
+    private final RowPairSpillFile[] spilledRows=new RowPairSpillFile[NUM_PARTITIONS];
+    private final List<SpillableHashAggregator<K,V,A>> reaggregations=new ArrayList<>();
+    private long consumedRows;
+    private long bufferedBytes;
+    private long reservedBytes;
+    private long peakMemoryUsage;
+    private long spilledBytes;
+    private Iterator<Tuple2<K,A>> result;
+
+    /**
+     * @param source         the pairs to aggregate
+     * @param aggregation    how values with the same key are aggregated
+     * @param cloneKeys      whether keys are cloned before being retained, for sources reusing their rows
+     * @param bufferSize     the maximum estimated number of bytes kept on the heap before spilling
+     * @param spillDirectory where to spill partitions, no spilling happens if {@code null}
+     * @param context        the context of the aggregating operation, may be {@code null}
+     */
+    public SpillableHashAggregator(Iterator<Tuple2<K,V>> source,
+                                   Aggregation<V,A> aggregation,
+                                   boolean cloneKeys,
+                                   long bufferSize,
+                                   File spillDirectory,
+                                   OperationContext context){
+        this(source,aggregation,cloneKeys,bufferSize,spillDirectory,context,ControlExecutionLimiter.NO_OP,0,0L);
+    }
+
+    /**
+     * @param limitKeys whether the distinct keys are counted against the control execution limit of the query
+     */
+    public SpillableHashAggregator(Iterator<Tuple2<K,V>> source,
+                                   Aggregation<V,A> aggregation,
+                                   boolean cloneKeys,
+                                   long bufferSize,
+                                   File spillDirectory,
+                                   OperationContext context,
+                                   boolean limitKeys){
+        this(source,aggregation,cloneKeys,bufferSize,spillDirectory,context,
+                limitKeys?ControlUtils.getControlExecutionLimiter(context):ControlExecutionLimiter.NO_OP,0,0L);
+    }
+
+    private SpillableHashAggregator(Iterator<Tuple2<K,V>> source,
+                                    Aggregation<V,A> aggregation,
+                                    boolean cloneKeys,
+                                    long bufferSize,
+                                    File spillDirectory,
+                                    OperationContext context,
+                                    ControlExecutionLimiter limiter,
+                                    int depth,
+                                    long replayedAggregates){
+        this.source=source;
+        this.aggregation=aggregation;
+        this.cloneKeys=cloneKeys;
+        this.bufferSize=bufferSize;
+        this.spillDirectory=depth<MAX_DEPTH?spillDirectory:null;
+        this.context=context;
+        this.memory=ControlUtils.getQueryMemoryManager(context);
+        this.limiter=limiter;
+        this.depth=depth;
+        this.replayedAggregates=replayedAggregates;
+        for(int i=0;i<NUM_PARTITIONS;i++){
+            partitions.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Reduces the values of each key with the given function, following the {@code reduceByKey} contract:
+     * {@code function.call(null, value)} initializes the aggregate, {@code function.call(aggregate, value)}
+     * merges a value (or another partial aggregate) into it.
+     */
+    public static <V> Aggregation<V,V> reducing(final ZipperFunction<V,V,V> function){
+        return new Aggregation<V,V>(){
+            @Override
+            public V initialize(V value) throws Exception{
+                return function.call(null,value);
+            }
+
+            @Override
+            public V merge(V aggregate,V value) throws Exception{
+                return function.call(aggregate,value);
+            }
+
+            @Override
+            public Iterator<V> spill(V aggregate){
+                return Collections.singletonList(aggregate).iterator();
+            }
+
+            @Override
+            public boolean retainsValues(){
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Collects all the values of each key.
+     */
+    public static <V> Aggregation<V,List<V>> grouping(){
+        return new Aggregation<V,List<V>>(){
+            @Override
+            public List<V> initialize(V value){
+                List<V> values=new ArrayList<>();
+                values.add(value);
+                return values;
+            }
+
+            @Override
+            public List<V> merge(List<V> aggregate,V value){
+                aggregate.add(value);
+                return aggregate;
+            }
+
+            @Override
+            public Iterator<V> spill(List<V> aggregate){
+                return aggregate.iterator();
+            }
+
+            @Override
+            public boolean retainsValues(){
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Keeps the first value of each key, for duplicate elimination.
+     */
+    public static <V> Aggregation<V,V> first(){
+        return new Aggregation<V,V>(){
+            @Override
+            public V initialize(V value){
+                return value;
+            }
+
+            @Override
+            public V merge(V aggregate,V value){
+                return aggregate;
+            }
+
+            @Override
+            public Iterator<V> spill(V aggregate){
+                return Collections.singletonList(aggregate).iterator();
+            }
+
+            @Override
+            public boolean retainsValues(){
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public boolean hasNext(){
+        if(result==null){
+            try{
+                result=aggregate();
+            }catch(Exception e){
+                close();
+                throw new RuntimeException(e);
+            }
+        }
+        if(!result.hasNext()){
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Tuple2<K,A> next(){
+        if(!hasNext())
+            throw new NoSuchElementException();
+        return result.next();
+    }
+
+    /**
+     * @return the maximum estimated number of bytes held on the heap at once by this level of the aggregation
+     */
+    public long getPeakMemoryUsage(){
+        return peakMemoryUsage;
+    }
+
+    /**
+     * @return the number of bytes spilled to disk by this level of the aggregation
+     */
+    public long getSpilledBytes(){
+        return spilledBytes;
+    }
+
+    /**
+     * Releases the reserved memory and deletes the spilled partitions, it is safe to call more than once.
+     */
+    @Override
+    public void close(){
+        releaseMemory();
+        for(SpillableHashAggregator<K,V,A> reaggregation : reaggregations){
+            reaggregation.close();
+        }
+        for(int i=0;i<NUM_PARTITIONS;i++){
+            closeQuietly(spilledAggregates[i]);
+            closeQuietly(spilledRows[i]);
+        }
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    @SuppressWarnings("unchecked")
+    private Iterator<Tuple2<K,A>> aggregate() throws Exception{
+        while(source.hasNext()){
+            Tuple2<K,V> t=source.next();
+            // the leading rows of a re-aggregation are partial aggregates, whose rows were already counted
+            boolean replayed=consumedRows++<replayedAggregates;
+            K key=t._1();
+            int partition=partition(key);
+            if(spilled[partition]){
+                if(replayed)
+                    spilledAggregates[partition]=write(spilledAggregates[partition],key,t._2());
+                else
+                    spilledRows[partition]=write(spilledRows[partition],key,t._2());
+                continue;
+            }
+            Map<K,A> map=partitions.get(partition);
+            A aggregate=map.get(key);
+            long readsBefore=replayed?recordsRead():0L;
+            long size;
+            if(aggregate==null){
+                if(cloneKeys)
+                    key=(K)((ExecRow)key).getClone();
+                map.put(key,aggregation.initialize(t._2()));
+                size=ControlUtils.estimateMemoryUsage(key)+ControlUtils.estimateMemoryUsage(t._2());
+                // a replayed aggregate was counted when its key was first inserted, at an upper level
+                if(!replayed)
+                    limiter.addAccumulatedRows(1);
+            }else{
+                map.put(key,aggregation.merge(aggregate,t._2()));
+                size=aggregation.retainsValues()?ControlUtils.estimateMemoryUsage(t._2()):0L;
+            }
+            if(replayed)
+                forgetReads(readsBefore);
+            boolean reserved=memory.tryReserve(size);
+            if(!reserved && !canSpill(t)){
+                memory.reserve(size);
+                reserved=true;
+            }
+            if(reserved){
+                reservedBytes+=size;
+                partitionReservations[partition]+=size;
+            }
+            partitionSizes[partition]+=size;
+            bufferedBytes+=size;
+            if(bufferedBytes>peakMemoryUsage)
+                peakMemoryUsage=bufferedBytes;
+            if((bufferedBytes>bufferSize || !reserved) && canSpill(t))
+                spillLargestPartition();
+        }
+        for(int i=0;i<NUM_PARTITIONS;i++){
+            if(spilledAggregates[i]!=null)
+                spilledBytes+=spilledAggregates[i].getBytesWritten();
+            if(spilledRows[i]!=null)
+                spilledBytes+=spilledRows[i].getBytesWritten();
+        }
+        if(context!=null){
+            context.recordMemoryUsage(peakMemoryUsage);
+            if(spilledBytes>0)
+                context.recordSpill(spilledBytes);
+        }
+        if(LOG.isDebugEnabled() && spilledBytes>0)
+            LOG.debug(String.format("Hash aggregation at depth %d spilled %d bytes, peak memory usage %d bytes",depth,spilledBytes,peakMemoryUsage));
+
+        List<Iterator<Tuple2<K,A>>> iterators=new ArrayList<>();
+        for(Map<K,A> map : partitions){
+            if(!map.isEmpty())
+                iterators.add(entries(map));
+        }
+        for(int i=0;i<NUM_PARTITIONS;i++){
+            if(spilled[i])
+                iterators.add(reaggregate(i));
+        }
+        return Iterators.concat(iterators.iterator());
+    }
+
+    private boolean canSpill(Tuple2<K,V> t){
+        return spillDirectory!=null && t._1() instanceof ExecRow && t._2() instanceof ExecRow;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void spillLargestPartition() throws Exception{
+        int largest=-1;
+        for(int i=0;i<NUM_PARTITIONS;i++){
+            if(!spilled[i] && !partitions.get(i).isEmpty() && (largest<0 || partitionSizes[i]>partitionSizes[largest]))
+                largest=i;
+        }
+        if(largest<0)
+            return;
+        Map<K,A> map=partitions.get(largest);
+        for(Map.Entry<K,A> entry : map.entrySet()){
+            Iterator<V> values=aggregation.spill(entry.getValue());
+            while(values.hasNext()){
+                spilledAggregates[largest]=write(spilledAggregates[largest],entry.getKey(),values.next());
+            }
+        }
+        spilled[largest]=true;
+        map.clear();
+        bufferedBytes-=partitionSizes[largest];
+        // only the rows granted a reservation are released, the other partitions keep theirs
+        memory.release(partitionReservations[largest]);
+        reservedBytes-=partitionReservations[largest];
+        partitionReservations[largest]=0L;
+        partitionSizes[largest]=0L;
+    }
+
+    private RowPairSpillFile write(RowPairSpillFile file,K key,V value) throws Exception{
+        if(file==null)
+            file=RowPairSpillFile.create(spillDirectory,(ExecRow)key,(ExecRow)value);
+        file.write((ExecRow)key,(ExecRow)value);
+        return file;
+    }
+
+    private long recordsRead(){
+        return context==null?0L:context.getRecordsRead();
+    }
+
+    /**
+     * Takes back the reads recorded by the aggregation function since {@code readsBefore}.
+     */
+    private void forgetReads(long readsBefore){
+        long reads=recordsRead()-readsBefore;
+        if(reads!=0)
+            context.recordRead(-reads);
+    }
+
+    private static void closeQuietly(RowPairSpillFile file){
+        if(file==null)
+            return;
+        try{
+            file.close();
+        }catch(IOException e){
+            LOG.warn("Unable to clean up spill file",e);
+        }
+    }
+
+    private void releaseMemory(){
+        memory.release(reservedBytes);
+        reservedBytes=0L;
+        Arrays.fill(partitionReservations,0L);
+    }
+
+    private int partition(K key){
+        // mix the hash code with the depth so that a spilled partition spreads over all partitions when re-aggregated
+        int h=key.hashCode()*0x9E3779B9+depth*0x7F4A7C15;
+        h^=(h>>>16);
+        return (h>>>(32-PARTITION_BITS)) & (NUM_PARTITIONS-1);
+    }
+
+    private static <K,A> Iterator<Tuple2<K,A>> entries(Map<K,A> map){
+        final Iterator<Map.Entry<K,A>> it=map.entrySet().iterator();
+        return new Iterator<Tuple2<K,A>>(){
+            @Override
+            public boolean hasNext(){
+                return it.hasNext();
+            }
+
+            @Override
+            public Tuple2<K,A> next(){
+                Map.Entry<K,A> entry=it.next();
+                return new Tuple2<>(entry.getKey(),entry.getValue());
+            }
+        };
+    }
+
+    /**
+     * Lazily re-aggregates a spilled partition, so that only one partition is read back at a time.
+     */
+    private Iterator<Tuple2<K,A>> reaggregate(final int partition){
+        return new Iterator<Tuple2<K,A>>(){
+            private Iterator<Tuple2<K,A>> delegate;
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean hasNext(){
+                if(delegate==null){
+                    Iterator<Tuple2<K,V>> rows;
+                    long aggregates=0L;
+                    try{
+                        Iterator<Tuple2<K,V>> replayed=Collections.emptyIterator();
+                        if(spilledAggregates[partition]!=null){
+                            replayed=(Iterator)spilledAggregates[partition].read();
+                            aggregates=spilledAggregates[partition].getRowsWritten();
+                        }
+                        Iterator<Tuple2<K,V>> appended=Collections.emptyIterator();
+                        if(spilledRows[partition]!=null)
+                            appended=(Iterator)spilledRows[partition].read();
+                        rows=Iterators.concat(replayed,appended);
+                    }catch(IOException e){
+                        close();
+                        throw new RuntimeException(e);
+                    }
+                    // rows read back from disk are freshly allocated, no need to clone their keys
+                    SpillableHashAggregator<K,V,A> reaggregation=new SpillableHashAggregator<>(rows,aggregation,false,
+                            bufferSize,spillDirectory,context,limiter,depth+1,aggregates);
+                    reaggregations.add(reaggregation);
+                    delegate=reaggregation;
+                }
+                return delegate.hasNext();
+            }
+
+            @Override
+            public Tuple2<K,A> next(){
+                if(!hasNext())
+                    throw new NoSuchElementException();
+                return delegate.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Splits a text file into ranges of bytes which start at the beginning of a record, so they can be parsed
+ * independently.
+ *
+ * When records are single lines, a range starts after the first line feed following its target offset, and only
+ * the bytes up to that line feed are read. When quoted columns may contain line feeds, a line feed only ends a
+ * record outside of quotes, which can't be told without reading the file from its start, so the whole file is
+ * scanned once, counting quotes. An escaped quote is a pair of quotes, which leaves the count unchanged. This
+ * requires an encoding in which line feeds and quotes are single bytes which are not part of other characters,
+ * like UTF-8 and ISO-8859-1.
+ */
+public class TextFileSplitter{
+    private static final int BUFFER_SIZE=64*1024;
+
+    private TextFileSplitter(){}
+
+    /**
+     * @param in the file, positioned at its start
+     * @param length the length of the file
+     * @param splitSize the minimum size of a range
+     * @param quotedNewLines whether quoted columns may contain line feeds
+     * @param quote the quote character
+     * @return the offsets at which the ranges start; the first one is 0, and the last range ends with the file
+     */
+    public static long[] split(InputStream in,long length,long splitSize,boolean quotedNewLines,byte quote) throws IOException{
+        assert splitSize>0: "Split size must be positive";
+        if(length<=splitSize)
+            return new long[]{0L};
+        return quotedNewLines?splitQuoted(in,length,splitSize,quote):splitLines(in,length,splitSize);
+    }
+
+    private static long[] splitLines(InputStream in,long length,long splitSize) throws IOException{
+        long[] offsets=new long[]{0L};
+        int count=1;
+        long position=0L;
+        while(true){
+            long target=offsets[count-1]+splitSize;
+            if(target>=length)
+                break;
+            if(!skip(in,target-position))
+                break;
+            position=target;
+            int b;
+            while((b=in.read())>=0){
+                position++;
+                if(b=='\n')
+                    break;
+            }
+            if(b<0 || position>=length)
+                break;
+            if(count==offsets.length)
+                offsets=Arrays.copyOf(offsets,2*count);
+            offsets[count++]=position;
+        }
+        return Arrays.copyOf(offsets,count);
+    }
+
+    private static long[] splitQuoted(InputStream in,long length,long splitSize,byte quote) throws IOException{
+        long[] offsets=new long[]{0L};
+        int count=1;
+        long position=0L;
+        long target=splitSize;
+        boolean quoted=false;
+        byte[] buffer=new byte[BUFFER_SIZE];
+        int n;
+        while((n=in.read(buffer))>0){
+            for(int i=0;i<n;i++){
+                byte b=buffer[i];
+                if(b==quote)
+                    quoted=!quoted;
+                else if(b=='\n' && !quoted && position+i+1>=target){
+                    long offset=position+i+1;
+                    if(offset>=length)
+                        break;
+                    if(count==offsets.length)
+                        offsets=Arrays.copyOf(offsets,2*count);
+                    offsets[count++]=offset;
+                    target=offset+splitSize;
+                }
+            }
+            position+=n;
+        }
+        return Arrays.copyOf(offsets,count);
+    }
+
+    static boolean skip(InputStream in,long bytes) throws IOException{
+        while(bytes>0){
+            long skipped=in.skip(bytes);
+            if(skipped<=0){
+                // skip() may stop early without having reached the end of the stream, read to find out
+                if(in.read()<0)
+                    return false;
+                skipped=1;
+            }
+            bytes-=skipped;
+        }
+        return true;
+    }
+}
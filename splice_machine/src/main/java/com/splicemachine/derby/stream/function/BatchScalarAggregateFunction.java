@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.impl.sql.execute.operations.ScalarAggregateOperation;
+import com.splicemachine.derby.stream.control.BatchScalarAggregation;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+
+import java.util.Iterator;
+
+/**
+ * The first step of a control-side scalar aggregation computed over batches of columns, in place of a
+ * {@link ScalarAggregateFlatMapFunction} over the rows of the source. It consumes the rows of the table scan
+ * directly, see {@link BatchScalarAggregation}.
+ *
+ * The batch aggregation is bound to the operation tree of the local activation, so this function is never shipped
+ * to Spark.
+ */
+public class BatchScalarAggregateFunction
+    extends SpliceFlatMapFunction<ScalarAggregateOperation, Iterator<ExecRow>, ExecRow> {
+
+    private static final long serialVersionUID = 3279506107584712650L;
+
+    private transient BatchScalarAggregation aggregation;
+
+    public BatchScalarAggregateFunction() {
+    }
+
+    public BatchScalarAggregateFunction(OperationContext<ScalarAggregateOperation> operationContext,
+                                        BatchScalarAggregation aggregation) {
+        super(operationContext);
+        this.aggregation = aggregation;
+    }
+
+    @Override
+    public Iterator<ExecRow> call(Iterator<ExecRow> scanRows) throws Exception {
+        return aggregation.aggregate(scanRows);
+    }
+}
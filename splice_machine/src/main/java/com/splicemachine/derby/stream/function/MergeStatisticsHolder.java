@@ -18,6 +18,7 @@ package com.splicemachine.derby.stream.function;
 import org.spark_project.guava.collect.Iterators;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.stats.ColumnGroupStatistics;
 import com.splicemachine.db.iapi.stats.ColumnStatisticsImpl;
 import com.splicemachine.db.iapi.stats.ColumnStatisticsMerge;
 import com.splicemachine.db.iapi.stats.ItemStatistics;
@@ -49,22 +50,26 @@ import java.util.Map;
  */
 public class MergeStatisticsHolder implements Externalizable {
     private Map<Integer, ColumnStatisticsMerge> columnStatisticsMergeHashMap;
+    private Map<Integer, ColumnGroupStatistics> columnGroupStatisticsHashMap;
     private ExecRow tableMergedStatistics;
 
     public MergeStatisticsHolder() {
         this.columnStatisticsMergeHashMap = new HashMap<>();
+        this.columnGroupStatisticsHashMap = new HashMap<>();
     }
 
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeObject(columnStatisticsMergeHashMap);
         out.writeObject(tableMergedStatistics);
+        out.writeObject(columnGroupStatisticsHashMap);
     }
 
     @Override
     public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
         columnStatisticsMergeHashMap = (Map<Integer, ColumnStatisticsMerge>) in.readObject();
         tableMergedStatistics = (ExecRow) in.readObject();
+        columnGroupStatisticsHashMap = (Map<Integer, ColumnGroupStatistics>) in.readObject();
     }
 
     public void merge(ExecRow nextRow) throws StandardException {
@@ -72,6 +77,10 @@ public class MergeStatisticsHolder implements Externalizable {
             // process columnstats row
             ItemStatistics itemStatistics = (ItemStatistics) nextRow.getColumn(SYSCOLUMNSTATISTICSRowFactory.DATA).getObject();
             Integer columnId = new Integer(nextRow.getColumn(SYSCOLUMNSTATISTICSRowFactory.COLUMNID).getInt());
+            if (ColumnGroupStatistics.isColumnGroup(columnId)) {
+                mergeColumnGroup(columnId, (ColumnGroupStatistics) itemStatistics);
+                return;
+            }
             ColumnStatisticsMerge builder = columnStatisticsMergeHashMap.get(columnId);
             if (builder == null) {
                 builder = ColumnStatisticsMerge.instance();
@@ -153,6 +162,15 @@ public class MergeStatisticsHolder implements Externalizable {
             }
         }
 
+        for (Map.Entry<Integer, ColumnGroupStatistics> entry : second.columnGroupStatisticsHashMap.entrySet()) {
+            mergeColumnGroup(entry.getKey(), entry.getValue());
+        }
+
+    }
+
+    private void mergeColumnGroup(Integer columnId, ColumnGroupStatistics groupStatistics) {
+        ColumnGroupStatistics merged = columnGroupStatisticsHashMap.get(columnId);
+        columnGroupStatisticsHashMap.put(columnId, merged == null ? groupStatistics : merged.merge(groupStatistics));
     }
 
     public Map<Integer, ColumnStatisticsMerge> getColumnStatisticsMergeHashMap() {
@@ -174,6 +192,13 @@ public class MergeStatisticsHolder implements Externalizable {
                     public ExecRow apply(@Nullable Map.Entry<Integer, ColumnStatisticsMerge> entry) {
                         return  entry.getValue().toExecRow(entry.getKey());
                     }
+                }).iterator(),
+                FluentIterable.from(columnGroupStatisticsHashMap.entrySet()).transform(new Function<Map.Entry<Integer, ColumnGroupStatistics>, ExecRow>() {
+                    @Nullable
+                    @Override
+                    public ExecRow apply(@Nullable Map.Entry<Integer, ColumnGroupStatistics> entry) {
+                        return  entry.getValue().toExecRow(entry.getKey());
+                    }
                 }).iterator());
     }
 }
@@ -18,6 +18,7 @@ import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.derby.impl.sql.execute.operations.WindowOperation;
 import com.splicemachine.derby.impl.sql.execute.operations.window.WindowAggregator;
 import com.splicemachine.derby.impl.sql.execute.operations.window.WindowContext;
+import com.splicemachine.derby.stream.control.ControlUtils;
 import com.splicemachine.derby.stream.iapi.OperationContext;
 import com.splicemachine.derby.stream.window.BaseFrameBuffer;
 import com.splicemachine.derby.stream.window.WindowFrameBuffer;
@@ -65,7 +66,8 @@ public class MergeWindowFunction<Op extends WindowOperation> extends SpliceFlatM
                 new LocatedToExecRowIter(partitionRows.iterator()),
                 windowContext.getFrameDefinition(),
                 windowContext.getSortColumns(),
-                operationContext.getOperation().getExecRowDefinition().getClone());
+                operationContext.getOperation().getExecRowDefinition().getClone(),
+                ControlUtils.getQueryMemoryManager(operationContext));
 
         return new ExecRowToLocatedRowIterable(new Iterable<ExecRow>() {
             @Override public Iterator<ExecRow> iterator() {
@@ -24,6 +24,8 @@ import com.splicemachine.db.iapi.types.HBaseRowLocation;
 import com.splicemachine.db.iapi.types.RowLocation;
 import com.splicemachine.db.shared.common.reference.SQLState;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.AdaptiveJoinMonitor;
+import com.splicemachine.derby.impl.sql.execute.operations.NestedLoopJoinLookupReader;
 import com.splicemachine.derby.stream.iapi.IterableJoinFunction;
 import com.splicemachine.derby.stream.iapi.OperationContext;
 import com.splicemachine.derby.stream.iterator.GetNLJoinIterator;
@@ -34,6 +36,7 @@ import org.apache.log4j.Logger;
 import org.apache.spark.TaskContext;
 import org.apache.spark.TaskKilledException;
 import org.apache.spark.util.TaskCompletionListener;
+import org.spark_project.guava.collect.Iterators;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
@@ -78,6 +81,7 @@ public abstract class NLJoinFunction <Op extends SpliceOperation, From, To> exte
     protected Set<OperationContext> allContexts;
     protected TaskContext taskContext;
     private Deque<ExecRow> firstBatch;
+    private NestedLoopJoinLookupReader lookupReader;
     private volatile boolean isClosed = false;
 
     protected ExecutorService executorService;
@@ -100,11 +104,66 @@ public abstract class NLJoinFunction <Op extends SpliceOperation, From, To> exte
         batchSize = configuration.getNestedLoopJoinBatchSize();
         nLeftRows = 0;
         leftSideIterator = from;
+        if (taskContext == null) {
+            AdaptiveJoinMonitor monitor = AdaptiveJoinMonitor.forOuterSide(op, op.getLeftOperation());
+            if (monitor != null)
+                leftSideIterator = monitor.monitor(from);
+        }
         executorService = SIDriver.driver().getExecutorService();
         firstBatch = new ArrayDeque<>(batchSize);
 
         initOperationContexts();
-        loadBatch();
+        if (taskContext == null && !firstBatch.isEmpty())
+            initLookupReader(configuration);
+        if (lookupReader == null)
+            loadBatch();
+    }
+
+    /**
+     * On the control side, when the right side looks up at most one row by its primary key, read the right rows
+     * of batches of left rows with multi-gets, rather than with a scan for each left row.
+     */
+    private void initLookupReader(SConfiguration configuration) throws StandardException {
+        int lookupBatchSize = configuration.getNestedLoopJoinLookupBatchSize();
+        if (lookupBatchSize <= 1)
+            return;
+        lookupReader = NestedLoopJoinLookupReader.create(op,
+                firstBatch.peekFirst(), lookupBatchSize, configuration.getNestedLoopJoinLookupBlocks());
+        if (lookupReader != null) {
+            lookupReader.open(Iterators.concat(firstBatch.iterator(), leftSideIterator));
+            rightSideNLJIterator = Collections.emptyIterator();
+        }
+    }
+
+    private boolean hasNextLookup() throws StandardException, IOException {
+        while (!rightSideNLJIterator.hasNext()) {
+            if (!lookupReader.next())
+                return false;
+            leftRow = lookupReader.getLeftRow();
+            leftRowLocation = new HBaseRowLocation(leftRow.getKey());
+            operationContext.getOperation().getLeftOperation().setCurrentRowLocation(leftRowLocation);
+            rightSideNLJIterator = lookupResult(lookupReader.getRightRow());
+        }
+        return true;
+    }
+
+    private Iterator<ExecRow> lookupResult(ExecRow rightRow) throws StandardException {
+        switch (joinType) {
+            case LEFT_OUTER:
+                return Collections.singletonList(rightRow != null ? rightRow : rightEmptyRow()).iterator();
+            case ANTI:
+                return rightRow != null ? Collections.<ExecRow>emptyIterator()
+                        : Collections.singletonList(rightEmptyRow()).iterator();
+            default:
+                return rightRow != null ? Collections.singletonList(rightRow).iterator()
+                        : Collections.<ExecRow>emptyIterator();
+        }
+    }
+
+    private ExecRow rightEmptyRow() throws StandardException {
+        ExecRow emptyRow = op.getRightEmptyRow();
+        op.setCurrentRow(emptyRow);
+        return emptyRow;
     }
 
 
@@ -141,6 +200,13 @@ public abstract class NLJoinFunction <Op extends SpliceOperation, From, To> exte
                 future.cancel(true);
             }
         }
+        if (lookupReader != null) {
+            try {
+                lookupReader.close();
+            } catch (IOException e) {
+                LOG.error("Exception while closing lookup reader", e);
+            }
+        }
         if (se != null)
             Exceptions.throwAsRuntime(se);
     }
@@ -194,6 +260,8 @@ public abstract class NLJoinFunction <Op extends SpliceOperation, From, To> exte
         try {
             if (rightSideNLJIterator == null)
                 return false;
+            if (lookupReader != null)
+                return hasNextLookup();
             while (true) {
                 while (nLeftRows > 0 && !rightSideNLJIterator.hasNext()) {
 
@@ -312,6 +380,9 @@ public abstract class NLJoinFunction <Op extends SpliceOperation, From, To> exte
     @Override
     public ExecRow getRightRow() {
         ExecRow row = rightSideNLJIterator.next();
+        if (lookupReader != null)
+            // the reader sets the current rows of the right side
+            return row;
         SpliceOperation from = currentOperationContext.getOperation().getRightOperation();
         SpliceOperation to = operationContext.getOperation().getRightOperation();
         setRightSideCurrentLocatedRow(from, to);
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.ProjectRestrictOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.iapi.Restriction;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.pipeline.Exceptions;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Restricts and projects the rows of a partition in a single pass, in place of a {@link ProjectRestrictPredicateFunction}
+ * followed by a {@link ProjectRestrictMapFunction}.
+ *
+ * Each source row goes through the restriction and, when kept, the projection back to back, without the separate
+ * filter and transform iterators of the two functions nor their repeated bookkeeping. The source and projected rows
+ * are reused from one row to the next, so rows are still handed out one at a time.
+ *
+ * This is not a batch mode: the restriction and the projection are generated methods, which only evaluate the
+ * current row of the activation, so they are still called once per row. What this saves is per row bookkeeping: one
+ * iterator, one cancellation check and one {@link Restriction} allocation for every row, which is measured by
+ * {@code ProjectRestrictMicroBenchmark}. Scalar aggregations over the columns of a scan skip the projection altogether
+ * and go through {@link com.splicemachine.derby.stream.control.BatchScalarAggregation} instead.
+ */
+public class ProjectRestrictFlatMapFunction<Op extends SpliceOperation> extends SpliceFlatMapFunction<Op,Iterator<ExecRow>,ExecRow> {
+
+    public ProjectRestrictFlatMapFunction() {
+        super();
+    }
+
+    public ProjectRestrictFlatMapFunction(OperationContext<Op> operationContext) {
+        super(operationContext);
+    }
+
+    @Override
+    public Iterator<ExecRow> call(Iterator<ExecRow> source) throws Exception {
+        ProjectRestrictOperation op = (ProjectRestrictOperation) getOperation();
+        return new ProjectRestrictIterator(op, source, op.restriction == null ? null : op.getRestriction(), operationContext);
+    }
+
+    @Override
+    public ExecRow getExecRow() throws StandardException {
+        return operationContext.getOperation().getSubOperations().get(0).getExecRowDefinition();
+    }
+
+    private static class ProjectRestrictIterator implements Iterator<ExecRow> {
+        private final ProjectRestrictOperation op;
+        private final Iterator<ExecRow> source;
+        private final Restriction restriction;
+        private final OperationContext operationContext;
+        private ExecRow next;
+
+        ProjectRestrictIterator(ProjectRestrictOperation op, Iterator<ExecRow> source, Restriction restriction,
+                                OperationContext operationContext) {
+            this.op = op;
+            this.source = source;
+            this.restriction = restriction;
+            this.operationContext = operationContext;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null)
+                return true;
+            try {
+                while (source.hasNext()) {
+                    ExecRow from = source.next();
+                    op.setCurrentRow(from);
+                    op.source.setCurrentRow(from);
+                    if (restriction != null && !restriction.apply(from)) {
+                        operationContext.recordFilter();
+                        continue;
+                    }
+                    ExecRow result = op.doProjection(from);
+                    result.setKey(from.getKey());
+                    op.setCurrentRow(result);
+                    next = result;
+                    return true;
+                }
+                return false;
+            } catch (StandardException se) {
+                throw Exceptions.getRuntimeException(se);
+            }
+        }
+
+        @Override
+        public ExecRow next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ExecRow result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -57,21 +57,19 @@ public class ScalarAggregateFlatMapFunction
         returnDefault = in.readBoolean();
     }
 
-    private void accumulate(ExecRow next, ExecRow agg) throws StandardException {
-        ScalarAggregateOperation op = (ScalarAggregateOperation) getOperation();
+    private static void accumulate(SpliceGenericAggregator[] aggregates, ExecRow next, ExecRow agg) throws StandardException {
 //        if (RDDUtils.LOG.isTraceEnabled()) {
 //            RDDUtils.LOG.trace(String.format("Accumulating %s to %s", next, agg));
 //        }
-        for (SpliceGenericAggregator aggregate : op.aggregates)
+        for (SpliceGenericAggregator aggregate : aggregates)
             aggregate.accumulate(next, agg);
     }
 
-    private void merge(ExecRow next, ExecRow agg) throws StandardException {
-        ScalarAggregateOperation op = (ScalarAggregateOperation) getOperation();
+    private static void merge(SpliceGenericAggregator[] aggregates, ExecRow next, ExecRow agg) throws StandardException {
 //        if (RDDUtils.LOG.isTraceEnabled()) {
 //            RDDUtils.LOG.trace(String.format("Merging %s to %s", next, agg));
 //        }
-        for (SpliceGenericAggregator aggregate : op.aggregates)
+        for (SpliceGenericAggregator aggregate : aggregates)
             aggregate.merge(next, agg);
     }
 
@@ -98,12 +96,14 @@ public class ScalarAggregateFlatMapFunction
 //            }
             op.initializeVectorAggregation(r1);
         }
+        // the aggregators are looked up once for the partition rather than for every row
+        SpliceGenericAggregator[] aggregates = op.aggregates;
         while (locatedRows.hasNext()) {
             ExecRow r2 = locatedRows.next();
             if (!op.isInitialized(r2)) {
-                accumulate(r2, r1);                                                                                                                                                      
+                accumulate(aggregates, r2, r1);
             } else {
-                merge(r2, r1);                                                                                                                                                  
+                merge(aggregates, r2, r1);
             }
         }
         op.finishAggregation(r1); // calls setCurrentRow
@@ -14,8 +14,10 @@
 
 package com.splicemachine.derby.stream.function;
 
+import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.services.io.ArrayUtil;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.stats.ColumnGroupStatistics;
 import com.splicemachine.db.iapi.stats.ColumnStatisticsImpl;
 import com.splicemachine.db.iapi.stats.ItemStatistics;
 import com.splicemachine.db.impl.sql.catalog.SYSTABLESTATISTICSRowFactory;
@@ -42,6 +44,7 @@ public class StatisticsFlatMapFunction
     protected ExecRow template;
     boolean useSample;
     double sampleFraction;
+    protected int[][] columnGroups;
 
     public StatisticsFlatMapFunction() {
     }
@@ -54,6 +57,7 @@ public class StatisticsFlatMapFunction
         this.template = template;
         useSample = operationContext.getOperation().getUseSample();
         sampleFraction = operationContext.getOperation().getSampleFraction();
+        columnGroups = operationContext.getOperation().getColumnGroups();
     }
 
     @Override
@@ -63,6 +67,9 @@ public class StatisticsFlatMapFunction
         out.writeObject(template);
         out.writeBoolean(useSample);
         out.writeDouble(sampleFraction);
+        out.writeInt(columnGroups.length);
+        for (int[] columnGroup : columnGroups)
+            ArrayUtil.writeIntArray(out,columnGroup);
     }
 
     @Override
@@ -73,6 +80,9 @@ public class StatisticsFlatMapFunction
         template = (ExecRow) in.readObject();
         useSample = in.readBoolean();
         sampleFraction = in.readDouble();
+        columnGroups = new int[in.readInt()][];
+        for (int i = 0; i < columnGroups.length; i++)
+            columnGroups[i] = ArrayUtil.readIntArray(in);
     }
 
     @SuppressWarnings("unchecked")
@@ -81,6 +91,13 @@ public class StatisticsFlatMapFunction
         List<ExecRow> rows;
         long rowCount = 0l;
         long rowWidth = 0l;
+        int[][] groupPositions = new int[columnGroups.length][];
+        ColumnGroupStatistics[] groupStatistics = new ColumnGroupStatistics[columnGroups.length];
+        for (int g = 0; g < columnGroups.length; g++) {
+            groupPositions[g] = rowPositions(columnGroups[g]);
+            if (groupPositions[g] != null)
+                groupStatistics[g] = new ColumnGroupStatistics(columnGroups[g]);
+        }
         while (locatedRows.hasNext()) {
             ExecRow execRow = locatedRows.next();
             if (!initialized) {
@@ -90,16 +107,21 @@ public class StatisticsFlatMapFunction
             rowWidth += execRow.getRowSize();
             rowCount++;
             statisticsRow.setExecRow(execRow);
+            for (int g = 0; g < groupStatistics.length; g++) {
+                if (groupStatistics[g] != null)
+                    groupStatistics[g].update(execRow.getRowArray(), groupPositions[g]);
+            }
         }
         if (statisticsRow!=null) {
             int meanRowWidth = (int) ( ((double) rowWidth)/ ((double) rowCount));
             ItemStatistics[] itemStatistics = statisticsRow.getItemStatistics();
-            rows = new ArrayList<>(itemStatistics.length+1);
+            rows = new ArrayList<>(itemStatistics.length+groupStatistics.length+1);
             for(int i=0;i<itemStatistics.length;i++){
                 if(itemStatistics[i]==null)
                     continue;
                 rows.add(StatisticsAdmin.generateRowFromStats(conglomId,SITableScanner.regionId.get(),columnPositionMap[i],itemStatistics[i]));
             }
+            addColumnGroupRows(rows,groupStatistics);
             rows.add(StatisticsAdmin.generateRowFromStats(conglomId,SITableScanner.regionId.get(),rowCount,rowCount*((long)meanRowWidth),meanRowWidth,1l,
                     useSample? SYSTABLESTATISTICSRowFactory.SAMPLE_NONMERGED_STATS:SYSTABLESTATISTICSRowFactory.REGULAR_NONMERGED_STATS, useSample?sampleFraction:0.0d));
             return rows.iterator();
@@ -111,10 +133,38 @@ public class StatisticsFlatMapFunction
                 if (template.getColumn(i+1) !=null)
                     rows.add(StatisticsAdmin.generateRowFromStats(conglomId, SITableScanner.regionId.get(), columnPositionMap[i], new ColumnStatisticsImpl(template.getColumn(i+1)) ));
             }
+            addColumnGroupRows(rows,groupStatistics);
             rows.add(
                     StatisticsAdmin.generateRowFromStats(conglomId,SITableScanner.regionId.get(),0,0,0,1L,
                             useSample?SYSTABLESTATISTICSRowFactory.SAMPLE_NONMERGED_STATS:SYSTABLESTATISTICSRowFactory.REGULAR_NONMERGED_STATS, useSample?sampleFraction:0.0d));
             return rows.iterator();
         }
     }
+
+    /**
+     * @return the positions in the rows of the columns of the group, or null if one of them isn't collected
+     */
+    private int[] rowPositions(int[] columnGroup) {
+        int[] positions = new int[columnGroup.length];
+        for (int j = 0; j < columnGroup.length; j++) {
+            positions[j] = -1;
+            for (int i = 0; i < columnPositionMap.length; i++) {
+                if (columnPositionMap[i] == columnGroup[j]) {
+                    positions[j] = i;
+                    break;
+                }
+            }
+            if (positions[j] < 0)
+                return null;
+        }
+        return positions;
+    }
+
+    private void addColumnGroupRows(List<ExecRow> rows, ColumnGroupStatistics[] groupStatistics) throws StandardException {
+        for (int g = 0; g < groupStatistics.length; g++) {
+            if (groupStatistics[g] != null)
+                rows.add(StatisticsAdmin.generateRowFromStats(conglomId,SITableScanner.regionId.get(),
+                        ColumnGroupStatistics.columnIdOfGroup(g),groupStatistics[g]));
+        }
+    }
 }
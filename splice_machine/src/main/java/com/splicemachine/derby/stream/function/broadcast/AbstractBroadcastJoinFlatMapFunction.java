@@ -27,6 +27,7 @@ import com.splicemachine.db.impl.sql.execute.TriggerExecutionContext;
 import com.splicemachine.derby.iapi.sql.execute.DataSetProcessorFactory;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.derby.impl.sql.execute.operations.AdaptiveJoinMonitor;
 import com.splicemachine.derby.impl.sql.execute.operations.BroadcastJoinCache;
 import com.splicemachine.derby.impl.sql.execute.operations.JoinOperation;
 import com.splicemachine.derby.impl.sql.execute.operations.MultiProbeTableScanOperation;
@@ -38,6 +39,7 @@ import com.splicemachine.derby.stream.iapi.OperationContext;
 import com.splicemachine.si.impl.driver.SIDriver;
 import com.splicemachine.stream.Stream;
 import com.splicemachine.stream.Streams;
+import org.apache.spark.TaskContext;
 import org.spark_project.guava.base.Function;
 import org.spark_project.guava.collect.FluentIterable;
 
@@ -56,7 +58,6 @@ import static com.splicemachine.db.impl.sql.execute.TriggerExecutionContext.push
  * Created by dgomezferro on 11/4/15.
  */
 public abstract class AbstractBroadcastJoinFlatMapFunction<In, Out> extends SpliceFlatMapFunction<JoinOperation, Iterator<In>, Out> {
-    private static final BroadcastJoinCache broadcastJoinCache = new BroadcastJoinCache();
     private JoinOperation operation;
     private Future<JoinTable> joinTable ;
     private boolean init = false;
@@ -159,6 +160,7 @@ public abstract class AbstractBroadcastJoinFlatMapFunction<In, Out> extends Spli
         if (init)
             return;
         init = true;
+        boolean controlSide = TaskContext.get() == null;
         joinTable = SIDriver.driver().getExecutorService().submit(() -> {
             initCurrentLCC();
             operation = getOperation();
@@ -182,6 +184,7 @@ public abstract class AbstractBroadcastJoinFlatMapFunction<In, Out> extends Spli
                 sequenceId = operation.getRightSequenceId();
             }
 
+            AdaptiveJoinMonitor monitor = controlSide ? AdaptiveJoinMonitor.forBuildSide(operation, rightOperation) : null;
             Callable<Stream<ExecRow>> rhsLoader = () -> {
                 DataSetProcessorFactory dataSetProcessorFactory=EngineDriver.driver().processorFactory();
 
@@ -209,13 +212,17 @@ public abstract class AbstractBroadcastJoinFlatMapFunction<In, Out> extends Spli
                     public ExecRow apply(@Nullable ExecRow locatedRow) {
                         assert locatedRow!=null;
                         limiter.addAccumulatedRows(1);
+                        if (monitor != null)
+                            monitor.addRows(1);
                         operationContext.recordJoinedRight();
                         return locatedRow;
                     }
                 }));
             };
             ExecRow leftTemplate = leftOperation.getExecRowDefinition();
-            return broadcastJoinCache.get(sequenceId, rhsLoader, rightHashKeys, leftHashKeys, leftTemplate).newTable();
+            BroadcastJoinCache.Key key = BroadcastJoinCache.Key.forBuildSide(sequenceId, operation.getActivation(),
+                    rightOperation, rightHashKeys, leftHashKeys, operationContext.getTxn());
+            return BroadcastJoinCache.getInstance().get(key, rhsLoader, rightHashKeys, leftHashKeys, leftTemplate).newTable();
         });
     }
 
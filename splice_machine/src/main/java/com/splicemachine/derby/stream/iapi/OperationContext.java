@@ -41,6 +41,19 @@ public interface OperationContext<Op extends SpliceOperation> extends Externaliz
     long getRetryAttempts();
     long getRegionTooBusyExceptions();
 
+    /**
+     * Records bytes spilled to local disk by a memory-bounded operation, such as a hash aggregation.
+     */
+    void recordSpill(long bytes);
+
+    /**
+     * Records the estimated heap usage of a memory-bounded operation, only the peak is retained.
+     */
+    void recordMemoryUsage(long bytes);
+
+    long getSpilledBytes();
+    long getPeakMemoryUsage();
+
     BadRecordsRecorder getBadRecordsRecorder();
 
     boolean isPermissive();
@@ -47,6 +47,7 @@ public class TableScannerIterator implements Iterable<ExecRow>, Iterator<ExecRow
     protected Qualifier[][] qualifiers;
     protected int[] baseColumnMap;
     protected boolean rowIdKey; // HACK Row ID Qualifiers point to the projection above them ?  TODO JL
+    protected boolean qualifiersDeferred;
     protected HBaseRowLocation hBaseRowLocation;
 
     public TableScannerIterator(TableScannerBuilder siTableBuilder, SpliceOperation operation) throws StandardException {
@@ -57,6 +58,7 @@ public class TableScannerIterator implements Iterable<ExecRow>, Iterator<ExecRow
             this.qualifiers = this.operation.getScanInformation().getScanQualifiers();
             this.baseColumnMap = this.operation.getOperationInformation().getBaseColumnMap();
             this.rowIdKey = this.operation.getRowIdKey();
+            this.qualifiersDeferred = this.operation.areQualifiersDeferred();
         }
     }
 
@@ -74,6 +76,8 @@ public class TableScannerIterator implements Iterable<ExecRow>, Iterator<ExecRow
             if (!initialized) {
                 initialized = true;
                 tableScanner = siTableBuilder.build();
+                if (qualifiers != null && !rowIdKey)
+                    tableScanner.setQualifiers(qualifiers, baseColumnMap);
                 tableScanner.open();
                 if (operation!= null) {
                     operation.registerCloseable(new Closeable() {
@@ -98,7 +102,7 @@ public class TableScannerIterator implements Iterable<ExecRow>, Iterator<ExecRow
                     return hasNext;
                 } else {
                     hasNext = true;
-                    if (qualifiers == null || rowIdKey || Scans.qualifyRecordFromRow(execRow.getRowArray(), qualifiers,baseColumnMap,siTableBuilder.getOptionalProbeValue() ))
+                    if (qualifiers == null || rowIdKey || qualifiersDeferred || Scans.qualifyRecordFromRow(execRow.getRowArray(), qualifiers,baseColumnMap,siTableBuilder.getOptionalProbeValue() ))
                         break;
                 }
             }
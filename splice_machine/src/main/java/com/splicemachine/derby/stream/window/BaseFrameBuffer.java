@@ -15,6 +15,7 @@
 package com.splicemachine.derby.stream.window;
 
 import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.conn.QueryMemoryManager;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.derby.impl.sql.execute.operations.window.FrameDefinition;
@@ -42,11 +43,13 @@ abstract public class BaseFrameBuffer implements WindowFrameBuffer{
     protected int start;
     protected int end;
     protected int current;
-    protected ArrayList<ExecRow> rows;
+    protected FrameRowBuffer rows;
     protected PeekingIterator<ExecRow> source;
     protected byte[] partition;
     protected int[] sortColumns;
     private boolean initialized;
+    private boolean streaming;
+    private ExecRow nextRow;
 
     @SuppressFBWarnings(value="EI_EXPOSE_REP2", justification="Intentional")
     public static WindowFrameBuffer createFrameBuffer(
@@ -55,16 +58,30 @@ abstract public class BaseFrameBuffer implements WindowFrameBuffer{
                                                       FrameDefinition frameDefinition,
                                                       int[] sortColumns,
                                                       ExecRow templateRow) throws StandardException {
+        return createFrameBuffer(aggregators, source, frameDefinition, sortColumns, templateRow, QueryMemoryManager.UNLIMITED);
+    }
+
+    /**
+     * @param memory the memory manager of the query the rows of the frame are reserved against
+     */
+    @SuppressFBWarnings(value="EI_EXPOSE_REP2", justification="Intentional")
+    public static WindowFrameBuffer createFrameBuffer(
+                                                      WindowAggregator[] aggregators,
+                                                      Iterator<ExecRow> source,
+                                                      FrameDefinition frameDefinition,
+                                                      int[] sortColumns,
+                                                      ExecRow templateRow,
+                                                      QueryMemoryManager memory) throws StandardException {
 
         FrameDefinition.FrameMode frameMode = frameDefinition.getFrameMode();
         PeekingIterator<ExecRow> peekingSource = Iterators.peekingIterator(source);
         if (frameMode == FrameDefinition.FrameMode.ROWS) {
             return new PhysicalGroupFrameBuffer(
-                    aggregators, peekingSource, frameDefinition, sortColumns, templateRow);
+                    aggregators, peekingSource, frameDefinition, sortColumns, templateRow, memory);
         }
         else {
             return new LogicalGroupFrameBuffer(
-                    aggregators, peekingSource, frameDefinition, sortColumns, templateRow);
+                    aggregators, peekingSource, frameDefinition, sortColumns, templateRow, memory);
         }
     }
 
@@ -73,7 +90,8 @@ abstract public class BaseFrameBuffer implements WindowFrameBuffer{
                             PeekingIterator<ExecRow> source,
                             FrameDefinition frameDefinition,
                             int[] sortColumns,
-                            ExecRow templateRow) throws StandardException {
+                            ExecRow templateRow,
+                            QueryMemoryManager memory) throws StandardException {
         this.aggregators = aggregators;
         this.source = source;
         this.sortColumns = sortColumns;
@@ -87,11 +105,19 @@ abstract public class BaseFrameBuffer implements WindowFrameBuffer{
         // The frame definition will not change over the life of this frame buffer
         this.frameStart = frameDefinition.getFrameStart().getValue();
         this.frameEnd = frameDefinition.getFrameEnd().getValue();
-        this.rows = new ArrayList<ExecRow>();
+        this.rows = new FrameRowBuffer(memory);
         this.resultBuffer = new ResultBuffer();
     }
 
     public ExecRow next() {
+        if (streaming) {
+            if (!hasNext()) {
+                return null;
+            }
+            ExecRow row = nextRow;
+            nextRow = null;
+            return row;
+        }
         return resultBuffer.next();
     }
 
@@ -108,7 +134,6 @@ abstract public class BaseFrameBuffer implements WindowFrameBuffer{
             SpliceGenericWindowFunction function = (SpliceGenericWindowFunction) templateRow.getColumn(aggregatorColumnId).getObject();
             row.setColumn(resultColumnId, function.getResult().cloneValue(false));
         }
-        this.resultBuffer.bufferResult(row);
         return row;
     }
 
@@ -132,17 +157,48 @@ abstract public class BaseFrameBuffer implements WindowFrameBuffer{
             initialized = true;
             try {
                 reset();
-                while (nextInternal() != null) {
-                    move();
+                // Rows are emitted as soon as their results are known, unless a function needs to see
+                // the whole partition first. In that case we buffer the results until the end of the partition.
+                streaming = !needsWholeFrame();
+                if (!streaming) {
+                    ExecRow row;
+                    while ((row = nextInternal()) != null) {
+                        resultBuffer.bufferResult(row);
+                        move();
+                    }
+                    finishFrame();
                 }
-                finishFrame();
             } catch (Exception se) {
                 throw new RuntimeException(se);
             }
         }
+        if (streaming) {
+            if (nextRow == null) {
+                try {
+                    nextRow = nextInternal();
+                    if (nextRow != null) {
+                        move();
+                    }
+                } catch (Exception se) {
+                    throw new RuntimeException(se);
+                }
+            }
+            return nextRow != null;
+        }
         return resultBuffer.hasNext();
     }
 
+    private boolean needsWholeFrame() throws StandardException {
+        for (WindowAggregator aggregator : aggregators) {
+            SpliceGenericWindowFunction function =
+                    (SpliceGenericWindowFunction) templateRow.getColumn(aggregator.getFunctionColumnId()).getObject();
+            if (function.needsWholeFrame()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void remove() {
         throw new UnsupportedOperationException();
@@ -164,7 +220,7 @@ abstract public class BaseFrameBuffer implements WindowFrameBuffer{
     }
 
     protected void reset() throws StandardException, IOException {
-        rows = new ArrayList<ExecRow>();
+        rows.clear();
 
         // Initialize window functions
         for (WindowAggregator aggregator : this.aggregators) {
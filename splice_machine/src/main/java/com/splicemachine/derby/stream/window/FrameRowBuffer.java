@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.window;
+
+import com.splicemachine.db.iapi.sql.conn.QueryMemoryManager;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.derby.stream.control.ControlUtils;
+
+import java.util.Arrays;
+
+/**
+ * Rows held by a window frame buffer, in a growable ring buffer.
+ *
+ * The frame slides by appending rows at the end and dropping them from the front, which are both constant time,
+ * unlike removing the first element of an array list.
+ *
+ * Rows are reserved against the memory of the query while they are in the frame, the query being resubmitted to
+ * Spark if the memory is denied.
+ */
+class FrameRowBuffer{
+    private static final int INITIAL_CAPACITY=16;
+
+    private final QueryMemoryManager memory;
+    private ExecRow[] rows=new ExecRow[INITIAL_CAPACITY];
+    private long[] sizes=new long[INITIAL_CAPACITY];
+    private int head;
+    private int size;
+
+    FrameRowBuffer(QueryMemoryManager memory){
+        this.memory=memory;
+    }
+
+    int size(){
+        return size;
+    }
+
+    ExecRow get(int index){
+        if(index<0 || index>=size)
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+        return rows[(head+index)&(rows.length-1)];
+    }
+
+    void add(ExecRow row){
+        long rowSize=ControlUtils.estimateMemoryUsage(row);
+        memory.reserve(rowSize);
+        if(size==rows.length)
+            grow();
+        int position=(head+size)&(rows.length-1);
+        rows[position]=row;
+        sizes[position]=rowSize;
+        size++;
+    }
+
+    ExecRow removeFirst(){
+        if(size==0)
+            throw new IndexOutOfBoundsException("Frame buffer is empty");
+        ExecRow row=rows[head];
+        rows[head]=null;
+        memory.release(sizes[head]);
+        head=(head+1)&(rows.length-1);
+        size--;
+        return row;
+    }
+
+    void clear(){
+        for(int i=0;i<size;i++){
+            memory.release(sizes[(head+i)&(rows.length-1)]);
+        }
+        Arrays.fill(rows,null);
+        head=size=0;
+    }
+
+    private void grow(){
+        // the capacity is kept a power of 2 so positions can be wrapped with a mask
+        ExecRow[] newRows=new ExecRow[rows.length<<1];
+        long[] newSizes=new long[rows.length<<1];
+        int firstPart=rows.length-head;
+        System.arraycopy(rows,head,newRows,0,firstPart);
+        System.arraycopy(rows,0,newRows,firstPart,head);
+        System.arraycopy(sizes,head,newSizes,0,firstPart);
+        System.arraycopy(sizes,0,newSizes,firstPart,head);
+        rows=newRows;
+        sizes=newSizes;
+        head=0;
+    }
+}
@@ -16,6 +16,7 @@ package com.splicemachine.derby.stream.window;
 
 import org.spark_project.guava.collect.PeekingIterator;
 import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.conn.QueryMemoryManager;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.db.iapi.types.DataValueDescriptor;
 import com.splicemachine.derby.impl.sql.execute.operations.window.FrameDefinition;
@@ -32,8 +33,9 @@ public class LogicalGroupFrameBuffer extends BaseFrameBuffer {
                                     PeekingIterator<ExecRow> source,
                                     FrameDefinition frameDefinition,
                                     int[] sortColumns,
-                                    ExecRow templateRow) throws StandardException {
-        super(aggregators, source, frameDefinition, sortColumns, templateRow);
+                                    ExecRow templateRow,
+                                    QueryMemoryManager memory) throws StandardException {
+        super(aggregators, source, frameDefinition, sortColumns, templateRow, memory);
     }
 
     @Override
@@ -122,7 +124,7 @@ public class LogicalGroupFrameBuffer extends BaseFrameBuffer {
         // Remove rows from buffer if they are no longer needed
         int minIndex = current < start ? current : start;
         for (int i = 0; i < minIndex; ++i) {
-            rows.remove(0);
+            rows.removeFirst();
             start--;
             current--;
             end--;
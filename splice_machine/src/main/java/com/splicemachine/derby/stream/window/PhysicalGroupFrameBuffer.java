@@ -15,6 +15,7 @@
 package com.splicemachine.derby.stream.window;
 
 import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.conn.QueryMemoryManager;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
 import com.splicemachine.derby.impl.sql.execute.operations.window.FrameDefinition;
 import com.splicemachine.derby.impl.sql.execute.operations.window.WindowAggregator;
@@ -31,8 +32,9 @@ public class PhysicalGroupFrameBuffer extends BaseFrameBuffer {
                                      PeekingIterator<ExecRow> source,
                                      FrameDefinition frameDefinition,
                                      int[] sortColumns,
-                                     ExecRow templateRow) throws StandardException {
-        super(aggregators, source, frameDefinition, sortColumns, templateRow);
+                                     ExecRow templateRow,
+                                     QueryMemoryManager memory) throws StandardException {
+        super(aggregators, source, frameDefinition, sortColumns, templateRow, memory);
     }
 
     @Override
@@ -80,7 +82,7 @@ public class PhysicalGroupFrameBuffer extends BaseFrameBuffer {
             // 2. the row was just moved out of th window frame
             // 3. window start frame is after the current row
 
-            rows.remove(0);
+            rows.removeFirst();
             start--;
             current--;
             end--;
@@ -64,9 +64,7 @@ public class EngineUtils{
             schema = schema.trim();
             int quoteStartIdx = schema.indexOf("\"");
             if(quoteStartIdx>=0){
-                int quoteEndIdx = schema.indexOf("\"",quoteStartIdx+1);
-                assert quoteEndIdx>0 : "Parser error! uncompleted quotes were allowed!";
-                schema = schema.substring(quoteStartIdx+1,quoteEndIdx);
+                schema = undelimit(schema,quoteStartIdx);
             }else
                 schema = schema.toUpperCase();
         }
@@ -80,15 +78,32 @@ public class EngineUtils{
             table = table.trim();
             int quoteStartIdx = table.indexOf("\"");
             if(quoteStartIdx>=0){
-                int quoteEndIdx = table.indexOf("\"",quoteStartIdx+1);
-                assert quoteEndIdx>0 : "Parser error! uncompleted quotes were allowed!";
-                table = table.substring(quoteStartIdx+1,quoteEndIdx);
+                table = undelimit(table,quoteStartIdx);
             }else
                 table = table.toUpperCase();
         }
         return table;
     }
 
+    /**
+     * @return the delimited identifier starting at the quote, with its doubled quotes turned back into single ones
+     */
+    private static String undelimit(String id,int quoteStartIdx){
+        StringBuilder sb = new StringBuilder(id.length());
+        for(int i=quoteStartIdx+1;i<id.length();i++){
+            char c = id.charAt(i);
+            if(c=='"'){
+                if(i+1<id.length() && id.charAt(i+1)=='"')
+                    i++;
+                else
+                    return sb.toString();
+            }
+            sb.append(c);
+        }
+        assert false : "Parser error! uncompleted quotes were allowed!";
+        return sb.toString();
+    }
+
     public static String validateColumnName(String columnName) throws SQLException {
         if (columnName == null)
             throw PublicAPI.wrapStandardException(ErrorState.LANG_COLUMN_ID.newException());
@@ -15,9 +15,12 @@
 package com.splicemachine.derby.utils;
 
 import com.splicemachine.EngineDriver;
+import com.splicemachine.access.configuration.OperationConfiguration;
 import com.splicemachine.db.iapi.error.PublicAPI;
 import com.splicemachine.db.iapi.error.StandardException;
 import com.splicemachine.db.iapi.reference.Property;
+import com.splicemachine.db.iapi.services.context.ContextManager;
+import com.splicemachine.db.iapi.services.daemon.Serviceable;
 import com.splicemachine.db.iapi.services.io.FormatableBitSet;
 import com.splicemachine.db.iapi.services.property.PropertyUtil;
 import com.splicemachine.db.iapi.services.uuid.UUIDFactory;
@@ -27,7 +30,6 @@ import com.splicemachine.db.iapi.sql.conn.Authorizer;
 import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
 import com.splicemachine.db.iapi.sql.dictionary.*;
 import com.splicemachine.db.iapi.sql.execute.ExecRow;
-import com.splicemachine.db.iapi.stats.ColumnStatisticsImpl;
 import com.splicemachine.db.iapi.stats.FakeColumnStatisticsImpl;
 import com.splicemachine.db.iapi.stats.ItemStatistics;
 import com.splicemachine.db.iapi.store.access.TransactionController;
@@ -51,6 +53,7 @@ import com.splicemachine.derby.stream.iapi.ScanSetBuilder;
 import com.splicemachine.metrics.Metrics;
 import com.splicemachine.pipeline.ErrorState;
 import com.splicemachine.pipeline.Exceptions;
+import com.splicemachine.pipeline.PartitionModificationTracker;
 import com.splicemachine.primitives.Bytes;
 import com.splicemachine.protobuf.ProtoUtil;
 import com.splicemachine.si.api.txn.TxnView;
@@ -67,10 +70,12 @@ import org.spark_project.guava.collect.Lists;
 
 import javax.annotation.Nullable;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
 
 import static com.splicemachine.derby.utils.EngineUtils.getSchemaDescriptor;
 import static com.splicemachine.derby.utils.EngineUtils.verifyTableExists;
@@ -302,8 +307,13 @@ public class StatisticsAdmin extends BaseAdminProcedures {
             authorize(tds);
             TransactionController transactionExecute = lcc.getTransactionExecute();
             transactionExecute.elevate("statistics");
+            if (staleOnly) {
+                outputResults[0] = collectStaleStatistics(conn, tds, false, 0.0d, dd, transactionExecute);
+                return;
+            }
             dropTableStatistics(tds, dd, tc);
             ddlNotification(tc, tds);
+            markCollectedOnCommit(transactionExecute, modificationsOf(tds));
             TxnView txn = ((SpliceTransactionManager) transactionExecute).getRawTransaction().getActiveStateTxn();
 
             HashMap<Long, Pair<String, String>> display = new HashMap<>();
@@ -586,8 +596,13 @@ public class StatisticsAdmin extends BaseAdminProcedures {
             DataDictionary dd = conn.getLanguageConnection().getDataDictionary();
             dd.startWriting(conn.getLanguageConnection());
             TransactionController tc = conn.getLanguageConnection().getTransactionExecute();
+            if (staleOnly && !tableDesc.isExternal()) {
+                outputResults[0] = collectStaleStatistics(conn, tds, useSample, samplePercent/100, dd, tc);
+                return;
+            }
             dropTableStatistics(tds,dd,tc);
             ddlNotification(tc, tds);
+            markCollectedOnCommit(tc, modificationsOf(tds));
             TxnView txn = ((SpliceTransactionManager) tc).getRawTransaction().getActiveStateTxn();
             HashMap<Long,Pair<String,String>> display = new HashMap<>();
             display.put(tableDesc.getHeapConglomerateId(),Pair.newPair(schema,table));
@@ -612,13 +627,24 @@ public class StatisticsAdmin extends BaseAdminProcedures {
                                                                              boolean mergeStats,
                                                                              TxnView txn,
                                                                              EmbedConnection conn) throws StandardException, ExecutionException {
+        return createCollectTableStatisticsOperation(table, useSample, sampleFraction, mergeStats, txn, conn, new byte[0], new byte[0]);
+    }
+
+    private static StatisticsOperation createCollectTableStatisticsOperation(TableDescriptor table,
+                                                                             boolean useSample,
+                                                                             double sampleFraction,
+                                                                             boolean mergeStats,
+                                                                             TxnView txn,
+                                                                             EmbedConnection conn,
+                                                                             byte[] startKey,
+                                                                             byte[] stopKey) throws StandardException, ExecutionException {
         long heapConglomerateId = table.getHeapConglomerateId();
         Activation activation = conn.getLanguageConnection().getLastActivation();
         DistributedDataSetProcessor dsp = EngineDriver.driver().processorFactory().distributedProcessor();
 
         ScanSetBuilder ssb = dsp.newScanSet(null,Long.toString(heapConglomerateId));
         ssb.tableVersion(table.getVersion());
-        ScanSetBuilder scanSetBuilder = createTableScanner(ssb,conn,table,txn,mergeStats);
+        ScanSetBuilder scanSetBuilder = createTableScanner(ssb,conn,table,txn,mergeStats,startKey,stopKey);
         String scope = getScopeName(table);
         // no sample stats support on mem platform
         if (dsp.getType() != DataSetProcessor.Type.SPARK) {
@@ -631,18 +657,191 @@ public class StatisticsAdmin extends BaseAdminProcedures {
         for (ColumnDescriptor descriptor : colsToCollect ) {
             dtds[index++] = descriptor.getType();
         }
-        StatisticsOperation op = new StatisticsOperation(scanSetBuilder,useSample,sampleFraction,mergeStats,scope,activation,dtds);
+        StatisticsOperation op = new StatisticsOperation(scanSetBuilder,useSample,sampleFraction,mergeStats,scope,activation,dtds,getColumnGroups(table));
         return op;
     }
 
+    /*
+     * Collects the statistics of the regions which changed since their statistics were collected, and of the
+     * regions which have none. Statistics are kept per region, as with the non-merged collection, so the
+     * statistics of the other regions are retained, and merged with the new ones when the statistics of the table
+     * are read. Merged statistics can't be split by region, so a table which has them is entirely recollected,
+     * and has per region statistics from then on.
+     */
+    private static ResultSet collectStaleStatistics(EmbedConnection conn,
+                                                    List<TableDescriptor> tds,
+                                                    boolean useSample,
+                                                    double sampleFraction,
+                                                    DataDictionary dd,
+                                                    TransactionController tc) throws StandardException, ExecutionException {
+        // no sample stats support on mem platform
+        if (EngineDriver.driver().processorFactory().distributedProcessor().getType() != DataSetProcessor.Type.SPARK) {
+            useSample = false;
+            sampleFraction = 0.0d;
+        }
+        double staleFraction = EngineDriver.driver().getConfiguration().getStalePartitionFraction();
+        List<TableDescriptor> staleTables = new ArrayList<>(tds.size());
+        Map<Long, List<byte[][]>> staleRanges = new HashMap<>();
+        Map<String, Long> collectedModifications = new HashMap<>();
+        try (Partition sequences = SIDriver.driver().getTableFactory().getTable(OperationConfiguration.SEQUENCE_TABLE_NAME_BYTES)) {
+            for (TableDescriptor td : tds) {
+                if (td.isExternal())
+                    continue; // external tables have no regions, their statistics are only collected in full
+                List<byte[][]> ranges = dropStaleStatistics(td, useSample, sampleFraction, staleFraction, sequences, dd, tc, collectedModifications);
+                if (!ranges.isEmpty()) {
+                    staleTables.add(td);
+                    staleRanges.put(td.getHeapConglomerateId(), ranges);
+                }
+            }
+        } catch (IOException e) {
+            throw Exceptions.parseException(e);
+        }
+        if (staleTables.isEmpty())
+            return new EmbedResultSet40(conn, wrapResults(conn, Collections.<ExecRow>emptyList(), COLLECTED_STATS_OUTPUT_COLUMNS), false, null, true);
+
+        ddlNotification(tc, staleTables);
+        markCollectedOnCommit(tc, collectedModifications);
+        TxnView txn = ((SpliceTransactionManager) tc).getRawTransaction().getActiveStateTxn();
+        HashMap<Long, Pair<String, String>> display = new HashMap<>();
+        ArrayList<StatisticsOperation> statisticsOperations = new ArrayList<>();
+        for (TableDescriptor td : staleTables) {
+            display.put(td.getHeapConglomerateId(), Pair.newPair(td.getSchemaName(), td.getName()));
+            for (byte[][] range : staleRanges.get(td.getHeapConglomerateId())) {
+                statisticsOperations.add(createCollectTableStatisticsOperation(td, useSample, sampleFraction, false, txn, conn, range[0], range[1]));
+            }
+        }
+        return new EmbedResultSet40(conn, wrapResults(conn,
+                displayTableStatistics(statisticsOperations, false, dd, tc, display), COLLECTED_STATS_OUTPUT_COLUMNS),
+                false, null, true);
+    }
+
+    /*
+     * Drops the statistics of the stale regions of a table, and of the regions which were split or merged since
+     * they were collected, and returns the key ranges of the stale regions, adjacent regions being in the same
+     * range so they are collected by the same job. The modification counts of the stale regions are added to
+     * collectedModifications, to be marked as collected once the new statistics are committed.
+     */
+    private static List<byte[][]> dropStaleStatistics(TableDescriptor td,
+                                                      boolean useSample,
+                                                      double sampleFraction,
+                                                      double staleFraction,
+                                                      Partition sequences,
+                                                      DataDictionary dd,
+                                                      TransactionController tc,
+                                                      Map<String, Long> collectedModifications) throws StandardException, IOException {
+        long conglomId = td.getHeapConglomerateId();
+        int statsType = useSample ? SYSTABLESTATISTICSRowFactory.SAMPLE_NONMERGED_STATS : SYSTABLESTATISTICSRowFactory.REGULAR_NONMERGED_STATS;
+        Map<String, PartitionStatisticsDescriptor> collected = new HashMap<>();
+        boolean retained = true;
+        for (PartitionStatisticsDescriptor psd : dd.getPartitionStatistics(conglomId, tc)) {
+            // statistics of another kind can't be merged with the new ones
+            if (psd.getStatsType() != statsType || (useSample && psd.getSampleFraction() != sampleFraction))
+                retained = false;
+            collected.put(psd.getPartitionId(), psd);
+        }
+        if (!retained) {
+            dropTableStatistics(td, dd, tc);
+            collected.clear();
+        }
+
+        List<Partition> regions;
+        try (Partition table = SIDriver.driver().getTableFactory().getTable(Long.toString(conglomId))) {
+            regions = new ArrayList<>(table.subPartitions(true));
+        }
+        regions.sort((a, b) -> Bytes.startComparator.compare(a.getStartKey(), b.getStartKey()));
+        List<byte[][]> ranges = new ArrayList<>();
+        byte[][] range = null;
+        for (Partition region : regions) {
+            String partitionId = region.getName();
+            PartitionStatisticsDescriptor psd = collected.remove(partitionId);
+            if (psd != null) {
+                double rowCount = useSample ? psd.getRowCount() / sampleFraction : psd.getRowCount();
+                if (PartitionModificationTracker.modificationsSinceCollection(sequences, partitionId) <= staleFraction * rowCount) {
+                    range = null;
+                    continue;
+                }
+                dd.deletePartitionStatistics(conglomId, partitionId, tc);
+            }
+            collectedModifications.put(partitionId, PartitionModificationTracker.modifications(sequences, partitionId));
+            if (range == null) {
+                range = new byte[][]{region.getStartKey(), region.getEndKey()};
+                ranges.add(range);
+            } else {
+                range[1] = region.getEndKey();
+            }
+        }
+        // the regions left were split or merged, the new regions have no statistics and are collected
+        for (String partitionId : collected.keySet()) {
+            dd.deletePartitionStatistics(conglomId, partitionId, tc);
+        }
+        if (LOG.isDebugEnabled())
+            SpliceLogUtils.debug(LOG, "Table %s has %d stale region ranges out of %d regions", td.getName(), ranges.size(), regions.size());
+        return ranges;
+    }
+
+    /*
+     * Reads the modification counts of all the regions of the tables, before their statistics are collected in full.
+     */
+    private static Map<String, Long> modificationsOf(List<TableDescriptor> tds) throws StandardException {
+        Map<String, Long> modifications = new HashMap<>();
+        try (Partition sequences = SIDriver.driver().getTableFactory().getTable(OperationConfiguration.SEQUENCE_TABLE_NAME_BYTES)) {
+            for (TableDescriptor td : tds) {
+                if (td.isExternal())
+                    continue;
+                try (Partition table = SIDriver.driver().getTableFactory().getTable(Long.toString(td.getHeapConglomerateId()))) {
+                    for (Partition region : table.subPartitions(true)) {
+                        modifications.put(region.getName(), PartitionModificationTracker.modifications(sequences, region.getName()));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw Exceptions.parseException(e);
+        }
+        return modifications;
+    }
+
+    /*
+     * Marks the regions as collected once the transaction writing their statistics commits. Rows written to them
+     * since their modification counts were read make the new statistics stale again; if the collection fails or
+     * is rolled back, the regions stay stale.
+     */
+    private static void markCollectedOnCommit(TransactionController tc, final Map<String, Long> modifications) {
+        if (modifications.isEmpty())
+            return;
+        ((SpliceTransactionManager) tc).addPostCommitWork(new Serviceable() {
+            @Override
+            public int performWork(ContextManager context) {
+                try (Partition sequences = SIDriver.driver().getTableFactory().getTable(OperationConfiguration.SEQUENCE_TABLE_NAME_BYTES)) {
+                    for (Map.Entry<String, Long> entry : modifications.entrySet()) {
+                        PartitionModificationTracker.markCollected(sequences, entry.getKey(), entry.getValue());
+                    }
+                } catch (IOException e) {
+                    // the regions are recollected by the next stale collection, which is only wasted work
+                    LOG.warn("Unable to mark the statistics of " + modifications.size() + " regions as collected", e);
+                }
+                return Serviceable.DONE;
+            }
+
+            @Override
+            public boolean serviceASAP() {
+                return true;
+            }
+
+            @Override
+            public boolean serviceImmediately() {
+                return true;
+            }
+        });
+    }
+
     private static final String getScopeName(TableDescriptor td) {
         return String.format(OperationContext.Scope.COLLECT_STATS.displayName(), td.getName());
     }
 
-    private static DataScan createScan (TxnView txn) {
+    private static DataScan createScan (TxnView txn, byte[] startKey, byte[] stopKey) {
         DataScan scan=SIDriver.driver().getOperationFactory().newDataScan(txn);
         scan.returnAllVersions(); //make sure that we read all versions of the data
-        return scan.startKey(new byte[0]).stopKey(new byte[0]);
+        return scan.startKey(startKey).stopKey(stopKey);
     }
 
     public static int[] getFormatIds(EmbedConnection conn, long columnStatsConglomId) throws StandardException{
@@ -655,7 +854,8 @@ public class StatisticsAdmin extends BaseAdminProcedures {
     private static ScanSetBuilder createTableScanner(ScanSetBuilder builder,
                                                      EmbedConnection conn,
                                                      TableDescriptor table,
-                                                     TxnView txn, boolean mergeStats) throws StandardException{
+                                                     TxnView txn, boolean mergeStats,
+                                                     byte[] startKey, byte[] stopKey) throws StandardException{
 
         List<ColumnDescriptor> colsToCollect = getCollectedColumns(conn, table);
         ExecRow row = new ValueRow(colsToCollect.size());
@@ -705,7 +905,7 @@ public class StatisticsAdmin extends BaseAdminProcedures {
                 }
             }
         }
-        DataScan scan = createScan(txn);
+        DataScan scan = createScan(txn, startKey, stopKey);
         return builder.transaction(txn)
                 .metricFactory(Metrics.basicMetricFactory())
                 .template(row)
@@ -865,6 +1065,40 @@ public class StatisticsAdmin extends BaseAdminProcedures {
         return toCollect;
     }
 
+    /*
+     * The groups of columns whose statistics are collected together: the key columns of each index and of the
+     * primary key, and the leading key columns of each, since equality predicates usually cover a prefix of a key.
+     * Key columns are always collected, see getCollectedColumns().
+     */
+    private static int[][] getColumnGroups(TableDescriptor td) throws StandardException {
+        List<int[]> keys = new ArrayList<>();
+        IndexLister indexLister = td.getIndexLister();
+        if (indexLister != null) {
+            for (IndexRowGenerator irg : indexLister.getDistinctIndexRowGenerators()) {
+                keys.add(irg.getIndexDescriptor().baseColumnPositions());
+            }
+        }
+        ReferencedKeyConstraintDescriptor keyDescriptor = td.getPrimaryKey();
+        if (keyDescriptor != null) {
+            keys.add(keyDescriptor.getReferencedColumns());
+        }
+
+        Set<List<Integer>> groups = new LinkedHashSet<>();
+        for (int[] keyColumns : keys) {
+            for (int length = 2; length <= keyColumns.length; length++) {
+                int[] group = Arrays.stream(keyColumns, 0, length).distinct().sorted().toArray();
+                if (group.length >= 2)
+                    groups.add(Arrays.stream(group).boxed().collect(Collectors.toList()));
+            }
+        }
+        int[][] columnGroups = new int[groups.size()][];
+        int index = 0;
+        for (List<Integer> group : groups) {
+            columnGroups[index++] = group.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return columnGroups;
+    }
+
     private static void ensureNotKeyed(ColumnDescriptor descriptor, TableDescriptor td) throws StandardException {
         ConglomerateDescriptor heapConglom = td.getConglomerateDescriptor(td.getHeapConglomerateId());
         IndexRowGenerator pkDescriptor = heapConglom.getIndexDescriptor();
@@ -1044,7 +1278,7 @@ public class StatisticsAdmin extends BaseAdminProcedures {
                                                 ByteArrayInputStream bais = new ByteArrayInputStream(nextRow.getColumn(2).getBytes());
                                                 ObjectInputStream ois = new ObjectInputStream(bais);
                                                 // compose the entry for a given column
-                                                ExecRow statsRow = StatisticsAdmin.generateRowFromStats(conglomId, "-All-", columnId, (ColumnStatisticsImpl) ois.readObject());
+                                                ExecRow statsRow = StatisticsAdmin.generateRowFromStats(conglomId, "-All-", columnId, (ItemStatistics) ois.readObject());
                                                 dataDictionary.addColumnStatistics(statsRow, tc);
                                                 bais.close();
                                             } else {
@@ -70,6 +70,7 @@ public class StatisticsOperation extends SpliceBaseOperation {
     protected double sampleFraction;
     private boolean mergeStats;
     protected DataTypeDescriptor[] dtds;
+    protected int[][] columnGroups;
 
     // serialization
     public StatisticsOperation(){}
@@ -92,6 +93,15 @@ public class StatisticsOperation extends SpliceBaseOperation {
         this.scanSetBuilder.template(buildTemplateRow(dtds));
     }
 
+    /**
+     * @param columnGroups the positions in the table, indexed from 1, of the columns of each group of columns whose
+     *                     statistics are collected together
+     */
+    public StatisticsOperation(ScanSetBuilder scanSetBuilder, boolean useSample, double sampleFraction, boolean mergeStats, String scope, Activation activation, DataTypeDescriptor[] dataTypeDescriptors, int[][] columnGroups) throws StandardException {
+        this(scanSetBuilder, useSample, sampleFraction, mergeStats, scope, activation, dataTypeDescriptors);
+        this.columnGroups = columnGroups;
+    }
+
     @Override
     public ExecRow getExecRowDefinition() throws StandardException {
         return scanSetBuilder.getTemplate().getClone();
@@ -216,6 +226,7 @@ public class StatisticsOperation extends SpliceBaseOperation {
         out.writeDouble(sampleFraction);
         out.writeBoolean(mergeStats);
         out.writeObject(dtds);
+        out.writeObject(columnGroups);
     }
 
     @Override
@@ -227,6 +238,7 @@ public class StatisticsOperation extends SpliceBaseOperation {
         sampleFraction = in.readDouble();
         mergeStats = in.readBoolean();
         dtds = (DataTypeDescriptor[]) in.readObject();
+        columnGroups = (int[][]) in.readObject();
         try {
             scanSetBuilder.template(buildTemplateRow(dtds));
         } catch (StandardException se) {
@@ -242,6 +254,10 @@ public class StatisticsOperation extends SpliceBaseOperation {
         return useSample;
     }
 
+    public int[][] getColumnGroups() {
+        return columnGroups == null ? new int[0][] : columnGroups;
+    }
+
     private ExecRow buildTemplateRow(DataTypeDescriptor[] dataTypeDescriptors)  throws StandardException{
         ExecRow row = new ValueRow(dataTypeDescriptors.length);
         int outputCol = 0;
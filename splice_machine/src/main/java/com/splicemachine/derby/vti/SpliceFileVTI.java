@@ -23,6 +23,8 @@ import com.splicemachine.db.vti.VTICosting;
 import com.splicemachine.db.vti.VTIEnvironment;
 import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
 import com.splicemachine.derby.impl.load.ImportUtils;
+import com.splicemachine.derby.stream.control.ControlDataSet;
+import com.splicemachine.derby.stream.control.ParallelTextFileReader;
 import com.splicemachine.derby.stream.function.FileFunction;
 import com.splicemachine.derby.stream.function.StreamFileFunction;
 import com.splicemachine.derby.stream.iapi.DataSet;
@@ -38,6 +40,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.Iterator;
 
 /**
  *
@@ -135,6 +138,11 @@ public class SpliceFileVTI implements DatasetProvider, VTICosting {
             ImportUtils.validateReadable(fileName, false);
             if (statusDirectory != null)
                 operationContext.setPermissive(statusDirectory, fileName, badRecordsAllowed);
+            if (dsp.getType() == DataSetProcessor.Type.CONTROL) {
+                DataSet<ExecRow> rows = readInParallel(op, execRow);
+                if (rows != null)
+                    return rows;
+            }
             if (oneLineRecords && (charset==null || charset.toLowerCase().equals("utf-8"))) {
                 DataSet<String> textSet = dsp.readTextFile(fileName, op);
                 operationContext.pushScopeForOp("Parse File");
@@ -149,6 +157,33 @@ public class SpliceFileVTI implements DatasetProvider, VTICosting {
         }
     }
 
+    /**
+     * Reads a large file in ranges which are parsed in parallel, each one by its own function, since
+     * they are not thread safe.
+     *
+     * @return the rows of the file, or null if it should be read sequentially
+     */
+    private DataSet<ExecRow> readInParallel(SpliceOperation op, final ExecRow execRow) throws StandardException {
+        // same choice of parser as for the whole file
+        final boolean lineRecords = oneLineRecords && (charset==null || charset.toLowerCase().equals("utf-8"));
+        try {
+            return new ParallelTextFileReader<ExecRow>(!lineRecords, characterDelimiter, charset) {
+                @Override
+                protected Iterator<ExecRow> readRange(InputStream range) throws Exception {
+                    if (lineRecords) {
+                        return new ControlDataSet<>(lines(range)).flatMap(new FileFunction(characterDelimiter, columnDelimiter, execRow,
+                                columnIndex, timeFormat, dateTimeFormat, timestampFormat, operationContext)).toLocalIterator();
+                    }
+                    return new StreamFileFunction(characterDelimiter, columnDelimiter, execRow, columnIndex, timeFormat,
+                            dateTimeFormat, timestampFormat, charset == null ? StandardCharsets.UTF_8.name() : charset,
+                            operationContext).call(range);
+                }
+            }.read(fileName, op);
+        } catch (IOException e) {
+            throw StandardException.plainWrapException(e);
+        }
+    }
+
     private static final int defaultBytesPerRow = 100;
     public static int getBytesPerRow() {
         // Imprecise assumption of a fixed number of bytes per row,
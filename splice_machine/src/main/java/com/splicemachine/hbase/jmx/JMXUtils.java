@@ -60,6 +60,9 @@ public class JMXUtils {
     public static final String TIMESTAMP_MASTER_MANAGEMENT = "com.splicemachine.si.client.timestamp.generator:type=TimestampMasterManagement";
     public static final String TIMESTAMP_REGION_MANAGEMENT = "com.splicemachine.si.client.timestamp.request:type=TimestampRegionManagement";
 	public static final String DATABASE_PROPERTY_MANAGEMENT = "com.splicemachine.derby.utils:type=DatabasePropertyManagement";
+    public static final String BROADCAST_JOIN_CACHE = "com.splicemachine.derby.impl.sql.execute.operations:type=BroadcastJoinCache";
+    public static final String EXECUTION_MEMORY_POOL = "com.splicemachine.derby.impl.sql.execute.operations:type=ExecutionMemoryPool";
+    public static final String COMPLETED_TXN_CACHE = "com.splicemachine.si.impl.store:type=CompletedTxnCache";
 
     public static List<Pair<String,JMXConnector>> getMBeanServerConnections(Collection<Pair<String,String>> serverConnections) throws IOException {
         List<Pair<String,JMXConnector>> mbscArray =new ArrayList<>(serverConnections.size());
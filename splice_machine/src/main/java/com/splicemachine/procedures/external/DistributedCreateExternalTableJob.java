@@ -78,6 +78,11 @@ public class DistributedCreateExternalTableJob extends DistributedJob implements
         return null;
     }
 
+    @Override
+    public boolean isAdmissionControlled() {
+        return false;
+    }
+
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         int length = partitionBy.length;
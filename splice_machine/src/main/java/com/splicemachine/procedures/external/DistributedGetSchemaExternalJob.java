@@ -57,6 +57,11 @@ public class DistributedGetSchemaExternalJob extends DistributedJob implements E
         return null;
     }
 
+    @Override
+    public boolean isAdmissionControlled() {
+        return false;
+    }
+
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
 
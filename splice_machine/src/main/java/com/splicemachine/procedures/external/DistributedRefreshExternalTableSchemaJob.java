@@ -57,6 +57,11 @@ public class DistributedRefreshExternalTableSchemaJob extends DistributedJob imp
         return null;
     }
 
+    @Override
+    public boolean isAdmissionControlled() {
+        return false;
+    }
+
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeUTF(jobGroup);
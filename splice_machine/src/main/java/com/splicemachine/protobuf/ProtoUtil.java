@@ -587,6 +587,14 @@ public class ProtoUtil {
                 .setUpdateSystemProcedures(UpdateSystemProcedures.newBuilder())
                 .build();
     }
+
+    public static DDLChange createDropPin(long txnId, long conglomerateId) {
+        return DDLChange.newBuilder()
+                .setDdlChangeType(DDLChangeType.DROP_PIN)
+                .setTxnId(txnId)
+                .setDropPin(DropPin.newBuilder().setConglomerateId(conglomerateId))
+                .build();
+    }
 }
 
 
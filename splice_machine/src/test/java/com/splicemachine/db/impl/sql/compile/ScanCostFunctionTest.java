@@ -14,13 +14,22 @@
 
 package com.splicemachine.db.impl.sql.compile;
 
+import com.splicemachine.db.iapi.store.access.StoreCostController;
+import com.splicemachine.db.iapi.types.SQLInteger;
 import com.splicemachine.si.testenv.ArchitectureIndependent;
 import org.junit.*;
 import org.junit.experimental.categories.Category;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 /**
  * Created by jleach on 8/8/15.
  */
@@ -85,4 +94,87 @@ public class ScanCostFunctionTest {
         );
     }
 
+    @Test
+    public void testEqualitiesOnColumnGroupUseGroupSelectivity() throws Exception {
+        StoreCostController scc = columnGroupCostController();
+        List<SelectivityHolder>[] selectivityHolder = new List[6];
+        selectivityHolder[3] = holders(equality(scc, 3, QualifierPhase.BASE));
+        selectivityHolder[5] = holders(equality(scc, 5, QualifierPhase.BASE));
+
+        ScanCostFunction.combineColumnGroups(selectivityHolder, scc);
+
+        Assert.assertTrue("equality not combined", selectivityHolder[5].isEmpty());
+        Assert.assertEquals(1, selectivityHolder[3].size());
+        Assert.assertTrue(selectivityHolder[3].get(0) instanceof ColumnGroupSelectivity);
+        Assert.assertEquals("group selectivity not used", 0.09d,
+                ScanCostFunction.computeTotalSelectivity(selectivityHolder), 0.0d);
+
+        // combining again is a no-op
+        ScanCostFunction.combineColumnGroups(selectivityHolder, scc);
+        Assert.assertEquals(1, selectivityHolder[3].size());
+        Assert.assertTrue(selectivityHolder[5].isEmpty());
+    }
+
+    @Test
+    public void testPredicatesNotCoveringColumnGroupAreNotCombined() throws Exception {
+        StoreCostController scc = columnGroupCostController();
+        List<SelectivityHolder>[] selectivityHolder = new List[6];
+        selectivityHolder[3] = holders(equality(scc, 3, QualifierPhase.BASE));
+        selectivityHolder[5] = holders(new RangeSelectivity(scc, new SQLInteger(1), null, true, true, 5,
+                QualifierPhase.BASE, 0.0d, false));
+
+        ScanCostFunction.combineColumnGroups(selectivityHolder, scc);
+
+        Assert.assertEquals(1, selectivityHolder[3].size());
+        Assert.assertTrue(selectivityHolder[3].get(0) instanceof RangeSelectivity);
+        Assert.assertEquals(1, selectivityHolder[5].size());
+    }
+
+    @Test
+    public void testEqualitiesInDifferentPhasesAreNotCombined() throws Exception {
+        StoreCostController scc = columnGroupCostController();
+        List<SelectivityHolder>[] selectivityHolder = new List[6];
+        selectivityHolder[3] = holders(equality(scc, 3, QualifierPhase.BASE));
+        selectivityHolder[5] = holders(equality(scc, 5, QualifierPhase.FILTER_BASE));
+
+        ScanCostFunction.combineColumnGroups(selectivityHolder, scc);
+
+        Assert.assertTrue(selectivityHolder[3].get(0) instanceof RangeSelectivity);
+        Assert.assertTrue(selectivityHolder[5].get(0) instanceof RangeSelectivity);
+    }
+
+    @Test
+    public void testColumnGroupWithoutStatisticsFallsBackToPredicates() throws Exception {
+        StoreCostController scc = columnGroupCostController();
+        when(scc.columnGroupSelectivity(any(int[].class))).thenReturn(-1.0d);
+        List<SelectivityHolder>[] selectivityHolder = new List[6];
+        selectivityHolder[3] = holders(equality(scc, 3, QualifierPhase.BASE));
+        selectivityHolder[5] = holders(equality(scc, 5, QualifierPhase.BASE));
+
+        ScanCostFunction.combineColumnGroups(selectivityHolder, scc);
+
+        Assert.assertEquals(0.1d*Math.sqrt(0.1d),
+                ScanCostFunction.computeTotalSelectivity(selectivityHolder), 1e-12d);
+    }
+
+    private static StoreCostController columnGroupCostController() {
+        StoreCostController scc = mock(StoreCostController.class);
+        when(scc.getColumnGroups()).thenReturn(Arrays.asList(new int[]{3, 5}));
+        when(scc.getSelectivity(eq(3), any(), anyBoolean(), any(), anyBoolean(), anyBoolean())).thenReturn(0.1d);
+        when(scc.getSelectivity(eq(5), any(), anyBoolean(), any(), anyBoolean(), anyBoolean())).thenReturn(0.1d);
+        when(scc.columnGroupSelectivity(any(int[].class))).thenReturn(0.09d);
+        return scc;
+    }
+
+    private static RangeSelectivity equality(StoreCostController scc, int colNum, QualifierPhase phase) {
+        SQLInteger value = new SQLInteger(1);
+        return new RangeSelectivity(scc, value, value, true, true, colNum, phase, 0.0d, false);
+    }
+
+    private static List<SelectivityHolder> holders(SelectivityHolder holder) {
+        List<SelectivityHolder> holders = new LinkedList<>();
+        holders.add(holder);
+        return holders;
+    }
+
 }
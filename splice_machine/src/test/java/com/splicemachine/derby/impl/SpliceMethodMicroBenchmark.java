@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.Activation;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.pipeline.Exceptions;
+
+import java.lang.reflect.Method;
+import java.util.Random;
+
+/**
+ * Measures the evaluation of the restriction and the projection of a generated activation class for every row, as
+ * done by {@code ProjectRestrictOperation}.
+ *
+ * Compares the reflective call {@link SpliceMethod} replaced, which is kept here as the baseline, the method handle
+ * it uses for activations which weren't generated, and a direct call to the method, which is what the invoker class
+ * generated for a method of a generated activation does.
+ *
+ * Run by hand with {@code main}, optionally passing the number of rows.
+ */
+public class SpliceMethodMicroBenchmark {
+
+    public static void main(String... args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+
+        int[] values = new int[rows];
+        Random random = new Random(0);
+        for (int i = 0; i < rows; i++) {
+            values[i] = random.nextInt(20);
+        }
+        SpliceMethodTest.RowActivation activation = new SpliceMethodTest.RowActivation();
+        for (int run = 0; run < 3; run++) { // the first runs are warm up
+            System.out.printf("-------%nRun %d%n", run);
+            benchmark("Reflection", activation, values,
+                    new ReflectiveMethod<DataValueDescriptor>("e0", activation),
+                    new ReflectiveMethod<ExecRow>("e12", activation));
+            benchmark("Handle", activation, values,
+                    new SpliceMethod<DataValueDescriptor>("e0", activation),
+                    new SpliceMethod<ExecRow>("e12", activation));
+            benchmark("Direct", activation, values,
+                    new DirectMethod<DataValueDescriptor>(activation, true),
+                    new DirectMethod<ExecRow>(activation, false));
+        }
+    }
+
+    private static void benchmark(String name, SpliceMethodTest.RowActivation activation, int[] values,
+                                  SpliceMethod<DataValueDescriptor> restriction,
+                                  SpliceMethod<ExecRow> projection) throws StandardException {
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int value : values) {
+            activation.currentRow.getColumn(1).setValue(value);
+            if (restriction.invoke().getBoolean()) {
+                checksum += projection.invoke().getColumn(1).getInt();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-10s: %8.3f M rows/s (checksum %d)%n", name, values.length * 1000d / elapsed, checksum);
+    }
+
+    /**
+     * The previous implementation, looking the method up once and calling it through reflection for every row.
+     */
+    private static class ReflectiveMethod<T> extends SpliceMethod<T> {
+        private Method reflected;
+
+        ReflectiveMethod(String methodName, Activation activation) {
+            super(methodName, activation);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T invoke() throws StandardException {
+            try {
+                if (reflected == null) {
+                    reflected = activation.getClass().getMethod(methodName);
+                }
+                return (T) reflected.invoke(activation);
+            } catch (Throwable t) {
+                throw Exceptions.parseException(t);
+            }
+        }
+    }
+
+    private static class DirectMethod<T> extends SpliceMethod<T> {
+        private final SpliceMethodTest.RowActivation rowActivation;
+        private final boolean restriction;
+
+        DirectMethod(SpliceMethodTest.RowActivation activation, boolean restriction) {
+            super(restriction ? "e0" : "e12", activation);
+            this.rowActivation = activation;
+            this.restriction = restriction;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T invoke() throws StandardException {
+            return (T) (restriction ? rowActivation.e0() : rowActivation.e12());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.reference.SQLState;
+import com.splicemachine.db.iapi.services.context.ContextManager;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLBoolean;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.pipeline.SimpleActivation;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+@Category(ArchitectureIndependent.class)
+public class SpliceMethodTest {
+
+    @Test
+    public void invokesGeneratedMethods() throws Exception {
+        RowActivation activation = new RowActivation();
+        SpliceMethod<DataValueDescriptor> restriction = new SpliceMethod<>("e0", activation);
+        SpliceMethod<ExecRow> projection = new SpliceMethod<>("e12", activation);
+
+        activation.currentRow.getColumn(1).setValue(5);
+        Assert.assertFalse(restriction.invoke().getBoolean());
+        activation.currentRow.getColumn(1).setValue(50);
+        Assert.assertTrue(restriction.invoke().getBoolean());
+        Assert.assertEquals(51, projection.invoke().getColumn(1).getInt());
+    }
+
+    @Test
+    public void sharesHandlesAcrossActivations() throws Exception {
+        SpliceMethod<DataValueDescriptor> first = new SpliceMethod<>("e0", new RowActivation());
+        SpliceMethod<DataValueDescriptor> second = new SpliceMethod<>("e0", new RowActivation());
+        first.invoke();
+        second.invoke();
+        Assert.assertSame(first.method, second.method);
+    }
+
+    @Test
+    public void propagatesStandardExceptions() throws Exception {
+        try {
+            new SpliceMethod<>("e1", new RowActivation()).invoke();
+            Assert.fail("Expected the exception of the generated method");
+        } catch (StandardException se) {
+            Assert.assertEquals(SQLState.LANG_DIVIDE_BY_ZERO, se.getMessageId());
+        }
+    }
+
+    /**
+     * Stands for a generated activation class, evaluating {@code c1 > 10} and projecting {@code c1 + 1}.
+     */
+    public static class RowActivation extends SimpleActivation {
+        final ExecRow currentRow = new ValueRow(1);
+        private final ExecRow projectedRow = new ValueRow(1);
+        private final DataValueDescriptor ten = new SQLInteger(10);
+
+        public RowActivation() throws StandardException {
+            super(null, context());
+            currentRow.setColumn(1, new SQLInteger());
+            projectedRow.setColumn(1, new SQLInteger());
+        }
+
+        @Override
+        public Object e0() throws StandardException {
+            return new SQLBoolean(currentRow.getColumn(1).compare(ten) > 0);
+        }
+
+        @Override
+        public Object e1() throws StandardException {
+            throw StandardException.newException(SQLState.LANG_DIVIDE_BY_ZERO);
+        }
+
+        public Object e12() throws StandardException {
+            projectedRow.getColumn(1).setValue(currentRow.getColumn(1).getInt() + 1);
+            return projectedRow;
+        }
+
+        private static LanguageConnectionContext context() {
+            LanguageConnectionContext lcc = Mockito.mock(LanguageConnectionContext.class);
+            ContextManager cm = Mockito.mock(ContextManager.class);
+            Mockito.when(lcc.getContextManager()).thenReturn(cm);
+            Mockito.when(cm.getContext(LanguageConnectionContext.CONTEXT_ID)).thenReturn(lcc);
+            return lcc;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.catalog;
+
+import com.splicemachine.access.api.PartitionFactory;
+import com.splicemachine.si.api.data.TxnOperationFactory;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.storage.DataGet;
+import com.splicemachine.storage.DataResult;
+import com.splicemachine.storage.Partition;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Category(ArchitectureIndependent.class)
+public class SpliceStatementPlanStoreTest{
+
+    @After
+    public void tearDown(){
+        SpliceStatementPlanStore.register(null);
+    }
+
+    @Test
+    public void cachesTheDictionaryVersionUntilInvalidated() throws Exception{
+        Partition sequences=mock(Partition.class);
+        when(sequences.increment(any(byte[].class),any(byte[].class),any(byte[].class),eq(0L))).thenReturn(3L,4L);
+        SpliceStatementPlanStore store=new SpliceStatementPlanStore(factory(sequences),
+                mock(TxnOperationFactory.class),"1.0",true);
+
+        Assert.assertEquals(3L,store.dictionaryVersion());
+        Assert.assertEquals(3L,store.dictionaryVersion());
+        store.invalidateDictionaryVersion();
+        Assert.assertEquals(4L,store.dictionaryVersion());
+        verify(sequences,times(2)).increment(any(byte[].class),any(byte[].class),any(byte[].class),eq(0L));
+    }
+
+    @Test
+    public void advancesTheDictionaryVersion() throws Exception{
+        Partition sequences=mock(Partition.class);
+        when(sequences.increment(any(byte[].class),any(byte[].class),any(byte[].class),anyLong())).thenReturn(7L);
+        SpliceStatementPlanStore store=new SpliceStatementPlanStore(factory(sequences),
+                mock(TxnOperationFactory.class),"1.0",true);
+        Assert.assertEquals(7L,store.dictionaryVersion());
+
+        SpliceStatementPlanStore.register(store);
+        SpliceStatementPlanStore.advanceDictionaryVersion();
+        verify(sequences).increment(any(byte[].class),any(byte[].class),any(byte[].class),eq(1L));
+        // the cached version is forgotten
+        store.dictionaryVersion();
+        verify(sequences,times(2)).increment(any(byte[].class),any(byte[].class),any(byte[].class),eq(0L));
+    }
+
+    @Test
+    public void failuresAreMissingPlans() throws Exception{
+        Partition partition=mock(Partition.class);
+        when(partition.increment(any(byte[].class),any(byte[].class),any(byte[].class),anyLong()))
+                .thenThrow(new IOException("region is closing"));
+        when(partition.get(any(DataGet.class),any(DataResult.class)))
+                .thenThrow(new IOException("region is closing"));
+        TxnOperationFactory opFactory=mock(TxnOperationFactory.class);
+        when(opFactory.newDataGet(any(TxnView.class),any(byte[].class),
+                any(DataGet.class))).thenReturn(mock(DataGet.class));
+        SpliceStatementPlanStore store=new SpliceStatementPlanStore(factory(partition),opFactory,"1.0",true);
+
+        Assert.assertEquals(-1L,store.dictionaryVersion());
+        Assert.assertNull(store.getPlan(1L,new byte[]{1,2,3}));
+    }
+
+    private static PartitionFactory factory(Partition partition) throws IOException{
+        PartitionFactory factory=mock(PartitionFactory.class);
+        when(factory.getTable(any(byte[].class))).thenReturn(partition);
+        return factory;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.splicemachine.derby.impl.sql.compile;
+
+import com.splicemachine.derby.test.framework.SpliceSchemaWatcher;
+import com.splicemachine.derby.test.framework.SpliceUnitTest;
+import com.splicemachine.derby.test.framework.SpliceWatcher;
+import com.splicemachine.homeless.TestUtils;
+import com.splicemachine.test_tools.TableCreator;
+import org.junit.*;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.spark_project.guava.collect.Lists;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static com.splicemachine.test_tools.Rows.row;
+import static com.splicemachine.test_tools.Rows.rows;
+
+/**
+ * Checks that the pruning of join orders by {@link com.splicemachine.db.impl.sql.compile.JoinOrderMemo} keeps the
+ * plans of multi-way joins stable: the cheapest plan found must not depend on the order the tables are listed in,
+ * which is the order the optimizer enumerates the join orders in.
+ */
+@RunWith(Parameterized.class)
+public class JoinOrderMemoIT extends SpliceUnitTest {
+    public static final String CLASS_NAME = JoinOrderMemoIT.class.getSimpleName().toUpperCase();
+    protected static SpliceWatcher spliceClassWatcher = new SpliceWatcher(CLASS_NAME);
+    protected static SpliceSchemaWatcher spliceSchemaWatcher = new SpliceSchemaWatcher(CLASS_NAME);
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> data() {
+        Collection<Object[]> params = Lists.newArrayListWithCapacity(2);
+        params.add(new Object[]{"true"});
+        params.add(new Object[]{"false"});
+        return params;
+    }
+
+    private String useSparkString;
+
+    public JoinOrderMemoIT(String useSparkString) {
+        this.useSparkString = useSparkString;
+    }
+
+    @ClassRule
+    public static TestRule chain = RuleChain.outerRule(spliceClassWatcher)
+            .around(spliceSchemaWatcher);
+    @Rule
+    public SpliceWatcher methodWatcher = new SpliceWatcher(CLASS_NAME);
+
+    public static void createData(Connection conn, String schemaName) throws Exception {
+        new TableCreator(conn)
+                .withCreate("create table a (a1 int, a2 int, a3 int, primary key (a1))")
+                .withInsert("insert into a values(?,?,?)")
+                .withRows(rows(
+                        row(1, 1, 1),
+                        row(2, 2, 2),
+                        row(3, 3, 3),
+                        row(4, 4, 4),
+                        row(5, 5, 5),
+                        row(6, 6, 6),
+                        row(7, 7, 7),
+                        row(8, 8, 8),
+                        row(9, 9, 9),
+                        row(10, 10, 10)))
+                .create();
+
+        int increment = 10;
+        for (int i = 0; i < 8; i++) {
+            spliceClassWatcher.executeUpdate(format("insert into a select a1+%1$d, a2+%1$d, mod(a3+%1$d, 100) from a", increment));
+            increment *= 2;
+        }
+
+        new TableCreator(conn)
+                .withCreate("create table b (b1 int, b2 int, b3 int, primary key (b1))")
+                .withIndex("create index idx_b on b(b3)")
+                .create();
+        new TableCreator(conn)
+                .withCreate("create table c (c1 int, c2 int, c3 int)")
+                .create();
+        new TableCreator(conn)
+                .withCreate("create table d (d1 int, d2 int, d3 int)")
+                .create();
+        new TableCreator(conn)
+                .withCreate("create table e (e1 int, e2 int, e3 int)")
+                .create();
+
+        // tables of different sizes, so that the cheapest join order is not a tie
+        spliceClassWatcher.executeUpdate("insert into b select * from a where a1 <= 1000");
+        spliceClassWatcher.executeUpdate("insert into c select * from a where a1 <= 100");
+        spliceClassWatcher.executeUpdate("insert into d select * from a where a1 <= 10");
+        spliceClassWatcher.executeUpdate("insert into e select * from a where mod(a1, 2) = 0");
+
+        spliceClassWatcher.executeQuery(format("analyze schema %s", CLASS_NAME));
+        conn.commit();
+    }
+
+    @BeforeClass
+    public static void createDataSet() throws Exception {
+        createData(spliceClassWatcher.getOrCreateConnection(), spliceSchemaWatcher.toString());
+    }
+
+    @Test
+    public void testChainJoinPlanDoesNotDependOnTheOrderOfTheTables() throws Exception {
+        assertStablePlan("select count(*) from %s\n" +
+                        "where a1=b1 and b2=c1 and c2=d1 and d2=e1",
+                "1 |\n----\n 5 |",
+                "a", "b", "c", "d", "e");
+    }
+
+    @Test
+    public void testStarJoinPlanDoesNotDependOnTheOrderOfTheTables() throws Exception {
+        assertStablePlan("select count(*) from %s\n" +
+                        "where a1=b1 and a1=c1 and a1=d1 and a1=e1 and b3 < 5",
+                "1 |\n----\n 2 |",
+                "a", "b", "c", "d", "e");
+    }
+
+    @Test
+    public void testJoinWithOrderByPlanDoesNotDependOnTheOrderOfTheTables() throws Exception {
+        assertStablePlan("select a1, c3, e3 from %s\n" +
+                        "where a1=b1 and b1=c1 and c2=d1 and d1=e1\n" +
+                        "order by a1",
+                "A1 |C3 |E3 |\n" +
+                        "------------\n" +
+                        " 2 | 2 | 2 |\n" +
+                        " 4 | 4 | 4 |\n" +
+                        " 6 | 6 | 6 |\n" +
+                        " 8 | 8 | 8 |\n" +
+                        "10 |10 |10 |",
+                "a", "b", "c", "d", "e");
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+
+    /**
+     * Plans and runs the query with the tables listed in every rotation of the given order and in reverse order,
+     * checking that the cost of the plan and the result are always the same.
+     */
+    private void assertStablePlan(String query, String expected, String... tables) throws Exception {
+        List<String> order = new ArrayList<>();
+        Collections.addAll(order, tables);
+        List<List<String>> orders = new ArrayList<>();
+        for (int i = 0; i < tables.length; i++) {
+            orders.add(new ArrayList<>(order));
+            Collections.rotate(order, 1);
+        }
+        Collections.reverse(order);
+        orders.add(order);
+
+        Double firstCost = null;
+        for (List<String> tableOrder : orders) {
+            String sqlText = format(query, fromList(tableOrder));
+            double cost = parseTotalCost(getExplainMessage(2, "explain " + sqlText, methodWatcher));
+            if (firstCost == null)
+                firstCost = cost;
+            else
+                Assert.assertEquals("plan cost changed with the tables listed as " + tableOrder, firstCost, cost, 0.001d);
+
+            try (ResultSet rs = methodWatcher.executeQuery(sqlText)) {
+                Assert.assertEquals("\n" + sqlText + "\n", expected, TestUtils.FormattedResult.ResultFactory.toString(rs));
+            }
+        }
+    }
+
+    private String fromList(List<String> tables) {
+        StringBuilder fromList = new StringBuilder();
+        for (String table : tables) {
+            if (fromList.length() > 0)
+                fromList.append(", ");
+            fromList.append(table);
+            if (fromList.indexOf("useSpark") < 0)
+                fromList.append(format(" --splice-properties useSpark=%s\n", useSparkString));
+        }
+        return fromList.toString();
+    }
+}
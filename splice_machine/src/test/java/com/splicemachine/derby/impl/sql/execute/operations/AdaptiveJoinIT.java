@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.derby.test.framework.SpliceSchemaWatcher;
+import com.splicemachine.derby.test.framework.SpliceUnitTest;
+import com.splicemachine.derby.test.framework.SpliceWatcher;
+import com.splicemachine.test.SlowTest;
+import com.splicemachine.test_tools.TableCreator;
+import org.junit.*;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+
+import static com.splicemachine.test_tools.Rows.row;
+import static com.splicemachine.test_tools.Rows.rows;
+
+/**
+ * Checks that a join over an input far larger than estimated feeds the rows it observed back to the statement, and
+ * that the statement is recompiled with another join strategy.
+ */
+@Category(SlowTest.class)
+public class AdaptiveJoinIT extends SpliceUnitTest {
+    public static final String CLASS_NAME = AdaptiveJoinIT.class.getSimpleName().toUpperCase();
+    protected static SpliceWatcher spliceClassWatcher = new SpliceWatcher(CLASS_NAME);
+    protected static SpliceSchemaWatcher spliceSchemaWatcher = new SpliceSchemaWatcher(CLASS_NAME);
+
+    /* rows of BIG, far above the outer rows a nested loop join reads on the control side before adapting */
+    private static final int BIG_ROWS = 10 << 14;
+
+    @ClassRule
+    public static TestRule chain = RuleChain.outerRule(spliceClassWatcher)
+            .around(spliceSchemaWatcher);
+    @Rule
+    public SpliceWatcher methodWatcher = new SpliceWatcher(CLASS_NAME);
+
+    public static void createData(Connection conn, String schemaName) throws Exception {
+        new TableCreator(conn)
+                .withCreate("create table big (a int, b int)")
+                .withInsert("insert into big values(?,?)")
+                .withRows(rows(
+                        row(1, 1),
+                        row(2, 2),
+                        row(3, 3),
+                        row(4, 4),
+                        row(5, 5),
+                        row(6, 6),
+                        row(7, 7),
+                        row(8, 8),
+                        row(9, 9),
+                        row(10, 10)))
+                .create();
+        new TableCreator(conn)
+                .withCreate("create table dim (k int, v int, primary key (k))")
+                .withInsert("insert into dim values(?,?)")
+                .withRows(rows(
+                        row(1, 1),
+                        row(2, 2),
+                        row(3, 3),
+                        row(4, 4),
+                        row(5, 5),
+                        row(6, 6),
+                        row(7, 7),
+                        row(8, 8),
+                        row(9, 9),
+                        row(10, 10)))
+                .create();
+
+        int increment = 10;
+        for (int i = 0; i < 10; i++) {
+            spliceClassWatcher.executeUpdate(format("insert into dim select k+%1$d, v+%1$d from dim", increment));
+            increment *= 2;
+        }
+
+        // the statistics of BIG are collected while it is small, and are stale once it has grown
+        spliceClassWatcher.executeQuery(format("analyze schema %s", CLASS_NAME));
+        for (int i = 0; i < 14; i++) {
+            spliceClassWatcher.executeUpdate("insert into big select * from big");
+        }
+        conn.commit();
+    }
+
+    @BeforeClass
+    public static void createDataSet() throws Exception {
+        createData(spliceClassWatcher.getOrCreateConnection(), spliceSchemaWatcher.toString());
+    }
+
+    @Test
+    public void testRecompileChangesTheJoinStrategy() throws Exception {
+        String sqlText = "select count(*) from big, dim where a = k";
+
+        // BIG is estimated to have 10 rows, so each of them looks up DIM
+        String plan = getPlan(sqlText);
+        Assert.assertTrue("Expected a nested loop join:\n" + plan, plan.contains("NestedLoopJoin"));
+
+        // the nested loop join reads far more outer rows than estimated, and records them before completing
+        try (ResultSet rs = methodWatcher.executeQuery(sqlText)) {
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(BIG_ROWS, rs.getLong(1));
+        }
+
+        // explaining the statement shows the plan it is recompiled with, estimating BIG with the rows observed
+        plan = getPlan(sqlText);
+        Assert.assertFalse("Expected another join strategy:\n" + plan, plan.contains("NestedLoopJoin"));
+        Assert.assertTrue("Expected a join:\n" + plan, plan.contains("Join("));
+
+        try (ResultSet rs = methodWatcher.executeQuery(sqlText)) {
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(BIG_ROWS, rs.getLong(1));
+        }
+    }
+
+    private String getPlan(String sqlText) throws Exception {
+        StringBuilder plan = new StringBuilder();
+        try (ResultSet rs = methodWatcher.executeQuery("explain " + sqlText)) {
+            while (rs.next())
+                plan.append(rs.getString(1)).append('\n');
+        }
+        return plan.toString();
+    }
+}
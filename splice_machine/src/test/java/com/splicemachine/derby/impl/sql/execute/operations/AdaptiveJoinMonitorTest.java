@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.sql.Activation;
+import com.splicemachine.db.iapi.sql.compile.CardinalityFeedback;
+import com.splicemachine.db.iapi.sql.conn.ControlExecutionLimiter;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.conn.ResubmitDistributedException;
+import com.splicemachine.db.iapi.sql.execute.ExecPreparedStatement;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+@Category(ArchitectureIndependent.class)
+public class AdaptiveJoinMonitorTest {
+    /* the scans read table 3 of the statement, through result set 7 */
+    private static final int TABLE = 3;
+    private static final int SCAN = 7;
+
+    private final CardinalityFeedback feedback = new CardinalityFeedback();
+
+    @Before
+    public void generatePlan() {
+        feedback.scanGenerated(SCAN, TABLE);
+        feedback.compiled();
+    }
+
+    @Test
+    public void adaptsOnceAboveEstimateAndThreshold() {
+        SpliceOperation join = join(ControlExecutionLimiter.NO_OP);
+        AdaptiveJoinMonitor monitor = new AdaptiveJoinMonitor(join, scan(100, SCAN), 500);
+        monitor.addRows(1000);
+        assertTrue(feedback.isEmpty());
+
+        monitor.addRows(1);
+        assertEquals(10.01, feedback.getCorrection(TABLE), 0.0001);
+        assertTrue(feedback.isRecompileRequested());
+
+        monitor.addRows(5000);
+        assertEquals(10.01, feedback.getCorrection(TABLE), 0.0001);
+    }
+
+    @Test
+    public void usesThresholdAboveEstimate() {
+        AdaptiveJoinMonitor monitor = new AdaptiveJoinMonitor(join(ControlExecutionLimiter.NO_OP), scan(1, SCAN), 500);
+        monitor.addRows(500);
+        assertTrue(feedback.isEmpty());
+        monitor.addRows(1);
+        assertEquals(501, feedback.getCorrection(TABLE), 0.0001);
+    }
+
+    @Test
+    public void resubmitsUnlessExecutionIsForced() {
+        SpliceOperation join = join(rows -> {});
+        Iterator<Integer> rows = new AdaptiveJoinMonitor(join, scan(0.1, SCAN), 2).monitor(Arrays.asList(1, 2, 3).iterator());
+        rows.next();
+        rows.next();
+        try {
+            rows.next();
+            fail("Expected the query to be resubmitted");
+        } catch (Exception e) {
+            assertTrue(e instanceof ResubmitDistributedException);
+        }
+        assertEquals(3, feedback.getCorrection(TABLE), 0.0001);
+    }
+
+    @Test
+    public void findsScan() {
+        ProjectRestrictOperation restrict = Mockito.mock(ProjectRestrictOperation.class);
+        ScanOperation scan = scan(1, SCAN);
+        Mockito.when(restrict.getSource()).thenReturn(scan);
+        assertEquals(SCAN, AdaptiveJoinMonitor.getScanResultSetNumber(restrict));
+        assertEquals(-1, AdaptiveJoinMonitor.getScanResultSetNumber(Mockito.mock(BroadcastJoinOperation.class)));
+    }
+
+    @Test
+    public void recompilesWhenTheScanIsUnknown() {
+        feedback.restored();
+        new AdaptiveJoinMonitor(join(ControlExecutionLimiter.NO_OP), scan(1, SCAN), 10).addRows(100);
+        assertTrue(feedback.isEmpty());
+        assertTrue(feedback.isRecompileRequested());
+    }
+
+    private SpliceOperation join(ControlExecutionLimiter limiter) {
+        LanguageConnectionContext lcc = Mockito.mock(LanguageConnectionContext.class);
+        Mockito.when(lcc.getControlExecutionLimiter()).thenReturn(limiter);
+        ExecPreparedStatement ps = Mockito.mock(ExecPreparedStatement.class);
+        Mockito.when(ps.getCardinalityFeedback()).thenReturn(feedback);
+        Activation activation = Mockito.mock(Activation.class);
+        Mockito.when(activation.getLanguageConnectionContext()).thenReturn(lcc);
+        Mockito.when(activation.getPreparedStatement()).thenReturn(ps);
+        SpliceOperation join = Mockito.mock(SpliceOperation.class);
+        Mockito.when(join.getActivation()).thenReturn(activation);
+        return join;
+    }
+
+    private static ScanOperation scan(double estimatedRows, int resultSetNumber) {
+        ScanOperation scan = Mockito.mock(ScanOperation.class);
+        Mockito.when(scan.getEstimatedRowCount()).thenReturn(estimatedRows);
+        Mockito.when(scan.resultSetNumber()).thenReturn(resultSetNumber);
+        return scan;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.sql.Activation;
+import com.splicemachine.db.iapi.sql.ParameterValueSet;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.execute.ExecPreparedStatement;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.si.api.txn.Txn;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.stream.Stream;
+import com.splicemachine.stream.Streams;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+@Category(ArchitectureIndependent.class)
+public class BroadcastJoinCacheTest {
+    private static final int[] KEYS = new int[]{0};
+
+    @Test
+    public void testTableIsSharedWhileInUse() throws Exception {
+        BroadcastJoinCache cache = new BroadcastJoinCache(EncodedJoinTableLoader.INSTANCE, 1024L * 1024 * 1024);
+        AtomicInteger loads = new AtomicInteger();
+        Callable<Stream<ExecRow>> loader = loader(100, loads);
+
+        JoinTable first = cache.get(BroadcastJoinCache.Key.forOperation(1L), loader, KEYS, KEYS, row(0)).newTable();
+        JoinTable second = cache.get(BroadcastJoinCache.Key.forOperation(1L), loader, KEYS, KEYS, row(0)).newTable();
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getSize());
+        assertTrue(cache.getBytesHeld() > 0);
+        assertTrue(second.fetchInner(row(42)).hasNext());
+
+        first.close();
+        assertEquals(1, cache.getSize());
+        second.close();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getBytesHeld());
+
+        cache.get(BroadcastJoinCache.Key.forOperation(1L), loader, KEYS, KEYS, row(0)).newTable().close();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testEvictsOverBudget() throws Exception {
+        BroadcastJoinCache cache = new BroadcastJoinCache(EncodedJoinTableLoader.INSTANCE, 64 * 1024);
+        AtomicInteger loads = new AtomicInteger();
+        for (long i = 0; i < 10; i++) {
+            cache.get(BroadcastJoinCache.Key.forOperation(i), loader(2000, loads), KEYS, KEYS, row(0)).newTable();
+        }
+        assertEquals(10, loads.get());
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void testNullParameterDoesNotMatchItsSpelling() throws Exception {
+        TxnView txn = txn(100L, 10L, false);
+        BroadcastJoinCache.Key nullKey = key(txn, new SQLVarchar());
+        BroadcastJoinCache.Key stringKey = key(txn, new SQLVarchar("NULL"));
+        assertNotEquals(nullKey, stringKey);
+        assertEquals(nullKey, key(txn, new SQLVarchar()));
+        assertEquals(stringKey, key(txn, new SQLVarchar("NULL")));
+        assertNotEquals(key(txn, new SQLInteger(1)), key(txn, new SQLVarchar("1")));
+    }
+
+    @Test
+    public void testTablesAreSharedWithinASnapshot() throws Exception {
+        // two read-only statements of the same transaction read the same snapshot
+        BroadcastJoinCache.Key first = key(txn(100L, 10L, false), new SQLInteger(1));
+        BroadcastJoinCache.Key second = key(txn(101L, 10L, false), new SQLInteger(1));
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertNotEquals(first, key(txn(102L, 11L, false), new SQLInteger(1)));
+
+        // uncommitted writes may be visible, the table is kept to the transaction
+        BroadcastJoinCache.Key writing = key(txn(103L, 10L, true), new SQLInteger(1));
+        assertNotEquals(first, writing);
+        assertNotEquals(writing, key(txn(104L, 10L, true), new SQLInteger(1)));
+        assertEquals(writing, key(txn(103L, 10L, true), new SQLInteger(1)));
+    }
+
+    @Test
+    public void testTablesAreNotSharedAcrossCompilations() throws Exception {
+        TxnView txn = txn(100L, 10L, false);
+        BroadcastJoinCache.Key first = key(txn, new SQLInteger(1));
+        assertEquals(first, key(txn, new SQLInteger(1)));
+        // a recompilation of the statement generates another activation class, whose operations may be numbered differently
+        Activation recompiled = mock(Activation.class, withSettings().extraInterfaces(Serializable.class));
+        assertNotEquals(first, key(recompiled, txn, new SQLInteger(1)));
+    }
+
+    private static BroadcastJoinCache.Key key(TxnView txn, DataValueDescriptor... parameters) throws Exception {
+        return key(mock(Activation.class), txn, parameters);
+    }
+
+    private static BroadcastJoinCache.Key key(Activation activation, TxnView txn, DataValueDescriptor... parameters) throws Exception {
+        ExecPreparedStatement ps = mock(ExecPreparedStatement.class);
+        when(ps.getSource()).thenReturn("select * from a, b where a.i = b.i and b.j = ?");
+        when(ps.getSessionPropertyValues()).thenReturn("");
+        LanguageConnectionContext lcc = mock(LanguageConnectionContext.class);
+        when(lcc.getCurrentSchemaName()).thenReturn("SPLICE");
+        ParameterValueSet pvs = mock(ParameterValueSet.class);
+        when(pvs.getParameterCount()).thenReturn(parameters.length);
+        for (int i = 0; i < parameters.length; i++) {
+            when(pvs.getParameter(i)).thenReturn(parameters[i]);
+        }
+        when(activation.getPreparedStatement()).thenReturn(ps);
+        when(activation.getLanguageConnectionContext()).thenReturn(lcc);
+        when(activation.getParameterValueSet()).thenReturn(pvs);
+        SpliceOperation build = mock(SpliceOperation.class);
+        when(build.resultSetNumber()).thenReturn(3);
+        return BroadcastJoinCache.Key.forBuildSide(1L, activation, build, KEYS, KEYS, txn);
+    }
+
+    private static TxnView txn(long txnId, long effectiveBeginTimestamp, boolean allowsWrites) {
+        TxnView txn = mock(TxnView.class);
+        when(txn.getTxnId()).thenReturn(txnId);
+        when(txn.getIsolationLevel()).thenReturn(Txn.IsolationLevel.SNAPSHOT_ISOLATION);
+        when(txn.getEffectiveBeginTimestamp()).thenReturn(effectiveBeginTimestamp);
+        when(txn.allowsWrites()).thenReturn(allowsWrites);
+        when(txn.getParentTxnView()).thenReturn(Txn.ROOT_TRANSACTION);
+        return txn;
+    }
+
+    private static Callable<Stream<ExecRow>> loader(int count, AtomicInteger loads) {
+        return () -> {
+            loads.incrementAndGet();
+            List<ExecRow> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                rows.add(row(i));
+            }
+            return Streams.wrap(rows);
+        };
+    }
+
+    private static ExecRow row(int key) {
+        ValueRow row = new ValueRow(1);
+        row.setColumn(1, new SQLInteger(key));
+        return row;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.JoinTable;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.stream.Streams;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Category(ArchitectureIndependent.class)
+public class EncodedJoinTableTest {
+
+    @Test
+    public void testFetchesAllRowsForKey() throws Exception {
+        List<ExecRow> inner = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            inner.add(row(i % 1000, "v" + i));
+        }
+        JoinTable table = load(inner, new int[]{0}, new int[]{0});
+
+        for (int k = 0; k < 1000; k += 37) {
+            Set<String> values = new HashSet<>();
+            Iterator<ExecRow> it = table.fetchInner(outer(k));
+            while (it.hasNext()) {
+                ExecRow r = it.next();
+                assertEquals(k, r.getColumn(1).getInt());
+                values.add(r.getColumn(2).getString());
+            }
+            assertEquals(10, values.size());
+            for (int i = k; i < 10000; i += 1000) {
+                assertTrue(values.contains("v" + i));
+            }
+        }
+        assertFalse(table.fetchInner(outer(1000)).hasNext());
+    }
+
+    @Test
+    public void testPreservesNullColumns() throws Exception {
+        JoinTable table = load(Arrays.asList(row(1, null), row(2, "two")), new int[]{0}, new int[]{0});
+        Iterator<ExecRow> it = table.fetchInner(outer(1));
+        assertTrue(it.hasNext());
+        assertTrue(it.next().getColumn(2).isNull());
+        assertFalse(it.hasNext());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testNoKeyColumnsMatchesEverything() throws Exception {
+        JoinTable table = load(Arrays.asList(row(1, "a"), row(2, "b"), row(3, "c")), new int[0], new int[0]);
+        Iterator<ExecRow> it = table.fetchInner(outer(42));
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void testEmptyInnerSide() throws Exception {
+        JoinTable table = load(Collections.<ExecRow>emptyList(), new int[]{0}, new int[]{0});
+        assertFalse(table.fetchInner(outer(1)).hasNext());
+    }
+
+    private static JoinTable load(List<ExecRow> rows, int[] innerHashKeys, int[] outerHashKeys) throws Exception {
+        return EncodedJoinTableLoader.INSTANCE.load(() -> Streams.wrap(rows), innerHashKeys, outerHashKeys, outer(0)).newTable();
+    }
+
+    private static ExecRow row(int key, String value) {
+        ValueRow row = new ValueRow(2);
+        row.setColumn(1, new SQLInteger(key));
+        row.setColumn(2, new SQLVarchar(value));
+        return row;
+    }
+
+    private static ExecRow outer(int key) {
+        ValueRow row = new ValueRow(1);
+        row.setColumn(1, new SQLInteger(key));
+        return row;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations;
+
+import com.splicemachine.db.iapi.sql.conn.ResubmitDistributedException;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.*;
+
+@Category(ArchitectureIndependent.class)
+public class ExecutionMemoryPoolTest {
+
+    @Test
+    public void testQueryLimit() {
+        ExecutionMemoryPool pool = new ExecutionMemoryPool(1000, 100);
+        ExecutionMemoryPool.Query query = pool.newQuery();
+        assertTrue(query.tryReserve(60));
+        assertFalse(query.tryReserve(60));
+        assertEquals(60, query.getReservedBytes());
+        assertEquals(60, pool.getReservedBytes());
+        assertEquals(1, pool.getDeniedReservations());
+
+        query.release(50);
+        assertTrue(query.tryReserve(60));
+        assertEquals(70, query.getReservedBytes());
+        assertEquals(110, query.getPeakReservedBytes());
+    }
+
+    @Test
+    public void testPoolIsSharedByQueries() {
+        ExecutionMemoryPool pool = new ExecutionMemoryPool(100, 0);
+        ExecutionMemoryPool.Query first = pool.newQuery();
+        ExecutionMemoryPool.Query second = pool.newQuery();
+        assertTrue(pool.tryReserveShared(30));
+        assertTrue(first.tryReserve(50));
+        assertFalse(second.tryReserve(50));
+        assertTrue(second.tryReserve(20));
+        assertEquals(2, pool.getActiveQueries());
+        assertEquals(50, pool.getLargestQueryReservedBytes());
+
+        first.close();
+        assertEquals(1, pool.getActiveQueries());
+        assertEquals(50, pool.getReservedBytes());
+        assertTrue(second.tryReserve(50));
+        pool.releaseShared(30);
+        assertEquals(70, pool.getReservedBytes());
+        assertEquals(100, pool.getPeakReservedBytes());
+    }
+
+    @Test
+    public void testSharedBuffersLeaveMemoryToQueries() {
+        ExecutionMemoryPool pool = new ExecutionMemoryPool(100, 0);
+        ExecutionMemoryPool.Query query = pool.newQuery();
+        assertEquals(50, pool.getMaxSharedBytes());
+        assertTrue(pool.tryReserveShared(40));
+        assertFalse(pool.tryReserveShared(20));
+        assertEquals(40, pool.getSharedBytes());
+        assertEquals(1, pool.getDeniedReservations());
+        assertTrue(query.tryReserve(60));
+
+        pool.releaseShared(40);
+        assertTrue(pool.tryReserveShared(20));
+        assertEquals(80, pool.getReservedBytes());
+    }
+
+    @Test(expected = ResubmitDistributedException.class)
+    public void testReserveFailsFast() {
+        ExecutionMemoryPool.Query query = new ExecutionMemoryPool(1000, 100).newQuery();
+        query.reserve(80);
+        query.reserve(80);
+    }
+
+    @Test
+    public void testClosedQueryIsNotAccounted() {
+        ExecutionMemoryPool pool = new ExecutionMemoryPool(100, 0);
+        ExecutionMemoryPool.Query query = pool.newQuery();
+        query.reserve(80);
+        query.close();
+        assertEquals(0, pool.getReservedBytes());
+        // buffers outliving the query neither reserve nor release memory
+        assertTrue(query.tryReserve(500));
+        query.release(80);
+        assertEquals(0, pool.getReservedBytes());
+    }
+}
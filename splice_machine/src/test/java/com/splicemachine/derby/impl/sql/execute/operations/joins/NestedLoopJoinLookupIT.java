@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations.joins;
+
+import com.splicemachine.derby.test.framework.SpliceSchemaWatcher;
+import com.splicemachine.derby.test.framework.SpliceUnitTest;
+import com.splicemachine.derby.test.framework.SpliceWatcher;
+import org.junit.*;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Integration tests for the nested loop joins whose inner side is looked up by primary key in batches, on the
+ * control side.
+ */
+public class NestedLoopJoinLookupIT extends SpliceUnitTest {
+
+    private static final String SCHEMA = NestedLoopJoinLookupIT.class.getSimpleName().toUpperCase();
+    // not a multiple of the default lookup batch size, so the last batch is partial
+    private static final int OUTER_ROWS = 1234;
+
+    protected static SpliceWatcher spliceClassWatcher = new SpliceWatcher(SCHEMA);
+    @ClassRule
+    public static SpliceSchemaWatcher schemaWatcher = new SpliceSchemaWatcher(SCHEMA);
+    @ClassRule
+    public static TestRule chain = RuleChain.outerRule(spliceClassWatcher)
+            .around(schemaWatcher);
+    @Rule
+    public SpliceWatcher methodWatcher = new SpliceWatcher(SCHEMA);
+
+    @BeforeClass
+    public static void createData() throws Exception {
+        Connection conn = spliceClassWatcher.getOrCreateConnection();
+        try (Statement s = conn.createStatement()) {
+            s.executeUpdate("create table outer_t(id int primary key, k int)");
+            s.executeUpdate("create table inner_t(k int primary key, v int)");
+        }
+        // the even outer rows have an inner row, the odd ones don't
+        try (PreparedStatement outer = conn.prepareStatement("insert into outer_t values(?,?)");
+             PreparedStatement inner = conn.prepareStatement("insert into inner_t values(?,?)")) {
+            for (int i = 0; i < OUTER_ROWS; i++) {
+                outer.setInt(1, i);
+                outer.setInt(2, i % 2 == 0 ? i : -i - 1);
+                outer.addBatch();
+                if (i % 2 == 0) {
+                    inner.setInt(1, i);
+                    inner.setInt(2, 10 * i);
+                    inner.addBatch();
+                }
+            }
+            outer.executeBatch();
+            inner.executeBatch();
+        }
+        conn.commit();
+    }
+
+    @Test
+    public void innerJoinOverPartialBatches() throws Exception {
+        assertEquals(OUTER_ROWS / 2, count(join("inner join", "")));
+        assertEquals(sumOfEvenValues(OUTER_ROWS), sum(join("inner join", "")));
+    }
+
+    @Test
+    public void innerJoinWithoutOuterRows() throws Exception {
+        assertEquals(0, count(join("inner join", "where o.id < 0")));
+    }
+
+    @Test
+    public void innerJoinWithoutInnerRows() throws Exception {
+        assertEquals(0, count(join("inner join", "where mod(o.id, 2) = 1")));
+    }
+
+    @Test
+    public void innerJoinWithRestriction() throws Exception {
+        // only the rows of the first batch pass the restriction of the inner side
+        String sql = join("inner join", "where i.v + 0 < 1000");
+        assertEquals(50, count(sql));
+    }
+
+    @Test
+    public void leftOuterJoinKeepsUnmatchedRows() throws Exception {
+        try (ResultSet rs = methodWatcher.executeQuery(
+                "select count(*), count(i.v), sum(i.v) from " + joinedTables("left outer join", ""))) {
+            assertTrue(rs.next());
+            assertEquals(OUTER_ROWS, rs.getInt(1));
+            assertEquals(OUTER_ROWS / 2, rs.getInt(2));
+            assertEquals(sumOfEvenValues(OUTER_ROWS), rs.getLong(3));
+        }
+    }
+
+    @Test
+    public void antiJoinReturnsUnmatchedRows() throws Exception {
+        String sql = "select count(*), sum(o.id) from outer_t o --splice-properties useSpark=false\n" +
+                "where not exists (select 1 from inner_t i --splice-properties joinStrategy=NESTEDLOOP\n" +
+                "where i.k = o.k)";
+        try (ResultSet rs = methodWatcher.executeQuery(sql)) {
+            assertTrue(rs.next());
+            assertEquals(OUTER_ROWS / 2, rs.getInt(1));
+            long oddIds = 0;
+            for (int i = 1; i < OUTER_ROWS; i += 2)
+                oddIds += i;
+            assertEquals(oddIds, rs.getLong(2));
+        }
+    }
+
+    @Test
+    public void closeBeforeTheLastBatch() throws Exception {
+        try (ResultSet rs = methodWatcher.executeQuery("select o.id, i.v from " + joinedTables("inner join", ""))) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(rs.next());
+                assertEquals(10 * rs.getInt(1), rs.getInt(2));
+            }
+        }
+        try (ResultSet rs = methodWatcher.executeQuery(
+                "select o.id, i.v from " + joinedTables("inner join", "") + " {limit 5}")) {
+            int rows = 0;
+            while (rs.next())
+                rows++;
+            assertEquals(5, rows);
+        }
+        // the join still reads every row once the previous ones were closed early
+        assertEquals(OUTER_ROWS / 2, count(join("inner join", "")));
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private static String joinedTables(String join, String where) {
+        return "--splice-properties joinOrder=FIXED\n" +
+                "outer_t o --splice-properties useSpark=false\n" +
+                join + " inner_t i --splice-properties joinStrategy=NESTEDLOOP\n" +
+                "on o.k = i.k " + where;
+    }
+
+    private static String join(String join, String where) {
+        return "select i.v from " + joinedTables(join, where);
+    }
+
+    private int count(String sql) throws Exception {
+        int rows = 0;
+        try (ResultSet rs = methodWatcher.executeQuery(sql)) {
+            while (rs.next())
+                rows++;
+        }
+        return rows;
+    }
+
+    private long sum(String sql) throws Exception {
+        long sum = 0;
+        try (ResultSet rs = methodWatcher.executeQuery(sql)) {
+            while (rs.next()) {
+                sum += rs.getInt(1);
+                assertFalse(rs.wasNull());
+            }
+        }
+        return sum;
+    }
+
+    private static long sumOfEvenValues(int rows) {
+        long sum = 0;
+        for (int i = 0; i < rows; i += 2)
+            sum += 10 * i;
+        return sum;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations.scanner;
+
+import com.carrotsearch.hppc.BitSet;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.Orderable;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.utils.marshall.dvd.V4SerializerMap;
+import com.splicemachine.encoding.Encoding;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import com.splicemachine.storage.ByteEntryAccumulator;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(ArchitectureIndependent.class)
+public class PrimitiveRowFilterTest{
+    private static final int[] ROW_DECODING_MAP={0,1,2};
+
+    @Test
+    public void evaluatesScalarQualifiers() throws Exception{
+        PrimitiveRowFilter filter=filter(new TestQualifier(0,Orderable.ORDER_OP_GREATERTHAN,false,new SQLLongint(10L)));
+        Assert.assertNotNull(filter);
+        Assert.assertFalse(filter.matches(row(5,1d)));
+        Assert.assertFalse(filter.matches(row(10,1d)));
+        Assert.assertTrue(filter.matches(row(11,1d)));
+        Assert.assertFalse(filter.matches(row(-1000000,1d)));
+    }
+
+    @Test
+    public void evaluatesNegatedDoubleQualifiers() throws Exception{
+        // c2 <> 2.5
+        PrimitiveRowFilter filter=filter(new TestQualifier(1,Orderable.ORDER_OP_EQUALS,true,new SQLDouble(2.5d)));
+        Assert.assertNotNull(filter);
+        Assert.assertFalse(filter.matches(row(1,2.5d)));
+        Assert.assertTrue(filter.matches(row(1,-2.5d)));
+    }
+
+    @Test
+    public void evaluatesAllAndedQualifiers() throws Exception{
+        PrimitiveRowFilter filter=filter(
+                new TestQualifier(0,Orderable.ORDER_OP_GREATEROREQUALS,false,new SQLInteger(0)),
+                new TestQualifier(1,Orderable.ORDER_OP_LESSTHAN,false,new SQLInteger(100)));
+        Assert.assertNotNull(filter);
+        Assert.assertEquals(2,filter.size());
+        Assert.assertTrue(filter.matches(row(0,99.5d)));
+        Assert.assertFalse(filter.matches(row(-1,99.5d)));
+        Assert.assertFalse(filter.matches(row(0,100d)));
+    }
+
+    @Test
+    public void neverRejectsMissingFields() throws Exception{
+        PrimitiveRowFilter filter=filter(new TestQualifier(0,Orderable.ORDER_OP_EQUALS,false,new SQLInteger(1)));
+        Assert.assertNotNull(filter);
+        ByteEntryAccumulator accumulator=accumulator();
+        byte[] data=Encoding.encode(2.0d,false);
+        accumulator.addDouble(1,data,0,data.length);
+        Assert.assertTrue(filter.matches(accumulator));
+    }
+
+    @Test
+    public void ignoresQualifiersItCannotEvaluate() throws Exception{
+        Assert.assertNull(filter(new TestQualifier(2,Orderable.ORDER_OP_EQUALS,false,new SQLVarchar("a"))));
+        Assert.assertNull(filter(new TestQualifier(0,Orderable.ORDER_OP_EQUALS,false,new SQLDouble(1.5d))));
+        Assert.assertNull(filter(new TestQualifier(0,Orderable.ORDER_OP_EQUALS,false,new SQLInteger())));
+        TestQualifier variant=new TestQualifier(0,Orderable.ORDER_OP_EQUALS,false,new SQLInteger(1));
+        variant.variantType=Qualifier.VARIANT;
+        Assert.assertNull(filter(variant));
+    }
+
+    private static PrimitiveRowFilter filter(Qualifier... qualifiers) throws Exception{
+        return PrimitiveRowFilter.create(new Qualifier[][]{qualifiers},null,null,template(),ROW_DECODING_MAP,
+                V4SerializerMap.instance(true));
+    }
+
+    private static ExecRow template(){
+        ExecRow row=new ValueRow(3);
+        row.setColumn(1,new SQLInteger());
+        row.setColumn(2,new SQLDouble());
+        row.setColumn(3,new SQLVarchar());
+        return row;
+    }
+
+    private static ByteEntryAccumulator accumulator(){
+        BitSet fields=new BitSet(3);
+        for(int i=0;i<3;i++){
+            fields.set(i);
+        }
+        return new ByteEntryAccumulator(null,false,fields);
+    }
+
+    private static ByteEntryAccumulator row(int c1,double c2){
+        ByteEntryAccumulator accumulator=accumulator();
+        byte[] data=Encoding.encode(c1,false);
+        accumulator.addScalar(0,data,0,data.length);
+        data=Encoding.encode(c2,false);
+        accumulator.addDouble(1,data,0,data.length);
+        data=Encoding.encode("value",false);
+        accumulator.add(2,data,0,data.length);
+        return accumulator;
+    }
+
+    private static class TestQualifier implements Qualifier{
+        private final int column;
+        private final int operator;
+        private final boolean negate;
+        private final DataValueDescriptor orderable;
+        private int variantType=Qualifier.CONSTANT;
+
+        TestQualifier(int column,int operator,boolean negate,DataValueDescriptor orderable){
+            this.column=column;
+            this.operator=operator;
+            this.negate=negate;
+            this.orderable=orderable;
+        }
+
+        @Override public int getColumnId(){ return column; }
+        @Override public int getStoragePosition(){ return column; }
+        @Override public DataValueDescriptor getOrderable(){ return orderable; }
+        @Override public int getOperator(){ return operator; }
+        @Override public boolean negateCompareResult(){ return negate; }
+        @Override public boolean getOrderedNulls(){ return false; }
+        @Override public boolean getUnknownRV(){ return false; }
+        @Override public void clearOrderableCache(){ }
+        @Override public void reinitialize(){ }
+        @Override public String getText(){ return null; }
+        @Override public int getVariantType(){ return variantType; }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.operations.window.function;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.sql.execute.WindowFunction;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.UserType;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.execute.operations.window.FrameDefinition;
+import com.splicemachine.derby.impl.sql.execute.operations.window.WindowAggregator;
+import com.splicemachine.derby.impl.sql.execute.operations.window.WindowAggregatorImpl;
+import com.splicemachine.derby.stream.window.BaseFrameBuffer;
+import com.splicemachine.derby.stream.window.WindowFrameBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a moving MAX over a single large partition, as in
+ * {@code MAX(v) OVER (ORDER BY t ROWS BETWEEN <frame> PRECEDING AND CURRENT ROW)}, for growing frame sizes.
+ *
+ * Compares the two-stack MAX against the chunked MAX it replaced, which is kept here as the baseline and
+ * recomputes the max of the frame from its chunks for every row. Also reports how long it takes until the first
+ * row is emitted, which used to be after the whole partition had been processed.
+ *
+ * Run by hand with {@code main}, optionally passing the number of rows in the partition and the largest frame size.
+ */
+public class WindowFrameBufferMicroBenchmark {
+
+    public static void main(String... args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int maxFrame = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+        List<ExecRow> partition = new ArrayList<>(rows);
+        Random random = new Random(0);
+        for (int i = 0; i < rows; i++) {
+            partition.add(row(random.nextInt()));
+        }
+        for (int run = 0; run < 3; run++) { // the first runs are warm up
+            System.out.printf("-------%nRun %d%n", run);
+            for (int frame = 10; frame <= maxFrame; frame *= 10) {
+                MaxMinAggregator twoStack = new MaxMinAggregator();
+                twoStack.setup(null, "MAX", null, null);
+                benchmark("TwoStack", twoStack, partition, frame);
+                benchmark("Chunked", new ChunkedMaxAggregator(), partition, frame);
+            }
+        }
+    }
+
+    private static void benchmark(String name, SpliceGenericWindowFunction function, List<ExecRow> partition,
+                                  int frameSize) throws StandardException {
+        FrameDefinition frameDefinition = new FrameDefinition(FrameDefinition.FrameMode.ROWS.ordinal(),
+                FrameDefinition.Frame.PRECEDING.ordinal(), frameSize,
+                FrameDefinition.Frame.CURRENT_ROW.ordinal(), 0);
+        function.setResultType(new SQLInteger());
+        WindowAggregator aggregator = new WindowAggregatorImpl(function, 2, new int[]{1}, 3, frameDefinition);
+        WindowFrameBuffer buffer = BaseFrameBuffer.createFrameBuffer(new WindowAggregator[]{aggregator},
+                partition.iterator(), frameDefinition, new int[]{0}, row(0));
+
+        long start = System.nanoTime();
+        long firstRow = 0;
+        long checksum = 0;
+        int count = 0;
+        while (buffer.hasNext()) {
+            checksum += buffer.next().getColumn(3).getInt();
+            if (count++ == 0) {
+                firstRow = System.nanoTime() - start;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-10s frame %7d: %8.3f M rows/s, first row after %6d us (checksum %d)%n", name, frameSize,
+                count * 1000d / elapsed, TimeUnit.NANOSECONDS.toMicros(firstRow), checksum);
+    }
+
+    private static ExecRow row(int value) {
+        ExecRow row = new ValueRow(3);
+        row.setColumn(1, new SQLInteger(value));
+        row.setColumn(2, new UserType());
+        row.setColumn(3, new SQLInteger());
+        return row;
+    }
+
+    /**
+     * The previous MAX implementation: the frame is kept in chunks, each with its own max which is recomputed when
+     * its max is removed, and the max of the frame is computed from the max of every chunk.
+     */
+    private static class ChunkedMaxAggregator extends SpliceGenericWindowFunction {
+
+        @Override
+        public void accumulate(DataValueDescriptor[] valueDescriptors) throws StandardException {
+            this.add(valueDescriptors);
+        }
+
+        @Override
+        protected void calculateOnAdd(WindowChunk chunk, DataValueDescriptor[] dvd) throws StandardException {
+            DataValueDescriptor result = chunk.getResult();
+            if (result == null || result.isNull() || dvd[0].compare(result) > 0) {
+                chunk.setResult(dvd[0]);
+            }
+        }
+
+        @Override
+        protected void calculateOnRemove(WindowChunk chunk, DataValueDescriptor[] dvds) throws StandardException {
+            if (dvds[0].compare(chunk.getResult()) == 0) {
+                DataValueDescriptor result = chunk.get(chunk.first)[0];
+                for (int i = chunk.first + 1; i < chunk.last; ++i) {
+                    if (chunk.get(i)[0].compare(result) > 0) {
+                        result = chunk.get(i)[0];
+                    }
+                }
+                chunk.setResult(result);
+            }
+        }
+
+        @Override
+        public DataValueDescriptor getResult() throws StandardException {
+            DataValueDescriptor result = chunks.get(0).getResult();
+            for (int i = 1; i < chunks.size(); ++i) {
+                DataValueDescriptor dvd = chunks.get(i).getResult();
+                if (dvd.compare(result) > 0) {
+                    result = dvd;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public WindowFunction newWindowFunction() {
+            return new ChunkedMaxAggregator();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.impl.sql.execute.pin;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.utils.marshall.dvd.V4SerializerMap;
+import com.splicemachine.primitives.Bytes;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+@Category(ArchitectureIndependent.class)
+public class PinnedTableSnapshotTest{
+    private static final int ROWS=2*PinnedTableSnapshot.BLOCK_ROWS+10;
+
+    @Test
+    public void scanReturnsAllRowsInKeyOrder() throws Exception{
+        PinnedTableSnapshot snapshot=snapshot(ROWS);
+        Assert.assertEquals(ROWS,snapshot.rowCount());
+        List<ExecRow> rows=collect(scan(snapshot,null,null,template(),new int[]{0,1}));
+        Assert.assertEquals(ROWS,rows.size());
+        for(int i=0;i<ROWS;i++){
+            ExecRow row=rows.get(i);
+            Assert.assertEquals(i,row.getColumn(1).getInt());
+            if(i%10==0)
+                Assert.assertTrue(row.getColumn(2).isNull());
+            else
+                Assert.assertEquals("group"+(i/100),row.getColumn(2).getString());
+            Assert.assertArrayEquals(key(i),row.getKey());
+        }
+    }
+
+    @Test
+    public void scanReadsOnlyMappedColumnsInKeyRange() throws Exception{
+        PinnedTableSnapshot snapshot=snapshot(ROWS);
+        ExecRow output=new ValueRow(1);
+        output.setColumn(1,new SQLVarchar());
+        List<ExecRow> rows=collect(scan(snapshot,key(4095),key(4100),output,new int[]{-1,0}));
+        Assert.assertEquals(5,rows.size());
+        Assert.assertEquals("group40",rows.get(0).getColumn(1).getString());
+        Assert.assertArrayEquals(key(4099),rows.get(4).getKey());
+    }
+
+    @Test
+    public void mergeAppliesChanges() throws Exception{
+        PinnedTableSnapshot snapshot=snapshot(ROWS);
+        NavigableMap<byte[],ExecRow> changes=new TreeMap<>(Bytes.BASE_COMPARATOR);
+        changes.put(key(5),null);
+        changes.put(key(7),row(7,"updated"));
+        changes.put(key(ROWS+1),row(ROWS+1,"inserted"));
+        PinnedTableSnapshot merged=snapshot.merge(changes,100L,100L,200L);
+
+        Assert.assertEquals(ROWS,merged.rowCount());
+        Assert.assertEquals(100L,merged.changesSince());
+        List<ExecRow> rows=collect(scan(merged,null,key(10),template(),new int[]{0,1}));
+        Assert.assertEquals(9,rows.size());
+        Assert.assertEquals(6,rows.get(5).getColumn(1).getInt());
+        Assert.assertEquals("updated",rows.get(6).getColumn(2).getString());
+        rows=collect(scan(merged,key(ROWS),null,template(),new int[]{0,1}));
+        Assert.assertEquals(1,rows.size());
+        Assert.assertEquals("inserted",rows.get(0).getColumn(2).getString());
+    }
+
+    @Test
+    public void replacedSnapshotKeepsSharedBlocks() throws Exception{
+        PinnedTableSnapshot snapshot=snapshot(ROWS);
+        NavigableMap<byte[],ExecRow> changes=new TreeMap<>(Bytes.BASE_COMPARATOR);
+        changes.put(key(7),row(7,"updated"));
+        PinnedTableSnapshot merged=snapshot.merge(changes,100L,100L,200L);
+        // the cache replaces the snapshot, which frees only its first block, the merged one has the others
+        snapshot.release();
+
+        List<ExecRow> rows=collect(scan(merged,null,null,template(),new int[]{0,1}));
+        Assert.assertEquals(ROWS,rows.size());
+        Assert.assertEquals("updated",rows.get(7).getColumn(2).getString());
+        Assert.assertEquals("group"+(ROWS-1)/100,rows.get(ROWS-1).getColumn(2).getString());
+        merged.release();
+    }
+
+    @Test
+    public void replacedSnapshotIsReadByItsScans() throws Exception{
+        PinnedTableSnapshot snapshot=snapshot(ROWS);
+        snapshot.acquire();
+        Iterator<ExecRow> rows=snapshot.scan(null,null,null,template(),new int[]{0,1});
+        Assert.assertEquals(0,rows.next().getColumn(1).getInt());
+        // the cache drops the snapshot while it's scanned
+        snapshot.release();
+        Assert.assertEquals(ROWS,1+collect(rows).size());
+    }
+
+    private static PinnedTableSnapshot snapshot(int rowCount) throws Exception{
+        List<ExecRow> rows=new ArrayList<>(rowCount);
+        for(int i=0;i<rowCount;i++){
+            rows.add(row(i,i%10==0?null:"group"+(i/100)));
+        }
+        return PinnedTableSnapshot.create(rows.iterator(),template(),V4SerializerMap.VERSION,0L,0L,0L);
+    }
+
+    private static Iterator<ExecRow> scan(PinnedTableSnapshot snapshot,byte[] startKey,byte[] stopKey,
+                                          ExecRow output,int[] baseColumnMap){
+        snapshot.acquire();
+        return snapshot.scan(startKey,stopKey,null,output,baseColumnMap);
+    }
+
+    private static ExecRow template(){
+        ExecRow row=new ValueRow(2);
+        row.setColumn(1,new SQLInteger());
+        row.setColumn(2,new SQLVarchar());
+        return row;
+    }
+
+    private static ExecRow row(int id,String group) throws Exception{
+        ExecRow row=template();
+        row.getColumn(1).setValue(id);
+        if(group!=null)
+            row.getColumn(2).setValue(group);
+        row.setKey(key(id));
+        return row;
+    }
+
+    private static byte[] key(int id){
+        return Bytes.toBytes(id);
+    }
+
+    private static List<ExecRow> collect(Iterator<ExecRow> rows){
+        List<ExecRow> list=new ArrayList<>();
+        while(rows.hasNext()){
+            list.add(rows.next());
+        }
+        return list;
+    }
+}
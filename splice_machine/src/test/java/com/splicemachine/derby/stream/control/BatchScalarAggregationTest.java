@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.sql.execute.ExecAggregator;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.Orderable;
+import com.splicemachine.db.iapi.types.SQLDecimal;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.iapi.types.UserType;
+import com.splicemachine.db.impl.sql.execute.AggregatorInfo;
+import com.splicemachine.db.impl.sql.execute.CountAggregator;
+import com.splicemachine.db.impl.sql.execute.IndexValueRow;
+import com.splicemachine.db.impl.sql.execute.LongBufferedSumAggregator;
+import com.splicemachine.db.impl.sql.execute.MaxMinAggregator;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.execute.operations.ProjectRestrictOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.ScalarAggregateOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.TableScanOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.framework.SpliceGenericAggregator;
+import com.splicemachine.derby.impl.sql.execute.operations.iapi.OperationInformation;
+import com.splicemachine.derby.impl.sql.execute.operations.iapi.ScanInformation;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.Random;
+
+@Category(ArchitectureIndependent.class)
+@SuppressWarnings("unchecked")
+public class BatchScalarAggregationTest{
+    // SUM(c1), COUNT(*), COUNT(c2), MAX(c2), MIN(c3), SUM(c3), as input, result and aggregator columns
+    private static final int[] PROJECT_MAPPING={1,-1,-1, -1,-1,-1, 2,-1,-1, 2,-1,-1, 3,-1,-1, 3,-1,-1};
+    private static final int ROWS=2500;
+
+    @Test
+    public void aggregatesTheQualifyingRowsOfTheScan() throws Exception{
+        ScalarAggregateOperation operation=operation(aggregators(),qualifier(Orderable.ORDER_OP_GREATEROREQUALS,0));
+        BatchScalarAggregation aggregation=BatchScalarAggregation.create(operation);
+        Assert.assertNotNull(aggregation);
+
+        long sumC1=0;
+        long count=0;
+        long countC2=0;
+        double maxC2=Double.NEGATIVE_INFINITY;
+        long minC3=Long.MAX_VALUE;
+        BigDecimal sumC3=BigDecimal.ZERO;
+        Random random=new Random(0);
+        ExecRow row=scanRow();
+        for(int i=0;i<ROWS;i++){
+            randomize(row,random);
+            if(row.getColumn(1).isNull() || row.getColumn(1).getInt()<0)
+                continue;
+            count++;
+            sumC1+=row.getColumn(1).getInt();
+            if(!row.getColumn(2).isNull()){
+                countC2++;
+                maxC2=Math.max(maxC2,row.getColumn(2).getDouble());
+            }
+            if(!row.getColumn(3).isNull()){
+                minC3=Math.min(minC3,row.getColumn(3).getLong());
+                sumC3=sumC3.add(BigDecimal.valueOf(row.getColumn(3).getLong()));
+            }
+        }
+
+        Iterator<ExecRow> result=aggregation.aggregate(scanRows(new Random(0)));
+        Assert.assertTrue(result.hasNext());
+        ExecRow aggregate=result.next();
+        Assert.assertFalse(result.hasNext());
+        boolean[] eliminatedNulls=new boolean[operation.aggregates.length];
+        for(int i=0;i<operation.aggregates.length;i++)
+            eliminatedNulls[i]=operation.aggregates[i].finish(aggregate);
+
+        Assert.assertEquals(sumC1,aggregate.getColumn(2).getLong());
+        Assert.assertEquals(count,aggregate.getColumn(5).getLong());
+        Assert.assertEquals(countC2,aggregate.getColumn(8).getLong());
+        Assert.assertEquals(maxC2,aggregate.getColumn(11).getDouble(),0d);
+        Assert.assertEquals(minC3,aggregate.getColumn(14).getLong());
+        // the sum of c3 overflows, and is upgraded to a decimal
+        Assert.assertEquals(0,sumC3.compareTo((BigDecimal)aggregate.getColumn(17).getObject()));
+        Assert.assertFalse("c1 has no null left after the qualifier",eliminatedNulls[0]);
+        Assert.assertTrue("nulls of c2 were skipped",eliminatedNulls[2]);
+    }
+
+    @Test
+    public void returnsNoRowWhenNoRowQualifies() throws Exception{
+        ScalarAggregateOperation operation=operation(aggregators(),qualifier(Orderable.ORDER_OP_GREATERTHAN,1000));
+        BatchScalarAggregation aggregation=BatchScalarAggregation.create(operation);
+        Assert.assertNotNull(aggregation);
+        Assert.assertFalse(aggregation.aggregate(scanRows(new Random(0))).hasNext());
+    }
+
+    @Test
+    public void leavesUnsupportedAggregationsToRows() throws Exception{
+        // an aggregate over the varchar column
+        SpliceGenericAggregator[] aggregators=aggregators();
+        ScalarAggregateOperation operation=operation(aggregators,qualifier(Orderable.ORDER_OP_GREATEROREQUALS,0));
+        ((ProjectRestrictOperation)operation.getSource()).projectMapping[12]=4;
+        Assert.assertNull(BatchScalarAggregation.create(operation));
+
+        // a distinct aggregate
+        aggregators=aggregators();
+        aggregators[2]=aggregator("COUNT",new CountAggregator().setup(null,"COUNT",null),7,true);
+        Assert.assertNull(BatchScalarAggregation.create(operation(aggregators,qualifier(Orderable.ORDER_OP_GREATEROREQUALS,0))));
+
+        // a restriction
+        operation=operation(aggregators(),qualifier(Orderable.ORDER_OP_GREATEROREQUALS,0));
+        Mockito.when(((ProjectRestrictOperation)operation.getSource()).getRestrictionMethodName()).thenReturn("e0");
+        Assert.assertNull(BatchScalarAggregation.create(operation));
+
+        // a qualifier comparing the integer column with a string
+        Qualifier qualifier=qualifier(Orderable.ORDER_OP_EQUALS,0);
+        Mockito.when(qualifier.getOrderable()).thenReturn(new SQLVarchar("0"));
+        Assert.assertNull(BatchScalarAggregation.create(operation(aggregators(),qualifier)));
+    }
+
+    private static ScalarAggregateOperation operation(SpliceGenericAggregator[] aggregators,Qualifier qualifier) throws Exception{
+        ScanInformation<ExecRow> scanInformation=Mockito.mock(ScanInformation.class);
+        Mockito.when(scanInformation.getScanQualifiers()).thenReturn(new Qualifier[][]{{qualifier}});
+        TableScanOperation scan=Mockito.mock(TableScanOperation.class);
+        Mockito.when(scan.canDeferQualifiers()).thenReturn(true);
+        Mockito.when(scan.getExecRowDefinition()).thenReturn(scanRow());
+        Mockito.when(scan.getScanInformation()).thenReturn(scanInformation);
+        Mockito.when(scan.getOperationInformation()).thenReturn(Mockito.mock(OperationInformation.class));
+
+        ProjectRestrictOperation projection=Mockito.mock(ProjectRestrictOperation.class);
+        Mockito.when(projection.getSource()).thenReturn(scan);
+        projection.projectMapping=PROJECT_MAPPING.clone();
+
+        ScalarAggregateOperation operation=Mockito.mock(ScalarAggregateOperation.class);
+        Mockito.when(operation.getSource()).thenReturn(projection);
+        Mockito.when(operation.getSourceExecIndexRow()).thenReturn(new IndexValueRow(aggregateRow()));
+        operation.aggregates=aggregators;
+        return operation;
+    }
+
+    private static Qualifier qualifier(int operator,int value){
+        // on c1
+        Qualifier qualifier=Mockito.mock(Qualifier.class);
+        Mockito.when(qualifier.getVariantType()).thenReturn(Qualifier.CONSTANT);
+        Mockito.when(qualifier.getOperator()).thenReturn(operator);
+        Mockito.when(qualifier.getStoragePosition()).thenReturn(0);
+        Mockito.when(qualifier.getOrderable()).thenReturn(new SQLInteger(value));
+        return qualifier;
+    }
+
+    private static SpliceGenericAggregator[] aggregators() throws Exception{
+        return new SpliceGenericAggregator[]{
+                aggregator("SUM",new LongBufferedSumAggregator(64),1),
+                aggregator("COUNT(*)",new CountAggregator().setup(null,"COUNT(*)",null),4),
+                aggregator("COUNT",new CountAggregator().setup(null,"COUNT",null),7),
+                aggregator("MAX",new MaxMinAggregator().setup(null,"MAX",null),10),
+                aggregator("MIN",new MaxMinAggregator().setup(null,"MIN",null),13),
+                aggregator("SUM",new LongBufferedSumAggregator(64),16)
+        };
+    }
+
+    private static SpliceGenericAggregator aggregator(String name,ExecAggregator aggregator,int inputColumn){
+        return aggregator(name,aggregator,inputColumn,false);
+    }
+
+    private static SpliceGenericAggregator aggregator(String name,ExecAggregator aggregator,int inputColumn,boolean distinct){
+        SpliceGenericAggregator genericAggregator=new SpliceGenericAggregator(aggregator,inputColumn+2,inputColumn,inputColumn+1);
+        genericAggregator.setAggInfo(new AggregatorInfo(name,aggregator.getClass().getName(),
+                inputColumn-1,inputColumn,inputColumn+1,distinct,null));
+        return genericAggregator;
+    }
+
+    private static ExecRow aggregateRow(){
+        DataValueDescriptor[] columns={
+                new SQLInteger(),new SQLLongint(),new UserType(),
+                new SQLInteger(),new SQLLongint(),new UserType(),
+                new SQLDouble(),new SQLLongint(),new UserType(),
+                new SQLDouble(),new SQLDouble(),new UserType(),
+                new SQLLongint(),new SQLLongint(),new UserType(),
+                new SQLLongint(),new SQLDecimal(),new UserType()
+        };
+        ExecRow row=new ValueRow(columns.length);
+        row.setRowArray(columns);
+        return row;
+    }
+
+    private static ExecRow scanRow(){
+        ExecRow row=new ValueRow(4);
+        row.setColumn(1,new SQLInteger());
+        row.setColumn(2,new SQLDouble());
+        row.setColumn(3,new SQLLongint());
+        row.setColumn(4,new SQLVarchar());
+        return row;
+    }
+
+    private static void randomize(ExecRow row,Random random) throws Exception{
+        row.getColumn(1).setValue(random.nextInt(200)-100);
+        row.getColumn(2).setValue(random.nextGaussian()*1000);
+        row.getColumn(3).setValue(Long.MAX_VALUE/4+random.nextInt(1000000));
+        row.getColumn(4).setValue("value");
+        for(int i=1;i<=3;i++){
+            if(random.nextInt(10)==0)
+                row.getColumn(i).setToNull();
+        }
+    }
+
+    /**
+     * Returns the same row instance for every row, as scans do.
+     */
+    private static Iterator<ExecRow> scanRows(Random random){
+        ExecRow row=scanRow();
+        return new Iterator<ExecRow>(){
+            int next=0;
+
+            @Override
+            public boolean hasNext(){
+                return next<ROWS;
+            }
+
+            @Override
+            public ExecRow next(){
+                try{
+                    randomize(row,random);
+                }catch(Exception e){
+                    throw new RuntimeException(e);
+                }
+                next++;
+                return row;
+            }
+        };
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.store.access.Qualifier;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.Orderable;
+import com.splicemachine.db.iapi.types.SQLDouble;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLLongint;
+import com.splicemachine.db.iapi.types.SQLReal;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.utils.Scans;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+@Category(ArchitectureIndependent.class)
+public class ColumnBatchFilterTest{
+
+    @Test
+    public void selectsTheRowsTheQualifiersAccept() throws Exception{
+        Qualifier[][] qualifiers={
+                {
+                        new TestQualifier(0,Orderable.ORDER_OP_GREATERTHAN,false,false,new SQLLongint(-50L)),
+                        new TestQualifier(1,Orderable.ORDER_OP_LESSOREQUALS,false,false,new SQLDouble(50d))
+                },
+                {
+                        new TestQualifier(2,Orderable.ORDER_OP_GREATEROREQUALS,false,false,new SQLReal(10f)),
+                        // NOT (c0 = 7), which rejects nulls
+                        new TestQualifier(0,Orderable.ORDER_OP_EQUALS,true,true,new SQLInteger(7))
+                }
+        };
+        assertSelectsQualifyingRows(qualifiers);
+    }
+
+    @Test
+    public void selectsEveryRowWithoutQualifiers() throws Exception{
+        assertSelectsQualifyingRows(null);
+    }
+
+    @Test
+    public void comparesRealsWithDoubles() throws Exception{
+        // 0.1f isn't 0.1d, so only the real comparison matches
+        Qualifier[][] qualifiers={{new TestQualifier(2,Orderable.ORDER_OP_EQUALS,false,false,new SQLReal(0.1f))}};
+        ColumnBatch batch=batch();
+        ExecRow row=template();
+        row.getColumn(3).setValue(0.1f);
+        batch.add(row);
+        batch.selectAll();
+        ColumnBatchFilter.create(qualifiers,null,template(),new BitSet()).filter(batch);
+        Assert.assertEquals(1,batch.selected());
+
+        qualifiers=new Qualifier[][]{{new TestQualifier(2,Orderable.ORDER_OP_EQUALS,false,false,new SQLDouble(0.1d))}};
+        batch.selectAll();
+        ColumnBatchFilter.create(qualifiers,null,template(),new BitSet()).filter(batch);
+        Assert.assertEquals(0,batch.selected());
+    }
+
+    @Test
+    public void doesNotFilterUnsupportedQualifiers() throws Exception{
+        Assert.assertNull(filter(new TestQualifier(3,Orderable.ORDER_OP_EQUALS,false,false,new SQLVarchar("a"))));
+        Assert.assertNull(filter(new TestQualifier(0,Orderable.ORDER_OP_EQUALS,false,false,new SQLDouble(1.5d))));
+        Assert.assertNull(filter(new TestQualifier(0,Orderable.ORDER_OP_EQUALS,false,false,new SQLInteger())));
+        TestQualifier variant=new TestQualifier(0,Orderable.ORDER_OP_EQUALS,false,false,new SQLInteger(1));
+        variant.variantType=Qualifier.VARIANT;
+        Assert.assertNull(filter(variant));
+        TestQualifier orderedNulls=new TestQualifier(0,Orderable.ORDER_OP_EQUALS,false,false,new SQLInteger(1));
+        orderedNulls.orderedNulls=true;
+        Assert.assertNull(filter(orderedNulls));
+        // one unsupported qualifier of a disjunction is enough
+        Assert.assertNull(ColumnBatchFilter.create(new Qualifier[][]{{},
+                {new TestQualifier(0,Orderable.ORDER_OP_EQUALS,false,false,new SQLInteger(1)),
+                        new TestQualifier(3,Orderable.ORDER_OP_EQUALS,false,false,new SQLVarchar("a"))}},
+                null,template(),new BitSet()));
+    }
+
+    private static void assertSelectsQualifyingRows(Qualifier[][] qualifiers) throws Exception{
+        BitSet columns=new BitSet();
+        ColumnBatchFilter filter=ColumnBatchFilter.create(qualifiers,null,template(),columns);
+        Assert.assertNotNull(filter);
+        ColumnBatch batch=batch();
+
+        Random random=new Random(0);
+        ExecRow row=template();
+        int rows=1000;
+        List<Integer> expected=new ArrayList<>();
+        List<Integer> actual=new ArrayList<>();
+        int first=0;
+        for(int i=0;i<rows;i++){
+            randomize(row,random);
+            if(qualifiers==null || Scans.qualifyRecordFromRow(row.getRowArray(),qualifiers,null,null))
+                expected.add(i);
+            if(batch.add(row) || i==rows-1){
+                batch.selectAll();
+                filter.filter(batch);
+                for(int j=0;j<batch.selected();j++)
+                    actual.add(first+batch.selection()[j]);
+                first+=batch.size();
+                batch.clear();
+            }
+        }
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected,actual);
+    }
+
+    private static ColumnBatch batch() throws Exception{
+        return new ColumnBatch(template(),new int[]{0,1,2},64);
+    }
+
+    private static ColumnBatchFilter filter(Qualifier qualifier) throws Exception{
+        return ColumnBatchFilter.create(new Qualifier[][]{{qualifier}},null,template(),new BitSet());
+    }
+
+    private static void randomize(ExecRow row,Random random) throws Exception{
+        row.getColumn(1).setValue(random.nextInt(200)-100);
+        row.getColumn(2).setValue(random.nextInt(200)-100+0.5d);
+        row.getColumn(3).setValue((float)random.nextInt(20));
+        for(int i=1;i<=3;i++){
+            if(random.nextInt(10)==0)
+                row.getColumn(i).setToNull();
+        }
+    }
+
+    private static ExecRow template(){
+        ExecRow row=new ValueRow(4);
+        row.setColumn(1,new SQLInteger());
+        row.setColumn(2,new SQLDouble());
+        row.setColumn(3,new SQLReal());
+        row.setColumn(4,new SQLVarchar());
+        return row;
+    }
+
+    private static class TestQualifier implements Qualifier{
+        private final int column;
+        private final int operator;
+        private final boolean negate;
+        private final boolean unknownRV;
+        private final DataValueDescriptor orderable;
+        private int variantType=Qualifier.CONSTANT;
+        private boolean orderedNulls;
+
+        TestQualifier(int column,int operator,boolean negate,boolean unknownRV,DataValueDescriptor orderable){
+            this.column=column;
+            this.operator=operator;
+            this.negate=negate;
+            this.unknownRV=unknownRV;
+            this.orderable=orderable;
+        }
+
+        @Override public int getColumnId(){ return column; }
+        @Override public int getStoragePosition(){ return column; }
+        @Override public DataValueDescriptor getOrderable(){ return orderable; }
+        @Override public int getOperator(){ return operator; }
+        @Override public boolean negateCompareResult(){ return negate; }
+        @Override public boolean getOrderedNulls(){ return orderedNulls; }
+        @Override public boolean getUnknownRV(){ return unknownRV; }
+        @Override public void clearOrderableCache(){ }
+        @Override public void reinitialize(){ }
+        @Override public String getText(){ return null; }
+        @Override public int getVariantType(){ return variantType; }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.SQLVarchar;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.execute.operations.ExecutionMemoryPool;
+import com.splicemachine.derby.stream.BaseStreamTest;
+import com.splicemachine.derby.stream.function.RowComparator;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import scala.Tuple2;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+@Category(ArchitectureIndependent.class)
+public class ExternalSortIteratorTest extends BaseStreamTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSortsInMemoryWithinBuffer() throws Exception {
+        List<Tuple2<ExecRow, ExecRow>> input = randomRows(100);
+        ExternalSortIterator<ExecRow, ExecRow> it = new ExternalSortIterator<>(input.iterator(),
+                new RowComparator(new boolean[]{false}), Long.MAX_VALUE, temporaryFolder.getRoot());
+        assertSorted(input, it);
+        Assert.assertEquals(0, it.getSpilledRuns());
+    }
+
+    @Test
+    public void testSpillsAndMergesRuns() throws Exception {
+        File spillDirectory = temporaryFolder.newFolder();
+        List<Tuple2<ExecRow, ExecRow>> input = randomRows(1000);
+        ExternalSortIterator<ExecRow, ExecRow> it = new ExternalSortIterator<>(input.iterator(),
+                new RowComparator(new boolean[]{false}), 4096, spillDirectory);
+        assertSorted(input, it);
+        Assert.assertTrue("Expected the sort to spill", it.getSpilledRuns() > 1);
+        Assert.assertTrue(it.getSpilledBytes() > 0);
+        String[] leftOver = spillDirectory.list();
+        Assert.assertTrue("Spill files were not cleaned up", leftOver == null || leftOver.length == 0);
+    }
+
+    @Test
+    public void testSpillsWhenMemoryIsDenied() throws Exception {
+        List<Tuple2<ExecRow, ExecRow>> input = randomRows(1000);
+        ExecutionMemoryPool.Query memory = new ExecutionMemoryPool(Long.MAX_VALUE, 8192).newQuery();
+        ExternalSortIterator<ExecRow, ExecRow> it = new ExternalSortIterator<>(input.iterator(),
+                new RowComparator(new boolean[]{false}), Long.MAX_VALUE, temporaryFolder.getRoot(), memory, 4096);
+        assertSorted(input, it);
+        Assert.assertTrue("Expected the sort to spill", it.getSpilledRuns() > 1);
+        Assert.assertTrue(memory.getPeakReservedBytes() <= 8192);
+        Assert.assertEquals(0, memory.getReservedBytes());
+    }
+
+    @Test
+    public void testExhaustedPoolSpillsMinimumRuns() throws Exception {
+        List<Tuple2<ExecRow, ExecRow>> input = randomRows(1000);
+        ExecutionMemoryPool pool = new ExecutionMemoryPool(1024, 0);
+        ExecutionMemoryPool.Query other = pool.newQuery();
+        Assert.assertTrue(other.tryReserve(1024));
+        ExecutionMemoryPool.Query memory = pool.newQuery();
+        ExternalSortIterator<ExecRow, ExecRow> it = new ExternalSortIterator<>(input.iterator(),
+                new RowComparator(new boolean[]{false}), Long.MAX_VALUE, temporaryFolder.getRoot(), memory, 4096);
+        assertSorted(input, it);
+        // every reservation is denied, yet runs are not spilled pair by pair
+        Assert.assertTrue("Expected the sort to spill", it.getSpilledRuns() > 1);
+        Assert.assertTrue("Spilled " + it.getSpilledRuns() + " runs", it.getSpilledRuns() < input.size() / 10);
+        Assert.assertEquals(0, memory.getPeakReservedBytes());
+        Assert.assertEquals(1000, pool.getDeniedReservations());
+    }
+
+    @Test
+    public void testCloseBeforeExhaustionCleansUp() throws Exception {
+        File spillDirectory = temporaryFolder.newFolder();
+        List<Tuple2<ExecRow, ExecRow>> input = randomRows(1000);
+        ExecutionMemoryPool.Query memory = new ExecutionMemoryPool(Long.MAX_VALUE, Long.MAX_VALUE).newQuery();
+        ExternalSortIterator<ExecRow, ExecRow> it = new ExternalSortIterator<>(input.iterator(),
+                new RowComparator(new boolean[]{false}), 4096, spillDirectory, memory);
+        // stop early, as a LIMIT would
+        for (int i = 0; i < 10; i++) {
+            it.next();
+        }
+        Assert.assertTrue("Expected the sort to spill", it.getSpilledRuns() > 1);
+        it.close();
+        it.close();
+        String[] leftOver = spillDirectory.list();
+        Assert.assertTrue("Spill files were not cleaned up", leftOver == null || leftOver.length == 0);
+        Assert.assertEquals(0, memory.getReservedBytes());
+    }
+
+    @Test
+    public void testSpillPreservesNulls() throws Exception {
+        List<Tuple2<ExecRow, ExecRow>> input = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ExecRow value = row(10 - i, i % 2 == 0 ? null : "v" + i);
+            input.add(new Tuple2<>(key(10 - i), value));
+        }
+        ExternalSortIterator<ExecRow, ExecRow> it = new ExternalSortIterator<>(input.iterator(),
+                new RowComparator(new boolean[]{false}), 1, temporaryFolder.getRoot());
+        int expected = 1;
+        while (it.hasNext()) {
+            Tuple2<ExecRow, ExecRow> t = it.next();
+            Assert.assertEquals(expected, t._1().getColumn(1).getInt());
+            int i = 10 - expected;
+            if (i % 2 == 0)
+                Assert.assertTrue(t._2().getColumn(2).isNull());
+            else
+                Assert.assertEquals("v" + i, t._2().getColumn(2).getString());
+            expected++;
+        }
+        Assert.assertEquals(11, expected);
+        Assert.assertEquals(10, it.getSpilledRuns());
+    }
+
+    private static void assertSorted(List<Tuple2<ExecRow, ExecRow>> input, ExternalSortIterator<ExecRow, ExecRow> it) throws StandardException {
+        List<Integer> expected = new ArrayList<>();
+        for (Tuple2<ExecRow, ExecRow> t : input) {
+            expected.add(t._1().getColumn(1).getInt());
+        }
+        Collections.sort(expected);
+
+        int count = 0;
+        int lastKey = Integer.MIN_VALUE;
+        int lastSequence = -1;
+        while (it.hasNext()) {
+            Tuple2<ExecRow, ExecRow> t = it.next();
+            int key = t._1().getColumn(1).getInt();
+            int sequence = t._2().getColumn(1).getInt();
+            Assert.assertEquals(expected.get(count).intValue(), key);
+            if (key == lastKey)
+                Assert.assertTrue("Sort is not stable", sequence > lastSequence);
+            lastKey = key;
+            lastSequence = sequence;
+            count++;
+        }
+        Assert.assertEquals(input.size(), count);
+    }
+
+    private static List<Tuple2<ExecRow, ExecRow>> randomRows(int count) throws StandardException {
+        Random random = new Random(42);
+        List<Tuple2<ExecRow, ExecRow>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int k = random.nextInt(count / 10);
+            rows.add(new Tuple2<>(key(k), row(i, "value " + k)));
+        }
+        return rows;
+    }
+
+    private static ExecRow key(int k) {
+        ValueRow key = new ValueRow(1);
+        key.setColumn(1, new SQLInteger(k));
+        return key;
+    }
+
+    private static ExecRow row(int sequence, String value) {
+        ValueRow row = new ValueRow(2);
+        row.setColumn(1, new SQLInteger(sequence));
+        row.setColumn(2, new SQLVarchar(value));
+        return row;
+    }
+}
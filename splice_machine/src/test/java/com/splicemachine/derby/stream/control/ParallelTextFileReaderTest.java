@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.access.api.DistributedFileSystem;
+import com.splicemachine.access.api.FileInfo;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Matchers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.OpenOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Category(ArchitectureIndependent.class)
+public class ParallelTextFileReaderTest{
+    private static final String FILE="/tmp/import.csv";
+
+    private final AtomicInteger openStreams=new AtomicInteger();
+
+    @Test
+    public void smallFilesAreNotSplit() throws Exception{
+        Assert.assertNull(new LineReader().read(fileSystem(file(10)),FILE,4,1<<20));
+    }
+
+    @Test
+    public void readsEveryRowOfEveryRange() throws Exception{
+        int rows=5000;
+        Set<String> read=new HashSet<>();
+        try(ParallelTextFileReader<String>.RangeIterator it=new LineReader().read(fileSystem(file(rows)),FILE,4,8000)){
+            Assert.assertNotNull(it);
+            while(it.hasNext()){
+                Assert.assertTrue("Row read twice",read.add(it.next()));
+            }
+        }
+        Assert.assertEquals(rows,read.size());
+        for(int i=0;i<rows;i++){
+            Assert.assertTrue("Missing row "+i,read.contains(row(i)));
+        }
+        awaitStreamsClosed();
+    }
+
+    @Test
+    public void rangeErrorsArePropagated() throws Exception{
+        ParallelTextFileReader<String> reader=new LineReader(){
+            @Override
+            protected Iterator<String> readRange(InputStream range) throws Exception{
+                final Iterator<String> lines=super.readRange(range);
+                return new Iterator<String>(){
+                    @Override public boolean hasNext(){ return lines.hasNext(); }
+                    @Override public void remove(){ throw new UnsupportedOperationException(); }
+                    @Override
+                    public String next(){
+                        String line=lines.next();
+                        if(line.equals(row(3000)))
+                            throw new IllegalStateException("bad row");
+                        return line;
+                    }
+                };
+            }
+        };
+        try(ParallelTextFileReader<String>.RangeIterator it=reader.read(fileSystem(file(5000)),FILE,4,8000)){
+            while(it.hasNext()){
+                it.next();
+            }
+            Assert.fail("The error of the range was not propagated");
+        }catch(IllegalStateException e){
+            Assert.assertEquals("bad row",e.getMessage());
+        }
+        awaitStreamsClosed();
+    }
+
+    @Test
+    public void closeStopsTheReaders() throws Exception{
+        ParallelTextFileReader<String>.RangeIterator it=new LineReader().read(fileSystem(file(100000)),FILE,2,8000);
+        Assert.assertTrue(it.hasNext());
+        it.next();
+        it.close();
+        Assert.assertFalse("Rows were returned after close",it.hasNext());
+        awaitStreamsClosed();
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper methods*/
+    private void awaitStreamsClosed() throws InterruptedException{
+        long deadline=System.currentTimeMillis()+10000;
+        while(openStreams.get()>0 && System.currentTimeMillis()<deadline){
+            Thread.sleep(10);
+        }
+        Assert.assertEquals("Streams left open",0,openStreams.get());
+    }
+
+    private DistributedFileSystem fileSystem(final byte[] file) throws IOException{
+        FileInfo info=mock(FileInfo.class);
+        when(info.isDirectory()).thenReturn(false);
+        when(info.size()).thenReturn((long)file.length);
+        DistributedFileSystem dfs=mock(DistributedFileSystem.class);
+        when(dfs.getInfo(FILE)).thenReturn(info);
+        when(dfs.newInputStream(anyString(),Matchers.<OpenOption>anyVararg())).thenAnswer(invocation->{
+            openStreams.incrementAndGet();
+            return new ByteArrayInputStream(file){
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException{
+                    if(!closed){
+                        closed=true;
+                        openStreams.decrementAndGet();
+                    }
+                }
+            };
+        });
+        return dfs;
+    }
+
+    private static byte[] file(int rows){
+        StringBuilder sb=new StringBuilder();
+        for(int i=0;i<rows;i++){
+            sb.append(row(i)).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String row(int i){
+        return "row-"+i+",value";
+    }
+
+    private static class LineReader extends ParallelTextFileReader<String>{
+        LineReader(){
+            super(false,null,null);
+        }
+
+        @Override
+        protected Iterator<String> readRange(InputStream range) throws Exception{
+            return lines(range);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.db.iapi.sql.Activation;
+import com.splicemachine.db.iapi.sql.conn.LanguageConnectionContext;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.stream.BaseStreamTest;
+import com.splicemachine.derby.stream.function.ZipperFunction;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import scala.Tuple2;
+
+import java.io.File;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Category(ArchitectureIndependent.class)
+public class SpillableHashAggregatorTest extends BaseStreamTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReducesInMemoryWithinBuffer() throws Exception {
+        List<Tuple2<ExecRow, ExecRow>> input = rows(1000, 50);
+        SpillableHashAggregator<ExecRow, ExecRow, ExecRow> it = new SpillableHashAggregator<>(input.iterator(),
+                SpillableHashAggregator.reducing(new Sum()), true, Long.MAX_VALUE, temporaryFolder.getRoot(), null);
+        assertSums(input, it);
+        Assert.assertEquals(0, it.getSpilledBytes());
+        Assert.assertTrue(it.getPeakMemoryUsage() > 0);
+    }
+
+    @Test
+    public void testReduceSpillsAndReaggregatesPartitions() throws Exception {
+        File spillDirectory = temporaryFolder.newFolder();
+        List<Tuple2<ExecRow, ExecRow>> input = rows(5000, 500);
+        SpillableHashAggregator<ExecRow, ExecRow, ExecRow> it = new SpillableHashAggregator<>(input.iterator(),
+                SpillableHashAggregator.reducing(new Sum()), true, 4096, spillDirectory, null);
+        assertSums(input, it);
+        Assert.assertTrue("Expected the aggregation to spill", it.getSpilledBytes() > 0);
+        String[] leftOver = spillDirectory.list();
+        Assert.assertTrue("Spill files were not cleaned up", leftOver == null || leftOver.length == 0);
+    }
+
+    @Test
+    public void testReaggregationDoesNotCountReadsTwice() throws Exception {
+        final AtomicLong reads = new AtomicLong();
+        OperationContext context = Mockito.mock(OperationContext.class);
+        Mockito.doAnswer(invocation -> reads.incrementAndGet()).when(context).recordRead();
+        Mockito.doAnswer(invocation -> reads.addAndGet((Long) invocation.getArguments()[0])).when(context).recordRead(Mockito.anyLong());
+        Mockito.when(context.getRecordsRead()).thenAnswer(invocation -> reads.get());
+
+        List<Tuple2<ExecRow, ExecRow>> input = rows(5000, 500);
+        SpillableHashAggregator<ExecRow, ExecRow, ExecRow> it = new SpillableHashAggregator<>(input.iterator(),
+                SpillableHashAggregator.reducing(new CountingSum(context)), true, 2048, temporaryFolder.getRoot(), context);
+        assertSums(input, it);
+        Assert.assertTrue("Expected the aggregation to spill", it.getSpilledBytes() > 0);
+        Assert.assertEquals(input.size(), reads.get());
+    }
+
+    @Test
+    public void testDistinctLimitsNewKeysOnly() throws Exception {
+        final AtomicLong accumulated = new AtomicLong();
+        LanguageConnectionContext lcc = Mockito.mock(LanguageConnectionContext.class);
+        Mockito.when(lcc.getControlExecutionLimiter()).thenReturn(accumulated::addAndGet);
+        Activation activation = Mockito.mock(Activation.class);
+        Mockito.when(activation.getLanguageConnectionContext()).thenReturn(lcc);
+        OperationContext context = Mockito.mock(OperationContext.class);
+        Mockito.when(context.getActivation()).thenReturn(activation);
+
+        List<Tuple2<ExecRow, ExecRow>> input = rows(5000, 500);
+        SpillableHashAggregator<ExecRow, ExecRow, ExecRow> it = new SpillableHashAggregator<>(input.iterator(),
+                SpillableHashAggregator.<ExecRow>first(), true, 2048, temporaryFolder.getRoot(), context, true);
+        Set<Integer> expected = new HashSet<>();
+        for (Tuple2<ExecRow, ExecRow> t : input) {
+            expected.add(t._1().getColumn(1).getInt());
+        }
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        Assert.assertEquals(expected.size(), count);
+        Assert.assertTrue("Expected the aggregation to spill", it.getSpilledBytes() > 0);
+        // each distinct key is counted once, whichever level of the aggregation first inserts it
+        Assert.assertEquals(expected.size(), accumulated.get());
+    }
+
+    @Test
+    public void testRecordsSpillAndPeakMemoryInTheOperationContext() throws Exception {
+        OperationContext context = Mockito.mock(OperationContext.class);
+        List<Tuple2<ExecRow, ExecRow>> input = rows(5000, 500);
+        SpillableHashAggregator<ExecRow, ExecRow, ExecRow> it = new SpillableHashAggregator<>(input.iterator(),
+                SpillableHashAggregator.reducing(new Sum()), true, 4096, temporaryFolder.getRoot(), context);
+        assertSums(input, it);
+        Mockito.verify(context).recordSpill(it.getSpilledBytes());
+        Mockito.verify(context, Mockito.atLeastOnce()).recordMemoryUsage(it.getPeakMemoryUsage());
+    }
+
+    @Test
+    public void testGroupingSpillsAndKeepsAllValues() throws Exception {
+        List<Tuple2<ExecRow, ExecRow>> input = rows(2000, 100);
+        SpillableHashAggregator<ExecRow, ExecRow, List<ExecRow>> it = new SpillableHashAggregator<>(input.iterator(),
+                SpillableHashAggregator.<ExecRow>grouping(), true, 1024, temporaryFolder.getRoot(), null);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (Tuple2<ExecRow, ExecRow> t : input) {
+            expected.merge(t._1().getColumn(1).getInt(), 1, Integer::sum);
+        }
+        Set<Integer> seen = new HashSet<>();
+        while (it.hasNext()) {
+            Tuple2<ExecRow, List<ExecRow>> t = it.next();
+            int key = t._1().getColumn(1).getInt();
+            Assert.assertTrue("Duplicate group " + key, seen.add(key));
+            Assert.assertEquals(expected.get(key).intValue(), t._2().size());
+        }
+        Assert.assertEquals(expected.keySet(), seen);
+        Assert.assertTrue("Expected the grouping to spill", it.getSpilledBytes() > 0);
+    }
+
+    @Test
+    public void testSkewedKeyDoesNotRecurseForever() throws Exception {
+        List<Tuple2<ExecRow, ExecRow>> input = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            input.add(new Tuple2<>(row(7), row(1)));
+        }
+        SpillableHashAggregator<ExecRow, ExecRow, List<ExecRow>> it = new SpillableHashAggregator<>(input.iterator(),
+                SpillableHashAggregator.<ExecRow>grouping(), true, 1, temporaryFolder.getRoot(), null);
+        Assert.assertTrue(it.hasNext());
+        Tuple2<ExecRow, List<ExecRow>> t = it.next();
+        Assert.assertEquals(7, t._1().getColumn(1).getInt());
+        Assert.assertEquals(500, t._2().size());
+        Assert.assertFalse(it.hasNext());
+    }
+
+    private static void assertSums(List<Tuple2<ExecRow, ExecRow>> input,
+                                   SpillableHashAggregator<ExecRow, ExecRow, ExecRow> it) throws Exception {
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (Tuple2<ExecRow, ExecRow> t : input) {
+            expected.merge(t._1().getColumn(1).getInt(), t._2().getColumn(1).getInt(), Integer::sum);
+        }
+        Map<Integer, Integer> actual = new HashMap<>();
+        while (it.hasNext()) {
+            Tuple2<ExecRow, ExecRow> t = it.next();
+            Integer previous = actual.put(t._1().getColumn(1).getInt(), t._2().getColumn(1).getInt());
+            Assert.assertNull("Key returned twice", previous);
+        }
+        Assert.assertEquals(expected, actual);
+    }
+
+    private static List<Tuple2<ExecRow, ExecRow>> rows(int count, int keys) {
+        Random random = new Random(42);
+        List<Tuple2<ExecRow, ExecRow>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Tuple2<>(row(random.nextInt(keys)), row(random.nextInt(100))));
+        }
+        return rows;
+    }
+
+    private static ExecRow row(int value) {
+        ValueRow row = new ValueRow(1);
+        row.setColumn(1, new SQLInteger(value));
+        return row;
+    }
+
+    /**
+     * Records a read on every call, like the aggregate reduce functions do.
+     */
+    private static class CountingSum extends Sum {
+        private final OperationContext context;
+
+        CountingSum(OperationContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public ExecRow call(ExecRow left, ExecRow right) throws Exception {
+            context.recordRead();
+            return super.call(left, right);
+        }
+    }
+
+    /**
+     * Sums the first column, merging into the left row like the aggregate reduce functions do.
+     */
+    private static class Sum implements ZipperFunction<ExecRow, ExecRow, ExecRow> {
+        @Override
+        public ExecRow call(ExecRow left, ExecRow right) throws Exception {
+            if (left == null)
+                return right.getClone();
+            left.getColumn(1).setValue(left.getColumn(1).getInt() + right.getColumn(1).getInt());
+            return left;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) {
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) {
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.control;
+
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+@Category(ArchitectureIndependent.class)
+public class TextFileSplitterTest{
+    private static final byte QUOTE=(byte)'"';
+
+    @Test
+    public void smallFilesAreNotSplit() throws Exception{
+        byte[] file=bytes("a,1\nb,2\n");
+        Assert.assertArrayEquals(new long[]{0L},split(file,100,false));
+    }
+
+    @Test
+    public void rangesStartAfterLineFeeds() throws Exception{
+        byte[] file=bytes("aaaa\nbbbb\ncccc\ndddd\n");
+        Assert.assertArrayEquals(new long[]{0L,10L},split(file,6,false));
+        Assert.assertArrayEquals(new long[]{0L,5L,10L,15L},split(file,3,false));
+    }
+
+    @Test
+    public void lastRecordWithoutLineFeed() throws Exception{
+        byte[] file=bytes("aaaa\nbbbbbbbbbbbb");
+        Assert.assertArrayEquals(new long[]{0L,5L},split(file,3,false));
+        Assert.assertArrayEquals(new long[]{0L,5L},split(file,3,true));
+    }
+
+    @Test
+    public void quotedLineFeedsDontEndRecords() throws Exception{
+        byte[] file=bytes("a,\"x\ny\nz\"\nb,\"\"\"q\n\"\"\"\nc,1\n");
+        // the records start at 0, 10 and 21
+        Assert.assertArrayEquals(new long[]{0L,10L,21L},split(file,2,true));
+        // the quoted line feeds start ranges when records are lines
+        Assert.assertArrayEquals(new long[]{0L,5L,10L,17L,21L},split(file,2,false));
+    }
+
+    private static long[] split(byte[] file,long splitSize,boolean quotedNewLines) throws Exception{
+        return TextFileSplitter.split(new ByteArrayInputStream(file),file.length,splitSize,quotedNewLines,QUOTE);
+    }
+
+    private static byte[] bytes(String s){
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.SpliceMethod;
+import com.splicemachine.derby.impl.sql.execute.operations.ProjectRestrictOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.iapi.Restriction;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+@Category(ArchitectureIndependent.class)
+@SuppressWarnings("unchecked")
+public class ProjectRestrictFlatMapFunctionTest {
+
+    @Test
+    public void restrictsAndProjectsInASinglePass() throws Exception {
+        ProjectRestrictOperation op = Mockito.mock(ProjectRestrictOperation.class);
+        op.source = Mockito.mock(SpliceOperation.class);
+        op.restriction = Mockito.mock(SpliceMethod.class);
+        Restriction evenValues = row -> row.getColumn(1).getInt() % 2 == 0;
+        Mockito.when(op.getRestriction()).thenReturn(evenValues);
+        ExecRow projected = row(0);
+        Mockito.when(op.doProjection(Mockito.any(ExecRow.class))).thenAnswer(invocation -> {
+            ExecRow from = (ExecRow) invocation.getArguments()[0];
+            projected.getColumn(1).setValue(from.getColumn(1).getInt() * 10);
+            return projected;
+        });
+        OperationContext context = Mockito.mock(OperationContext.class);
+        Mockito.when(context.getOperation()).thenReturn(op);
+
+        Iterator<ExecRow> result = new ProjectRestrictFlatMapFunction<>(context).call(reusedRows(10));
+
+        List<Integer> values = new ArrayList<>();
+        while (result.hasNext()) {
+            values.add(result.next().getColumn(1).getInt());
+        }
+        Assert.assertEquals("[0, 20, 40, 60, 80]", values.toString());
+        Mockito.verify(context, Mockito.times(5)).recordFilter();
+    }
+
+    @Test
+    public void projectsEveryRowWithoutRestriction() throws Exception {
+        ProjectRestrictOperation op = Mockito.mock(ProjectRestrictOperation.class);
+        op.source = Mockito.mock(SpliceOperation.class);
+        Mockito.when(op.doProjection(Mockito.any(ExecRow.class))).thenAnswer(invocation -> invocation.getArguments()[0]);
+        OperationContext context = Mockito.mock(OperationContext.class);
+        Mockito.when(context.getOperation()).thenReturn(op);
+
+        Iterator<ExecRow> result = new ProjectRestrictFlatMapFunction<>(context).call(reusedRows(3));
+
+        int count = 0;
+        while (result.hasNext()) {
+            Assert.assertEquals(count++, result.next().getColumn(1).getInt());
+        }
+        Assert.assertEquals(3, count);
+        Mockito.verify(op, Mockito.never()).getRestriction();
+    }
+
+    /**
+     * Returns the same row instance for every value, as scans do.
+     */
+    private static Iterator<ExecRow> reusedRows(int count) {
+        ExecRow row = row(0);
+        return new Iterator<ExecRow>() {
+            int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public ExecRow next() {
+                try {
+                    row.getColumn(1).setValue(next++);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                return row;
+            }
+        };
+    }
+
+    private static ExecRow row(int value) {
+        ExecRow row = new ValueRow(1);
+        row.setColumn(1, new SQLInteger(value));
+        return row;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.splicemachine.derby.stream.function;
+
+import com.splicemachine.db.iapi.error.StandardException;
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.sql.execute.ExecutionFactory;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.iapi.sql.execute.SpliceOperation;
+import com.splicemachine.derby.impl.SpliceMethod;
+import com.splicemachine.derby.impl.sql.execute.operations.ProjectRestrictOperation;
+import com.splicemachine.derby.impl.sql.execute.operations.iapi.Restriction;
+import com.splicemachine.derby.stream.control.ControlDataSet;
+import com.splicemachine.derby.stream.iapi.OperationContext;
+
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+
+/**
+ * Measures a control-side ProjectRestrict, as the filter and map steps of {@link ProjectRestrictPredicateFunction}
+ * and {@link ProjectRestrictMapFunction}, against the single pass of {@link ProjectRestrictFlatMapFunction}.
+ *
+ * The restriction and the projection are plain Java methods, so only what differs between the two is measured: the
+ * iterators stacked per step, the cancellation checks and the restriction allocated for every row.
+ *
+ * Run by hand with {@code main}, optionally passing the number of rows.
+ */
+public class ProjectRestrictMicroBenchmark {
+
+    @SuppressWarnings("unchecked")
+    public static void main(String... args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+
+        BenchmarkOperation op = new BenchmarkOperation();
+        OperationContext<BenchmarkOperation> context = stub(OperationContext.class, op);
+        for (int run = 0; run < 3; run++) { // the first runs are warm up
+            System.out.printf("-------%nRun %d%n", run);
+            benchmark("Two steps", rows, () -> new ControlDataSet<>(rows(rows))
+                    .filter(new ProjectRestrictPredicateFunction<>(context))
+                    .map(new ProjectRestrictMapFunction<>(context))
+                    .toLocalIterator());
+            benchmark("One pass", rows, () -> new ControlDataSet<>(rows(rows))
+                    .mapPartitions(new ProjectRestrictFlatMapFunction<>(context))
+                    .toLocalIterator());
+        }
+    }
+
+    private static void benchmark(String name, int rows, Callable<Iterator<ExecRow>> plan) throws Exception {
+        long start = System.nanoTime();
+        long checksum = 0;
+        Iterator<ExecRow> result = plan.call();
+        while (result.hasNext()) {
+            checksum += result.next().getColumn(1).getInt();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-10s: %8.3f M rows/s (checksum %d)%n", name, rows * 1000d / elapsed, checksum);
+    }
+
+    /**
+     * Returns the same row instance for every value, as scans do.
+     */
+    private static Iterator<ExecRow> rows(int count) {
+        ExecRow row = new ValueRow(1);
+        row.setColumn(1, new SQLInteger());
+        return new Iterator<ExecRow>() {
+            int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public ExecRow next() {
+                try {
+                    row.getColumn(1).setValue(next++);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                return row;
+            }
+        };
+    }
+
+    /**
+     * Stubs an interface with default values, and the given operation for getOperation(). Activations, connection
+     * and statement contexts are stubbed the same way, so nothing is ever cancelled.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, SpliceOperation op) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, arguments) -> {
+            Class<?> returnType = method.getReturnType();
+            if (method.getName().equals("getOperation"))
+                return op;
+            if (returnType == boolean.class)
+                return false;
+            if (returnType == int.class)
+                return 0;
+            if (returnType == long.class)
+                return 0L;
+            if (returnType.isInterface())
+                return stub(returnType, op);
+            return null;
+        });
+    }
+
+    /**
+     * Keeps the even values and multiplies them by 10, reusing its result row like generated projections.
+     */
+    private static class BenchmarkOperation extends ProjectRestrictOperation {
+        private final ExecRow projected = new ValueRow(1);
+
+        BenchmarkOperation() {
+            projected.setColumn(1, new SQLInteger());
+            source = stub(SpliceOperation.class, this);
+            restriction = new SpliceMethod<DataValueDescriptor>();
+        }
+
+        @Override
+        public Restriction getRestriction() {
+            // a new restriction for every call, like the operation does
+            return row -> keep(row);
+        }
+
+        private boolean keep(ExecRow row) throws StandardException {
+            return row.getColumn(1).getInt() % 2 == 0;
+        }
+
+        @Override
+        public ExecRow doProjection(ExecRow sourceRow) throws StandardException {
+            projected.getColumn(1).setValue(sourceRow.getColumn(1).getInt() * 10);
+            return projected;
+        }
+
+        @Override
+        public void setCurrentRow(ExecRow row) {
+        }
+
+        @Override
+        public ExecutionFactory getExecutionFactory() {
+            return null;
+        }
+    }
+}
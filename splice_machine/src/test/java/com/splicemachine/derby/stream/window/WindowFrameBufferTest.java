@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.stream.window;
+
+import com.splicemachine.db.iapi.sql.execute.ExecRow;
+import com.splicemachine.db.iapi.types.DataValueDescriptor;
+import com.splicemachine.db.iapi.types.SQLInteger;
+import com.splicemachine.db.iapi.types.UserType;
+import com.splicemachine.db.impl.sql.execute.ValueRow;
+import com.splicemachine.derby.impl.sql.execute.operations.ExecutionMemoryPool;
+import com.splicemachine.derby.impl.sql.execute.operations.window.FrameDefinition;
+import com.splicemachine.derby.impl.sql.execute.operations.window.WindowAggregator;
+import com.splicemachine.derby.impl.sql.execute.operations.window.WindowAggregatorImpl;
+import com.splicemachine.derby.impl.sql.execute.operations.window.function.MaxMinAggregator;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+@Category(ArchitectureIndependent.class)
+public class WindowFrameBufferTest {
+    private static final int ROWS = FrameDefinition.FrameMode.ROWS.ordinal();
+
+    @Test
+    public void slidingMaxMatchesFrame() throws Exception {
+        // ROWS BETWEEN 20 PRECEDING AND 3 FOLLOWING
+        checkSlidingFrame(true, frame(FrameDefinition.Frame.PRECEDING, 20, FrameDefinition.Frame.FOLLOWING, 3), -20, 3);
+    }
+
+    @Test
+    public void slidingMinMatchesFrame() throws Exception {
+        // ROWS BETWEEN 2 PRECEDING AND CURRENT ROW
+        checkSlidingFrame(false, frame(FrameDefinition.Frame.PRECEDING, 2, FrameDefinition.Frame.CURRENT_ROW, 0), -2, 0);
+    }
+
+    @Test
+    public void runningMaxMatchesFrame() throws Exception {
+        // ROWS BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW
+        checkSlidingFrame(true, frame(FrameDefinition.Frame.UNBOUNDED_PRECEDING, 0, FrameDefinition.Frame.CURRENT_ROW, 0),
+                Integer.MIN_VALUE, 0);
+    }
+
+    @Test
+    public void emitsRowsBeforeTheEndOfThePartition() throws Exception {
+        List<ExecRow> input = randomRows(1000, new Random(3));
+        CountingIterator source = new CountingIterator(input.iterator());
+        WindowFrameBuffer buffer = frameBuffer(true,
+                frame(FrameDefinition.Frame.PRECEDING, 5, FrameDefinition.Frame.FOLLOWING, 5), source);
+        Assert.assertTrue(buffer.hasNext());
+        Assert.assertNotNull(buffer.next());
+        Assert.assertTrue("Frame buffer read the whole partition before emitting a row", source.read < input.size());
+        int count = 1;
+        while (buffer.hasNext()) {
+            Assert.assertNotNull(buffer.next());
+            count++;
+        }
+        Assert.assertEquals(input.size(), count);
+        Assert.assertNull(buffer.next());
+    }
+
+    @Test
+    public void frameRowBufferWrapsAndGrows() throws Exception {
+        ExecutionMemoryPool.Query memory = new ExecutionMemoryPool(Long.MAX_VALUE, 0L).newQuery();
+        FrameRowBuffer rows = new FrameRowBuffer(memory);
+        int next = 0;
+        int first = 0;
+        for (int round = 0; round < 100; round++) {
+            // add more rows than we remove so the buffer grows while wrapped around
+            for (int i = 0; i < 7; i++) {
+                rows.add(row(next++));
+            }
+            for (int i = 0; i < 5; i++) {
+                Assert.assertEquals(first++, rows.removeFirst().getColumn(1).getInt());
+            }
+            Assert.assertEquals(next - first, rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                Assert.assertEquals(first + i, rows.get(i).getColumn(1).getInt());
+            }
+        }
+        Assert.assertTrue(memory.getReservedBytes() > 0);
+        rows.clear();
+        Assert.assertEquals(0, rows.size());
+        Assert.assertEquals(0, memory.getReservedBytes());
+    }
+
+    private void checkSlidingFrame(boolean isMax, FrameDefinition frameDefinition, int from, int to) throws Exception {
+        List<ExecRow> input = randomRows(500, new Random(from * 31 + to));
+        WindowFrameBuffer buffer = frameBuffer(isMax, frameDefinition, input.iterator());
+        int i = 0;
+        while (buffer.hasNext()) {
+            ExecRow row = buffer.next();
+            Integer expected = null;
+            int start = from == Integer.MIN_VALUE ? 0 : Math.max(0, i + from);
+            for (int j = start; j <= Math.min(input.size() - 1, i + to); j++) {
+                DataValueDescriptor value = input.get(j).getColumn(1);
+                if (value.isNull()) {
+                    continue;
+                }
+                if (expected == null || (isMax ? value.getInt() > expected : value.getInt() < expected)) {
+                    expected = value.getInt();
+                }
+            }
+            DataValueDescriptor result = row.getColumn(3);
+            if (expected == null) {
+                Assert.assertTrue("Row " + i + " expected null, got " + result, result == null || result.isNull());
+            } else {
+                Assert.assertEquals("Row " + i, expected.intValue(), result.getInt());
+            }
+            i++;
+        }
+        Assert.assertEquals(input.size(), i);
+    }
+
+    private static FrameDefinition frame(FrameDefinition.Frame start, long startRows,
+                                         FrameDefinition.Frame end, long endRows) {
+        return new FrameDefinition(ROWS, start.ordinal(), startRows, end.ordinal(), endRows);
+    }
+
+    private static WindowFrameBuffer frameBuffer(boolean isMax, FrameDefinition frameDefinition,
+                                                 Iterator<ExecRow> source) throws Exception {
+        MaxMinAggregator function = new MaxMinAggregator();
+        function.setup(null, isMax ? "MAX" : "MIN", null, null);
+        WindowAggregator aggregator = new WindowAggregatorImpl(function, 2, new int[]{1}, 3, frameDefinition);
+        ExecRow templateRow = new ValueRow(3);
+        templateRow.setColumn(1, new SQLInteger());
+        templateRow.setColumn(2, new UserType());
+        templateRow.setColumn(3, new SQLInteger());
+        return BaseFrameBuffer.createFrameBuffer(new WindowAggregator[]{aggregator}, source, frameDefinition,
+                new int[]{0}, templateRow);
+    }
+
+    private static List<ExecRow> randomRows(int count, Random random) {
+        List<ExecRow> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ExecRow row = row(random.nextInt(1000));
+            if (random.nextInt(10) == 0) {
+                row.setColumn(1, new SQLInteger());
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static ExecRow row(int value) {
+        ExecRow row = new ValueRow(3);
+        row.setColumn(1, new SQLInteger(value));
+        row.setColumn(2, new UserType());
+        row.setColumn(3, new SQLInteger());
+        return row;
+    }
+
+    private static class CountingIterator implements Iterator<ExecRow> {
+        private final Iterator<ExecRow> delegate;
+        private int read;
+
+        CountingIterator(Iterator<ExecRow> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public ExecRow next() {
+            read++;
+            return delegate.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.test;
+
+import com.splicemachine.derby.test.framework.SpliceNetConnection;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection scaling benchmark for the network server, meant to be run by hand against a
+ * running server, once with the default threading model and once with {@code derby.drda.nio=true}.
+ *
+ * Opens a large number of connections, like a set of connection pools would, keeps most of them
+ * idle and drives a small number of them with short queries. Reports the query rate and latency
+ * and, if a JMX url is given, the size of the server's connection thread pool.
+ *
+ * Usage: {@code ConnectionScalingBenchmark <connections> <activeClients> <seconds> [jmxServiceUrl]}
+ */
+public class ConnectionScalingBenchmark {
+
+    public static void main(String... args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int activeClients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        String jmxUrl = args.length > 3 ? args[3] : null;
+
+        long start = System.nanoTime();
+        List<Connection> pool = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            pool.add(SpliceNetConnection.getConnection());
+        }
+        System.out.printf("Opened %d connections in %d ms%n", connections,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        printThreadPoolSize(jmxUrl, "after connect");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Client[] clients = new Client[activeClients];
+        for (int i = 0; i < activeClients; i++) {
+            clients[i] = new Client(pool, deadline);
+            clients[i].start();
+        }
+        long queries = 0;
+        List<Long> latencies = new ArrayList<>();
+        for (Client client : clients) {
+            client.join();
+            if (client.error != null)
+                throw client.error;
+            queries += client.latencies.size();
+            latencies.addAll(client.latencies);
+        }
+        printThreadPoolSize(jmxUrl, "after load");
+
+        long[] sorted = new long[latencies.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        System.out.printf("%d queries, %.1f queries/s%n", queries, (double) queries / seconds);
+        if (sorted.length > 0) {
+            System.out.printf("latency us: p50=%d p99=%d max=%d%n",
+                    TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length / 2]),
+                    TimeUnit.NANOSECONDS.toMicros(sorted[(int) (sorted.length * 0.99)]),
+                    TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length - 1]));
+        }
+
+        for (Connection connection : pool) {
+            connection.close();
+        }
+    }
+
+    private static void printThreadPoolSize(String jmxUrl, String when) throws Exception {
+        if (jmxUrl == null)
+            return;
+        try (JMXConnector connector = JMXConnectorFactory.connect(new JMXServiceURL(jmxUrl))) {
+            MBeanServerConnection mbs = connector.getMBeanServerConnection();
+            Set<ObjectName> names = mbs.queryNames(new ObjectName("*:type=NetworkServer,*"), null);
+            for (ObjectName name : names) {
+                System.out.printf("Connection threads %s: %s%n", when,
+                        mbs.getAttribute(name, "ConnectionThreadPoolSize"));
+            }
+        }
+    }
+
+    /**
+     * Runs a trivial query on a random connection of the pool until the deadline.
+     */
+    private static class Client extends Thread {
+        private final List<Connection> pool;
+        private final long deadline;
+        private final List<Long> latencies = new ArrayList<>();
+        private Exception error;
+
+        Client(List<Connection> pool, long deadline) {
+            this.pool = pool;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (System.nanoTime() < deadline) {
+                    Connection connection = pool.get(ThreadLocalRandom.current().nextInt(pool.size()));
+                    long start = System.nanoTime();
+                    // connections are shared between clients, serialize on the connection
+                    synchronized (connection) {
+                        try (PreparedStatement ps = connection.prepareStatement("values 1");
+                             ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                rs.getInt(1);
+                            }
+                        }
+                    }
+                    latencies.add(System.nanoTime() - start);
+                }
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.derby.utils;
+
+import com.splicemachine.db.iapi.util.IdUtil;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(ArchitectureIndependent.class)
+public class EngineUtilsTest {
+
+    @Test
+    public void testUnquotedNamesAreUpperCased() throws Exception {
+        Assert.assertEquals("MY_SCHEMA", EngineUtils.validateSchema(" my_schema "));
+        Assert.assertEquals("MY_TABLE", EngineUtils.validateTable("my_table"));
+    }
+
+    @Test
+    public void testQuotedNamesKeepTheirCase() throws Exception {
+        Assert.assertEquals("mySchema", EngineUtils.validateSchema("\"mySchema\""));
+        Assert.assertEquals("my table", EngineUtils.validateTable(" \"my table\" "));
+    }
+
+    @Test
+    public void testDoubledQuotesAreUndoubled() throws Exception {
+        Assert.assertEquals("a\"b", EngineUtils.validateSchema("\"a\"\"b\""));
+        Assert.assertEquals("\"t\"", EngineUtils.validateTable("\"\"\"t\"\"\""));
+    }
+
+    @Test
+    public void testDelimitedNamesRoundTrip() throws Exception {
+        for (String name : new String[]{"T", "lower", "with space", "a\"b", "\"", "\"\"x\""}) {
+            Assert.assertEquals(name, EngineUtils.validateSchema(IdUtil.normalToDelimited(name)));
+            Assert.assertEquals(name, EngineUtils.validateTable(IdUtil.normalToDelimited(name)));
+        }
+    }
+}
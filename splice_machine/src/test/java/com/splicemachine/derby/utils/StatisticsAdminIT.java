@@ -14,6 +14,8 @@
 
 package com.splicemachine.derby.utils;
 
+import com.splicemachine.access.configuration.StatsConfiguration;
+import com.splicemachine.db.iapi.util.IdUtil;
 import com.splicemachine.db.impl.sql.catalog.SYSTABLESTATISTICSRowFactory;
 import com.splicemachine.derby.test.framework.SpliceSchemaWatcher;
 import com.splicemachine.derby.test.framework.SpliceUnitTest;
@@ -1242,8 +1244,82 @@ public class StatisticsAdminIT extends SpliceUnitTest {
         methodWatcher4.execute("drop table TAB_WITH_MORE_SPLITS");
     }
 
+    @Test
+    public void testCollectStaleStatisticsOnly() throws Exception {
+        TestConnection conn = methodWatcher.getOrCreateConnection();
+        methodWatcher.executeUpdate("create table STALE_ONLY (a int)");
+        try {
+            methodWatcher.executeUpdate("insert into STALE_ONLY values 1, 2, 3, 4, 5, 6, 7, 8, 9, 10");
+            waitForModificationCounts();
+
+            // the region has no statistics yet
+            assertEquals(1, collectStaleStatistics(conn, "STALE_ONLY"));
+            verifyStatsCounts(conn, SCHEMA, "STALE_ONLY", 1, 1);
+            // nothing changed since
+            assertEquals(0, collectStaleStatistics(conn, "STALE_ONLY"));
+
+            methodWatcher.executeUpdate("insert into STALE_ONLY select a + 10 from STALE_ONLY");
+            waitForModificationCounts();
+            assertEquals(1, collectStaleStatistics(conn, "STALE_ONLY"));
+            verifyStatsCounts(conn, SCHEMA, "STALE_ONLY", 1, 1);
+            try (ResultSet rs = methodWatcher.executeQuery(format(
+                    "select rowcount from sysvw.systablestatistics where schemaname = '%s' and tablename = 'STALE_ONLY'", SCHEMA))) {
+                Assert.assertTrue(rs.next());
+                assertEquals(20L, rs.getLong(1));
+            }
+        } finally {
+            methodWatcher.executeUpdate("drop table STALE_ONLY");
+        }
+    }
+
+    @Test
+    public void testCollectStaleStatisticsOnQuotedIdentifier() throws Exception {
+        TestConnection conn = methodWatcher.getOrCreateConnection();
+        // the background collector delimits the names it collects, doubling embedded quotes
+        String table = "Stale\"Quoted";
+        methodWatcher.executeUpdate("create table " + IdUtil.normalToDelimited(table) + " (a int)");
+        try {
+            methodWatcher.executeUpdate("insert into " + IdUtil.normalToDelimited(table) + " values 1, 2, 3");
+            waitForModificationCounts();
+
+            assertEquals(1, collectStaleStatistics(conn, IdUtil.normalToDelimited(table)));
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "select rowcount from sysvw.systablestatistics where schemaname = ? and tablename = ?")) {
+                ps.setString(1, SCHEMA);
+                ps.setString(2, table);
+                try (ResultSet rs = ps.executeQuery()) {
+                    Assert.assertTrue(rs.next());
+                    assertEquals(3L, rs.getLong(1));
+                }
+            }
+        } finally {
+            methodWatcher.executeUpdate("drop table " + IdUtil.normalToDelimited(table));
+        }
+    }
+
     /* ****************************************************************************************************************/
     /*private helper methods*/
+    private static int collectStaleStatistics(Connection conn, String table) throws Exception {
+        try (CallableStatement cs = conn.prepareCall("call SYSCS_UTIL.COLLECT_TABLE_STATISTICS(?,?,true)")) {
+            cs.setString(1, SCHEMA);
+            cs.setString(2, table);
+            int regions = 0;
+            if (cs.execute()) {
+                try (ResultSet rs = cs.getResultSet()) {
+                    while (rs.next()) {
+                        regions++;
+                    }
+                }
+            }
+            return regions;
+        }
+    }
+
+    /* the rows written to a region are counted by the servers, which periodically add them to shared counters */
+    private static void waitForModificationCounts() throws InterruptedException {
+        Thread.sleep(2 * StatsConfiguration.DEFAULT_MODIFICATION_FLUSH_INTERVAL);
+    }
+
     private void verifyStatsCounts(Connection conn,String schema,String table,int tableStatsCount,int colStatsCount) throws Exception{
         try (
             PreparedStatement check = (table == null) ?
@@ -25,4 +25,34 @@ import javax.management.MXBean;
 @MXBean
 public interface TransactionCacheManagement {
 
+    /**
+     * @return the number of transactions currently cached
+     */
+    int getSize();
+
+    /**
+     * @return the maximum number of transactions the cache will hold
+     */
+    int getMaxSize();
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of lookups which had to go to the transaction store
+     */
+    long getMissCount();
+
+    /**
+     * @return the fraction of lookups answered from the cache
+     */
+    double getHitRate();
+
+    /**
+     * @return the number of transactions dropped to make room for others (including newly completed transactions
+     * which were not admitted because the entry they would have replaced is used more often)
+     */
+    long getEvictionCount();
 }
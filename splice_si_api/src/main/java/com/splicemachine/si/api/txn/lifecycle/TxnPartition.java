@@ -145,6 +145,29 @@ public interface TxnPartition{
      */
     void recordCommit(long txnId,long commitTs) throws IOException;
 
+    /**
+     * Record the commit of several transactions at once, with the same guarantees as
+     * {@link #recordCommit(long, long)} for each of them. Implementations should write all of them in
+     * a single batch.
+     * <p/>
+     * The batch is <em>not</em> atomic: the commit of each transaction is atomic on its own, but if this
+     * method throws, any subset of the transactions may have been committed, and the others are left active.
+     * Callers must therefore not assume the state of any of them after a failure. Before retrying the commit
+     * or rolling a transaction back, they have to read its state again (from within the same external
+     * synchronization as {@link #recordCommit(long, long)}), and take the recorded commit timestamp of a
+     * transaction which turns out to be committed.
+     *
+     * @param txnIds   the transaction ids to commit
+     * @param commitTs the commit timestamp of each transaction, in the same order
+     * @throws IOException if something goes wrong while committing. Some of the transactions may have been
+     *                     committed nonetheless.
+     */
+    default void recordCommits(long[] txnIds,long[] commitTs) throws IOException{
+        for(int i=0;i<txnIds.length;i++){
+            recordCommit(txnIds[i],commitTs[i]);
+        }
+    }
+
     /**
      * Record that the transaction was globally committed, and assign the committed timestamp to it.
      * <p/>
@@ -27,6 +27,9 @@ import com.splicemachine.utils.SpliceLogUtils;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -57,20 +60,34 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
     private final TxnPartition baseStore;
     private final ServerControl serverControl;
     private final TimestampSource timestampSource;
+    private final TxnGroupCommitter groupCommitter;
+    /*
+     * Transactions whose commit timestamp has been acquired but whose commit is not durable yet. They are
+     * committed outside of their stripe lock, so anyone who needs their state waits here instead.
+     */
+    private final ConcurrentMap<Long,CountDownLatch> commitsInFlight=new ConcurrentHashMap<>();
 
     public StripedTxnLifecycleStore(int numPartitions,
                                     TxnPartition baseStore,
                                     ServerControl serverControl,TimestampSource timestampSource){
+        this(numPartitions,baseStore,serverControl,timestampSource,1,0L);
+    }
+
+    public StripedTxnLifecycleStore(int numPartitions,
+                                    TxnPartition baseStore,
+                                    ServerControl serverControl,TimestampSource timestampSource,
+                                    int groupCommitMaxSize,long groupCommitWindowMicros){
         this.lockStriper=LongStripedSynchronizer.stripedReadWriteLock(numPartitions,false);
         this.baseStore=baseStore;
         this.serverControl=serverControl;
         this.timestampSource=timestampSource;
+        this.groupCommitter=new TxnGroupCommitter(baseStore,groupCommitMaxSize,groupCommitWindowMicros);
     }
 
     @Override
     public void beginTransaction(TxnMessage.TxnInfo txn) throws IOException{
         Lock lock=lockStriper.get(txn.getTxnId()).writeLock();
-        acquireLock(lock);
+        acquireLock(lock,txn.getTxnId());
         try{
             baseStore.recordTransaction(txn);
         }finally{
@@ -82,7 +99,7 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
     @Override
     public void elevateTransaction(long txnId,byte[] destTable) throws IOException{
         Lock lock=lockStriper.get(txnId).writeLock();
-        acquireLock(lock);
+        acquireLock(lock,txnId);
         try{
             baseStore.addDestinationTable(txnId,destTable);
         }finally{
@@ -93,7 +110,9 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
     @Override
     public long commitTransaction(long txnId) throws IOException{
         Lock lock=lockStriper.get(txnId).writeLock();
-        acquireLock(lock);
+        acquireLock(lock,txnId);
+        long commitTs;
+        CountDownLatch inFlight=new CountDownLatch(1);
         try{
             Txn.State state=baseStore.getState(txnId);
             if(state==null){
@@ -108,18 +127,34 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
                 SpliceLogUtils.error(LOG,"attempting to commit rolled back txn=%d",txnId);
                 throw baseStore.cannotCommit(txnId, state);
             }
-            long commitTs=timestampSource.nextTimestamp();
-            baseStore.recordCommit(txnId,commitTs);
-            return commitTs;
+            commitTs=timestampSource.nextTimestamp();
+            if(groupCommitter.isGrouping()){
+                /*
+                 * The group committer may wait for the commits of other transactions before writing ours, so
+                 * we release the stripe lock before waiting. Until our commit is durable, the transaction is
+                 * registered as in flight and everybody who touches it waits for the outcome.
+                 */
+                commitsInFlight.put(txnId,inFlight);
+            }else{
+                groupCommitter.commit(txnId,commitTs);
+                return commitTs;
+            }
         }finally{
             unlock(lock);
         }
+        try{
+            groupCommitter.commit(txnId,commitTs);
+            return commitTs;
+        }finally{
+            commitsInFlight.remove(txnId);
+            inFlight.countDown();
+        }
     }
 
     @Override
     public void rollbackTransaction(long txnId) throws IOException{
         Lock lock=lockStriper.get(txnId).writeLock();
-        acquireLock(lock);
+        acquireLock(lock,txnId);
         try{
             Txn.State state=baseStore.getState(txnId);
             if(state==null){
@@ -143,7 +178,7 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
         long beginTS = txnId & SIConstants.TRANSANCTION_ID_MASK;
 
         Lock lock=lockStriper.get(beginTS).writeLock();
-        acquireLock(lock);
+        acquireLock(lock,beginTS);
         try{
             Txn.State state=baseStore.getState(beginTS);
             if(state==null){
@@ -165,7 +200,7 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
     @Override
     public boolean keepAlive(long txnId) throws IOException{
         Lock lock=lockStriper.get(txnId).writeLock();
-        acquireLock(lock);
+        acquireLock(lock,txnId);
         try{
             return baseStore.keepAlive(txnId);
         }finally{
@@ -176,7 +211,7 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
     @Override
     public TxnMessage.Txn getOldTransaction(long txnId) throws IOException {
         Lock lock = lockStriper.get(txnId).readLock();
-        acquireLock(lock);
+        acquireLock(lock,txnId);
         try {
             TxnMessage.Txn txn = baseStore.getTransactionV1(txnId);
             if (txn == null)
@@ -191,7 +226,7 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
     public TxnMessage.Txn getTransaction(long txnId) throws IOException{
         long beginTS = txnId & SIConstants.TRANSANCTION_ID_MASK;
         Lock lock=lockStriper.get(beginTS).readLock();
-        acquireLock(lock);
+        acquireLock(lock,beginTS);
         try{
             TxnMessage.Txn txn=baseStore.getTransaction(txnId);
             if(txn==null)
@@ -206,7 +241,7 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
     public TxnMessage.TaskId getTaskId(long txnId) throws IOException {
         long beginTS = txnId & SIConstants.TRANSANCTION_ID_MASK;
         Lock lock=lockStriper.get(beginTS).readLock();
-        acquireLock(lock);
+        acquireLock(lock,beginTS);
         try{
             TxnMessage.TaskId taskId=baseStore.getTaskId(txnId);
             if(taskId==null)
@@ -243,6 +278,26 @@ public class StripedTxnLifecycleStore implements TxnLifecycleStore{
         serverControl.stopOperation();
     }
 
+    /**
+     * Acquires the stripe lock of the transaction. If the transaction has a commit in flight, waits for its
+     * outcome first, so the lock is only returned once the transaction is either committed or still active.
+     */
+    private void acquireLock(Lock lock,long txnId) throws IOException{
+        while(true){
+            acquireLock(lock);
+            CountDownLatch inFlight=commitsInFlight.get(txnId);
+            if(inFlight==null)
+                return;
+            unlock(lock);
+            try{
+                inFlight.await();
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+
     private void acquireLock(Lock lock) throws IOException{
         //make sure that the region doesn't close while we are working on it
 
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.si.impl.data;
+
+import com.splicemachine.si.api.txn.lifecycle.TxnPartition;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the commits of concurrent transactions in groups.
+ *
+ * The first committer to arrive becomes the leader of a group. It waits up to the commit window for other
+ * committers to join (or until the group is full), then writes all the commits with a single batched mutation and
+ * wakes up the members of the group. Committers which arrive while a group is being written wait for the next group,
+ * whose leader is the oldest of them.
+ *
+ * Every committer brings its own commit timestamp, so the caller can acquire it while it holds the transaction
+ * and release the transaction before waiting for its group. If the group cannot be written, every member of the
+ * group fails with the same error, although some of them may have been committed (see
+ * {@link TxnPartition#recordCommits(long[], long[])}). A failed member may retry: the caller reads the state of
+ * the transaction again under its lock first, so a transaction which was committed keeps its recorded commit
+ * timestamp and is not committed again.
+ */
+@ThreadSafe
+public class TxnGroupCommitter{
+    private final TxnPartition store;
+    private final int maxGroupSize;
+    private final long windowNanos;
+
+    private final Object groupLock=new Object();
+    // guarded by groupLock
+    private final List<PendingCommit> pending=new ArrayList<>();
+    private boolean leaderActive;
+
+    /**
+     * @param maxGroupSize the maximum number of commits written together. A size of 1 or less disables grouping.
+     * @param windowMicros how long the leader of a group waits for other commits to join it. With a window of 0,
+     *                     a group only holds the commits which arrived while the previous group was being written.
+     */
+    public TxnGroupCommitter(TxnPartition store,int maxGroupSize,long windowMicros){
+        this.store=store;
+        this.maxGroupSize=maxGroupSize;
+        this.windowNanos=TimeUnit.MICROSECONDS.toNanos(Math.max(0L,windowMicros));
+    }
+
+    public boolean isGrouping(){
+        return maxGroupSize>1;
+    }
+
+    /**
+     * Commits the transaction at the given timestamp, waiting until the group containing it is durable.
+     *
+     * @throws IOException if the group containing the transaction could not be written
+     */
+    public void commit(long txnId,long commitTs) throws IOException{
+        if(!isGrouping()){
+            store.recordCommit(txnId,commitTs);
+            return;
+        }
+        PendingCommit commit=new PendingCommit(txnId,commitTs);
+        boolean interrupted=false;
+        boolean lead;
+        synchronized(groupLock){
+            pending.add(commit);
+            if(leaderActive){
+                if(pending.size()>=maxGroupSize)
+                    groupLock.notifyAll(); // a leader waiting for its group to fill up can stop waiting
+                while(!commit.done && !commit.leader){
+                    try{
+                        groupLock.wait();
+                    }catch(InterruptedException ie){
+                        // the commit is already queued, we have to wait for its outcome
+                        interrupted=true;
+                    }
+                }
+            }else{
+                leaderActive=true;
+                commit.leader=true;
+            }
+            lead=!commit.done;
+        }
+        try{
+            if(lead)
+                interrupted|=writeGroup();
+            commit.checkError();
+        }finally{
+            if(interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the next group as its leader, then hands the leadership to the oldest waiting commit.
+     *
+     * @return true if the thread was interrupted while waiting for the group to fill up
+     */
+    private boolean writeGroup(){
+        boolean interrupted=false;
+        List<PendingCommit> group;
+        synchronized(groupLock){
+            long remaining=windowNanos;
+            long deadline=System.nanoTime()+remaining;
+            while(pending.size()<maxGroupSize && remaining>0){
+                try{
+                    TimeUnit.NANOSECONDS.timedWait(groupLock,remaining);
+                }catch(InterruptedException ie){
+                    interrupted=true;
+                    break;
+                }
+                remaining=deadline-System.nanoTime();
+            }
+            int size=Math.min(pending.size(),maxGroupSize);
+            group=new ArrayList<>(pending.subList(0,size));
+            pending.subList(0,size).clear();
+        }
+
+        long[] txnIds=new long[group.size()];
+        long[] commitTimestamps=new long[group.size()];
+        for(int i=0;i<txnIds.length;i++){
+            txnIds[i]=group.get(i).txnId;
+            commitTimestamps[i]=group.get(i).commitTs;
+        }
+        IOException error=null;
+        try{
+            store.recordCommits(txnIds,commitTimestamps);
+        }catch(IOException ioe){
+            error=ioe;
+        }catch(RuntimeException re){
+            error=new IOException(re);
+        }
+
+        synchronized(groupLock){
+            for(int i=0;i<group.size();i++){
+                PendingCommit commit=group.get(i);
+                commit.error=error;
+                commit.done=true;
+            }
+            if(pending.isEmpty())
+                leaderActive=false;
+            else
+                pending.get(0).leader=true;
+            groupLock.notifyAll();
+        }
+        return interrupted;
+    }
+
+    private static class PendingCommit{
+        private final long txnId;
+        private final long commitTs;
+        // guarded by groupLock
+        private boolean leader;
+        private boolean done;
+        private IOException error;
+
+        PendingCommit(long txnId,long commitTs){
+            this.txnId=txnId;
+            this.commitTs=commitTs;
+        }
+
+        void checkError() throws IOException{
+            if(error!=null)
+                throw error; // shared by the group, rethrown as is so callers can tell retryable errors apart
+        }
+    }
+}
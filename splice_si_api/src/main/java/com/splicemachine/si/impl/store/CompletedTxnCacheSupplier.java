@@ -14,57 +14,84 @@
 
 package com.splicemachine.si.impl.store;
 
-import com.splicemachine.hash.Hash32;
-import com.splicemachine.hash.HashFunctions;
 import com.splicemachine.si.api.txn.TaskId;
+import com.splicemachine.si.api.txn.TransactionCacheManagement;
 import com.splicemachine.si.api.txn.Txn;
 import com.splicemachine.si.api.txn.TxnSupplier;
 import com.splicemachine.si.api.txn.TxnView;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * TxnSupplier which caches transaction which have "Completed"--i.e. which have entered the COMMITTED or ROLLEDBACK
  * state.
  * <p/>
+ * The cache is split into independently locked segments. Each segment keeps its entries in preallocated,
+ * txn id keyed arrays and evicts with a W-TinyLFU policy: new entries enter a small LRU window, and when the
+ * segment is full the entry leaving the window only replaces the victim of the main segmented LRU
+ * (probation + protected) if a frequency sketch says it has been asked for more often. A large scan over
+ * one-off transactions therefore cannot push out the hot, long-lived ones.
+ * <p/>
+ * Lookups take no lock and allocate nothing; they only bump the sketch and set a reference bit, which
+ * writers use to reorder the queues when looking for a victim.
+ * <p/>
  * This class is thread-safe, and safe to be shared between many threads.
  *
  * @author Scott Fines
  *         Date: 6/18/14
  */
-public class CompletedTxnCacheSupplier implements TxnSupplier{
-    private TxnView[] cache;
+public class CompletedTxnCacheSupplier implements TxnSupplier, TransactionCacheManagement{
+    private static final int MIN_SEGMENT_SIZE = 64;
+
+    private final Segment[] segments;
+    private final int segmentShift;
     private final TxnSupplier delegate;
-    private Hash32 hashFunction;
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
     public CompletedTxnCacheSupplier(TxnSupplier delegate, int maxSize, int concurrencyLevel) {
-        cache = new TxnView[Integer.highestOneBit(maxSize)];    // ensure power of 2
         this.delegate = delegate;
-        hashFunction = HashFunctions.utilHash();
+        this.maxSize = Math.max(1, maxSize);
+
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && this.maxSize / (segmentCount << 1) >= MIN_SEGMENT_SIZE)
+            segmentCount <<= 1;
+        this.segments = new Segment[segmentCount];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        int segmentSize = (this.maxSize + segmentCount - 1) / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
     }
 
-    private int idx(long val) {
-        return hashFunction.hash(val) & (cache.length - 1);
+    private static int hash(long txnId) {
+        // transaction ids share their low bits, so mix all of them into the segment (high) and bucket (low) bits
+        long h = txnId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
     }
 
-    private int idx2(long val, int idx) {
-        return (int)(val + idx) & (cache.length - 1);
+    private Segment segmentFor(int hash) {
+        // the high bits pick the segment, the low bits the bucket within it
+        return segmentShift == 32 ? segments[0] : segments[hash >>> segmentShift];
     }
 
     private TxnView get(long key) {
-        int idx = idx(key);
-        TxnView txn = cache[idx];   // safe to do without synchronization (JLS 17.7)
-        if (txn != null && txn.getTxnId() == key) return txn;
-        idx = idx2(key, idx);
-        txn = cache[idx];
-        return txn != null && txn.getTxnId() == key ? txn : null;
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
     }
 
     private void put(long key, TxnView txn) {
-        int idx = idx(key);
-        cache[idx] = txn;           // safe to do without synchronization (JLS 17.7)
-        idx = idx2(key, idx);
-        cache[idx] = txn;
+        int hash = hash(key);
+        segmentFor(hash).put(key, hash, txn);
     }
 
     @Override
@@ -79,8 +106,10 @@ public class CompletedTxnCacheSupplier implements TxnSupplier{
         }
         TxnView transaction = get(txnId);
         if (transaction != null) {
+            hits.increment();
             return transaction;
         }
+        misses.increment();
 
         // Not in the cache, need to check the delegate
         transaction = delegate.getTransaction(txnId, getDestinationTables);
@@ -117,4 +146,358 @@ public class CompletedTxnCacheSupplier implements TxnSupplier{
     public TaskId getTaskId(long txnId) throws IOException {
         return delegate.getTaskId(txnId);
     }
+
+    /* ****************************************************************************************************************/
+    /*JMX*/
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 1.0d : (double) h / total;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            evictions += segment.evictions;
+        }
+        return evictions;
+    }
+
+    /* ****************************************************************************************************************/
+    /*private helper classes*/
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+    private static final int NONE = -1;
+
+    /**
+     * One independently locked part of the cache.
+     *
+     * Entries live in parallel arrays indexed by a slot number, and are chained off a bucket array for lookup.
+     * Every slot is also linked into one of three LRU queues (head = most recent). All structural changes happen
+     * while holding the segment's monitor; readers walk the chains without locking and verify the txn id on the
+     * TxnView they find, so a racing writer can only cause a spurious miss.
+     */
+    private static final class Segment {
+        private final int capacity;
+        private final int windowMax;
+        private final int protectedMax;
+
+        private final long[] keys;
+        private final TxnView[] values;
+        private final int[] chain;
+        private final int[] buckets;
+        private final int bucketMask;
+
+        private final int[] prev;
+        private final int[] next;
+        private final byte[] queue;
+        private final boolean[] referenced;
+        private final int[] heads = {NONE, NONE, NONE};
+        private final int[] tails = {NONE, NONE, NONE};
+        private final FrequencySketch sketch;
+
+        private int freeHead;
+        private int windowSize;
+        private int protectedSize;
+        private volatile int size;
+        private volatile long evictions;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.windowMax = Math.max(1, capacity / 100);
+            this.protectedMax = (int) ((capacity - windowMax) * 0.8d);
+
+            this.keys = new long[capacity];
+            this.values = new TxnView[capacity];
+            this.chain = new int[capacity];
+            this.prev = new int[capacity];
+            this.next = new int[capacity];
+            this.queue = new byte[capacity];
+            this.referenced = new boolean[capacity];
+            int bucketCount = Integer.highestOneBit(Math.max(1, capacity - 1) << 1);
+            this.buckets = new int[bucketCount];
+            this.bucketMask = bucketCount - 1;
+            Arrays.fill(buckets, NONE);
+            Arrays.fill(chain, NONE);
+            // thread all slots onto the free list
+            for (int i = 0; i < capacity; i++) {
+                next[i] = i + 1 < capacity ? i + 1 : NONE;
+            }
+            this.freeHead = 0;
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        TxnView get(long key, int hash) {
+            if (size == 0) // volatile read, pairs with the write at the end of put()
+                return null;
+            sketch.increment(hash);
+            int slot = buckets[hash & bucketMask];
+            // bound the walk, a concurrent writer may be relinking the chain under us
+            for (int i = 0; slot != NONE && i < capacity; i++) {
+                if (keys[slot] == key) {
+                    TxnView txn = values[slot];
+                    if (txn != null && txn.getTxnId() == key) {
+                        if (!referenced[slot]) // avoid dirtying the cache line on every hit
+                            referenced[slot] = true;
+                        return txn;
+                    }
+                }
+                slot = chain[slot];
+            }
+            return null;
+        }
+
+        synchronized void put(long key, int hash, TxnView txn) {
+            int slot = find(key, hash);
+            if (slot != NONE) {
+                values[slot] = txn;
+                return;
+            }
+            if (freeHead == NONE)
+                makeRoom();
+            slot = freeHead;
+            freeHead = next[slot];
+
+            keys[slot] = key;
+            values[slot] = txn;
+            referenced[slot] = false;
+            int bucket = hash & bucketMask;
+            chain[slot] = buckets[bucket];
+            buckets[bucket] = slot;
+            linkHead(slot, WINDOW);
+            windowSize++;
+            if (windowSize > windowMax) {
+                // there is still room, the window's oldest entry moves to the main space for free
+                leaveWindow(tails[WINDOW]);
+            }
+            size = size + 1;
+        }
+
+        private void leaveWindow(int slot) {
+            // reads while in the window only made it recent, it has to be read again to earn protection
+            moveToHead(slot, PROBATION);
+            referenced[slot] = false;
+            windowSize--;
+        }
+
+        private int find(long key, int hash) {
+            for (int slot = buckets[hash & bucketMask]; slot != NONE; slot = chain[slot]) {
+                if (keys[slot] == key)
+                    return slot;
+            }
+            return NONE;
+        }
+
+        /**
+         * Free one slot in a full segment. The oldest window entry competes with the main space's victim, and
+         * whichever the sketch has seen less often is evicted.
+         */
+        private void makeRoom() {
+            int victim = mainVictim();
+            int candidate = tails[WINDOW];
+            if (candidate == NONE) {
+                evict(victim);
+            } else if (victim == NONE) {
+                evict(candidate);
+                windowSize--;
+            } else {
+                leaveWindow(candidate);
+                if (sketch.frequency(hashOf(candidate)) > sketch.frequency(hashOf(victim)))
+                    evict(victim);
+                else
+                    evict(candidate);
+            }
+        }
+
+        /**
+         * @return the least recently used probation entry that has not been read since it got there. Entries that
+         * have been read are promoted to the protected queue on the way, which in turn demotes its oldest entries.
+         */
+        private int mainVictim() {
+            for (int i = 0; i < capacity; i++) {
+                int slot = tails[PROBATION];
+                if (slot == NONE) {
+                    slot = tails[PROTECTED];
+                    if (slot == NONE)
+                        return NONE;
+                    moveToHead(slot, PROBATION);
+                    protectedSize--;
+                    referenced[slot] = false;
+                    continue;
+                }
+                if (!referenced[slot])
+                    return slot;
+                referenced[slot] = false;
+                moveToHead(slot, PROTECTED);
+                protectedSize++;
+                demoteProtected();
+            }
+            return tails[PROBATION];
+        }
+
+        private void demoteProtected() {
+            int chances = protectedSize;
+            while (protectedSize > protectedMax) {
+                int slot = tails[PROTECTED];
+                if (referenced[slot] && chances-- > 0) {
+                    referenced[slot] = false;
+                    moveToHead(slot, PROTECTED);
+                } else {
+                    moveToHead(slot, PROBATION);
+                    protectedSize--;
+                }
+            }
+        }
+
+        private void evict(int slot) {
+            int bucket = hashOf(slot) & bucketMask;
+            if (buckets[bucket] == slot) {
+                buckets[bucket] = chain[slot];
+            } else {
+                int p = buckets[bucket];
+                while (chain[p] != slot)
+                    p = chain[p];
+                chain[p] = chain[slot];
+            }
+            // leave chain[slot] alone, a reader may still be walking through this slot
+            unlink(slot);
+            values[slot] = null;
+            next[slot] = freeHead;
+            freeHead = slot;
+            size = size - 1;
+            evictions = evictions + 1;
+        }
+
+        private int hashOf(int slot) {
+            return hash(keys[slot]);
+        }
+
+        private void moveToHead(int slot, byte target) {
+            unlink(slot);
+            linkHead(slot, target);
+        }
+
+        private void linkHead(int slot, byte target) {
+            queue[slot] = target;
+            int head = heads[target];
+            prev[slot] = NONE;
+            next[slot] = head;
+            if (head != NONE)
+                prev[head] = slot;
+            else
+                tails[target] = slot;
+            heads[target] = slot;
+        }
+
+        private void unlink(int slot) {
+            byte q = queue[slot];
+            int p = prev[slot];
+            int n = next[slot];
+            if (p != NONE)
+                next[p] = n;
+            else
+                heads[q] = n;
+            if (n != NONE)
+                prev[n] = p;
+            else
+                tails[q] = p;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters estimating how often a txn id has been looked up recently. All counters
+     * are halved once the number of increments reaches ten times the segment's capacity, so old popularity fades.
+     *
+     * The four counters of a txn id sit in four adjacent words, so an update touches a single cache line. Updates
+     * are deliberately unsynchronized; a lost increment only makes the estimate slightly lower.
+     */
+    private static final class FrequencySketch {
+        private static final long SEED = 0x9e3779b97f4a7c15L;
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int blockMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            // 16 counters per word, 4 words per block: a block per entry gives 16 counters per entry and row
+            int blocks = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+            this.table = new long[blocks << 2];
+            this.blockMask = blocks - 1;
+            this.sampleSize = 10 * Math.max(capacity, 8);
+        }
+
+        int frequency(int hash) {
+            int block = blockOf(hash);
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                long word = table[block + i];
+                frequency = Math.min(frequency, (int) ((word >>> offsetOf(hash, i)) & 0xfL));
+            }
+            return frequency;
+        }
+
+        void increment(int hash) {
+            int block = blockOf(hash);
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int offset = offsetOf(hash, i);
+                long word = table[block + i];
+                if (((word >>> offset) & 0xfL) != 0xfL) {
+                    table[block + i] = word + (1L << offset);
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize)
+                reset();
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions = additions >>> 1;
+        }
+
+        private int blockOf(int hash) {
+            // the segment hash has constant high bits and is used for the buckets; rehash before picking a block
+            long h = hash * SEED;
+            return ((int) (h >>> 32) & blockMask) << 2;
+        }
+
+        private static int offsetOf(int hash, int i) {
+            // one of the 16 counters in the word, picked from a different byte of the hash per row
+            return ((hash >>> (i << 3)) & 0xf) << 2;
+        }
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.si.impl.data;
+
+import com.splicemachine.si.api.txn.lifecycle.TxnPartition;
+import com.splicemachine.si.testenv.ArchitectureIndependent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+@Category(ArchitectureIndependent.class)
+public class TxnGroupCommitterTest{
+
+    @Test
+    public void commitsConcurrentTransactionsInGroups() throws Exception{
+        final Map<Long, Long> commits=new ConcurrentHashMap<>();
+        final AtomicInteger writes=new AtomicInteger();
+        TxnPartition store=mock(TxnPartition.class);
+        doAnswer(new Answer<Void>(){
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable{
+                long[] txnIds=(long[])invocation.getArguments()[0];
+                long[] commitTs=(long[])invocation.getArguments()[1];
+                Assert.assertEquals("Each transaction needs a timestamp",txnIds.length,commitTs.length);
+                Assert.assertTrue("Group is too large",txnIds.length<=8);
+                for(int i=0;i<txnIds.length;i++){
+                    Assert.assertNull("Transaction committed twice",commits.put(txnIds[i],commitTs[i]));
+                }
+                writes.incrementAndGet();
+                Thread.sleep(1);
+                return null;
+            }
+        }).when(store).recordCommits(any(long[].class),any(long[].class));
+
+        final TxnGroupCommitter committer=new TxnGroupCommitter(store,8,500L);
+        final AtomicLong timestamps=new AtomicLong();
+        int threads=16;
+        final int commitsPerThread=50;
+        ExecutorService executor=Executors.newFixedThreadPool(threads);
+        try{
+            List<Future<Void>> futures=new ArrayList<>(threads);
+            for(int t=0;t<threads;t++){
+                final long firstTxnId=(t+1)*1000L;
+                futures.add(executor.submit(new Callable<Void>(){
+                    @Override
+                    public Void call() throws Exception{
+                        for(long txnId=firstTxnId;txnId<firstTxnId+commitsPerThread;txnId++){
+                            long commitTs=timestamps.incrementAndGet();
+                            committer.commit(txnId,commitTs);
+                            Assert.assertEquals("Incorrect commit timestamp written",(Long)commitTs,commits.get(txnId));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for(Future<Void> future : futures){
+                future.get();
+            }
+        }finally{
+            executor.shutdownNow();
+        }
+        Assert.assertEquals("Missing commits",threads*commitsPerThread,commits.size());
+        Assert.assertEquals("Commit timestamps are not unique",commits.size(),
+                new HashSet<>(commits.values()).size());
+        Assert.assertTrue("Commits were not grouped",writes.get()<commits.size());
+    }
+
+    @Test
+    public void failsTheWholeGroup() throws Exception{
+        TxnPartition store=mock(TxnPartition.class);
+        doAnswer(new Answer<Void>(){
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable{
+                throw new IOException("region is closing");
+            }
+        }).when(store).recordCommits(any(long[].class),any(long[].class));
+
+        TxnGroupCommitter committer=new TxnGroupCommitter(store,8,0L);
+        try{
+            committer.commit(1L,2L);
+            Assert.fail("Expected the commit to fail");
+        }catch(IOException expected){
+            Assert.assertEquals("region is closing",expected.getMessage());
+        }
+        // the committer recovers once the store does
+        doAnswer(new Answer<Void>(){
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable{
+                return null;
+            }
+        }).when(store).recordCommits(any(long[].class),any(long[].class));
+        committer.commit(1L,3L);
+    }
+}
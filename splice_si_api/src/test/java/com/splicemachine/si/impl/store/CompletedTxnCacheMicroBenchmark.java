@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.si.impl.store;
+
+import com.splicemachine.hash.Hash32;
+import com.splicemachine.hash.HashFunctions;
+import com.splicemachine.si.api.txn.TaskId;
+import com.splicemachine.si.api.txn.TxnSupplier;
+import com.splicemachine.si.api.txn.TxnView;
+import com.splicemachine.si.impl.txn.CommittedTxn;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the completed transaction cache against the direct-mapped cache it replaced, on a read mix that
+ * looks like scans: most rows were written by a set of long-lived transactions, interleaved with regions
+ * written by a large batch of short transactions that are never seen again.
+ *
+ * Run by hand with {@code main}, optionally passing the cache size, thread count, lookups per thread and the
+ * simulated cost of a transaction store lookup in microseconds. Reports throughput and how many lookups had
+ * to go to the transaction store.
+ */
+public class CompletedTxnCacheMicroBenchmark {
+
+    public static void main(String... args) throws Exception {
+        int cacheSize = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 14;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 5000000;
+        long storeNanos = TimeUnit.MICROSECONDS.toNanos(args.length > 3 ? Long.parseLong(args[3]) : 0L);
+
+        for (int run = 0; run < 3; run++) { // the first runs are warm up
+            System.out.printf("-------%nRun %d%n", run);
+            StoreSimulator store = new StoreSimulator(storeNanos);
+            benchmark("DirectMapped", new DirectMappedTxnCacheSupplier(store, cacheSize), store,
+                    cacheSize, threads, lookups);
+            store = new StoreSimulator(storeNanos);
+            benchmark("CompletedTxnCache", new CompletedTxnCacheSupplier(store, cacheSize, threads), store,
+                    cacheSize, threads, lookups);
+        }
+    }
+
+    private static void benchmark(String name, final TxnSupplier cache, StoreSimulator store,
+                                  final int cacheSize, int threadCount, final int lookups) throws InterruptedException {
+        Thread[] threads = new Thread[threadCount];
+        final long[] checksum = new long[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int threadId = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    ScanMix mix = new ScanMix(threadId, cacheSize);
+                    long sum = 0;
+                    try {
+                        for (int i = 0; i < lookups; i++) {
+                            sum += cache.getTransaction(mix.next()).getTxnId();
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    checksum[threadId] = sum;
+                }
+            };
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        long total = (long) lookups * threadCount;
+        long sum = 0;
+        for (long c : checksum) {
+            sum += c;
+        }
+        System.out.printf("%-20s %8.2f M lookups/s, %5.2f%% store lookups (checksum %d)%n", name,
+                total * 1000d / elapsed, 100d * store.lookups.sum() / total, sum);
+    }
+
+    /**
+     * Reads rows of long-lived transactions (half as many as the cache holds) for a while, then scans a region
+     * loaded by a batch of twice as many one-off transactions as the cache holds, each of which wrote a few rows.
+     */
+    private static class ScanMix {
+        private static final int ROWS_PER_BATCH_TXN = 4;
+
+        private final Random random;
+        private final int hotTxns;
+        private final int hotLookups;
+        private final int batchLookups;
+        private long cold;
+        private int position;
+
+        ScanMix(int seed, int cacheSize) {
+            this.random = new Random(seed);
+            this.hotTxns = Math.max(1, cacheSize / 2);
+            this.hotLookups = 20 * cacheSize;
+            this.batchLookups = 2 * cacheSize * ROWS_PER_BATCH_TXN;
+            this.cold = 1000000000L * (seed + 1);
+        }
+
+        long next() {
+            int p = position++;
+            if (p < hotLookups)
+                return 1 + random.nextInt(hotTxns);
+            if (p + 1 == hotLookups + batchLookups)
+                position = 0;
+            if ((p - hotLookups) % ROWS_PER_BATCH_TXN == 0)
+                cold++;
+            return cold;
+        }
+    }
+
+    private static class StoreSimulator implements TxnSupplier {
+        private final LongAdder lookups = new LongAdder();
+        private final long latencyNanos;
+
+        StoreSimulator(long latencyNanos) {
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public TxnView getTransaction(long txnId) throws IOException {
+            return getTransaction(txnId, false);
+        }
+
+        @Override
+        public TxnView getTransaction(long txnId, boolean getDestinationTables) throws IOException {
+            lookups.increment();
+            if (latencyNanos > 0) {
+                long end = System.nanoTime() + latencyNanos;
+                while (System.nanoTime() < end) {
+                    // simulate the round trip to the transaction table
+                }
+            }
+            return new CommittedTxn(txnId, txnId + 1);
+        }
+
+        @Override
+        public boolean transactionCached(long txnId) {
+            return false;
+        }
+
+        @Override
+        public void cache(TxnView toCache) {
+        }
+
+        @Override
+        public TxnView getTransactionFromCache(long txnId) {
+            return null;
+        }
+
+        @Override
+        public TaskId getTaskId(long txnId) throws IOException {
+            return null;
+        }
+    }
+
+    /**
+     * The previous implementation of CompletedTxnCacheSupplier, kept here as the baseline: a fixed-size array with
+     * two slots per transaction id where any collision overwrites.
+     */
+    private static class DirectMappedTxnCacheSupplier extends StoreSimulator {
+        private final TxnView[] cache;
+        private final TxnSupplier delegate;
+        private final Hash32 hashFunction = HashFunctions.utilHash();
+
+        DirectMappedTxnCacheSupplier(TxnSupplier delegate, int maxSize) {
+            super(0L);
+            this.cache = new TxnView[Integer.highestOneBit(maxSize)];
+            this.delegate = delegate;
+        }
+
+        @Override
+        public TxnView getTransaction(long txnId, boolean getDestinationTables) throws IOException {
+            int idx = hashFunction.hash(txnId) & (cache.length - 1);
+            TxnView txn = cache[idx];
+            if (txn != null && txn.getTxnId() == txnId) return txn;
+            int idx2 = (int) (txnId + idx) & (cache.length - 1);
+            txn = cache[idx2];
+            if (txn != null && txn.getTxnId() == txnId) return txn;
+
+            txn = delegate.getTransaction(txnId, getDestinationTables);
+            cache[idx] = txn;
+            cache[idx2] = txn;
+            return txn;
+        }
+    }
+}
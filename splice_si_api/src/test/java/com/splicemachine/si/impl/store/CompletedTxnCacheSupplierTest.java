@@ -16,6 +16,7 @@ package com.splicemachine.si.impl.store;
 
 import com.splicemachine.concurrent.IncrementingClock;
 import com.splicemachine.si.api.txn.*;
+import com.splicemachine.si.impl.txn.CommittedTxn;
 import com.splicemachine.si.impl.txn.WritableTxn;
 import com.splicemachine.si.testenv.ArchitectureIndependent;
 import org.junit.Assert;
@@ -25,6 +26,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.splicemachine.si.impl.TxnTestUtils.assertTxnsMatch;
@@ -159,4 +161,112 @@ public class CompletedTxnCacheSupplierTest{
         TxnView fromCache=store.getTransaction(txn.getTxnId());
         assertTxnsMatch("Transaction from store is not correct!",txn,fromCache);
     }
+
+    @Test
+    public void testHotTransactionsSurviveScan() throws Exception{
+        CountingTxnSupplier backStore=new CountingTxnSupplier();
+        CompletedTxnCacheSupplier store=new CompletedTxnCacheSupplier(backStore,1000,4);
+
+        //a handful of long-lived transactions which show up on most rows
+        for(int round=0;round<10;round++){
+            for(long hot=1;hot<=50;hot++){
+                store.getTransaction(hot);
+            }
+        }
+        //a large batch of one-off transactions, far more than the cache can hold
+        for(long cold=1000;cold<21000;cold++){
+            store.getTransaction(cold);
+        }
+
+        backStore.lookups=0;
+        for(long hot=1;hot<=50;hot++){
+            Assert.assertNotNull("Hot transaction "+hot+" was evicted by the scan",store.getTransactionFromCache(hot));
+            store.getTransaction(hot);
+        }
+        Assert.assertEquals("Hot transactions should be served from cache",0,backStore.lookups);
+        Assert.assertTrue("Cache exceeded its size",store.getSize()<=1000);
+        Assert.assertTrue("Expected evictions",store.getEvictionCount()>0);
+    }
+
+    @Test
+    public void testRecordsHitsAndMisses() throws Exception{
+        CountingTxnSupplier backStore=new CountingTxnSupplier();
+        CompletedTxnCacheSupplier store=new CompletedTxnCacheSupplier(backStore,100,1);
+
+        store.getTransaction(1);
+        store.getTransaction(1);
+        store.getTransaction(1);
+        store.getTransaction(2);
+
+        Assert.assertEquals(2,store.getMissCount());
+        Assert.assertEquals(2,store.getHitCount());
+        Assert.assertEquals(0.5d,store.getHitRate(),0.0001d);
+        Assert.assertEquals(2,store.getSize());
+        Assert.assertEquals(2,backStore.lookups);
+    }
+
+    @Test
+    public void testConcurrentAccessReturnsCorrectTransactions() throws Exception{
+        final CompletedTxnCacheSupplier store=new CompletedTxnCacheSupplier(new CountingTxnSupplier(),256,4);
+        final AtomicLong failures=new AtomicLong();
+        Thread[] threads=new Thread[4];
+        for(int t=0;t<threads.length;t++){
+            final long seed=t;
+            threads[t]=new Thread(){
+                @Override
+                public void run(){
+                    Random random=new Random(seed);
+                    try{
+                        for(int i=0;i<50000;i++){
+                            long txnId=1+random.nextInt(2000);
+                            if(store.getTransaction(txnId).getTxnId()!=txnId)
+                                failures.incrementAndGet();
+                        }
+                    }catch(IOException e){
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        Assert.assertEquals("Cache returned the wrong transaction",0,failures.get());
+        Assert.assertTrue("Cache exceeded its size",store.getSize()<=256);
+    }
+
+    private static class CountingTxnSupplier implements TxnSupplier{
+        private volatile int lookups;
+
+        @Override
+        public TxnView getTransaction(long txnId) throws IOException{
+            return getTransaction(txnId,false);
+        }
+
+        @Override
+        public TxnView getTransaction(long txnId,boolean getDestinationTables) throws IOException{
+            lookups++;
+            return new CommittedTxn(txnId,txnId+1);
+        }
+
+        @Override
+        public boolean transactionCached(long txnId){
+            return false;
+        }
+
+        @Override
+        public void cache(TxnView toCache){
+        }
+
+        @Override
+        public TxnView getTransactionFromCache(long txnId){
+            return null;
+        }
+
+        @Override
+        public TaskId getTaskId(long txnId) throws IOException{
+            return null;
+        }
+    }
 }
@@ -29,5 +29,27 @@ public interface TimestampClientStatistics{
 	long getNumberTimestampRequests();
 	
  	double getAvgTimestampRequestDuration();
+
+    /**
+     * Returns the number of range requests sent to the server, each of them
+     * serving several coalesced callers.
+     *
+     * @return number of range requests
+     */
+    long getNumberRangeRequests();
+
+    /**
+     * Returns the number of timestamps handed out from range requests.
+     *
+     * @return number of coalesced timestamps
+     */
+    long getNumberCoalescedTimestamps();
+
+    /**
+     * Returns the average number of callers served by a single range request.
+     *
+     * @return coalescing factor
+     */
+    double getAvgCoalescingFactor();
 	
 }
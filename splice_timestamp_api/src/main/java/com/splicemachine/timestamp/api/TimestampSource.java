@@ -20,6 +20,19 @@ package com.splicemachine.timestamp.api;
 public interface TimestampSource {
     long currentTimestamp();
     long nextTimestamp();
+
+    /**
+     * Generates {@code count} timestamps at once, in increasing order. Sources which can fetch a range of
+     * timestamps in one request should override this.
+     */
+    default long[] nextTimestamps(int count) {
+        long[] timestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = nextTimestamp();
+        }
+        return timestamps;
+    }
+
     void rememberTimestamp(long timestamp);
     long retrieveTimestamp();
     void shutdown();
@@ -16,6 +16,11 @@ package com.splicemachine.timestamp.impl;
 
 import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -50,6 +55,13 @@ import org.apache.log4j.Logger;
  * For the caller, the invocation of {@link #getNextTimestamp()}
  * is synchronous.
  * <p>
+ * When constructed with a batch size greater than one, concurrent callers of
+ * {@link #getNextTimestamp()} are coalesced: callers arriving while a request is
+ * in flight are queued, and the whole queue is then served by a single range
+ * request, each caller receiving a distinct timestamp of the returned range.
+ * Only callers which were already waiting when the request was sent share it,
+ * so every timestamp is still allocated by the server after its caller asked for it.
+ * <p>
  * This class should generally not be constructed directly.
  *
  * @author Walt Koetke
@@ -64,6 +76,16 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
 
     private static final short CLIENT_COUNTER_INIT = 100; // actual value doesn't matter
 
+    /**
+     * Coalesced callers don't own a caller id, the id belongs to the range request serving them.
+     */
+    private static final short COALESCED_CALLER_ID = -1;
+
+    /**
+     * Largest range we can ask for, the size is sent over the wire as an unsigned short.
+     */
+    private static final int MAX_RANGE_SIZE = 0xFFFF;
+
     /**
      * Fixed number of bytes in the message we expect to receive back from the server.
      */
@@ -98,16 +120,34 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
 
     int timeoutMillis;
 
+    /**
+     * Maximum number of callers served by a single range request, coalescing is disabled if lower than 2.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * Callers waiting for the next range request. Guarded by itself, as is {@link #rangeRequestInFlight}.
+     */
+    private final List<ClientCallback> pendingCallers = new ArrayList<>();
+    private boolean rangeRequestInFlight = false;
+
     // Metrics to expose via JMX. See TimestampClientStatistics
     // for solid definitions of each metric.
     private AtomicLong numRequests = new AtomicLong(0);
     private AtomicLong totalRequestDuration = new AtomicLong(0);
+    private AtomicLong numRangeRequests = new AtomicLong(0);
+    private AtomicLong numCoalescedTimestamps = new AtomicLong(0);
     private TimestampHostProvider timestampHostProvider;
 
 
     public TimestampClient(int timeoutMillis,TimestampHostProvider timestampHostProvider) {
+        this(timeoutMillis, timestampHostProvider, 1);
+    }
+
+    public TimestampClient(int timeoutMillis,TimestampHostProvider timestampHostProvider, int maxBatchSize) {
         this.timeoutMillis = timeoutMillis;
         this.timestampHostProvider = timestampHostProvider;
+        this.maxBatchSize = Math.min(maxBatchSize, MAX_RANGE_SIZE);
         clientCallbacks = new ConcurrentHashMap<>();
         
         ExecutorService workerExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("timestampClient-worker-%d").setDaemon(true).build());
@@ -202,7 +242,8 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
                 SpliceLogUtils.info(LOG, "Attempting to connect to server (host %s, port %s)", timestampHostProvider.getHost(), getPort());
             }
 
-            // clear clientCallback mappings
+            // clear clientCallback mappings, releasing the callers coalesced in range requests
+            failRangeRequests(new TimestampIOException("Reconnecting to TimestampServer"));
             clientCallbacks.clear();
 
             ChannelFuture futureConnect = bootstrap.connect(new InetSocketAddress(timestampHostProvider.getHost(), getPort()));
@@ -239,7 +280,9 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
     }
 
     public long getNextTimestamp() throws TimestampIOException {
-
+        if (maxBatchSize > 1) {
+            return getNextCoalescedTimestamp();
+        }
         return getNextTimestamp(false, true);
     }
 
@@ -267,10 +310,10 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
         }
 
         try {
-            ChannelBuffer buffer = ChannelBuffers.buffer(4);
+            ChannelBuffer buffer = ChannelBuffers.buffer(TimestampServer.FIXED_MSG_RECEIVED_LENGTH);
             buffer.writeShort(clientCallId);
-            byte b = refresh?(byte)1:0;
-            b =(byte) (b | ((increment?1:0)<<1));
+            byte b = refresh?TimestampServer.REFRESH_FLAG:0;
+            b =(byte) (b | (increment?TimestampServer.INCREMENT_FLAG:0));
             buffer.writeByte(b);
             SpliceLogUtils.trace(LOG, "Writing request message to server for client: %s", callback);
             if(channel == null) {
@@ -330,6 +373,247 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
         return timestamp;
     }
 
+    /**
+     * Allocates {@code count} new timestamps for a single caller. When coalescing is enabled they are requested
+     * together, so they usually come from a single range request.
+     *
+     * @return the timestamps, in increasing order
+     */
+    public long[] getNextTimestamps(int count) throws TimestampIOException {
+        long[] timestamps = new long[count];
+        if (maxBatchSize <= 1) {
+            for (int i = 0; i < count; i++) {
+                timestamps[i] = getNextTimestamp(false, true);
+            }
+            return timestamps;
+        }
+
+        // Measure duration of full client request for JMX
+        long requestStartTime = System.currentTimeMillis();
+
+        connectIfNeeded();
+
+        ClientCallback[] callbacks = new ClientCallback[count];
+        for (int i = 0; i < count; i++) {
+            callbacks[i] = new ClientCallback(COALESCED_CALLER_ID);
+        }
+        queueCoalescedCallers(callbacks);
+        try {
+            for (int i = 0; i < count; i++) {
+                timestamps[i] = awaitCoalescedTimestamp(callbacks[i], requestStartTime);
+            }
+        } catch (TimestampIOException e) {
+            // the callers still queued would consume timestamps nobody waits for anymore
+            cancelCoalescedCallers(callbacks);
+            throw e;
+        }
+        return timestamps;
+    }
+
+    private long getNextCoalescedTimestamp() throws TimestampIOException {
+
+        // Measure duration of full client request for JMX
+        long requestStartTime = System.currentTimeMillis();
+
+        connectIfNeeded();
+
+        final ClientCallback callback = new ClientCallback(COALESCED_CALLER_ID);
+        queueCoalescedCallers(callback);
+        return awaitCoalescedTimestamp(callback, requestStartTime);
+    }
+
+    /**
+     * Queues callers for the next range request, and sends it if no range request is in flight.
+     */
+    private void queueCoalescedCallers(ClientCallback... callbacks) {
+        RangeCallback range = null;
+        synchronized (pendingCallers) {
+            Collections.addAll(pendingCallers, callbacks);
+            if (!rangeRequestInFlight) {
+                // Nobody is talking to the server, we send the request ourselves
+                rangeRequestInFlight = true;
+                range = drainPendingCallers();
+            }
+        }
+        if (range != null) {
+            sendRangeRequest(range);
+        }
+    }
+
+    /**
+     * Removes callers that gave up waiting from the queue of the next range request.
+     */
+    private void cancelCoalescedCallers(ClientCallback... callbacks) {
+        synchronized (pendingCallers) {
+            pendingCallers.removeAll(Arrays.asList(callbacks));
+        }
+    }
+
+    int getNumberPendingCallers() {
+        synchronized (pendingCallers) {
+            return pendingCallers.size();
+        }
+    }
+
+    private long awaitCoalescedTimestamp(ClientCallback callback, long requestStartTime) throws TimestampIOException {
+        try {
+            boolean success = callback.await(timeoutMillis);
+            if (!success) {
+                cancelCoalescedCallers(callback);
+                // We timed out, close the channel so that the next request recreates the connection
+                Channel c = channel;
+                if (c != null) {
+                    c.close();
+                }
+                failRangeRequests(new TimestampIOException("Timed out waiting for timestamp range"));
+
+                doClientErrorThrow(LOG, "Client timed out after %s ms waiting for new coalesced timestamp: %s", null, timeoutMillis, callback);
+            }
+        } catch (InterruptedException e) {
+            cancelCoalescedCallers(callback);
+            Thread.currentThread().interrupt();
+            doClientErrorThrow(LOG, "Interrupted waiting for coalesced timestamp: %s", e, callback);
+        }
+
+        long timestamp = callback.getNewTimestamp();
+        if (timestamp < 0) {
+            doClientErrorThrow(LOG, "Invalid coalesced timestamp found for client: %s", callback.getException(), callback);
+        }
+
+        // Since request was successful, update JMX metrics
+        numRequests.incrementAndGet();
+        totalRequestDuration.addAndGet(System.currentTimeMillis() - requestStartTime);
+
+        return timestamp;
+    }
+
+    /**
+     * Moves up to {@link #maxBatchSize} waiting callers into a new range request. Must be called while holding the lock
+     * on {@link #pendingCallers}.
+     */
+    private RangeCallback drainPendingCallers() {
+        int size = Math.min(pendingCallers.size(), maxBatchSize);
+        List<ClientCallback> sublist = pendingCallers.subList(0, size);
+        RangeCallback range = new RangeCallback((short) clientCallCounter.getAndIncrement(), new ArrayList<>(sublist));
+        sublist.clear();
+        return range;
+    }
+
+    /**
+     * Called once a range request has been answered, successfully or not. Sends the next range request
+     * if callers queued up in the meantime.
+     */
+    private void rangeRequestCompleted() {
+        RangeCallback next;
+        synchronized (pendingCallers) {
+            if (pendingCallers.isEmpty()) {
+                rangeRequestInFlight = false;
+                return;
+            }
+            next = drainPendingCallers();
+        }
+        sendRangeRequest(next);
+    }
+
+    private void sendRangeRequest(final RangeCallback range) {
+        final short clientCallId = range.getCallerId();
+        SpliceLogUtils.debug(LOG, "Starting new range request with id %s for %s callers", clientCallId, range.size());
+
+        if (clientCallbacks.putIfAbsent(clientCallId, range) != null) {
+            String msg = String.format("Found existing client callback with caller id %s, so unable to handle new range request.", clientCallId);
+            LOG.error(msg + " Callback map size = " + clientCallbacks.size());
+            range.error(new TimestampIOException(msg));
+            return;
+        }
+
+        try {
+            ChannelBuffer buffer = ChannelBuffers.buffer(TimestampServer.RANGE_MSG_RECEIVED_LENGTH);
+            buffer.writeShort(clientCallId);
+            buffer.writeByte(TimestampServer.INCREMENT_FLAG | TimestampServer.RANGE_FLAG);
+            buffer.writeShort(range.size());
+            Channel c = channel;
+            if (c == null) {
+                throw new TimestampIOException("Unable to connect to TimestampServer");
+            }
+            ChannelFuture futureWrite = c.write(buffer);
+            futureWrite.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (!future.isSuccess()) {
+                        LOG.error("Error writing range request from timestamp client to server", future.getCause());
+                        if (clientCallbacks.remove(clientCallId, range)) {
+                            range.error(new TimestampIOException("Error writing range request to server", future.getCause()));
+                        }
+                    } else {
+                        SpliceLogUtils.trace(LOG, "Range request sent. Waiting for response for client: %s", range);
+                    }
+                }
+            });
+        } catch (Exception e) { // Correct to catch all Exceptions in this case so we can release the waiting callers
+            LOG.error("Exception writing range request to timestamp server", e);
+            if (clientCallbacks.remove(clientCallId, range)) {
+                range.error(e);
+            }
+        }
+    }
+
+    /**
+     * Fails every outstanding range request, so that the callers waiting on them are released
+     * and the next range request can be sent.
+     */
+    private void failRangeRequests(Exception e) {
+        for (Map.Entry<Short, Callback> entry : clientCallbacks.entrySet()) {
+            Callback cb = entry.getValue();
+            if (cb instanceof RangeCallback && clientCallbacks.remove(entry.getKey(), cb)) {
+                cb.error(e);
+            }
+        }
+    }
+
+    /**
+     * Callback for a range request, hands out the contiguous range to the coalesced callers.
+     */
+    private class RangeCallback implements Callback {
+        private final short callerId;
+        private final List<ClientCallback> callers;
+
+        RangeCallback(short callerId, List<ClientCallback> callers) {
+            this.callerId = callerId;
+            this.callers = callers;
+        }
+
+        short getCallerId() {
+            return callerId;
+        }
+
+        int size() {
+            return callers.size();
+        }
+
+        @Override
+        public void complete(long timestamp) {
+            for (int i = 0; i < callers.size(); i++) {
+                callers.get(i).complete(timestamp + i * TimestampOracle.TIMESTAMP_INCREMENT);
+            }
+            numRangeRequests.incrementAndGet();
+            numCoalescedTimestamps.addAndGet(callers.size());
+            rangeRequestCompleted();
+        }
+
+        @Override
+        public void error(Exception e) {
+            for (ClientCallback caller : callers) {
+                caller.error(e);
+            }
+            rangeRequestCompleted();
+        }
+
+        @Override
+        public String toString() {
+            return "RangeCallback (callerId = " + callerId + ", size = " + callers.size() + ")";
+        }
+    }
+
     @Override
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
         ChannelBuffer buf = (ChannelBuffer) e.getMessage();
@@ -375,6 +659,7 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
             channel=null;
             shouldContinue = !state.compareAndSet(s,State.DISCONNECTED);
         }while(shouldContinue);
+        failRangeRequests(new TimestampIOException("TimestampClient was disconnected from the server"));
         connectIfNeeded();
     }
 
@@ -406,6 +691,23 @@ public class TimestampClient extends TimestampBaseHandler implements TimestampCl
         return a / b;
     }
 
+    @Override
+    public long getNumberRangeRequests() {
+        return numRangeRequests.get();
+    }
+
+    @Override
+    public long getNumberCoalescedTimestamps() {
+        return numCoalescedTimestamps.get();
+    }
+
+    @Override
+    public double getAvgCoalescingFactor() {
+        double a = (double) numCoalescedTimestamps.get();
+        double b = (double) numRangeRequests.get();
+        return b == 0 ? 0 : a / b;
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
         if(state.get() != State.SHUTDOWN) {
@@ -29,7 +29,7 @@ import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
 
 public class TimestampOracle implements TimestampOracleStatistics{
-	private static final long TIMESTAMP_INCREMENT = 0x100l;
+	static final long TIMESTAMP_INCREMENT = 0x100l;
 
     private static final Logger LOG = Logger.getLogger(TimestampOracle.class);
 
@@ -102,6 +102,28 @@ public class TimestampOracle implements TimestampOracleStatistics{
 		return nextTS;
 	}
 
+	/**
+	 * Allocates {@code rangeSize} consecutive timestamps at once.
+	 *
+	 * @param rangeSize number of timestamps to allocate, must be positive
+	 * @return the first timestamp of the range, the following ones are spaced by {@link #TIMESTAMP_INCREMENT}
+	 * @throws TimestampIOException if a new block could not be reserved
+	 */
+	public long getNextTimestamps(int rangeSize) throws TimestampIOException {
+		if (rangeSize <= 0) {
+			throw new TimestampIOException("Invalid timestamp range size " + rangeSize);
+		}
+		long lastTS = _timestampCounter.addAndGet(rangeSize * TIMESTAMP_INCREMENT);
+		long maxTS = _maxReservedTimestamp;
+		// a large range might span more than one block
+		while (lastTS > maxTS) {
+			reserveNextBlock(maxTS);
+			maxTS = _maxReservedTimestamp;
+		}
+		_numTimestampsCreated.addAndGet(rangeSize); // JMX metric
+		return lastTS - (rangeSize - 1) * TIMESTAMP_INCREMENT;
+	}
+
     private void reserveNextBlock(long priorMaxReservedTimestamp) throws TimestampIOException {
         synchronized(this)  {
             if (_maxReservedTimestamp > priorMaxReservedTimestamp) return; // some other thread got there first
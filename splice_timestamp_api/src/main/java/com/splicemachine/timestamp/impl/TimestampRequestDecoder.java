@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2012 - 2020 Splice Machine, Inc.
+ *
+ * This file is part of Splice Machine.
+ * Splice Machine is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either
+ * version 3, or (at your option) any later version.
+ * Splice Machine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License along with Splice Machine.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.splicemachine.timestamp.impl;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+
+/**
+ * Splits the stream of client requests into frames. Plain requests have a fixed length of
+ * {@link TimestampServer#FIXED_MSG_RECEIVED_LENGTH} bytes, range requests (flagged with
+ * {@link TimestampServer#RANGE_FLAG}) carry two more bytes with the size of the range.
+ */
+public class TimestampRequestDecoder extends FrameDecoder {
+
+    @Override
+    protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
+        if (buffer.readableBytes() < TimestampServer.FIXED_MSG_RECEIVED_LENGTH) {
+            return null;
+        }
+        byte flags = buffer.getByte(buffer.readerIndex() + 2); // skip the client id
+        int length = (flags & TimestampServer.RANGE_FLAG) != 0
+                ? TimestampServer.RANGE_MSG_RECEIVED_LENGTH
+                : TimestampServer.FIXED_MSG_RECEIVED_LENGTH;
+        if (buffer.readableBytes() < length) {
+            return null;
+        }
+        return buffer.readBytes(length);
+    }
+}
@@ -35,6 +35,18 @@ public class TimestampServer {
      */
     static final int FIXED_MSG_RECEIVED_LENGTH = 3; // 2 byte client id + 1 byte refresh boolean
 
+    /**
+     * Number of bytes in a range request, which asks for a contiguous block of timestamps.
+     */
+    static final int RANGE_MSG_RECEIVED_LENGTH = 5; // 2 byte client id + 1 byte flags + 2 byte range size
+
+    /**
+     * Bits of the flags byte sent by the client.
+     */
+    static final byte REFRESH_FLAG = 1;
+    static final byte INCREMENT_FLAG = 2;
+    static final byte RANGE_FLAG = 4;
+
     /**
      * Fixed number of bytes in the message we expect to send back to the client.
      */
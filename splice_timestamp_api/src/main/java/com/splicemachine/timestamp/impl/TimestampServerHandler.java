@@ -56,16 +56,28 @@ public class TimestampServerHandler extends TimestampBaseHandler {
 
         ChannelBuffer buf = (ChannelBuffer) e.getMessage();
         assert buf != null;
-        ensureReadableBytes(buf, TimestampServer.FIXED_MSG_RECEIVED_LENGTH);
 
         final short callerId = buf.readShort();
         final byte b = buf.readByte();
-        boolean refresh = ((b & 1) != 0);
-        boolean increment = ((b & 2) != 0);
-        ensureReadableBytes(buf, 0);
-
-        SpliceLogUtils.trace(LOG, "Received timestamp request from client. Caller id = %s", callerId);
-        long nextTimestamp = oracle.getNextTimestamp(refresh, increment);
+        boolean refresh = ((b & TimestampServer.REFRESH_FLAG) != 0);
+        boolean increment = ((b & TimestampServer.INCREMENT_FLAG) != 0);
+        boolean range = ((b & TimestampServer.RANGE_FLAG) != 0);
+
+        long nextTimestamp;
+        if (range) {
+            // The client asked for a contiguous range, we respond with its first timestamp
+            ensureReadableBytes(buf, 2);
+            int rangeSize = buf.readUnsignedShort();
+            ensureReadableBytes(buf, 0);
+
+            SpliceLogUtils.trace(LOG, "Received timestamp range request from client. Caller id = %s, size = %s", callerId, rangeSize);
+            nextTimestamp = oracle.getNextTimestamps(rangeSize);
+        } else {
+            ensureReadableBytes(buf, 0);
+
+            SpliceLogUtils.trace(LOG, "Received timestamp request from client. Caller id = %s", callerId);
+            nextTimestamp = oracle.getNextTimestamp(refresh, increment);
+        }
         assert nextTimestamp > 0;
 
 
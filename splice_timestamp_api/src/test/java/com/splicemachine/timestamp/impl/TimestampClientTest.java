@@ -24,6 +24,17 @@ import org.jboss.netty.channel.MessageEvent;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 
@@ -111,4 +122,99 @@ public class TimestampClientTest {
         }
 
     }
+
+    @Test
+    public void testCoalescedTimestampsAreUnique() throws Exception {
+        TimestampServer ts = new TimestampServer(0, new TimestampServerHandler(Mockito.mock(TimestampBlockManager.class, Mockito.RETURNS_DEEP_STUBS), 10));
+        ts.startServer();
+
+        int port = ts.getBoundPort();
+
+        TimestampHostProvider hostProvider = new TimestampHostProvider() {
+            @Override
+            public String getHost() {
+                return "localhost";
+            }
+            @Override
+            public int getPort() {
+                return port;
+            }
+        };
+        TimestampClient tc = new TimestampClient(1000, hostProvider, 16);
+
+        int threads = 8;
+        int perThread = 5000;
+        Set<Long> timestamps = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long last = 0;
+                    for (int i = 0; i < perThread; ++i) {
+                        long next = tc.getNextTimestamp();
+                        assertTrue("Timestamps must increase for a single caller", next > last);
+                        assertTrue("Duplicated timestamp " + next, timestamps.add(next));
+                        last = next;
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, timestamps.size());
+        assertEquals(threads * perThread, tc.getNumberTimestampRequests());
+        assertEquals(threads * perThread, tc.getNumberCoalescedTimestamps());
+        assertTrue(tc.getNumberRangeRequests() <= tc.getNumberCoalescedTimestamps());
+
+        tc.shutdown();
+        ts.stopServer();
+    }
+
+    @Test
+    public void testTimedOutCallersLeaveTheQueue() throws Exception {
+        // the server never answers, range requests time out
+        TimestampServerHandler tsh = new TimestampServerHandler(Mockito.mock(TimestampBlockManager.class, Mockito.RETURNS_DEEP_STUBS), 10) {
+            @Override
+            public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            }
+        };
+        TimestampServer ts = new TimestampServer(0, tsh);
+        ts.startServer();
+
+        int port = ts.getBoundPort();
+
+        TimestampHostProvider hostProvider = new TimestampHostProvider() {
+            @Override
+            public String getHost() {
+                return "localhost";
+            }
+            @Override
+            public int getPort() {
+                return port;
+            }
+        };
+        TimestampClient tc = new TimestampClient(200, hostProvider, 2);
+        assertEquals(0, tc.getAvgCoalescingFactor(), 0);
+
+        try {
+            tc.getNextTimestamps(6);
+            fail("Expected exception");
+        } catch (TimestampIOException e) {
+            // expected
+        }
+        assertEquals("Timed out callers must not be served by later range requests", 0, tc.getNumberPendingCallers());
+        assertEquals(0, tc.getAvgCoalescingFactor(), 0);
+
+        tc.shutdown();
+        ts.stopServer();
+    }
 }